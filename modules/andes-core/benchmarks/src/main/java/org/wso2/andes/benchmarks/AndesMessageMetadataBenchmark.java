@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.mqtt.utils.MQTTUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing the encoded metadata of a message, which is done for every message read from the message store
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class AndesMessageMetadataBenchmark {
+
+    private static final String TOPIC = "stocks.region0.symbol0";
+
+    private static final int CONTENT_LENGTH = 1024;
+
+    private byte[] amqpMetadata;
+
+    private byte[] mqttMetadata;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        amqpMetadata = BenchmarkEnvironment.createAmqpMetadata(TOPIC, CONTENT_LENGTH);
+        mqttMetadata = MQTTUtils.encodeMetaInfo(MQTTUtils.MQTT_META_INFO, 1, System.currentTimeMillis(), true, 1,
+                TOPIC.replace('.', '/'), true, CONTENT_LENGTH, false);
+    }
+
+    @Benchmark
+    public AndesMessageMetadata parseAmqpMetadata() {
+        return new AndesMessageMetadata(1, amqpMetadata, true);
+    }
+
+    @Benchmark
+    public AndesMessageMetadata parseMqttMetadata() {
+        return new AndesMessageMetadata(1, mqttMetadata, true);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.BasicContentHeaderProperties;
+import org.wso2.andes.framing.ContentHeaderBody;
+import org.wso2.andes.framing.abstraction.MessagePublishInfoImpl;
+import org.wso2.andes.framing.amqp_0_91.BasicGetBodyImpl;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.router.TopicMessageRouter;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.ClusterManager;
+import org.wso2.andes.server.message.MessageMetaData;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sets up the parts of the broker the benchmarked classes depend on and creates benchmark data. The broker
+ * configuration is read from the directory given by the carbon.config.dir.path system property.
+ */
+public final class BenchmarkEnvironment {
+
+    /**
+     * Seed of the random data generators, so every run works on the same data
+     */
+    public static final long SEED = 0x5eed;
+
+    private static boolean initialised = false;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Load the broker configuration and register a standalone cluster manager. Subsequent calls have no effect.
+     *
+     * @throws AndesException if the configuration cannot be loaded
+     */
+    public static synchronized void initialise() throws AndesException {
+        if (initialised) {
+            return;
+        }
+        if (null == System.getProperty(AndesConfigurationManager.CARBON_CONFIG_DIR_PATH)) {
+            throw new IllegalStateException("System property " + AndesConfigurationManager.CARBON_CONFIG_DIR_PATH
+                    + " must point to the directory holding broker.xml");
+        }
+        AndesConfigurationManager.initialize(0);
+
+        // Message ids are generated with the unique id of the local node, which is 0 in standalone mode
+        if (null == ClusterResourceHolder.getInstance().getClusterManager()) {
+            ClusterResourceHolder.getInstance().setClusterManager(new ClusterManager());
+        }
+        initialised = true;
+    }
+
+    /**
+     * Create a router with the routing of the AMQP topic exchange
+     *
+     * @return topic exchange router
+     */
+    public static TopicMessageRouter createTopicExchange() {
+        return new TopicMessageRouter(AMQPUtils.TOPIC_EXCHANGE_NAME, "topic", false);
+    }
+
+    /**
+     * @return configured maximum size of a content chunk
+     */
+    public static int getMaxChunkSize() {
+        return AndesConfigurationManager.readValue(AndesConfiguration.PERFORMANCE_TUNING_MAX_CONTENT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create the encoded metadata of a persistent AMQP 0-9-1 message published to the topic exchange, in the form
+     * it is kept in the message store
+     *
+     * @param routingKey    routing key of the message
+     * @param contentLength content length of the message
+     * @return encoded metadata
+     */
+    public static byte[] createAmqpMetadata(String routingKey, int contentLength) {
+        return createAmqpMetadata(AMQPUtils.TOPIC_EXCHANGE_NAME, routingKey, contentLength);
+    }
+
+    /**
+     * Create the encoded metadata of a persistent AMQP 0-9-1 message, in the form it is kept in the message store
+     *
+     * @param exchangeName  exchange the message is published to
+     * @param routingKey    routing key of the message
+     * @param contentLength content length of the message
+     * @return encoded metadata
+     */
+    public static byte[] createAmqpMetadata(String exchangeName, String routingKey, int contentLength) {
+        BasicContentHeaderProperties properties = new BasicContentHeaderProperties();
+        properties.setDeliveryMode((byte) 2);
+        properties.setContentType("text/plain");
+        properties.setMessageId("ID:benchmark-message");
+        properties.setTimestamp(System.currentTimeMillis());
+
+        ContentHeaderBody contentHeaderBody = new ContentHeaderBody(properties, BasicGetBodyImpl.CLASS_ID);
+        contentHeaderBody.bodySize = contentLength;
+
+        MessagePublishInfoImpl publishInfo = new MessagePublishInfoImpl(
+                new AMQShortString(exchangeName), false, false, new AMQShortString(routingKey));
+        int chunkCount = (contentLength + getMaxChunkSize() - 1) / getMaxChunkSize();
+        MessageMetaData metaData = new MessageMetaData(publishInfo, contentHeaderBody, chunkCount,
+                System.currentTimeMillis());
+
+        byte[] encoded = new byte[1 + metaData.getStorableSize()];
+        encoded[0] = (byte) metaData.getType().ordinal();
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        buffer.position(1);
+        metaData.writeToBuffer(0, buffer.slice());
+        return encoded;
+    }
+
+    /**
+     * Create message content split into chunks of the configured maximum chunk size
+     *
+     * @param messageId     id of the message the content belongs to
+     * @param contentLength total content length
+     * @param random        source of the content bytes
+     * @return content chunks in offset order
+     */
+    public static List<AndesMessagePart> createContent(long messageId, int contentLength, Random random) {
+        int maxChunkSize = getMaxChunkSize();
+        List<AndesMessagePart> parts = new ArrayList<>();
+        for (int offset = 0; offset < contentLength; offset = offset + maxChunkSize) {
+            byte[] data = createPayload(Math.min(maxChunkSize, contentLength - offset), random);
+            AndesMessagePart part = new AndesMessagePart();
+            part.setMessageID(messageId);
+            part.setOffSet(offset);
+            part.setData(data);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /**
+     * Create a payload which compresses about as well as typical text messages. Words are picked at random from a
+     * small vocabulary.
+     *
+     * @param length payload length
+     * @param random source of randomness
+     * @return payload
+     */
+    public static byte[] createPayload(int length, Random random) {
+        String[] words = { "order", "price", "quantity", "symbol", "timestamp", "account", "status", "\"id\":",
+                "{", "}", ",", " ", "1", "42", "3.14", "WSO2", "true", "false" };
+        byte[] payload = new byte[length];
+        int position = 0;
+        while (position < length) {
+            byte[] word = words[random.nextInt(words.length)].getBytes();
+            int count = Math.min(word.length, length - position);
+            System.arraycopy(word, 0, payload, position, count);
+            position = position + count;
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.DeliverableAndesMetadata;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.kernel.ProtocolMessage;
+import org.wso2.andes.kernel.disruptor.delivery.ContentCacheCreator;
+import org.wso2.andes.kernel.disruptor.delivery.DeliveryEventData;
+import org.wso2.andes.kernel.slot.Slot;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of attaching content to a batch of messages about to be delivered. When the content is cached, as for
+ * messages of non durable topics delivered to several subscribers, it is taken from the cache. Otherwise it is
+ * read from a message store which hands out content kept in memory, so the store access itself costs next to
+ * nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ContentCacheCreatorBenchmark {
+
+    private static final String ROUTING_KEY = "stocks.region0.symbol0";
+
+    /**
+     * Number of messages in a delivery batch
+     */
+    @Param({ "1", "64" })
+    public int batchSize;
+
+    @Param({ "1024", "65536" })
+    public int contentLength;
+
+    private ContentCacheCreator contentCacheCreator;
+
+    private List<DeliveryEventData> batch;
+
+    private long nextContentId;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        List<AndesMessagePart> content = BenchmarkEnvironment.createContent(0, contentLength,
+                new Random(BenchmarkEnvironment.SEED));
+        MessageStore messageStore = (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class<?>[] { MessageStore.class }, new InMemoryContentHandler(content));
+        MessagingEngine.getInstance().initialise(messageStore, null, null);
+
+        contentCacheCreator = new ContentCacheCreator(BenchmarkEnvironment.getMaxChunkSize());
+
+        byte[] metadata = BenchmarkEnvironment.createAmqpMetadata(ROUTING_KEY, contentLength);
+        Slot slot = new Slot(1, batchSize, ROUTING_KEY);
+        UUID channelId = UUID.randomUUID();
+        batch = new ArrayList<>(batchSize);
+        for (int i = 1; i <= batchSize; i++) {
+            DeliveryEventData eventData = new DeliveryEventData();
+            eventData.setMetadata(new ProtocolMessage(new DeliverableAndesMetadata(slot, i, metadata, true),
+                    channelId));
+            batch.add(eventData);
+        }
+        nextContentId = batchSize + 1;
+    }
+
+    /**
+     * Every message of the batch refers to content cached by previous batches
+     */
+    @Benchmark
+    public List<DeliveryEventData> cachedContent() throws AndesException {
+        contentCacheCreator.onEvent(batch);
+        return batch;
+    }
+
+    /**
+     * Every message of the batch refers to content which has not been read before
+     */
+    @Benchmark
+    public List<DeliveryEventData> uncachedContent() throws AndesException {
+        for (DeliveryEventData eventData : batch) {
+            eventData.getMetadata().getMessage().setContentId(nextContentId++);
+        }
+        contentCacheCreator.onEvent(batch);
+        return batch;
+    }
+
+    /**
+     * Answers content reads of the message store with the same in memory content for every message
+     */
+    private static class InMemoryContentHandler implements InvocationHandler {
+
+        private final List<AndesMessagePart> content;
+
+        private InMemoryContentHandler(List<AndesMessagePart> content) {
+            this.content = content;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                return method.invoke(this, args);
+            }
+            if ("getContent".equals(method.getName()) && (1 == args.length) && (args[0] instanceof LongArrayList)) {
+                LongArrayList contentIds = (LongArrayList) args[0];
+                LongObjectHashMap<List<AndesMessagePart>> contents = new LongObjectHashMap<>(contentIds.size());
+                for (int i = 0; i < contentIds.size(); i++) {
+                    contents.put(contentIds.get(i), content);
+                }
+                return contents;
+            }
+            throw new UnsupportedOperationException(method.getName() + " is not supported by the benchmark store");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.baseline.StatusListAndesMetadata;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.DeliverableAndesMetadata;
+import org.wso2.andes.kernel.ProtocolType;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.kernel.subscription.AndesSubscription;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+import org.wso2.andes.kernel.subscription.SubscriberConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of tracking the delivery state of a message. Run with the gc profiler, the allocation per operation of
+ * {@link #bufferMessage()} is the memory a buffered message holds before it is delivered. The status list
+ * benchmarks measure the state tracking as it was before the state was packed, as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class DeliverableAndesMetadataBenchmark {
+
+    private static final String ROUTING_KEY = "stocks.region0.symbol0";
+
+    /**
+     * Number of subscribers a message is delivered to
+     */
+    @Param({ "1", "4" })
+    public int subscriberCount;
+
+    private Slot slot;
+
+    private byte[] metadata;
+
+    private List<AndesSubscription> subscriptions;
+
+    private UUID[] channelIds;
+
+    private long nextMessageId = 1;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        metadata = BenchmarkEnvironment.createAmqpMetadata(ROUTING_KEY, 1024);
+        slot = new Slot(1, Long.MAX_VALUE, ROUTING_KEY);
+
+        StorageQueue queue = new StorageQueue(ROUTING_KEY, false, false, null, false);
+        subscriptions = new ArrayList<>(subscriberCount);
+        channelIds = new UUID[subscriberCount];
+        for (int i = 0; i < subscriberCount; i++) {
+            channelIds[i] = UUID.randomUUID();
+            SubscriberConnection connection = new SubscriberConnection("127.0.0.1", "benchmark-node", channelIds[i],
+                    null);
+            subscriptions.add(new AndesSubscription("subscription-" + i, queue, ProtocolType.AMQP, connection));
+        }
+    }
+
+    /**
+     * Read a message and buffer it for delivery
+     */
+    @Benchmark
+    public DeliverableAndesMetadata bufferMessage() {
+        DeliverableAndesMetadata message = new DeliverableAndesMetadata(slot, nextMessageId++, metadata, true);
+        message.markAsBuffered();
+        return message;
+    }
+
+    /**
+     * Take a message through buffering, delivery to every subscriber, acknowledgement and deletion
+     */
+    @Benchmark
+    public boolean deliverMessage() {
+        DeliverableAndesMetadata message = new DeliverableAndesMetadata(slot, nextMessageId++, metadata, true);
+        message.markAsBuffered();
+        message.markAsScheduledToDeliver(subscriptions);
+
+        boolean acknowledgedByAll = false;
+        for (UUID channelId : channelIds) {
+            message.markAsDispatchedToDeliver(channelId);
+        }
+        for (UUID channelId : channelIds) {
+            acknowledgedByAll = message.markAsAcknowledgedByChannel(channelId);
+        }
+
+        if (acknowledgedByAll) {
+            message.markAsPreparedToDelete();
+            message.markAsDeletedMessage();
+        }
+        return message.isOKToDispose();
+    }
+
+    /**
+     * {@link #bufferMessage()} with the status lists
+     */
+    @Benchmark
+    public StatusListAndesMetadata bufferMessageStatusList() {
+        StatusListAndesMetadata message = new StatusListAndesMetadata(slot, nextMessageId++, metadata, true);
+        message.markAsBuffered();
+        return message;
+    }
+
+    /**
+     * {@link #deliverMessage()} with the status lists
+     */
+    @Benchmark
+    public boolean deliverMessageStatusList() {
+        StatusListAndesMetadata message = new StatusListAndesMetadata(slot, nextMessageId++, metadata, true);
+        message.markAsBuffered();
+        message.markAsScheduledToDeliver(subscriptions);
+
+        boolean acknowledgedByAll = false;
+        for (UUID channelId : channelIds) {
+            message.markAsDispatchedToDeliver(channelId);
+        }
+        for (UUID channelId : channelIds) {
+            acknowledgedByAll = message.markAsAcknowledgedByChannel(channelId);
+        }
+
+        if (acknowledgedByAll) {
+            message.markAsPreparedToDelete();
+            message.markAsDeletedMessage();
+        }
+        return message.isOKToDispose();
+    }
+}
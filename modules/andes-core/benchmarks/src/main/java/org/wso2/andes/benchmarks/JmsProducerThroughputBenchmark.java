@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.client.AMQConnection;
+import org.wso2.andes.jms.CompletionListener;
+import org.wso2.andes.jms.MessageProducer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+/**
+ * Publish throughput of a JMS producer against a running broker, with synchronous publishing and with the
+ * asynchronous batched publishing of the client. Every send passes a completion listener, so both modes do the same
+ * work per message. A consumer on a separate connection drains the queue so the broker does not pile up messages
+ * during the run.
+ * <p>
+ * The broker is given with the system property benchmark.broker, tcp://localhost:5672 by default, and has to accept
+ * the admin user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JmsProducerThroughputBenchmark {
+
+    private static final String BROKER_PROPERTY = "benchmark.broker";
+
+    private static final String DEFAULT_BROKER = "tcp://localhost:5672";
+
+    private static final String QUEUE_NAME = "JmsProducerThroughputBenchmark";
+
+    @Param({ "1024", "65536" })
+    public int payloadSize;
+
+    @Param({ "sync", "async" })
+    public String publishMode;
+
+    private AMQConnection publisherConnection;
+
+    private AMQConnection consumerConnection;
+
+    private MessageProducer producer;
+
+    private BytesMessage message;
+
+    private final CountingCompletionListener completionListener = new CountingCompletionListener();
+
+    @Setup
+    public void setUp() throws Exception {
+        String broker = System.getProperty(BROKER_PROPERTY, DEFAULT_BROKER);
+
+        consumerConnection = new AMQConnection(connectionUrl(broker, "consumer", false));
+        Session consumerSession = consumerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = consumerSession.createConsumer(consumerSession.createQueue(QUEUE_NAME));
+        consumer.setMessageListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                // Only drains the queue
+            }
+        });
+        consumerConnection.start();
+
+        publisherConnection = new AMQConnection(connectionUrl(broker, "publisher", "async".equals(publishMode)));
+        Session session = publisherConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(QUEUE_NAME);
+        producer = (MessageProducer) session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+
+        message = session.createBytesMessage();
+        message.writeBytes(BenchmarkEnvironment.createPayload(payloadSize, new Random(BenchmarkEnvironment.SEED)));
+    }
+
+    @TearDown
+    public void tearDown() throws JMSException {
+        // Closing the producer flushes the messages still buffered by the asynchronous publisher
+        producer.close();
+        publisherConnection.close();
+        consumerConnection.close();
+
+        System.out.println(publishMode + " publishing of " + payloadSize + " byte messages: "
+                + completionListener.completed.get() + " completed, " + completionListener.failed.get()
+                + " failed");
+        if (completionListener.failed.get() > 0) {
+            throw new IllegalStateException(completionListener.failed.get() + " messages were not published");
+        }
+    }
+
+    @Benchmark
+    public void send() throws JMSException {
+        producer.send(message, completionListener);
+    }
+
+    private static String connectionUrl(String broker, String clientId, boolean asyncPublish) {
+        return "amqp://admin:admin@" + clientId + "/carbon?brokerlist='" + broker + "'"
+                + (asyncPublish ? "&async_publish='true'" : "");
+    }
+
+    private static class CountingCompletionListener implements CompletionListener {
+
+        private final AtomicLong completed = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        @Override
+        public void onCompletion(Message message) {
+            completed.incrementAndGet();
+        }
+
+        @Override
+        public void onException(Message message, Exception exception) {
+            failed.incrementAndGet();
+        }
+    }
+}
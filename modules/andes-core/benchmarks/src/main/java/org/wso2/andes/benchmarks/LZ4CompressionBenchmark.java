@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.disruptor.compression.LZ4CompressionHelper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of compressing message content on publish and decompressing it on delivery
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class LZ4CompressionBenchmark {
+
+    private static final long MESSAGE_ID = 1;
+
+    @Param({ "1024", "65536", "1048576" })
+    public int contentLength;
+
+    private LZ4CompressionHelper compressionHelper;
+
+    private List<AndesMessagePart> content;
+
+    private Collection<AndesMessagePart> compressedContent;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        compressionHelper = new LZ4CompressionHelper();
+        content = BenchmarkEnvironment.createContent(MESSAGE_ID, contentLength, new Random(BenchmarkEnvironment.SEED));
+        compressedContent = compressionHelper.getHashMapFromByteArray(
+                compressionHelper.getCompressedMessage(content, contentLength).getData(), MESSAGE_ID).values();
+    }
+
+    @Benchmark
+    public AndesMessagePart compress() {
+        return compressionHelper.getCompressedMessage(content, contentLength);
+    }
+
+    @Benchmark
+    public Map<Integer, AndesMessagePart> decompress() {
+        return compressionHelper.getDecompressedMessage(compressedContent, contentLength, MESSAGE_ID);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.baseline.SynchronizedMessageIdGenerator;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.server.cluster.coordination.TimeStampBasedMessageIdGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of message id generation, by a single publisher and by as many publishers as there are processors.
+ * Results are in ids (or id blocks) per microsecond. The synchronized benchmarks measure the generator as it was
+ * before it was made lock-free, as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class MessageIdGeneratorBenchmark {
+
+    /**
+     * Number of ids allocated at once by the block benchmarks
+     */
+    @Param({ "16" })
+    public int blockSize;
+
+    private TimeStampBasedMessageIdGenerator idGenerator;
+
+    private SynchronizedMessageIdGenerator synchronizedIdGenerator;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        idGenerator = new TimeStampBasedMessageIdGenerator();
+        synchronizedIdGenerator = new SynchronizedMessageIdGenerator();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextId() {
+        return idGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextIdContended() {
+        return idGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdBlock() {
+        return idGenerator.getNextIds(blockSize);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextIdBlockContended() {
+        return idGenerator.getNextIds(blockSize);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdSynchronized() {
+        return synchronizedIdGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextIdSynchronizedContended() {
+        return synchronizedIdGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdBlockSynchronized() {
+        return synchronizedIdGenerator.getNextIds(blockSize);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextIdBlockSynchronizedContended() {
+        return synchronizedIdGenerator.getNextIds(blockSize);
+    }
+}
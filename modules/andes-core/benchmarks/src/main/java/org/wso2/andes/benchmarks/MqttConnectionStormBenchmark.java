@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.dna.mqtt.commons.Constants;
+import org.dna.mqtt.moquette.messaging.spi.IMessaging;
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage;
+import org.dna.mqtt.moquette.proto.messages.ConnAckMessage;
+import org.dna.mqtt.moquette.proto.messages.ConnectMessage;
+import org.dna.mqtt.moquette.server.ServerChannel;
+import org.dna.mqtt.moquette.server.netty.NettyAcceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection storm against the MQTT Netty acceptor. Every invocation opens the given number of connections at once,
+ * sends an MQTT CONNECT on each of them and waits for all CONNACKs, so the time of an invocation is the time taken to
+ * accept the storm. The accept rate, and the heap and direct memory held per connection once the storm is accepted,
+ * are printed after every invocation.
+ * <p>
+ * The acceptor runs with a stub messaging layer that acknowledges every CONNECT, so only the transport is measured.
+ * Memory per connection includes the client socket of the benchmark. Each connection takes two file descriptors in
+ * the benchmark process, the open file limit has to be raised accordingly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class MqttConnectionStormBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+
+    /**
+     * Number of client connections bound to one loopback address, kept below the size of the ephemeral port range
+     */
+    private static final int CONNECTIONS_PER_CLIENT_ADDRESS = 20000;
+
+    private static final int CONNECT_TIMEOUT_SECONDS = 120;
+
+    /**
+     * Length of an MQTT 3.1.1 CONNACK
+     */
+    private static final int CONNACK_LENGTH = 4;
+
+    @Param({ "1000", "10000" })
+    public int connectionCount;
+
+    @Param({ "true", "false" })
+    public boolean nativeTransport;
+
+    @Param({ "true", "false" })
+    public boolean pooledAllocator;
+
+    private NettyAcceptor acceptor;
+
+    private ConnectAckMessaging messaging;
+
+    private InetSocketAddress serverAddress;
+
+    private SocketChannel[] clients;
+
+    private long stormStart;
+
+    private long stormEnd;
+
+    private long heapBefore;
+
+    private long directBefore;
+
+    @Setup(Level.Trial)
+    public void startAcceptor() throws IOException {
+        int port = findFreePort();
+        serverAddress = new InetSocketAddress(HOST, port);
+
+        Properties props = new Properties();
+        props.put(Constants.HOST_PROPERTY_NAME, HOST);
+        props.put(Constants.PORT_PROPERTY_NAME, Integer.toString(port));
+        props.put(Constants.DEFAULT_CONNECTION_ENABLED, "true");
+        props.put(Constants.SSL_PORT_PROPERTY_NAME, "0");
+        props.put(Constants.SSL_CONNECTION_ENABLED, "false");
+        props.put(Constants.NATIVE_TRANSPORT_ENABLED, Boolean.toString(nativeTransport));
+        props.put(Constants.POOLED_ALLOCATOR_ENABLED, Boolean.toString(pooledAllocator));
+
+        messaging = new ConnectAckMessaging();
+        acceptor = new NettyAcceptor();
+        acceptor.initialize(messaging, props);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopAcceptor() {
+        acceptor.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareStorm() throws InterruptedException {
+        clients = new SocketChannel[connectionCount];
+        heapBefore = usedHeap();
+        directBefore = usedDirectMemory();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStorm() throws IOException, InterruptedException {
+        long heapPerConnection = (usedHeap() - heapBefore) / connectionCount;
+        long directPerConnection = (usedDirectMemory() - directBefore) / connectionCount;
+        long stormMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(stormEnd - stormStart));
+        System.out.println("Accepted " + connectionCount + " connections in " + stormMillis + " ms ("
+                + (connectionCount * 1000L / stormMillis) + " connections/s), heap per connection: "
+                + heapPerConnection + " bytes, direct memory per connection: " + directPerConnection + " bytes");
+
+        for (SocketChannel client : clients) {
+            if (null != client) {
+                // Reset instead of a graceful close so that client ports do not linger in TIME_WAIT between storms
+                client.socket().setSoLinger(true, 0);
+                client.close();
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT_SECONDS);
+        while (messaging.getConnectionCount() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException(messaging.getConnectionCount() + " connections were not closed");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Benchmark
+    public int connectionStorm() throws IOException {
+        stormStart = System.nanoTime();
+        Selector selector = Selector.open();
+        try {
+            for (int i = 0; i < connectionCount; i++) {
+                SocketChannel client = SocketChannel.open();
+                clients[i] = client;
+                client.configureBlocking(false);
+                client.bind(new InetSocketAddress("127.0.0." + (2 + i / CONNECTIONS_PER_CLIENT_ADDRESS), 0));
+                if (client.connect(serverAddress)) {
+                    sendConnect(client);
+                    client.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(CONNACK_LENGTH));
+                } else {
+                    client.register(selector, SelectionKey.OP_CONNECT, ByteBuffer.allocate(CONNACK_LENGTH));
+                }
+            }
+
+            int connAcks = 0;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT_SECONDS);
+            while (connAcks < connectionCount) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Only " + connAcks + " of " + connectionCount
+                            + " connections were acknowledged");
+                }
+                selector.select(100);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    SocketChannel client = (SocketChannel) key.channel();
+                    if (key.isConnectable()) {
+                        client.finishConnect();
+                        sendConnect(client);
+                        key.interestOps(SelectionKey.OP_READ);
+                    } else if (key.isReadable()) {
+                        ByteBuffer connAck = (ByteBuffer) key.attachment();
+                        if (client.read(connAck) < 0) {
+                            throw new IOException("Connection closed by the acceptor");
+                        }
+                        if (!connAck.hasRemaining()) {
+                            connAcks++;
+                            key.cancel();
+                        }
+                    }
+                }
+            }
+            stormEnd = System.nanoTime();
+            return connAcks;
+        } finally {
+            selector.close();
+        }
+    }
+
+    /**
+     * Write an MQTT 3.1.1 CONNECT with a clean session and an empty client id
+     *
+     * @param client connected client channel
+     * @throws IOException if the connect could not be written
+     */
+    private static void sendConnect(SocketChannel client) throws IOException {
+        ByteBuffer connect = ByteBuffer.wrap(new byte[] {
+                0x10, 12,                       // fixed header, remaining length
+                0, 4, 'M', 'Q', 'T', 'T', 4,    // protocol name and level
+                0x02,                           // clean session
+                0, 60,                          // keep alive seconds
+                0, 0                            // client id
+        });
+        while (connect.hasRemaining()) {
+            client.write(connect);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirectMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static int findFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Acknowledges every CONNECT and keeps count of the open connections
+     */
+    private static class ConnectAckMessaging implements IMessaging {
+
+        private final AtomicInteger connectionCount = new AtomicInteger(0);
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void disconnect(ServerChannel session) {
+        }
+
+        @Override
+        public void lostConnection(String clientID) {
+            connectionCount.decrementAndGet();
+        }
+
+        @Override
+        public void handleProtocolMessage(ServerChannel session, AbstractMessage msg) {
+            if (msg instanceof ConnectMessage) {
+                connectionCount.incrementAndGet();
+                ConnAckMessage connAck = new ConnAckMessage();
+                connAck.setReturnCode(ConnAckMessage.CONNECTION_ACCEPTED);
+                session.write(connAck);
+            }
+        }
+
+        private int getConnectionCount() {
+            return connectionCount.get();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.protocol.ProtocolEngine;
+import org.wso2.andes.protocol.ProtocolEngineFactory;
+import org.wso2.andes.transport.NetworkTransportConfiguration;
+import org.wso2.andes.transport.network.IncomingNetworkTransport;
+import org.wso2.andes.transport.network.NetworkConnection;
+import org.wso2.andes.transport.network.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Round trip throughput of the NIO transport while a given number of connections are open, and the heap held per
+ * open connection, which is printed when the connections are set up. Every round trip goes to the next connection,
+ * so all connections are active. The MINA transport, which served every connection before the NIO transport was
+ * added, is measured the same way as the baseline.
+ * <p>
+ * Each connection takes two file descriptors in the benchmark process, the open file limit has to be raised
+ * accordingly. Clients connect from several loopback addresses to get enough ephemeral ports, which works on
+ * Linux.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class NioConnectionScalingBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+
+    private static final int MESSAGE_SIZE = 64;
+
+    /**
+     * Number of client connections bound to one loopback address, kept below the size of the ephemeral port range
+     */
+    private static final int CONNECTIONS_PER_CLIENT_ADDRESS = 20000;
+
+    private static final int CONNECT_TIMEOUT_SECONDS = 120;
+
+    /**
+     * Default of connector.processors in the server configuration
+     */
+    private static final int CONNECTOR_PROCESSORS = 4;
+
+    @Param({ "1000", "10000", "50000" })
+    public int connectionCount;
+
+    /**
+     * Class name of the incoming transport
+     */
+    @Param({ Transport.NIO_TRANSPORT_CLASSNAME, "org.wso2.andes.transport.network.mina.MinaNetworkTransport" })
+    public String transportClassName;
+
+    private IncomingNetworkTransport transport;
+
+    private SocketChannel[] clients;
+
+    private ByteBuffer request;
+
+    private ByteBuffer response;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        long heapBefore = usedHeap();
+
+        EchoProtocolEngineFactory engineFactory = new EchoProtocolEngineFactory();
+        transport = Transport.getIncomingTransportInstance(transportClassName);
+        int port = findFreePort();
+        transport.accept(new BenchmarkTransportConfiguration(port), engineFactory, null);
+
+        clients = new SocketChannel[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            clients[i] = SocketChannel.open();
+            clients[i].bind(new InetSocketAddress("127.0.0." + (2 + i / CONNECTIONS_PER_CLIENT_ADDRESS), 0));
+            clients[i].connect(new InetSocketAddress(HOST, port));
+            clients[i].socket().setTcpNoDelay(true);
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT_SECONDS);
+        while (engineFactory.getEngineCount() < connectionCount) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Only " + engineFactory.getEngineCount() + " of " + connectionCount
+                        + " connections were accepted");
+            }
+            Thread.sleep(10);
+        }
+
+        long heapPerConnection = (usedHeap() - heapBefore) / connectionCount;
+        System.out.println("Heap held per connection with " + connectionCount + " connections on "
+                + transportClassName + ": " + heapPerConnection + " bytes");
+
+        request = ByteBuffer.wrap(BenchmarkEnvironment.createPayload(MESSAGE_SIZE,
+                new Random(BenchmarkEnvironment.SEED)));
+        response = ByteBuffer.allocate(MESSAGE_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (SocketChannel client : clients) {
+            if (null != client) {
+                client.close();
+            }
+        }
+        transport.close();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        SocketChannel client = clients[next];
+        next = (next + 1) % connectionCount;
+
+        request.clear();
+        while (request.hasRemaining()) {
+            client.write(request);
+        }
+        response.clear();
+        while (response.hasRemaining()) {
+            if (client.read(response) < 0) {
+                throw new IOException("Connection closed by the transport");
+            }
+        }
+        return response.get(0);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int findFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static class EchoProtocolEngineFactory implements ProtocolEngineFactory {
+
+        private final AtomicInteger engineCount = new AtomicInteger(0);
+
+        @Override
+        public ProtocolEngine newProtocolEngine(NetworkConnection network) {
+            engineCount.incrementAndGet();
+            return new EchoProtocolEngine(network);
+        }
+
+        private int getEngineCount() {
+            return engineCount.get();
+        }
+    }
+
+    /**
+     * Sends back everything it receives
+     */
+    private static class EchoProtocolEngine implements ProtocolEngine {
+
+        private final NetworkConnection network;
+
+        private EchoProtocolEngine(NetworkConnection network) {
+            this.network = network;
+        }
+
+        @Override
+        public void received(ByteBuffer msg) {
+            network.getSender().send(msg);
+        }
+
+        @Override
+        public void exception(Throwable t) {
+        }
+
+        @Override
+        public void closed() {
+        }
+
+        @Override
+        public void readerIdle() {
+        }
+
+        @Override
+        public void writerIdle() {
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return network.getRemoteAddress();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return network.getLocalAddress();
+        }
+
+        @Override
+        public long getWrittenBytes() {
+            return 0;
+        }
+
+        @Override
+        public long getReadBytes() {
+            return 0;
+        }
+    }
+
+    private static class BenchmarkTransportConfiguration implements NetworkTransportConfiguration {
+
+        private final int port;
+
+        private BenchmarkTransportConfiguration(int port) {
+            this.port = port;
+        }
+
+        @Override
+        public Boolean getTcpNoDelay() {
+            return true;
+        }
+
+        @Override
+        public Integer getReceiveBufferSize() {
+            return 32768;
+        }
+
+        @Override
+        public Integer getSendBufferSize() {
+            return 32768;
+        }
+
+        @Override
+        public Integer getPort() {
+            return port;
+        }
+
+        @Override
+        public String getHost() {
+            return HOST;
+        }
+
+        @Override
+        public String getTransport() {
+            return Transport.TCP;
+        }
+
+        @Override
+        public Integer getConnectorProcessors() {
+            return CONNECTOR_PROCESSORS;
+        }
+    }
+}
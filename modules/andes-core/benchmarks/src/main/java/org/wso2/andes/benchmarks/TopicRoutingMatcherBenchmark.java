@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.ProtocolType;
+import org.wso2.andes.kernel.router.TopicMessageRouter;
+import org.wso2.andes.kernel.router.TopicRoutingMatcher;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the storage queues a topic message is routed to. Queues are bound with a mix of exact binding
+ * keys and keys with single and multi level wildcards, as durable and non durable topic subscriptions create them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class TopicRoutingMatcherBenchmark {
+
+    /**
+     * Number of storage queues bound to the topic exchange
+     */
+    @Param({ "100", "1000", "10000", "100000" })
+    public int queueCount;
+
+    /**
+     * Size of the routing key cache of the matcher, 0 measures matching against the constituent tables
+     */
+    @Param({ "0", "10000" })
+    public int cacheSize;
+
+    /**
+     * Number of distinct routing keys messages are published with
+     */
+    private static final int ROUTING_KEY_COUNT = 1024;
+
+    private TopicRoutingMatcher matcher;
+
+    private String[] routingKeys;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        Random random = new Random(BenchmarkEnvironment.SEED);
+        matcher = new TopicRoutingMatcher(ProtocolType.AMQP, cacheSize);
+        // Binding a queue to the exchange records the binding key in the queue
+        TopicMessageRouter topicExchange = BenchmarkEnvironment.createTopicExchange();
+
+        int regionCount = Math.max(queueCount / 100, 1);
+        for (int i = 0; i < queueCount; i++) {
+            String region = "region" + random.nextInt(regionCount);
+            String bindingKey;
+            switch (i % 10) {
+                case 0:
+                    bindingKey = "stocks." + region + ".*";
+                    break;
+                case 1:
+                    bindingKey = "stocks." + region + ".#";
+                    break;
+                case 2:
+                    bindingKey = "stocks.*.symbol" + random.nextInt(queueCount);
+                    break;
+                default:
+                    bindingKey = "stocks." + region + ".symbol" + random.nextInt(queueCount);
+                    break;
+            }
+            StorageQueue queue = new StorageQueue("queue-" + i, false, false, null, false);
+            queue.bindQueueToMessageRouter(bindingKey, topicExchange);
+            matcher.addStorageQueue(queue);
+        }
+
+        routingKeys = new String[ROUTING_KEY_COUNT];
+        for (int i = 0; i < routingKeys.length; i++) {
+            routingKeys[i] = "stocks.region" + random.nextInt(regionCount) + ".symbol" + random.nextInt(queueCount);
+        }
+        // The matcher builds its constituent tables on the first lookup after bindings change
+        matcher.getMatchingStorageQueues(routingKeys[0]);
+    }
+
+    @Benchmark
+    public Set<StorageQueue> getMatchingStorageQueues() {
+        next = (next + 1) & (ROUTING_KEY_COUNT - 1);
+        return matcher.getMatchingStorageQueues(routingKeys[next]);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.kernel.disruptor.waitStrategy.WaitStrategyFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand off latency of a ring with each of the configurable wait strategies. An event is published and the
+ * benchmark thread waits until the event handler has seen it, so the measured time is the time the handler takes
+ * to wake up. Sample mode reports the p50, p99 and p99.9 latencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class WaitStrategyLatencyBenchmark {
+
+    private static final int RING_SIZE = 1024;
+
+    @Param({ WaitStrategyFactory.SLEEPING_BLOCKING, WaitStrategyFactory.PARKING, WaitStrategyFactory.PHASED_BACKOFF,
+            WaitStrategyFactory.YIELDING, WaitStrategyFactory.BUSY_SPIN })
+    public String waitStrategy;
+
+    private Disruptor<SequenceEvent> disruptor;
+
+    private ExecutorService executor;
+
+    private RingBuffer<SequenceEvent> ringBuffer;
+
+    private SequenceRecorder handler;
+
+    @Setup
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("WaitStrategyLatencyBenchmark-Handler").build());
+        handler = new SequenceRecorder();
+        disruptor = new Disruptor<>(new SequenceEvent.Factory(), RING_SIZE, executor, ProducerType.SINGLE,
+                new WaitStrategyFactory().create(waitStrategy));
+        disruptor.handleEventsWith(handler);
+        ringBuffer = disruptor.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        disruptor.halt();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long handOff() {
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).sequence = sequence;
+        ringBuffer.publish(sequence);
+        while (handler.lastSequence < sequence) {
+            // Spin, the wait of the benchmark thread is not part of the measured strategy
+        }
+        return sequence;
+    }
+
+    /**
+     * Event carrying the sequence it is published at
+     */
+    private static class SequenceEvent {
+
+        private long sequence;
+
+        private static class Factory implements EventFactory<SequenceEvent> {
+            @Override
+            public SequenceEvent newInstance() {
+                return new SequenceEvent();
+            }
+        }
+    }
+
+    /**
+     * Makes the sequence of the last handled event visible to the publishing thread
+     */
+    private static class SequenceRecorder implements EventHandler<SequenceEvent> {
+
+        private volatile long lastSequence = -1;
+
+        @Override
+        public void onEvent(SequenceEvent event, long sequence, boolean endOfBatch) {
+            lastSequence = event.sequence;
+        }
+    }
+}
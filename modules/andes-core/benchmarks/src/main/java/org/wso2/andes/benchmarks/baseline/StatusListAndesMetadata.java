@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.baseline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.ChannelMessageStatus;
+import org.wso2.andes.kernel.MessageStatus;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.kernel.subscription.AndesSubscription;
+import org.wso2.andes.tools.utils.MessageTracer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The delivery state tracking of DeliverableAndesMetadata as it was before the state was packed. Every message
+ * holds a concurrent map of channel information and a synchronized list of every status it went through, and every
+ * channel holds the list of its statuses. Only the transitions of a normal delivery are kept.
+ */
+public class StatusListAndesMetadata extends AndesMessageMetadata {
+
+    private static Log log = LogFactory.getLog(StatusListAndesMetadata.class);
+
+    private Map<UUID, ChannelInformation> channelDeliveryInfo;
+
+    private List<MessageStatus> messageStatus;
+
+    private Slot slot;
+
+    private long timeMessageIsRead;
+
+    private boolean isBeyondLastRollbackedMessage;
+
+    public StatusListAndesMetadata(Slot slot, long messageID, byte[] metadata, boolean parse) {
+        super(messageID, metadata, parse);
+        this.slot = slot;
+        this.timeMessageIsRead = System.currentTimeMillis();
+        this.channelDeliveryInfo = new ConcurrentHashMap<>();
+        this.messageStatus = Collections.synchronizedList(new ArrayList<MessageStatus>());
+        this.messageStatus.add(MessageStatus.READ);
+    }
+
+    public void markAsBuffered() {
+        addMessageStatus(MessageStatus.BUFFERED);
+    }
+
+    public void markAsScheduledToDeliver(Collection<AndesSubscription> localSubscriptions) {
+        for (AndesSubscription subscription : localSubscriptions) {
+            UUID subscriptionChannelID = subscription.getSubscriberConnection().getProtocolChannelID();
+            ChannelInformation channelInformation = channelDeliveryInfo.get(subscriptionChannelID);
+            if (null == channelInformation) {
+                channelInformation = new ChannelInformation();
+                channelDeliveryInfo.put(subscriptionChannelID, channelInformation);
+            }
+        }
+        addMessageStatus(MessageStatus.SCHEDULED_TO_SEND);
+    }
+
+    public void markAsDispatchedToDeliver(UUID channelID) {
+        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
+        channelInformation.addChannelStatus(ChannelMessageStatus.DISPATCHED);
+
+        if (!this.isBeyondLastRollbackedMessage) {
+            int i = channelInformation.incrementDeliveryCount();
+            MessageTracer.trace(getMessageID(), getDestination(), "Message within rollback id. "
+                    + "Current count " + i);
+        } else {
+            MessageTracer.trace(getMessageID(), getDestination(), MessageTracer.MESSAGE_BEYOND_LAST_ROLLBACK);
+        }
+    }
+
+    public boolean markAsAcknowledgedByChannel(UUID channelID) {
+        boolean isAcknowledgedByAll = false;
+        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
+        channelInformation.addChannelStatus(ChannelMessageStatus.ACKED);
+        channelDeliveryInfo.put(channelID, channelInformation);
+
+        if (isMarkAsAcked()) {
+            addMessageStatus(MessageStatus.ACKED_BY_ALL);
+            isAcknowledgedByAll = true;
+        }
+        return isAcknowledgedByAll;
+    }
+
+    public void markAsPreparedToDelete() {
+        addMessageStatus(MessageStatus.PREPARED_TO_DELETE);
+    }
+
+    public void markAsDeletedMessage() {
+        addMessageStatus(MessageStatus.DELETED);
+    }
+
+    public boolean isOKToDispose() {
+        return (messageStatus.contains(MessageStatus.EXPIRED)
+                || messageStatus.contains(MessageStatus.DLC_MESSAGE)
+                || messageStatus.contains(MessageStatus.PURGED)
+                || messageStatus.contains(MessageStatus.DELETED))
+                || messageStatus.get(messageStatus.size() - 1).equals(MessageStatus.SLOT_REMOVED)
+                || messageStatus.get(messageStatus.size() - 1).equals(MessageStatus.SLOT_RETURNED);
+    }
+
+    private boolean isMarkAsAcked() {
+        boolean isAcked = true;
+        for (Map.Entry<UUID, ChannelInformation> channelInfoEntry : channelDeliveryInfo.entrySet()) {
+            ChannelMessageStatus messageStatus = channelInfoEntry.getValue().getLatestMessageStatus();
+            if (null == messageStatus) {
+                isAcked = false;
+                break;
+            } else if (!messageStatus.equals(ChannelMessageStatus.CLOSED)
+                    && !messageStatus.equals(ChannelMessageStatus.CLIENT_REJECTED)
+                    && !messageStatus.equals(ChannelMessageStatus.RECOVERED)
+                    && !messageStatus.equals(ChannelMessageStatus.ACKED)) {
+                isAcked = false;
+                break;
+            }
+        }
+        if (channelDeliveryInfo.isEmpty()) {
+            isAcked = false;
+        }
+        return isAcked;
+    }
+
+    private boolean addMessageStatus(MessageStatus state) {
+        boolean isValidTransition = messageStatus.get(messageStatus.size() - 1).isValidNextTransition(state);
+        if (!isValidTransition) {
+            log.warn("Invalid message state transition from " + messageStatus.get(messageStatus.size() - 1)
+                    + " suggested: " + state + " Message ID: " + getMessageID() + " slot = " + slot.getId()
+                    + " Message Status History >> " + messageStatus);
+        }
+        messageStatus.add(state);
+        return isValidTransition;
+    }
+
+    private class ChannelInformation {
+
+        private Integer channelToNumOfDeliveries = 0;
+
+        private List<ChannelMessageStatus> messageStatusesForChannel = new ArrayList<>(5);
+
+        private int incrementDeliveryCount() {
+            channelToNumOfDeliveries = channelToNumOfDeliveries + 1;
+            return channelToNumOfDeliveries;
+        }
+
+        private boolean addChannelStatus(ChannelMessageStatus state) {
+            boolean isValidTransition;
+            if (messageStatusesForChannel.isEmpty()) {
+                isValidTransition = ChannelMessageStatus.DISPATCHED.equals(state);
+            } else {
+                isValidTransition = messageStatusesForChannel.get(messageStatusesForChannel.size() - 1)
+                        .isValidNextTransition(state);
+            }
+            if (isValidTransition) {
+                messageStatusesForChannel.add(state);
+            } else {
+                log.warn("Invalid channel message state transition suggested: " + state + " Message ID: "
+                        + getMessageID() + " Slot = " + slot.getId() + " Channel Status History >> "
+                        + messageStatusesForChannel);
+            }
+            return isValidTransition;
+        }
+
+        private ChannelMessageStatus getLatestMessageStatus() {
+            if (!messageStatusesForChannel.isEmpty()) {
+                return messageStatusesForChannel.get(messageStatusesForChannel.size() - 1);
+            } else {
+                return null;
+            }
+        }
+    }
+}
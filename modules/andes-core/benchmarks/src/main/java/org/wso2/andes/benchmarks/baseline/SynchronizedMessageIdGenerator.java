@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.baseline;
+
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.coordination.MessageIdGenerator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The timestamp based message id generator as it was before it was made lock-free. Every id is generated in a
+ * synchronized method, and ids of a block are generated one by one.
+ */
+public class SynchronizedMessageIdGenerator implements MessageIdGenerator {
+
+    private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L;
+
+    private int uniqueIdForNode = 0;
+
+    private long lastTimestamp = 0;
+
+    private long lastID = 0;
+
+    private AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public synchronized long getNextId() {
+        uniqueIdForNode = ClusterResourceHolder.getInstance().getClusterManager().getUniqueIdForLocalNode();
+        long ts = System.currentTimeMillis();
+        int offset = 0;
+        if (ts == lastTimestamp) {
+            offset = this.offset.incrementAndGet();
+        } else {
+            this.offset.set(0);
+        }
+        lastTimestamp = ts;
+        long id = (ts - REFERENCE_START) * 256 * 1024 + uniqueIdForNode * 1024 + offset;
+        if (lastID == id) {
+            throw new RuntimeException("duplicate ids detected. This should never happen");
+        }
+        lastID = id;
+        return id;
+    }
+
+    /**
+     * Generate the given number of ids one by one, the way topic fan-out clones got their ids.
+     *
+     * @param count number of ids
+     * @return first of the generated ids
+     */
+    public long getNextIds(int count) {
+        long firstId = getNextId();
+        for (int i = 1; i < count; i++) {
+            getNextId();
+        }
+        return firstId;
+    }
+}
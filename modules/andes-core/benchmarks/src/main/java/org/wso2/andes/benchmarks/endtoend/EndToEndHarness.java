@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.kernel.Andes;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesKernelBoot;
+import org.wso2.andes.kernel.ProtocolType;
+import org.wso2.andes.kernel.disruptor.inbound.InboundBindingEvent;
+import org.wso2.andes.kernel.disruptor.inbound.InboundExchangeEvent;
+import org.wso2.andes.kernel.disruptor.inbound.InboundQueueEvent;
+import org.wso2.andes.kernel.disruptor.inbound.InboundSubscriptionEvent;
+import org.wso2.andes.kernel.disruptor.inbound.QueueInfo;
+import org.wso2.andes.kernel.subscription.SubscriberConnection;
+import org.wso2.andes.server.ClusterResourceHolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the full message path of the Andes kernel in process. The kernel is booted through
+ * {@link AndesKernelBoot} against an embedded H2 database and messages travel from {@link Andes#messageReceived}
+ * through the inbound disruptor, the RDBMS message store, slots and the message flusher to subscribers, which
+ * acknowledge them back through {@link Andes#ackReceived}. No network connection and no external database is used.
+ * <p>
+ * The workload is configured through system properties, see {@link HarnessConfiguration}. Latency and throughput
+ * of each stage of the path are written as a JSON report. Latencies of all stages are measured from the time a
+ * message is published, so they add up along the path.
+ */
+public final class EndToEndHarness {
+
+    private static final Log log = LogFactory.getLog(EndToEndHarness.class);
+
+    /**
+     * JNDI name of the embedded data source, referred by the store configuration in broker.xml
+     */
+    private static final String DATA_SOURCE_NAME = "jdbc/AndesHarnessDB";
+
+    /**
+     * H2 scripts of the RDBMS stores shipped with the broker, run in this order
+     */
+    private static final String[] SCHEMA_RESOURCES = {
+            "/dbscripts/mb-store/h2-mb.sql", "/dbscripts/mb-store/h2-mb-content-reference.sql" };
+
+    /**
+     * Keys of the wait strategies of the inbound and delivery disruptors in broker.xml
+     */
+    private static final String INBOUND_WAIT_STRATEGY_KEY = "performanceTuning.inboundEvents.waitStrategy";
+
+    private static final String DELIVERY_WAIT_STRATEGY_KEY = "performanceTuning.delivery.waitStrategy";
+
+    private static final String QUEUE_NAME_PREFIX = "harness-queue-";
+
+    private static final String QUEUE_OWNER = "harness";
+
+    private static final int MAX_DATABASE_CONNECTIONS = 50;
+
+    private static final long COMPLETION_POLL_INTERVAL = 100;
+
+    private final HarnessConfiguration configuration;
+
+    private final StageRecorder publishStage = new StageRecorder("publish",
+            "publish until the message is handed over to the kernel");
+
+    private final StageRecorder persistStage = new StageRecorder("persist",
+            "publish until the kernel acknowledges the stored message to the publisher");
+
+    private final StageRecorder deliverStage = new StageRecorder("deliver",
+            "publish until the message is delivered to a subscriber");
+
+    private final StageRecorder acknowledgeStage = new StageRecorder("acknowledge",
+            "publish until the acknowledgement of the subscriber is handed over to the kernel");
+
+    private final AtomicLong deliveredCount = new AtomicLong(0);
+
+    private final AtomicLong acknowledgedCount = new AtomicLong(0);
+
+    private final List<HarnessPublisher> publishers = new ArrayList<>();
+
+    private final List<HarnessSubscription> subscriptions = new ArrayList<>();
+
+    private JdbcConnectionPool dataSource;
+
+    private boolean kernelStarted = false;
+
+    private EndToEndHarness(HarnessConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public static void main(String[] args) {
+        EndToEndHarness harness = new EndToEndHarness(new HarnessConfiguration());
+        boolean complete = false;
+        try {
+            harness.startKernel();
+            harness.createWorkload();
+            complete = harness.run();
+        } catch (Exception e) {
+            log.error("End to end run failed", e);
+        } finally {
+            harness.shutDown();
+        }
+        System.exit(complete ? 0 : 1);
+    }
+
+    /**
+     * Create the embedded database and boot the kernel the way the server boots it, without the AMQP transport
+     *
+     * @throws Exception if the kernel cannot be started
+     */
+    private void startKernel() throws Exception {
+        configureWaitStrategies();
+        NoOpMetricService.register();
+
+        dataSource = JdbcConnectionPool.create(configuration.getDatabaseUrl(), "sa", "");
+        dataSource.setMaxConnections(MAX_DATABASE_CONNECTIONS);
+        createSchema();
+        InMemoryInitialContextFactory.bind(DATA_SOURCE_NAME, dataSource);
+
+        BenchmarkEnvironment.initialise();
+        AndesContext.getInstance().constructStoreConfiguration();
+
+        AndesKernelBoot.startAndesStores();
+        AndesKernelBoot.startAndesCluster();
+        AndesKernelBoot.initializeComponents(false);
+        AndesKernelBoot.startMessaging();
+        kernelStarted = true;
+    }
+
+    /**
+     * Point the broker configuration to a copy of broker.xml with the wait strategies of the workload, if any is
+     * given. Must run before the configuration is loaded.
+     *
+     * @throws ConfigurationException if broker.xml cannot be read or written
+     * @throws IOException            if the directory of the copy cannot be created
+     */
+    private void configureWaitStrategies() throws ConfigurationException, IOException {
+        if (null == configuration.getInboundWaitStrategy() && null == configuration.getDeliveryWaitStrategy()) {
+            return;
+        }
+
+        File configDirectory = new File(System.getProperty(AndesConfigurationManager.CARBON_CONFIG_DIR_PATH));
+        XMLConfiguration brokerConfiguration = new XMLConfiguration(new File(configDirectory, "broker.xml"));
+        if (null != configuration.getInboundWaitStrategy()) {
+            brokerConfiguration.setProperty(INBOUND_WAIT_STRATEGY_KEY, configuration.getInboundWaitStrategy());
+        }
+        if (null != configuration.getDeliveryWaitStrategy()) {
+            brokerConfiguration.setProperty(DELIVERY_WAIT_STRATEGY_KEY, configuration.getDeliveryWaitStrategy());
+        }
+
+        File tunedConfigDirectory = Files.createTempDirectory("andes-harness").toFile();
+        File tunedBrokerXml = new File(tunedConfigDirectory, "broker.xml");
+        brokerConfiguration.save(tunedBrokerXml);
+        tunedBrokerXml.deleteOnExit();
+        tunedConfigDirectory.deleteOnExit();
+        System.setProperty(AndesConfigurationManager.CARBON_CONFIG_DIR_PATH, tunedConfigDirectory.getPath());
+    }
+
+    private void createSchema() throws IOException, SQLException {
+        StringBuilder schema = new StringBuilder();
+        for (String schemaResource : SCHEMA_RESOURCES) {
+            InputStream script = EndToEndHarness.class.getResourceAsStream(schemaResource);
+            if (null == script) {
+                throw new IOException("Database script " + schemaResource + " is not in the class path");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(script, Charset.forName("UTF-8")));
+            try {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if (!line.startsWith("--")) {
+                        schema.append(line).append('\n');
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            for (String sql : schema.toString().split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Create the queues of the workload, bound to the direct exchange, with their subscribers and publishers
+     *
+     * @throws AndesException if the kernel fails to create a queue or a subscription
+     */
+    private void createWorkload() throws AndesException {
+        Andes andes = Andes.getInstance();
+        andes.createExchange(new InboundExchangeEvent(AMQPUtils.DIRECT_EXCHANGE_NAME, "direct", false));
+
+        String nodeId = ClusterResourceHolder.getInstance().getClusterManager().getMyNodeID();
+        Random random = new Random(BenchmarkEnvironment.SEED);
+
+        for (int queueIndex = 0; queueIndex < configuration.getQueueCount(); queueIndex++) {
+            String queueName = QUEUE_NAME_PREFIX + queueIndex;
+            andes.createQueue(new InboundQueueEvent(queueName, true, true, QUEUE_OWNER, false));
+            QueueInfo queueInfo = new QueueInfo(queueName, true, true, QUEUE_OWNER, false);
+            andes.addBinding(new InboundBindingEvent(queueInfo, AMQPUtils.DIRECT_EXCHANGE_NAME, queueName));
+
+            for (int i = 0; i < configuration.getSubscribersPerQueue(); i++) {
+                HarnessSubscription subscription = new HarnessSubscription(queueName, deliverStage,
+                        acknowledgeStage, deliveredCount, acknowledgedCount);
+                SubscriberConnection connection = new SubscriberConnection("127.0.0.1", nodeId,
+                        subscription.getChannelID(), subscription);
+                andes.openLocalSubscription(new InboundSubscriptionEvent(ProtocolType.AMQP, queueName, queueName,
+                        queueName, connection));
+                subscriptions.add(subscription);
+            }
+
+            for (int i = 0; i < configuration.getPublishersPerQueue(); i++) {
+                HarnessPublisher publisher = new HarnessPublisher(queueName, configuration, publishStage,
+                        persistStage, random);
+                publisher.open();
+                publishers.add(publisher);
+            }
+        }
+    }
+
+    /**
+     * Publish all messages and wait until subscribers acknowledged them, then write the report
+     *
+     * @return true if every message was acknowledged in time
+     * @throws Exception if publishing fails or the report cannot be written
+     */
+    private boolean run() throws Exception {
+        log.info("Publishing " + configuration.getExpectedDeliveries() + " messages through "
+                 + configuration.getQueueCount() + " queue(s)");
+
+        ExecutorService publisherPool = Executors.newFixedThreadPool(publishers.size(),
+                new ThreadFactoryBuilder().setNameFormat("HarnessPublisher-%d").build());
+        long startTime = System.nanoTime();
+        try {
+            List<Future<?>> publishing = new ArrayList<>();
+            for (HarnessPublisher publisher : publishers) {
+                publishing.add(publisherPool.submit(publisher));
+            }
+            for (Future<?> publisherCompletion : publishing) {
+                publisherCompletion.get();
+            }
+        } catch (ExecutionException e) {
+            throw new AndesException("Publisher failed", e.getCause());
+        } finally {
+            publisherPool.shutdownNow();
+        }
+        long publishedTime = System.nanoTime();
+
+        long deadline = publishedTime + TimeUnit.SECONDS.toNanos(configuration.getCompletionTimeout());
+        while (acknowledgedCount.get() < configuration.getExpectedDeliveries() && System.nanoTime() < deadline) {
+            Thread.sleep(COMPLETION_POLL_INTERVAL);
+        }
+        long endTime = System.nanoTime();
+
+        boolean complete = acknowledgedCount.get() >= configuration.getExpectedDeliveries();
+        if (!complete) {
+            log.warn("Only " + acknowledgedCount.get() + " of " + configuration.getExpectedDeliveries()
+                     + " messages were acknowledged within " + configuration.getCompletionTimeout() + "s");
+        }
+        writeReport(createReport(complete, publishedTime - startTime, endTime - startTime));
+        return complete;
+    }
+
+    private JSONObject createReport(boolean complete, long publishDuration, long totalDuration) throws JSONException {
+        long rejectedCount = 0;
+        for (HarnessPublisher publisher : publishers) {
+            rejectedCount = rejectedCount + publisher.getRejectedCount();
+        }
+
+        JSONObject stages = new JSONObject();
+        for (StageRecorder stage : new StageRecorder[] { publishStage, persistStage, deliverStage,
+                acknowledgeStage }) {
+            stages.put(stage.getName(), stage.toJSON());
+            log.info(String.format("%-12s %10d messages %12.1f msg/s", stage.getName(), stage.getCount(),
+                    stage.getThroughput()));
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("configuration", configuration.toJSON());
+        report.put("complete", complete);
+        report.put("publishDurationMillis", TimeUnit.NANOSECONDS.toMillis(publishDuration));
+        report.put("totalDurationMillis", TimeUnit.NANOSECONDS.toMillis(totalDuration));
+        report.put("expectedMessages", configuration.getExpectedDeliveries());
+        report.put("deliveredMessages", deliveredCount.get());
+        report.put("acknowledgedMessages", acknowledgedCount.get());
+        report.put("rejectedMessages", rejectedCount);
+        report.put("stages", stages);
+        return report;
+    }
+
+    private void writeReport(JSONObject report) throws IOException, JSONException {
+        File reportFile = new File(configuration.getReportFile());
+        File reportDirectory = reportFile.getAbsoluteFile().getParentFile();
+        if (!reportDirectory.exists() && !reportDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + reportDirectory);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(reportFile), Charset.forName("UTF-8"));
+        try {
+            writer.write(report.toString(2));
+        } finally {
+            writer.close();
+        }
+        log.info("Report written to " + reportFile.getAbsolutePath());
+    }
+
+    private void shutDown() {
+        try {
+            for (HarnessSubscription subscription : subscriptions) {
+                subscription.close(configuration.getCompletionTimeout());
+            }
+            for (HarnessPublisher publisher : publishers) {
+                publisher.close();
+            }
+            if (kernelStarted) {
+                AndesKernelBoot.shutDownAndesKernel();
+                AndesKernelBoot.stopHouseKeepingThreads();
+            }
+        } catch (AndesException e) {
+            log.error("Error while shutting down the kernel", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (null != dataSource) {
+                try {
+                    dataSource.dispose();
+                } catch (SQLException e) {
+                    log.error("Error while closing the database connections", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Workload of an end to end harness run. Every value is read from a system property with the "harness." prefix,
+ * e.g. -Dharness.queues=4.
+ */
+class HarnessConfiguration {
+
+    private static final String PREFIX = "harness.";
+
+    /**
+     * Header written at the start of every message content, holding the publish time and the warm up flag
+     */
+    static final int CONTENT_HEADER_SIZE = 9;
+
+    private final int queueCount;
+
+    private final int publishersPerQueue;
+
+    private final int subscribersPerQueue;
+
+    private final int messagesPerPublisher;
+
+    private final int warmupMessagesPerPublisher;
+
+    private final int messageSize;
+
+    private final int publishRate;
+
+    private final int completionTimeout;
+
+    private final String inboundWaitStrategy;
+
+    private final String deliveryWaitStrategy;
+
+    private final String databaseUrl;
+
+    private final String reportFile;
+
+    HarnessConfiguration() {
+        queueCount = readInt("queues", 1);
+        publishersPerQueue = readInt("publishersPerQueue", 1);
+        subscribersPerQueue = readInt("subscribersPerQueue", 1);
+        messagesPerPublisher = readInt("messages", 100000);
+        warmupMessagesPerPublisher = readInt("warmupMessages", 10000);
+        messageSize = Math.max(readInt("messageSize", 1024), CONTENT_HEADER_SIZE);
+        publishRate = readInt("rate", 0);
+        completionTimeout = readInt("timeout", 300);
+        inboundWaitStrategy = System.getProperty(PREFIX + "inboundWaitStrategy");
+        deliveryWaitStrategy = System.getProperty(PREFIX + "deliveryWaitStrategy");
+        databaseUrl = System.getProperty(PREFIX + "databaseUrl",
+                "jdbc:h2:mem:andes-harness;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000");
+        reportFile = System.getProperty(PREFIX + "report", "endtoend-report.json");
+    }
+
+    private static int readInt(String name, int defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (null == value) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("System property " + PREFIX + name + " must be an integer, but was "
+                    + value, e);
+        }
+    }
+
+    /**
+     * @return number of queues messages are published to
+     */
+    int getQueueCount() {
+        return queueCount;
+    }
+
+    /**
+     * @return number of publishers of each queue
+     */
+    int getPublishersPerQueue() {
+        return publishersPerQueue;
+    }
+
+    /**
+     * @return number of subscribers of each queue. Messages of a queue are shared between its subscribers.
+     */
+    int getSubscribersPerQueue() {
+        return subscribersPerQueue;
+    }
+
+    /**
+     * @return number of measured messages sent by each publisher
+     */
+    int getMessagesPerPublisher() {
+        return messagesPerPublisher;
+    }
+
+    /**
+     * @return number of messages each publisher sends before the measured messages. They are not recorded.
+     */
+    int getWarmupMessagesPerPublisher() {
+        return warmupMessagesPerPublisher;
+    }
+
+    /**
+     * @return content length of each message in bytes
+     */
+    int getMessageSize() {
+        return messageSize;
+    }
+
+    /**
+     * @return messages per second sent by each publisher, 0 to send as fast as the kernel accepts them
+     */
+    int getPublishRate() {
+        return publishRate;
+    }
+
+    /**
+     * @return seconds to wait for all messages to be delivered and acknowledged after publishing completes
+     */
+    int getCompletionTimeout() {
+        return completionTimeout;
+    }
+
+    /**
+     * @return wait strategy of the inbound disruptors, null to keep the one in broker.xml
+     */
+    String getInboundWaitStrategy() {
+        return inboundWaitStrategy;
+    }
+
+    /**
+     * @return wait strategy of the delivery disruptor, null to keep the one in broker.xml
+     */
+    String getDeliveryWaitStrategy() {
+        return deliveryWaitStrategy;
+    }
+
+    /**
+     * @return JDBC URL of the H2 database used for the message and context stores
+     */
+    String getDatabaseUrl() {
+        return databaseUrl;
+    }
+
+    /**
+     * @return path of the file the report is written to
+     */
+    String getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * @return number of deliveries expected over all subscribers, including warm up messages
+     */
+    long getExpectedDeliveries() {
+        return (long) queueCount * publishersPerQueue * (warmupMessagesPerPublisher + messagesPerPublisher);
+    }
+
+    JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("queues", queueCount);
+        json.put("publishersPerQueue", publishersPerQueue);
+        json.put("subscribersPerQueue", subscribersPerQueue);
+        json.put("messagesPerPublisher", messagesPerPublisher);
+        json.put("warmupMessagesPerPublisher", warmupMessagesPerPublisher);
+        json.put("messageSize", messageSize);
+        json.put("publishRate", publishRate);
+        json.put("inboundWaitStrategy", inboundWaitStrategy);
+        json.put("deliveryWaitStrategy", deliveryWaitStrategy);
+        json.put("databaseUrl", databaseUrl);
+        return json;
+    }
+}
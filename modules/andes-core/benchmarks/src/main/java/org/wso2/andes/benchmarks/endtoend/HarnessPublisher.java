@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.Andes;
+import org.wso2.andes.kernel.AndesChannel;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.FlowControlListener;
+import org.wso2.andes.kernel.disruptor.inbound.PubAckHandler;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes messages to a queue through an Andes channel, the way a protocol connection does. The publish time and
+ * whether the message is measured are written to the head of the content, so subscribers can record the latency of
+ * the message.
+ * <p>
+ * With a publish rate set, latencies are measured from the time a message was due to be sent rather than the time
+ * it was sent. A publisher held back by flow control then does not hide the delay of the messages it could not
+ * send.
+ */
+class HarnessPublisher implements Runnable, FlowControlListener, PubAckHandler {
+
+    private static final Log log = LogFactory.getLog(HarnessPublisher.class);
+
+    /**
+     * Metadata property holding the {@link System#nanoTime()} the latency of the message is measured from
+     */
+    private static final String PUBLISH_TIME_PROPERTY = "harness.publishTime";
+
+    /**
+     * Metadata property holding whether the message is recorded
+     */
+    private static final String MEASURED_PROPERTY = "harness.measured";
+
+    private final String queueName;
+
+    private final HarnessConfiguration configuration;
+
+    private final StageRecorder publishStage;
+
+    private final StageRecorder persistStage;
+
+    private final byte[] encodedMetadata;
+
+    private final byte[] payload;
+
+    private final int maxChunkSize;
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    private AndesChannel channel;
+
+    private boolean blocked = false;
+
+    /**
+     * @param queueName     queue the messages are published to
+     * @param configuration workload of the run
+     * @param publishStage  records the time taken to hand a message over to the kernel
+     * @param persistStage  records the time until the kernel acknowledges a stored message
+     * @param random        source of the message payload
+     */
+    HarnessPublisher(String queueName, HarnessConfiguration configuration, StageRecorder publishStage,
+                     StageRecorder persistStage, Random random) {
+        this.queueName = queueName;
+        this.configuration = configuration;
+        this.publishStage = publishStage;
+        this.persistStage = persistStage;
+        encodedMetadata = BenchmarkEnvironment.createAmqpMetadata(AMQPUtils.DIRECT_EXCHANGE_NAME, queueName,
+                configuration.getMessageSize());
+        payload = BenchmarkEnvironment.createPayload(configuration.getMessageSize(), random);
+        maxChunkSize = BenchmarkEnvironment.getMaxChunkSize();
+    }
+
+    /**
+     * Open the Andes channel of the publisher
+     */
+    void open() {
+        channel = Andes.getInstance().createChannel(this);
+        channel.setDestination(queueName);
+    }
+
+    /**
+     * Close the Andes channel of the publisher
+     */
+    void close() {
+        Andes.getInstance().deleteChannel(channel);
+    }
+
+    /**
+     * @return number of messages the kernel failed to store
+     */
+    long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public void run() {
+        int warmupMessages = configuration.getWarmupMessagesPerPublisher();
+        int totalMessages = warmupMessages + configuration.getMessagesPerPublisher();
+        long interval = (configuration.getPublishRate() > 0)
+                ? TimeUnit.SECONDS.toNanos(1) / configuration.getPublishRate() : 0;
+        long nextPublishTime = System.nanoTime();
+
+        try {
+            for (int i = 0; i < totalMessages; i++) {
+                long publishTime;
+                if (interval > 0) {
+                    waitUntil(nextPublishTime);
+                    publishTime = nextPublishTime;
+                    nextPublishTime = nextPublishTime + interval;
+                } else {
+                    publishTime = System.nanoTime();
+                }
+                waitWhileBlocked();
+
+                boolean measured = i >= warmupMessages;
+                Andes.getInstance().messageReceived(createMessage(publishTime, measured), channel, this);
+                if (measured) {
+                    publishStage.record(publishTime, System.nanoTime());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Publisher of " + queueName + " was interrupted");
+        }
+    }
+
+    private AndesMessage createMessage(long publishTime, boolean measured) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata(0, encodedMetadata, true);
+        metadata.setArrivalTime(System.currentTimeMillis());
+        metadata.setMessageContentLength(payload.length);
+        metadata.addProperty(PUBLISH_TIME_PROPERTY, publishTime);
+        metadata.addProperty(MEASURED_PROPERTY, measured);
+
+        AndesMessage message = new AndesMessage(metadata);
+        for (int offset = 0; offset < payload.length; offset = offset + maxChunkSize) {
+            byte[] data = new byte[Math.min(maxChunkSize, payload.length - offset)];
+            System.arraycopy(payload, offset, data, 0, data.length);
+            if (0 == offset) {
+                writeContentHeader(data, publishTime, measured);
+            }
+            AndesMessagePart part = new AndesMessagePart();
+            part.setOffSet(offset);
+            part.setData(data);
+            message.addMessagePart(part);
+        }
+        return message;
+    }
+
+    /**
+     * Write the publish time and whether the message is measured to the head of the content
+     *
+     * @param firstChunk  first content chunk, at least {@link HarnessConfiguration#CONTENT_HEADER_SIZE} long
+     * @param publishTime time the latency of the message is measured from
+     * @param measured    true if the message is recorded
+     */
+    private static void writeContentHeader(byte[] firstChunk, long publishTime, boolean measured) {
+        ByteBuffer header = ByteBuffer.wrap(firstChunk);
+        header.putLong(publishTime);
+        header.put((byte) (measured ? 1 : 0));
+    }
+
+    private static void waitUntil(long time) {
+        long remaining = time - System.nanoTime();
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            remaining = time - System.nanoTime();
+        }
+    }
+
+    private synchronized void waitWhileBlocked() throws InterruptedException {
+        while (blocked) {
+            wait();
+        }
+    }
+
+    @Override
+    public void ack(AndesMessageMetadata metadata) {
+        if (Boolean.TRUE.equals(metadata.getProperty(MEASURED_PROPERTY))) {
+            persistStage.record((Long) metadata.getProperty(PUBLISH_TIME_PROPERTY), System.nanoTime());
+        }
+    }
+
+    @Override
+    public void nack(AndesMessageMetadata metadata) {
+        rejectedCount.incrementAndGet();
+    }
+
+    @Override
+    public synchronized void block() {
+        blocked = true;
+    }
+
+    @Override
+    public synchronized void unblock() {
+        blocked = false;
+        notifyAll();
+    }
+
+    @Override
+    public void disconnect() {
+        log.warn("Kernel requested to disconnect the publisher of " + queueName);
+    }
+}
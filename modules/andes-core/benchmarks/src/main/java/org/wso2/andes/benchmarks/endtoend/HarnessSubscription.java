@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.Andes;
+import org.wso2.andes.kernel.AndesAckData;
+import org.wso2.andes.kernel.AndesContent;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.ProtocolMessage;
+import org.wso2.andes.kernel.subscription.OutboundSubscription;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscriber of a queue which acknowledges every message it receives. Acknowledgements are sent from a thread of
+ * the subscriber, as they arrive from a client connection, so delivery threads of the kernel are not held up.
+ */
+class HarnessSubscription implements OutboundSubscription {
+
+    private static final Log log = LogFactory.getLog(HarnessSubscription.class);
+
+    private final String queueName;
+
+    private final UUID channelId = UUID.randomUUID();
+
+    private final long subscribeTime = System.currentTimeMillis();
+
+    private final StageRecorder deliverStage;
+
+    private final StageRecorder acknowledgeStage;
+
+    private final AtomicLong deliveredCount;
+
+    private final AtomicLong acknowledgedCount;
+
+    private final ExecutorService acknowledger;
+
+    /**
+     * @param queueName         queue subscribed to
+     * @param deliverStage      records the time until a message is delivered to a subscriber
+     * @param acknowledgeStage  records the time until the acknowledgement of a message is handed over to the kernel
+     * @param deliveredCount    counter of messages delivered to all subscribers
+     * @param acknowledgedCount counter of messages acknowledged by all subscribers
+     */
+    HarnessSubscription(String queueName, StageRecorder deliverStage, StageRecorder acknowledgeStage,
+                        AtomicLong deliveredCount, AtomicLong acknowledgedCount) {
+        this.queueName = queueName;
+        this.deliverStage = deliverStage;
+        this.acknowledgeStage = acknowledgeStage;
+        this.deliveredCount = deliveredCount;
+        this.acknowledgedCount = acknowledgedCount;
+        acknowledger = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("HarnessAcknowledger-" + channelId).build());
+    }
+
+    /**
+     * Stop sending acknowledgements, after those already received are sent
+     *
+     * @param timeout seconds to wait for pending acknowledgements
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void close(int timeout) throws InterruptedException {
+        acknowledger.shutdown();
+        if (!acknowledger.awaitTermination(timeout, TimeUnit.SECONDS)) {
+            log.warn("Acknowledgements of a subscriber of " + queueName + " were not sent within " + timeout + "s");
+        }
+    }
+
+    @Override
+    public boolean sendMessageToSubscriber(ProtocolMessage protocolMessage, AndesContent content)
+            throws AndesException {
+        long deliverTime = System.nanoTime();
+
+        ByteBuffer header = ByteBuffer.allocate(HarnessConfiguration.CONTENT_HEADER_SIZE);
+        content.putContent(0, header);
+        header.flip();
+        final long publishTime = header.getLong();
+        final boolean measured = 1 == header.get();
+        if (measured) {
+            deliverStage.record(publishTime, deliverTime);
+        }
+        deliveredCount.incrementAndGet();
+
+        final long messageId = protocolMessage.getMessageID();
+        acknowledger.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Andes.getInstance().ackReceived(new AndesAckData(channelId, messageId));
+                    if (measured) {
+                        acknowledgeStage.record(publishTime, System.nanoTime());
+                    }
+                    acknowledgedCount.incrementAndGet();
+                } catch (AndesException e) {
+                    log.error("Error while acknowledging message " + messageId, e);
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void forcefullyDisconnect() throws AndesException {
+        log.warn("Kernel requested to disconnect a subscriber of " + queueName);
+    }
+
+    @Override
+    public boolean isMessageAcceptedBySelector(AndesMessageMetadata messageMetadata) throws AndesException {
+        return true;
+    }
+
+    @Override
+    public boolean isOutboundConnectionLive() {
+        return !acknowledger.isShutdown();
+    }
+
+    @Override
+    public UUID getChannelID() {
+        return channelId;
+    }
+
+    @Override
+    public long getSubscribeTime() {
+        return subscribeTime;
+    }
+
+    @Override
+    public String getProtocolQueueName() {
+        return queueName;
+    }
+}
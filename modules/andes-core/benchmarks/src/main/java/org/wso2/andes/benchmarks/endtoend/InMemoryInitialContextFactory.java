@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.spi.InitialContextFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JNDI context factory serving objects bound in this process, so the RDBMS stores can look up the embedded data
+ * source the way they look up a data source configured in the server. Only lookup by a string name is supported.
+ */
+public class InMemoryInitialContextFactory implements InitialContextFactory {
+
+    private static final Map<String, Object> BINDINGS = new ConcurrentHashMap<>();
+
+    /**
+     * Bind an object and make this factory the default initial context factory of the process
+     *
+     * @param name   JNDI name
+     * @param object object returned on a lookup of the name
+     */
+    static void bind(String name, Object object) {
+        BINDINGS.put(name, object);
+        System.setProperty(Context.INITIAL_CONTEXT_FACTORY, InMemoryInitialContextFactory.class.getName());
+    }
+
+    @Override
+    public Context getInitialContext(Hashtable<?, ?> environment) {
+        return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] { Context.class },
+                new ContextHandler());
+    }
+
+    private static class ContextHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("lookup".equals(methodName) && args[0] instanceof String) {
+                Object object = BINDINGS.get(args[0]);
+                if (null == object) {
+                    throw new NameNotFoundException(args[0] + " is not bound");
+                }
+                return object;
+            } else if ("close".equals(methodName)) {
+                return null;
+            } else if ("toString".equals(methodName)) {
+                return "InMemoryContext" + BINDINGS.keySet();
+            } else if ("hashCode".equals(methodName)) {
+                return System.identityHashCode(proxy);
+            } else if ("equals".equals(methodName)) {
+                return proxy == args[0];
+            }
+            throw new UnsupportedOperationException(methodName + " is not supported by the in memory context");
+        }
+    }
+}
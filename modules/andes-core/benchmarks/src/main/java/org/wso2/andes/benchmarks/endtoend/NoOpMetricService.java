@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Metric service which discards every metric. Within the server the metric service is an OSGi service. The
+ * embedded kernel needs one registered before it records its first metric.
+ * <p>
+ * The service is registered by reflection so the harness does not depend on the internal classes of the metrics
+ * manager at compile time. Metric objects returned to the kernel are proxies of the requested interfaces which do
+ * nothing.
+ */
+public final class NoOpMetricService implements InvocationHandler {
+
+    private static final Log log = LogFactory.getLog(NoOpMetricService.class);
+
+    private static final String SERVICE_HOLDER_CLASS = "org.wso2.carbon.metrics.manager.internal.ServiceReferenceHolder";
+
+    private static final String METRIC_SERVICE_CLASS = "org.wso2.carbon.metrics.manager.MetricService";
+
+    private NoOpMetricService() {
+    }
+
+    /**
+     * Register a metric service discarding every metric, unless a metric service is already registered
+     */
+    public static void register() {
+        try {
+            Class<?> holderClass = Class.forName(SERVICE_HOLDER_CLASS);
+            Class<?> serviceClass = Class.forName(METRIC_SERVICE_CLASS);
+            Object holder = holderClass.getMethod("getInstance").invoke(null);
+            if (null != holderClass.getMethod("getMetricService").invoke(holder)) {
+                return;
+            }
+            Object service = Proxy.newProxyInstance(serviceClass.getClassLoader(), new Class<?>[] { serviceClass },
+                    new NoOpMetricService());
+            holderClass.getMethod("setMetricService", serviceClass).invoke(holder, service);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Could not register a metric service. Recording metrics fails unless a metric service is "
+                     + "available.", e);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String methodName = method.getName();
+        if ("hashCode".equals(methodName)) {
+            return System.identityHashCode(proxy);
+        } else if ("equals".equals(methodName)) {
+            return proxy == args[0];
+        } else if ("toString".equals(methodName)) {
+            return "NoOp" + method.getDeclaringClass().getSimpleName();
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType.isInterface()) {
+            return Proxy.newProxyInstance(returnType.getClassLoader(), new Class<?>[] { returnType }, this);
+        } else if (returnType.isPrimitive() && void.class != returnType) {
+            // Default value of the primitive type
+            return Array.get(Array.newInstance(returnType, 1), 0);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.endtoend;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the latency of the measured messages reaching a stage of the message path, and the rate at which they
+ * pass the stage. Latencies are recorded in nanoseconds and may be recorded from any thread.
+ */
+class StageRecorder {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9", "p99.99" };
+
+    private final String name;
+
+    private final String description;
+
+    private final Histogram histogram = new ConcurrentHistogram(3);
+
+    private final AtomicLong firstRecordTime = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong lastRecordTime = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param name        name of the stage in the report
+     * @param description what the latency of the stage is measured between
+     */
+    StageRecorder(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Record a message reaching the stage
+     *
+     * @param startTime  {@link System#nanoTime()} the latency is measured from
+     * @param recordTime {@link System#nanoTime()} the message reached the stage
+     */
+    void record(long startTime, long recordTime) {
+        histogram.recordValue(Math.max(recordTime - startTime, 0));
+        updateFirst(recordTime);
+        updateLast(recordTime);
+    }
+
+    private void updateFirst(long recordTime) {
+        long current = firstRecordTime.get();
+        while (recordTime < current && !firstRecordTime.compareAndSet(current, recordTime)) {
+            current = firstRecordTime.get();
+        }
+    }
+
+    private void updateLast(long recordTime) {
+        long current = lastRecordTime.get();
+        while (recordTime > current && !lastRecordTime.compareAndSet(current, recordTime)) {
+            current = lastRecordTime.get();
+        }
+    }
+
+    /**
+     * @return number of recorded messages
+     */
+    long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    /**
+     * @return messages per second passing the stage, between the first and the last recorded message
+     */
+    double getThroughput() {
+        long count = histogram.getTotalCount();
+        long window = lastRecordTime.get() - firstRecordTime.get();
+        if (count < 2 || window <= 0) {
+            return 0;
+        }
+        return (count - 1) * (double) TimeUnit.SECONDS.toNanos(1) / window;
+    }
+
+    JSONObject toJSON() throws JSONException {
+        JSONObject latency = new JSONObject();
+        latency.put("min", toMicros(histogram.getMinValue()));
+        latency.put("mean", histogram.getMean() / 1000);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            latency.put(PERCENTILE_NAMES[i], toMicros(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        latency.put("max", toMicros(histogram.getMaxValue()));
+
+        JSONObject json = new JSONObject();
+        json.put("description", description);
+        json.put("count", getCount());
+        json.put("throughputPerSecond", getThroughput());
+        json.put("latencyMicros", latency);
+        return json;
+    }
+
+    private static double toMicros(long nanos) {
+        return nanos / 1000d;
+    }
+}
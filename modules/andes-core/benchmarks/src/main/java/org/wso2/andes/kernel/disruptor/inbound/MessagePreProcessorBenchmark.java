@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor.inbound;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.AndesChannel;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.registry.MessageRouterRegistry;
+import org.wso2.andes.kernel.router.TopicMessageRouter;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of pre-processing a published topic message, which assigns message ids and clones the message for every
+ * storage queue it is routed to. Kept in the package of {@link MessagePreProcessor} to reach the package private
+ * parts of the inbound event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class MessagePreProcessorBenchmark {
+
+    private static final String ROUTING_KEY = "stocks.region0.symbol0";
+
+    /**
+     * Number of storage queues the message is routed to
+     */
+    @Param({ "1", "10", "100" })
+    public int routedQueueCount;
+
+    @Param({ "1024", "65536" })
+    public int contentLength;
+
+    private MessagePreProcessor preProcessor;
+
+    private InboundEventContainer event;
+
+    private AndesMessageMetadata metadata;
+
+    private List<AndesMessagePart> content;
+
+    private long sequence;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+
+        MessageRouterRegistry messageRouterRegistry = new MessageRouterRegistry();
+        TopicMessageRouter topicExchange = BenchmarkEnvironment.createTopicExchange();
+        messageRouterRegistry.registerMessageRouter(topicExchange.getName(), topicExchange);
+        AndesContext.getInstance().setMessageRouterRegistry(messageRouterRegistry);
+
+        for (int i = 0; i < routedQueueCount; i++) {
+            StorageQueue queue = new StorageQueue("queue-" + i, true, false, null, false);
+            queue.bindQueueToMessageRouter(ROUTING_KEY, topicExchange);
+        }
+
+        Random random = new Random(BenchmarkEnvironment.SEED);
+        metadata = new AndesMessageMetadata(0, BenchmarkEnvironment.createAmqpMetadata(ROUTING_KEY, contentLength),
+                true);
+        content = BenchmarkEnvironment.createContent(0, contentLength, random);
+
+        preProcessor = new MessagePreProcessor();
+        event = new InboundEventContainer();
+        event.setMessageList(new UnaccountedMessageList());
+    }
+
+    @Benchmark
+    public List<AndesMessage> preProcessMessage() throws Exception {
+        AndesMessage message = new AndesMessage(metadata.shallowCopy(0));
+        for (AndesMessagePart part : content) {
+            message.addMessagePart(part);
+        }
+
+        event.clear();
+        event.setEventType(InboundEventContainer.Type.MESSAGE_EVENT);
+        event.addMessage(message);
+        preProcessor.onEvent(event, sequence++, true);
+        return event.getMessageList();
+    }
+
+    /**
+     * Message list which does not record messages in the flow control buffers of a channel. Flow control is not
+     * part of the benchmarked path.
+     */
+    private static class UnaccountedMessageList extends InboundMessageList {
+
+        @Override
+        public void registerAddMessage(AndesMessage message, AndesChannel channel) {
+            getMessageList().add(message);
+        }
+
+        @Override
+        public AndesMessage registerPopMessage(int index, AndesChannel channel) {
+            return getMessageList().remove(index);
+        }
+    }
+}
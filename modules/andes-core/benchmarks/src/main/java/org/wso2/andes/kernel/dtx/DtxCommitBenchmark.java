@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.dtx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.benchmarks.endtoend.NoOpMetricService;
+import org.wso2.andes.dtx.XidImpl;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.DtxStore;
+import org.wso2.andes.kernel.disruptor.DisruptorEventCallback;
+import org.wso2.andes.kernel.disruptor.inbound.InboundEventManager;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.transaction.xa.Xid;
+
+/**
+ * Throughput of two phase dtx.commit with 1, 16 and 128 independent branches committed in parallel. Each thread
+ * commits its own prepared branch through the {@link DtxRegistry} and the inbound disruptor, and waits for the
+ * commit to complete. The dtx store only spends a fixed time on every database transaction it runs, which makes the
+ * number of transactions, not the database, the cost. Results are in commits per second. Kept in the package of
+ * {@link DtxRegistry} to reach the package private parts of the registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class DtxCommitBenchmark {
+
+    /**
+     * Time spent by the dtx store on a database transaction, in microseconds
+     */
+    @Param({ "0", "500" })
+    public int transactionLatencyMicros;
+
+    private InboundEventManager eventManager;
+
+    private DtxRegistry dtxRegistry;
+
+    private final AtomicLong branchCount = new AtomicLong();
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initialise();
+        NoOpMetricService.register();
+        eventManager = new InboundEventManager(null);
+        dtxRegistry = new DtxRegistry(new FixedLatencyDtxStore(transactionLatencyMicros), null, eventManager);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dtxRegistry.stop();
+        eventManager.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void commitOneBranch() throws Exception {
+        commitBranch();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void commit16Branches() throws Exception {
+        commitBranch();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public void commit128Branches() throws Exception {
+        commitBranch();
+    }
+
+    /**
+     * Register a new prepared branch and commit it
+     */
+    private void commitBranch() throws Exception {
+        Xid xid = new XidImpl(ByteBuffer.allocate(8).putLong(branchCount.incrementAndGet()).array(), 1,
+                              "benchmark".getBytes());
+        DtxBranch branch = new DtxBranch(UUID.randomUUID(), xid, dtxRegistry, eventManager);
+        dtxRegistry.registerBranch(branch);
+        branch.setState(DtxBranch.State.PREPARED);
+
+        CommitCallback callback = new CommitCallback();
+        dtxRegistry.commit(xid, false, callback, null);
+        callback.await();
+    }
+
+    /**
+     * Callback releasing the committing thread once the commit completes
+     */
+    private static class CommitCallback implements DisruptorEventCallback {
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private volatile Exception exception;
+
+        @Override
+        public void execute() {
+            completed.countDown();
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            this.exception = exception;
+            completed.countDown();
+        }
+
+        void await() throws Exception {
+            completed.await();
+            if (null != exception) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Dtx store spending a fixed time on every database transaction. Commits grouped into one transaction pay the
+     * time once.
+     */
+    private static class FixedLatencyDtxStore implements DtxStore {
+
+        private final long transactionLatencyNanos;
+
+        FixedLatencyDtxStore(int transactionLatencyMicros) {
+            transactionLatencyNanos = TimeUnit.MICROSECONDS.toNanos(transactionLatencyMicros);
+        }
+
+        @Override
+        public long storeDtxRecords(Xid xid, List<AndesMessage> enqueueRecords,
+                                    List<? extends AndesMessageMetadata> dequeueRecords) {
+            runTransaction();
+            return DtxBranch.NULL_XID;
+        }
+
+        @Override
+        public void updateOnCommit(long internalXid, List<AndesMessage> enqueueRecords) {
+            runTransaction();
+        }
+
+        @Override
+        public void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) {
+            runTransaction();
+        }
+
+        @Override
+        public void updateOnOnePhaseCommit(List<AndesMessage> enqueueRecords,
+                                           List<AndesPreparedMessageMetadata> dequeueRecordsMetadata) {
+            runTransaction();
+        }
+
+        @Override
+        public void updateOnRollback(long internalXid, List<AndesPreparedMessageMetadata> messagesToRestore) {
+            runTransaction();
+        }
+
+        @Override
+        public long recoverBranchData(DtxBranch branch, String nodeId) {
+            return DtxBranch.NULL_XID;
+        }
+
+        @Override
+        public Set<XidImpl> getStoredXidSet(String nodeId) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isOperational(String testString, long testTime) {
+            return true;
+        }
+
+        private void runTransaction() {
+            if (transactionLatencyNanos > 0) {
+                LockSupport.parkNanos(transactionLatencyNanos);
+            }
+        }
+    }
+}
@@ -18,4 +18,11 @@ public class Constants {
     public static final String JKS_PATH_PROPERTY_NAME = "jks_path";
     public static final String KEY_STORE_PASSWORD_PROPERTY_NAME = "key_store_password";
     public static final String KEY_MANAGER_PASSWORD_PROPERTY_NAME = "key_manager_password";
+    public static final String BOSS_THREAD_COUNT_PROPERTY_NAME = "boss_thread_count";
+    public static final String WORKER_THREAD_COUNT_PROPERTY_NAME = "worker_thread_count";
+    public static final String NATIVE_TRANSPORT_ENABLED = "native_transport_enabled";
+    public static final String BACKLOG_PROPERTY_NAME = "backlog";
+    public static final String POOLED_ALLOCATOR_ENABLED = "pooled_allocator_enabled";
+    public static final String WRITE_BUFFER_HIGH_WATER_MARK_PROPERTY_NAME = "write_buffer_high_water_mark";
+    public static final String WRITE_BUFFER_LOW_WATER_MARK_PROPERTY_NAME = "write_buffer_low_water_mark";
 }
@@ -351,6 +351,20 @@ public class ProtocolProcessor implements EventHandler<ValueEvent>, PubAckHandle
         }
     }
 
+    /**
+     * Suspends or resumes message delivery to the client once its connection crosses the write buffer water marks
+     *
+     * @param clientID the id of the client
+     * @param writable whether the connection of the client can accept more messages
+     */
+    public void writabilityChanged(String clientID, boolean writable) {
+        try {
+            AndesMQTTBridge.getBridgeInstance().onWritabilityChange(clientID, writable);
+        } catch (MQTTException e) {
+            log.error("Error occurred while processing the writability change of client " + clientID, e);
+        }
+    }
+
     void processPubAck(String clientID, int messageID) {
         //Remove the message from message store
         //TODO removed the storage service
@@ -33,6 +33,7 @@ import org.dna.mqtt.moquette.server.IAuthenticator;
 import org.dna.mqtt.moquette.server.ServerChannel;
 import org.dna.mqtt.wso2.MqttLogExceptionHandler;
 import org.dna.mqtt.wso2.MQTTPingRequest;
+import org.dna.mqtt.wso2.MQTTWritabilityChange;
 import org.dna.mqtt.wso2.MQTTSubscriptionStore;
 import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.configuration.enums.AndesConfiguration;
@@ -203,6 +204,9 @@ public class SimpleMessaging implements IMessaging, EventHandler<ValueEvent> {
             }else if(message instanceof MQTTPingRequest){
                 String clientID = ((MQTTPingRequest) message).getChannelId();
                 mqttProcessor.pingRequestReceived(clientID);
+            } else if (message instanceof MQTTWritabilityChange) {
+                MQTTWritabilityChange writabilityChange = (MQTTWritabilityChange) message;
+                mqttProcessor.writabilityChanged(writabilityChange.getChannelId(), writabilityChange.isWritable());
             }
             else {
                 throw new RuntimeException("Illegal message received " + message);
@@ -67,7 +67,28 @@ public class Server {
 
         mqttProperties.put(Constants.HOST_PROPERTY_NAME,AndesConfigurationManager.
                                           readValue(AndesConfiguration.TRANSPORTS_MQTT_BIND_ADDRESS));
-        
+
+        mqttProperties.put(Constants.BOSS_THREAD_COUNT_PROPERTY_NAME, AndesConfigurationManager.
+                                          readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_BOSS_THREAD_COUNT));
+
+        mqttProperties.put(Constants.WORKER_THREAD_COUNT_PROPERTY_NAME, AndesConfigurationManager.
+                                          readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_WORKER_THREAD_COUNT));
+
+        mqttProperties.put(Constants.NATIVE_TRANSPORT_ENABLED, AndesConfigurationManager.
+                                          readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_NATIVE_TRANSPORT_ENABLED));
+
+        mqttProperties.put(Constants.BACKLOG_PROPERTY_NAME, AndesConfigurationManager.
+                                          readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_BACKLOG));
+
+        mqttProperties.put(Constants.POOLED_ALLOCATOR_ENABLED, AndesConfigurationManager.
+                                          readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_POOLED_ALLOCATOR_ENABLED));
+
+        mqttProperties.put(Constants.WRITE_BUFFER_HIGH_WATER_MARK_PROPERTY_NAME, AndesConfigurationManager.
+                readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_WRITE_BUFFER_HIGH_WATER_MARK));
+
+        mqttProperties.put(Constants.WRITE_BUFFER_LOW_WATER_MARK_PROPERTY_NAME, AndesConfigurationManager.
+                readValue(AndesConfiguration.TRANSPORTS_MQTT_NETTY_WRITE_BUFFER_LOW_WATER_MARK));
+
         return mqttProperties;
     }
 
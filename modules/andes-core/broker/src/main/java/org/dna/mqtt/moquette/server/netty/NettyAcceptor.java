@@ -2,12 +2,20 @@ package org.dna.mqtt.moquette.server.netty;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -20,6 +28,7 @@ import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.internal.PlatformDependent;
 import org.dna.mqtt.commons.Constants;
 import org.dna.mqtt.moquette.messaging.spi.IMessaging;
 import org.dna.mqtt.moquette.parser.netty.MQTTDecoder;
@@ -77,13 +86,18 @@ public class NettyAcceptor implements ServerAcceptor {
 
     EventLoopGroup m_bossGroup;
     EventLoopGroup m_workerGroup;
+    Class<? extends ServerChannel> m_serverChannelClass;
+    ByteBufAllocator m_allocator;
+    int m_backlog;
+    int m_writeBufferHighWaterMark;
+    int m_writeBufferLowWaterMark;
     BytesMetricsCollector m_bytesMetricsCollector = new BytesMetricsCollector();
     MessageMetricsCollector m_metricsCollector = new MessageMetricsCollector();
 
     @Override
     public void initialize(IMessaging messaging, Properties props) throws IOException {
-        m_bossGroup = new NioEventLoopGroup();
-        m_workerGroup = new NioEventLoopGroup();
+        initEventLoops(props);
+        initChannelOptions(props);
 
         /**
          * We leave the websockets commented for now since we do not support end to end integration with it
@@ -129,13 +143,90 @@ public class NettyAcceptor implements ServerAcceptor {
         }
     }
 
+    /**
+     * Create the boss and worker event loops. The native epoll transport is used when it is enabled and the native
+     * library could be loaded, otherwise the acceptor falls back to NIO.
+     *
+     * @param props the configuration details
+     */
+    private void initEventLoops(Properties props) {
+        int bossThreads = getIntProperty(props, Constants.BOSS_THREAD_COUNT_PROPERTY_NAME, 1);
+        int workerThreads = getIntProperty(props, Constants.WORKER_THREAD_COUNT_PROPERTY_NAME, 0);
+        boolean nativeTransport = getBooleanProperty(props, Constants.NATIVE_TRANSPORT_ENABLED, true);
+
+        // The native transport reads and writes through buffer addresses, which are only reachable with Unsafe
+        if (nativeTransport && Epoll.isAvailable() && PlatformDependent.hasUnsafe()) {
+            m_bossGroup = new EpollEventLoopGroup(bossThreads);
+            m_workerGroup = new EpollEventLoopGroup(workerThreads);
+            m_serverChannelClass = EpollServerSocketChannel.class;
+            log.info("MQTT transport uses native epoll event loops");
+        } else {
+            if (nativeTransport) {
+                log.info("Native epoll transport is not available, MQTT transport falls back to NIO: {}",
+                        Epoll.isAvailable() ? "sun.misc.Unsafe is unavailable"
+                                : String.valueOf(Epoll.unavailabilityCause()));
+            }
+            m_bossGroup = new NioEventLoopGroup(bossThreads);
+            m_workerGroup = new NioEventLoopGroup(workerThreads);
+            m_serverChannelClass = NioServerSocketChannel.class;
+        }
+    }
+
+    /**
+     * Read the allocator, backlog and write buffer water marks applied to the bound and accepted channels.
+     *
+     * @param props the configuration details
+     */
+    private void initChannelOptions(Properties props) {
+        boolean pooled = getBooleanProperty(props, Constants.POOLED_ALLOCATOR_ENABLED, true);
+        m_allocator = pooled ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+        m_backlog = getIntProperty(props, Constants.BACKLOG_PROPERTY_NAME, 1024);
+        m_writeBufferHighWaterMark = getIntProperty(props, Constants.WRITE_BUFFER_HIGH_WATER_MARK_PROPERTY_NAME,
+                64 * 1024);
+        m_writeBufferLowWaterMark = getIntProperty(props, Constants.WRITE_BUFFER_LOW_WATER_MARK_PROPERTY_NAME,
+                32 * 1024);
+
+        if (m_writeBufferLowWaterMark > m_writeBufferHighWaterMark) {
+            log.warn("Write buffer low water mark {} is above the high water mark {}, using the high water mark "
+                    + "for both", m_writeBufferLowWaterMark, m_writeBufferHighWaterMark);
+            m_writeBufferLowWaterMark = m_writeBufferHighWaterMark;
+        }
+    }
+
+    /**
+     * Apply the write buffer water marks to an accepted channel. Netty rejects a high water mark below the current
+     * low water mark (and vice versa), so the marks are set in the order that keeps them valid.
+     *
+     * @param config configuration of the accepted channel
+     */
+    private void setWriteBufferWaterMarks(ChannelConfig config) {
+        if (m_writeBufferHighWaterMark < config.getWriteBufferLowWaterMark()) {
+            config.setWriteBufferLowWaterMark(m_writeBufferLowWaterMark);
+            config.setWriteBufferHighWaterMark(m_writeBufferHighWaterMark);
+        } else {
+            config.setWriteBufferHighWaterMark(m_writeBufferHighWaterMark);
+            config.setWriteBufferLowWaterMark(m_writeBufferLowWaterMark);
+        }
+    }
+
+    private static int getIntProperty(Properties props, String key, int defaultValue) {
+        Object value = props.get(key);
+        return null == value ? defaultValue : Integer.parseInt(value.toString());
+    }
+
+    private static boolean getBooleanProperty(Properties props, String key, boolean defaultValue) {
+        Object value = props.get(key);
+        return null == value ? defaultValue : Boolean.parseBoolean(value.toString());
+    }
+
     private void initFactory(String host, int port, final PipelineInitializer pipeliner) {
         ServerBootstrap b = new ServerBootstrap();
         b.group(m_bossGroup, m_workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(m_serverChannelClass)
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     public void initChannel(SocketChannel ch) throws Exception {
+                        setWriteBufferWaterMarks(ch.config());
                         ChannelPipeline pipeline = ch.pipeline();
                         try {
                             pipeliner.init(pipeline);
@@ -145,10 +236,12 @@ public class NettyAcceptor implements ServerAcceptor {
                         }
                     }
                 })
-                .option(ChannelOption.SO_BACKLOG, 128)
+                .option(ChannelOption.SO_BACKLOG, m_backlog)
                 .option(ChannelOption.SO_REUSEADDR, true)
                 .option(ChannelOption.TCP_NODELAY, true)
-                .childOption(ChannelOption.SO_KEEPALIVE, true);
+                .option(ChannelOption.ALLOCATOR, m_allocator)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.ALLOCATOR, m_allocator);
         try {
             // Bind and start to accept incoming connections.
             ChannelFuture f = b.bind(host, port);
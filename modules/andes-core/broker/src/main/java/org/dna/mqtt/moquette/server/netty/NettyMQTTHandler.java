@@ -11,6 +11,7 @@ import org.dna.mqtt.moquette.proto.messages.AbstractMessage;
 import org.dna.mqtt.moquette.proto.messages.PingRespMessage;
 import org.dna.mqtt.moquette.server.Constants;
 import org.dna.mqtt.wso2.MQTTPingRequest;
+import org.dna.mqtt.wso2.MQTTWritabilityChange;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -97,6 +98,32 @@ public class NettyMQTTHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * Maps the write buffer water marks of the channel to back pressure. While the client does not drain its socket
+     * the channel stops reading from it and message delivery to its subscriptions is suspended.
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        ctx.channel().config().setAutoRead(writable);
+
+        NettyChannel channel;
+        synchronized (mqttChannelMapper) {
+            channel = mqttChannelMapper.get(ctx);
+        }
+        if (null != channel) {
+            Object clientID = channel.getAttribute(Constants.ATTR_CLIENTID);
+            // The client has not connected yet, there are no subscriptions to suspend
+            if (null != clientID) {
+                MQTTWritabilityChange writabilityChange = new MQTTWritabilityChange();
+                writabilityChange.setChannelId(clientID.toString());
+                writabilityChange.setWritable(writable);
+                m_messaging.handleProtocolMessage(channel, writabilityChange);
+            }
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause){
         // We log the error and close the connection at an event where and exception is caught
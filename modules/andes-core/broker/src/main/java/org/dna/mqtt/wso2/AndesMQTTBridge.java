@@ -244,4 +244,17 @@ public final class AndesMQTTBridge {
         }
         MQTTopicManager.getInstance().processPingRequest(clientID);
     }
+
+    /**
+     * Triggers when the connection of a client becomes writable or non writable, this will inform the topic manager
+     * to resume or suspend message delivery to the client
+     * @param clientID the id of the client
+     * @param writable whether the connection of the client can accept more messages
+     */
+    public void onWritabilityChange(String clientID, boolean writable) {
+        if (log.isDebugEnabled()) {
+            log.debug("Connection of client id " + clientID + " became " + (writable ? "writable" : "non writable"));
+        }
+        MQTTopicManager.getInstance().processWritabilityChange(clientID, writable);
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.dna.mqtt.wso2;
+
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage;
+
+/**
+ * Signals that the connection of a client crossed its write buffer water marks, this is used to suspend message
+ * delivery to the client while it cannot keep up and to resume it once the buffered messages are written
+ */
+public class MQTTWritabilityChange extends AbstractMessage {
+    /**
+     * Will include the id of the channel which changed its writability
+     */
+    private String channelId;
+
+    /**
+     * Whether the channel can accept more messages
+     */
+    private boolean writable;
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(String channelId) {
+        this.channelId = channelId;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    public void setWritable(boolean writable) {
+        this.writable = writable;
+    }
+}
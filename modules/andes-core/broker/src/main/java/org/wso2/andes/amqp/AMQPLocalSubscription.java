@@ -33,10 +33,8 @@ import org.wso2.andes.kernel.SubscriptionAlreadyClosedException;
 import org.wso2.andes.server.AMQChannel;
 import org.wso2.andes.server.binding.Binding;
 import org.wso2.andes.server.message.AMQMessage;
-import org.wso2.andes.server.message.MessageMetaData;
 import org.wso2.andes.server.queue.AMQQueue;
 import org.wso2.andes.server.queue.QueueEntry;
-import org.wso2.andes.server.store.StoredMessage;
 import org.wso2.andes.server.subscription.Subscription;
 import org.wso2.andes.server.subscription.SubscriptionImpl;
 import org.wso2.andes.kernel.subscription.OutboundSubscription;
@@ -45,9 +43,7 @@ import org.wso2.andes.AMQSubscriptionClosedException;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -74,12 +70,6 @@ public class AMQPLocalSubscription implements OutboundSubscription {
     //time when subscriber is created
     private long subscribeTime;
 
-    /*
-     * This map works as a cache for queue entries, preventing need to convert
-     * DeliverableAndesMetadata to queue entries two times
-     */
-    private Map<Long, StoredMessage<MessageMetaData>> storedMessageCache;
-
     //List of Delivery Rules to evaluate
     private List<AMQPDeliveryRule> amqpDeliveryRuleList = new ArrayList<>();
 
@@ -94,10 +84,6 @@ public class AMQPLocalSubscription implements OutboundSubscription {
             channel = ((SubscriptionImpl) amqpSubscription).getChannel();
             initializeDeliveryRules();
         }
-
-        //We leave the default values for initialCapacity and progression factor
-        //We re define concurrencyLevel as 2, since there will be only 2 threads which accesses it concurrently
-        this.storedMessageCache = new ConcurrentHashMap<>(16,0.75f,2);
     }
 
     /**
@@ -163,15 +149,14 @@ public class AMQPLocalSubscription implements OutboundSubscription {
     public boolean isMessageAcceptedBySelector(AndesMessageMetadata messageMetadata)
             throws AndesException {
 
+        if (amqpSubscription instanceof SubscriptionImpl) {
+            // Evaluate against a view of the metadata which is decoded only if a selector needs it
+            return ((SubscriptionImpl) amqpSubscription).isAcceptedByFilters(FilterableMetadata.of(messageMetadata));
+        }
+
         AMQMessage amqMessage = AMQPUtils.getAMQMessageFromAndesMetaData(messageMetadata);
         QueueEntry message = AMQPUtils.convertAMQMessageToQueueEntry(amqMessage, amqQueue);
-
-        if(amqpSubscription.hasInterest(message)) {
-            storedMessageCache.put(message.getMessage().getMessageNumber(), amqMessage.getStoredMessage());
-            return true;
-        } else {
-            return false;
-        }
+        return amqpSubscription.hasInterest(message);
     }
 
     /**
@@ -181,18 +166,7 @@ public class AMQPLocalSubscription implements OutboundSubscription {
     public boolean sendMessageToSubscriber(ProtocolMessage messageMetadata, AndesContent content)
             throws AndesException {
 
-        StoredMessage<MessageMetaData> cachedStoredMessage = storedMessageCache.get(messageMetadata.getMessageID());
-
-        AMQMessage message;
-
-        if(null != cachedStoredMessage) {
-            message = AMQPUtils.getQueueEntryFromStoredMessage(cachedStoredMessage, content);
-            storedMessageCache.remove(messageMetadata.getMessageID());
-            message.setAndesMetadataReference(messageMetadata);
-        } else {
-            message = AMQPUtils.getAMQMessageForDelivery(messageMetadata, content);
-        }
-
+        AMQMessage message = AMQPUtils.getAMQMessageForDelivery(messageMetadata, content);
         QueueEntry messageToSend = AMQPUtils.convertAMQMessageToQueueEntry(message, amqQueue);
 
         if (evaluateDeliveryRules(messageToSend)) {
@@ -41,7 +41,6 @@ import org.wso2.andes.server.queue.QueueEntry;
 import org.wso2.andes.server.queue.SimpleQueueEntryList;
 import org.wso2.andes.server.store.MessageMetaDataType;
 import org.wso2.andes.server.store.StorableMessageMetaData;
-import org.wso2.andes.server.store.StoredMessage;
 import org.wso2.andes.store.StoredAMQPMessage;
 
 import java.nio.ByteBuffer;
@@ -99,18 +98,6 @@ public class AMQPUtils {
         return amqMessage;
     }
 
-    /**
-     * Create a new AMQMessage out of StoredMessage and content
-     * @param storedMessage StoredMessage object
-     * @return instance of AMQMessage
-     */
-    public static AMQMessage getQueueEntryFromStoredMessage(StoredMessage<MessageMetaData> storedMessage,
-                                                            AndesContent content) {
-        QpidStoredMessage<MessageMetaData> message = new QpidStoredMessage<>(
-                storedMessage, content);
-        return new AMQMessage(message);
-    }
-
     /**
      * Convert andes metadata to Qpid AMQMessage. Returned message is aware of the disruptor memory cache.
      *
@@ -424,4 +411,12 @@ public class AMQPUtils {
 
         return isWildCard;
     }
+
+    /**
+     * Release the message metadata decoded by the current thread to evaluate selectors. Delivery loops call this
+     * once a message has been evaluated against all candidate subscribers.
+     */
+    public static void clearSelectorEvaluationCache() {
+        FilterableMetadata.clearLastEvaluated();
+    }
 }
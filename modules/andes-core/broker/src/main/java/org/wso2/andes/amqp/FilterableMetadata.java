@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.amqp;
+
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.server.message.AMQMessageHeader;
+import org.wso2.andes.server.message.MessageMetaData;
+import org.wso2.andes.server.queue.Filterable;
+
+/**
+ * Read only view of {@link AndesMessageMetadata} used to evaluate subscription selectors. The AMQP metadata bytes
+ * are decoded only when a selector reads a message header, and application properties are decoded on their first
+ * access.
+ * <p>
+ * A delivery thread evaluates a message against every candidate subscriber before moving to the next message. The
+ * view of the last evaluated message is kept per thread, so the metadata is decoded once per message no matter how
+ * many subscribers have selectors. The delivery loop clears the view through
+ * {@link AMQPUtils#clearSelectorEvaluationCache()} after the subscriber loop of each message.
+ */
+class FilterableMetadata implements Filterable {
+
+    /**
+     * View of the message last evaluated by the current thread
+     */
+    private static final ThreadLocal<FilterableMetadata> LAST_EVALUATED = new ThreadLocal<>();
+
+    private final AndesMessageMetadata metadata;
+
+    /**
+     * Metadata bytes the view is built from. Routing changes replace the bytes of the message.
+     */
+    private final byte[] encodedMetadata;
+
+    private MessageMetaData messageMetaData;
+
+    private AMQMessageHeader messageHeader;
+
+    private FilterableMetadata(AndesMessageMetadata metadata) {
+        this.metadata = metadata;
+        this.encodedMetadata = metadata.getMetadata();
+    }
+
+    /**
+     * Get the view of the message, reusing the view built by the previous call of this thread if it was for the
+     * same message
+     *
+     * @param metadata message to evaluate
+     * @return view of the message
+     */
+    static FilterableMetadata of(AndesMessageMetadata metadata) {
+        FilterableMetadata filterable = LAST_EVALUATED.get();
+        if (null == filterable || filterable.metadata != metadata
+                || filterable.encodedMetadata != metadata.getMetadata()) {
+            filterable = new FilterableMetadata(metadata);
+            LAST_EVALUATED.set(filterable);
+        }
+        return filterable;
+    }
+
+    /**
+     * Forget the view of the last evaluated message of the current thread, so that its decoded metadata is not kept
+     * reachable after the message is evaluated against all subscribers
+     */
+    static void clearLastEvaluated() {
+        LAST_EVALUATED.remove();
+    }
+
+    @Override
+    public AMQMessageHeader getMessageHeader() {
+        if (null == messageHeader) {
+            messageHeader = getMessageMetaData().getMessageHeader();
+        }
+        return messageHeader;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return getMessageMetaData().isPersistent();
+    }
+
+    /**
+     * Selectors are evaluated before the message is handed to a subscriber, hence the message is never seen as
+     * redelivered, same as for a newly created queue entry.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isRedelivered() {
+        return false;
+    }
+
+    private MessageMetaData getMessageMetaData() {
+        if (null == messageMetaData) {
+            messageMetaData = (MessageMetaData) AMQPUtils.convertAndesMetadataToAMQMetadata(metadata);
+        }
+        return messageMetaData;
+    }
+}
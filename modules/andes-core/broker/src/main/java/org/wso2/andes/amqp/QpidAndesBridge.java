@@ -18,6 +18,7 @@
 
 package org.wso2.andes.amqp;
 
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.AMQException;
@@ -27,6 +28,7 @@ import org.wso2.andes.framing.AMQShortString;
 import org.wso2.andes.framing.abstraction.ContentChunk;
 import org.wso2.andes.kernel.Andes;
 import org.wso2.andes.kernel.AndesAckData;
+import org.wso2.andes.kernel.AndesBulkAckData;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesContext;
 import org.wso2.andes.kernel.AndesException;
@@ -293,6 +295,27 @@ public class QpidAndesBridge {
         }
     }
 
+    /**
+     * Acknowledgement of several messages is received, such as a basic.ack with the multiple flag set. The
+     * messages are passed to Andes as a single acknowledgement event.
+     *
+     * @param channelId  id of the channel ack is received
+     * @param messageIds ids of the acknowledged messages
+     * @throws AMQException
+     */
+    public static void ackReceived(UUID channelId, LongArrayList messageIds) throws AMQException {
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("ack received for " + messageIds.size() + " messages channelId= " + channelId);
+            }
+            Andes.getInstance().ackReceived(new AndesBulkAckData(channelId, messageIds));
+        } catch (AndesException e) {
+            log.error("Exception occurred while handling ack", e);
+            throw new AMQException(AMQConstant.INTERNAL_ERROR, "Error in getting handling ack for "
+                    + messageIds.size() + " messages", e);
+        }
+    }
+
     /**
      * Reject message is received
      *
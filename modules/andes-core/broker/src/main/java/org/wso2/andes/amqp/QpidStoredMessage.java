@@ -61,4 +61,16 @@ public class QpidStoredMessage<T extends StorableMessageMetaData> extends Forwar
 
         return bytesWrittenToBuffer;
     }
+
+    /**
+     * Give access to a range of the message content without copying it
+     *
+     * @param offsetInMessage starting byte position
+     * @param length          maximum number of bytes to return
+     * @return views of the cached content chunks covering the range
+     * @throws AndesException if the content is not available
+     */
+    public ByteBuffer[] getContentSlices(int offsetInMessage, int length) throws AndesException {
+        return content.getContentSlices(offsetInMessage, length);
+    }
 }
@@ -102,6 +102,12 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     TRANSPORTS_AMQP_ENABLED("transports/amqp/@enabled", "true", Boolean.class),
 
+    /**
+     * Serve plain TCP AMQP connections with the NIO selector based transport instead of the MINA transport. SSL
+     * connections always use the MINA transport.
+     */
+    TRANSPORTS_AMQP_NIO_TRANSPORT_ENABLED("transports/amqp/@nioTransport", "false", Boolean.class),
+
     /**
      * The port used to listen for non-secure amqp messages/commands by the MB server.
      */
@@ -228,6 +234,48 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     TRANSPORTS_MQTT_DELIVERY_BUFFER_SIZE("transports/mqtt/deliveryBufferSize", "32768", Integer.class),
 
+    /**
+     * Number of Netty event loop threads accepting MQTT connections.
+     */
+    TRANSPORTS_MQTT_NETTY_BOSS_THREAD_COUNT("transports/mqtt/netty/bossThreadCount", "1", Integer.class),
+
+    /**
+     * Number of Netty event loop threads serving accepted MQTT connections. 0 lets Netty pick twice the number of
+     * available processors.
+     */
+    TRANSPORTS_MQTT_NETTY_WORKER_THREAD_COUNT("transports/mqtt/netty/workerThreadCount", "0", Integer.class),
+
+    /**
+     * Use the native epoll transport when running on Linux. Falls back to NIO when the native library cannot be
+     * loaded.
+     */
+    TRANSPORTS_MQTT_NETTY_NATIVE_TRANSPORT_ENABLED("transports/mqtt/netty/nativeTransport/@enabled", "true",
+            Boolean.class),
+
+    /**
+     * Maximum length of the queue of pending MQTT connections of the server socket.
+     */
+    TRANSPORTS_MQTT_NETTY_BACKLOG("transports/mqtt/netty/backlog", "1024", Integer.class),
+
+    /**
+     * Allocate MQTT channel buffers from the pooled allocator instead of allocating a new buffer per read/write.
+     */
+    TRANSPORTS_MQTT_NETTY_POOLED_ALLOCATOR_ENABLED("transports/mqtt/netty/pooledAllocator/@enabled", "true",
+            Boolean.class),
+
+    /**
+     * Number of bytes queued for writing on an MQTT channel after which the channel stops reading from the client
+     * and message delivery to its subscriptions is suspended.
+     */
+    TRANSPORTS_MQTT_NETTY_WRITE_BUFFER_HIGH_WATER_MARK("transports/mqtt/netty/writeBufferHighWaterMark", "65536",
+            Integer.class),
+
+    /**
+     * Number of bytes queued for writing on an MQTT channel below which a suspended channel is resumed.
+     */
+    TRANSPORTS_MQTT_NETTY_WRITE_BUFFER_LOW_WATER_MARK("transports/mqtt/netty/writeBufferLowWaterMark", "32768",
+            Integer.class),
+
     /**
      * This is a temporary list of user elements to enable user-authentication for MQTT.
      */
@@ -349,6 +397,43 @@ public enum AndesConfiguration implements ConfigurationProperty {
      * Indicates weather print cache related statistics in 2 minutes interval in carbon log.
      */
     PERSISTENCE_CACHE_PRINT_STATS("persistence/cache/printStats", "false", Boolean.class),
+
+    /**
+     * Where the message cache keeps message content.
+     * <ul>
+     *  <li>heap - messages are kept as they are on the java heap (default).</li>
+     *  <li>offHeap - message content is copied to direct memory outside the java heap. The JVM direct memory
+     *                limit (-XX:MaxDirectMemorySize) must be larger than the cache size.
+     *  </li>
+     * </ul>
+     */
+    PERSISTENCE_CACHE_TYPE("persistence/cache/type", "heap", String.class),
+
+    /**
+     * Size in bytes of the blocks the off heap cache allocates for message content. Smaller blocks waste less memory
+     * for small messages but need a larger index for big messages.
+     */
+    PERSISTENCE_CACHE_OFF_HEAP_BLOCK_SIZE("persistence/cache/offHeapBlockSize", "2048", Integer.class),
+
+    /**
+     * Keep message counts of queues in memory instead of counting metadata rows on each request. Counts are served
+     * to the management console and the queue browsing operations from memory.
+     */
+    PERSISTENCE_QUEUE_MESSAGE_COUNTER_ENABLED("persistence/queueMessageCounter/@enabled", "true", Boolean.class),
+
+    /**
+     * Interval in seconds at which in memory message count changes are written to the queue counter table. In a
+     * cluster the counts of other nodes become visible after this interval.
+     */
+    PERSISTENCE_QUEUE_MESSAGE_COUNTER_FLUSH_INTERVAL
+            ("persistence/queueMessageCounter/flushInterval", "5", Integer.class),
+
+    /**
+     * Interval in seconds at which in memory message counts are corrected by counting the metadata rows of each
+     * queue.
+     */
+    PERSISTENCE_QUEUE_MESSAGE_COUNTER_RECONCILE_INTERVAL
+            ("persistence/queueMessageCounter/reconcileInterval", "300", Integer.class),
     
     /**
      * The ID generation class that is used to maintain unique IDs for each message that arrives at the server.
@@ -356,6 +441,19 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERSISTENCE_ID_GENERATOR("persistence/idGenerator", "org.wso2.andes.server.cluster" +
             ".coordination.TimeStampBasedMessageIdGenerator", String.class),
 
+    /**
+     * Number of bits of a timestamp based message ID used for the unique ID of the node. Together with the offset
+     * bits this decides how many bits are left for the timestamp. Both must be at least 1 and together at most 22,
+     * which leaves 41 bits for the timestamp.
+     */
+    PERSISTENCE_ID_GENERATOR_NODE_ID_BITS("persistence/idGenerator/@nodeIdBits", "8", Integer.class),
+
+    /**
+     * Number of bits of a timestamp based message ID used for the offset within a millisecond. A node can generate
+     * 2^offsetBits IDs per millisecond before it starts borrowing IDs from the next millisecond.
+     */
+    PERSISTENCE_ID_GENERATOR_OFFSET_BITS("persistence/idGenerator/@offsetBits", "10", Integer.class),
+
     /**
      * This is the Task interval (in SECONDS) to check weather communication
      * is healthy between message store (/Database) and this server instance.
@@ -399,6 +497,22 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_CONTENT_COMPRESSION_THRESHOLD
             ("performanceTuning/contentHandling/contentCompressionThreshold", "1000", Integer.class),
 
+    /**
+     * When a topic message is routed to more than one storage queue, store its content only once and let the
+     * metadata of each storage queue refer to it. Content is deleted once the last referring message is removed.
+     * <p/>
+     * NOTE : requires the MB_CONTENT_REFERENCE table in the message store.
+     */
+    PERFORMANCE_TUNING_SHARE_CONTENT_ACROSS_STORAGE_QUEUES
+            ("performanceTuning/contentHandling/shareContentAcrossStorageQueues", "false", Boolean.class),
+
+    /**
+     * Maximum number of routing keys for which each topic exchange keeps the matching storage queues cached. The
+     * cache is cleared whenever a queue is bound to or unbound from the exchange. Set to 0 to disable caching.
+     */
+    PERFORMANCE_TUNING_TOPIC_MATCHING_CACHE_SIZE
+            ("performanceTuning/topicMatching/routingKeyCacheSize", "10000", Integer.class),
+
     /**
      * Maximum time interval until which a slot can be retained in memory before updating to the cluster.
      * NOTE : specified in milliseconds.
@@ -491,6 +605,13 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     PERFORMANCE_TUNING_DELIVERY_RING_BUFFER_SIZE("performanceTuning/delivery/ringBufferSize", "4096", Integer.class),
 
+    /**
+     * How the delivery disruptor consumers wait for new events. One of sleepingBlocking, parking, phasedBackoff,
+     * yielding or busySpin. Spinning strategies lower delivery latency at the cost of CPU while the broker is idle.
+     */
+    PERFORMANCE_TUNING_DELIVERY_WAIT_STRATEGY
+            ("performanceTuning/delivery/waitStrategy", "sleepingBlocking", String.class),
+
     /**
      * Number of parallel readers used to read content from message store. Increasing this value will speedup
      * the message sending mechanism. But the load on the data store will increase.
@@ -546,6 +667,21 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_PARALLEL_TRANSACTION_MESSAGE_WRITERS(
             "performanceTuning/inboundEvents/transactionMessageWriters", "1", Integer.class),
 
+    /**
+     * Number of parallel writers used to write distributed transaction prepare, commit and rollback records to
+     * the message store. Branches are assigned to writers by their Xid so independent branches are written in
+     * parallel.
+     */
+    PERFORMANCE_TUNING_PARALLEL_DTX_DB_WRITERS(
+            "performanceTuning/inboundEvents/dtxDbWriters", "1", Integer.class),
+
+    /**
+     * Maximum number of dtx.commit requests of independent branches that a dtx writer groups into a single
+     * database transaction.
+     */
+    PERFORMANCE_TUNING_DTX_COMMIT_GROUP_SIZE(
+            "performanceTuning/inboundEvents/dtxCommitGroupSize", "50", Integer.class),
+
     /**
      * Size of the Disruptor ring buffer for inbound event handling. Buffer size should be a value of power of two
      * For publishing at higher rates increasing the buffer size may give some advantage to keep messages in memory and
@@ -553,6 +689,20 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     PERFORMANCE_TUNING_PUBLISHING_BUFFER_SIZE("performanceTuning/inboundEvents/bufferSize", "65536", Integer.class),
 
+    /**
+     * How the inbound disruptor consumers wait for new events. One of sleepingBlocking, parking, phasedBackoff,
+     * yielding or busySpin.
+     */
+    PERFORMANCE_TUNING_INBOUND_WAIT_STRATEGY
+            ("performanceTuning/inboundEvents/waitStrategy", "sleepingBlocking", String.class),
+
+    /**
+     * Size of the Disruptor ring buffer carrying control events such as queue, binding and subscription changes.
+     * Buffer size should be a power of two.
+     */
+    PERFORMANCE_TUNING_CONTROL_EVENT_BUFFER_SIZE
+            ("performanceTuning/inboundEvents/controlEventBufferSize", "1024", Integer.class),
+
     /**
      * Maximum batch size of the batch write operation for inbound messages. Batch write of a message will vary around
      * this number.
@@ -560,6 +710,41 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_MESSAGE_WRITER_BATCH_SIZE
             ("performanceTuning/inboundEvents/messageWriterBatchSize", "70", Integer.class),
 
+    /**
+     * Enable adaptive group commit for inbound message writers. When enabled the writer batch size is adjusted between
+     * the configured minimum and maximum according to the observed store commit latency, starting from
+     * messageWriterBatchSize.
+     */
+    PERFORMANCE_TUNING_GROUP_COMMIT_ENABLED
+            ("performanceTuning/inboundEvents/groupCommit/@enabled", "false", Boolean.class),
+
+    /**
+     * Target time in milliseconds from a message reaching a message writer until it is committed to the store.
+     * Batch sizes shrink when commits take longer than half of this value.
+     */
+    PERFORMANCE_TUNING_GROUP_COMMIT_TARGET_LATENCY
+            ("performanceTuning/inboundEvents/groupCommit/targetLatency", "20", Integer.class),
+
+    /**
+     * Lower bound of the adaptive message writer batch size
+     */
+    PERFORMANCE_TUNING_GROUP_COMMIT_MIN_BATCH_SIZE
+            ("performanceTuning/inboundEvents/groupCommit/minBatchSize", "10", Integer.class),
+
+    /**
+     * Upper bound of the adaptive message writer batch size
+     */
+    PERFORMANCE_TUNING_GROUP_COMMIT_MAX_BATCH_SIZE
+            ("performanceTuning/inboundEvents/groupCommit/maxBatchSize", "1000", Integer.class),
+
+    /**
+     * Maximum time in microseconds a message writer waits for more messages before committing a partial batch.
+     * Writers wait only when messages arrive steadily within this time. Set to 0 to always commit when the ring is
+     * drained.
+     */
+    PERFORMANCE_TUNING_GROUP_COMMIT_MAX_HOLD_TIME
+            ("performanceTuning/inboundEvents/groupCommit/maxHoldTime", "1000", Integer.class),
+
     /**
      * Timeout for waiting for a queue purge event to end to get the purged count. Doesn't affect actual purging.
      * If purge takes time, increasing the value will improve the possibility of retrieving the correct purged count.
@@ -581,6 +766,12 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_ACK_HANDLER_COUNT("performanceTuning/ackHandling/ackHandlerCount", "1",
             Integer.class ),
 
+    /**
+     * Size of the Disruptor ring buffer carrying message acknowledgements. Acknowledgements have their own ring so
+     * that they are not held back by content chunking and message writes. Buffer size should be a power of two.
+     */
+    PERFORMANCE_TUNING_ACK_HANDLING_BUFFER_SIZE("performanceTuning/ackHandling/bufferSize", "16384", Integer.class),
+
     /**
      * Message delivery from server to the client will be paused temporarily if number of delivered but
      * unacknowledged message count reaches this size. Should be set considering message consume rate.
@@ -649,6 +840,38 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     PERFORMANCE_TUNING_SAFE_DELETE_REGION_SLOT_COUNT
             ("performanceTuning/messageExpiration/safetySlotCount", "3", Integer.class),
+
+    /**
+     * Track the expiry deadlines of the messages written by this node in an in-memory timer wheel and delete expired
+     * messages as their deadlines pass. When enabled the periodic database scan for expired messages only runs once
+     * after startup in standalone mode, to recover messages written before a restart.
+     */
+    PERFORMANCE_TUNING_EXPIRY_TIMER_WHEEL_ENABLED
+            ("performanceTuning/messageExpiration/timerWheel/@enabled", "true", Boolean.class),
+
+    /**
+     * Resolution of the expiry timer wheel. Expired messages are deleted at most this long after they expire.
+     * specified in milliseconds.
+     */
+    PERFORMANCE_TUNING_EXPIRY_TIMER_WHEEL_TICK_INTERVAL
+            ("performanceTuning/messageExpiration/timerWheel/tickInterval", "1000", Integer.class),
+
+    /**
+     * Retained topics are indexed in memory and kept current with the retained messages received by this node. In a
+     * cluster the index is reloaded from the message store when it is older than this interval, to pick up retained
+     * messages received by other nodes.
+     * specified in milliseconds.
+     */
+    PERFORMANCE_TUNING_RETAINED_TOPIC_INDEX_CLUSTER_REFRESH_INTERVAL
+            ("performanceTuning/retainedMessages/clusterRefreshInterval", "1000", Integer.class),
+
+    /**
+     * Maximum number of retained messages whose content is cached in memory for new subscriptions. Set to 0 to
+     * disable caching.
+     */
+    PERFORMANCE_TUNING_RETAINED_CONTENT_CACHE_MAXIMUM_SIZE
+            ("performanceTuning/retainedMessages/contentCache/maximumSize", "0", Integer.class),
+
     /**
      * Maximum batch size (Messages) in kilobytes for a transaction. Exceeding this limit will result in a failure in
      * the subsequent commit (or prepare) request. Default is set to 10MB. Limit is calculated considering the payload
@@ -36,6 +36,14 @@ public class ConfigurationProperties {
         propertyValueMap = new HashMap<>();
     }
 
+    /**
+     * Creates a copy of the given properties
+     * @param properties properties to copy
+     */
+    public ConfigurationProperties(ConfigurationProperties properties) {
+        propertyValueMap = new HashMap<>(properties.propertyValueMap);
+    }
+
     /**
      * Adds a property
      * @param property property name
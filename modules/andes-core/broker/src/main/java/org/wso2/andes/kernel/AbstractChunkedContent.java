@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base of {@link AndesContent} implementations which keep the message content in memory as fixed size chunks keyed
+ * by the byte index the chunk starts at
+ */
+public abstract class AbstractChunkedContent implements AndesContent {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuffer[] getContentSlices(int offset, int length) throws AndesException {
+        int chunkSize = getChunkSize();
+        int end = Math.min(offset + length, getContentLength());
+        if (end <= offset) {
+            return new ByteBuffer[0];
+        }
+
+        int firstChunkNumber = offset / chunkSize;
+        int lastChunkNumber = (end - 1) / chunkSize;
+        ByteBuffer[] slices = new ByteBuffer[lastChunkNumber - firstChunkNumber + 1];
+
+        int currentBytePosition = offset;
+        for (int i = 0; i < slices.length; i++) {
+            int chunkStartByteIndex = (firstChunkNumber + i) * chunkSize;
+            int positionToReadFromChunk = currentBytePosition - chunkStartByteIndex;
+
+            AndesMessagePart messagePart = getMessagePart(chunkStartByteIndex);
+
+            int numOfBytesToRead = Math.min(messagePart.getDataLength() - positionToReadFromChunk,
+                    end - currentBytePosition);
+            if (numOfBytesToRead <= 0) {
+                throw new AndesException("Content chunk at index " + chunkStartByteIndex + " is shorter than expected");
+            }
+
+            slices[i] = ByteBuffer.wrap(messagePart.getData(), positionToReadFromChunk, numOfBytesToRead).slice();
+            currentBytePosition = currentBytePosition + numOfBytesToRead;
+        }
+
+        return slices;
+    }
+
+    /**
+     * Get the size of a content chunk. Every chunk except the last one has this size.
+     *
+     * @return chunk size in bytes
+     */
+    protected abstract int getChunkSize();
+
+    /**
+     * Get Message part for byte index
+     *
+     * @param indexToQuery
+     *         Byte index of the content
+     * @return Content chunk
+     * @throws AndesException if the chunk is not available
+     */
+    protected abstract AndesMessagePart getMessagePart(int indexToQuery) throws AndesException;
+}
@@ -257,6 +257,27 @@ public class Andes {
         inboundEventManager.ackReceived(ackData);
     }
 
+    /**
+     * Acknowledgement of several messages received on a channel at once should be notified to Andes using this
+     * method. All messages are published to the disruptor as a single event.
+     *
+     * @param ackData Acknowledgement information by protocol
+     * @throws AndesException on an issue publishing ack event into disruptor
+     */
+    public void ackReceived(AndesBulkAckData ackData) throws AndesException {
+        int messageCount = ackData.getMessageIds().size();
+
+        //Adding metrics meter for ack rate
+        Meter ackMeter = MetricManager.meter(MetricsConstants.ACK_RECEIVE_RATE, Level.INFO);
+        ackMeter.mark(messageCount);
+
+        //Adding metrics counter for ack messages
+        Counter counter = MetricManager.counter(MetricsConstants.ACK_MESSAGES, Level.INFO);
+        counter.inc(messageCount);
+
+        inboundEventManager.ackReceived(ackData);
+    }
+
     /**
      * Close the local subscription with reference to the input subscription event.
      *
@@ -766,6 +787,18 @@ public class Andes {
         return MessagingEngine.getInstance().getRetainedMessageContent(metadata);
     }
 
+    /**
+     * Get andes content for given message metadata list in one go.
+     *
+     * @param metadataList message metadata list
+     * @return Andes content keyed by message ID
+     * @throws AndesException
+     */
+    public LongObjectHashMap<AndesContent> getRetainedMessageContent(List<? extends AndesMessageMetadata> metadataList)
+            throws AndesException {
+        return MessagingEngine.getInstance().getRetainedMessageContent(metadataList);
+    }
+
     /**
      * On a member left event trigger recovery event. This will trigger a mock submit slot event to coordinator for all
      * the queues and topics. This is to avoid any lost submit slot events from left member node
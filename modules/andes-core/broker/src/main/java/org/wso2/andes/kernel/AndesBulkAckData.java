@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+
+import java.util.UUID;
+
+/**
+ * Container class to hold an acknowledgement of several messages received on a channel, such as an AMQP ack with the
+ * multiple flag set
+ */
+public class AndesBulkAckData {
+
+    /**
+     * Ids of acknowledged messages
+     */
+    private final LongArrayList messageIds;
+
+    /**
+     * Id of the channel acknowledge is received
+     */
+    private final UUID channelId;
+
+    /**
+     * Generate AndesBulkAckData object.
+     *
+     * @param channelId  ID of the channel ack is received
+     * @param messageIds Ids of the messages being acknowledged
+     */
+    public AndesBulkAckData(UUID channelId, LongArrayList messageIds) {
+        this.channelId = channelId;
+        this.messageIds = messageIds;
+    }
+
+    /**
+     * Get the ids of the messages being acknowledged
+     *
+     * @return Ids of acknowledged messages
+     */
+    public LongArrayList getMessageIds() {
+        return messageIds;
+    }
+
+    /**
+     * Get Id of the channel acknowledgement is received
+     *
+     * @return channel ID
+     */
+    public UUID getChannelId() {
+        return channelId;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.subscription.AndesSubscription;
+import org.wso2.andes.kernel.subscription.SubscriberConnection;
+import org.wso2.andes.metrics.MetricsConstants;
+import org.wso2.andes.tools.utils.MessageTracer;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.MetricManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper class of a bulk message acknowledgment published to disruptor. All messages are acknowledged against the
+ * tracker of the channel in one pass.
+ */
+public class AndesBulkAckEvent {
+
+    private static Log log = LogFactory.getLog(AndesBulkAckEvent.class);
+
+    /**
+     * Acknowledgement information form protocol
+     */
+    private final AndesBulkAckData ackData;
+
+    /**
+     * Acknowledged messages which became ready to be removed as all channels acknowledged them. Message references
+     * are kept here as they are needed by the state event handler
+     */
+    private final List<DeliverableAndesMetadata> removableMessages;
+
+    /**
+     * Generate AndesBulkAckEvent object. This holds a bulk acknowledge event in disruptor
+     *
+     * @param ackData acknowledge information from channel
+     */
+    public AndesBulkAckEvent(AndesBulkAckData ackData) {
+        this.ackData = ackData;
+        this.removableMessages = new ArrayList<>();
+    }
+
+    /**
+     * Process the acknowledgement event. Acknowledged messages are removed from the tracker of the channel and the
+     * message status is updated. Should be called only via a disruptor handler.
+     *
+     * @return messages eligible to be deleted
+     * @throws AndesException in case the subscription of the channel is closed
+     */
+    public List<DeliverableAndesMetadata> processEvent() throws AndesException {
+        LongArrayList messageIds = ackData.getMessageIds();
+        AndesSubscription localSubscription = AndesContext.getInstance().
+                getAndesSubscriptionManager().getSubscriptionByProtocolChannel(ackData.getChannelId());
+        if (null == localSubscription) {
+            throw new AndesException("Cannot handle acknowledgement for " + messageIds.size() + " messages as "
+                    + "subscription is closed channelID= " + ackData.getChannelId());
+        }
+        SubscriberConnection subscriberConnection = localSubscription.getSubscriberConnection();
+
+        String destination = null;
+        String messageRouterName = null;
+        int destinationAckCount = 0;
+        for (int i = 0; i < messageIds.size(); i++) {
+            long messageId = messageIds.get(i);
+            DeliverableAndesMetadata metadata = subscriberConnection.onMessageAck(messageId);
+            if (null == metadata) {
+                log.error("Message reference has been already cleared for message id " + messageId
+                        + ". Acknowledge or Nak is already received");
+                continue;
+            }
+
+            MessageTracer.trace(messageId, metadata.getDestination(),
+                    MessageTracer.ACK_MESSAGE_REFERENCE_SET_BY_DISRUPTOR);
+
+            // For topics message is shared. If all acknowledgements are received only we should remove message
+            if (metadata.markAsAcknowledgedByChannel(ackData.getChannelId())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Ok to delete message id " + messageId);
+                }
+                removableMessages.add(metadata);
+            }
+
+            if (!metadata.getDestination().equals(destination)) {
+                markAckMetrics(messageRouterName, destination, destinationAckCount);
+                destination = metadata.getDestination();
+                messageRouterName = metadata.getMessageRouterName();
+                destinationAckCount = 0;
+            }
+            destinationAckCount++;
+        }
+        markAckMetrics(messageRouterName, destination, destinationAckCount);
+
+        return removableMessages;
+    }
+
+    /**
+     * Get acknowledged messages which are ready to be removed. Valid after the event is processed.
+     *
+     * @return removable messages
+     */
+    public List<DeliverableAndesMetadata> getRemovableMessages() {
+        return removableMessages;
+    }
+
+    /**
+     * Get acknowledgement information from the protocol
+     *
+     * @return acknowledgement information
+     */
+    public AndesBulkAckData getAckData() {
+        return ackData;
+    }
+
+    /**
+     * Update ack rate and ack count metrics of a destination
+     */
+    private void markAckMetrics(String messageRouterName, String destination, int ackCount) {
+        if (0 == ackCount) {
+            return;
+        }
+        String metricSuffix = MetricsConstants.METRICS_NAME_SEPARATOR + messageRouterName
+                + MetricsConstants.METRICS_NAME_SEPARATOR + destination;
+        MetricManager.meter(MetricsConstants.ACK_RECEIVE_RATE + metricSuffix, Level.INFO).mark(ackCount);
+        MetricManager.counter(MetricsConstants.ACK_MESSAGES + metricSuffix, Level.INFO).inc(ackCount);
+    }
+}
@@ -37,6 +37,19 @@ public interface AndesContent {
      */
     int putContent(int offset, ByteBuffer destinationBuffer) throws AndesException;
 
+    /**
+     * Give access to a range of the message content without copying it. The returned buffers are views of the
+     * stored content chunks and must not be modified.
+     *
+     * @param offset
+     *         Starting byte position
+     * @param length
+     *         Maximum number of bytes to return
+     * @return Buffers covering the range in order
+     * @throws AndesException
+     */
+    ByteBuffer[] getContentSlices(int offset, int length) throws AndesException;
+
     /**
      * Return the content length of the message
      *
@@ -52,6 +52,8 @@ import org.wso2.andes.server.virtualhost.VirtualHostConfigSynchronizer;
 import org.wso2.andes.store.FailureObservingAndesContextStore;
 import org.wso2.andes.store.FailureObservingMessageStore;
 import org.wso2.andes.store.FailureObservingStoreManager;
+import org.wso2.andes.store.rdbms.MessageStoreShardManagementInformationMBean;
+import org.wso2.andes.store.rdbms.ShardedMessageStoreImpl;
 import org.wso2.andes.thrift.MBThriftServer;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.user.api.UserStoreException;
@@ -118,6 +120,16 @@ public class AndesKernelBoot {
      * This will boot up all the components in Andes kernel and bring the server to working state
      */
     public static void initializeComponents() throws AndesException {
+        initializeComponents(true);
+    }
+
+    /**
+     * This will boot up all the components in Andes kernel and bring the server to working state
+     *
+     * @param registerMBeans true to register Andes MBeans. Registering needs an initialised application registry,
+     *                       which is not available when the kernel is embedded without the AMQP broker
+     */
+    public static void initializeComponents(boolean registerMBeans) throws AndesException {
         isKernelShuttingDown = false;
         //loadConfigurations - done from outside
         //startAndesStores - done from outside
@@ -127,7 +139,9 @@ public class AndesKernelBoot {
         startHouseKeepingThreads();
         createDefinedProtocolArtifacts();
         syncNodeWithClusterState();
-        registerMBeans();
+        if (registerMBeans) {
+            registerMBeans();
+        }
         startThriftServer();
         Andes.getInstance().startSafeZoneUpdateWorkers();
         int slotDeletingWorkerCount = AndesConfigurationManager.readValue
@@ -488,9 +502,26 @@ public class AndesKernelBoot {
 
         andesRecoveryTaskScheduler.scheduleAtFixedRate(andesRecoveryTask, recoveryTaskScheduledPeriod,
                 recoveryTaskScheduledPeriod, TimeUnit.SECONDS);
+        ExpiryTimerWheel expiryTimerWheel = MessagingEngine.getInstance().getExpiryTimerWheel();
         if (safeDeleteRegionSlotCount >= 1) {
-            expiryMessageDeletionTaskScheduler.scheduleAtFixedRate(periodicExpiryMessageDeletionTask,
-                    dbBasedDeletionTaskScheduledPeriod, dbBasedDeletionTaskScheduledPeriod, TimeUnit.SECONDS);
+            if (null != expiryTimerWheel) {
+                int tickInterval = AndesConfigurationManager.readValue
+                        (AndesConfiguration.PERFORMANCE_TUNING_EXPIRY_TIMER_WHEEL_TICK_INTERVAL);
+                expiryMessageDeletionTaskScheduler.scheduleAtFixedRate(
+                        new ScheduledExpiryMessageDeletionTask(expiryTimerWheel), tickInterval, tickInterval,
+                        TimeUnit.MILLISECONDS);
+            }
+            if (null != expiryTimerWheel && !AndesContext.getInstance().isClusteringEnabled()) {
+                // Timer wheel tracks every message written from now on. Scan the store once to recover messages
+                // written before the broker started
+                expiryMessageDeletionTaskScheduler.schedule(periodicExpiryMessageDeletionTask,
+                        dbBasedDeletionTaskScheduledPeriod, TimeUnit.SECONDS);
+            } else {
+                // In a cluster the scan recovers messages of nodes which left and messages which could not be
+                // handed over to the coordinator
+                expiryMessageDeletionTaskScheduler.scheduleAtFixedRate(periodicExpiryMessageDeletionTask,
+                        dbBasedDeletionTaskScheduledPeriod, dbBasedDeletionTaskScheduledPeriod, TimeUnit.SECONDS);
+            }
         } else {
             log.error("DB based expiry message deletion task is not scheduled due to not providing "
                     + "a valid safe delete region slot count is not given. Given slot count is "
@@ -538,6 +569,13 @@ public class AndesKernelBoot {
             MessageStatusInformationMBean messageStatusInformationMBean = new
                     MessageStatusInformationMBean();
             messageStatusInformationMBean.register();
+
+            ShardedMessageStoreImpl shardedMessageStore = ClusterResourceHolder.getInstance().getShardedMessageStore();
+            if (null != shardedMessageStore) {
+                MessageStoreShardManagementInformationMBean shardManagementMBean = new
+                        MessageStoreShardManagementInformationMBean(shardedMessageStore);
+                shardManagementMBean.register();
+            }
         } catch (JMException ex) {
             throw new AndesException("Unable to register Andes MBeans", ex);
         }
@@ -92,6 +92,12 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
 
     private boolean isCompressed;
 
+    /**
+     * Id of the message content this message refers to when the content is shared between several storage queues.
+     * Zero if the message owns its content. Not part of the AMQ metadata bytes.
+     */
+    private long contentId;
+
     /**
      * Properties that are not directly relevant to Andes but to protocols can be stored
      * in this map. But non of the data is persisted
@@ -445,6 +451,35 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
         }
     }
 
+    /**
+     * Get the id under which the content of this message is stored. This is the message id unless the content is
+     * shared between several storage queues.
+     *
+     * @return id to read the message content with
+     */
+    public long getContentId() {
+        if (0 == contentId) {
+            return messageID;
+        }
+        return contentId;
+    }
+
+    /**
+     * Set the id of the shared content this message refers to
+     *
+     * @param contentId id the shared content is stored under
+     */
+    public void setContentId(long contentId) {
+        this.contentId = contentId;
+    }
+
+    /**
+     * True if the content of this message is shared with messages of other storage queues.
+     */
+    public boolean isContentShared() {
+        return 0 != contentId;
+    }
+
     public MessageMetaDataType getMetaDataType() {
         return metaDataType;
     }
@@ -510,6 +545,7 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
                 + "\nqosLevel : " + qosLevel
                 + "\nmetaDataType : " + metaDataType
                 + "\nisCompressed : " + isCompressed
+                + "\ncontentId : " + contentId
                 + "\npropertyMap : " + propertyMap.toString()
                 + "\nretain : " + retain;
     }
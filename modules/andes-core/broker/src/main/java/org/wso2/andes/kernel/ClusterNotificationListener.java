@@ -34,7 +34,8 @@ public interface ClusterNotificationListener {
         Binding,
         Queue,
         Subscription,
-        DBUpdate
+        DBUpdate,
+        MessageStoreShard
     }
 
     /**
@@ -70,6 +71,13 @@ public interface ClusterNotificationListener {
         Closed
     }
 
+    /**
+     * Enum for message store shard changes
+     */
+    enum MessageStoreShardChange {
+        Added
+    }
+
     /**
      * Handle cluster notification
      *
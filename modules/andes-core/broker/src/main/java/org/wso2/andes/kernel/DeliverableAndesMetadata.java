@@ -18,7 +18,6 @@
 
 package org.wso2.andes.kernel;
 
-import com.gs.collections.impl.map.mutable.ConcurrentHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.slot.Slot;
@@ -26,27 +25,72 @@ import org.wso2.andes.kernel.subscription.*;
 import org.wso2.andes.tools.utils.MessageTracer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * This class represents the message metadata and all the delivery aspects of it to the subscribers (outbound path).
  * The lifecycle of the message is maintained here itself.
+ * <p>
+ * A large number of these objects are kept in memory while messages are buffered, hence the delivery state is kept
+ * compact. The message status is packed into a single int updated with compare and set, channel delivery information
+ * is kept in a small copy on write array (usually holding a single channel) and the full status history is recorded
+ * only when {@link MessageTracer} is enabled.
  */
 public class DeliverableAndesMetadata extends AndesMessageMetadata {
 
     /**
-     * Map to keep message status and delivery information of this message to vivid channels
+     * Number of low order bits of the state word holding the ordinal of the latest status
      */
-    private Map<UUID, ChannelInformation> channelDeliveryInfo;
+    private static final int LATEST_STATUS_BITS = 8;
+
+    private static final int LATEST_STATUS_MASK = (1 << LATEST_STATUS_BITS) - 1;
+
+    /**
+     * Statuses which make a message disposable once they are reached
+     */
+    private static final int DISPOSABLE_STATUS_FLAGS = statusFlag(MessageStatus.EXPIRED)
+            | statusFlag(MessageStatus.DLC_MESSAGE) | statusFlag(MessageStatus.PURGED)
+            | statusFlag(MessageStatus.DELETED);
+
+    private static final MessageStatus[] MESSAGE_STATUSES = MessageStatus.values();
+
+    private static final ChannelMessageStatus[] CHANNEL_MESSAGE_STATUSES = ChannelMessageStatus.values();
+
+    private static final ChannelInformation[] NO_CHANNELS = new ChannelInformation[0];
+
+    private static final AtomicIntegerFieldUpdater<DeliverableAndesMetadata> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DeliverableAndesMetadata.class, "state");
+
+    private static final AtomicIntegerFieldUpdater<ChannelInformation> CHANNEL_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ChannelInformation.class, "channelState");
+
+    private static final AtomicReferenceFieldUpdater<DeliverableAndesMetadata, ChannelInformation[]>
+            CHANNELS_UPDATER = AtomicReferenceFieldUpdater.newUpdater(DeliverableAndesMetadata.class,
+            ChannelInformation[].class, "channels");
+
     /**
-     * State transition of the message
+     * Packed message status. Low order bits hold the ordinal of the latest status and the remaining bits hold a flag
+     * for each status the message has gone through.
      */
-    private List<MessageStatus> messageStatus;
+    private volatile int state;
+
+    /**
+     * Delivery information of this message to vivid channels. Replaced as a whole when a channel is added.
+     */
+    private volatile ChannelInformation[] channels;
+
+    /**
+     * State transition of the message. Only recorded when message tracing is enabled, null otherwise.
+     */
+    private final List<MessageStatus> messageStatus;
     /**
      * Parent slot of message.
      */
@@ -76,9 +120,14 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
         super(messageID, metadata, parse);
         this.slot = slot;
         this.timeMessageIsRead = System.currentTimeMillis();
-        this.channelDeliveryInfo = new ConcurrentHashMap<>();
-        this.messageStatus = Collections.synchronizedList(new ArrayList<MessageStatus>());
-        this.messageStatus.add(MessageStatus.READ);
+        this.channels = NO_CHANNELS;
+        this.state = packState(MessageStatus.READ, 0);
+        if (MessageTracer.isEnabled()) {
+            this.messageStatus = Collections.synchronizedList(new ArrayList<MessageStatus>());
+            this.messageStatus.add(MessageStatus.READ);
+        } else {
+            this.messageStatus = null;
+        }
     }
 
     /**
@@ -131,11 +180,11 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @return encoded status history
      */
     public String getStatusHistoryAsString() {
-        String history = "";
-        for (MessageStatus status : messageStatus) {
-            history = history + status + ">>";
+        StringBuilder history = new StringBuilder();
+        for (MessageStatus status : getStatusHistory()) {
+            history.append(status).append(">>");
         }
-        return history;
+        return history.toString();
     }
 
     /**
@@ -145,24 +194,21 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      */
     public String getMessageStatusWithAllChannelStatus() {
         String messageStatusHistory = getStatusHistoryAsString();
-        String deliveries = "";
-        for (UUID channelID : getAllDeliveredChannels()) {
-            deliveries = deliveries + channelID + " : " + channelDeliveryInfo.get(channelID)
-                    .getMessageStatusHistoryForChannelAsString() + " | ";
-        }
-
-        String completeInfo = "[" + messageStatusHistory + "]" + deliveries;
-        return completeInfo;
+        return "[" + messageStatusHistory + "]" + getChannelStatusesAsString();
 
     }
 
     /**
-     * Get message status this message went through as a list
+     * Get message status this message went through as a list. The complete history is only recorded when message
+     * tracing is enabled. Otherwise only the latest status is returned.
      *
      * @return list of MessageStatus
      */
     public List<MessageStatus> getStatusHistory() {
-        return messageStatus;
+        if (null != messageStatus) {
+            return messageStatus;
+        }
+        return Collections.singletonList(getLatestState());
     }
 
     /**
@@ -171,11 +217,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @return message status
      */
     public MessageStatus getLatestState() {
-        MessageStatus latest = null;
-        if (messageStatus.size() > 0) {
-            latest = messageStatus.get(messageStatus.size() - 1);
-        }
-        return latest;
+        return MESSAGE_STATUSES[state & LATEST_STATUS_MASK];
     }
 
     /**
@@ -186,8 +228,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @return if message is a redelivery
      */
     public boolean isRedelivered(UUID channelID) {
-        Integer numOfDeliveries = channelDeliveryInfo.get(channelID).getDeliveryCount();
-        return numOfDeliveries > 0;
+        return getChannelInformation(channelID).getDeliveryCount() > 0;
     }
 
     /**
@@ -197,7 +238,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID ID of the subscriber channel delivery should be rollback
      */
     public void rollbackDelivery(UUID channelID) {
-        channelDeliveryInfo.get(channelID).decrementDeliveryCount();
+        getChannelInformation(channelID).decrementDeliveryCount();
     }
 
     /**
@@ -215,12 +256,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      */
     public void markAsScheduledToDeliver(Collection<AndesSubscription> localSubscriptions) {
         for (AndesSubscription subscription : localSubscriptions) {
-            UUID subscriptionChannelID = subscription.getSubscriberConnection().getProtocolChannelID();
-            ChannelInformation channelInformation = channelDeliveryInfo.get(subscriptionChannelID);
-            if (null == channelInformation) {
-                channelInformation = new ChannelInformation();
-                channelDeliveryInfo.put(subscriptionChannelID, channelInformation);
-            }
+            addChannelIfAbsent(subscription.getSubscriberConnection().getProtocolChannelID());
         }
         addMessageStatus(MessageStatus.SCHEDULED_TO_SEND);
     }
@@ -231,12 +267,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param subscription subscription to deliver message
      */
     public void markAsScheduledToDeliver(AndesSubscription subscription) {
-        UUID subscriptionChannelID = subscription.getSubscriberConnection().getProtocolChannelID();
-        ChannelInformation channelInformation = channelDeliveryInfo.get(subscriptionChannelID);
-        if (null == channelInformation) {
-            channelInformation = new ChannelInformation();
-            channelDeliveryInfo.put(subscriptionChannelID, channelInformation);
-        }
+        addChannelIfAbsent(subscription.getSubscriberConnection().getProtocolChannelID());
         addMessageStatus(MessageStatus.SCHEDULED_TO_SEND);
     }
 
@@ -247,7 +278,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID ID of the channel
      */
     public void markAsDispatchedToDeliver(UUID channelID) {
-        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
+        ChannelInformation channelInformation = getChannelInformation(channelID);
         channelInformation.addChannelStatus(ChannelMessageStatus.DISPATCHED);
 
         if (!this.isBeyondLastRollbackedMessage) {
@@ -270,9 +301,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      */
     public boolean markAsAcknowledgedByChannel(UUID channelID) {
         boolean isAcknowledgedByAll = false;
-        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
-        channelInformation.addChannelStatus(ChannelMessageStatus.ACKED);
-        channelDeliveryInfo.put(channelID, channelInformation);
+        getChannelInformation(channelID).addChannelStatus(ChannelMessageStatus.ACKED);
 
         if (isMarkAsAcked()) {
             addMessageStatus(MessageStatus.ACKED_BY_ALL);
@@ -287,8 +316,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID ID of the channel
      */
     public void markAsNackedByClient(UUID channelID) {
-        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
-        channelInformation.addChannelStatus(ChannelMessageStatus.NACKED);
+        getChannelInformation(channelID).addChannelStatus(ChannelMessageStatus.NACKED);
     }
 
     /**
@@ -297,8 +325,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID ID of the channel
      */
     public void markAsRecoveredByClient(UUID channelID) {
-        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
-        channelInformation.addChannelStatus(ChannelMessageStatus.RECOVERED);
+        getChannelInformation(channelID).addChannelStatus(ChannelMessageStatus.RECOVERED);
     }
 
     /**
@@ -308,8 +335,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID ID of the channel
      */
     public void markAsRejectedByClient(UUID channelID) {
-        ChannelInformation channelInformation = channelDeliveryInfo.get(channelID);
-        channelInformation.addChannelStatus(ChannelMessageStatus.CLIENT_REJECTED);
+        getChannelInformation(channelID).addChannelStatus(ChannelMessageStatus.CLIENT_REJECTED);
     }
 
     /**
@@ -350,12 +376,17 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
     }
 
     /**
-     * Check if the message is OK to clear from memory
+     * Check if the message is OK to clear from memory. That is when the message has ever been expired, moved to DLC,
+     * purged or deleted, or when its slot is removed or returned.
      *
      * @return true if conditions are met
      */
     public boolean isOKToDispose() {
-        return MessageStatus.isOKToRemove(messageStatus);
+        int currentState = state;
+        MessageStatus latest = MESSAGE_STATUSES[currentState & LATEST_STATUS_MASK];
+        return (currentState & DISPOSABLE_STATUS_FLAGS) != 0
+                || MessageStatus.SLOT_REMOVED.equals(latest)
+                || MessageStatus.SLOT_RETURNED.equals(latest);
     }
 
     /**
@@ -418,9 +449,9 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @return current number of times this message is delivered to the given channel
      */
     public int markDeliveryFailureOfASentMessage(UUID channelID) {
-        channelDeliveryInfo.get(channelID).
-                addChannelStatus(ChannelMessageStatus.SEND_FAILED);
-        return channelDeliveryInfo.get(channelID).decrementDeliveryCount();
+        ChannelInformation channelInformation = getChannelInformation(channelID);
+        channelInformation.addChannelStatus(ChannelMessageStatus.SEND_FAILED);
+        return channelInformation.decrementDeliveryCount();
     }
 
     /**
@@ -433,8 +464,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID id of the channel message is sent
      */
     public void markDeliveryFailureByProtocol(UUID channelID) {
-        channelDeliveryInfo.get(channelID).
-                addChannelStatus(ChannelMessageStatus.SEND_FAILED);
+        getChannelInformation(channelID).addChannelStatus(ChannelMessageStatus.SEND_FAILED);
     }
 
     /**
@@ -455,8 +485,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @param channelID ID of the channel
      */
     public void markDeliveredChannelAsClosed(UUID channelID) {
-        channelDeliveryInfo.get(channelID).
-                addChannelStatus(ChannelMessageStatus.CLOSED);
+        getChannelInformation(channelID).addChannelStatus(ChannelMessageStatus.CLOSED);
     }
 
     /**
@@ -465,7 +494,12 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      * @return Set of channel IDs
      */
     public Set<UUID> getAllDeliveredChannels() {
-        return channelDeliveryInfo.keySet();
+        ChannelInformation[] currentChannels = channels;
+        Set<UUID> channelIDs = new LinkedHashSet<>(currentChannels.length);
+        for (ChannelInformation channelInformation : currentChannels) {
+            channelIDs.add(channelInformation.channelID);
+        }
+        return channelIDs;
     }
 
     /**
@@ -475,8 +509,9 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      */
     private boolean isMarkAsAcked() {
         boolean isAcked = true;
-        for (Map.Entry<UUID, ChannelInformation> channelInfoEntry : channelDeliveryInfo.entrySet()) {
-            ChannelMessageStatus messageStatus = channelInfoEntry.getValue().getLatestMessageStatus();
+        ChannelInformation[] currentChannels = channels;
+        for (ChannelInformation channelInformation : currentChannels) {
+            ChannelMessageStatus messageStatus = channelInformation.getLatestMessageStatus();
 
             if (null == messageStatus) {
                 isAcked = false;
@@ -500,7 +535,7 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
                 }
             }
         }
-        if (channelDeliveryInfo.isEmpty()) {
+        if (currentChannels.length == 0) {
             isAcked = false;
         }
         return isAcked;
@@ -517,8 +552,9 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
             so then it returns null value for that subscription's channel's amount of deliveries,
             Since we need to the evaluate the rules before we send message, therefore we have to ignore the null value,
             then we have to check the number of deliveries for the particular channel */
-        if (null != channelDeliveryInfo.get(channelID)) {
-            return channelDeliveryInfo.get(channelID).getDeliveryCount();
+        ChannelInformation channelInformation = getChannelInformation(channelID);
+        if (null != channelInformation) {
+            return channelInformation.getDeliveryCount();
         } else {
             return 0;
         }
@@ -532,28 +568,99 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
      */
     public boolean addMessageStatus(MessageStatus state) {
 
-        boolean isValidTransition = false;
+        int currentState;
+        do {
+            currentState = this.state;
+            //Adds the message status to the message regardless of it being an invalid state since we need track the
+            // history of message statuses
+        } while (!STATE_UPDATER.compareAndSet(this, currentState, packState(state, currentState)));
 
-        if (messageStatus.isEmpty()) {
-            if (MessageStatus.READ.equals(state)) {
-                isValidTransition = true;
-            } else {
-                log.warn(
-                        "Invalid message state transition suggested: " + state + " Message ID: " + messageID + "slot = "
-                                + slot.getId());
+        if (null != messageStatus) {
+            messageStatus.add(state);
+        }
+
+        MessageStatus previous = MESSAGE_STATUSES[currentState & LATEST_STATUS_MASK];
+        boolean isValidTransition = previous.isValidNextTransition(state);
+        if (!isValidTransition) {
+            log.warn("Invalid message state transition from " + previous
+                     + " suggested: " + state + " Message ID: " + messageID + " slot = " + slot.getId()
+                     + " Message Status History >> " + getStatusHistory());
+        }
+        return isValidTransition;
+    }
+
+    /**
+     * Build the packed state word after moving to the given status
+     *
+     * @param status       new latest status
+     * @param currentState current packed state word
+     * @return new packed state word
+     */
+    private static int packState(MessageStatus status, int currentState) {
+        return (currentState & ~LATEST_STATUS_MASK) | statusFlag(status) | status.ordinal();
+    }
+
+    /**
+     * Flag of the state word which records that the message has gone through the given status
+     *
+     * @param status message status
+     * @return flag bit of the status
+     */
+    private static int statusFlag(MessageStatus status) {
+        return 1 << (LATEST_STATUS_BITS + status.ordinal());
+    }
+
+    /**
+     * Get delivery information of the given channel
+     *
+     * @param channelID ID of the channel
+     * @return delivery information or null if the message is not scheduled to the channel
+     */
+    private ChannelInformation getChannelInformation(UUID channelID) {
+        for (ChannelInformation channelInformation : channels) {
+            if (channelInformation.channelID.equals(channelID)) {
+                return channelInformation;
             }
-        } else {
-            isValidTransition = messageStatus.get(messageStatus.size() - 1).isValidNextTransition(state);
-            if (!isValidTransition) {
-                log.warn("Invalid message state transition from " + messageStatus.get(messageStatus.size() - 1)
-                         + " suggested: " + state + " Message ID: " + messageID + " slot = " + slot.getId()
-                         + " Message Status History >> " + messageStatus);
+        }
+        return null;
+    }
+
+    /**
+     * Start tracking delivery information of the given channel if it is not already tracked
+     *
+     * @param channelID ID of the channel
+     */
+    private void addChannelIfAbsent(UUID channelID) {
+        ChannelInformation newChannel = null;
+        ChannelInformation[] currentChannels;
+        ChannelInformation[] newChannels;
+        do {
+            currentChannels = channels;
+            for (ChannelInformation channelInformation : currentChannels) {
+                if (channelInformation.channelID.equals(channelID)) {
+                    return;
+                }
+            }
+            if (null == newChannel) {
+                newChannel = new ChannelInformation(channelID, MessageTracer.isEnabled());
             }
+            newChannels = Arrays.copyOf(currentChannels, currentChannels.length + 1);
+            newChannels[currentChannels.length] = newChannel;
+        } while (!CHANNELS_UPDATER.compareAndSet(this, currentChannels, newChannels));
+    }
+
+    /**
+     * Get status history of every channel the message is scheduled to as a string
+     *
+     * @return channel status history
+     */
+    private String getChannelStatusesAsString() {
+        StringBuilder deliveries = new StringBuilder();
+        for (ChannelInformation channelInformation : channels) {
+            deliveries.append(channelInformation.channelID).append(" : ")
+                    .append(channelInformation.getMessageStatusHistoryForChannelAsString()).append(" | ");
         }
-        //Adds the message status to the message regardless of it being an invalid state since we need track the
-        // history of message statuses
-        messageStatus.add(state);
-        return isValidTransition;
+        return deliveries.toString();
     }
 
     /**
@@ -597,37 +704,57 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
         information.append(Long.toString(expirationTime));
         information.append(',');
         information.append("Channels sent ");
-        String deliveries = "";
-        for (UUID channelID : getAllDeliveredChannels()) {
-            deliveries = deliveries + channelID + " : " + channelDeliveryInfo.get(channelID)
-                    .getMessageStatusHistoryForChannelAsString() + " | ";
-        }
-        information.append(deliveries);
+        information.append(getChannelStatusesAsString());
         information.append('\n');
 
         return information.toString();
     }
 
     /**
-     * Inner class to hold Message status channel-wise
+     * Inner class to hold Message status channel-wise. The delivery count and the latest channel status are packed
+     * into a single int. Status history is only recorded when message tracing is enabled.
      */
     private class ChannelInformation {
 
-        private Integer channelToNumOfDeliveries = 0;
-        private List<ChannelMessageStatus> messageStatusesForChannel = new ArrayList<>(5);
+        /**
+         * Number of low order bits of the state word holding the latest channel status (ordinal + 1, 0 if none)
+         */
+        private static final int CHANNEL_STATUS_BITS = 8;
+
+        private static final int CHANNEL_STATUS_MASK = (1 << CHANNEL_STATUS_BITS) - 1;
+
+        private final UUID channelID;
+
+        /**
+         * Packed delivery count and latest channel status. Not private since it is updated through
+         * {@link #CHANNEL_STATE_UPDATER}.
+         */
+        volatile int channelState;
+
+        /**
+         * Channel status history. Null unless message tracing is enabled
+         */
+        private final List<ChannelMessageStatus> messageStatusesForChannel;
+
+        private ChannelInformation(UUID channelID, boolean recordHistory) {
+            this.channelID = channelID;
+            if (recordHistory) {
+                messageStatusesForChannel = Collections.synchronizedList(new ArrayList<ChannelMessageStatus>(5));
+            } else {
+                messageStatusesForChannel = null;
+            }
+        }
 
         private int incrementDeliveryCount() {
-            channelToNumOfDeliveries = channelToNumOfDeliveries + 1;
-            return channelToNumOfDeliveries;
+            return CHANNEL_STATE_UPDATER.addAndGet(this, 1 << CHANNEL_STATUS_BITS) >> CHANNEL_STATUS_BITS;
         }
 
         private int decrementDeliveryCount() {
-            channelToNumOfDeliveries = channelToNumOfDeliveries - 1;
-            return channelToNumOfDeliveries;
+            return CHANNEL_STATE_UPDATER.addAndGet(this, -(1 << CHANNEL_STATUS_BITS)) >> CHANNEL_STATUS_BITS;
         }
 
         private int getDeliveryCount() {
-            return channelToNumOfDeliveries;
+            return channelState >> CHANNEL_STATUS_BITS;
         }
 
         /**
@@ -638,46 +765,62 @@ public class DeliverableAndesMetadata extends AndesMessageMetadata {
          */
         private boolean addChannelStatus(ChannelMessageStatus state) {
 
-            boolean isValidTransition = false;
-
-            if (messageStatusesForChannel.isEmpty()) {
-                if (ChannelMessageStatus.DISPATCHED.equals(state)) {
-                    isValidTransition = true;
-                    messageStatusesForChannel.add(state);
+            int currentState;
+            ChannelMessageStatus latest;
+            boolean isValidTransition;
+            do {
+                currentState = channelState;
+                latest = toChannelStatus(currentState);
+                if (null == latest) {
+                    isValidTransition = ChannelMessageStatus.DISPATCHED.equals(state);
                 } else {
-                    log.warn(
-                            "Invalid channel message state transition suggested: " + state + " Message ID: " + messageID
-                                    + " Slot = " + slot.getId() + " Message Status History >> " + messageStatus);
+                    isValidTransition = latest.isValidNextTransition(state);
                 }
-            } else {
-                isValidTransition = messageStatusesForChannel.
-                        get(messageStatusesForChannel.size() - 1).isValidNextTransition(state);
+                if (!isValidTransition) {
+                    break;
+                }
+            } while (!CHANNEL_STATE_UPDATER.compareAndSet(this, currentState,
+                    (currentState & ~CHANNEL_STATUS_MASK) | (state.ordinal() + 1)));
 
-                if (isValidTransition) {
+            if (isValidTransition) {
+                if (null != messageStatusesForChannel) {
                     messageStatusesForChannel.add(state);
-                } else {
-                    log.warn("Invalid channel message state transition from " + messageStatusesForChannel
-                            .get(messageStatusesForChannel.size() - 1) + " suggested: " + state + " Message ID: "
-                            + messageID + " Slot = " + slot.getId() + " Channel Status History >> "
-                            + messageStatusesForChannel);
                 }
+            } else if (null == latest) {
+                log.warn("Invalid channel message state transition suggested: " + state + " Message ID: "
+                        + messageID + " Slot = " + slot.getId() + " Message Status History >> "
+                        + getStatusHistory());
+            } else {
+                log.warn("Invalid channel message state transition from " + latest + " suggested: " + state
+                        + " Message ID: " + messageID + " Slot = " + slot.getId() + " Channel Status History >> "
+                        + getMessageStatusHistoryForChannelAsString());
             }
 
             return isValidTransition;
         }
 
         private ChannelMessageStatus getLatestMessageStatus() {
-            if (!messageStatusesForChannel.isEmpty()) {
-                return messageStatusesForChannel.get(messageStatusesForChannel.size() - 1);
-            } else {
+            return toChannelStatus(channelState);
+        }
+
+        private ChannelMessageStatus toChannelStatus(int packedState) {
+            int status = packedState & CHANNEL_STATUS_MASK;
+            if (status == 0) {
                 return null;
             }
+            return CHANNEL_MESSAGE_STATUSES[status - 1];
         }
 
         private String getMessageStatusHistoryForChannelAsString() {
+            if (null == messageStatusesForChannel) {
+                ChannelMessageStatus latest = getLatestMessageStatus();
+                return null == latest ? "" : latest + ">>";
+            }
             StringBuilder channelInfo = new StringBuilder();
-            for (ChannelMessageStatus channelMessageStatus : messageStatusesForChannel) {
-                channelInfo.append(channelMessageStatus).append(">>");
+            synchronized (messageStatusesForChannel) {
+                for (ChannelMessageStatus channelMessageStatus : messageStatusesForChannel) {
+                    channelInfo.append(channelMessageStatus).append(">>");
+                }
             }
             return channelInfo.toString();
         }
@@ -24,7 +24,7 @@ import java.util.Map;
 /**
  * DisruptorCachedContent has access to content cache built by the disruptor
  */
-public class DisruptorCachedContent implements AndesContent {
+public class DisruptorCachedContent extends AbstractChunkedContent {
     /**
      * Used to store message parts in memory
      */
@@ -92,6 +92,14 @@ public class DisruptorCachedContent implements AndesContent {
         return written;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getChunkSize() {
+        return maxChunkSize;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -107,7 +115,8 @@ public class DisruptorCachedContent implements AndesContent {
      *         Byte index of the content
      * @return Content chunk
      */
-    private AndesMessagePart getMessagePart(int indexToQuery) throws AndesException {
+    @Override
+    protected AndesMessagePart getMessagePart(int indexToQuery) throws AndesException {
         AndesMessagePart messagePart = contentList.get(indexToQuery);
 
         if (null == messagePart) {
@@ -21,9 +21,11 @@ package org.wso2.andes.kernel;
 import org.wso2.andes.dtx.XidImpl;
 import org.wso2.andes.kernel.dtx.AndesPreparedMessageMetadata;
 import org.wso2.andes.kernel.dtx.DtxBranch;
+import org.wso2.andes.kernel.dtx.PartialDtxCommitException;
 import org.wso2.andes.store.HealthAwareStore;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.transaction.xa.Xid;
 
@@ -52,6 +54,18 @@ public interface DtxStore extends HealthAwareStore {
      */
     void updateOnCommit(long internalXid, List<AndesMessage> enqueueRecords) throws AndesException;
 
+    /**
+     * Update the store on dtx.commit requests of several independent branches. Enqueue records of all the
+     * branches are stored and their prepared records removed within a single database transaction. Either all
+     * the branches are committed or none of them are. Stores keeping the branches in several databases commit
+     * within a transaction per database and throw a {@link PartialDtxCommitException} naming the branches of the
+     * failed databases
+     *
+     * @param enqueueRecords {@link AndesMessage} lists to be stored, keyed by the internalXid of the branch
+     * @throws AndesException Throws exception on database related errors
+     */
+    void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) throws AndesException;
+
     /**
      * Update the store on a dtx.commit(one-phase) request with a set of enqueued and dequeued records.
      * This is done in a database transaction operation.
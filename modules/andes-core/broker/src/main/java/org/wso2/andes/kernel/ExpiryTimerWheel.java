@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timer wheel of message expiry deadlines. Scheduling a deadline and firing a tick are constant time
+ * regardless of the number of pending deadlines, so expired messages can be found without scanning the message
+ * store.
+ * <p>
+ * The wheel has {@link #LEVELS} levels of {@link #SLOTS} buckets. A bucket of level n spans SLOTS<sup>n</sup> ticks.
+ * A deadline is kept in the lowest level whose bucket still separates it from the current tick, and moves down a
+ * level each time the current tick enters the span of its bucket. Deadlines further away than the span of the whole
+ * wheel are kept in an overflow bucket and placed in the wheel once they come within range.
+ * <p>
+ * A deadline fires on the first tick boundary after it, so a message is never reported before it is expired.
+ * Deadlines of messages deleted before they expire are cancelled. Cancelled entries are left in their bucket and
+ * dropped when the bucket cascades or fires, which keeps cancelling constant time.
+ * <p>
+ * The wheel is accessed from the message writers and the expiry deletion task, therefore methods are synchronized.
+ * Callers work in batches to keep the lock uncontended.
+ */
+public class ExpiryTimerWheel {
+
+    /**
+     * Number of bits of the tick used to index the buckets of one level
+     */
+    private static final int BITS = 6;
+
+    /**
+     * Number of buckets in one level
+     */
+    static final int SLOTS = 1 << BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    /**
+     * Number of levels. With one second ticks the wheel spans a little over 194 days.
+     */
+    static final int LEVELS = 4;
+
+    /**
+     * Number of ticks spanned by the whole wheel
+     */
+    private static final long WHEEL_SPAN = 1L << (BITS * LEVELS);
+
+    /**
+     * Duration of one tick in milliseconds
+     */
+    private final long tickMillis;
+
+    private final Bucket[][] buckets;
+
+    /**
+     * Deadlines too far away to be placed in the wheel
+     */
+    private final Bucket overflow;
+
+    /**
+     * Deadlines which have fired and not been collected yet
+     */
+    private final Bucket due;
+
+    /**
+     * Last tick the wheel has advanced to
+     */
+    private long currentTick;
+
+    /**
+     * Ids of the messages with a deadline in the wheel which is not cancelled
+     */
+    private final LongHashSet scheduledMessageIds;
+
+    /**
+     * Create a timer wheel
+     *
+     * @param tickMillis duration of one tick in milliseconds
+     * @param nowMillis  current time in milliseconds
+     */
+    public ExpiryTimerWheel(long tickMillis, long nowMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick duration should be at least one millisecond: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        this.buckets = new Bucket[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                buckets[level][slot] = new Bucket();
+            }
+        }
+        this.overflow = new Bucket();
+        this.due = new Bucket();
+        this.scheduledMessageIds = new LongHashSet();
+    }
+
+    /**
+     * Schedule the expiry of written messages. Messages without an expiration time are ignored.
+     *
+     * @param messages messages written to the message store
+     */
+    public synchronized void schedule(List<AndesMessage> messages) {
+        for (AndesMessage message : messages) {
+            AndesMessageMetadata metadata = message.getMetadata();
+            if (metadata.getExpirationTime() > 0L && scheduledMessageIds.add(metadata.getMessageID())) {
+                add(metadata.getMessageID(), metadata.getStorageQueueName(), metadata.getExpirationTime());
+            }
+        }
+    }
+
+    /**
+     * Schedule the expiry of a message
+     *
+     * @param messageId        id of the message
+     * @param storageQueueName storage queue the message is written to
+     * @param expirationTime   time in milliseconds after which the message is expired
+     */
+    public synchronized void schedule(long messageId, String storageQueueName, long expirationTime) {
+        if (scheduledMessageIds.add(messageId)) {
+            add(messageId, storageQueueName, expirationTime);
+        }
+    }
+
+    /**
+     * Add messages which are already expired, so that they are collected on the next advance of the wheel
+     *
+     * @param storageQueueName storage queue the messages are written to
+     * @param messageIds       ids of the expired messages
+     */
+    public synchronized void scheduleExpired(String storageQueueName, Collection<Long> messageIds) {
+        for (long messageId : messageIds) {
+            if (scheduledMessageIds.add(messageId)) {
+                due.add(messageId, storageQueueName, 0L);
+            }
+        }
+    }
+
+    /**
+     * Cancel the deadlines of messages deleted from the message store. Ids without a deadline are ignored.
+     *
+     * @param messageIds ids of the deleted messages
+     */
+    public synchronized void cancel(LongArrayList messageIds) {
+        for (int i = 0; i < messageIds.size(); i++) {
+            scheduledMessageIds.remove(messageIds.get(i));
+        }
+    }
+
+    /**
+     * Advance the wheel to the given time and collect the messages whose deadline has passed
+     *
+     * @param nowMillis current time in milliseconds
+     * @return ids of expired messages grouped by storage queue, empty if nothing expired
+     */
+    public synchronized Map<String, LongArrayList> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Find the highest level that entered the span of a new bucket and cascade down from there
+            int topLevel = 0;
+            while (topLevel < LEVELS - 1 && (currentTick & ((1L << (BITS * (topLevel + 1))) - 1)) == 0) {
+                topLevel++;
+            }
+            if (topLevel == LEVELS - 1) {
+                cascade(overflow);
+            }
+            for (int level = topLevel; level > 0; level--) {
+                cascade(buckets[level][(int) ((currentTick >>> (BITS * level)) & MASK)]);
+            }
+
+            Bucket fired = buckets[0][(int) (currentTick & MASK)];
+            due.addAll(fired);
+            fired.clear();
+        }
+
+        if (due.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, LongArrayList> expired = new HashMap<>();
+        for (int i = 0; i < due.messageIds.size(); i++) {
+            if (!scheduledMessageIds.remove(due.messageIds.get(i))) {
+                // Message is deleted before it expired
+                continue;
+            }
+            String queueName = due.queueNames.get(i);
+            LongArrayList messageIds = expired.get(queueName);
+            if (null == messageIds) {
+                messageIds = new LongArrayList();
+                expired.put(queueName, messageIds);
+            }
+            messageIds.add(due.messageIds.get(i));
+        }
+        due.clear();
+        return expired;
+    }
+
+    /**
+     * Get the number of scheduled deadlines which have not been collected
+     *
+     * @return number of deadlines
+     */
+    public synchronized int size() {
+        return scheduledMessageIds.size();
+    }
+
+    /**
+     * Place a deadline in the bucket matching its distance from the current tick
+     */
+    private void add(long messageId, String storageQueueName, long expirationTime) {
+        // First tick boundary strictly after the expiration time
+        long tick = expirationTime / tickMillis + 1;
+        Bucket bucket;
+        if (tick <= currentTick) {
+            bucket = due;
+        } else if (tick - currentTick >= WHEEL_SPAN) {
+            bucket = overflow;
+        } else {
+            int level = 0;
+            while (level < LEVELS - 1 && (tick >>> (BITS * (level + 1))) != (currentTick >>> (BITS * (level + 1)))) {
+                level++;
+            }
+            bucket = buckets[level][(int) ((tick >>> (BITS * level)) & MASK)];
+        }
+        bucket.add(messageId, storageQueueName, expirationTime);
+    }
+
+    /**
+     * Move all deadlines of a bucket to the buckets matching their distance from the current tick
+     */
+    private void cascade(Bucket bucket) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        Bucket pending = new Bucket();
+        pending.addAll(bucket);
+        bucket.clear();
+        for (int i = 0; i < pending.messageIds.size(); i++) {
+            if (!scheduledMessageIds.contains(pending.messageIds.get(i))) {
+                // Drop the deadline of a message deleted before it expired
+                continue;
+            }
+            add(pending.messageIds.get(i), pending.queueNames.get(i), pending.expirationTimes.get(i));
+        }
+    }
+
+    /**
+     * Deadlines of one bucket, kept as parallel lists to avoid an object per scheduled message
+     */
+    private static final class Bucket {
+
+        private final LongArrayList messageIds = new LongArrayList(0);
+
+        private final LongArrayList expirationTimes = new LongArrayList(0);
+
+        private final List<String> queueNames = new ArrayList<>(0);
+
+        private void add(long messageId, String queueName, long expirationTime) {
+            messageIds.add(messageId);
+            expirationTimes.add(expirationTime);
+            queueNames.add(queueName);
+        }
+
+        private void addAll(Bucket other) {
+            messageIds.addAll(other.messageIds);
+            expirationTimes.addAll(other.expirationTimes);
+            queueNames.addAll(other.queueNames);
+        }
+
+        private boolean isEmpty() {
+            return messageIds.isEmpty();
+        }
+
+        private void clear() {
+            messageIds.clear();
+            expirationTimes.clear();
+            queueNames.clear();
+        }
+    }
+}
@@ -74,44 +74,49 @@ public class FlowControlledQueueMessageDeliveryImpl implements MessageDeliverySt
                  * if message is addressed to queues, only ONE subscriber should
                  * get the message. Otherwise, loop for every subscriber
                  */
-                for (int j = 0; j < numOfConsumers; j++) {
-                    int currentConsumerIndex = consumerIndexCounter % numOfConsumers;
-                    AndesSubscription localSubscription = currentSubscriptions.get(currentConsumerIndex);
-                    consumerIndexCounter = consumerIndexCounter + 1;
-                    if (localSubscription.getSubscriberConnection().isSuspended()) {
-                        suspendedSubFound = true;
-                        continue;
-                    }
-                    if (localSubscription.getSubscriberConnection().hasRoomToAcceptMessages()
-                            & localSubscription.getSubscriberConnection().isReadyToDeliver()) {
-
-                        if (!localSubscription.getSubscriberConnection().
-                                isMessageAcceptedByConnectionSelector(message)) {
-                            // If this doesn't match a selector we skip sending the message
-                            subscriberWithMatchingSelectorFound = false;
-                            continue; // continue on to match selectors of other subscribers
-                        }
-                        if (log.isDebugEnabled()) {
-                            log.debug("Scheduled to send message id = " + message.getMessageID() +
-                                    " to subscription id= " + localSubscription.getSubscriptionId());
+                try {
+                    for (int j = 0; j < numOfConsumers; j++) {
+                        int currentConsumerIndex = consumerIndexCounter % numOfConsumers;
+                        AndesSubscription localSubscription = currentSubscriptions.get(currentConsumerIndex);
+                        consumerIndexCounter = consumerIndexCounter + 1;
+                        if (localSubscription.getSubscriberConnection().isSuspended()) {
+                            suspendedSubFound = true;
+                            continue;
                         }
-
-                        // In a re-queue for delivery scenario we need the correct destination. Hence setting
-                        // it back correctly in AndesMetadata for durable subscription for topics
-                        if (storageQueue.getMessageRouter().
-                                getName().equals(AMQPUtils.TOPIC_EXCHANGE_NAME) && storageQueue.isDurable()) {
-
-                            message.setDestination(storageQueue.getName());
+                        if (localSubscription.getSubscriberConnection().hasRoomToAcceptMessages()
+                                & localSubscription.getSubscriberConnection().isReadyToDeliver()) {
+
+                            if (!localSubscription.getSubscriberConnection().
+                                    isMessageAcceptedByConnectionSelector(message)) {
+                                // If this doesn't match a selector we skip sending the message
+                                subscriberWithMatchingSelectorFound = false;
+                                continue; // continue on to match selectors of other subscribers
+                            }
+                            if (log.isDebugEnabled()) {
+                                log.debug("Scheduled to send message id = " + message.getMessageID() +
+                                        " to subscription id= " + localSubscription.getSubscriptionId());
+                            }
+
+                            // In a re-queue for delivery scenario we need the correct destination. Hence setting
+                            // it back correctly in AndesMetadata for durable subscription for topics
+                            if (storageQueue.getMessageRouter().
+                                    getName().equals(AMQPUtils.TOPIC_EXCHANGE_NAME) && storageQueue.isDurable()) {
+
+                                message.setDestination(storageQueue.getName());
+                            }
+                            message.markAsScheduledToDeliver(localSubscription);
+                            iterator.remove();
+                            MessageFlusher.getInstance().deliverMessageAsynchronously(localSubscription, message);
+                            numOfCurrentMsgDeliverySchedules++;
+
+                            //for queue messages and durable topic messages (as they are now queue messages)
+                            // we only send to one selected subscriber if it is a queue message
+                            break;
                         }
-                        message.markAsScheduledToDeliver(localSubscription);
-                        iterator.remove();
-                        MessageFlusher.getInstance().deliverMessageAsynchronously(localSubscription, message);
-                        numOfCurrentMsgDeliverySchedules++;
-
-                        //for queue messages and durable topic messages (as they are now queue messages)
-                        // we only send to one selected subscriber if it is a queue message
-                        break;
                     }
+                } finally {
+                    // Release the metadata decoded for selectors of this message
+                    AMQPUtils.clearSelectorEvaluationCache();
                 }
 
                 //if the message was delivered, it needs to be removed
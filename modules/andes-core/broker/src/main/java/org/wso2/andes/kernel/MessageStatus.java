@@ -18,7 +18,6 @@
 package org.wso2.andes.kernel;
 
 import java.util.EnumSet;
-import java.util.List;
 
 /**
  * Message status to keep track in which state message is
@@ -160,18 +159,4 @@ public enum MessageStatus {
         SLOT_RETURNED.previous = EnumSet.allOf(MessageStatus.class);
 
     }
-
-    /**
-     * Is OK to remove tracking message
-     *
-     * @return eligibility to remove
-     */
-    public static boolean isOKToRemove(List<MessageStatus> messageStatus) {
-        return (messageStatus.contains(MessageStatus.EXPIRED)
-                || messageStatus.contains(MessageStatus.DLC_MESSAGE)
-                || messageStatus.contains(MessageStatus.PURGED)
-                || messageStatus.contains(MessageStatus.DELETED))
-                || messageStatus.get(messageStatus.size() - 1).equals(MessageStatus.SLOT_REMOVED)
-                || messageStatus.get(messageStatus.size() - 1).equals(MessageStatus.SLOT_RETURNED);
-    }
 }
@@ -424,6 +424,29 @@ public interface MessageStore extends HealthAwareStore {
      */
     DeliverableAndesMetadata getRetainedMetadata(String destination) throws AndesException;
 
+    /**
+     * Return retained message metadata for the given destinations in one go. Destinations without a retained message
+     * are skipped.
+     *
+     * @param destinations Destination/Topic names
+     * @return Retained message metadata of the destinations
+     * @throws AndesException
+     * @see org.wso2.andes.kernel.AndesMessageMetadata#retain
+     */
+    List<DeliverableAndesMetadata> getRetainedMetadata(List<String> destinations) throws AndesException;
+
+    /**
+     * Get all content parts of the given retained messages in one go. Content parts of a message are keyed by their
+     * offset.
+     *
+     * @param messageIdList Message IDs of retained messages
+     * @return Content parts of each message keyed by message ID
+     * @throws AndesException
+     * @see org.wso2.andes.kernel.AndesMessageMetadata#retain
+     */
+    LongObjectHashMap<Map<Integer, AndesMessagePart>> getRetainedContentParts(LongArrayList messageIdList)
+            throws AndesException;
+
     /***
      * Get message IDs in DLC from sourceQueue starting from given startMessageId up to the given message count.
      *
@@ -18,6 +18,8 @@
 
 package org.wso2.andes.kernel;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import org.apache.log4j.Logger;
@@ -45,6 +47,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class will handle all message related functions of WSO2 Message Broker
@@ -84,6 +87,36 @@ public class MessagingEngine {
 
     private AndesSubscriptionManager subscriptionManager;
 
+    /**
+     * Expiry deadlines of the messages written by this node. Null if the timer wheel is disabled
+     */
+    private ExpiryTimerWheel expiryTimerWheel;
+
+    /**
+     * Maximum number of retained topics or messages read from the message store in one query
+     */
+    private static final int RETAINED_READ_BATCH_SIZE = 500;
+
+    /**
+     * Topics having a retained message
+     */
+    private final RetainedTopicIndex retainedTopicIndex = new RetainedTopicIndex();
+
+    /**
+     * Time the retained topic index was last loaded from the message store
+     */
+    private volatile long retainedTopicIndexLoadTime;
+
+    /**
+     * Interval after which the retained topic index is reloaded in a cluster. Zero in standalone mode
+     */
+    private long retainedTopicIndexRefreshInterval;
+
+    /**
+     * Content parts of retained messages sent to new subscriptions. Null if caching is disabled
+     */
+    private Cache<Long, Map<Integer, AndesMessagePart>> retainedContentCache;
+
     /**
      * private constructor for singleton pattern
      */
@@ -124,6 +157,24 @@ public class MessagingEngine {
         this.messageExpiryManager = messageExpiryManager;
         this.subscriptionManager = subscriptionManager;
 
+        if (AndesConfigurationManager.<Boolean>readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_EXPIRY_TIMER_WHEEL_ENABLED)) {
+            int tickInterval = AndesConfigurationManager.<Integer>readValue
+                    (AndesConfiguration.PERFORMANCE_TUNING_EXPIRY_TIMER_WHEEL_TICK_INTERVAL);
+            expiryTimerWheel = new ExpiryTimerWheel(tickInterval, System.currentTimeMillis());
+        }
+
+        if (AndesContext.getInstance().isClusteringEnabled()) {
+            retainedTopicIndexRefreshInterval = AndesConfigurationManager.<Integer>readValue
+                    (AndesConfiguration.PERFORMANCE_TUNING_RETAINED_TOPIC_INDEX_CLUSTER_REFRESH_INTERVAL);
+        }
+        loadRetainedTopicIndex();
+
+        Integer retainedContentCacheSize = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_RETAINED_CONTENT_CACHE_MAXIMUM_SIZE);
+        if (retainedContentCacheSize > 0) {
+            retainedContentCache = CacheBuilder.newBuilder().maximumSize(retainedContentCacheSize).build();
+        }
 
         /*
         Initialize the SlotCoordinator
@@ -172,6 +223,27 @@ public class MessagingEngine {
         messageStore.storeMessages(messageList);
     }
 
+    /**
+     * Track expiry deadlines of persisted messages so that they are deleted as they expire. Messages without an
+     * expiration time are ignored.
+     *
+     * @param messageList list of persisted {@link org.wso2.andes.kernel.AndesMessage}
+     */
+    public void scheduleMessageExpiry(List<AndesMessage> messageList) {
+        if (null != expiryTimerWheel) {
+            expiryTimerWheel.schedule(messageList);
+        }
+    }
+
+    /**
+     * Get the timer wheel tracking expiry deadlines of messages written by this node
+     *
+     * @return the {@link ExpiryTimerWheel} or null if it is disabled
+     */
+    public ExpiryTimerWheel getExpiryTimerWheel() {
+        return expiryTimerWheel;
+    }
+
     /**
      * Get a single metadata object
      *
@@ -194,7 +266,10 @@ public class MessagingEngine {
     public void moveMessageToDeadLetterChannel(DeliverableAndesMetadata messageToRemove, String destinationQueueName)
             throws AndesException {
         String deadLetterQueueName = DLCQueueUtils.identifyTenantInformationAndGenerateDLCString(destinationQueueName);
-        messageExpiryManager.moveMetadataToDLC(messageToRemove.getMessageID(), deadLetterQueueName);
+        // Move through the list variant so that the store knows the storage queue the message leaves
+        List<AndesMessageMetadata> messagesToMove = new ArrayList<>(1);
+        messagesToMove.add(messageToRemove);
+        messageExpiryManager.moveMetadataToDLC(messagesToMove, deadLetterQueueName);
 
         // Increment count by 1 in DLC and decrement by 1 in original queue
 
@@ -213,6 +288,7 @@ public class MessagingEngine {
      */
     public void deleteMessages(Collection<AndesMessageMetadata> messagesToRemove) throws AndesException {
         messageStore.deleteMessages(messagesToRemove);
+        cancelMessageExpiry(messagesToRemove);
     }
 
     /**
@@ -223,6 +299,7 @@ public class MessagingEngine {
      */
     public void deleteDLCMessages(List<AndesMessageMetadata> messagesToRemove) throws AndesException {
         messageStore.deleteDLCMessages(messagesToRemove);
+        cancelMessageExpiry(messagesToRemove);
     }
 
     /**
@@ -236,6 +313,31 @@ public class MessagingEngine {
         //delete message content along with metadata
         messageStore.deleteMessages(messagesToRemove);
         markAsDeleted(messagesToRemove);
+        cancelMessageExpiry(messagesToRemove);
+    }
+
+    /**
+     * Remove the expiry deadlines of deleted messages from the timer wheel so that the wheel does not grow with
+     * messages which are already consumed
+     *
+     * @param deletedMessages messages deleted from the store
+     */
+    private void cancelMessageExpiry(Collection<? extends AndesMessageMetadata> deletedMessages) {
+        if (null == expiryTimerWheel) {
+            return;
+        }
+        LongArrayList messageIds = null;
+        for (AndesMessageMetadata message : deletedMessages) {
+            if (message.getExpirationTime() > 0L) {
+                if (null == messageIds) {
+                    messageIds = new LongArrayList();
+                }
+                messageIds.add(message.getMessageID());
+            }
+        }
+        if (null != messageIds) {
+            expiryTimerWheel.cancel(messageIds);
+        }
     }
 
     /**
@@ -607,6 +709,19 @@ public class MessagingEngine {
      */
     public void storeRetainedMessages(Map<String, AndesMessage> retainMap) throws AndesException {
         messageStore.storeRetainedMessages(retainMap);
+
+        for (AndesMessage message : retainMap.values()) {
+            List<AndesMessagePart> contentChunks = message.getContentChunkList();
+            if (contentChunks.isEmpty()) {
+                continue;
+            }
+            // A retained message with an empty payload removes the retained message of the topic
+            if (contentChunks.get(0).getDataLength() == 0) {
+                retainedTopicIndex.remove(message.getMetadata().getDestination());
+            } else {
+                retainedTopicIndex.add(message.getMetadata().getDestination());
+            }
+        }
     }
 
     /**
@@ -619,13 +734,17 @@ public class MessagingEngine {
      */
     public List<DeliverableAndesMetadata> getRetainedMessageByTopic(String subscriptionTopicName)
             throws AndesException {
-        List<DeliverableAndesMetadata> retainMessageList = new ArrayList<>();
-        List<String> topicList = messageStore.getAllRetainedTopics();
+        if (retainedTopicIndexRefreshInterval > 0
+                && System.currentTimeMillis() - retainedTopicIndexLoadTime > retainedTopicIndexRefreshInterval) {
+            loadRetainedTopicIndex();
+        }
 
-        for (String topicName : topicList) {
-            if (TopicParserUtil.isMatching(topicName, subscriptionTopicName)) {
-                retainMessageList.add(messageStore.getRetainedMetadata(topicName));
-            }
+        List<String> topicList = retainedTopicIndex.match(subscriptionTopicName);
+        List<DeliverableAndesMetadata> retainMessageList = new ArrayList<>(topicList.size());
+        for (int start = 0; start < topicList.size(); start += RETAINED_READ_BATCH_SIZE) {
+            List<String> topicBatch = topicList.subList(start,
+                    Math.min(start + RETAINED_READ_BATCH_SIZE, topicList.size()));
+            retainMessageList.addAll(messageStore.getRetainedMetadata(topicBatch));
         }
 
         return retainMessageList;
@@ -642,11 +761,90 @@ public class MessagingEngine {
         long messageID = metadata.getMessageID();
         int contentSize = metadata.getMessageContentLength();
 
-        Map<Integer, AndesMessagePart> retainedContentParts = messageStore.getRetainedContentParts(messageID);
+        Map<Integer, AndesMessagePart> retainedContentParts = null;
+        if (null != retainedContentCache) {
+            retainedContentParts = retainedContentCache.getIfPresent(messageID);
+        }
+        if (null == retainedContentParts) {
+            retainedContentParts = messageStore.getRetainedContentParts(messageID);
+            if (null != retainedContentCache) {
+                retainedContentCache.put(messageID, retainedContentParts);
+            }
+        }
 
         return new RetainedContent(retainedContentParts, contentSize, messageID);
     }
 
+    /**
+     * Return message content for the given retained message metadata list. Content which is not cached is read from
+     * the message store in batches.
+     *
+     * @param metadataList Message metadata list
+     * @return AndesContent keyed by message ID
+     * @throws AndesException
+     */
+    public LongObjectHashMap<AndesContent> getRetainedMessageContent(List<? extends AndesMessageMetadata> metadataList)
+            throws AndesException {
+        LongObjectHashMap<Map<Integer, AndesMessagePart>> contentPartsMap = new LongObjectHashMap<>();
+        LongArrayList messagesToFetch = new LongArrayList();
+        for (AndesMessageMetadata metadata : metadataList) {
+            Map<Integer, AndesMessagePart> contentParts = null;
+            if (null != retainedContentCache) {
+                contentParts = retainedContentCache.getIfPresent(metadata.getMessageID());
+            }
+            if (null == contentParts) {
+                messagesToFetch.add(metadata.getMessageID());
+            } else {
+                contentPartsMap.put(metadata.getMessageID(), contentParts);
+            }
+        }
+
+        for (int start = 0; start < messagesToFetch.size(); start += RETAINED_READ_BATCH_SIZE) {
+            LongArrayList messageBatch = new LongArrayList(RETAINED_READ_BATCH_SIZE);
+            for (int i = start; i < Math.min(start + RETAINED_READ_BATCH_SIZE, messagesToFetch.size()); i++) {
+                messageBatch.add(messagesToFetch.get(i));
+            }
+            LongObjectHashMap<Map<Integer, AndesMessagePart>> fetchedContent =
+                    messageStore.getRetainedContentParts(messageBatch);
+            for (int i = 0; i < messageBatch.size(); i++) {
+                long messageID = messageBatch.get(i);
+                Map<Integer, AndesMessagePart> contentParts = fetchedContent.get(messageID);
+                if (null == contentParts) {
+                    contentParts = new HashMap<>();
+                } else if (null != retainedContentCache) {
+                    retainedContentCache.put(messageID, contentParts);
+                }
+                contentPartsMap.put(messageID, contentParts);
+            }
+        }
+
+        LongObjectHashMap<AndesContent> contentMap = new LongObjectHashMap<>();
+        for (AndesMessageMetadata metadata : metadataList) {
+            long messageID = metadata.getMessageID();
+            contentMap.put(messageID, new RetainedContent(contentPartsMap.get(messageID),
+                    metadata.getMessageContentLength(), messageID));
+        }
+        return contentMap;
+    }
+
+    /**
+     * Load the topics having a retained message from the message store into the retained topic index
+     *
+     * @throws AndesException
+     */
+    private synchronized void loadRetainedTopicIndex() throws AndesException {
+        // Another thread may have reloaded the index while this one was waiting
+        if (retainedTopicIndexLoadTime > 0
+                && System.currentTimeMillis() - retainedTopicIndexLoadTime <= retainedTopicIndexRefreshInterval) {
+            return;
+        }
+        retainedTopicIndex.replaceAll(messageStore.getAllRetainedTopics());
+        retainedTopicIndexLoadTime = System.currentTimeMillis();
+        if (log.isDebugEnabled()) {
+            log.debug(retainedTopicIndex.size() + " retained topics loaded from the message store");
+        }
+    }
+
     /**
      * Return last assign message id of slot for given queue
      *
@@ -21,6 +21,7 @@ package org.wso2.andes.kernel;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.amqp.AMQPUtils;
 import org.wso2.andes.kernel.subscription.AndesSubscription;
 import org.wso2.andes.kernel.subscription.StorageQueue;
 
@@ -68,26 +69,31 @@ public class NoLossBurstTopicMessageDeliveryImpl implements MessageDeliveryStrat
                 List<AndesSubscription> subscriptionsToDeliver = new ArrayList<>();
 
                 //All subscription filtering logic for topics goes here
-                for (AndesSubscription subscription : currentSubscriptions) {
-
-                    if (subscription.getSubscriberConnection().isSuspended()) {
-                        continue;
-                    }
-
-                    /*
-                     * Consider the arrival time of the message. Only topic
-                     * subscribers which appeared before publishing this message should receive it
-                     */
-                    if ((subscription.getSubscriberConnection().getSubscribeTime() > message.getArrivalTime())) {
-                        continue;
+                try {
+                    for (AndesSubscription subscription : currentSubscriptions) {
+
+                        if (subscription.getSubscriberConnection().isSuspended()) {
+                            continue;
+                        }
+
+                        /*
+                         * Consider the arrival time of the message. Only topic
+                         * subscribers which appeared before publishing this message should receive it
+                         */
+                        if ((subscription.getSubscriberConnection().getSubscribeTime() > message.getArrivalTime())) {
+                            continue;
+                        }
+
+                        // Avoid sending if the selector of subscriber does not match
+                        if (!subscription.getSubscriberConnection().isMessageAcceptedByConnectionSelector(message)) {
+                            continue;
+                        }
+
+                        subscriptionsToDeliver.add(subscription);
                     }
-
-                    // Avoid sending if the selector of subscriber does not match
-                    if (!subscription.getSubscriberConnection().isMessageAcceptedByConnectionSelector(message)) {
-                        continue;
-                    }
-
-                    subscriptionsToDeliver.add(subscription);
+                } finally {
+                    // Release the metadata decoded for selectors of this message
+                    AMQPUtils.clearSelectorEvaluationCache();
                 }
 
                 if (subscriptionsToDeliver.size() == 0) {
@@ -26,7 +26,7 @@ import java.util.Map;
 /**
  * DisruptorCachedContent has access to content cache built by the disruptor
  */
-public class RetainedContent implements AndesContent {
+public class RetainedContent extends AbstractChunkedContent {
     /**
      * Content length of the message
      */
@@ -93,6 +93,14 @@ public class RetainedContent implements AndesContent {
         return written;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getChunkSize() {
+        return AMQPUtils.DEFAULT_CONTENT_CHUNK_SIZE;
+    }
+
     /**
      * Get Message part for byte index
      *
@@ -100,7 +108,8 @@ public class RetainedContent implements AndesContent {
      *         Byte index of the content
      * @return Content chunk
      */
-    private AndesMessagePart getMessagePart(int indexToQuery) throws AndesException {
+    @Override
+    protected AndesMessagePart getMessagePart(int indexToQuery) throws AndesException {
         AndesMessagePart messagePart = messagePartCache.get(indexToQuery);
 
         if (null == messagePart) {
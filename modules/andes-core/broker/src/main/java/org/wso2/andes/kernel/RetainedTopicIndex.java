@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory index of the topics having a retained message. Topics are kept in a trie of topic levels so that the
+ * retained topics matching a subscription, wildcards included, are resolved in a single walk of the trie instead of
+ * matching the subscription against every retained topic.
+ * <p>
+ * Topic levels are separated by {@link TopicParserUtil#TOPIC_TOKEN_SEPARATOR}. A
+ * {@link TopicParserUtil#SINGLE_LEVEL_WILDCARD} level matches exactly one level and a
+ * {@link TopicParserUtil#MULTIPLE_LEVEL_WILDCARD} level, which has to be the last, matches the parent level and any
+ * number of child levels.
+ * <p>
+ * Lookups can run concurrently with each other. Updates are exclusive.
+ */
+public class RetainedTopicIndex {
+
+    /**
+     * Level of a topic
+     */
+    private static final class Node {
+
+        /**
+         * Child levels by name
+         */
+        private final Map<String, Node> children = new HashMap<>();
+
+        /**
+         * Topic ending at this level, null if no retained message is available for it
+         */
+        private String topic;
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node root = new Node();
+
+    /**
+     * Number of topics in the index
+     */
+    private int size;
+
+    /**
+     * Add a topic having a retained message. Adding a topic which is already in the index has no effect.
+     *
+     * @param topic topic name without wildcards
+     */
+    public void add(String topic) {
+        lock.writeLock().lock();
+        try {
+            addTopic(topic);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a topic whose retained message is deleted. Levels without topics are removed as well.
+     *
+     * @param topic topic name without wildcards
+     */
+    public void remove(String topic) {
+        String[] levels = split(topic);
+        lock.writeLock().lock();
+        try {
+            List<Node> path = new ArrayList<>(levels.length + 1);
+            Node node = root;
+            path.add(node);
+            for (String level : levels) {
+                node = node.children.get(level);
+                if (null == node) {
+                    return;
+                }
+                path.add(node);
+            }
+            if (null == node.topic) {
+                return;
+            }
+            node.topic = null;
+            size--;
+
+            // Prune levels left without topics, from the leaf up
+            for (int i = levels.length; i > 0; i--) {
+                Node level = path.get(i);
+                if (null != level.topic || !level.children.isEmpty()) {
+                    break;
+                }
+                path.get(i - 1).children.remove(levels[i - 1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the content of the index with the given topics
+     *
+     * @param topics topic names without wildcards
+     */
+    public void replaceAll(Collection<String> topics) {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            size = 0;
+            for (String topic : topics) {
+                addTopic(topic);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the topics matching a subscription
+     *
+     * @param subscriptionTopicName topic name of the subscription, which may contain wildcards
+     * @return matching topic names, empty if there is no match
+     * @throws AndesException if the subscription topic name is not valid
+     */
+    public List<String> match(String subscriptionTopicName) throws AndesException {
+        String[] levels = split(subscriptionTopicName);
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if (level.contains(TopicParserUtil.MULTIPLE_LEVEL_WILDCARD)
+                    && (i != levels.length - 1 || !level.equals(TopicParserUtil.MULTIPLE_LEVEL_WILDCARD))) {
+                throw new AndesException("Bad format of topic " + subscriptionTopicName + ", the multi symbol (#) "
+                        + "has to be the last one after a separator");
+            }
+            if (level.contains(TopicParserUtil.SINGLE_LEVEL_WILDCARD)
+                    && !level.equals(TopicParserUtil.SINGLE_LEVEL_WILDCARD)) {
+                throw new AndesException("Bad format of topic " + subscriptionTopicName + ", invalid subtopic name: "
+                        + level);
+            }
+        }
+
+        List<String> matchingTopics = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            collectMatches(root, levels, 0, matchingTopics);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matchingTopics;
+    }
+
+    /**
+     * @return number of topics in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a topic. Must hold the write lock.
+     */
+    private void addTopic(String topic) {
+        Node node = root;
+        for (String level : split(topic)) {
+            Node child = node.children.get(level);
+            if (null == child) {
+                child = new Node();
+                node.children.put(level, child);
+            }
+            node = child;
+        }
+        if (null == node.topic) {
+            node.topic = topic;
+            size++;
+        }
+    }
+
+    /**
+     * Collect topics under the given node matching the subscription levels starting from the given level.
+     * Must hold the read lock.
+     */
+    private void collectMatches(Node node, String[] levels, int levelIndex, List<String> matchingTopics) {
+        if (levelIndex == levels.length) {
+            if (null != node.topic) {
+                matchingTopics.add(node.topic);
+            }
+            return;
+        }
+
+        String level = levels[levelIndex];
+        if (TopicParserUtil.MULTIPLE_LEVEL_WILDCARD.equals(level)) {
+            collectAll(node, matchingTopics);
+        } else if (TopicParserUtil.SINGLE_LEVEL_WILDCARD.equals(level)) {
+            for (Node child : node.children.values()) {
+                collectMatches(child, levels, levelIndex + 1, matchingTopics);
+            }
+        } else {
+            Node child = node.children.get(level);
+            if (null != child) {
+                collectMatches(child, levels, levelIndex + 1, matchingTopics);
+            }
+        }
+    }
+
+    /**
+     * Collect all topics of the sub tree of the given node, the node included. Must hold the read lock.
+     */
+    private void collectAll(Node node, List<String> matchingTopics) {
+        if (null != node.topic) {
+            matchingTopics.add(node.topic);
+        }
+        for (Node child : node.children.values()) {
+            collectAll(child, matchingTopics);
+        }
+    }
+
+    /**
+     * Split a topic into levels. Empty levels, including leading and trailing ones, are kept.
+     */
+    private static String[] split(String topic) {
+        return topic.split(TopicParserUtil.TOPIC_TOKEN_SEPARATOR, -1);
+    }
+}
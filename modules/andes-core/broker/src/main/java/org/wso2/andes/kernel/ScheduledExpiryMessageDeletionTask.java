@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.kernel.slot.AbstractSlotManager;
+import org.wso2.andes.kernel.slot.ConnectionException;
+import org.wso2.andes.kernel.slot.SlotCoordinator;
+import org.wso2.andes.kernel.slot.SlotManagerClusterMode;
+import org.wso2.andes.kernel.slot.SlotManagerStandalone;
+import org.wso2.andes.metrics.MetricsConstants;
+import org.wso2.andes.store.FailureObservingStoreManager;
+import org.wso2.andes.store.HealthAwareStore;
+import org.wso2.andes.store.StoreHealthListener;
+import org.wso2.andes.tools.utils.MessageTracer;
+import org.wso2.carbon.metrics.manager.Gauge;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.Meter;
+import org.wso2.carbon.metrics.manager.MetricManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired messages as their deadlines fire in the {@link ExpiryTimerWheel} fed by the message writers of this
+ * node, instead of scanning the expiry data of every queue in the message store.
+ * <p>
+ * The same safe deletion region as {@link PeriodicExpiryMessageDeletionTask} applies. Expired messages below the
+ * region are about to be delivered and are removed by the pre delivery expiry check. Messages of a queue without a
+ * safe region yet are retried after the periodic deletion interval. Since the region is only known by the slot
+ * coordinator, other nodes of a cluster hand the messages whose deadline fired over to the coordinator, which adds
+ * them to its own wheel. Messages which could not be handed over are left to the periodic scan of the coordinator.
+ */
+public class ScheduledExpiryMessageDeletionTask implements Runnable, StoreHealthListener {
+
+    private static Log log = LogFactory.getLog(ScheduledExpiryMessageDeletionTask.class);
+    private static Log expiryLog = LogFactory.getLog("MessageExpirationTask");
+
+    /**
+     * Number of expired message ids written to the expiry log for each deleted batch
+     */
+    private static final int LOGGED_MESSAGE_ID_SAMPLE_SIZE = 10;
+
+    /**
+     * Deadlines of the messages written by this node
+     */
+    private final ExpiryTimerWheel expiryTimerWheel;
+
+    /**
+     * Holds the slot manager based on broker running mode.
+     */
+    private final AbstractSlotManager slotManager;
+
+    private final boolean isClusteringEnabled;
+
+    /**
+     * Number of expired messages deleted in one store operation
+     */
+    private final int deletionBatchSize;
+
+    /**
+     * Delay before retrying messages of a queue which does not have a safe deletion region yet
+     */
+    private final long retryDelayMillis;
+
+    /**
+     * Indicates and provides a barrier if messages stores become offline.
+     * marked as volatile since this value could be set from a different thread
+     */
+    private volatile SettableFuture<Boolean> messageStoresUnavailable;
+
+    /**
+     * Create a task deleting the expired messages tracked by the given timer wheel
+     *
+     * @param expiryTimerWheel deadlines of the messages written by this node
+     */
+    ScheduledExpiryMessageDeletionTask(ExpiryTimerWheel expiryTimerWheel) {
+        this.expiryTimerWheel = expiryTimerWheel;
+        this.messageStoresUnavailable = null;
+        this.isClusteringEnabled = AndesContext.getInstance().isClusteringEnabled();
+        if (isClusteringEnabled) {
+            this.slotManager = SlotManagerClusterMode.getInstance();
+        } else {
+            this.slotManager = SlotManagerStandalone.getInstance();
+        }
+        this.deletionBatchSize = AndesConfigurationManager.<Integer>readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_MESSAGE_EXPIRATION_BATCH_SIZE);
+        this.retryDelayMillis = TimeUnit.SECONDS.toMillis(AndesConfigurationManager.<Integer>readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_PERIODIC_EXPIRY_MESSAGE_DELETION_INTERVAL));
+        FailureObservingStoreManager.registerStoreHealthListener(this);
+        MetricManager.gauge(MetricsConstants.EXPIRY_TIMER_WHEEL_SIZE, Level.INFO, new TimerWheelSizeGauge());
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (null != messageStoresUnavailable) {
+                log.info("Message store has become unavailable therefore expiry message deletion task "
+                        + "waiting until store becomes available");
+                //act as a barrier
+                messageStoresUnavailable.get();
+                log.info("Message store became available. Resuming expiry message deletion task");
+                messageStoresUnavailable = null; // we are passing the blockade (therefore clear the it).
+            }
+
+            Map<String, LongArrayList> expiredMessages = expiryTimerWheel.advance(System.currentTimeMillis());
+            if (expiredMessages.isEmpty()) {
+                return;
+            }
+
+            if (isClusteringEnabled && !AndesContext.getInstance().getClusterAgent().isCoordinator()) {
+                handOverToCoordinator(expiredMessages);
+                return;
+            }
+
+            Set<String> slotQueues = slotManager.getAllQueues();
+            for (Map.Entry<String, LongArrayList> entry : expiredMessages.entrySet()) {
+                deleteExpiredMessages(entry.getKey(), entry.getValue(), slotQueues);
+            }
+        } catch (AndesException e) {
+            log.error("Error running message expiration checker " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            log.error("Thread interrupted while waiting for message stores to come online", e);
+        } catch (ExecutionException e) {
+            log.error("Error occurred while waiting for message stores to come online", e);
+        } catch (Throwable e) {
+            log.error("Error occurred during the scheduled expiry message deletion task", e);
+        }
+    }
+
+    /**
+     * Pass expired messages to the coordinator, which knows the safe deletion region of their queues
+     *
+     * @param expiredMessages ids of expired messages grouped by storage queue
+     */
+    private void handOverToCoordinator(Map<String, LongArrayList> expiredMessages) {
+        SlotCoordinator slotCoordinator = MessagingEngine.getInstance().getSlotCoordinator();
+        for (Map.Entry<String, LongArrayList> entry : expiredMessages.entrySet()) {
+            LongArrayList expiredMessageIds = entry.getValue();
+            List<Long> messageIds = new ArrayList<>(expiredMessageIds.size());
+            for (int i = 0; i < expiredMessageIds.size(); i++) {
+                messageIds.add(expiredMessageIds.get(i));
+            }
+            try {
+                slotCoordinator.scheduleExpiredMessages(entry.getKey(), messageIds);
+            } catch (ConnectionException e) {
+                // Messages stay in the message store and the periodic scan of the coordinator deletes them
+                log.warn("Could not hand over " + messageIds.size() + " expired messages of queue " + entry.getKey()
+                        + " to the coordinator. They are deleted by the periodic expiry scan.", e);
+            }
+        }
+    }
+
+    /**
+     * Delete the expired messages of a queue which are in the safe deletion region of the queue
+     *
+     * @param queueName        storage queue of the messages
+     * @param expiredMessageIds ids of the expired messages
+     * @param slotQueues       queues known to the slot manager
+     * @throws AndesException if the messages could not be deleted
+     */
+    private void deleteExpiredMessages(String queueName, LongArrayList expiredMessageIds, Set<String> slotQueues)
+            throws AndesException {
+
+        if (null == AndesContext.getInstance().getStorageQueueRegistry().getStorageQueue(queueName)) {
+            // Queue is deleted along with its messages
+            return;
+        }
+
+        long lowerBoundId = slotQueues.contains(queueName) ? slotManager.getSafeZoneLowerBoundId(queueName) : -1;
+        if (lowerBoundId == -1) {
+            // Messages are not submitted to slots yet or few enough to be delivered soon, check them again later
+            long retryTime = System.currentTimeMillis() + retryDelayMillis;
+            for (int i = 0; i < expiredMessageIds.size(); i++) {
+                expiryTimerWheel.schedule(expiredMessageIds.get(i), queueName, retryTime);
+            }
+            return;
+        }
+
+        try {
+            List<Long> deletableMessageIds = new ArrayList<>(Math.min(expiredMessageIds.size(), deletionBatchSize));
+            for (int i = 0; i < expiredMessageIds.size(); i++) {
+                long messageId = expiredMessageIds.get(i);
+                if (messageId >= lowerBoundId) {
+                    deletableMessageIds.add(messageId);
+                }
+                if (deletableMessageIds.size() == deletionBatchSize) {
+                    deleteBatch(queueName, deletableMessageIds);
+                    deletableMessageIds = new ArrayList<>(deletionBatchSize);
+                }
+            }
+            if (!deletableMessageIds.isEmpty()) {
+                deleteBatch(queueName, deletableMessageIds);
+            }
+        } finally {
+            //clear the safe deletion state in the slot manager after deletion completes
+            slotManager.clearDeletionTaskState();
+        }
+    }
+
+    private void deleteBatch(String queueName, List<Long> expiredMessageIds) throws AndesException {
+        //Tracing message activity
+        if (MessageTracer.isEnabled()) {
+            for (Long messageId : expiredMessageIds) {
+                MessageTracer.trace(messageId, queueName, MessageTracer.EXPIRED_MESSAGE_DETECTED_FROM_DATABASE);
+            }
+        }
+        //delete message metadata, content from the meta data table, content table and expiry table
+        MessagingEngine.getInstance().deleteMessagesById(expiredMessageIds);
+        recordExpiredMessages(queueName, expiredMessageIds);
+    }
+
+    /**
+     * Count deleted expired messages and log a sample of their ids, instead of logging every message
+     *
+     * @param queueName         storage queue of the messages
+     * @param expiredMessageIds ids of the deleted messages
+     */
+    static void recordExpiredMessages(String queueName, List<Long> expiredMessageIds) {
+        Meter expiryMeter = MetricManager.meter(MetricsConstants.EXPIRED_MESSAGES_DELETED, Level.INFO);
+        expiryMeter.mark(expiredMessageIds.size());
+
+        if (expiryLog.isWarnEnabled()) {
+            List<Long> sample = expiredMessageIds.subList(0,
+                    Math.min(LOGGED_MESSAGE_ID_SAMPLE_SIZE, expiredMessageIds.size()));
+            expiryLog.warn(expiredMessageIds.size() + " expired messages of queue " + queueName
+                    + " are deleted. Sample of message ids: " + sample);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeNonOperational(HealthAwareStore store, Exception ex) {
+        log.warn("Message store became not operational.");
+        messageStoresUnavailable = SettableFuture.create();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeOperational(HealthAwareStore store) {
+        log.info("Message store became operational.");
+        messageStoresUnavailable.set(false);
+    }
+
+    /**
+     * Gauge of the number of deadlines in the expiry timer wheel
+     */
+    private class TimerWheelSizeGauge implements Gauge<Integer> {
+        @Override
+        public Integer getValue() {
+            return expiryTimerWheel.size();
+        }
+    }
+}
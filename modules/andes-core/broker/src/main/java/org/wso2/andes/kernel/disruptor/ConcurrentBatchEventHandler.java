@@ -18,6 +18,7 @@
 
 package org.wso2.andes.kernel.disruptor;
 
+import com.lmax.disruptor.Cursored;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.AndesMessage;
@@ -28,6 +29,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This is a turn based concurrent event batching handler. This should be used with a Default Batch processor
@@ -36,11 +38,21 @@ import java.util.Map;
  * 
  * NOTE: Writing a custom batch processor is avoided since it related to implementing disruptor internals related
  * logic which might lead to difficulty in upgrading disruptor versions and getting bug fixes on batch processors 
+ *
+ * When a {@link GroupCommitController} is given the batch size is taken from the controller and the commit of a partial
+ * batch may be held back for a short while after the ring is drained. Messages published meanwhile accumulate in the
+ * ring and form a larger next batch. The batch itself is always committed before returning from the end of batch
+ * event since the processor sequence advances afterwards and later handlers expect the messages to be stored.
  */
 public class ConcurrentBatchEventHandler extends InboundEventHandler {
 
     private static Log log = LogFactory.getLog(ConcurrentBatchEventHandler.class);
 
+    /**
+     * Time to park between checks for new events while holding a partial batch
+     */
+    private static final long HOLD_PARK_NANOS = 10 * 1000;
+
     /**
      * Batch event handler for handling batched events
      */
@@ -77,6 +89,21 @@ public class ConcurrentBatchEventHandler extends InboundEventHandler {
      */
     private final Map<String, AndesMessage> retainMap;
 
+    /**
+     * Adaptive batch size controller. Null when the fixed batch size is used.
+     */
+    private final GroupCommitController groupCommitController;
+
+    /**
+     * Cursor of the ring this handler consumes. Used to see how many events accumulated while holding a commit.
+     */
+    private final Cursored ringCursor;
+
+    /**
+     * {@link System#nanoTime()} at which the first message of the current batch arrived
+     */
+    private long oldestPendingNanos;
+
     /**
      * Creates an event handler that can be used with a batch processor to do custom batching of inbound
      * event using inbound event type
@@ -90,7 +117,31 @@ public class ConcurrentBatchEventHandler extends InboundEventHandler {
      */
     public ConcurrentBatchEventHandler(long turn, int groupCount, int batchSize,
                                        InboundEventContainer.Type eventType, MessageWriter messageWriter) {
-        
+        this(turn, groupCount, batchSize, eventType, messageWriter, null, null);
+    }
+
+    /**
+     * Creates an event handler whose batch size and commit timing is decided by a {@link GroupCommitController}
+     *
+     * @param turn                  is the value of, sequence % groupCount this batch processor process events. Turn
+     *                              must be less than groupCount
+     * @param groupCount            total number of concurrent batch processors for the event type
+     * @param eventType             type of event to batch
+     * @param messageWriter         event handler that does the actual per event, event handling
+     * @param groupCommitController controller deciding the batch size
+     * @param ringCursor            cursor of the ring buffer this handler consumes
+     */
+    public ConcurrentBatchEventHandler(long turn, int groupCount, InboundEventContainer.Type eventType,
+                                       MessageWriter messageWriter, GroupCommitController groupCommitController,
+                                       Cursored ringCursor) {
+        this(turn, groupCount, groupCommitController.getBatchSize(), eventType, messageWriter,
+             groupCommitController, ringCursor);
+    }
+
+    private ConcurrentBatchEventHandler(long turn, int groupCount, int batchSize,
+                                        InboundEventContainer.Type eventType, MessageWriter messageWriter,
+                                        GroupCommitController groupCommitController, Cursored ringCursor) {
+
         if (turn >= groupCount) {
             throw new IllegalArgumentException("Turn should be less than groupCount");
         }
@@ -100,6 +151,8 @@ public class ConcurrentBatchEventHandler extends InboundEventHandler {
         this.batchSize = batchSize;
         this.eventType = eventType;
         this.messageWriter = messageWriter;
+        this.groupCommitController = groupCommitController;
+        this.ringCursor = ringCursor;
         messageList = new ArrayList<>(this.batchSize);
         retainMap = new HashMap<>();
 
@@ -119,6 +172,14 @@ public class ConcurrentBatchEventHandler extends InboundEventHandler {
 
             currentTurn = sequence % groupCount;
             if (turn == currentTurn) {
+                if (null != groupCommitController) {
+                    long now = System.nanoTime();
+                    if (messageList.isEmpty()) {
+                        oldestPendingNanos = now;
+                    }
+                    groupCommitController.eventArrived(now);
+                    batchSize = groupCommitController.getBatchSize();
+                }
                 messageList.addAll(event.getMessageList());
                 if(null != event.retainMessage) {
                     retainMap.put(event.retainMessage.getMetadata().getDestination(), event.retainMessage);
@@ -132,9 +193,20 @@ public class ConcurrentBatchEventHandler extends InboundEventHandler {
 
         // Batch and invoke event handler. Irrespective of event type following should execute.
         // End of batch may come in an irrelevant event type slot.
-        if (((messageList.size() >= batchSize) || endOfBatch)) {
+        boolean batchFull = messageList.size() >= batchSize;
+        if (batchFull || endOfBatch) {
+            if (!batchFull) {
+                holdCommit(sequence);
+            }
             try {
-                messageWriter.writeMessages(messageList, retainMap);
+                if (null != groupCommitController && !messageList.isEmpty()) {
+                    int messageCount = messageList.size();
+                    long start = System.nanoTime();
+                    messageWriter.writeMessages(messageList, retainMap);
+                    groupCommitController.committed(messageCount, System.nanoTime() - start, batchFull);
+                } else {
+                    messageWriter.writeMessages(messageList, retainMap);
+                }
                 messageList.clear();
                 retainMap.clear();
                 if (log.isDebugEnabled()) {
@@ -150,4 +222,24 @@ public class ConcurrentBatchEventHandler extends InboundEventHandler {
             }
         }
     }
+
+    /**
+     * Delay the commit of a partial batch while the controller expects more messages shortly. Waiting ends early once
+     * enough events for a full batch are published to the ring.
+     *
+     * @param sequence sequence of the current event
+     */
+    private void holdCommit(long sequence) {
+        if (null == groupCommitController) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long holdTime = groupCommitController.getHoldTime(messageList.size(), oldestPendingNanos, now);
+        long deadline = now + holdTime;
+        while (holdTime > 0 && (ringCursor.getCursor() - sequence) < batchSize) {
+            LockSupport.parkNanos(Math.min(HOLD_PARK_NANOS, holdTime));
+            holdTime = deadline - System.nanoTime();
+        }
+    }
 }
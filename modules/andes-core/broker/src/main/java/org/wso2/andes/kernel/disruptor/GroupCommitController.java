@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.disruptor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.metrics.MetricsConstants;
+import org.wso2.carbon.metrics.manager.Gauge;
+import org.wso2.carbon.metrics.manager.Histogram;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.Meter;
+import org.wso2.carbon.metrics.manager.MetricManager;
+import org.wso2.carbon.metrics.manager.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides batch sizes and commit timing of a single {@link ConcurrentBatchEventHandler}.
+ * <p>
+ * Half of the target latency is given to the store commit and the rest to waiting in the batch. The batch size shrinks
+ * when the moving average of the commit latency exceeds the commit share, and grows while batches fill up before the
+ * ring is drained and commits stay well within the commit share. When the ring is drained with a partial batch and
+ * messages have been arriving steadily, the commit is held for a short while so that the following messages gather in
+ * the ring and are committed together as the next batch instead of one by one.
+ * <p>
+ * Methods of this class are called only from the thread of the owning event handler.
+ */
+public class GroupCommitController {
+
+    private static Log log = LogFactory.getLog(GroupCommitController.class);
+
+    /**
+     * Weight of the latest sample in the moving averages
+     */
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    /**
+     * Target time from a message reaching the writer until it is committed
+     */
+    private final long targetLatencyNanos;
+
+    /**
+     * Part of the target latency which is given to the store commit
+     */
+    private final long commitLatencyBudgetNanos;
+
+    private final long maxHoldNanos;
+
+    /**
+     * Current batch size. Volatile since it is read by the metrics reporter.
+     */
+    private volatile int batchSize;
+
+    /**
+     * Moving average of the commit latency. Negative until the first commit.
+     */
+    private double averageCommitNanos = -1;
+
+    /**
+     * Moving average of the time between two batched events. Negative until two events arrived.
+     */
+    private double averageArrivalGapNanos = -1;
+
+    private long lastArrivalNanos;
+
+    private final Timer commitLatencyTimer;
+
+    private final Histogram messagesPerCommit;
+
+    private final Meter holdMeter;
+
+    /**
+     * Create a controller
+     *
+     * @param name             name used to distinguish the metrics of this controller
+     * @param initialBatchSize batch size to start with
+     * @param minBatchSize     lower bound of the batch size
+     * @param maxBatchSize     upper bound of the batch size
+     * @param targetLatency    target time in milliseconds from a message reaching the writer until it is committed
+     * @param maxHoldTime      maximum time in microseconds to hold a partial batch, 0 to disable holding
+     */
+    public GroupCommitController(String name, int initialBatchSize, int minBatchSize, int maxBatchSize,
+                                 int targetLatency, int maxHoldTime) {
+
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("Invalid group commit batch size range [" + minBatchSize + ", "
+                    + maxBatchSize + "]");
+        }
+
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+        this.commitLatencyBudgetNanos = targetLatencyNanos / 2;
+        this.maxHoldNanos = TimeUnit.MICROSECONDS.toNanos(maxHoldTime);
+        this.batchSize = Math.min(maxBatchSize, Math.max(minBatchSize, initialBatchSize));
+
+        String metricSuffix = MetricsConstants.METRICS_NAME_SEPARATOR + name;
+        commitLatencyTimer = MetricManager.timer(MetricsConstants.GROUP_COMMIT_LATENCY + metricSuffix, Level.INFO);
+        messagesPerCommit = MetricManager.histogram(MetricsConstants.GROUP_COMMIT_MESSAGES + metricSuffix,
+                Level.INFO);
+        holdMeter = MetricManager.meter(MetricsConstants.GROUP_COMMIT_HOLD + metricSuffix, Level.DEBUG);
+        MetricManager.gauge(MetricsConstants.GROUP_COMMIT_BATCH_SIZE + metricSuffix, Level.INFO,
+                new BatchSizeGauge());
+    }
+
+    /**
+     * @return number of messages after which the batch must be committed
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Record arrival of an event which added messages to the batch
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     */
+    public void eventArrived(long nowNanos) {
+        if (lastArrivalNanos != 0) {
+            averageArrivalGapNanos = average(averageArrivalGapNanos, nowNanos - lastArrivalNanos);
+        }
+        lastArrivalNanos = nowNanos;
+    }
+
+    /**
+     * Decide how long the commit of a partial batch can be held once the ring is drained. Holding is worth it only
+     * when messages have been arriving steadily enough for the next one to come within the remaining latency budget.
+     *
+     * @param pendingCount       number of messages in the batch
+     * @param oldestPendingNanos {@link System#nanoTime()} at which the oldest message of the batch arrived
+     * @param nowNanos           current {@link System#nanoTime()}
+     * @return time in nanoseconds to hold the commit, 0 if the batch should be committed now
+     */
+    public long getHoldTime(int pendingCount, long oldestPendingNanos, long nowNanos) {
+        if (0 == maxHoldNanos || 0 == pendingCount || pendingCount >= batchSize || averageArrivalGapNanos < 0) {
+            return 0;
+        }
+
+        long expectedCommitNanos = averageCommitNanos < 0 ? commitLatencyBudgetNanos : (long) averageCommitNanos;
+        long holdLimit = Math.min(maxHoldNanos, targetLatencyNanos - expectedCommitNanos);
+        long remaining = holdLimit - (nowNanos - oldestPendingNanos);
+
+        if (remaining <= 0 || averageArrivalGapNanos > remaining) {
+            return 0;
+        }
+        holdMeter.mark();
+        return remaining;
+    }
+
+    /**
+     * Record a completed commit and adjust the batch size
+     *
+     * @param messageCount  number of messages committed
+     * @param latencyNanos  time taken by the commit
+     * @param batchFull     true if the commit was triggered by reaching the batch size rather than by the ring being
+     *                      drained
+     */
+    public void committed(int messageCount, long latencyNanos, boolean batchFull) {
+        commitLatencyTimer.update(latencyNanos, TimeUnit.NANOSECONDS);
+        messagesPerCommit.update(messageCount);
+
+        averageCommitNanos = average(averageCommitNanos, latencyNanos);
+
+        int newBatchSize = batchSize;
+        if (averageCommitNanos > commitLatencyBudgetNanos) {
+            newBatchSize = Math.max(minBatchSize, batchSize * 3 / 4);
+        } else if (batchFull && averageCommitNanos < commitLatencyBudgetNanos * 3 / 4) {
+            newBatchSize = Math.min(maxBatchSize, batchSize + batchSize / 8 + 1);
+        }
+
+        if (newBatchSize != batchSize) {
+            if (log.isDebugEnabled()) {
+                log.debug("Group commit batch size changed from " + batchSize + " to " + newBatchSize
+                        + ". Average commit latency " + (long) averageCommitNanos + " ns");
+            }
+            batchSize = newBatchSize;
+        }
+    }
+
+    private static double average(double average, long sample) {
+        if (average < 0) {
+            return sample;
+        }
+        return average + AVERAGE_WEIGHT * (sample - average);
+    }
+
+    /**
+     * Reports the current batch size
+     */
+    private class BatchSizeGauge implements Gauge<Integer> {
+
+        @Override
+        public Integer getValue() {
+            return batchSize;
+        }
+    }
+}
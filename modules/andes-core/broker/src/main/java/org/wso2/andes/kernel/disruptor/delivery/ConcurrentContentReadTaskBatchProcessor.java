@@ -142,7 +142,8 @@ public class ConcurrentContentReadTaskBatchProcessor implements EventProcessor {
 
                     ProtocolMessage metadata = event.getMetadata();
                     long currentMessageID = metadata.getMessageID();
-                    currentTurn = currentMessageID % groupCount;
+                    // Partition by content id so that messages sharing content are read by the same reader
+                    currentTurn = metadata.getMessage().getContentId() % groupCount;
                     if (turn == currentTurn) {
                         eventList.add(event);
                         totalContentLength = totalContentLength + metadata.getMessage().getMessageContentLength();
@@ -30,6 +30,7 @@ import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.AndesMessagePart;
 import org.wso2.andes.kernel.DisruptorCachedContent;
+import org.wso2.andes.kernel.MessageStore;
 import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.ProtocolMessage;
 import org.wso2.andes.tools.utils.MessageTracer;
@@ -65,13 +66,31 @@ public class ContentCacheCreator {
      */
     private final Cache<Long, DisruptorCachedContent> contentCache;
 
+    /**
+     * Store to read content from. Content is read through {@link MessagingEngine} if null.
+     */
+    private final MessageStore messageStore;
+
     /**
      * Creates a {@link org.wso2.andes.kernel.disruptor.delivery.ContentCacheCreator} object
      *
      * @param maxContentChunkSize maximum content chunk size stored in DB
      */
     public ContentCacheCreator(int maxContentChunkSize) {
+        this(maxContentChunkSize, null);
+    }
+
+    /**
+     * Creates a {@link org.wso2.andes.kernel.disruptor.delivery.ContentCacheCreator} object reading content from
+     * the given store
+     *
+     * @param maxContentChunkSize maximum content chunk size stored in DB
+     * @param messageStore        store to read content from. Content is read through {@link MessagingEngine} if
+     *                            null.
+     */
+    ContentCacheCreator(int maxContentChunkSize, MessageStore messageStore) {
         this.maxChunkSize = maxContentChunkSize;
+        this.messageStore = messageStore;
 
         Integer maximumSize = AndesConfigurationManager
                 .readValue(AndesConfiguration.PERFORMANCE_TUNING_DELIVERY_CONTENT_CACHE_MAXIMUM_SIZE);
@@ -99,11 +118,13 @@ public class ContentCacheCreator {
         for (DeliveryEventData deliveryEventData : eventDataList) {
             ProtocolMessage metadata = deliveryEventData.getMetadata();
             long messageID = metadata.getMessageID();
+            // Messages sharing content with messages of other storage queues are read and cached by content id
+            long contentID = metadata.getMessage().getContentId();
             int contentLength = metadata.getMessage().getMessageContentLength();
 
             if (contentLength > 0) {
 
-                DisruptorCachedContent content = contentCache.getIfPresent(messageID);
+                DisruptorCachedContent content = contentCache.getIfPresent(contentID);
 
                 if (null != content) {
                     deliveryEventData.setAndesContent(content);
@@ -114,7 +135,7 @@ public class ContentCacheCreator {
 
                 } else {
                     // Add to the list to fetch later
-                    messagesToFetch.add(messageID);
+                    messagesToFetch.add(contentID);
                     messagesWithoutCachedContent.add(deliveryEventData);
                 }
 
@@ -129,15 +150,20 @@ public class ContentCacheCreator {
         LongArrayList containMessegesToFetch = new LongArrayList();
         containMessegesToFetch.addAll(messagesToFetch);
 
-        LongObjectHashMap<List<AndesMessagePart>> contentListMap = MessagingEngine.getInstance()
-                .getContent(containMessegesToFetch);
+        LongObjectHashMap<List<AndesMessagePart>> contentListMap;
+        if (null == messageStore) {
+            contentListMap = MessagingEngine.getInstance().getContent(containMessegesToFetch);
+        } else {
+            contentListMap = messageStore.getContent(containMessegesToFetch);
+        }
 
         for (DeliveryEventData deliveryEventData : messagesWithoutCachedContent) {
 
             ProtocolMessage metadata = deliveryEventData.getMetadata();
             long messageID = metadata.getMessageID();
+            long contentID = metadata.getMessage().getContentId();
             // We check again for content put in cache in the previous iteration
-            DisruptorCachedContent content = contentCache.getIfPresent(messageID);
+            DisruptorCachedContent content = contentCache.getIfPresent(contentID);
 
             if (null != content) {
                 deliveryEventData.setAndesContent(content);
@@ -150,7 +176,7 @@ public class ContentCacheCreator {
             }
 
             int contentSize = metadata.getMessage().getMessageContentLength();
-            List<AndesMessagePart> contentList = contentListMap.get(messageID);
+            List<AndesMessagePart> contentList = contentListMap.get(contentID);
 
             if (null != contentList) {
                 Map<Integer, AndesMessagePart> messagePartMap = new HashMap<>(contentList.size());
@@ -160,7 +186,7 @@ public class ContentCacheCreator {
                 }
 
                 content = new DisruptorCachedContent(messagePartMap, contentSize, maxChunkSize);
-                contentCache.put(messageID, content);
+                contentCache.put(contentID, content);
                 deliveryEventData.setAndesContent(content);
 
                 if (log.isTraceEnabled()) {
@@ -22,6 +22,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.SequenceBarrier;
 import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.commons.logging.Log;
@@ -29,7 +30,7 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.ProtocolMessage;
-import org.wso2.andes.kernel.disruptor.waitStrategy.SleepingBlockingWaitStrategy;
+import org.wso2.andes.kernel.disruptor.waitStrategy.WaitStrategyFactory;
 import org.wso2.andes.kernel.subscription.AndesSubscription;
 import org.wso2.andes.metrics.MetricsConstants;
 import org.wso2.andes.tools.utils.MessageTracer;
@@ -81,10 +82,13 @@ public class DisruptorBasedFlusher {
         ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("DisruptorBasedFlusher-%d").build();
         Executor threadPoolExecutor = Executors.newCachedThreadPool(namedThreadFactory);
 
+        WaitStrategy waitStrategy = new WaitStrategyFactory().create(
+                AndesConfiguration.PERFORMANCE_TUNING_DELIVERY_WAIT_STRATEGY);
+
         disruptor = new Disruptor<>(new DeliveryEventData.DeliveryEventDataFactory(), ringBufferSize,
                                                      threadPoolExecutor,
                                                      ProducerType.MULTI,
-                                                     new SleepingBlockingWaitStrategy());
+                                                     waitStrategy);
 
         disruptor.handleExceptionsWith(new DeliveryExceptionHandler());
 
@@ -21,6 +21,7 @@ package org.wso2.andes.kernel.disruptor.inbound;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.AndesAckEvent;
+import org.wso2.andes.kernel.AndesBulkAckEvent;
 import org.wso2.andes.kernel.disruptor.InboundEventHandler;
 
 import java.util.ArrayList;
@@ -41,6 +42,11 @@ public class AckEventBatchHandler extends InboundEventHandler {
      */
     private final List<AndesAckEvent> ackDataList;
 
+    /**
+     * Batched bulk acknowledgments event list.
+     */
+    private final List<AndesBulkAckEvent> bulkAckDataList;
+
     /**
      * Number assigned to this handler. Value is less than the groupCount. If the turn value is equal to
      * sequence % groupCount then the events related to that Disruptor sequence will be processed
@@ -71,6 +77,7 @@ public class AckEventBatchHandler extends InboundEventHandler {
      */
     public AckEventBatchHandler(int turn, int groupCount, int batchSize, AckHandler ackHandler) {
         ackDataList = new ArrayList<>(batchSize);
+        bulkAckDataList = new ArrayList<>();
         this.turn = turn;
         this.groupCount = groupCount;
         this.batchSize = batchSize;
@@ -83,21 +90,28 @@ public class AckEventBatchHandler extends InboundEventHandler {
     @Override
     public void onEvent(InboundEventContainer event, long sequence, boolean endOfBatch) throws Exception {
 
-        if (InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT == event.getEventType()) {
+        InboundEventContainer.Type eventType = event.getEventType();
+        if (InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT == eventType
+                || InboundEventContainer.Type.BULK_ACKNOWLEDGEMENT_EVENT == eventType) {
             long currentTurn = sequence % groupCount;
             if (turn == currentTurn) {
-                ackDataList.add(event.ackData);
+                if (InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT == eventType) {
+                    ackDataList.add(event.ackData);
+                } else {
+                    bulkAckDataList.add(event.bulkAckData);
+                }
             }
             if (log.isDebugEnabled()) {
                 log.debug("[ " + sequence + " ] Current turn " + currentTurn + ", turn " + turn
-                                  + ", groupCount " + groupCount + ", EventType "
-                                  + InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT);
+                                  + ", groupCount " + groupCount + ", EventType " + eventType);
             }
         }
 
-        if (((ackDataList.size() >= batchSize) || endOfBatch) && !ackDataList.isEmpty()) {
-            ackHandler.processAcknowledgements(ackDataList);
+        int batchedEventCount = ackDataList.size() + bulkAckDataList.size();
+        if (((batchedEventCount >= batchSize) || endOfBatch) && batchedEventCount > 0) {
+            ackHandler.processAcknowledgements(ackDataList, bulkAckDataList);
             ackDataList.clear();
+            bulkAckDataList.clear();
         }
     }
 }
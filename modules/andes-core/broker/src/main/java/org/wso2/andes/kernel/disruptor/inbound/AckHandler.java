@@ -22,6 +22,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.AndesAckEvent;
+import org.wso2.andes.kernel.AndesBulkAckEvent;
 import org.wso2.andes.kernel.AndesContext;
 import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.DeliverableAndesMetadata;
@@ -73,20 +74,25 @@ public class AckHandler implements StoreHealthListener {
     }
 
     /**
-     * Process the acknowledgment events and delete messages from database
+     * Process the acknowledgment events and delete messages from database. Messages of single and bulk
+     * acknowledgements are deleted together.
      * @param ackDataList {@link List} of {@link AndesAckEvent}
+     * @param bulkAckDataList {@link List} of {@link AndesBulkAckEvent}
      * @throws Exception
      */
-    public void processAcknowledgements(final List<AndesAckEvent> ackDataList) throws Exception {
+    public void processAcknowledgements(final List<AndesAckEvent> ackDataList,
+                                        final List<AndesBulkAckEvent> bulkAckDataList) throws Exception {
         if (log.isTraceEnabled()) {
-            log.trace(ackDataList.size() + " acknowledgements received from disruptor.");
+            log.trace(ackDataList.size() + " acknowledgements and " + bulkAckDataList.size()
+                    + " bulk acknowledgements received from disruptor.");
         }
         if (log.isDebugEnabled()) {
-            log.debug(ackDataList.size() + " acknowledgements received from disruptor.");
+            log.debug(ackDataList.size() + " acknowledgements and " + bulkAckDataList.size()
+                    + " bulk acknowledgements received from disruptor.");
         }
 
         try {
-            ackReceived(ackDataList);
+            ackReceived(ackDataList, bulkAckDataList);
         } catch (AndesException e) {
             // Log the AndesException since there is no point in passing the exception to Disruptor
             log.error("Error occurred while processing acknowledgements ", e);
@@ -100,8 +106,11 @@ public class AckHandler implements StoreHealthListener {
      *
      * @param ackEventList
      *            inboundEvent list
+     * @param bulkAckEventList
+     *            bulk acknowledgement inboundEvent list
      */
-    private void ackReceived(final List<AndesAckEvent> ackEventList) throws AndesException {
+    private void ackReceived(final List<AndesAckEvent> ackEventList, final List<AndesBulkAckEvent> bulkAckEventList)
+            throws AndesException {
         for (AndesAckEvent ack : ackEventList) {
 
             ack.setMetadataReference();
@@ -113,6 +122,10 @@ public class AckHandler implements StoreHealthListener {
             }
         }
 
+        for (AndesBulkAckEvent bulkAck : bulkAckEventList) {
+            messagesToRemove.addAll(bulkAck.processEvent());
+        }
+
         /*
          * Checks for the message store availability. Messages will be deleted only if the store is available.
          */
@@ -22,17 +22,26 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.disruptor.InboundEventHandler;
+import org.wso2.andes.kernel.dtx.DtxBranch;
+import org.wso2.andes.kernel.dtx.PartialDtxCommitException;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Distributed transaction messages and acknowledgment handler class. Invokes database calls related to the
- * distributed transaction messages and acknowledge events
+ * distributed transaction messages and acknowledge events.
+ * <p>
+ * Events are assigned to writers by the {@link javax.transaction.xa.Xid} of the branch, hence all the events of a
+ * branch are handled by the same writer while independent branches are written in parallel. dtx.commit events
+ * seen within a batch are grouped and written in a single database transaction.
  */
 public class DtxDbWriter extends InboundEventHandler {
 
     /**
      * logger class
      */
-    private static Log log = LogFactory.getLog(StateEventHandler.class);
+    private static Log log = LogFactory.getLog(DtxDbWriter.class);
 
     /**
      * Reference to messaging engine. This is used to store/acknowledge messages
@@ -45,36 +54,116 @@ public class DtxDbWriter extends InboundEventHandler {
     private final int handlerCount;
 
     /**
-     * Turn is the value of, sequence % groupCount this event handler process events. Turn must be
+     * Turn is the value of, xid hash % groupCount this event handler process events. Turn must be
      * less than groupCount
      */
     private final int turn;
 
-    DtxDbWriter(MessagingEngine engine, int turn, int handlerCount) {
+    /**
+     * Maximum number of dtx.commit events grouped into a single database transaction
+     */
+    private final int commitGroupSize;
+
+    /**
+     * dtx.commit events of the current batch that are yet to be written to the database
+     */
+    private final List<InboundEventContainer> commitEvents;
+
+    DtxDbWriter(MessagingEngine engine, int turn, int handlerCount, int commitGroupSize) {
         this.messagingEngine = engine;
         this.turn = turn;
         this.handlerCount = handlerCount;
+        this.commitGroupSize = commitGroupSize;
+        commitEvents = new ArrayList<>(commitGroupSize);
     }
 
     @Override
     public void onEvent(InboundEventContainer event, long sequence, boolean endOfBatch) throws Exception {
 
-        long currentTurn = sequence % handlerCount;
+        try {
+            if (isDtxEvent(event) && turn == getTurn(event.getDtxBranch())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Sequence [ " + sequence + " ] Event " + event.getEventType());
+
+                }
+                if (InboundEventContainer.Type.DTX_COMMIT_EVENT == event.getEventType()) {
+                    commitEvents.add(event);
+                } else if (InboundEventContainer.Type.DTX_ONE_PHASE_COMMIT_EVENT == event.getEventType()) {
+                    event.getDtxBranch().writeToDbOnOnePhaseCommit();
+                } else if (InboundEventContainer.Type.DTX_ROLLBACK_EVENT == event.getEventType()) {
+                    event.getDtxBranch().writeToDbOnRollback();
+                } else if (InboundEventContainer.Type.DTX_PREPARE_EVENT == event.getEventType()) {
+                    event.getDtxBranch().persistRecords();
+                }
+            }
+        } catch (Exception e) {
+            // Disruptor releases the sequence of a failed event to the next handlers. Pending commits before
+            // that sequence need to be written first
+            writeCommitEvents();
+            throw e;
+        }
+
+        if (endOfBatch || commitEvents.size() >= commitGroupSize) {
+            writeCommitEvents();
+        }
+    }
+
+    /**
+     * Write the pending dtx.commit events to the database in a single transaction. On failure all the grouped
+     * events are marked as failed so that each branch reports the error to its client, except for branches the
+     * store reports as committed when it commits the group in several databases
+     */
+    private void writeCommitEvents() {
+        if (commitEvents.isEmpty()) {
+            return;
+        }
 
-        if (turn == currentTurn) {
-            if (log.isDebugEnabled()) {
-                log.debug("Sequence [ " + sequence + " ] Event " + event.getEventType());
+        List<DtxBranch> branches = new ArrayList<>(commitEvents.size());
+        for (InboundEventContainer commitEvent : commitEvents) {
+            branches.add(commitEvent.getDtxBranch());
+        }
 
+        try {
+            DtxBranch.writeToDbOnCommit(branches);
+        } catch (PartialDtxCommitException e) {
+            log.error("Error occurred while writing dtx commit events of " + branches.size()
+                    + " branches to the database, some of the branches are committed", e);
+            for (InboundEventContainer commitEvent : commitEvents) {
+                if (e.isFailed(commitEvent.getDtxBranch().getInternalXid())) {
+                    commitEvent.setError(e);
+                }
             }
-            if (InboundEventContainer.Type.DTX_COMMIT_EVENT == event.getEventType()) {
-                event.getDtxBranch().writeToDbOnCommit();
-            } else if (InboundEventContainer.Type.DTX_ONE_PHASE_COMMIT_EVENT == event.getEventType()) {
-                event.getDtxBranch().writeToDbOnOnePhaseCommit();
-            } else if (InboundEventContainer.Type.DTX_ROLLBACK_EVENT == event.getEventType()) {
-                event.getDtxBranch().writeToDbOnRollback();
-            } else if (InboundEventContainer.Type.DTX_PREPARE_EVENT == event.getEventType()) {
-                event.getDtxBranch().persistRecords();
+        } catch (Exception e) {
+            log.error("Error occurred while writing " + branches.size() + " dtx commit events to the database", e);
+            for (InboundEventContainer commitEvent : commitEvents) {
+                commitEvent.setError(e);
             }
+        } finally {
+            commitEvents.clear();
         }
     }
+
+    /**
+     * Check whether the event is handled by {@link DtxDbWriter}s
+     *
+     * @param event {@link InboundEventContainer}
+     * @return True if the event is a distributed transaction event
+     */
+    private static boolean isDtxEvent(InboundEventContainer event) {
+        InboundEventContainer.Type eventType = event.getEventType();
+        return InboundEventContainer.Type.DTX_COMMIT_EVENT == eventType
+                || InboundEventContainer.Type.DTX_ONE_PHASE_COMMIT_EVENT == eventType
+                || InboundEventContainer.Type.DTX_ROLLBACK_EVENT == eventType
+                || InboundEventContainer.Type.DTX_PREPARE_EVENT == eventType;
+    }
+
+    /**
+     * Get the writer turn of a branch
+     *
+     * @param branch {@link DtxBranch}
+     * @return turn of the writer that handles events of the branch
+     */
+    private int getTurn(DtxBranch branch) {
+        return (branch.getXid().hashCode() & Integer.MAX_VALUE) % handlerCount;
+    }
 }
@@ -20,6 +20,7 @@ package org.wso2.andes.kernel.disruptor.inbound;
 
 import com.lmax.disruptor.EventFactory;
 import org.wso2.andes.kernel.AndesAckEvent;
+import org.wso2.andes.kernel.AndesBulkAckEvent;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.AndesMessage;
@@ -70,6 +71,11 @@ public class InboundEventContainer {
      */
     public AndesAckEvent ackData;
 
+    /**
+     * Acknowledgment of several messages received to disruptor
+     */
+    public AndesBulkAckEvent bulkAckData;
+
     /**
      * When content chunk processed this boolean is set to false
      * {@link ContentChunkHandler} will check this boolean and
@@ -107,6 +113,17 @@ public class InboundEventContainer {
      */
     private InboundMessageRecoveryEvent recoverEvent;
 
+    /**
+     * Last sequence claimed in the publish ring when this control event was published. The event is processed only
+     * after the publish ring has processed up to this sequence.
+     */
+    private long publishRingBarrier;
+
+    /**
+     * Last sequence claimed in the acknowledgement ring when this control event was published
+     */
+    private long ackRingBarrier;
+
     /**
      * MessageId generated by {@link MessagePreProcessor} for slot submit a slot submit after a member left event.
      * This is to avoid lost slot submit events from left member nodes.
@@ -193,6 +210,11 @@ public class InboundEventContainer {
          */
         ACKNOWLEDGEMENT_EVENT,
 
+        /**
+         * Acknowledgement of several messages of a channel receive event
+         */
+        BULK_ACKNOWLEDGEMENT_EVENT,
+
         /**
          * Andes state change related event type
          */
@@ -247,7 +269,8 @@ public class InboundEventContainer {
         eventType = Type.IGNORE_EVENT;
         safeZoneLimit = Long.MIN_VALUE;
         freshContent = new AtomicBoolean(true);
-
+        publishRingBarrier = -1;
+        ackRingBarrier = -1;
     }
 
     public final Type getEventType() {
@@ -300,6 +323,25 @@ public class InboundEventContainer {
         this.stateEvent = stateEvent;
     }
 
+    /**
+     * Set the sequences of the publish and acknowledgement rings which must be processed before this event
+     *
+     * @param publishRingBarrier last claimed sequence of the publish ring
+     * @param ackRingBarrier     last claimed sequence of the acknowledgement ring
+     */
+    public void setRingBarriers(long publishRingBarrier, long ackRingBarrier) {
+        this.publishRingBarrier = publishRingBarrier;
+        this.ackRingBarrier = ackRingBarrier;
+    }
+
+    public long getPublishRingBarrier() {
+        return publishRingBarrier;
+    }
+
+    public long getAckRingBarrier() {
+        return ackRingBarrier;
+    }
+
     /**
      * Reset internal references null and sets event type to IGNORE_EVENT
      */
@@ -308,6 +350,7 @@ public class InboundEventContainer {
         messageList.clear();
         retainMessage = null;
         ackData = null;
+        bulkAckData = null;
         stateEvent = null;
         eventType = Type.IGNORE_EVENT;
         pubAckHandler = null;
@@ -317,6 +360,8 @@ public class InboundEventContainer {
         dtxBranch = null;
         error = null;
         recoverEvent = null;
+        publishRingBarrier = -1;
+        ackRingBarrier = -1;
     }
 
     /**
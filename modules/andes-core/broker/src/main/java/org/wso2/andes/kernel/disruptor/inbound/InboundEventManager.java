@@ -27,15 +27,18 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.kernel.AndesAckData;
 import org.wso2.andes.kernel.AndesAckEvent;
+import org.wso2.andes.kernel.AndesBulkAckData;
+import org.wso2.andes.kernel.AndesBulkAckEvent;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesMessage;
 import org.wso2.andes.kernel.DisablePubAckImpl;
 import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.disruptor.ConcurrentBatchEventHandler;
+import org.wso2.andes.kernel.disruptor.GroupCommitController;
 import org.wso2.andes.kernel.disruptor.InboundEventHandler;
 import org.wso2.andes.kernel.disruptor.LogExceptionHandler;
 import org.wso2.andes.kernel.disruptor.compression.LZ4CompressionHelper;
-import org.wso2.andes.kernel.disruptor.waitStrategy.SleepingBlockingWaitStrategy;
+import org.wso2.andes.kernel.disruptor.waitStrategy.WaitStrategyFactory;
 import org.wso2.andes.kernel.dtx.DtxBranch;
 import org.wso2.andes.metrics.MetricsConstants;
 import org.wso2.andes.tools.utils.MessageTracer;
@@ -50,13 +53,24 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_ACKNOWLEDGEMENT_HANDLER_BATCH_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_ACK_HANDLER_COUNT;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_ACK_HANDLING_BUFFER_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_CONTENT_CHUNK_HANDLER_COUNT;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_CONTROL_EVENT_BUFFER_SIZE;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_DTX_COMMIT_GROUP_SIZE;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_GROUP_COMMIT_ENABLED;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_GROUP_COMMIT_MAX_BATCH_SIZE;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_GROUP_COMMIT_MAX_HOLD_TIME;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_GROUP_COMMIT_MIN_BATCH_SIZE;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_GROUP_COMMIT_TARGET_LATENCY;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_INBOUND_WAIT_STRATEGY;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_MAX_CONTENT_CHUNK_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_MESSAGE_WRITER_BATCH_SIZE;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_DTX_DB_WRITERS;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_MESSAGE_WRITERS;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_TRANSACTION_MESSAGE_WRITERS;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PUBLISHING_BUFFER_SIZE;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT;
+import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.BULK_ACKNOWLEDGEMENT_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.MESSAGE_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.PUBLISHER_RECOVERY_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.SAFE_ZONE_DECLARE_EVENT;
@@ -69,15 +83,25 @@ import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type
 
 /**
  * Disruptor based inbound event handling class.
- * Inbound events are represent within the buffer as InboundEventContainer objects. Four types of event processors goes through
- * the ring buffer processing events.
+ * Inbound events are represent within the buffer as InboundEventContainer objects. Events are published to three
+ * independent rings, each with its own handler chain.
+ * <ul>
+ *  <li>Publish ring - messages, transactions and the safe zone and publisher recovery events</li>
+ *  <li>Acknowledgement ring - message acknowledgements</li>
+ *  <li>Control ring - state change and message recovery events. A control event is processed only after the other
+ *      two rings processed the events published before it.</li>
+ * </ul>
  */
 public class InboundEventManager {
 
     private static Log log = LogFactory.getLog(InboundEventManager.class);
     private final RingBuffer<InboundEventContainer> ringBuffer;
+    private final RingBuffer<InboundEventContainer> ackRingBuffer;
+    private final RingBuffer<InboundEventContainer> controlRingBuffer;
     private AtomicInteger ackedMessageCount = new AtomicInteger();
     private Disruptor<InboundEventContainer> disruptor;
+    private Disruptor<InboundEventContainer> ackDisruptor;
+    private Disruptor<InboundEventContainer> controlDisruptor;
     private final DisablePubAckImpl disablePubAck;
     private LZ4CompressionHelper lz4CompressionHelper;
 
@@ -95,8 +119,15 @@ public class InboundEventManager {
                 PERFORMANCE_TUNING_ACKNOWLEDGEMENT_HANDLER_BATCH_SIZE);
         Integer transactionHandlerCount = AndesConfigurationManager.readValue(
                 PERFORMANCE_TUNING_PARALLEL_TRANSACTION_MESSAGE_WRITERS);
+        Integer ackBufferSize = AndesConfigurationManager.readValue(
+                PERFORMANCE_TUNING_ACK_HANDLING_BUFFER_SIZE);
+        Integer controlBufferSize = AndesConfigurationManager.readValue(
+                PERFORMANCE_TUNING_CONTROL_EVENT_BUFFER_SIZE);
 
-        Integer dtxDbWriterCount = 1; // need to merge local and distributed transaction writing logic to the same
+        Integer dtxDbWriterCount = AndesConfigurationManager.readValue(
+                PERFORMANCE_TUNING_PARALLEL_DTX_DB_WRITERS);
+        Integer dtxCommitGroupSize = AndesConfigurationManager.readValue(
+                PERFORMANCE_TUNING_DTX_COMMIT_GROUP_SIZE);
 
         disablePubAck = new DisablePubAckImpl();
         int maxContentChunkSize = AndesConfigurationManager.readValue(
@@ -108,16 +139,34 @@ public class InboundEventManager {
                 .setNameFormat("DisruptorInboundEventThread-%d").build();
         ExecutorService executorPool = Executors.newCachedThreadPool(namedThreadFactory);
 
+        WaitStrategyFactory waitStrategyFactory = new WaitStrategyFactory();
+
         disruptor = new Disruptor<>(InboundEventContainer.getFactory(),
                 bufferSize,
                 executorPool,
                 ProducerType.MULTI,
-                new SleepingBlockingWaitStrategy());
+                waitStrategyFactory.create(PERFORMANCE_TUNING_INBOUND_WAIT_STRATEGY));
 
         disruptor.handleExceptionsWith(new LogExceptionHandler());
 
+        ackDisruptor = new Disruptor<>(InboundEventContainer.getFactory(),
+                ackBufferSize,
+                executorPool,
+                ProducerType.MULTI,
+                waitStrategyFactory.create(PERFORMANCE_TUNING_INBOUND_WAIT_STRATEGY));
+
+        ackDisruptor.handleExceptionsWith(new LogExceptionHandler());
+
+        controlDisruptor = new Disruptor<>(InboundEventContainer.getFactory(),
+                controlBufferSize,
+                executorPool,
+                ProducerType.MULTI,
+                waitStrategyFactory.create(PERFORMANCE_TUNING_INBOUND_WAIT_STRATEGY));
+
+        controlDisruptor.handleExceptionsWith(new LogExceptionHandler());
+
         InboundEventHandler[] batchEventHandlers = new InboundEventHandler[
-                writeHandlerCount + transactionHandlerCount + ackHandlerCount + dtxDbWriterCount];
+                writeHandlerCount + transactionHandlerCount + dtxDbWriterCount];
 
         lz4CompressionHelper = new LZ4CompressionHelper();
 
@@ -132,37 +181,34 @@ public class InboundEventManager {
         }
 
         for (int turn = 0; turn < writeHandlerCount; turn++) {
-            batchEventHandlers[turn] =
-                    new ConcurrentBatchEventHandler(turn, writeHandlerCount, writerBatchSize, MESSAGE_EVENT,
-                                                    new MessageWriter(messagingEngine, writerBatchSize));
+            batchEventHandlers[turn] = createMessageWriterHandler(turn, writeHandlerCount, writerBatchSize,
+                                                                  MESSAGE_EVENT, messagingEngine);
         }
 
         for (int turn = 0; turn < transactionHandlerCount; turn++) {
             batchEventHandlers[writeHandlerCount + turn] =
-                    new ConcurrentBatchEventHandler(turn, transactionHandlerCount,
-                            writerBatchSize,
-                            TRANSACTION_COMMIT_EVENT,
-                            new MessageWriter(messagingEngine, writerBatchSize));
+                    createMessageWriterHandler(turn, transactionHandlerCount, writerBatchSize,
+                                               TRANSACTION_COMMIT_EVENT, messagingEngine);
         }
 
-        for (int turn = 0; turn < ackHandlerCount; turn++) {
+        for (int turn = 0; turn < dtxDbWriterCount; turn++) {
             batchEventHandlers[writeHandlerCount+ transactionHandlerCount + turn] =
-                    new AckEventBatchHandler(turn, ackHandlerCount, ackHandlerBatchSize,
-                                             new AckHandler(messagingEngine));
+                    new DtxDbWriter(messagingEngine, turn, dtxDbWriterCount, dtxCommitGroupSize);
         }
 
-        for (int turn = 0; turn < dtxDbWriterCount; turn++) {
-            batchEventHandlers[writeHandlerCount+ transactionHandlerCount + ackHandlerCount + turn] =
-                    new DtxDbWriter(messagingEngine, turn, dtxDbWriterCount);
+        AckEventBatchHandler[] ackEventHandlers = new AckEventBatchHandler[ackHandlerCount];
+        for (int turn = 0; turn < ackHandlerCount; turn++) {
+            ackEventHandlers[turn] = new AckEventBatchHandler(turn, ackHandlerCount, ackHandlerBatchSize,
+                                                              new AckHandler(messagingEngine));
         }
 
         MessagePreProcessor preProcessor = new MessagePreProcessor();
         StateEventHandler stateEventHandler = new StateEventHandler();
 
-        // Order in which handlers run in Disruptor
+        // Order in which handlers run in the publish ring
         // - ContentChunkHandlers
         // - MessagePreProcessor
-        // - AckHandlers, MessageWriters, DtxDbWriter
+        // - MessageWriters, DtxDbWriter
         // - StateEventHandler
         disruptor.handleEventsWith(chunkHandlers).then(preProcessor);
         disruptor.after(preProcessor)
@@ -171,13 +217,59 @@ public class InboundEventManager {
                                             // is done. State event handler will execute last. This handler will clear
                                             // the event container.
 
+        // Acknowledgement ring: AckHandlers, then StateEventHandler
+        ackDisruptor.handleEventsWith(ackEventHandlers).then(new StateEventHandler());
+
         ringBuffer = disruptor.start();
+        ackRingBuffer = ackDisruptor.start();
+
+        // Control ring: wait for the other rings, then StateEventHandler
+        controlDisruptor.handleEventsWith(new RingBarrierHandler(ringBuffer, ackRingBuffer))
+                .then(new StateEventHandler());
+        controlRingBuffer = controlDisruptor.start();
 
         //Will add the gauge to metrics manager
-        MetricManager.gauge(MetricsConstants.DISRUPTOR_INBOUND_RING, Level.INFO, new InBoundRingGauge());
+        MetricManager.gauge(MetricsConstants.DISRUPTOR_INBOUND_RING, Level.INFO, new InBoundRingGauge(ringBuffer));
+        MetricManager.gauge(MetricsConstants.DISRUPTOR_INBOUND_ACK_RING, Level.INFO,
+                            new InBoundRingGauge(ackRingBuffer));
+        MetricManager.gauge(MetricsConstants.DISRUPTOR_INBOUND_CONTROL_RING, Level.INFO,
+                            new InBoundRingGauge(controlRingBuffer));
         MetricManager.gauge(MetricsConstants.DISRUPTOR_MESSAGE_ACK, Level.INFO, new AckedMessageCountGauge());
     }
 
+    /**
+     * Create a batching handler which writes messages of the given event type to the message store. The batch size is
+     * adaptive when group commit is enabled.
+     *
+     * @param turn            turn of the handler
+     * @param groupCount      number of handlers for the event type
+     * @param writerBatchSize configured batch size
+     * @param eventType       event type to write
+     * @param messagingEngine {@link MessagingEngine}
+     * @return message writer handler
+     */
+    private ConcurrentBatchEventHandler createMessageWriterHandler(int turn, int groupCount, int writerBatchSize,
+                                                                  InboundEventContainer.Type eventType,
+                                                                  MessagingEngine messagingEngine) {
+        Boolean groupCommitEnabled = AndesConfigurationManager.readValue(PERFORMANCE_TUNING_GROUP_COMMIT_ENABLED);
+
+        if (!groupCommitEnabled) {
+            return new ConcurrentBatchEventHandler(turn, groupCount, writerBatchSize, eventType,
+                                                   new MessageWriter(messagingEngine, writerBatchSize));
+        }
+
+        Integer targetLatency = AndesConfigurationManager.readValue(PERFORMANCE_TUNING_GROUP_COMMIT_TARGET_LATENCY);
+        Integer minBatchSize = AndesConfigurationManager.readValue(PERFORMANCE_TUNING_GROUP_COMMIT_MIN_BATCH_SIZE);
+        Integer maxBatchSize = AndesConfigurationManager.readValue(PERFORMANCE_TUNING_GROUP_COMMIT_MAX_BATCH_SIZE);
+        Integer maxHoldTime = AndesConfigurationManager.readValue(PERFORMANCE_TUNING_GROUP_COMMIT_MAX_HOLD_TIME);
+
+        GroupCommitController controller = new GroupCommitController(eventType + "-" + turn, writerBatchSize,
+                minBatchSize, maxBatchSize, targetLatency, maxHoldTime);
+        return new ConcurrentBatchEventHandler(turn, groupCount, eventType,
+                                               new MessageWriter(messagingEngine, maxBatchSize), controller,
+                                               disruptor.getRingBuffer());
+    }
+
     /**
      * When a message is received from a transport it is handed over to MessagingEngine through the implementation of
      * inbound event manager. (e.g: through a disruptor ring buffer) Eventually the message will be stored
@@ -219,14 +311,14 @@ public class InboundEventManager {
         ackedMessageCount.getAndIncrement();
 
         // Publishers claim events in sequence
-        long sequence = ringBuffer.next();
-        InboundEventContainer event = ringBuffer.get(sequence);
+        long sequence = ackRingBuffer.next();
+        InboundEventContainer event = ackRingBuffer.get(sequence);
         try {
             event.setEventType(ACKNOWLEDGEMENT_EVENT);
             event.ackData = new AndesAckEvent(ackData);
         } finally {
             // make the event available to EventProcessors
-            ringBuffer.publish(sequence);
+            ackRingBuffer.publish(sequence);
 
             //Tracing message
             if (MessageTracer.isEnabled()) {
@@ -240,6 +332,33 @@ public class InboundEventManager {
         }
     }
 
+    /**
+     * Acknowledgement of several messages received on a channel at once will be handled through this method. The
+     * acknowledgement occupies a single slot in the ring.
+     *
+     * @param ackData Acknowledgement information by protocol
+     */
+    public void ackReceived(AndesBulkAckData ackData) {
+        //For metrics
+        ackedMessageCount.getAndAdd(ackData.getMessageIds().size());
+
+        // Publishers claim events in sequence
+        long sequence = ackRingBuffer.next();
+        InboundEventContainer event = ackRingBuffer.get(sequence);
+        try {
+            event.setEventType(BULK_ACKNOWLEDGEMENT_EVENT);
+            event.bulkAckData = new AndesBulkAckEvent(ackData);
+        } finally {
+            // make the event available to EventProcessors
+            ackRingBuffer.publish(sequence);
+
+            if (log.isDebugEnabled()) {
+                log.debug("[ sequence: " + sequence + " ] Bulk message acknowledgement published to disruptor. "
+                        + "Message count " + ackData.getMessageIds().size());
+            }
+        }
+    }
+
     /**
      * Publish state change event to event Manager
      * @param stateEvent AndesInboundStateEvent
@@ -247,14 +366,15 @@ public class InboundEventManager {
     public void publishStateEvent(AndesInboundStateEvent stateEvent) {
 
         // Publishers claim events in sequence
-        long sequence = ringBuffer.next();
-        InboundEventContainer event = ringBuffer.get(sequence);
+        long sequence = controlRingBuffer.next();
+        InboundEventContainer event = controlRingBuffer.get(sequence);
         try {
             event.setEventType(STATE_CHANGE_EVENT);
             event.setStateEvent(stateEvent);
+            event.setRingBarriers(ringBuffer.getCursor(), ackRingBuffer.getCursor());
         } finally {
             // make the event available to EventProcessors
-            ringBuffer.publish(sequence);
+            controlRingBuffer.publish(sequence);
             if (log.isDebugEnabled()) {
                 log.debug("[ Sequence: " + sequence + " ] State change event '" + stateEvent.eventInfo() +
                         "' published to Disruptor");
@@ -307,14 +427,15 @@ public class InboundEventManager {
      */
     public void publishMessageRecoveryEvent(InboundMessageRecoveryEvent recoveryEvent) {
         // Publishers claim events in sequence
-        long sequence = ringBuffer.next();
-        InboundEventContainer event = ringBuffer.get(sequence);
+        long sequence = controlRingBuffer.next();
+        InboundEventContainer event = controlRingBuffer.get(sequence);
         try {
             event.setEventType(MESSAGE_RECOVERY_EVENT);
             event.setMessageRecoveryEvent(recoveryEvent);
+            event.setRingBarriers(ringBuffer.getCursor(), ackRingBuffer.getCursor());
         } finally {
             // make the event available to EventProcessors
-            ringBuffer.publish(sequence);
+            controlRingBuffer.publish(sequence);
             if (log.isDebugEnabled()) {
                 log.debug("[ Sequence: " + sequence + " ] " + event.getEventType() + "' published to Disruptor");
             }
@@ -421,10 +542,13 @@ public class InboundEventManager {
     }
 
     /**
-     * Stop disruptor. This wait until disruptor process pending events in ring buffer.
+     * Stop disruptors. This wait until disruptors process pending events in ring buffers. The control ring is stopped
+     * first since its events wait for the other rings.
      */
     public void stop() {
+        controlDisruptor.shutdown();
         disruptor.shutdown();
+        ackDisruptor.shutdown();
     }
 
     /**
@@ -454,7 +578,13 @@ public class InboundEventManager {
     /**
      * Utility to get the in bound ring gauge
      */
-    private class InBoundRingGauge implements Gauge<Long> {
+    private static class InBoundRingGauge implements Gauge<Long> {
+
+        private final RingBuffer<InboundEventContainer> ringBuffer;
+
+        private InBoundRingGauge(RingBuffer<InboundEventContainer> ringBuffer) {
+            this.ringBuffer = ringBuffer;
+        }
 
         @Override
         public Long getValue() {
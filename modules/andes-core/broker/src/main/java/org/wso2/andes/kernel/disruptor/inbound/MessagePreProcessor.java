@@ -21,6 +21,8 @@ package org.wso2.andes.kernel.disruptor.inbound;
 import com.lmax.disruptor.EventHandler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesContext;
 import org.wso2.andes.kernel.AndesException;
@@ -31,7 +33,7 @@ import org.wso2.andes.kernel.dtx.AndesPreparedMessageMetadata;
 import org.wso2.andes.kernel.router.AndesMessageRouter;
 import org.wso2.andes.kernel.subscription.StorageQueue;
 import org.wso2.andes.metrics.MetricsConstants;
-import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.coordination.TimeStampBasedMessageIdGenerator;
 import org.wso2.andes.tools.utils.MessageTracer;
 import org.wso2.carbon.metrics.manager.Level;
 import org.wso2.carbon.metrics.manager.Meter;
@@ -49,13 +51,35 @@ import java.util.Set;
 public class MessagePreProcessor implements EventHandler<InboundEventContainer> {
 
     private static final Log log = LogFactory.getLog(MessagePreProcessor.class);
-    private final MessageIDGenerator idGenerator;
+    private final TimeStampBasedMessageIdGenerator idGenerator;
 
     private final ArrayList<AndesMessage> messageList;
 
+    /**
+     * Number of reserved IDs which are not yet allocated from the generator
+     */
+    private int pendingIdCount;
+
+    /**
+     * Number of IDs left in the block last allocated from the generator
+     */
+    private int allocatedIdCount;
+
+    /**
+     * Next ID to hand out from the block last allocated from the generator
+     */
+    private long nextAllocatedId;
+
+    /**
+     * True if content of a message routed to several storage queues is stored once and shared between them
+     */
+    private final boolean shareContentAcrossStorageQueues;
+
     public MessagePreProcessor() {
-        idGenerator = new MessageIDGenerator();
+        idGenerator = new TimeStampBasedMessageIdGenerator();
         messageList = new ArrayList<>();
+        shareContentAcrossStorageQueues = AndesConfigurationManager
+                .readValue(AndesConfiguration.PERFORMANCE_TUNING_SHARE_CONTENT_ACROSS_STORAGE_QUEUES);
     }
 
     @Override
@@ -217,6 +241,18 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
 
         boolean originalMessageConsumed = false;
 
+        // IDs for the cloned messages and the shared content are reserved up front as contiguous blocks
+        boolean shareContent = shareContentAcrossStorageQueues && matchingQueues.size() > 1;
+        reserveIds(Math.max(matchingQueues.size() - 1, 0) + (shareContent ? 1 : 0));
+
+        // Content of a message routed to several storage queues is written once under a separate content id
+        // and every routed copy refers to it
+        long sharedContentId = 0;
+        if (shareContent) {
+            sharedContentId = nextReservedId();
+            message.getMetadata().setContentId(sharedContentId);
+        }
+
         for (StorageQueue matchingQueue : matchingQueues) {
 
             if (!originalMessageConsumed) {
@@ -228,12 +264,13 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
                 originalMessageConsumed = true;
 
             } else {
-                AndesMessage clonedMessage = cloneAndesMessageMetadataAndContent(message);
+                AndesMessage clonedMessage = cloneAndesMessageMetadataAndContent(message, nextReservedId());
 
                 //Message should be written to storage queue name. This is
                 //determined by destination of the message. So should be
                 //updated (but internal metadata will have topic name as usual)
                 clonedMessage.getMetadata().setStorageQueueName(matchingQueue.getName());
+                clonedMessage.getMetadata().setContentId(sharedContentId);
 
                 // Update cloned message metadata if isCompressed set true.
                 if (clonedMessage.getMetadata().isCompressed()) {
@@ -281,11 +318,11 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
     /**
      * Create a clone of the message
      *
-     * @param message message to be cloned
+     * @param message      message to be cloned
+     * @param newMessageId message ID of the clone
      * @return Cloned reference of AndesMessage
      */
-    private AndesMessage cloneAndesMessageMetadataAndContent(AndesMessage message) {
-        long newMessageId = idGenerator.getNextId();
+    private AndesMessage cloneAndesMessageMetadataAndContent(AndesMessage message, long newMessageId) {
         AndesMessageMetadata clonedMetadata = message.getMetadata().shallowCopy(newMessageId);
         AndesMessage clonedMessage = new AndesMessage(clonedMetadata);
 
@@ -299,6 +336,33 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
 
     }
 
+    /**
+     * Reserve IDs to be handed out through {@link #nextReservedId()}. IDs are allocated from the generator in blocks
+     * as they are needed, so a message routed to many queues needs only a few generator calls.
+     *
+     * @param count number of IDs to reserve
+     */
+    private void reserveIds(int count) {
+        pendingIdCount = count;
+        allocatedIdCount = 0;
+    }
+
+    /**
+     * Get the next reserved ID
+     *
+     * @return message ID
+     */
+    private long nextReservedId() {
+        if (allocatedIdCount == 0) {
+            int blockSize = Math.max(Math.min(pendingIdCount, idGenerator.getMaxBlockSize()), 1);
+            nextAllocatedId = idGenerator.getNextIds(blockSize);
+            allocatedIdCount = blockSize;
+            pendingIdCount = pendingIdCount - blockSize;
+        }
+        allocatedIdCount--;
+        return nextAllocatedId++;
+    }
+
     /**
      * Set Message ID for AndesMessage.
      * @param message messageID
@@ -317,54 +381,4 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
             messagePart.setMessageID(messageId);
         }
     }
-
-    /**
-     * Generates IDs. This id generator cannot be used in a multi threaded environment. Removed any locking behaviour to
-     * improve id generation in single threaded approach
-     */
-    private static class MessageIDGenerator {
-
-        /** REFERENCE_START time set to 2011 */
-        private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L;
-        private int uniqueIdForNode;
-        private long lastTimestamp;
-        private long lastID;
-        private int offset;
-
-        MessageIDGenerator() {
-            uniqueIdForNode = 0;
-            lastTimestamp = 0;
-            lastID = 0;
-            offset = 0;
-        }
-
-        /**
-         * Out of 64 bits for long, we will use the range as follows
-         * [1 sign bit][45bits for time spent from reference time in milliseconds][8bit node id][10 bit offset for ID
-         * falls within the same timestamp]
-         * This assumes there will not be more than 1024 hits within a given millisecond. Range is sufficient for
-         * 6029925857 years.
-         *
-         * @return Generated ID
-         */
-        long getNextId() {
-
-            // id might change at runtime. Hence reading the value
-            uniqueIdForNode = ClusterResourceHolder.getInstance().getClusterManager().getUniqueIdForLocalNode();
-            long ts = System.currentTimeMillis();
-
-            if (ts == lastTimestamp) {
-                offset = offset + 1;
-            } else {
-                offset = 0;
-            }
-            lastTimestamp = ts;
-            long id = (ts - REFERENCE_START) * 256 * 1024 + uniqueIdForNode * 1024 + offset;
-            if (lastID == id) {
-                throw new RuntimeException("duplicate ids detected. This should never happen");
-            }
-            lastID = id;
-            return id;
-        }
-    }
 }
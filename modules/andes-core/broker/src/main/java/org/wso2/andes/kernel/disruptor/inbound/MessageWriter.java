@@ -85,6 +85,7 @@ public class MessageWriter implements StoreHealthListener {
                          + previouslyFailedMessageList.size());
                 try {
                     messagingEngine.messagesReceived(previouslyFailedMessageList);
+                    messagingEngine.scheduleMessageExpiry(previouslyFailedMessageList);
 
                 } catch (AndesException ex) {
                     log.error("errors encountered while persisting previously failed messages batch, "
@@ -98,6 +99,7 @@ public class MessageWriter implements StoreHealthListener {
             try {
                 if (!messageList.isEmpty()) {
                     messagingEngine.messagesReceived(messageList);
+                    messagingEngine.scheduleMessageExpiry(messageList);
                 }
 
                 if (!retainMap.isEmpty()) {
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.disruptor.inbound;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * First handler of the control event ring. Holds back each control event until the publish and acknowledgement
+ * rings have processed every event published to them before the control event. This keeps, for example, a queue
+ * delete behind the messages published to the queue and a channel close behind the acknowledgements of the channel.
+ */
+public class RingBarrierHandler implements EventHandler<InboundEventContainer> {
+
+    private static Log log = LogFactory.getLog(RingBarrierHandler.class);
+
+    /**
+     * Number of yields before parking while waiting for another ring
+     */
+    private static final int YIELD_TRIES = 100;
+
+    /**
+     * Park time while waiting for another ring
+     */
+    private static final long PARK_NANOS = 100 * 1000;
+
+    private final RingBuffer<InboundEventContainer> publishRing;
+
+    private final RingBuffer<InboundEventContainer> ackRing;
+
+    /**
+     * Create a barrier handler
+     *
+     * @param publishRing ring carrying messages and transaction events
+     * @param ackRing     ring carrying acknowledgements
+     */
+    public RingBarrierHandler(RingBuffer<InboundEventContainer> publishRing,
+                              RingBuffer<InboundEventContainer> ackRing) {
+        this.publishRing = publishRing;
+        this.ackRing = ackRing;
+    }
+
+    @Override
+    public void onEvent(InboundEventContainer event, long sequence, boolean endOfBatch) throws Exception {
+        waitFor(publishRing, event.getPublishRingBarrier());
+        waitFor(ackRing, event.getAckRingBarrier());
+
+        if (log.isDebugEnabled()) {
+            log.debug("[ sequence " + sequence + " ] Ring barriers passed for event " + event.eventInfo());
+        }
+    }
+
+    /**
+     * Wait until the last handlers of the ring have processed the given sequence
+     *
+     * @param ring     ring to wait for
+     * @param sequence sequence which must be processed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void waitFor(RingBuffer<InboundEventContainer> ring, long sequence) throws InterruptedException {
+        int counter = YIELD_TRIES;
+        while (ring.getMinimumGatingSequence() < sequence) {
+            if (counter > 0) {
+                counter--;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -63,6 +63,9 @@ public class StateEventHandler implements EventHandler<InboundEventContainer> {
             case ACKNOWLEDGEMENT_EVENT:
                 updateTrackerWithAck(event);
                 break;
+            case BULK_ACKNOWLEDGEMENT_EVENT:
+                updateTrackerWithBulkAck(event);
+                break;
             case SAFE_ZONE_DECLARE_EVENT:
                 updateSlotDeleteSafeZone(event);
                 break;
@@ -88,6 +91,15 @@ public class StateEventHandler implements EventHandler<InboundEventContainer> {
         }
     }
 
+    private void updateTrackerWithBulkAck(InboundEventContainer event) throws AndesException {
+        // Removable messages of a bulk acknowledgement are only visible to this event
+        for (DeliverableAndesMetadata acknowledgedMessage : event.bulkAckData.getRemovableMessages()) {
+            if (acknowledgedMessage.getLatestState().equals(MessageStatus.DELETED)) {
+                acknowledgedMessage.getSlot().decrementPendingMessageCount();
+            }
+        }
+    }
+
     /**
      * Communicate this node's safe zone to the coordinator for evaluation.
      * @param event event
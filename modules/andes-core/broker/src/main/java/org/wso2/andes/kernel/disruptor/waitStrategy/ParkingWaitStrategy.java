@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.disruptor.waitStrategy;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Blocking wait strategy which does not use a lock. Waiting consumers park themselves and publishers unpark them
+ * only when some consumer is actually parked, hence a publish to a busy ring costs a single volatile read.
+ * <p>
+ * Waiting for dependent sequences spins briefly, then yields and finally parks for the shortest possible time.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    /**
+     * Number of busy spins before yielding while waiting for dependent sequences
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * Number of yields before parking while waiting for dependent sequences
+     */
+    private static final int YIELD_TRIES = 100;
+
+    /**
+     * Consumer threads parked until the cursor moves
+     */
+    private final Set<Thread> waitingThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+    /**
+     * Number of parked consumers. Checked by publishers before touching {@link #waitingThreads}.
+     */
+    private final AtomicInteger waiterCount = new AtomicInteger(0);
+
+    @Override
+    public long waitFor(long sequence, Sequence cursorSequence, Sequence dependentSequence, SequenceBarrier barrier)
+            throws AlertException, InterruptedException {
+
+        if (cursorSequence.get() < sequence) {
+            Thread currentThread = Thread.currentThread();
+            waitingThreads.add(currentThread);
+            waiterCount.incrementAndGet();
+            try {
+                // The cursor is checked again after registering, so a publish which did not see this thread as a
+                // waiter is never missed
+                while (cursorSequence.get() < sequence) {
+                    barrier.checkAlert();
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waiterCount.decrementAndGet();
+                waitingThreads.remove(currentThread);
+            }
+        }
+
+        long availableSequence;
+        int counter = SPIN_TRIES + YIELD_TRIES;
+        while ((availableSequence = dependentSequence.get()) < sequence) {
+            barrier.checkAlert();
+            if (counter > YIELD_TRIES) {
+                counter--;
+            } else if (counter > 0) {
+                counter--;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(1L);
+            }
+        }
+
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (waiterCount.get() > 0) {
+            for (Thread waitingThread : waitingThreads) {
+                LockSupport.unpark(waitingThread);
+            }
+        }
+    }
+}
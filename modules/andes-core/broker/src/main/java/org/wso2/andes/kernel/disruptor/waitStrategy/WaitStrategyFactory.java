@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.disruptor.waitStrategy;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory to create the {@link WaitStrategy} of a disruptor ring from the strategy name configured in broker.xml
+ * <ul>
+ *  <li>sleepingBlocking - {@link SleepingBlockingWaitStrategy}, consumers wait on a lock (default).</li>
+ *  <li>parking - {@link ParkingWaitStrategy}, consumers park without a lock.</li>
+ *  <li>phasedBackoff - consumers spin, then yield and then park using {@link ParkingWaitStrategy}.</li>
+ *  <li>yielding - consumers spin and yield. Uses a core per consumer while the broker is idle.</li>
+ *  <li>busySpin - consumers busy spin. Only suitable when each consumer thread has a dedicated core.</li>
+ * </ul>
+ */
+public class WaitStrategyFactory {
+
+    private static final Log log = LogFactory.getLog(WaitStrategyFactory.class);
+
+    public static final String SLEEPING_BLOCKING = "sleepingBlocking";
+
+    public static final String PARKING = "parking";
+
+    public static final String PHASED_BACKOFF = "phasedBackoff";
+
+    public static final String YIELDING = "yielding";
+
+    public static final String BUSY_SPIN = "busySpin";
+
+    /**
+     * Time the phased backoff strategy spins before it starts yielding
+     */
+    private static final long PHASED_BACKOFF_SPIN_TIMEOUT_MICROS = 100;
+
+    /**
+     * Time the phased backoff strategy yields before it parks
+     */
+    private static final long PHASED_BACKOFF_YIELD_TIMEOUT_MICROS = 1000;
+
+    /**
+     * Create the wait strategy configured for a disruptor ring
+     *
+     * @param waitStrategyProperty configuration property holding the strategy name of the ring
+     * @return a new wait strategy instance
+     */
+    public WaitStrategy create(AndesConfiguration waitStrategyProperty) {
+        String strategyName = AndesConfigurationManager.readValue(waitStrategyProperty);
+        return create(strategyName);
+    }
+
+    /**
+     * Create a wait strategy
+     *
+     * @param strategyName configured name of the strategy. Unknown names fall back to sleepingBlocking.
+     * @return a new wait strategy instance
+     */
+    public WaitStrategy create(String strategyName) {
+        WaitStrategy waitStrategy;
+
+        if (PARKING.equalsIgnoreCase(strategyName)) {
+            waitStrategy = new ParkingWaitStrategy();
+        } else if (PHASED_BACKOFF.equalsIgnoreCase(strategyName)) {
+            waitStrategy = new PhasedBackoffWaitStrategy(PHASED_BACKOFF_SPIN_TIMEOUT_MICROS,
+                    PHASED_BACKOFF_YIELD_TIMEOUT_MICROS, TimeUnit.MICROSECONDS, new ParkingWaitStrategy());
+        } else if (YIELDING.equalsIgnoreCase(strategyName)) {
+            waitStrategy = new YieldingWaitStrategy();
+        } else if (BUSY_SPIN.equalsIgnoreCase(strategyName)) {
+            waitStrategy = new BusySpinWaitStrategy();
+        } else {
+            if (!SLEEPING_BLOCKING.equalsIgnoreCase(strategyName)) {
+                log.warn("Unknown disruptor wait strategy " + strategyName + ". Using " + SLEEPING_BLOCKING);
+            }
+            waitStrategy = new SleepingBlockingWaitStrategy();
+        }
+
+        return waitStrategy;
+    }
+}
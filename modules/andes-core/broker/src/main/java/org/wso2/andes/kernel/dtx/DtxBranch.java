@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -192,6 +193,15 @@ public class DtxBranch {
         return xid;
     }
 
+    /**
+     * Getter for the internal XID assigned when the branch is prepared
+     *
+     * @return internal XID of the branch, {@link #NULL_XID} if not prepared
+     */
+    public long getInternalXid() {
+        return internalXid;
+    }
+
     /**
      * Associate a session to current branch.
      *
@@ -452,6 +462,31 @@ public class DtxBranch {
         traceMessageList(enqueueList, MessageTracer.DTX_MESSAGE_WRITTEN_TO_DB);
     }
 
+    /**
+     * Write the committed messages of a group of independent branches to the database within a single database
+     * transaction
+     *
+     * @param branches {@link DtxBranch}es of the same {@link DtxRegistry} to be committed
+     * @throws AndesException throws AndesException on database error, {@link PartialDtxCommitException} if only some
+     *                        of the branches are committed
+     */
+    public static void writeToDbOnCommit(List<DtxBranch> branches) throws AndesException {
+        if (branches.size() == 1) {
+            branches.get(0).writeToDbOnCommit();
+            return;
+        }
+
+        Map<Long, List<AndesMessage>> enqueueRecords = new LinkedHashMap<>(branches.size());
+        for (DtxBranch branch : branches) {
+            enqueueRecords.put(branch.internalXid, branch.enqueueList);
+        }
+        branches.get(0).dtxRegistry.getStore().updateOnCommit(enqueueRecords);
+
+        for (DtxBranch branch : branches) {
+            branch.traceMessageList(branch.enqueueList, MessageTracer.DTX_MESSAGE_WRITTEN_TO_DB);
+        }
+    }
+
     /**
      * Write committed messages to the database.
      *
@@ -31,12 +31,14 @@ import org.wso2.andes.server.txn.TimeoutDtxException;
 import org.wso2.andes.tools.utils.MessageTracer;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -45,14 +47,15 @@ import java.util.concurrent.TimeUnit;
 import javax.transaction.xa.Xid;
 
 /**
- * In memory registry for distributed transaction related operations
+ * In memory registry for distributed transaction related operations. State transitions of a {@link DtxBranch} are
+ * guarded by the monitor of the branch itself, hence operations on independent branches do not block each other
  */
 public class DtxRegistry {
 
     /**
      * {@link Xid} to {@link DtxBranch} mapping
      */
-    private final Map<Xid, DtxBranch> branches;
+    private final ConcurrentMap<Xid, DtxBranch> branches;
 
     /**
      * Persistence storage used by the {@link DtxRegistry}
@@ -82,7 +85,7 @@ public class DtxRegistry {
     /**
      * Xids of branches that are not cached in branches map but are stored in database
      */
-    private Set<XidImpl> storeOnlyXidSet;
+    private final Set<XidImpl> storeOnlyXidSet;
 
     /**
      * Default constructor
@@ -92,27 +95,34 @@ public class DtxRegistry {
     public DtxRegistry(DtxStore dtxStore, MessagingEngine messagingEngine, InboundEventManager eventManager)
             throws AndesException {
         this.dtxStore = dtxStore;
-        branches = new HashMap<>();
+        branches = new ConcurrentHashMap<>();
         this.messagingEngine = messagingEngine;
         this.eventManager = eventManager;
         ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("DtxTimeoutExecutor-%d").build();
         nodeId = ClusterResourceHolder.getInstance().getClusterManager().getMyNodeID();
-        storeOnlyXidSet = dtxStore.getStoredXidSet(nodeId);
+        storeOnlyXidSet = Collections.newSetFromMap(new ConcurrentHashMap<XidImpl, Boolean>());
+        storeOnlyXidSet.addAll(dtxStore.getStoredXidSet(nodeId));
         timeoutTaskExecutor = Executors.newSingleThreadScheduledExecutor(namedThreadFactory);
     }
 
     /**
-     * Get the {@link DtxBranch} relating to the given {@link Xid}
+     * Get the {@link DtxBranch} relating to the given {@link Xid}. A branch recovered from the store is registered so
+     * that concurrent callers share the same {@link DtxBranch} instance
      *
      * @param xid {@link Xid} of the {@link DtxBranch} to be retrieved
      * @return DtxBranch
      */
-    synchronized DtxBranch getBranch(Xid xid) throws AndesException {
+    DtxBranch getBranch(Xid xid) throws AndesException {
         DtxBranch dtxBranch = branches.get(xid);
         if (dtxBranch == null && storeOnlyXidSet.contains(new XidImpl(xid))) {
 
             dtxBranch = new DtxBranch(DtxBranch.RECOVERY_SESSION_ID, xid, this, eventManager);
-            if (!dtxBranch.recoverFromStore(nodeId)) {
+            if (dtxBranch.recoverFromStore(nodeId)) {
+                DtxBranch existingBranch = branches.putIfAbsent(xid, dtxBranch);
+                if (existingBranch != null) {
+                    dtxBranch = existingBranch;
+                }
+            } else {
                 dtxBranch = null;
             }
         }
@@ -125,12 +135,8 @@ public class DtxRegistry {
      * @param branch {@link DtxBranch} to be registered
      * @return True if the registration was successful and wise versa
      */
-    synchronized boolean registerBranch(DtxBranch branch) {
-        if(!branches.containsKey(branch.getXid())) {
-            branches.put(branch.getXid(), branch);
-            return true;
-        }
-        return false;
+    boolean registerBranch(DtxBranch branch) {
+        return branches.putIfAbsent(branch.getXid(), branch) == null;
     }
 
     /**
@@ -149,12 +155,10 @@ public class DtxRegistry {
     public void prepare(Xid xid, DisruptorEventCallback callback)
             throws UnknownDtxBranchException, IncorrectDtxStateException, TimeoutDtxException, AndesException,
             RollbackOnlyDtxException {
-        DtxBranch branch;
-
-        synchronized (this) {
-            branch = getBranch(xid);
+        DtxBranch branch = getBranch(xid);
 
-            if (branch != null) {
+        if (branch != null) {
+            synchronized (branch) {
                 if (!branch.hasAssociatedActiveSessions()) {
                     branch.clearAssociations();
 
@@ -172,9 +176,9 @@ public class DtxRegistry {
                 } else {
                     throw new IncorrectDtxStateException("Branch still has associated sessions", xid);
                 }
-            } else {
-                throw new UnknownDtxBranchException(xid);
             }
+        } else {
+            throw new UnknownDtxBranchException(xid);
         }
 
         PrepareCallback prepareCallback = new PrepareCallback(callback, branch);
@@ -187,7 +191,7 @@ public class DtxRegistry {
      * @param branch {@link DtxBranch} to be removed
      * @return True if successfully removed and false otherwise
      */
-    private synchronized boolean unregisterBranch(DtxBranch branch) {
+    private boolean unregisterBranch(DtxBranch branch) {
         return (branches.remove(branch.getXid()) != null);
     }
 
@@ -236,20 +240,22 @@ public class DtxRegistry {
      * @throws TimeoutDtxException thrown when the branch is expired
      * @throws IncorrectDtxStateException if the state of the branch is invalid. For instance the branch is not prepared
      */
-    public synchronized void rollback(Xid xid, DisruptorEventCallback callback)
+    public void rollback(Xid xid, DisruptorEventCallback callback)
             throws TimeoutDtxException, IncorrectDtxStateException, UnknownDtxBranchException, AndesException {
         DtxBranch branch = getBranch(xid);
         if (branch != null) {
-            if (branch.expired()) {
-                unregisterBranch(branch);
-                throw new TimeoutDtxException(xid);
-            }
+            synchronized (branch) {
+                if (branch.expired()) {
+                    unregisterBranch(branch);
+                    throw new TimeoutDtxException(xid);
+                }
 
-            if (!branch.hasAssociatedActiveSessions()) {
-                branch.clearAssociations();
-                branch.rollback(new RollbackCallback(callback, branch));
-            } else {
-                throw new IncorrectDtxStateException("Branch is still associates with a session", xid);
+                if (!branch.hasAssociatedActiveSessions()) {
+                    branch.clearAssociations();
+                    branch.rollback(new RollbackCallback(callback, branch));
+                } else {
+                    throw new IncorrectDtxStateException("Branch is still associates with a session", xid);
+                }
             }
         } else {
             throw new UnknownDtxBranchException(xid);
@@ -269,35 +275,39 @@ public class DtxRegistry {
      * @throws RollbackOnlyDtxException Thrown when commit is invoked on a ROLLBACK_ONLY {@link DtxBranch}
      * @throws TimeoutDtxException Thrown when the respective {@link DtxBranch} relating to the {@link Xid} has expired
      */
-    public synchronized void commit(Xid xid, boolean onePhase, DisruptorEventCallback callback, AndesChannel channel)
+    public void commit(Xid xid, boolean onePhase, DisruptorEventCallback callback, AndesChannel channel)
             throws UnknownDtxBranchException, IncorrectDtxStateException, AndesException, TimeoutDtxException,
             RollbackOnlyDtxException {
 
         DtxBranch dtxBranch = getBranch(xid);
         if (null != dtxBranch) {
-            if (!dtxBranch.hasAssociatedActiveSessions()) {
-                // TODO: Need to revisit. What happens if the commit DB call fail?
-                dtxBranch.clearAssociations();
+            synchronized (dtxBranch) {
+                if (!dtxBranch.hasAssociatedActiveSessions()) {
+                    // TODO: Need to revisit. What happens if the commit DB call fail?
+                    dtxBranch.clearAssociations();
 
-                if (dtxBranch.expired()) {
-                    unregisterBranch(dtxBranch);
-                    throw new TimeoutDtxException(xid);
-                } else if (dtxBranch.getState() == DtxBranch.State.ROLLBACK_ONLY) {
-                    throw new RollbackOnlyDtxException(xid);
-                } else if (onePhase && dtxBranch.getState() == DtxBranch.State.PREPARED) {
-                    throw new IncorrectDtxStateException("Cannot call one-phase commit on a prepared branch", xid);
-                } else if (!onePhase && dtxBranch.getState() != DtxBranch.State.PREPARED) {
-                    throw new IncorrectDtxStateException("Cannot call two-phase commit on a non-prepared branch", xid);
-                }
-
-                dtxBranch.setState(DtxBranch.State.FORGOTTEN);
-
-                DisruptorEventCallback wrappedCallback = new CommitCallback(callback, dtxBranch);
-                dtxBranch.commit(wrappedCallback, channel, onePhase);
+                    if (dtxBranch.expired()) {
+                        unregisterBranch(dtxBranch);
+                        throw new TimeoutDtxException(xid);
+                    } else if (dtxBranch.getState() == DtxBranch.State.ROLLBACK_ONLY) {
+                        throw new RollbackOnlyDtxException(xid);
+                    } else if (onePhase && dtxBranch.getState() == DtxBranch.State.PREPARED) {
+                        throw new IncorrectDtxStateException("Cannot call one-phase commit on a prepared branch", xid);
+                    } else if (!onePhase && dtxBranch.getState() != DtxBranch.State.PREPARED) {
+                        throw new IncorrectDtxStateException("Cannot call two-phase commit on a non-prepared branch",
+                                                             xid);
+                    }
 
-            } else {
-                throw new IncorrectDtxStateException("Branch still has associated sessions", xid);
+                    // Moving to FORGOTTEN rejects any concurrent commit of the same branch. Hence the commit event
+                    // is published without holding the branch lock
+                    dtxBranch.setState(DtxBranch.State.FORGOTTEN);
+                } else {
+                    throw new IncorrectDtxStateException("Branch still has associated sessions", xid);
+                }
             }
+
+            DisruptorEventCallback wrappedCallback = new CommitCallback(callback, dtxBranch);
+            dtxBranch.commit(wrappedCallback, channel, onePhase);
         } else {
             throw new UnknownDtxBranchException(xid);
         }
@@ -344,7 +354,7 @@ public class DtxRegistry {
      *
      * @param sessionId sessionId of the closing transactional session
      */
-    public synchronized void close(UUID sessionId) {
+    public void close(UUID sessionId) {
 
         for (Iterator<Map.Entry<Xid, DtxBranch>> iterator = branches.entrySet().iterator();
              iterator.hasNext(); ) {
@@ -352,17 +362,20 @@ public class DtxRegistry {
             Map.Entry<Xid, DtxBranch> entry = iterator.next();
             DtxBranch branch = entry.getValue();
 
-            if (branch.getCreatedSessionId() == sessionId &&
-                    (branch.getState() == DtxBranch.State.ACTIVE || branch.getState() == DtxBranch.State.SUSPENDED)) {
-
-                // If there are no associations delete the entry. If there are associations that is due to a join.
-                // Hence only disassociating the session
-                if (branch.isAssociated(sessionId)) {
-                    branch.disassociateSession(sessionId);
-                }
-                if (!branch.hasAssociatedSessions()) {
-                    branch.setState(DtxBranch.State.FORGOTTEN);
-                    iterator.remove();
+            synchronized (branch) {
+                if (branch.getCreatedSessionId() == sessionId &&
+                        (branch.getState() == DtxBranch.State.ACTIVE
+                                || branch.getState() == DtxBranch.State.SUSPENDED)) {
+
+                    // If there are no associations delete the entry. If there are associations that is due to a join.
+                    // Hence only disassociating the session
+                    if (branch.isAssociated(sessionId)) {
+                        branch.disassociateSession(sessionId);
+                    }
+                    if (!branch.hasAssociatedSessions()) {
+                        branch.setState(DtxBranch.State.FORGOTTEN);
+                        iterator.remove();
+                    }
                 }
             }
         }
@@ -441,7 +454,7 @@ public class DtxRegistry {
 
         @Override
         public void execute() {
-            synchronized (DtxRegistry.this) {
+            synchronized (dtxBranch) {
                 unregisterBranch(dtxBranch);
                 storeOnlyXidSet.remove(new XidImpl(dtxBranch.getXid()));
             }
@@ -451,7 +464,7 @@ public class DtxRegistry {
 
         @Override
         public void onException(Exception exception) {
-            synchronized (DtxRegistry.this) {
+            synchronized (dtxBranch) {
                 dtxBranch.setState(DtxBranch.State.PREPARED);
             }
 
@@ -481,7 +494,7 @@ public class DtxRegistry {
 
         @Override
         public void execute() {
-            synchronized (DtxRegistry.this) {
+            synchronized (dtxBranch) {
                 dtxBranch.setState(DtxBranch.State.FORGOTTEN);
                 unregisterBranch(dtxBranch);
                 storeOnlyXidSet.remove(new XidImpl(dtxBranch.getXid()));
@@ -491,7 +504,7 @@ public class DtxRegistry {
 
         @Override
         public void onException(Exception exception) {
-            synchronized (DtxRegistry.this) {
+            synchronized (dtxBranch) {
                 dtxBranch.setState(DtxBranch.State.PREPARED);
             }
 
@@ -521,7 +534,7 @@ public class DtxRegistry {
 
         @Override
         public void execute() {
-            synchronized (DtxRegistry.this) {
+            synchronized (branch) {
                 branch.setState(DtxBranch.State.PREPARED);
             }
 
@@ -530,7 +543,7 @@ public class DtxRegistry {
 
         @Override
         public void onException(Exception exception) {
-            synchronized (DtxRegistry.this) {
+            synchronized (branch) {
                 branch.setState(DtxBranch.State.ROLLBACK_ONLY);
             }
 
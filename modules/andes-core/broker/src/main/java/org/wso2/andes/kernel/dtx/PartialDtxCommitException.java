@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.dtx;
+
+import org.wso2.andes.kernel.AndesException;
+
+import java.util.Set;
+
+/**
+ * Thrown when a group of distributed transaction branches committed together is stored in several databases and
+ * only some of the databases failed to commit. Branches not reported as failed are committed.
+ */
+public class PartialDtxCommitException extends AndesException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Internal xids of the branches which are not committed
+     */
+    private final Set<Long> failedInternalXids;
+
+    public PartialDtxCommitException(String message, AndesException cause, Set<Long> failedInternalXids) {
+        super(message, cause.getErrorCode(), cause);
+        this.failedInternalXids = failedInternalXids;
+    }
+
+    /**
+     * Check whether a branch failed to commit
+     *
+     * @param internalXid internal xid of the branch
+     * @return true if the branch is not committed
+     */
+    public boolean isFailed(long internalXid) {
+        return failedInternalXids.contains(internalXid);
+    }
+}
@@ -203,7 +203,7 @@ public abstract class AndesMessageRouter {
      * Get list of storage queues a message with given routing key should be
      * enqueued. This logic is specific to the routing implementation.
      * @param incomingMessage message to be routed
-     * @return a set of matching queues
+     * @return a set of matching queues. It may be shared between messages, hence must not be modified
      */
     public abstract Set<StorageQueue> getMatchingStorageQueues(AndesMessage incomingMessage);
 
@@ -22,7 +22,7 @@ import org.wso2.andes.kernel.AndesMessage;
 import org.wso2.andes.kernel.ProtocolType;
 import org.wso2.andes.kernel.subscription.StorageQueue;
 
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -100,16 +100,16 @@ public class MQTTMessageRouter extends AndesMessageRouter {
         Set<StorageQueue> matchingQueues = topicMatcher.getMatchingStorageQueues(messageRoutingKey);
         /*
          * QOS level 0 messages should not be persisted for subscribers with clean session = false who are inactive
-         * at the moment
+         * at the moment. Matched queues are shared between messages, hence inactive ones are filtered into a copy.
          */
         if(0 == qosLevel) {
-            Iterator<StorageQueue> queueIterator = matchingQueues.iterator();
-            while (queueIterator.hasNext()) {
-                StorageQueue matchingQueue = queueIterator.next();
-                if (matchingQueue.isDurable() && matchingQueue.getBoundSubscriptions().isEmpty()) {
-                    queueIterator.remove();
+            Set<StorageQueue> activeQueues = new HashSet<>(matchingQueues.size());
+            for (StorageQueue matchingQueue : matchingQueues) {
+                if (!(matchingQueue.isDurable() && matchingQueue.getBoundSubscriptions().isEmpty())) {
+                    activeQueues.add(matchingQueue);
                 }
             }
+            matchingQueues = activeQueues;
         }
         return matchingQueues;
     }
@@ -16,26 +16,40 @@
 package org.wso2.andes.kernel.router;
 
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.gs.collections.impl.list.mutable.primitive.IntArrayList;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.ProtocolType;
 import org.wso2.andes.kernel.subscription.StorageQueue;
 import org.wso2.andes.mqtt.utils.MQTTUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
- * Bitmap based topic matcher
+ * Bitmap based topic matcher.
+ * <p/>
+ * Lookups run without locking against an immutable {@link MatcherSnapshot}. Binding changes are made under the
+ * matcher lock and only advance the binding generation, the first lookup after a change rebuilds the snapshot from
+ * the current bindings. Hence a burst of binding changes, such as recovering subscriptions on startup, costs a
+ * single rebuild. Matching queues of recently routed keys are cached within the snapshot, so the cache is dropped
+ * together with the snapshot whenever bindings change.
  */
 public class TopicRoutingMatcher {
 
@@ -58,39 +72,44 @@ public class TopicRoutingMatcher {
 
     private ProtocolType protocolType;
 
-    // 'Null' and 'Other' constituents are picked from restricted topic characters
-
     /**
-     * Constituent name to represent that a constituent is not available at this location.
+     * Keeps the binding keys of all storage queues broken into their constituents by queue name, in the order queues
+     * were added. Guarded by the matcher lock.
      */
-    private static final String NULL_CONSTITUENT = "%null%";
+    private final Map<String, TopicBinding> bindings = new LinkedHashMap<>();
 
     /**
-     * Constituent name to represent any constituent except a wildcard.
+     * Advanced on every binding change. Only written while holding the matcher lock.
      */
-    private static final String OTHER_CONSTITUENT = "%other%";
+    private volatile long bindingGeneration = 0;
 
     /**
-     * Keeps all the storage queues.
+     * Matching structure built for a binding generation. Replaced as a whole, never modified.
      */
-    private List<StorageQueue> storageQueueList = new ArrayList<>();
+    private volatile MatcherSnapshot snapshot;
 
     /**
-     * Keeps all the binding keys of storage queues broken into their constituents.
+     * Maximum number of routing keys cached per snapshot
      */
-    private Map<Integer, String[]> queueConstituents = new HashMap<>();
+    private final int cacheSize;
 
     /**
-     * Keeps all the constituent tables as ListOfConstituentTables <ConstituentPart, BitSet>.
+     * Initialize BitMapHandler with the protocol type.
+     *
+     * @param protocolType The protocol type to handle
      */
-    private List<Map<String, BitSet>> constituentTables = new ArrayList<>();
+    public TopicRoutingMatcher(ProtocolType protocolType) {
+        this(protocolType, AndesConfigurationManager.<Integer>readValue(
+                AndesConfiguration.PERFORMANCE_TUNING_TOPIC_MATCHING_CACHE_SIZE));
+    }
 
     /**
-     * Initialize BitMapHandler with the protocol type.
+     * Initialize BitMapHandler with the protocol type and routing key cache size.
      *
      * @param protocolType The protocol type to handle
+     * @param cacheSize    maximum number of routing keys to cache matching queues for, 0 to disable caching
      */
-    public TopicRoutingMatcher(ProtocolType protocolType) {
+    public TopicRoutingMatcher(ProtocolType protocolType, int cacheSize) {
         if (ProtocolType.AMQP == protocolType) {
             constituentsDelimiter = ".";
             // AMQPUtils keep wildcard concatenated with constituent delimiter, hence removing them get wildcard only
@@ -105,43 +124,26 @@ public class TopicRoutingMatcher {
         }
 
         this.protocolType = protocolType;
+        this.cacheSize = cacheSize;
+        this.snapshot = createSnapshot();
     }
 
 
-    public void addStorageQueue(StorageQueue storageQueue) throws AndesException {
+    public synchronized void addStorageQueue(StorageQueue storageQueue) throws AndesException {
         String bindingKey = storageQueue.getMessageRouterBindingKey();
 
         if (StringUtils.isNotEmpty(bindingKey)) {
             if (!isStorageQueueAvailable(storageQueue)) {
-                int newQueueIndex = storageQueueList.size();
-
-                // The index is added to make it clear to which index this is being inserted
-                storageQueueList.add(newQueueIndex, storageQueue);
-
                 String constituents[] = bindingKey.split(Pattern.quote(constituentsDelimiter));
 
-                queueConstituents.put(newQueueIndex, constituents);
-
-
-                for (int constituentIndex = 0; constituentIndex < constituents.length; constituentIndex++) {
-                    String constituent = constituents[constituentIndex];
-
-                    Map<String, BitSet> constituentTable;
+                // Routing keys with more constituents than the binding key match if it ends with a multi level
+                // wildcard. AMQP binding keys with a multi level wildcard after the first constituent match them as
+                // well, since AMQPUtils matches any routing key starting with the part before the wildcard.
+                boolean matchingLongerKeys = multiLevelWildCard.equals(constituents[constituents.length - 1])
+                        || (ProtocolType.AMQP == protocolType && bindingKey.indexOf(multiLevelWildCard) > 1);
 
-                    if ((constituentIndex + 1) > constituentTables.size()) {
-                        // No tables exist for this constituent index need to create
-                        constituentTable = addConstituentTable(constituentIndex);
-                    } else {
-                        constituentTable = constituentTables.get(constituentIndex);
-                    }
-
-                    if (!constituentTable.keySet().contains(constituent)) {
-                        // This constituent is not available in this table. Need to add a new row
-                        addConstituentRow(constituent, constituentIndex);
-                    }
-                }
-
-                addStorageQueueColumn(bindingKey, newQueueIndex);
+                bindings.put(storageQueue.getName(), new TopicBinding(storageQueue, constituents, matchingLongerKeys));
+                bindingGeneration++;
             } else {
                 updateStorageQueue(storageQueue);
             }
@@ -153,411 +155,365 @@ public class TopicRoutingMatcher {
 
 
 
-    public void updateStorageQueue(StorageQueue storageQueue) {
-        if (isStorageQueueAvailable(storageQueue)) {
-            // Need to add the new entry to the same index since bitmap logic is dependent on this index
-            int index = storageQueueList.indexOf(storageQueue);
-
-            // Should not allow to modify this list until the update is complete
-            // Otherwise the storageQueue indexes will be invalid
-            synchronized (storageQueueList) {
-                storageQueueList.remove(index);
-                storageQueueList.add(index, storageQueue);
-            }
+    public synchronized void updateStorageQueue(StorageQueue storageQueue) {
+        TopicBinding binding = bindings.get(storageQueue.getName());
+        if (null != binding) {
+            // The queue keeps the constituents it was added with
+            bindings.put(storageQueue.getName(),
+                    new TopicBinding(storageQueue, binding.constituents, binding.matchingLongerKeys));
+            bindingGeneration++;
         }
     }
 
     /**
-     * @param constituentIndex The index to create the constituent for
-     * @return The created constituent table
+     * Removing a storageQueue from the structure.
+     *
+     * @param storageQueue The storageQueue to remove
      */
-    private Map<String, BitSet> addConstituentTable(int constituentIndex) {
-        Map<String, BitSet> constituentTable = new HashMap<>();
-
-        BitSet nullBitSet = new BitSet(storageQueueList.size());
-        BitSet otherBitSet = new BitSet(storageQueueList.size());
+    public synchronized void removeStorageQueue(StorageQueue storageQueue) {
+        if (null != bindings.remove(storageQueue.getName())) {
+            bindingGeneration++;
+        } else {
+            log.warn("Storage queue for with name : " + storageQueue.getName() + " is not found to " +
+                    "remove");
+        }
+    }
 
-        // Fill null and other constituent values for all available queues
-        for (int queueIndex = 0; queueIndex < storageQueueList.size(); queueIndex++) {
-            String[] constituentsOfQueue = queueConstituents.get(queueIndex);
 
-            if (constituentsOfQueue.length < constituentIndex + 1) {
-                // There is no constituent in this queue for this constituent index
-                nullBitSet.set(queueIndex);
+    public synchronized boolean isStorageQueueAvailable(StorageQueue storageQueue) {
+        return bindings.containsKey(storageQueue.getName());
+    }
 
-                // If last constituent of the queue is multiLevelWildCard, then any other is a match
-                if (multiLevelWildCard.equals(constituentsOfQueue[constituentsOfQueue.length - 1])) {
-                    otherBitSet.set(queueIndex);
-                }
-            } else {
-                String queueConstituent = constituentsOfQueue[constituentIndex];
 
-                // Check if this is a wildcard
-                if (multiLevelWildCard.equals(queueConstituent) ||
-                        singleLevelWildCard.equals(queueConstituent)) {
-                    otherBitSet.set(queueIndex);
-                }
-            }
+    /**
+     * Get storage queues matching to routing key
+     * @param routingKey routing key to match queues
+     * @return immutable set of storage queues
+     */
+    public Set<StorageQueue> getMatchingStorageQueues(String routingKey) {
+        if (StringUtils.isNotEmpty(routingKey)) {
+            return getSnapshot().getMatchingStorageQueues(routingKey);
+        } else {
+            log.warn("Cannot retrieve storage queues via bitmap handler since routingKey to match is empty");
+            return ImmutableSet.of();
         }
+    }
 
-        // Add 'null' and 'other' constituent
-        constituentTable.put(NULL_CONSTITUENT, nullBitSet);
-        constituentTable.put(OTHER_CONSTITUENT, otherBitSet);
-
-        constituentTables.add(constituentIndex, constituentTable);
-
-        return constituentTable;
+    /**
+     * Get all the storage queues currently saved.
+     *
+     * @return List of all storage queues
+     */
+    public List<StorageQueue> getAllStorageQueues() {
+        return Arrays.asList(getSnapshot().storageQueues);
     }
 
 
     /**
-     * Run through each constituentTable and insert a new column for a new storage queue filling it's values
-     * by comparing constituents.
-     * <p/>
-     * This will only fill values for the already available constituents. Will not add new constituents.
+     * Get all binding keys saved
      *
-     * @param bindingKey The newly subscribed destination
+     * @return set of different binding keys
      */
-    private void addStorageQueueColumn(String bindingKey, int queueIndex) throws AndesException {
-
-        String[] bindingKeyConstituents = queueConstituents.get(queueIndex);
-
-        // Create a mock destination with two constituents for 'other' wildcard matching
-        String matchDestinationForOther = OTHER_CONSTITUENT + constituentsDelimiter + OTHER_CONSTITUENT;
-
-        // Create a mock destination with three constituents for 'null' wildcard matching
-        String matchDestinationForNull = NULL_CONSTITUENT + constituentsDelimiter + NULL_CONSTITUENT +
-                constituentsDelimiter + NULL_CONSTITUENT;
-
-        // Loop through each constituent table for the new constituents
-        for (int constituentIndex = 0; constituentIndex < bindingKeyConstituents.length;
-             constituentIndex++) {
-            String currentConstituent = bindingKeyConstituents[constituentIndex];
-            Map<String, BitSet> constituentTable = constituentTables.get(constituentIndex);
-
-            // Loop through each constituent row in the table and fill values
-            for (Map.Entry<String, BitSet> constituentRow : constituentTable.entrySet()) {
-                String constituentOfCurrentRow = constituentRow.getKey();
-                BitSet bitSet = constituentRow.getValue();
-
-                if (constituentOfCurrentRow.equals(currentConstituent)) {
-                    bitSet.set(queueIndex);
-                } else if (NULL_CONSTITUENT.equals(constituentOfCurrentRow)) {
-                    // Check if this constituent being null matches the destination if we match it with
-                    // a null constituent
-                    String wildcardDestination = NULL_CONSTITUENT + constituentsDelimiter +
-                            currentConstituent;
-                    bitSet.set(queueIndex, isMatchForProtocolType(wildcardDestination,
-                            matchDestinationForNull));
-//                    }
-                } else if (OTHER_CONSTITUENT.equals(constituentOfCurrentRow)) {
-                    // Check if other is matched by comparing wildcard through specific wildcard matching
-                    // Create a mock destinations with current constituent added last and check if it match with a
-                    // non-wildcard destination match with the corresponding matching method
-                    String wildCardDestination = OTHER_CONSTITUENT + constituentsDelimiter + currentConstituent;
-
-                    bitSet.set(queueIndex, isMatchForProtocolType(wildCardDestination,
-                            matchDestinationForOther));
-                } else if (singleLevelWildCard.equals(currentConstituent) ||
-                        multiLevelWildCard.equals(currentConstituent)) {
-                    // If there is any wildcard at this position, then this should match.
-                    bitSet.set(queueIndex);
+    public synchronized Set<String> getAllBindingKeys() {
+        Set<String> topics = new HashSet<>();
+
+
+        for (TopicBinding binding : bindings.values()) {
+
+            StringBuilder topic = new StringBuilder();
+            String[] constituents =  binding.constituents;
+
+            for (int i = 0; i < constituents.length; i++) {
+                String constituent = constituents[i];
+                // if this is a wildcard constituent, we provide it as 'ANY' in it's place for readability
+                if (isWildCard(constituent)) {
+                    topic.append("ANY");
                 } else {
-                    bitSet.set(queueIndex, false);
+                    topic.append(constituent);
+                }
+
+                // append the delimiter if there are more constituents to come
+                if ((constituents.length - 1) > i) {
+                    topic.append(constituentsDelimiter);
                 }
 
             }
 
+            topics.add(topic.toString());
         }
 
-        int noOfMaxConstituents = constituentTables.size();
-
-        if (noOfMaxConstituents > bindingKeyConstituents.length) {
-            // There are more constituent tables to be filled. Wildcard matching is essential here.
-
-            boolean matchingOthers = true;
-            // The OTHER_CONSTITUENT is added here to represent any constituent
-            if (!multiLevelWildCard.equals(bindingKeyConstituents[bindingKeyConstituents.length
-                    - 1])) {
-                String otherConstituentComparer = bindingKey + constituentsDelimiter + OTHER_CONSTITUENT;
-                matchingOthers = isMatchForProtocolType(bindingKey, otherConstituentComparer);
-            } // Else matchingOthers will be true
-
-            for (int constituentIndex = bindingKeyConstituents.length; constituentIndex <
-                    noOfMaxConstituents; constituentIndex++) {
-                Map<String, BitSet> constituentTable = constituentTables.get(constituentIndex);
-
-                // Loop through each constituent row in the table and fill values
-                for (Map.Entry<String, BitSet> constituentRow : constituentTable.entrySet()) {
-                    String constituentOfCurrentRow = constituentRow.getKey();
-                    BitSet bitSet = constituentRow.getValue();
-
-                    if (NULL_CONSTITUENT.equals(constituentOfCurrentRow)) {
-                        // Null constituent is always true here
-                        bitSet.set(queueIndex);
-                    } else {
-                        bitSet.set(queueIndex, matchingOthers);
-                    }
-                }
-            }
-        }
+        return topics;
+    }
 
+    private boolean isWildCard(String constituent) {
+        return multiLevelWildCard.equals(constituent) || singleLevelWildCard.equals(constituent);
     }
 
     /**
-     * Add a new constituent row for the given constituent index table and fill values for already available
-     * queues.
+     * Get the snapshot of the current binding generation, rebuilding it if bindings changed after it was built
      *
-     * @param constituent      The constituent to add
-     * @param constituentIndex The index of the constituent
+     * @return matching structure of the current bindings
      */
-    private void addConstituentRow(String constituent, int constituentIndex) {
-        Map<String, BitSet> constituentTable = constituentTables.get(constituentIndex);
-        BitSet bitSet = new BitSet();
-
-        for (int i = 0; i < queueConstituents.size(); i++) {
-            String[] constituentsOfQueue = queueConstituents.get(i);
-
-            if (constituentIndex < constituentsOfQueue.length) {
-                // Get the i'th queue's [constituentIndex]'th constituent
-                String queueConstituent = constituentsOfQueue[constituentIndex];
-                if (queueConstituent.equals(constituent) || multiLevelWildCard.equals(queueConstituent)
-                        || singleLevelWildCard.equals(queueConstituent)) {
-                    // The new constituent matches the queues i'th constituent
-                    bitSet.set(i);
-                } else {
-                    // The new constituent does not match the i'th queues [constituentIndex] constituent
-                    bitSet.set(i, false);
-                }
-            } else {
-                // The queue does not have a constituent for this index
-                // If the last constituent of the queue is multiLevelWildCard we match else false
-                if (multiLevelWildCard.equals(constituentsOfQueue[constituentsOfQueue.length - 1])) {
-                    bitSet.set(i);
-                } else {
-                    bitSet.set(i, false);
-                }
-            }
+    private MatcherSnapshot getSnapshot() {
+        MatcherSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot.generation != bindingGeneration) {
+            currentSnapshot = rebuildSnapshot();
         }
+        return currentSnapshot;
+    }
 
-        constituentTable.put(constituent, bitSet);
+    private synchronized MatcherSnapshot rebuildSnapshot() {
+        // Another lookup may have rebuilt it while this one waited for the lock
+        if (snapshot.generation != bindingGeneration) {
+            snapshot = createSnapshot();
+        }
+        return snapshot;
     }
 
     /**
-     * Return the match between the given two parameters with respect to the protocol.
+     * Build the constituent tables of the current bindings. Each storage queue gets the bit at its position in the
+     * bindings. Wildcard constituents are kept in a separate bit set per constituent index, instead of being
+     * repeated in every row of the table, which keeps the tables proportional to the number of bindings.
      *
-     * @param wildCardDestination    The destination with/without wildcard
-     * @param nonWildCardDestination The direct destination without wildcards
-     * @return Match status
-     * @throws AndesException
+     * @return snapshot of the current binding generation
      */
-    private boolean isMatchForProtocolType(String wildCardDestination, String nonWildCardDestination) throws
-            AndesException {
-        boolean matching = false;
+    private MatcherSnapshot createSnapshot() {
+        int noOfQueues = bindings.size();
+        StorageQueue[] storageQueues = new StorageQueue[noOfQueues];
 
-        if (ProtocolType.AMQP == protocolType) {
-            matching = AMQPUtils.isTargetQueueBoundByMatchingToRoutingKey(wildCardDestination, nonWildCardDestination);
-        } else if (ProtocolType.MQTT == protocolType) {
-            matching = MQTTUtils.isTargetQueueBoundByMatchingToRoutingKey(wildCardDestination, nonWildCardDestination);
-        } else {
-            throw new AndesException("Protocol type " + protocolType + " is not recognized.");
+        int noOfConstituentTables = 0;
+        for (TopicBinding binding : bindings.values()) {
+            noOfConstituentTables = Math.max(noOfConstituentTables, binding.constituents.length);
         }
 
-        return matching;
-    }
-
-    /**
-     * This methods adds a constituent table with only null and other constituents.
-     * This is required when a message comes with more than the available number of constituents. If wildcard
-     * queues are available for those, they should match. Hence need to create these empty constituent tables.
-     */
-    private void addEmptyConstituentTable() {
-        int noOfqueues = storageQueueList.size();
-        Map<String, BitSet> constituentTable = new HashMap<>();
-
-        BitSet nullBitSet = new BitSet(noOfqueues);
-        BitSet otherBitSet = new BitSet(noOfqueues);
+        List<Map<String, IntArrayList>> queueIndexTables = new ArrayList<>(noOfConstituentTables);
+        BitSet[] anyConstituentBitSets = new BitSet[noOfConstituentTables];
+        BitSet[] nullConstituentBitSets = new BitSet[noOfConstituentTables];
+        for (int constituentIndex = 0; constituentIndex < noOfConstituentTables; constituentIndex++) {
+            queueIndexTables.add(new HashMap<String, IntArrayList>());
+            anyConstituentBitSets[constituentIndex] = new BitSet(noOfQueues);
+            nullConstituentBitSets[constituentIndex] = new BitSet(noOfQueues);
+        }
+        BitSet longerKeyBitSet = new BitSet(noOfQueues);
 
-        if (noOfqueues > 0) {
+        int queueIndex = 0;
+        for (TopicBinding binding : bindings.values()) {
+            storageQueues[queueIndex] = binding.storageQueue;
+            String[] constituents = binding.constituents;
 
-            // Null constituent will always be true for empty constituents, hence need to flip
-            nullBitSet.flip(0, noOfqueues - 1);
+            for (int constituentIndex = 0; constituentIndex < constituents.length; constituentIndex++) {
+                String constituent = constituents[constituentIndex];
 
-            for (int queueIndex = 0; queueIndex < noOfqueues; queueIndex++) {
-                // For 'other', if subscribers last constituent is multi level wild card then matching
-                String[] allConstituent = queueConstituents.get(queueIndex);
-                String lastConstituent = allConstituent[allConstituent.length - 1];
+                if (isWildCard(constituent)) {
+                    // A wildcard matches any constituent at this index
+                    anyConstituentBitSets[constituentIndex].set(queueIndex);
 
-                if (multiLevelWildCard.equals(lastConstituent)) {
-                    otherBitSet.set(queueIndex);
+                    // A multi level wildcard also matches when the routing key ends before this index
+                    if (multiLevelWildCard.equals(constituent)) {
+                        nullConstituentBitSets[constituentIndex].set(queueIndex);
+                    }
                 } else {
-                    otherBitSet.set(queueIndex, false);
+                    Map<String, IntArrayList> queueIndexTable = queueIndexTables.get(constituentIndex);
+                    IntArrayList queueIndexes = queueIndexTable.get(constituent);
+                    if (null == queueIndexes) {
+                        queueIndexes = new IntArrayList(1);
+                        queueIndexTable.put(constituent, queueIndexes);
+                    }
+                    queueIndexes.add(queueIndex);
                 }
             }
+
+            // Constituent indexes beyond the binding key always match a routing key which ended before them and
+            // match any constituent if the binding key matches longer routing keys
+            for (int constituentIndex = constituents.length; constituentIndex < noOfConstituentTables;
+                 constituentIndex++) {
+                nullConstituentBitSets[constituentIndex].set(queueIndex);
+                anyConstituentBitSets[constituentIndex].set(queueIndex, binding.matchingLongerKeys);
+            }
+            longerKeyBitSet.set(queueIndex, binding.matchingLongerKeys);
+            queueIndex++;
         }
 
-        constituentTable.put(NULL_CONSTITUENT, nullBitSet);
-        constituentTable.put(OTHER_CONSTITUENT, otherBitSet);
+        List<Map<String, ConstituentRow>> constituentTables = new ArrayList<>(noOfConstituentTables);
+        for (Map<String, IntArrayList> queueIndexTable : queueIndexTables) {
+            Map<String, ConstituentRow> constituentTable = new HashMap<>(queueIndexTable.size() * 2);
+            for (Map.Entry<String, IntArrayList> queueIndexes : queueIndexTable.entrySet()) {
+                constituentTable.put(queueIndexes.getKey(), new ConstituentRow(queueIndexes.getValue(), noOfQueues));
+            }
+            constituentTables.add(constituentTable);
+        }
 
-        constituentTables.add(constituentTable);
+        Cache<String, Set<StorageQueue>> matchingQueueCache = null;
+        if (cacheSize > 0) {
+            matchingQueueCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+        }
+
+        return new MatcherSnapshot(bindingGeneration, storageQueues, constituentTables, anyConstituentBitSets,
+                nullConstituentBitSets, longerKeyBitSet, matchingQueueCache);
     }
 
     /**
-     * Removing a storageQueue from the structure.
-     *
-     * @param storageQueue The storageQueue to remove
+     * Binding key of a storage queue broken into its constituents
      */
-    public void removeStorageQueue(StorageQueue storageQueue) {
-        int queueIndex = storageQueueList.indexOf(storageQueue);
-
-        if (queueIndex > -1) {
-            for (Map<String, BitSet> constituentTable : constituentTables) {
-                for (Map.Entry<String, BitSet> constituentRow : constituentTable.entrySet()) {
-                    // For every row create a new BitSet with the values for the removed storageQueue removed
-                    String constituent = constituentRow.getKey();
-                    BitSet bitSet = constituentRow.getValue();
-                    BitSet newBitSet = new BitSet();
-
-                    int bitIndex = 0;
-
-                    for (int i = 0; i < bitSet.size(); i++) {
-                        if (bitIndex == queueIndex) {
-                            // If the this is the index to remove then skip this round
-                            bitIndex++;
-                        }
-                        newBitSet.set(i, bitSet.get(bitIndex));
-                        bitIndex++;
-                    }
+    private static final class TopicBinding {
 
-                    constituentTable.put(constituent, newBitSet);
+        private final StorageQueue storageQueue;
 
-                }
-            }
+        private final String[] constituents;
 
-            // Remove the storageQueue from storageQueue list
-            storageQueueList.remove(queueIndex);
-        } else {
-            log.warn("Storage queue for with name : " + storageQueue.getName() + " is not found to " +
-                    "remove");
+        /**
+         * Whether routing keys having more constituents than the binding key match it, e.g. for a binding key ending
+         * with a multi level wildcard
+         */
+        private final boolean matchingLongerKeys;
+
+        private TopicBinding(StorageQueue storageQueue, String[] constituents, boolean matchingLongerKeys) {
+            this.storageQueue = storageQueue;
+            this.constituents = constituents;
+            this.matchingLongerKeys = matchingLongerKeys;
         }
     }
 
+    /**
+     * Storage queues having a given constituent at a constituent index. Rows of constituents shared by many queues
+     * are kept as a bit set, rows of the rest as an array of queue indexes, whichever is smaller. Since most
+     * constituents of a large number of bindings are specific to a few queues, bit sets as wide as the number of
+     * queues for every row would dominate the memory of the matcher.
+     */
+    private static final class ConstituentRow {
 
-    public boolean isStorageQueueAvailable(StorageQueue storageQueue) {
-        return storageQueueList.contains(storageQueue);
-    }
+        private final BitSet bitSet;
 
+        private final int[] queueIndexes;
+
+        private ConstituentRow(IntArrayList queueIndexes, int noOfQueues) {
+            if (queueIndexes.size() * Integer.SIZE > noOfQueues) {
+                bitSet = new BitSet(noOfQueues);
+                for (int i = 0; i < queueIndexes.size(); i++) {
+                    bitSet.set(queueIndexes.get(i));
+                }
+                this.queueIndexes = null;
+            } else {
+                bitSet = null;
+                this.queueIndexes = queueIndexes.toArray();
+            }
+        }
+
+        /**
+         * Set the bits of the queues in this row
+         *
+         * @param target bit set to update
+         */
+        private void addTo(BitSet target) {
+            if (null != bitSet) {
+                target.or(bitSet);
+            } else {
+                for (int queueIndex : queueIndexes) {
+                    target.set(queueIndex);
+                }
+            }
+        }
+    }
 
     /**
-     * Get storage queues matching to routing key
-     * @param routingKey routing key to match queues
-     * @return set of storage queues
+     * Immutable constituent tables of one binding generation, as
+     * ListOfConstituentTables <ConstituentPart, ConstituentRow>. For each constituent index there is also a bit set of
+     * queues matching any constituent at that index and a bit set of queues matching a routing key which has no
+     * constituent at that index.
      */
-    public Set<StorageQueue> getMatchingStorageQueues(String routingKey) {
-        Set<StorageQueue> matchingQueues = new HashSet<>();
+    private final class MatcherSnapshot {
 
-        if (StringUtils.isNotEmpty(routingKey)) {
+        private final long generation;
 
-            // constituentDelimiter is quoted to avoid making the delimiter a regex symbol
-            String[] constituents = routingKey.split(Pattern.quote(constituentsDelimiter),-1);
+        private final StorageQueue[] storageQueues;
+
+        private final List<Map<String, ConstituentRow>> constituentTables;
+
+        private final BitSet[] anyConstituentBitSets;
 
-            int noOfCurrentMaxConstituents = constituentTables.size();
+        private final BitSet[] nullConstituentBitSets;
 
-            // If given routingKey has more constituents than any subscriber has, then create constituent tables
-            // for those before collecting matching subscribers
-            if (constituents.length > noOfCurrentMaxConstituents) {
-                for (int i = noOfCurrentMaxConstituents; i < constituents.length; i++) {
-                    addEmptyConstituentTable();
+        /**
+         * Queues matching any constituent at indexes beyond all binding keys
+         */
+        private final BitSet longerKeyBitSet;
+
+        /**
+         * Matching queues by routing key, null if caching is disabled
+         */
+        private final Cache<String, Set<StorageQueue>> matchingQueueCache;
+
+        private MatcherSnapshot(long generation, StorageQueue[] storageQueues,
+                                List<Map<String, ConstituentRow>> constituentTables, BitSet[] anyConstituentBitSets,
+                                BitSet[] nullConstituentBitSets, BitSet longerKeyBitSet,
+                                Cache<String, Set<StorageQueue>> matchingQueueCache) {
+            this.generation = generation;
+            this.storageQueues = storageQueues;
+            this.constituentTables = constituentTables;
+            this.anyConstituentBitSets = anyConstituentBitSets;
+            this.nullConstituentBitSets = nullConstituentBitSets;
+            this.longerKeyBitSet = longerKeyBitSet;
+            this.matchingQueueCache = matchingQueueCache;
+        }
+
+        private Set<StorageQueue> getMatchingStorageQueues(String routingKey) {
+            Set<StorageQueue> matchingQueues;
+            if (null != matchingQueueCache) {
+                matchingQueues = matchingQueueCache.getIfPresent(routingKey);
+                if (null == matchingQueues) {
+                    matchingQueues = matchStorageQueues(routingKey);
+                    matchingQueueCache.put(routingKey, matchingQueues);
                 }
+            } else {
+                matchingQueues = matchStorageQueues(routingKey);
             }
+            return matchingQueues;
+        }
+
+        private Set<StorageQueue> matchStorageQueues(String routingKey) {
+            // constituentDelimiter is quoted to avoid making the delimiter a regex symbol
+            String[] constituents = routingKey.split(Pattern.quote(constituentsDelimiter), -1);
 
             // Keeps the results of 'AND' operations between each bit sets
-            BitSet andBitSet = new BitSet(storageQueueList.size());
+            BitSet andBitSet = new BitSet(storageQueues.length);
 
             // Since BitSet is initialized with false for each element we need to flip
-            andBitSet.flip(0, storageQueueList.size());
+            andBitSet.flip(0, storageQueues.length);
 
             // Get corresponding bit set for each constituent in the routingKey and operate bitwise AND operation
-            for (int constituentIndex = 0; constituentIndex < constituents.length; constituentIndex++) {
-                String constituent = constituents[constituentIndex];
-                Map<String, BitSet> constituentTable = constituentTables.get(constituentIndex);
-
-                BitSet bitSetForAnd = constituentTable.get(constituent);
-
-                if (null == bitSetForAnd) {
-                    // The constituent is not found in the table, hence matching with 'other' constituent
-                    bitSetForAnd = constituentTable.get(OTHER_CONSTITUENT);
+            for (int constituentIndex = 0; constituentIndex < constituents.length && !andBitSet.isEmpty();
+                 constituentIndex++) {
+                if (constituentIndex < constituentTables.size()) {
+                    BitSet bitSetForAnd = (BitSet) anyConstituentBitSets[constituentIndex].clone();
+                    ConstituentRow constituentRow = constituentTables.get(constituentIndex)
+                            .get(constituents[constituentIndex]);
+
+                    // If the constituent is not found in the table only wildcards match it
+                    if (null != constituentRow) {
+                        constituentRow.addTo(bitSetForAnd);
+                    }
+                    andBitSet.and(bitSetForAnd);
+                } else {
+                    andBitSet.and(longerKeyBitSet);
                 }
-
-                andBitSet.and(bitSetForAnd);
             }
 
             // If there are more constituent tables, get the null constituent in each of them and operate bitwise AND
             for (int constituentIndex = constituents.length; constituentIndex < constituentTables.size();
                  constituentIndex++) {
-                Map<String, BitSet> constituentTable = constituentTables.get(constituentIndex);
-                andBitSet.and(constituentTable.get(NULL_CONSTITUENT));
+                andBitSet.and(nullConstituentBitSets[constituentIndex]);
             }
 
-
             // Valid queues are filtered, need to pick from queue pool
+            ImmutableSet.Builder<StorageQueue> matchingQueues = ImmutableSet.builder();
             int nextSetBitIndex = andBitSet.nextSetBit(0);
             while (nextSetBitIndex > -1) {
-                matchingQueues.add(storageQueueList.get(nextSetBitIndex));
+                matchingQueues.add(storageQueues[nextSetBitIndex]);
                 nextSetBitIndex = andBitSet.nextSetBit(nextSetBitIndex + 1);
             }
 
-        } else {
-            log.warn("Cannot retrieve storage queues via bitmap handler since routingKey to match is empty");
+            return matchingQueues.build();
         }
-
-        return matchingQueues;
-    }
-
-    /**
-     * Get all the storage queues currently saved.
-     *
-     * @return List of all storage queues
-     */
-    public List<StorageQueue> getAllStorageQueues() {
-        return storageQueueList;
-    }
-
-
-    /**
-     * Get all binding keys saved
-     *
-     * @return set of different binding keys
-     */
-    public Set<String> getAllBindingKeys() {
-        Set<String> topics = new HashSet<>();
-
-
-        for (Map.Entry<Integer, String[]> subcriberConstituent : queueConstituents.entrySet()) {
-
-            StringBuilder topic = new StringBuilder();
-            String[] constituents =  subcriberConstituent.getValue();
-
-            for (int i = 0; i < constituents.length; i++) {
-                String constituent = constituents[i];
-                // if this is a wildcard constituent, we provide it as 'ANY' in it's place for readability
-                if (multiLevelWildCard.equals(constituent) || singleLevelWildCard.equals(constituent)) {
-                    topic.append("ANY");
-                } else {
-                    topic.append(constituent);
-                }
-
-                // append the delimiter if there are more constituents to come
-                if ((constituents.length - 1) > i) {
-                    topic.append(constituentsDelimiter);
-                }
-
-            }
-
-            topics.add(topic.toString());
-        }
-
-        return topics;
     }
 
 }
@@ -30,14 +30,10 @@ import java.util.Set;
 public abstract class AbstractSlotManager {
 
     /**
-     * To keep the name of queue on which deletion task is currently running
+     * Queue and lower bound Id of the range on which the expiry deletion task is currently running. Replaced as a
+     * whole so that the safe zone can be looked up holding only a shared queue lock.
      */
-    protected String currentDeletionQueue = StringUtils.EMPTY;
-
-    /**
-     * To keep the lower bound Id of the current expiry message deletion range
-     */
-    protected long currentDeletionRangeLowerBoundId;
+    private volatile DeletionRange currentDeletionRange = DeletionRange.NONE;
 
     /**
      *  The slot gap need to be maintained as not reachable for deletion task as they may be allocated
@@ -79,16 +75,14 @@ public abstract class AbstractSlotManager {
      * @param currentDeletionRangeLowerBoundId lower bound Id of deletion range
      */
     public void setDeletionTaskState(String currentDeletionQueueName, long currentDeletionRangeLowerBoundId) {
-        this.currentDeletionQueue = currentDeletionQueueName;
-        this.currentDeletionRangeLowerBoundId = currentDeletionRangeLowerBoundId;
+        this.currentDeletionRange = new DeletionRange(currentDeletionQueueName, currentDeletionRangeLowerBoundId);
     }
 
     /**
      * Clear the state of current deletion range.
      */
     public void clearDeletionTaskState() {
-        this.currentDeletionQueue = StringUtils.EMPTY;
-        this.currentDeletionRangeLowerBoundId = 0L;
+        this.currentDeletionRange = DeletionRange.NONE;
     }
 
     /**
@@ -104,11 +98,28 @@ public abstract class AbstractSlotManager {
         // task is running and message id range is in the current deletion range.
         // If last message id is null then there is no new messages.
         // So Deletion task will not run.An empty slot will be given to Slot delivery worker.
-        if ((null != lastMessageId) && currentDeletionQueue.equals(queueName) && (currentDeletionRangeLowerBoundId
+        DeletionRange deletionRange = currentDeletionRange;
+        if ((null != lastMessageId) && deletionRange.queueName.equals(queueName) && (deletionRange.lowerBoundId
                 <= lastMessageId)) {
             isSafeToDeliverSlots = false;
         }
         return isSafeToDeliverSlots;
     }
 
+    /**
+     * Range of a queue on which the expiry deletion task is running
+     */
+    private static final class DeletionRange {
+
+        private static final DeletionRange NONE = new DeletionRange(StringUtils.EMPTY, 0L);
+
+        private final String queueName;
+
+        private final long lowerBoundId;
+
+        private DeletionRange(String queueName, long lowerBoundId) {
+            this.queueName = queueName;
+            this.lowerBoundId = lowerBoundId;
+        }
+    }
 }
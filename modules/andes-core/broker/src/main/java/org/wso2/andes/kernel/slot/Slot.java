@@ -410,4 +410,11 @@ public class Slot implements Serializable, Comparable<Slot> {
     public void incrementPendingMessageCount(int amount) {
         pendingMessageCount.addAndGet(amount);
     }
+
+    /**
+     * Get the number of messages in the slot which are not deleted yet
+     */
+    public int getPendingMessageCount() {
+        return pendingMessageCount.get();
+    }
 }
@@ -18,6 +18,8 @@
 
 package org.wso2.andes.kernel.slot;
 
+import java.util.List;
+
 /**
  * This interface is responsible for coordinating with the SlotManagerClusterMode
  */
@@ -41,6 +43,15 @@ public interface SlotCoordinator {
      */
      void updateMessageId(String queueName,long startMessageId, long endMessageId, long localSafeZone) throws ConnectionException;
 
+    /**
+     * Record last message IDs of several slots in one request. Each slot carries its storage queue name, start and
+     * end message IDs.
+     * @param slots Slots to submit
+     * @param localSafeZone Local safe zone of the node considering all submitted and pending slots
+     * @throws ConnectionException
+     */
+     void updateMessageIds(List<Slot> slots, long localSafeZone) throws ConnectionException;
+
     /**
      *  Record safe zone to delete slots by node. This ping comes from nodes as messages are not
      *  published by them so that safe zone value keeps moving ahead.
@@ -70,6 +81,15 @@ public interface SlotCoordinator {
      */
      void clearAllActiveSlotRelationsToQueue(String queueName) throws ConnectionException;
 
+    /**
+     * Hand over messages whose expiry deadline has passed to the slot manager, which deletes them once they are in
+     * the safe deletion region of the queue
+     * @param queueName Name of the storage queue of the messages
+     * @param messageIds IDs of the expired messages
+     * @throws ConnectionException
+     */
+     void scheduleExpiredMessages(String queueName, List<Long> messageIds) throws ConnectionException;
+
     /**
      * Add listener to coordinator connection listeners so that they can be notified when the conneciton is broken with
      * the coordinator.
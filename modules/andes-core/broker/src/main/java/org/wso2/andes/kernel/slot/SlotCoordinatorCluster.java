@@ -24,6 +24,13 @@ import org.wso2.andes.kernel.AndesContext;
 import org.wso2.andes.server.cluster.error.detection.NetworkPartitionListener;
 import org.wso2.andes.thrift.MBThriftClient;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * This class is responsible of coordinating with the cluster mode Slot Manager
  */
@@ -58,6 +65,14 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
         instance.updateMessageId(queueName,startMessageId,endMessageId, localSafeZone);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageIds(List<Slot> slots, long localSafeZone) throws ConnectionException {
+        instance.updateMessageIds(slots, localSafeZone);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -90,6 +105,14 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
         instance.clearAllActiveSlotRelationsToQueue(queueName);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scheduleExpiredMessages(String queueName, List<Long> messageIds) throws ConnectionException {
+        instance.scheduleExpiredMessages(queueName, messageIds);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -140,9 +163,82 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
          */
         private MBThriftClient thriftClient = new MBThriftClient();
 
+        /**
+         * Slot requests waiting to be sent to the coordinator
+         */
+        private final Queue<SlotRequest> pendingSlotRequests = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Only one batch of slot requests is in flight at a time. Requests arriving meanwhile are queued and sent
+         * together by the next thread that acquires this lock.
+         */
+        private final Lock slotRequestLock = new ReentrantLock();
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Concurrent slot requests from delivery tasks are combined so that requests made while another request
+         * is in flight are sent to the coordinator in a single call.
+         */
         @Override
         public Slot getSlot(String queueName) throws ConnectionException {
-            return thriftClient.getSlot(queueName, nodeId);
+            SlotRequest slotRequest = new SlotRequest(queueName);
+            pendingSlotRequests.add(slotRequest);
+            slotRequestLock.lock();
+            try {
+                if (!slotRequest.completed) {
+                    sendPendingSlotRequests();
+                }
+            } finally {
+                slotRequestLock.unlock();
+            }
+            if (null != slotRequest.error) {
+                throw slotRequest.error;
+            }
+            return slotRequest.slot;
+        }
+
+        /**
+         * Send all pending slot requests to the coordinator in one call. Must be called while holding
+         * slotRequestLock.
+         */
+        private void sendPendingSlotRequests() {
+            List<SlotRequest> batch = new ArrayList<>();
+            List<String> queueNames = new ArrayList<>();
+            SlotRequest slotRequest;
+            while ((slotRequest = pendingSlotRequests.poll()) != null) {
+                batch.add(slotRequest);
+                queueNames.add(slotRequest.queueName);
+            }
+            try {
+                List<Slot> slots;
+                if (1 == batch.size()) {
+                    slots = new ArrayList<>(1);
+                    slots.add(thriftClient.getSlot(queueNames.get(0), nodeId));
+                } else {
+                    slots = thriftClient.getSlots(queueNames, nodeId);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    SlotRequest completedRequest = batch.get(i);
+                    completedRequest.slot = slots.get(i);
+                    // The coordinator failed to read the slot of this queue only
+                    if (null == completedRequest.slot) {
+                        completedRequest.error = new ConnectionException(
+                                "Coordinator could not provide a slot for queue " + completedRequest.queueName);
+                    }
+                }
+                if (log.isDebugEnabled() && batch.size() > 1) {
+                    log.debug("Received " + batch.size() + " slots from coordinator in a single request");
+                }
+            } catch (ConnectionException e) {
+                for (SlotRequest failedRequest : batch) {
+                    failedRequest.error = e;
+                }
+            } finally {
+                for (SlotRequest completedRequest : batch) {
+                    completedRequest.completed = true;
+                }
+            }
         }
 
         @Override
@@ -151,6 +247,11 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
             thriftClient.updateMessageId(queueName,nodeId,startMessageId,endMessageId, localSafeZone);
         }
 
+        @Override
+        public void updateMessageIds(List<Slot> slots, long localSafeZone) throws ConnectionException {
+            thriftClient.updateMessageIds(slots, nodeId, localSafeZone);
+        }
+
         @Override
         public void updateSlotDeletionSafeZone(long currentSlotDeleteSafeZone) throws ConnectionException {
             thriftClient.updateSlotDeletionSafeZone(currentSlotDeleteSafeZone, nodeId);
@@ -175,6 +276,11 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
             thriftClient.clearAllActiveSlotRelationsToQueue(queueName);
         }
 
+        @Override
+        public void scheduleExpiredMessages(String queueName, List<Long> messageIds) throws ConnectionException {
+            thriftClient.scheduleExpiredMessages(queueName, messageIds);
+        }
+
         @Override
         public void addCoordinatorConnectionListener(CoordinatorConnectionListener listener) {
             thriftClient.addConnectionListener(listener);
@@ -199,6 +305,11 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
             throw new ConnectionException("cluster error detected, not connectng to cooridnator");            
         }
 
+        @Override
+        public void updateMessageIds(List<Slot> slots, long localSafeZone) throws ConnectionException {
+            throw new ConnectionException("cluster error detected, not connectng to cooridnator");
+        }
+
         @Override
         public void updateSlotDeletionSafeZone(long currentSlotDeleteSafeZone) throws ConnectionException {
             throw new ConnectionException("cluster error detected, not connectng to cooridnator");
@@ -219,10 +330,34 @@ public class SlotCoordinatorCluster implements SlotCoordinator, NetworkPartition
             throw new ConnectionException("cluster error detected, not connectng to cooridnator");
         }
 
+        @Override
+        public void scheduleExpiredMessages(String queueName, List<Long> messageIds) throws ConnectionException {
+            throw new ConnectionException("cluster error detected, not connectng to cooridnator");
+        }
+
         @Override
         public void addCoordinatorConnectionListener(CoordinatorConnectionListener listener) {
             // Do nothing as this is the error based coordinator listener has no effect
         }
     }
+
+    /**
+     * A slot request of a delivery task waiting to be sent to the coordinator. Fields are written and read while
+     * holding the slot request lock.
+     */
+    private static class SlotRequest {
+
+        private final String queueName;
+
+        private Slot slot;
+
+        private ConnectionException error;
+
+        private boolean completed;
+
+        private SlotRequest(String queueName) {
+            this.queueName = queueName;
+        }
+    }
     
 }
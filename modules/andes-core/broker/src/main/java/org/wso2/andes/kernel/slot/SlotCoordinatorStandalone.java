@@ -18,6 +18,11 @@
 
 package org.wso2.andes.kernel.slot;
 
+import org.wso2.andes.kernel.ExpiryTimerWheel;
+import org.wso2.andes.kernel.MessagingEngine;
+
+import java.util.List;
+
 /**
  * This class is responsible of coordinating with the Standalone Slot Manager
  */
@@ -49,6 +54,16 @@ public class SlotCoordinatorStandalone implements SlotCoordinator {
         slotManagerStandalone.updateMessageID(queueName,endMessageId);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageIds(List<Slot> slots, long localSafeZone) throws ConnectionException {
+        for (Slot slot : slots) {
+            slotManagerStandalone.updateMessageID(slot.getStorageQueueName(), slot.getEndMessageId());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -81,6 +96,17 @@ public class SlotCoordinatorStandalone implements SlotCoordinator {
         slotManagerStandalone.clearAllActiveSlotRelationsToQueue(queueName);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scheduleExpiredMessages(String queueName, List<Long> messageIds) {
+        ExpiryTimerWheel expiryTimerWheel = MessagingEngine.getInstance().getExpiryTimerWheel();
+        if (null != expiryTimerWheel) {
+            expiryTimerWheel.scheduleExpired(queueName, messageIds);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
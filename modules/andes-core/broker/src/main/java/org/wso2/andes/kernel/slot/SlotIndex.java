@@ -0,0 +1,717 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.slot;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.server.cluster.coordination.SlotAgent;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory view of the slot coordinator state kept by the coordinator node. For each storage queue it holds the
+ * sorted set of submitted slot end message IDs and the last assigned message ID, so that slot allocation and slot
+ * submission do not need to read the slot store. Returned and overlapped slots stay in the slot store, but the index
+ * tracks whether a queue can have any, so that the store is only queried for them after slots were returned or
+ * overlapped.
+ * <p>
+ * The slot store stays the source of truth across coordinator changes. Changes are applied to memory first and
+ * written to the store in submission order by a single writer thread, which retries failed writes. The index of a
+ * queue is loaded from the store the first time the queue is accessed, and the whole index is reloaded when the
+ * local node is elected as coordinator.
+ */
+class SlotIndex {
+
+    private static final Log log = LogFactory.getLog(SlotIndex.class);
+
+    /**
+     * Time to wait for pending store writes when the index is rebuilt or shut down
+     */
+    private static final long WRITER_DRAIN_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Number of times a store write is attempted before it is given up
+     */
+    static final int MAX_WRITE_ATTEMPTS = 10;
+
+    /**
+     * Delay before the first retry of a failed store write. Doubled on each retry up to
+     * {@link #MAX_WRITE_RETRY_DELAY_MILLIS}.
+     */
+    private static final long INITIAL_WRITE_RETRY_DELAY_MILLIS = 100;
+
+    private static final long MAX_WRITE_RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * Slot state of each storage queue known to the coordinator
+     */
+    private final ConcurrentMap<String, QueueSlotState> queueStates;
+
+    /**
+     * Shared by operations on the index and held exclusively while the index is rebuilt or cleared, so that no
+     * operation works on a queue state which is being dropped
+     */
+    private final ReadWriteLock indexLock;
+
+    /**
+     * Used to read the slot store and to persist changes made to the index
+     */
+    private final SlotAgent slotAgent;
+
+    /**
+     * Single threaded executor that applies index changes to the slot store in order
+     */
+    private final ExecutorService storeWriter;
+
+    /**
+     * Delay before the first retry of a failed store write
+     */
+    private final long initialWriteRetryDelay;
+
+    SlotIndex(SlotAgent slotAgent) {
+        this(slotAgent, INITIAL_WRITE_RETRY_DELAY_MILLIS);
+    }
+
+    SlotIndex(SlotAgent slotAgent, long initialWriteRetryDelay) {
+        this.slotAgent = slotAgent;
+        this.initialWriteRetryDelay = initialWriteRetryDelay;
+        this.queueStates = new ConcurrentHashMap<>();
+        this.indexLock = new ReentrantReadWriteLock();
+        this.storeWriter = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("SlotIndexStoreWriter-%d").build());
+    }
+
+    /**
+     * Add a submitted slot end message ID for the queue
+     *
+     * @param queueName name of the queue
+     * @param messageId end message ID of the submitted slot
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    void addMessageId(final String queueName, final long messageId) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                if (!queueState.messageIds.add(messageId)) {
+                    // Same message id can be submitted more than once when slots are overlapped
+                    return;
+                }
+            }
+            storeWriter.submit(new StoreWriteTask(queueName, "add message id: " + messageId) {
+                @Override
+                void write() throws AndesException {
+                    slotAgent.addMessageId(queueName, messageId);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove and return the lowest submitted slot end message ID of the queue
+     *
+     * @param queueName name of the queue
+     * @return lowest message ID or null if there are no submitted slots
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    Long pollFirstMessageId(final String queueName) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            final Long messageId;
+            synchronized (queueState) {
+                messageId = queueState.messageIds.pollFirst();
+            }
+            if (null != messageId) {
+                storeWriter.submit(new StoreWriteTask(queueName, "delete message id: " + messageId) {
+                    @Override
+                    void write() throws AndesException {
+                        slotAgent.deleteMessageId(queueName, messageId);
+                    }
+                });
+            }
+            return messageId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the lowest submitted slot end message ID of the queue without removing it
+     *
+     * @param queueName name of the queue
+     * @return lowest message ID or null if there are no submitted slots
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    Long peekFirstMessageId(String queueName) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                return queueState.messageIds.isEmpty() ? null : queueState.messageIds.first();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the n<sup>th</sup> lowest submitted slot end message ID of the queue
+     *
+     * @param queueName name of the queue
+     * @param position  one based position of the message ID
+     * @return message ID at the given position or null if there are fewer submitted slots
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    Long getMessageIdAt(String queueName, int position) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                if (position < 1 || queueState.messageIds.size() < position) {
+                    return null;
+                }
+                Iterator<Long> iterator = queueState.messageIds.iterator();
+                Long messageId = null;
+                for (int i = 0; i < position; i++) {
+                    messageId = iterator.next();
+                }
+                return messageId;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get last assigned message ID of the queue
+     *
+     * @param queueName name of the queue
+     * @return last assigned message ID, 0 if nothing was assigned yet
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    long getLastAssignedId(String queueName) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                return queueState.lastAssignedId;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set last assigned message ID of the queue
+     *
+     * @param queueName      name of the queue
+     * @param lastAssignedId last assigned message ID
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    void setLastAssignedId(final String queueName, final long lastAssignedId) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                queueState.lastAssignedId = lastAssignedId;
+            }
+            storeWriter.submit(new StoreWriteTask(queueName, "set last assigned message id: " + lastAssignedId) {
+                @Override
+                void write() throws AndesException {
+                    slotAgent.setQueueToLastAssignedId(queueName, lastAssignedId);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all submitted slot end message IDs of the queue
+     *
+     * @param queueName name of the queue
+     */
+    void removeMessageIds(final String queueName) {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = queueStates.get(queueName);
+            if (null != queueState) {
+                synchronized (queueState) {
+                    queueState.messageIds.clear();
+                }
+            }
+            storeWriter.submit(new StoreWriteTask(queueName, "delete message ids") {
+                @Override
+                void write() throws AndesException {
+                    slotAgent.deleteMessageIdsByQueueName(queueName);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the oldest returned slot of the queue. The store is only read if slots of the queue may have been returned
+     * since it last had none.
+     *
+     * @param queueName name of the queue
+     * @return returned slot or null if there is none
+     * @throws AndesException if the slot could not be read from the store
+     */
+    Slot getReturnedSlot(String queueName) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            long version;
+            synchronized (queueState) {
+                if (!queueState.returnedSlotsPossible) {
+                    return null;
+                }
+                version = queueState.storeSlotsVersion;
+            }
+
+            Slot returnedSlot = slotAgent.getUnAssignedSlot(queueName);
+            if (null == returnedSlot) {
+                synchronized (queueState) {
+                    // Slots returned while the store was read keep the queue marked
+                    if (version == queueState.storeSlotsVersion) {
+                        queueState.returnedSlotsPossible = false;
+                    }
+                }
+            }
+            return returnedSlot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the oldest overlapped slot of the queue assigned to the node. The store is only read if slots of the queue
+     * may have been overlapped since the node last had none.
+     *
+     * @param queueName name of the queue
+     * @param nodeId    id of the node
+     * @return overlapped slot or null if there is none
+     * @throws AndesException if the slot could not be read from the store
+     */
+    Slot getOverlappedSlot(String queueName, String nodeId) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            long version;
+            synchronized (queueState) {
+                if (queueState.nodesWithoutOverlappedSlots.contains(nodeId)) {
+                    return null;
+                }
+                version = queueState.storeSlotsVersion;
+            }
+
+            Slot overlappedSlot = slotAgent.getOverlappedSlot(nodeId, queueName);
+            if (null == overlappedSlot) {
+                synchronized (queueState) {
+                    // Slots overlapped while the store was read keep the node marked
+                    if (version == queueState.storeSlotsVersion) {
+                        queueState.nodesWithoutOverlappedSlots.add(nodeId);
+                    }
+                }
+            }
+            return overlappedSlot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the claim version of the queue. A returned or overlapped slot read from the store after getting the
+     * version can only be claimed if no claimed slot was written to the store since.
+     *
+     * @param queueName name of the queue
+     * @return claim version
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    long getClaimVersion(String queueName) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                return queueState.claimVersion;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claim a returned or overlapped slot read from the store, so that it is assigned only once while the store is
+     * read and written without holding the queue lock. The claim fails if the slot is already claimed or a claimed
+     * slot was assigned after the slot was read, since the read may then be stale.
+     *
+     * @param queueName    name of the queue
+     * @param slot         slot read from the store
+     * @param claimVersion claim version taken before the slot was read
+     * @return true if the slot is claimed
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    boolean claimSlot(String queueName, Slot slot, long claimVersion) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                return claimVersion == queueState.claimVersion && queueState.claimedSlots.add(slot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claim a fresh slot created from the index, so that slots read from the store are known to be incomplete until
+     * it is written. Must be called holding the queue lock.
+     *
+     * @param queueName name of the queue
+     * @param slot      fresh slot
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    void claimFreshSlot(String queueName, Slot slot) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                queueState.claimedSlots.add(slot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check whether slots read from the store after getting the claim version are complete, i.e. no claimed slot was
+     * written to the store since and none is being written
+     *
+     * @param queueName    name of the queue
+     * @param claimVersion claim version taken before the slots were read
+     * @return true if no claimed slot was or is being written since
+     * @throws AndesException if the queue state could not be loaded from the store
+     */
+    boolean isClaimVersionCurrent(String queueName, long claimVersion) throws AndesException {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            QueueSlotState queueState = getQueueState(queueName);
+            synchronized (queueState) {
+                return claimVersion == queueState.claimVersion && queueState.claimedSlots.isEmpty();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a claimed slot once it is written to the store
+     *
+     * @param queueName name of the queue
+     * @param slot      claimed slot
+     */
+    void releaseSlot(String queueName, Slot slot) {
+        QueueSlotState queueState = queueStates.get(queueName);
+        if (null != queueState) {
+            synchronized (queueState) {
+                queueState.claimedSlots.remove(slot);
+                queueState.claimVersion++;
+            }
+        }
+    }
+
+    /**
+     * Record that slots of the queue were returned in the store. Must be called after the store is updated.
+     *
+     * @param queueName name of the queue
+     */
+    void slotsReturned(String queueName) {
+        QueueSlotState queueState = queueStates.get(queueName);
+        if (null != queueState) {
+            synchronized (queueState) {
+                queueState.storeSlotsVersion++;
+                queueState.returnedSlotsPossible = true;
+            }
+        }
+    }
+
+    /**
+     * Record that assigned slots of the queue were marked as overlapped in the store. Must be called after the store
+     * is updated.
+     *
+     * @param queueName name of the queue
+     */
+    void slotsOverlapped(String queueName) {
+        QueueSlotState queueState = queueStates.get(queueName);
+        if (null != queueState) {
+            synchronized (queueState) {
+                queueState.storeSlotsVersion++;
+                queueState.nodesWithoutOverlappedSlots.clear();
+            }
+        }
+    }
+
+    /**
+     * Get names of queues which have submitted slots
+     *
+     * @return set of queue names
+     * @throws AndesException if queue names could not be read from the store or pending writes could not be
+     *                        applied
+     */
+    Set<String> getAllQueuesInSubmittedSlots() throws AndesException {
+        waitForPendingWrites();
+        return slotAgent.getAllQueuesInSubmittedSlots();
+    }
+
+    /**
+     * Replace the in-memory state with the state of every queue with submitted slots in the store. Called when the
+     * local node becomes the coordinator since the store may have been changed by the previous coordinator.
+     *
+     * @throws AndesException if the state could not be read from the store or pending writes could not be applied
+     */
+    void rebuild() throws AndesException {
+        Lock lock = indexLock.writeLock();
+        lock.lock();
+        try {
+            waitForPendingWrites();
+            queueStates.clear();
+            for (String queueName : slotAgent.getAllQueuesInSubmittedSlots()) {
+                getQueueState(queueName);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Slot index rebuilt from store for " + queueStates.size() + " queues");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the in-memory state without touching the store
+     */
+    void clear() {
+        Lock lock = indexLock.writeLock();
+        lock.lock();
+        try {
+            waitForPendingWrites();
+        } catch (AndesException e) {
+            log.warn("Clearing slot index with pending store writes", e);
+        } finally {
+            queueStates.clear();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write pending changes to the store and stop the writer
+     */
+    void shutdown() {
+        storeWriter.shutdown();
+        try {
+            if (!storeWriter.awaitTermination(WRITER_DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out while writing pending slot index changes to store");
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while writing pending slot index changes to store", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the state of a queue, loading it from the store if this is the first access. Must be called holding the
+     * index lock.
+     *
+     * @param queueName name of the queue
+     * @return state of the queue
+     * @throws AndesException if the state could not be read from the store
+     */
+    private QueueSlotState getQueueState(String queueName) throws AndesException {
+        QueueSlotState queueState = queueStates.get(queueName);
+        if (null == queueState) {
+            QueueSlotState loadedState = loadQueueState(queueName);
+            queueState = queueStates.putIfAbsent(queueName, loadedState);
+            if (null == queueState) {
+                queueState = loadedState;
+            }
+        }
+        return queueState;
+    }
+
+    /**
+     * Read the slot state of a queue from the store. Slots are created in the store before the last assigned
+     * message ID is written, therefore the last assigned ID is taken as the maximum of the stored value and the end
+     * message ID of existing slots.
+     *
+     * @param queueName name of the queue
+     * @return state of the queue
+     * @throws AndesException if the state could not be read from the store
+     */
+    private QueueSlotState loadQueueState(String queueName) throws AndesException {
+        QueueSlotState queueState = new QueueSlotState();
+        queueState.messageIds.addAll(slotAgent.getSlotBasedMessageIds(queueName));
+        long lastAssignedId = slotAgent.getQueueToLastAssignedId(queueName);
+        for (Slot slot : slotAgent.getAllSlotsByQueueName(queueName)) {
+            lastAssignedId = Math.max(lastAssignedId, slot.getEndMessageId());
+        }
+        queueState.lastAssignedId = lastAssignedId;
+        return queueState;
+    }
+
+    /**
+     * Block until the writes submitted so far are applied to the store
+     *
+     * @throws AndesException if the writes are not applied within {@link #WRITER_DRAIN_TIMEOUT_SECONDS}
+     */
+    private void waitForPendingWrites() throws AndesException {
+        Future<?> barrier = storeWriter.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Nothing to do. Completes once previously submitted writes are done.
+            }
+        });
+        try {
+            barrier.get(WRITER_DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AndesException("Interrupted while waiting for slot index changes to be written to store", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AndesException("Pending slot index changes could not be written to store", e);
+        }
+    }
+
+    /**
+     * Slot state held for a single storage queue
+     */
+    private static class QueueSlotState {
+
+        /**
+         * End message IDs of submitted slots which are not yet assigned
+         */
+        private final TreeSet<Long> messageIds = new TreeSet<>();
+
+        /**
+         * Last message ID assigned through a fresh slot
+         */
+        private long lastAssignedId;
+
+        /**
+         * False once the store had no returned slots of the queue and none were returned since
+         */
+        private boolean returnedSlotsPossible = true;
+
+        /**
+         * Nodes which had no overlapped slots of the queue in the store and none were overlapped since
+         */
+        private final Set<String> nodesWithoutOverlappedSlots = new HashSet<>();
+
+        /**
+         * Incremented whenever slots of the queue are returned or overlapped in the store
+         */
+        private long storeSlotsVersion;
+
+        /**
+         * Fresh slots and returned or overlapped slots read from the store which are being written to the store
+         */
+        private final Set<Slot> claimedSlots = new HashSet<>();
+
+        /**
+         * Incremented whenever a claimed slot is written to the store
+         */
+        private long claimVersion;
+    }
+
+    /**
+     * Store write applied by the writer thread. Failed writes are retried with a growing delay, which holds back
+     * later writes so that the store is changed in submission order. If all attempts fail the in-memory state of
+     * the queue is dropped and loaded from the store again.
+     */
+    private abstract class StoreWriteTask implements Runnable {
+
+        private final String queueName;
+
+        private final String task;
+
+        StoreWriteTask(String queueName, String task) {
+            this.queueName = queueName;
+            this.task = task + " for queue: " + queueName;
+        }
+
+        abstract void write() throws AndesException;
+
+        @Override
+        public void run() {
+            long retryDelay = initialWriteRetryDelay;
+            for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+                try {
+                    write();
+                    return;
+                } catch (Throwable e) {
+                    log.warn("Attempt " + attempt + " of " + MAX_WRITE_ATTEMPTS + " failed to " + task, e);
+                }
+                if (MAX_WRITE_ATTEMPTS == attempt) {
+                    break;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(retryDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_WRITE_RETRY_DELAY_MILLIS);
+            }
+            log.error("Giving up trying to " + task + ". Slot index of the queue is reloaded from store.");
+            // Not done under the index lock since a rebuild holding it waits for this writer
+            queueStates.remove(queueName);
+        }
+    }
+}
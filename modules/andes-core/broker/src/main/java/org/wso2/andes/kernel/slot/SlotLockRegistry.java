@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.slot;
+
+import org.wso2.andes.metrics.MetricsConstants;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.MetricManager;
+import org.wso2.carbon.metrics.manager.Timer.Context;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Striped read write locks used by the slot managers to serialize slot operations of a queue or a node. A key is
+ * mapped to one of a fixed number of stripes, hence unrelated keys may share a lock but the registry never grows.
+ * Operations which only read slot state take the shared lock, every other operation takes the exclusive lock.
+ * <p>
+ * Keys of different kinds (e.g. queue names and node IDs) should use separate registries. The slot managers always
+ * take a node lock while holding a queue lock and never the other way around, so separate registries keep the lock
+ * order free of cycles even when keys collide on a stripe.
+ * <p>
+ * When a lock cannot be acquired immediately the wait is recorded against the requested key, so contended
+ * destinations can be identified through the {@link MetricsConstants#SLOT_LOCK_CONTENTION} and
+ * {@link MetricsConstants#SLOT_LOCK_WAIT} metrics. Locks are held only for in-memory slot state, slot store reads
+ * and writes are done outside them.
+ */
+class SlotLockRegistry {
+
+    /**
+     * Default number of stripes. Must be a power of two.
+     */
+    static final int DEFAULT_STRIPE_COUNT = 64;
+
+    /**
+     * Name of the registry used in metric names. i.e. queue or node
+     */
+    private final String name;
+
+    private final ReentrantReadWriteLock[] stripes;
+
+    private final int stripeMask;
+
+    /**
+     * Create a lock registry
+     *
+     * @param name        name of the registry used in metric names
+     * @param stripeCount number of stripes. Rounded up to a power of two
+     */
+    SlotLockRegistry(String name, int stripeCount) {
+        this.name = name;
+        int size = Integer.highestOneBit(Math.max(stripeCount, 1) * 2 - 1);
+        stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        stripeMask = size - 1;
+    }
+
+    /**
+     * Acquire the exclusive lock of the key. The caller must unlock the returned lock.
+     *
+     * @param key lock key
+     * @return acquired lock
+     */
+    Lock lock(String key) {
+        Lock lock = stripes[getStripeIndex(key)].writeLock();
+        acquire(lock, key);
+        return lock;
+    }
+
+    /**
+     * Acquire the shared lock of the key. The caller must unlock the returned lock. A thread holding the shared lock
+     * must not try to acquire the exclusive lock of the same key.
+     *
+     * @param key lock key
+     * @return acquired lock
+     */
+    Lock lockShared(String key) {
+        Lock lock = stripes[getStripeIndex(key)].readLock();
+        acquire(lock, key);
+        return lock;
+    }
+
+    /**
+     * Get the index of the stripe a key maps to
+     *
+     * @param key lock key
+     * @return stripe index
+     */
+    int getStripeIndex(String key) {
+        int hash = key.hashCode();
+        // Spread high bits to lower bits since only the lower bits select the stripe
+        hash ^= (hash >>> 16);
+        return hash & stripeMask;
+    }
+
+    /**
+     * Get the name of a metric recorded for a key
+     *
+     * @param metricName base metric name
+     * @param key        lock key
+     * @return metric name of the key
+     */
+    String getMetricName(String metricName, String key) {
+        return metricName + MetricsConstants.METRICS_NAME_SEPARATOR + name + MetricsConstants.METRICS_NAME_SEPARATOR
+                + key;
+    }
+
+    /**
+     * Acquire the lock, recording the wait in metrics of the key if another thread holds it
+     *
+     * @param lock lock to acquire
+     * @param key  key the lock is acquired for
+     */
+    private void acquire(Lock lock, String key) {
+        if (lock.tryLock()) {
+            return;
+        }
+        MetricManager.meter(getMetricName(MetricsConstants.SLOT_LOCK_CONTENTION, key), Level.DEBUG).mark();
+        Context waitContext = MetricManager.timer(getMetricName(MetricsConstants.SLOT_LOCK_WAIT, key), Level.DEBUG)
+                .start();
+        try {
+            lock.lock();
+        } finally {
+            waitContext.stop();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Slot Manager Cluster Mode is responsible of slot allocating, slot creating,
@@ -70,6 +71,21 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
 
     private SlotAgent slotAgent;
 
+    /**
+     * In-memory submitted slot message IDs and last assigned IDs used while this node is the coordinator
+     */
+    private SlotIndex slotIndex;
+
+    /**
+     * Locks serializing slot operations of a queue
+     */
+    private final SlotLockRegistry queueLocks = new SlotLockRegistry("queue", SlotLockRegistry.DEFAULT_STRIPE_COUNT);
+
+    /**
+     * Locks serializing slot assignment changes of a node. Always acquired after the queue lock if both are needed.
+     */
+    private final SlotLockRegistry nodeLocks = new SlotLockRegistry("node", SlotLockRegistry.DEFAULT_STRIPE_COUNT);
+
     private SlotManagerClusterMode() {
 
         //start a thread to calculate slot delete safe zone
@@ -78,6 +94,7 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
 
         // Use RDBMS slot information storing
         slotAgent = new DatabaseSlotAgent();
+        slotIndex = new SlotIndex(slotAgent);
         firstMessageId = INITIAL_MESSAGE_ID;
         slotRecoveryScheduled = new AtomicBoolean(false);
 
@@ -99,28 +116,47 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      */
     public Slot getSlot(String queueName, String nodeId) throws AndesException {
 
-        Slot slotToBeAssigned;
+        Slot slotToBeAssigned = null;
+        boolean isFreshSlot = false;
 
         /**
-         *First look in the unassigned slots pool for free slots. These slots are previously own by
-         * other nodes
+         * First look in the unassigned slots pool for free slots. These slots are previously own by
+         * other nodes. The slot store is read without holding the queue lock and the slot read is claimed in the
+         * slot index, so that concurrent requests do not assign it twice.
          */
-        String lockKey = queueName + SlotManagerClusterMode.class;
-        synchronized (lockKey.intern()) {
-            slotToBeAssigned = getUnassignedSlot(queueName);
+        long claimVersion = slotIndex.getClaimVersion(queueName);
+        Slot storedSlot = getUnassignedSlot(queueName);
+        if (null == storedSlot) {
+            storedSlot = getOverlappedSlot(nodeId, queueName);
+        }
 
-            if (null == slotToBeAssigned) {
-                slotToBeAssigned = getOverlappedSlot(nodeId, queueName);
-            }
-            if (null == slotToBeAssigned) {
-                slotToBeAssigned = getFreshSlot(queueName, nodeId);
+        Lock lock = queueLocks.lock(queueName);
+        try {
+            if (null != storedSlot && slotIndex.claimSlot(queueName, storedSlot, claimVersion)) {
+                slotToBeAssigned = storedSlot;
+            } else {
+                slotToBeAssigned = getFreshSlot(queueName);
+                isFreshSlot = true;
+                if (null != slotToBeAssigned) {
+                    slotIndex.claimFreshSlot(queueName, slotToBeAssigned);
+                }
             }
+        } finally {
+            lock.unlock();
+        }
 
-            if (null != slotToBeAssigned) {
-                updateSlotAssignmentMap(queueName, slotToBeAssigned, nodeId);
-                if (log.isDebugEnabled()) {
-                    log.debug("Assigning slot for node : " + nodeId + " | " + slotToBeAssigned);
+        if (null != slotToBeAssigned) {
+            try {
+                if (isFreshSlot) {
+                    slotAgent.createSlot(slotToBeAssigned.getStartMessageId(), slotToBeAssigned.getEndMessageId(),
+                            slotToBeAssigned.getStorageQueueName(), nodeId);
                 }
+                updateSlotAssignmentMap(queueName, slotToBeAssigned, nodeId);
+            } finally {
+                slotIndex.releaseSlot(queueName, slotToBeAssigned);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Assigning slot for node : " + nodeId + " | " + slotToBeAssigned);
             }
         }
 
@@ -129,28 +165,33 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
     }
 
     /**
-     * Create a new slot from store
+     * Create a new slot from the submitted message IDs in the slot index. Must be called holding the queue lock. The
+     * caller writes the slot to the store.
      *
      * @param queueName name of the queue
-     * @param nodeId    id of the node
      * @return slot object
      */
-    private Slot getFreshSlot(String queueName, String nodeId) throws AndesException {
+    private Slot getFreshSlot(String queueName) throws AndesException {
 
         Slot slotToBeAssigned = null;
-        Long endMessageId = null;
-        TreeSet<Long> messageIDSet;
-        // Get message id set from database
-        messageIDSet = slotAgent.getSlotBasedMessageIds(queueName);
         //start msgID will be last assigned ID + 1 so that slots are created with no
         // message ID gaps in-between
-        long lastAssignedId = slotAgent.getQueueToLastAssignedId(queueName);
+        long lastAssignedId = slotIndex.getLastAssignedId(queueName);
         /**
          * End message id that needs to be allocated to this slot
-         * End messageID will be the lowest in published message ID list. Get and remove
+         * End messageID will be the lowest in published message ID list. It is removed only if the slot is created.
+         */
+        Long endMessageId = slotIndex.peekFirstMessageId(queueName);
+        /**
+         * A submit from before a restart or a coordinator change can leave message IDs at or below the last
+         * assigned ID. Their range is already covered by created slots and a slot starting after the last assigned
+         * ID cannot end at them, hence they are dropped.
          */
-        if (null != messageIDSet) {
-            endMessageId = messageIDSet.pollFirst();
+        while (null != endMessageId && endMessageId <= lastAssignedId) {
+            slotIndex.pollFirstMessageId(queueName);
+            log.warn("Dropped submitted message id " + endMessageId + " of queue " + queueName
+                    + " which is not beyond the last assigned message id " + lastAssignedId);
+            endMessageId = slotIndex.peekFirstMessageId(queueName);
         }
         /**
          * Check the current slot allocation not interfere into the range where expiry deletion happens.
@@ -160,6 +201,9 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
 
             if (null != endMessageId) {
 
+                //remove polled message id from the index
+                slotIndex.pollFirstMessageId(queueName);
+
                 slotToBeAssigned = new Slot();
 
                 if (0L != lastAssignedId) {
@@ -170,17 +214,10 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
 
                 slotToBeAssigned.setEndMessageId(endMessageId);
 
-                //remove polled message id from database
-                slotAgent.deleteMessageId(queueName, slotToBeAssigned.getEndMessageId());
-
                 //set storage queue name (db queue to read messages from)
                 slotToBeAssigned.setStorageQueueName(queueName);
 
-                //modify last assigned ID by queue to database
-                slotAgent.createSlot(slotToBeAssigned.getStartMessageId(), slotToBeAssigned.getEndMessageId(),
-                        slotToBeAssigned.getStorageQueueName(), nodeId);
-
-                slotAgent.setQueueToLastAssignedId(queueName, slotToBeAssigned.getEndMessageId());
+                slotIndex.setLastAssignedId(queueName, slotToBeAssigned.getEndMessageId());
 
                 if (log.isDebugEnabled()) {
                     log.debug("Giving a slot from fresh pool. Slot: " + slotToBeAssigned.getId());
@@ -202,17 +239,13 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      * @return slot or null if cannot find
      */
     private Slot getUnassignedSlot(String queueName) throws AndesException {
-        Slot slotToBeAssigned;
-        String lockKey = queueName + SlotManagerClusterMode.class;
-        synchronized (lockKey.intern()) {
-            //get oldest unassigned slot from database
-            slotToBeAssigned = slotAgent.getUnAssignedSlot(queueName);
+        //get oldest unassigned slot, reading the database only if slots of the queue were returned
+        Slot slotToBeAssigned = slotIndex.getReturnedSlot(queueName);
 
-            if (log.isDebugEnabled()) {
-                if (null != slotToBeAssigned) {
-                    log.debug("Giving a slot from unassigned slots. Slot: " + slotToBeAssigned +
-                            " to queue: " + queueName);
-                }
+        if (log.isDebugEnabled()) {
+            if (null != slotToBeAssigned) {
+                log.debug("Giving a slot from unassigned slots. Slot: " + slotToBeAssigned +
+                        " to queue: " + queueName);
             }
         }
         return slotToBeAssigned;
@@ -227,15 +260,11 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      * @return slot or null if not found
      */
     private Slot getOverlappedSlot(String nodeId, String queueName) throws AndesException {
-        Slot slotToBeAssigned;
-        String lockKey = queueName + SlotManagerClusterMode.class;
-        synchronized (lockKey.intern()) {
-            //get oldest overlapped slot from database
-            slotToBeAssigned = slotAgent.getOverlappedSlot(nodeId, queueName);
-            if (log.isDebugEnabled()) {
-                if (null != slotToBeAssigned) {
-                    log.debug(" Giving overlapped slot id=" + slotToBeAssigned.getId() + " queue name= " + queueName);
-                }
+        //get oldest overlapped slot, reading the database only if slots of the queue were overlapped
+        Slot slotToBeAssigned = slotIndex.getOverlappedSlot(queueName, nodeId);
+        if (log.isDebugEnabled()) {
+            if (null != slotToBeAssigned) {
+                log.debug(" Giving overlapped slot id=" + slotToBeAssigned.getId() + " queue name= " + queueName);
             }
         }
         return slotToBeAssigned;
@@ -249,12 +278,9 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      * @param nodeId        ID of the node to which slot is Assigned
      */
     private void updateSlotAssignmentMap(String queueName, Slot allocatedSlot, String nodeId) throws AndesException {
-        //Lock is used because this method will be called by multiple nodes at the same time
-        String lockKey = nodeId + SlotManagerClusterMode.class;
-        synchronized (lockKey.intern()) {
-            //Update assigned node, assigned queue and set state to assigned
-            slotAgent.updateSlotAssignment(nodeId, queueName, allocatedSlot);
-        }
+        //Update assigned node, assigned queue and set state to assigned. The slot is either fresh or claimed in the
+        //slot index, hence no other request assigns it concurrently.
+        slotAgent.updateSlotAssignment(nodeId, queueName, allocatedSlot);
     }
 
     /**
@@ -278,83 +304,113 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
             queuesToRecover.remove(queueName);
         }
 
-        // Read message Id set for slots from store
-        TreeSet<Long> messageIdSet;
-        messageIdSet = slotAgent.getSlotBasedMessageIds(queueName);
-
-        String lockKey = queueName + SlotManagerClusterMode.class;
-        synchronized (lockKey.intern()) {
-            //Get last assigned message id from database
-            long lastAssignedMessageId = slotAgent.getQueueToLastAssignedId(queueName);
+        /**
+         * Overlapping slots are read from the store without holding the queue lock. The read is retried if a slot was
+         * assigned beyond the submitted range or a slot was written to the store while reading.
+         */
+        boolean applied = false;
+        while (!applied) {
+            long claimVersion = slotIndex.getClaimVersion(queueName);
+            TreeSet<Slot> overlappingSlots = null;
+            if (startMessageIdInTheSlot < slotIndex.getLastAssignedId(queueName)) {
+                overlappingSlots = getOverlappedAssignedSlots(queueName, startMessageIdInTheSlot,
+                        lastMessageIdInTheSlot);
+            }
 
-            // Check if input slot's start message ID is less than last assigned message ID
-            if (startMessageIdInTheSlot < lastAssignedMessageId) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Found overlapping slots during slot submit: " +
-                            startMessageIdInTheSlot + " to : " + lastMessageIdInTheSlot +
-                            ". Comparing to lastAssignedID : " + lastAssignedMessageId);
+            Lock lock = queueLocks.lock(queueName);
+            try {
+                //Get last assigned message id from slot index
+                long lastAssignedMessageId = slotIndex.getLastAssignedId(queueName);
+                if (startMessageIdInTheSlot < lastAssignedMessageId
+                        && (null == overlappingSlots || !slotIndex.isClaimVersionCurrent(queueName, claimVersion))) {
+                    continue;
                 }
-                // Find overlapping slots
-                TreeSet<Slot> overlappingSlots = getOverlappedAssignedSlots(queueName, startMessageIdInTheSlot,
-                        lastMessageIdInTheSlot);
+                applyMessageId(queueName, nodeId, startMessageIdInTheSlot, lastMessageIdInTheSlot,
+                        lastAssignedMessageId, overlappingSlots);
+                applied = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //record local safe zone
+        slotAgent.setLocalSafeZoneOfNode(nodeId, localSafeZone);
+    }
+
+    /**
+     * Add the last message ID of a submitted slot to the slot index. Must be called holding the queue lock.
+     *
+     * @param queueName               name of the queue
+     * @param nodeId                  id of the node which submitted the slot
+     * @param startMessageIdInTheSlot start message ID of the submitted slot
+     * @param lastMessageIdInTheSlot  last message ID of the submitted slot
+     * @param lastAssignedMessageId   last assigned message ID of the queue
+     * @param overlappingSlots        slots overlapping the submitted slot, read if it starts before the last
+     *                                assigned message ID
+     */
+    private void applyMessageId(String queueName, String nodeId, long startMessageIdInTheSlot,
+                                long lastMessageIdInTheSlot, long lastAssignedMessageId,
+                                TreeSet<Slot> overlappingSlots) throws AndesException {
+        // Check if input slot's start message ID is less than last assigned message ID
+        if (startMessageIdInTheSlot < lastAssignedMessageId) {
+            if (log.isDebugEnabled()) {
+                log.debug("Found overlapping slots during slot submit: " +
+                        startMessageIdInTheSlot + " to : " + lastMessageIdInTheSlot +
+                        ". Comparing to lastAssignedID : " + lastAssignedMessageId);
+            }
 
-                if (!(overlappingSlots.isEmpty())) {
+            if (!(overlappingSlots.isEmpty())) {
 
+                if (log.isDebugEnabled()) {
+                    log.debug("Found " + overlappingSlots.size() + " overlapping slots.");
+                }
+                // Following means that we have a piece of the slot exceeding the earliest
+                // assigned slot. breaking that piece and adding it as a new,unassigned slot.
+                if (startMessageIdInTheSlot < overlappingSlots.first().getStartMessageId()) {
+                    Slot leftExtraSlot = new Slot(startMessageIdInTheSlot, overlappingSlots.first().
+                            getStartMessageId() - 1, queueName);
                     if (log.isDebugEnabled()) {
-                        log.debug("Found " + overlappingSlots.size() + " overlapping slots.");
-                    }
-                    // Following means that we have a piece of the slot exceeding the earliest
-                    // assigned slot. breaking that piece and adding it as a new,unassigned slot.
-                    if (startMessageIdInTheSlot < overlappingSlots.first().getStartMessageId()) {
-                        Slot leftExtraSlot = new Slot(startMessageIdInTheSlot, overlappingSlots.first().
-                                getStartMessageId() - 1, queueName);
-                        if (log.isDebugEnabled()) {
-                            log.debug("Left Extra Slot in overlapping slots : " + leftExtraSlot);
-                        }
+                        log.debug("Left Extra Slot in overlapping slots : " + leftExtraSlot);
                     }
-                    // This means that we have a piece of the slot exceeding the latest assigned slot.
-                    // breaking that piece and adding it as a new,unassigned slot.
-                    if (lastMessageIdInTheSlot > overlappingSlots.last().getEndMessageId()) {
-                        Slot rightExtraSlot = new Slot(overlappingSlots.last().getEndMessageId() + 1,
-                                lastMessageIdInTheSlot, queueName);
-
-                        if (log.isDebugEnabled()) {
-                            log.debug("RightExtra in overlapping slot : " + rightExtraSlot);
-                        }
-                        //Update last message ID - expand ongoing slot to cater this leftover part.
-                        slotAgent.addMessageId(queueName, lastMessageIdInTheSlot);
+                }
+                // This means that we have a piece of the slot exceeding the latest assigned slot.
+                // breaking that piece and adding it as a new,unassigned slot.
+                if (lastMessageIdInTheSlot > overlappingSlots.last().getEndMessageId()) {
+                    Slot rightExtraSlot = new Slot(overlappingSlots.last().getEndMessageId() + 1,
+                            lastMessageIdInTheSlot, queueName);
 
-                        if (log.isDebugEnabled()) {
-                            log.debug(lastMessageIdInTheSlot + " added to store " +
-                                    "(RightExtraSlot). Current values in " +
-                                    "store " + messageIdSet);
-                        }
-                    }
-                } else {
-                    /*
-                     * The fact that the slot ended up in this condition means that, all previous slots within this
-					 * range have been already processed and deleted. This is a very rare scenario.
-					 */
                     if (log.isDebugEnabled()) {
-                        log.debug("A submit slot request has come from the past after deletion of any " +
-                                "possible overlapping slots. nodeId : " + nodeId + " StartMessageID : " +
-                                startMessageIdInTheSlot + " EndMessageID : " + lastMessageIdInTheSlot);
+                        log.debug("RightExtra in overlapping slot : " + rightExtraSlot);
                     }
+                    //Update last message ID - expand ongoing slot to cater this leftover part.
+                    slotIndex.addMessageId(queueName, lastMessageIdInTheSlot);
 
-                    slotAgent.addMessageId(queueName, lastMessageIdInTheSlot);
+                    if (log.isDebugEnabled()) {
+                        log.debug(lastMessageIdInTheSlot + " added to store (RightExtraSlot).");
+                    }
                 }
             } else {
-                //Update the store only if the last assigned message ID is less than the new start message ID
-                slotAgent.addMessageId(queueName, lastMessageIdInTheSlot);
-
+                /*
+                 * The fact that the slot ended up in this condition means that, all previous slots within this
+                 * range have been already processed and deleted. This is a very rare scenario.
+                 */
                 if (log.isDebugEnabled()) {
-                    log.debug("No overlapping slots found during slot submit " + startMessageIdInTheSlot + " to : " +
-                            lastMessageIdInTheSlot + ". Added msgID " +
-                            lastMessageIdInTheSlot + " to store");
+                    log.debug("A submit slot request has come from the past after deletion of any " +
+                            "possible overlapping slots. nodeId : " + nodeId + " StartMessageID : " +
+                            startMessageIdInTheSlot + " EndMessageID : " + lastMessageIdInTheSlot);
                 }
+
+                slotIndex.addMessageId(queueName, lastMessageIdInTheSlot);
+            }
+        } else {
+            //Update the store only if the last assigned message ID is less than the new start message ID
+            slotIndex.addMessageId(queueName, lastMessageIdInTheSlot);
+
+            if (log.isDebugEnabled()) {
+                log.debug("No overlapping slots found during slot submit " + startMessageIdInTheSlot + " to : " +
+                        lastMessageIdInTheSlot + ". Added msgID " +
+                        lastMessageIdInTheSlot + " to store");
             }
-            //record local safe zone
-            slotAgent.setLocalSafeZoneOfNode(nodeId, localSafeZone);
         }
     }
 
@@ -375,6 +431,7 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
                     slotToBeReAssigned.getStartMessageId(),
                     slotToBeReAssigned.getEndMessageId()) != 0) {
                 slotAgent.reassignSlot(slotToBeReAssigned);
+                slotIndex.slotsReturned(slotToBeReAssigned.getStorageQueueName());
                 if (log.isDebugEnabled()) {
                     log.debug("Returned assigned slot " + slotToBeReAssigned
                               + "from node " + nodeId + " as member left");
@@ -395,6 +452,7 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
                     overlappedSlot.getStartMessageId(),
                     overlappedSlot.getEndMessageId()) != 0) {
                 slotAgent.reassignSlot(overlappedSlot);
+                slotIndex.slotsReturned(overlappedSlot.getStorageQueueName());
                 if (log.isDebugEnabled()) {
                     log.debug("Returned overlapped slot " + overlappedSlot
                               + "from node " + nodeId + " as member left");
@@ -423,13 +481,15 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
             log.debug("Trying to delete slot. safeZone= " + getSlotDeleteSafeZone() + " startMsgID: " + startMsgId);
         }
         if (slotDeleteSafeZone > endMsgId) {
-            String lockKey = nodeId + SlotManagerClusterMode.class;
-            synchronized (lockKey.intern()) {
+            Lock lock = nodeLocks.lock(nodeId);
+            try {
                 slotDeleted = slotAgent.deleteNonOverlappingSlot(nodeId, storageQueueName, startMsgId, endMsgId);
                 if (log.isDebugEnabled()) {
                     log.debug(" Deleted slot id = " + emptySlot.getId() + " queue name = " + storageQueueName
                             + " deleteSuccess: " + slotDeleted);
                 }
+            } finally {
+                lock.unlock();
             }
         } else {
             if (log.isDebugEnabled()) {
@@ -447,13 +507,16 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      * @param queueName name of the queue whose slots to be reassigned
      */
     public void reAssignSlotWhenNoSubscribers(String nodeId, String queueName) throws AndesException {
-        String lockKeyForNodeId = nodeId + SlotManagerClusterMode.class;
-        synchronized (lockKeyForNodeId.intern()) {
+        Lock lock = nodeLocks.lock(nodeId);
+        try {
             slotAgent.deleteSlotAssignmentByQueueName(nodeId, queueName);
+            slotIndex.slotsReturned(queueName);
             if (log.isDebugEnabled()) {
                 log.debug("Cleared assigned slots of queue " + queueName + " Assigned to node " +
                         nodeId);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -503,8 +566,8 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
         }
         //Clear related slots in slot table
         slotAgent.deleteSlotsByQueueName(queueName);
-        //Clear message ids from message id table
-        slotAgent.deleteMessageIdsByQueueName(queueName);
+        //Clear message ids from slot index and message id table
+        slotIndex.removeMessageIds(queueName);
     }
 
     /**
@@ -512,7 +575,7 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      */
     @Override
     public Set<String> getAllQueues() throws AndesException {
-        return slotAgent.getAllQueuesInSubmittedSlots();
+        return slotIndex.getAllQueuesInSubmittedSlots();
     }
 
     /**
@@ -520,6 +583,17 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      */
     public void shutDownSlotManager() {
         slotDeleteSafeZoneCalc.setRunning(false);
+        slotIndex.shutdown();
+    }
+
+    /**
+     * Reload the in-memory slot index from the slot store. Called when the local node is elected as the
+     * coordinator, since the store may have been updated by the previous coordinator.
+     *
+     * @throws AndesException if slot state could not be read from the store
+     */
+    public void rebuildSlotIndex() throws AndesException {
+        slotIndex.rebuild();
     }
 
     /**
@@ -536,39 +610,38 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
         TreeSet<Slot> overlappedSlots = new TreeSet<>();
         TreeSet<Slot> assignedOverlappingSlots = new TreeSet<>();
 
-        String lockKey = queueName + SlotManagerClusterMode.class;
-
-        synchronized (lockKey.intern()) {
-            // Get all slots created for given queue name
-            TreeSet<Slot> slotListForQueue = slotAgent.getAllSlotsByQueueName(queueName);
+        // Get all slots created for given queue name
+        TreeSet<Slot> slotListForQueue = slotAgent.getAllSlotsByQueueName(queueName);
 
-            // Check each slot for overlapped slots
-            for (Slot slot : slotListForQueue) {
-                if (endMsgID < slot.getStartMessageId()) {
-                    continue; // skip this one, its below our range
-                }
-                if (startMsgID > slot.getEndMessageId()) {
-                    continue; // skip this one, its above our range
-                }
+        // Check each slot for overlapped slots
+        for (Slot slot : slotListForQueue) {
+            if (endMsgID < slot.getStartMessageId()) {
+                continue; // skip this one, its below our range
+            }
+            if (startMsgID > slot.getEndMessageId()) {
+                continue; // skip this one, its above our range
+            }
 
-                if (SlotState.ASSIGNED == slot.getCurrentState()) {
-                    assignedOverlappingSlots.add(slot);
-                }
+            if (SlotState.ASSIGNED == slot.getCurrentState()) {
+                assignedOverlappingSlots.add(slot);
+            }
 
-                // Set slot as overlapped if not skipped
-                slot.setAnOverlappingSlot(true);
+            // Set slot as overlapped if not skipped
+            slot.setAnOverlappingSlot(true);
 
-                if (log.isDebugEnabled()) {
-                    log.debug("Marked already assigned slot as an overlapping slot. Slot= " + slot.getId());
-                }
+            if (log.isDebugEnabled()) {
+                log.debug("Marked already assigned slot as an overlapping slot. Slot= " + slot.getId());
+            }
 
-                overlappedSlots.add(slot);
+            overlappedSlots.add(slot);
 
-                if (log.isDebugEnabled()) {
-                    log.debug("Found an overlapping slot : " + slot);
-                }
+            if (log.isDebugEnabled()) {
+                log.debug("Found an overlapping slot : " + slot);
             }
-            slotAgent.updateOverlappedSlots(queueName, assignedOverlappingSlots);
+        }
+        slotAgent.updateOverlappedSlots(queueName, assignedOverlappingSlots);
+        if (!assignedOverlappingSlots.isEmpty()) {
+            slotIndex.slotsOverlapped(queueName);
         }
         return overlappedSlots;
     }
@@ -648,7 +721,7 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      * @return last assign message id
      */
     public Long getLastAssignedSlotMessageIdInClusterMode(String queueName) throws AndesException {
-        return slotAgent.getQueueToLastAssignedId(queueName);
+        return slotIndex.getLastAssignedId(queueName);
     }
 
     /**
@@ -657,6 +730,7 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
      * @throws AndesException
      */
     public void clearSlotStorage() throws AndesException {
+        slotIndex.clear();
         slotAgent.clearSlotStorage();
     }
 
@@ -666,16 +740,20 @@ public class SlotManagerClusterMode extends AbstractSlotManager {
     @Override
     public long getSafeZoneLowerBoundId(String queueName) throws AndesException {
         long lowerBoundId = -1;
-        String lockKey = queueName + SlotManagerClusterMode.class;
-        synchronized (lockKey.intern()) {
-            //get the upper bound messageID for each unassigned slots as a set for the specific queue
-            TreeSet<Long> messageIDSet = slotAgent.getSlotBasedMessageIds(queueName);
+        // The shared queue lock keeps slot changes out while reading, and the deletion task state is replaced as a
+        // whole, hence concurrent lookups of the same queue do not need to exclude each other
+        Lock lock = queueLocks.lockShared(queueName);
+        try {
+            //get the upper bound messageID of the unassigned slot at safety slot count position
+            Long safetySlotMessageId = slotIndex.getMessageIdAt(queueName, safetySlotCount);
 
-            if (messageIDSet.size() >= safetySlotCount) {
-                lowerBoundId = messageIDSet.toArray(new Long[messageIDSet.size()])[safetySlotCount - 1] + 1;
+            if (null != safetySlotMessageId) {
+                lowerBoundId = safetySlotMessageId + 1;
                 // Inform the slot manager regarding the current expiry deletion range and queue
                 setDeletionTaskState(queueName, lowerBoundId);
             }
+        } finally {
+            lock.unlock();
         }
         return lowerBoundId;
     }
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 
 /**
  * This class is  responsible of slot allocating, slot creating, slot re-assigning and slot
@@ -61,6 +62,11 @@ public class SlotManagerStandalone extends AbstractSlotManager {
 
     private static Log log = LogFactory.getLog(SlotManagerStandalone.class);
 
+    /**
+     * Locks serializing slot operations of a queue
+     */
+    private final SlotLockRegistry queueLocks = new SlotLockRegistry("queue", SlotLockRegistry.DEFAULT_STRIPE_COUNT);
+
     private SlotManagerStandalone() {
 
         /**
@@ -80,8 +86,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
      */
     public Slot getSlot(String queueName) {
         Slot slotToBeAssigned;
-        String lockKey = queueName + SlotManagerStandalone.class;
-        synchronized (lockKey.intern()) {
+        Lock lock = queueLocks.lock(queueName);
+        try {
             //First look at slots which are returned when last subscriber leaves
             slotToBeAssigned = getUnassignedSlot(queueName);
             if (null == slotToBeAssigned) {
@@ -98,6 +104,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
                 updateSlotAssignmentMap(queueName, slotToBeAssigned);
             }
             return slotToBeAssigned;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -194,8 +202,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
         if (messageIdSet == null) {
             messageIdSet = new TreeSet<>();
         }
-        String lockKey = queueName + SlotManagerStandalone.class;
-        synchronized (lockKey.intern()) {
+        Lock lock = queueLocks.lock(queueName);
+        try {
             /**
              * Update the slotIDMap
              */
@@ -207,6 +215,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
                         "map " + messageIdSet);
             }
 
+        } finally {
+            lock.unlock();
         }
 
     }
@@ -220,8 +230,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
      * @return Whether deleted or not
      */
     public boolean deleteSlot(String queueName, Slot slotToBeDeleted) {
-        String lockKey = queueName + SlotManagerStandalone.class;
-        synchronized (lockKey.intern()) {
+        Lock lock = queueLocks.lock(queueName);
+        try {
             TreeSet<Slot> assignedSlotSet = slotAssignmentMap.get(queueName);
             if (null != assignedSlotSet) {
                 Iterator assignedSlotIterator = assignedSlotSet.iterator();
@@ -234,6 +244,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
                 }
 
             }
+        } finally {
+            lock.unlock();
         }
         return true;
     }
@@ -245,9 +257,9 @@ public class SlotManagerStandalone extends AbstractSlotManager {
      */
     public void reAssignSlotWhenNoSubscribers(String queueName) {
         TreeSet<Slot> slotsToBeReAssigned = slotAssignmentMap.remove(queueName);
-        String lockKey = queueName + SlotManagerStandalone.class;
         if (null != slotsToBeReAssigned) {
-            synchronized (lockKey.intern()) {
+            Lock lock = queueLocks.lock(queueName);
+            try {
                 TreeSet<Slot> unassignedSlots = unAssignedSlotMap.get(queueName);
                 if (null == unassignedSlots) {
                     unassignedSlots = new TreeSet<>();
@@ -256,6 +268,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
                     unassignedSlots.add(slotToBeReAssigned);
                 }
                 unAssignedSlotMap.put(queueName, unassignedSlots);
+            } finally {
+                lock.unlock();
             }
         }
     }
@@ -308,8 +322,10 @@ public class SlotManagerStandalone extends AbstractSlotManager {
     @Override
     public long getSafeZoneLowerBoundId(String queueName) throws AndesException {
         long lowerBoundId = -1;
-        String lockKey = queueName + SlotManagerStandalone.class;
-        synchronized (lockKey.intern()) {
+        // The shared queue lock keeps slot changes out while reading, and the deletion task state is replaced as a
+        // whole, hence concurrent lookups of the same queue do not need to exclude each other
+        Lock lock = queueLocks.lockShared(queueName);
+        try {
             TreeSet<Long> messageIDSet = slotIDMap.get(queueName);
             //set the lower bound Id for safety delete region as the safety slot count interval upper bound id + 1
             if (messageIDSet.size() >= safetySlotCount) {
@@ -317,6 +333,8 @@ public class SlotManagerStandalone extends AbstractSlotManager {
                 // Inform the slot manager regarding the current expiry deletion range and queue.
                 setDeletionTaskState(queueName, lowerBoundId);
             }
+        } finally {
+            lock.unlock();
         }
         return lowerBoundId;
     }
@@ -36,7 +36,9 @@ import org.wso2.andes.store.FailureObservingStoreManager;
 import org.wso2.andes.store.HealthAwareStore;
 import org.wso2.andes.store.StoreHealthListener;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -168,15 +170,19 @@ public class SlotMessageCounter implements StoreHealthListener {
             currentSlot.setStartMessageId(metadata.getMessageID());
             currentSlot.setEndMessageId(metadata.getMessageID());
             currentSlot.setMessageCount(1L);
-            queueToSlotMap.put(storageQueueName, currentSlot);
-            slotTimeOutMap.put(storageQueueName, System.currentTimeMillis());
-        } else {
-            long currentMsgCount = currentSlot.getMessageCount();
-            long newMessageCount = currentMsgCount + 1;
-            currentSlot.setMessageCount(newMessageCount);
-            currentSlot.setEndMessageId(metadata.getMessageID());
-            queueToSlotMap.put(storageQueueName, currentSlot);
+            // A slot that failed to submit may be put back concurrently. See requeueSlot
+            Slot requeuedSlot = queueToSlotMap.putIfAbsent(storageQueueName, currentSlot);
+            if (null == requeuedSlot) {
+                slotTimeOutMap.put(storageQueueName, System.currentTimeMillis());
+                return currentSlot;
+            }
+            currentSlot = requeuedSlot;
         }
+        long currentMsgCount = currentSlot.getMessageCount();
+        long newMessageCount = currentMsgCount + 1;
+        currentSlot.setMessageCount(newMessageCount);
+        currentSlot.setEndMessageId(metadata.getMessageID());
+        queueToSlotMap.put(storageQueueName, currentSlot);
         return currentSlot;
     }
 
@@ -193,20 +199,97 @@ public class SlotMessageCounter implements StoreHealthListener {
             // Check if the number of messages in slot is greater than or equal to slot window size or slot timeout
             // has reached. This is to avoid timer task or disruptor creating smaller/overlapping slots.
             if (checkMessageLimitReached(slot) || checkTimeOutReached(lastSlotUpdateTime)) {
+                long localSafeZone = inferLocalSafeZone(storageQueueName);
+                slotTimeOutMap.remove(storageQueueName);
+                queueToSlotMap.remove(storageQueueName);
                 try {
-                    long localSafeZone = inferLocalSafeZone(storageQueueName);
-                    slotTimeOutMap.remove(storageQueueName);
-                    queueToSlotMap.remove(storageQueueName);
                     slotCoordinator.updateMessageId(storageQueueName, slot.getStartMessageId(),
                             slot.getEndMessageId(), localSafeZone);
                 } catch (ConnectionException e) {
-                    // we only log here since this is called again from timer task if previous attempt failed
+                    // The slot is put back so that the timer task submits it again
                     log.error("Error occurred while connecting to the thrift coordinator.", e);
+                    requeueSlot(storageQueueName, slot, lastSlotUpdateTime);
                 }
             }
         }
     }
 
+    /**
+     * Submit slots of several queues to SlotManager in a single request. Only slots that reached the slot window
+     * size or timed out are submitted.
+     *
+     * @param storageQueueNames names of the queues whose slots should be submitted
+     */
+    public synchronized void submitSlots(Collection<String> storageQueueNames) {
+        List<Slot> slotsToSubmit = new ArrayList<>(storageQueueNames.size());
+        for (String storageQueueName : storageQueueNames) {
+            Slot slot = queueToSlotMap.get(storageQueueName);
+            if (null != slot) {
+                Long lastSlotUpdateTime = slotTimeOutMap.get(storageQueueName);
+                if (checkMessageLimitReached(slot) || checkTimeOutReached(lastSlotUpdateTime)) {
+                    slot.setStorageQueueName(storageQueueName);
+                    slotsToSubmit.add(slot);
+                }
+            }
+        }
+
+        if (slotsToSubmit.isEmpty()) {
+            return;
+        }
+
+        // Safe zone must not pass the end of any submitted slot or the start of any slot still being counted
+        long localSafeZone = Long.MAX_VALUE;
+        Map<String, Long> lastSlotUpdateTimes = new HashMap<>(slotsToSubmit.size());
+        for (Slot slot : slotsToSubmit) {
+            localSafeZone = Math.min(slot.getEndMessageId(), localSafeZone);
+            lastSlotUpdateTimes.put(slot.getStorageQueueName(), slotTimeOutMap.remove(slot.getStorageQueueName()));
+            queueToSlotMap.remove(slot.getStorageQueueName());
+        }
+        for (Slot pendingSlot : queueToSlotMap.values()) {
+            localSafeZone = Math.min(pendingSlot.getStartMessageId(), localSafeZone);
+        }
+
+        try {
+            if (1 == slotsToSubmit.size()) {
+                Slot slot = slotsToSubmit.get(0);
+                slotCoordinator.updateMessageId(slot.getStorageQueueName(), slot.getStartMessageId(),
+                        slot.getEndMessageId(), localSafeZone);
+            } else {
+                slotCoordinator.updateMessageIds(slotsToSubmit, localSafeZone);
+            }
+        } catch (ConnectionException e) {
+            // Slots are put back so that the timer task submits them again
+            log.error("Error occurred while connecting to the thrift coordinator.", e);
+            for (Slot slot : slotsToSubmit) {
+                requeueSlot(slot.getStorageQueueName(), slot, lastSlotUpdateTimes.get(slot.getStorageQueueName()));
+            }
+        }
+    }
+
+    /**
+     * Put back a slot which could not be submitted to the coordinator. If messages of the queue were counted into
+     * a new slot meanwhile, the failed slot is merged into it since message IDs of a queue only grow.
+     *
+     * @param storageQueueName   name of the queue which the slot belongs to
+     * @param failedSlot         slot which could not be submitted
+     * @param lastSlotUpdateTime time the failed slot was started at, null if unknown
+     */
+    private void requeueSlot(String storageQueueName, Slot failedSlot, Long lastSlotUpdateTime) {
+        Slot currentSlot = queueToSlotMap.putIfAbsent(storageQueueName, failedSlot);
+        if (null != currentSlot) {
+            currentSlot.setStartMessageId(failedSlot.getStartMessageId());
+            currentSlot.setMessageCount(currentSlot.getMessageCount() + failedSlot.getMessageCount());
+        }
+
+        if (null == lastSlotUpdateTime) {
+            lastSlotUpdateTime = System.currentTimeMillis();
+        }
+        Long currentSlotUpdateTime = slotTimeOutMap.putIfAbsent(storageQueueName, lastSlotUpdateTime);
+        if (null != currentSlotUpdateTime && lastSlotUpdateTime < currentSlotUpdateTime) {
+            slotTimeOutMap.put(storageQueueName, lastSlotUpdateTime);
+        }
+    }
+
     /**
      * Figure out if the currentStorageQueue's endMessageID is larger than startMessageID's of other queues. If yes,
      * set the minimum startMessageID from those queues as the local safe Zone.
@@ -288,9 +371,13 @@ public class SlotMessageCounter implements StoreHealthListener {
                 log.info("Starting publisher slot recovery event with recovery message id " + recoveryMessageId);
                 AndesContextStore contextStore = AndesContext.getInstance().getAndesContextStore();
                 List<StorageQueue> queueList = contextStore.getAllQueuesStored();
+                List<Slot> recoverySlots = new ArrayList<>(queueList.size());
                 for (StorageQueue queue : queueList) {
-                    slotCoordinator.updateMessageId(queue.getName(), recoveryMessageId, recoveryMessageId,
-                            currentSlotDeleteSafeZone);
+                    Slot recoverySlot = new Slot();
+                    recoverySlot.setStartMessageId(recoveryMessageId);
+                    recoverySlot.setEndMessageId(recoveryMessageId);
+                    recoverySlot.setStorageQueueName(queue.getName());
+                    recoverySlots.add(recoverySlot);
                     // NOTE: Two queues can't have the same message id at the MB_SLOT_MESSAGE_ID table hence incrementing.
 
                     // Get fresh slot logic deletes the current 'last-queue-to-message-id' mapping with only the
@@ -299,6 +386,10 @@ public class SlotMessageCounter implements StoreHealthListener {
                     log.info("Moving last published message id of queue " + queue.getName() + " to "
                              + recoveryMessageId);
                 }
+                // Recovery slots of all queues are submitted to the coordinator in one request
+                if (!recoverySlots.isEmpty()) {
+                    slotCoordinator.updateMessageIds(recoverySlots, currentSlotDeleteSafeZone);
+                }
                 log.info("Publisher slot recovery event completed for " + queueList.size() +
                          " queue(s). Recovery message id " + recoveryMessageId);
 
@@ -346,20 +437,20 @@ public class SlotMessageCounter implements StoreHealthListener {
          * @param slotTimeoutEntries Set of slot last update time entries
          */
         private void updateCoordinatorWithTimedOutSlots(Set<Map.Entry<String, Long>> slotTimeoutEntries) {
+            List<String> timedOutQueues = new ArrayList<>();
             for (Map.Entry<String, Long> entry : slotTimeoutEntries) {
 
                 Long lastSlotUpdateTime = entry.getValue();
                 String storageQueueName = entry.getKey();
 
                 if (checkTimeOutReached(lastSlotUpdateTime)) {
-                    try {
-                        submitSlot(storageQueueName);
-                    } catch (AndesException exception) {
-                        // We do not do anything here since this thread will be run periodically
-                        log.error("Error occurred while connecting to the thrift coordinator ", exception);
-                    }
+                    timedOutQueues.add(storageQueueName);
                 }
             }
+            // Submit all timed out slots in one request to the coordinator
+            if (!timedOutQueues.isEmpty()) {
+                submitSlots(timedOutQueues);
+            }
         }
 
         /**
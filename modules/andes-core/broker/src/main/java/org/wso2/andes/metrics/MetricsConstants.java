@@ -150,6 +150,16 @@ public class MetricsConstants {
      */
     public static final String DISRUPTOR_MESSAGE_ACK = PREFIX + "inbound.disruptor.ack.count";
 
+    /**
+     * At a given time the number of acknowledgements in the inbound acknowledgement ring
+     */
+    public static final String DISRUPTOR_INBOUND_ACK_RING = PREFIX + "inbound.disruptor.ack.event.count";
+
+    /**
+     * At a given time the number of control events in the inbound control event ring
+     */
+    public static final String DISRUPTOR_INBOUND_CONTROL_RING = PREFIX + "inbound.disruptor.control.event.count";
+
     /**
      * At a given time the number of messages in the outbound ring
      */
@@ -215,6 +225,46 @@ public class MetricsConstants {
      */
     public static final String REJECT_MESSAGES = PREFIX + "reject.count";
 
+    /**
+     * Number of slot lock acquisitions per second which had to wait for another thread on the slot coordinator
+     */
+    public static final String SLOT_LOCK_CONTENTION = PREFIX + "slot.lock.contention";
+
+    /**
+     * Time spent waiting for contended slot locks on the slot coordinator
+     */
+    public static final String SLOT_LOCK_WAIT = PREFIX + "slot.lock.wait";
+
+    /**
+     * Current batch size chosen by the adaptive group commit of an inbound message writer
+     */
+    public static final String GROUP_COMMIT_BATCH_SIZE = PREFIX + "inbound.groupCommit.batchSize";
+
+    /**
+     * Time taken to commit a batch of inbound messages to the message store
+     */
+    public static final String GROUP_COMMIT_LATENCY = PREFIX + "inbound.groupCommit.latency";
+
+    /**
+     * Number of messages written to the message store per commit
+     */
+    public static final String GROUP_COMMIT_MESSAGES = PREFIX + "inbound.groupCommit.messages";
+
+    /**
+     * Number of times per second a message writer held back a commit to coalesce it with upcoming messages
+     */
+    public static final String GROUP_COMMIT_HOLD = PREFIX + "inbound.groupCommit.hold";
+
+    /**
+     * Number of expired messages deleted from the message store per second
+     */
+    public static final String EXPIRED_MESSAGES_DELETED = PREFIX + "expiry.messages.deleted";
+
+    /**
+     * Number of message expiry deadlines tracked by the expiry timer wheel
+     */
+    public static final String EXPIRY_TIMER_WHEEL_SIZE = PREFIX + "expiry.timerWheel.size";
+
     public static final String METRICS_NAME_SEPARATOR = "|";
 
 }
@@ -460,4 +460,22 @@ public class MQTTopicManager {
 
     }
 
+    /**
+     * Triggers when the write buffer of a client connection crosses its water marks, this will suspend or resume
+     * message delivery to all subscriptions of the client
+     *
+     * @param clientID the channel id of the client whose connection changed its writability
+     * @param writable whether the connection can accept more messages
+     */
+    public void processWritabilityChange(String clientID, boolean writable) {
+        MQTTopics mqtTopics = topicSubscriptions.get(clientID);
+
+        //The client might only be publishing
+        if (null != mqtTopics) {
+            for (MQTTSubscription subscription : mqtTopics.getAllSubscriptionsForChannel()) {
+                connector.notifySubscriptionFlow(subscription.getSubscriptionChannel(), writable);
+            }
+        }
+    }
+
 }
@@ -65,6 +65,11 @@ public class InMemoryConnector implements MQTTConnector {
 
     }
 
+    @Override
+    public void notifySubscriptionFlow(UUID channelID, boolean active) {
+
+    }
+
     /**
      * {@inheritDoc}
      */
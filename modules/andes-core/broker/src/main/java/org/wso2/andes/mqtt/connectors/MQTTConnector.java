@@ -49,6 +49,15 @@ public interface MQTTConnector {
      */
     public void messageNack(long messageId, UUID channelID) throws AndesException;
 
+    /**
+     * Suspends or resumes message delivery to a subscription, used to apply back pressure when the client
+     * connection cannot keep up with the messages written to it
+     *
+     * @param channelID the ID of the subscription channel
+     * @param active    true to resume message delivery, false to suspend it
+     */
+    public void notifySubscriptionFlow(UUID channelID, boolean active);
+
     /**
      * Adds message to the connector to handle an incoming message
      *
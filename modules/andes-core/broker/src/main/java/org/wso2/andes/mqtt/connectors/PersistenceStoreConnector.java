@@ -17,10 +17,12 @@
  */
 package org.wso2.andes.mqtt.connectors;
 
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dna.mqtt.wso2.QOSLevel;
 import org.wso2.andes.kernel.*;
+import org.wso2.andes.kernel.disruptor.DisruptorEventCallback;
 import org.wso2.andes.kernel.disruptor.inbound.InboundBindingEvent;
 import org.wso2.andes.kernel.disruptor.inbound.InboundQueueEvent;
 import org.wso2.andes.kernel.disruptor.inbound.InboundSubscriptionEvent;
@@ -92,6 +94,26 @@ public class PersistenceStoreConnector implements MQTTConnector {
         Andes.getInstance().messageRejected(messageId, channelID, true, false);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void notifySubscriptionFlow(final UUID channelID, final boolean active) {
+        Andes.getInstance().notifySubscriptionFlow(channelID, active, new DisruptorEventCallback() {
+            @Override
+            public void execute() {
+                if (log.isDebugEnabled()) {
+                    log.debug("Message delivery " + (active ? "resumed" : "suspended") + " for subscription "
+                            + "channel " + channelID);
+                }
+            }
+
+            @Override
+            public void onException(Exception exception) {
+                log.error("Error while changing the message flow of subscription channel " + channelID, exception);
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -227,10 +249,11 @@ public class PersistenceStoreConnector implements MQTTConnector {
         // retain message is received prior to any other topic message to the subscriber.
         try {
             List<DeliverableAndesMetadata> metadataList = Andes.getInstance().getRetainedMetadataByTopic(topic);
+            LongObjectHashMap<AndesContent> contentMap = Andes.getInstance().getRetainedMessageContent(metadataList);
 
             // Looped through metadata list as there can be multiple messages (due to wildcards) per single subscriber.
             for (DeliverableAndesMetadata metadata : metadataList) {
-                AndesContent content = Andes.getInstance().getRetainedMessageContent(metadata);
+                AndesContent content = contentMap.get(metadata.getMessageID());
                 // get the message byte buffer from content
                 ByteBuffer message = MQTTUtils.getContentFromMetaInformation(content);
 
@@ -17,6 +17,7 @@
  */
 package org.wso2.andes.server;
 
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
 import org.apache.log4j.Logger;
 import org.wso2.andes.AMQException;
 import org.wso2.andes.AMQInternalException;
@@ -1068,6 +1069,13 @@ public class AMQChannel implements SessionConfig, AMQSessionModel
             Collection<QueueEntry> ackedMessages = getAckedMessages(deliveryTag, multiple);
             if (_transaction instanceof QpidDistributedTransaction) {
                 _transaction.dequeue(this.getId(), ackedMessages, new MessageAcknowledgeAction(ackedMessages));
+            } else if (ackedMessages.size() > 1) {
+                // Messages acknowledged together are informed to Andes Kernel as a single event
+                LongArrayList messageIds = new LongArrayList(ackedMessages.size());
+                for (QueueEntry entry : ackedMessages) {
+                    messageIds.add(entry.getMessage().getMessageNumber());
+                }
+                QpidAndesBridge.ackReceived(this.getId(), messageIds);
             } else {
                 for (QueueEntry entry : ackedMessages) {
                     // When the message is acknowledged it is informed to Andes Kernel
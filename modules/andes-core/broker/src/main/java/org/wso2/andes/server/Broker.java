@@ -173,6 +173,8 @@ public class Broker
                 String hostName = bindAddressForHostname.getCanonicalHostName();
 
                 if (!serverConfig.getSSLOnly()) {
+                    boolean nioTransportEnabled = AndesConfigurationManager
+                            .readValue(AndesConfiguration.TRANSPORTS_AMQP_NIO_TRANSPORT_ENABLED);
                     for (int port : ports) {
                         Set<AmqpProtocolVersion> supported = EnumSet.allOf(AmqpProtocolVersion.class);
 
@@ -194,7 +196,12 @@ public class Broker
                                 new ServerNetworkTransportConfiguration(serverConfig, port,
                                                                         bindAddressFromBrokerOptions, Transport.TCP);
 
-                        IncomingNetworkTransport transport = Transport.getIncomingTransportInstance();
+                        IncomingNetworkTransport transport;
+                        if (nioTransportEnabled) {
+                            transport = Transport.getIncomingTransportInstance(Transport.NIO_TRANSPORT_CLASSNAME);
+                        } else {
+                            transport = Transport.getIncomingTransportInstance();
+                        }
                         MultiVersionProtocolEngineFactory protocolEngineFactory =
                                 new MultiVersionProtocolEngineFactory(hostName, supported);
 
@@ -22,6 +22,7 @@ import org.wso2.andes.kernel.subscription.AndesSubscriptionManager;
 import org.wso2.andes.server.cluster.ClusterManager;
 import org.wso2.andes.server.store.QpidDeprecatedMessageStore;
 import org.wso2.andes.server.virtualhost.VirtualHostConfigSynchronizer;
+import org.wso2.andes.store.rdbms.ShardedMessageStoreImpl;
 
 /**
  * Class <code>ClusterResourceHolder</code> holds the Cluster implementation specific
@@ -59,6 +60,11 @@ public class ClusterResourceHolder {
      */
     private ClusterManager clusterManager;
 
+    /**
+     * holds the sharded message store, null if the message store is not sharded
+     */
+    private ShardedMessageStoreImpl shardedMessageStore;
+
     private ClusterResourceHolder() {
 
     }
@@ -117,4 +123,12 @@ public class ClusterResourceHolder {
     public void setAndesRecoveryTask(AndesRecoveryTask andesRecoveryTask) {
         this.andesRecoveryTask = andesRecoveryTask;
     }
+
+    public ShardedMessageStoreImpl getShardedMessageStore() {
+        return shardedMessageStore;
+    }
+
+    public void setShardedMessageStore(ShardedMessageStoreImpl shardedMessageStore) {
+        this.shardedMessageStore = shardedMessageStore;
+    }
 }
@@ -274,6 +274,12 @@ public class ClusterManager implements StoreHealthListener{
      * Perform coordinator initialization tasks, when this node is elected as the new coordinator
      */
     public void localNodeElectedAsCoordinator() {
+        try {
+            // Slot state may have been changed by the previous coordinator
+            SlotManagerClusterMode.getInstance().rebuildSlotIndex();
+        } catch (AndesException e) {
+            log.error("Error occurred while rebuilding slot index after coordinator election", e);
+        }
     }
 
     /**
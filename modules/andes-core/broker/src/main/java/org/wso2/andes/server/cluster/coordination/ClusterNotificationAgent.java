@@ -70,6 +70,17 @@ public interface ClusterNotificationAgent {
     void notifySubscriptionsChange(AndesSubscription subscription,
                                    ClusterNotificationListener.SubscriptionChange changeType) throws AndesException;
 
+    /**
+     * Notify a change of the shards of a sharded message store
+     *
+     * @param dataSourceName name of the data source of the shard
+     * @param changeType     change made
+     * @throws AndesException
+     */
+    void notifyMessageStoreShardChange(String dataSourceName,
+                                       ClusterNotificationListener.MessageStoreShardChange changeType)
+            throws AndesException;
+
     /**
      * Notify any DB change in general
      *
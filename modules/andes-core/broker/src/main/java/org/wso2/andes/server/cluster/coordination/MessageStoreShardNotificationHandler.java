@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.ClusterNotificationListener;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.store.rdbms.ShardedMessageStoreImpl;
+
+/**
+ * ClusterNotificationListener implementation listening for shards added to the sharded message store
+ * in another node and adding them to the message store of this node
+ */
+public class MessageStoreShardNotificationHandler implements ClusterNotificationListener {
+
+    private Log log = LogFactory.getLog(MessageStoreShardNotificationHandler.class);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleClusterNotification(ClusterNotification notification) {
+        ShardedMessageStoreImpl messageStore = ClusterResourceHolder.getInstance().getShardedMessageStore();
+        String dataSourceName = notification.getEncodedObjectAsString();
+        if (null == messageStore) {
+            log.error("Shard " + dataSourceName + " added in node " + notification.getOriginatedNode()
+                    + " is ignored since the message store of this node is not sharded");
+            return;
+        }
+
+        try {
+            MessageStoreShardChange changeType = MessageStoreShardChange.valueOf(notification.getChangeType());
+            switch (changeType) {
+                case Added:
+                    if (!messageStore.getShardDataSources().contains(dataSourceName)) {
+                        messageStore.addShard(dataSourceName);
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("Error while handling message store shard notification", e);
+        }
+    }
+}
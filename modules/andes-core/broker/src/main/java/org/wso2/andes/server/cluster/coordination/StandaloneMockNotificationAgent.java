@@ -65,6 +65,15 @@ public class StandaloneMockNotificationAgent implements ClusterNotificationAgent
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyMessageStoreShardChange(String dataSourceName, ClusterNotificationListener
+            .MessageStoreShardChange changeType) throws AndesException {
+
+    }
+
     /**
      * {@inheritDoc}
      */
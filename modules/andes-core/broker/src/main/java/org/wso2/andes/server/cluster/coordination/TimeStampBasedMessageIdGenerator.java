@@ -17,9 +17,13 @@
  */
 package org.wso2.andes.server.cluster.coordination;
 
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.server.ClusterResourceHolder;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
@@ -28,49 +32,168 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Here to preserve the long range we use a time stamp that is created by getting difference between
  * System.currentTimeMillis() and a configured reference time. Reference time can be configured.
  * <p/>
- * Message Id will created by appending time stamp , selected unique id for the node and two digit sequence number
+ * Message Id will created by appending time stamp , selected unique id for the node and a sequence number
  * <p/>
  * <time stamp> + <selected unique id for the node> + <seq number>
  * <p/>
- * sequence number is used in a scenario when two or more messages comes with same timestamp
- * (within the same millisecond). So to allow message rages higher than 1000 msg/s we use this sequence number
- * where it will be incremented in case of message comes in same millisecond within the same node. With this approach
- * We can go up to 100,000 msg/s
+ * Out of 64 bits for long, the range is used as follows
+ * [1 sign bit][time spent from reference time in milliseconds][node id bits][offset bits]
+ * By default 8 bits are used for the node id and 10 bits for the offset, which leaves 45 bits for the timestamp.
+ * Both widths are configurable through the nodeIdBits and offsetBits attributes of persistence/idGenerator.
+ * <p/>
+ * The generator keeps the last allocated (timestamp, offset) pair in a single atomic long and allocates with a
+ * compare and set, so callers never block each other. When the offsets of the current millisecond are used up the
+ * generator continues with the next millisecond instead of failing. Under a sustained burst the generated timestamp
+ * may therefore run ahead of the wall clock, and falls back in line as soon as the rate drops. The timestamp is
+ * never more than {@link #MAX_CLOCK_DRIFT_MILLIS} ahead of the wall clock. Callers wait for the clock once the limit
+ * is reached, so that a restarted node, which starts again from the wall clock, does not reuse IDs.
  */
-// TODO class name
 public class TimeStampBasedMessageIdGenerator implements MessageIdGenerator {
-    private int uniqueIdForNode = 0;
-    private long lastTimestamp = 0;
-    private long lastID = 0;
 
-    /** If two instances for the same time stamp comes add offset values to differentiate them */
-    private AtomicInteger offset = new AtomicInteger();
+    /**
+     * This is 2011
+     */
+    private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L;
+
+    /**
+     * Timestamp must keep at least this many bits. 41 bits are enough for about 69 years from the reference time.
+     */
+    private static final int MIN_TIMESTAMP_BITS = 41;
 
-    private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L; //this is 2011
+    /**
+     * Maximum number of milliseconds the generated timestamp may run ahead of the wall clock. A node restart takes
+     * longer than this.
+     */
+    static final long MAX_CLOCK_DRIFT_MILLIS = 1000;
 
     /**
-     * Out of 64 bits for long, we will use the range as follows
-     * [1 sign bit][45bits for time spent from reference time in milliseconds][8bit node id][10 bit offset for ID falls within the same timestamp]
-     * This assumes there will not be more than 1024 hits within a given millisecond. Range is sufficient for 6029925857 years.
+     * Time to wait before reading the clock again when the drift limit is reached
+     */
+    private static final long CLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Last allocated sequence. Holds (timestamp << offsetBits) | offset of the last ID handed out.
+     */
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    private final int nodeIdBits;
+
+    private final int offsetBits;
+
+    private final long offsetMask;
+
+    private final long nodeIdMask;
+
+    /**
+     * Unique id of the local node. Refreshed when a new millisecond is started since the id might change at runtime.
+     */
+    private volatile long uniqueIdForNode;
+
+    /**
+     * Create a generator with the bit layout given in broker configuration
+     */
+    public TimeStampBasedMessageIdGenerator() {
+        this(AndesConfigurationManager.<Integer>readValue(AndesConfiguration.PERSISTENCE_ID_GENERATOR_NODE_ID_BITS),
+                AndesConfigurationManager.<Integer>readValue(AndesConfiguration.PERSISTENCE_ID_GENERATOR_OFFSET_BITS));
+    }
+
+    /**
+     * Create a generator with the given bit layout
      *
-     * @return Generated ID
+     * @param nodeIdBits number of bits used for the unique id of the node
+     * @param offsetBits number of bits used for the offset within a millisecond
      */
-    public synchronized long getNextId() {
-        //TODO review on how we could optimize this code
-        uniqueIdForNode = ClusterResourceHolder.getInstance().getClusterManager().getUniqueIdForLocalNode();
-        long ts = System.currentTimeMillis();
-        int offset = 0;
-        if (ts == lastTimestamp) {
-            offset = this.offset.incrementAndGet();
-        } else {
-            this.offset.set(0);
+    public TimeStampBasedMessageIdGenerator(int nodeIdBits, int offsetBits) {
+        if (nodeIdBits < 1 || offsetBits < 1) {
+            throw new IllegalArgumentException("Invalid message id layout. Node id bits: " + nodeIdBits
+                    + ", offset bits: " + offsetBits + ". Both must be greater than 0");
         }
-        lastTimestamp = ts;
-        long id = (ts - REFERENCE_START) * 256 * 1024 + uniqueIdForNode * 1024 + offset;
-        if (lastID == id) {
-            throw new RuntimeException("duplicate ids detected. This should never happen");
+        if (nodeIdBits + offsetBits > 63 - MIN_TIMESTAMP_BITS) {
+            throw new IllegalArgumentException("Invalid message id layout. Node id bits: " + nodeIdBits
+                    + ", offset bits: " + offsetBits + ". At least " + MIN_TIMESTAMP_BITS
+                    + " of the 63 value bits must be left for the timestamp");
         }
-        lastID = id;
-        return id;
+        this.nodeIdBits = nodeIdBits;
+        this.offsetBits = offsetBits;
+        this.offsetMask = (1L << offsetBits) - 1;
+        this.nodeIdMask = (1L << nodeIdBits) - 1;
+        this.uniqueIdForNode = -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getNextId() {
+        return getNextIds(1);
+    }
+
+    /**
+     * Allocate a block of contiguous IDs. The returned ID and the following count - 1 IDs belong to the caller.
+     * A block never spans two milliseconds, so the IDs of a block differ only in the offset bits.
+     *
+     * @param count number of IDs to allocate. Must not exceed 2^offsetBits
+     * @return first ID of the block
+     */
+    public long getNextIds(int count) {
+        if (count < 1 || count > offsetMask + 1) {
+            throw new IllegalArgumentException("Cannot allocate " + count + " message ids in one block. Maximum is "
+                    + (offsetMask + 1));
+        }
+
+        long previous;
+        long first;
+        while (true) {
+            previous = lastSequence.get();
+            long now = (currentTimeMillis() - REFERENCE_START) << offsetBits;
+            first = Math.max(previous + 1, now);
+
+            // Move to the start of the next millisecond if the block does not fit in the current one
+            if ((first & offsetMask) + count - 1 > offsetMask) {
+                first = (first | offsetMask) + 1;
+            }
+
+            // Wait for the clock instead of running further ahead of it
+            if ((first >>> offsetBits) - (now >>> offsetBits) > MAX_CLOCK_DRIFT_MILLIS) {
+                LockSupport.parkNanos(CLOCK_WAIT_NANOS);
+            } else if (lastSequence.compareAndSet(previous, first + count - 1)) {
+                break;
+            }
+        }
+
+        if ((first >>> offsetBits) != (previous >>> offsetBits) || uniqueIdForNode < 0) {
+            uniqueIdForNode = readUniqueIdForNode() & nodeIdMask;
+        }
+
+        long timestamp = first >>> offsetBits;
+        long offset = first & offsetMask;
+        return (((timestamp << nodeIdBits) | uniqueIdForNode) << offsetBits) | offset;
+    }
+
+    /**
+     * Get the maximum number of IDs that can be allocated in one block
+     *
+     * @return maximum block size
+     */
+    public int getMaxBlockSize() {
+        return (int) (offsetMask + 1);
+    }
+
+    /**
+     * Read the unique id of the local node from the cluster manager
+     *
+     * @return unique id of the local node
+     */
+    protected int readUniqueIdForNode() {
+        return ClusterResourceHolder.getInstance().getClusterManager().getUniqueIdForLocalNode();
+    }
+
+    /**
+     * Read the wall clock
+     *
+     * @return current time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
     }
 }
@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.server.cluster.coordination.BindingNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.ClusterNotification;
 import org.wso2.andes.server.cluster.coordination.ExchangeNotificationHandler;
+import org.wso2.andes.server.cluster.coordination.MessageStoreShardNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.QueueNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.SubscriptionNotificationHandler;
 
@@ -59,6 +60,12 @@ public class HZBasedClusterNotificationListener implements MessageListener {
      */
     private List<SubscriptionNotificationHandler> subscriptionNotificationHandlerList = new ArrayList<>();
 
+    /**
+     * Listeners interested in message store shard changes.
+     */
+    private List<MessageStoreShardNotificationHandler> messageStoreShardNotificationHandlerList =
+            new ArrayList<>();
+
     /**
      * Register a listener interested in exchange(message router) changes within the cluster.
      *
@@ -95,6 +102,15 @@ public class HZBasedClusterNotificationListener implements MessageListener {
         subscriptionNotificationHandlerList.add(handler);
     }
 
+    /**
+     * Register a listener interested in message store shard changes within the cluster.
+     *
+     * @param handler listener to be registered
+     */
+    public void addMessageStoreShardNotificationHandler(MessageStoreShardNotificationHandler handler) {
+        messageStoreShardNotificationHandlerList.add(handler);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,6 +146,11 @@ public class HZBasedClusterNotificationListener implements MessageListener {
                         handler.handleClusterNotification(clusterNotification);
                     }
                     break;
+                case "MessageStoreShard":
+                    for (MessageStoreShardNotificationHandler handler : messageStoreShardNotificationHandlerList) {
+                        handler.handleClusterNotification(clusterNotification);
+                    }
+                    break;
                 default:
                     log.error("Unknown cluster event type: " + clusterNotification.getNotifiedArtifact());
                     break;
@@ -185,6 +185,35 @@ public class HazelcastBasedNotificationAgentImpl implements ClusterNotificationA
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyMessageStoreShardChange(String dataSourceName,
+                                              ClusterNotificationListener.MessageStoreShardChange changeType)
+            throws AndesException {
+
+        ClusterNotification clusterNotification = new ClusterNotification(
+                dataSourceName,
+                ClusterNotificationListener.NotifiedArtifact.MessageStoreShard.toString(),
+                changeType.toString(),
+                "Message Store Shard Notification Message : " + changeType.toString(),
+                localNodeID);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Sending message store shard change GOSSIP: " + changeType + " - "
+                    + clusterNotification.getEncodedObjectAsString());
+        }
+        try {
+            clusterNotificationChannel.publish(clusterNotification);
+        } catch (Exception e) {
+            log.error("Error while sending message store shard change notification : "
+                    + clusterNotification.getEncodedObjectAsString(), e);
+            throw new AndesException("Error while sending message store shard change notification : "
+                    + clusterNotification.getEncodedObjectAsString(), e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -31,6 +31,7 @@ import org.wso2.andes.server.cluster.coordination.ClusterNotificationListenerMan
 import org.wso2.andes.server.cluster.coordination.CoordinationConstants;
 import org.wso2.andes.server.cluster.coordination.DBSyncNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.ExchangeNotificationHandler;
+import org.wso2.andes.server.cluster.coordination.MessageStoreShardNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.QueueNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.SubscriptionNotificationHandler;
 
@@ -156,6 +157,8 @@ public class HazelcastClusterNotificationListenerImpl implements ClusterNotifica
                 (contextInformationManager, inboundEventManager));
         hzBasedClusterNotificationListener.addQueueNotificationHandler(new QueueNotificationHandler
                 (contextInformationManager, inboundEventManager));
+        hzBasedClusterNotificationListener.addMessageStoreShardNotificationHandler(
+                new MessageStoreShardNotificationHandler());
 
         clusterEventListenerId = checkAndRegisterListerToTopic(clusterNotifierChannel,
                 hzBasedClusterNotificationListener, clusterEventListenerId);
@@ -143,6 +143,26 @@ public class RDBMSBasedNotificationAgentImpl implements ClusterNotificationAgent
         publishNotificationToDB(clusterNotification);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyMessageStoreShardChange(String dataSourceName, ClusterNotificationListener
+            .MessageStoreShardChange changeType) throws AndesException {
+        ClusterNotification clusterNotification = new ClusterNotification(
+                dataSourceName,
+                ClusterNotificationListener.NotifiedArtifact.MessageStoreShard.toString(),
+                changeType.toString(),
+                "Message Store Shard Notification Message : " + changeType.toString(),
+                localNodeID);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Sending message store shard change GOSSIP: " + changeType + " - "
+                    + clusterNotification.getEncodedObjectAsString());
+        }
+        publishNotificationToDB(clusterNotification);
+    }
+
     /**
      * {@inheritDoc}
      */
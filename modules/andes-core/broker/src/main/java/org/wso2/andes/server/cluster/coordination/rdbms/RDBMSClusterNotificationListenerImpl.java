@@ -32,6 +32,7 @@ import org.wso2.andes.server.cluster.coordination.ClusterNotification;
 import org.wso2.andes.server.cluster.coordination.ClusterNotificationListenerManager;
 import org.wso2.andes.server.cluster.coordination.DBSyncNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.ExchangeNotificationHandler;
+import org.wso2.andes.server.cluster.coordination.MessageStoreShardNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.QueueNotificationHandler;
 import org.wso2.andes.server.cluster.coordination.SubscriptionNotificationHandler;
 
@@ -170,6 +171,8 @@ public class RDBMSClusterNotificationListenerImpl implements ClusterNotification
                 new SubscriptionNotificationHandler(subscriptionManager, inboundEventManager));
         registerNotificationHandler(ClusterNotificationListener.NotifiedArtifact.DBUpdate,
                 new DBSyncNotificationHandler());
+        registerNotificationHandler(ClusterNotificationListener.NotifiedArtifact.MessageStoreShard,
+                new MessageStoreShardNotificationHandler());
 
         //and schedule a periodic task to read cluster events
         // from the store if cluster event sync mode is set to RDBMS.
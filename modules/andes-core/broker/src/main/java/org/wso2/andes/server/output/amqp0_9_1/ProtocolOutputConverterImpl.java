@@ -21,10 +21,12 @@ package org.wso2.andes.server.output.amqp0_9_1;
 
 import org.wso2.org.apache.mina.common.ByteBuffer;
 import org.wso2.andes.AMQException;
+import org.wso2.andes.amqp.QpidStoredMessage;
 import org.wso2.andes.framing.*;
 import org.wso2.andes.framing.abstraction.MessagePublishInfo;
 import org.wso2.andes.framing.abstraction.ProtocolVersionMethodConverter;
 import org.wso2.andes.framing.amqp_0_91.BasicGetBodyImpl;
+import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.protocol.AMQConstant;
 import org.wso2.andes.protocol.AMQVersionAwareProtocolSession;
 import org.wso2.andes.server.message.AMQMessage;
@@ -34,6 +36,7 @@ import org.wso2.andes.server.output.HeaderPropertiesConverter;
 import org.wso2.andes.server.output.ProtocolOutputConverter;
 import org.wso2.andes.server.protocol.AMQProtocolSession;
 import org.wso2.andes.server.queue.QueueEntry;
+import org.wso2.andes.server.store.StoredMessage;
 import org.wso2.andes.transport.DeliveryProperties;
 
 public class ProtocolOutputConverterImpl implements ProtocolOutputConverter
@@ -121,6 +124,13 @@ public class ProtocolOutputConverterImpl implements ProtocolOutputConverter
              */
                 int maxBodySize = (int) getProtocolSession().getMaxFrameSize() - AMQFrame.getFrameOverhead();
 
+                QpidStoredMessage<?> cachedContent = getCachedContent(message);
+                if (cachedContent != null)
+                {
+                    writeSlicedContent(cachedContent, contentHeaderBody, channelId, deliverBody, bodySize,
+                                       maxBodySize);
+                    return;
+                }
 
                 final int capacity = bodySize > maxBodySize ? maxBodySize : bodySize;
                 java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(capacity);
@@ -156,6 +166,59 @@ public class ProtocolOutputConverterImpl implements ProtocolOutputConverter
         }
     }
 
+    /**
+     * Get the cached content of the message if it can be written to the client without copying
+     *
+     * @return cached content, or null if the content has to be copied out of the message
+     */
+    private QpidStoredMessage<?> getCachedContent(MessageContentSource message)
+    {
+        if (message instanceof AMQMessage)
+        {
+            StoredMessage<?> storedMessage = ((AMQMessage) message).getStoredMessage();
+            if (storedMessage instanceof QpidStoredMessage)
+            {
+                return (QpidStoredMessage<?>) storedMessage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write content frames which refer to the cached content chunks instead of copies of them. The deliver and
+     * header frames go out with the first content frame.
+     */
+    private void writeSlicedContent(QpidStoredMessage<?> cachedContent, ContentHeaderBody contentHeaderBody,
+                                    int channelId, AMQBody deliverBody, int bodySize, int maxBodySize)
+            throws AMQException
+    {
+        AMQDataBlock leadingBlock = new SmallCompositeAMQBodyBlock(channelId, deliverBody, contentHeaderBody);
+        int writtenSize = 0;
+        while (writtenSize < bodySize)
+        {
+            SlicedContentFrame frame;
+            try
+            {
+                frame = new SlicedContentFrame(leadingBlock, channelId,
+                                               cachedContent.getContentSlices(writtenSize, maxBodySize));
+            }
+            catch (AndesException e)
+            {
+                throw new AMQException(AMQConstant.INTERNAL_ERROR, "Error while getting message content chunk " +
+                        "offset " + writtenSize + " messageId " + cachedContent.getMessageNumber(), e);
+            }
+
+            if (frame.getBodySize() == 0)
+            {
+                throw new AMQException(AMQConstant.MESSAGE_CONTENT_OBSOLETE, "Unexpected Error while getting " +
+                        "message content : No content available at offset " + writtenSize + " bodySize= " + bodySize);
+            }
+            writeFrame(frame);
+            writtenSize += frame.getBodySize();
+            leadingBlock = null;
+        }
+    }
+
     private AMQDataBlock createContentHeaderBlock(final int channelId, final ContentHeaderBody contentHeaderBody)
     {
 
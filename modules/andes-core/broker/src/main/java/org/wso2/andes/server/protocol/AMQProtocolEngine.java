@@ -46,6 +46,7 @@ import org.wso2.andes.framing.MethodDispatcher;
 import org.wso2.andes.framing.MethodRegistry;
 import org.wso2.andes.framing.ProtocolInitiation;
 import org.wso2.andes.framing.ProtocolVersion;
+import org.wso2.andes.framing.SlicedContentFrame;
 import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.pool.Job;
 import org.wso2.andes.pool.ReferenceCountingExecutorService;
@@ -73,6 +74,7 @@ import org.wso2.andes.server.state.AMQStateManager;
 import org.wso2.andes.server.stats.StatisticsCounter;
 import org.wso2.andes.server.virtualhost.VirtualHost;
 import org.wso2.andes.server.virtualhost.VirtualHostRegistry;
+import org.wso2.andes.transport.GatheringSender;
 import org.wso2.andes.transport.Sender;
 import org.wso2.andes.transport.network.NetworkConnection;
 
@@ -503,6 +505,11 @@ public class AMQProtocolEngine implements ProtocolEngine, Managable, AMQProtocol
     public void writeFrame(AMQDataBlock frame)
     {
         _lastSent = frame;
+        if (frame instanceof SlicedContentFrame && _sender instanceof GatheringSender)
+        {
+            writeGatheringFrame((SlicedContentFrame) frame, (GatheringSender<ByteBuffer>) _sender);
+            return;
+        }
         final ByteBuffer buf = frame.toNioByteBuffer();
         _lastIoTime = System.currentTimeMillis();
         _writtenBytes += buf.remaining();
@@ -515,6 +522,24 @@ public class AMQProtocolEngine implements ProtocolEngine, Managable, AMQProtocol
         });
     }
 
+    /**
+     * Write a content frame without copying its content into a frame buffer. The sender writes the content slices
+     * as they are.
+     */
+    private void writeGatheringFrame(SlicedContentFrame frame, final GatheringSender<ByteBuffer> sender)
+    {
+        final ByteBuffer[] buffers = frame.toNioByteBuffers();
+        _lastIoTime = System.currentTimeMillis();
+        _writtenBytes += frame.getSize();
+        Job.fireAsynchEvent(_poolReference.getPool(), _writeJob, new Runnable()
+        {
+            public void run()
+            {
+                sender.send(buffers);
+            }
+        });
+    }
+
     public AMQShortString getContextKey()
     {
         return _contextKey;
@@ -25,8 +25,10 @@ import org.wso2.andes.kernel.AndesMessageMetadata;
 import org.wso2.andes.kernel.DtxStore;
 import org.wso2.andes.kernel.dtx.AndesPreparedMessageMetadata;
 import org.wso2.andes.kernel.dtx.DtxBranch;
+import org.wso2.andes.kernel.dtx.PartialDtxCommitException;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.transaction.xa.Xid;
 
@@ -74,6 +76,24 @@ public class FailureObservingDtxStore extends FailureObservingStore<DtxStore> im
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) throws AndesException {
+        try {
+            wrappedInstance.updateOnCommit(enqueueRecords);
+        } catch (AndesStoreUnavailableException e) {
+            notifyFailures(e);
+            throw new AndesException(e);
+        } catch (PartialDtxCommitException e) {
+            if (e.getCause() instanceof AndesStoreUnavailableException) {
+                notifyFailures((AndesStoreUnavailableException) e.getCause());
+            }
+            throw e;
+        }
+    }
+
     @Override
     public void updateOnOnePhaseCommit(List<AndesMessage> enqueueRecords,
             List<AndesPreparedMessageMetadata> dequeueRecordsMetadata) throws AndesException {
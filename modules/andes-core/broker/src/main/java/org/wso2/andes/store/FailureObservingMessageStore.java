@@ -622,6 +622,33 @@ public class FailureObservingMessageStore extends FailureObservingStore<MessageS
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DeliverableAndesMetadata> getRetainedMetadata(List<String> destinations) throws AndesException {
+        try {
+            return wrappedInstance.getRetainedMetadata(destinations);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LongObjectHashMap<Map<Integer, AndesMessagePart>> getRetainedContentParts(LongArrayList messageIdList)
+            throws AndesException {
+        try {
+            return wrappedInstance.getRetainedContentParts(messageIdList);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
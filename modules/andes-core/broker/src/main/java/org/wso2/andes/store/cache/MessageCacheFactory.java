@@ -28,9 +28,15 @@ import org.wso2.andes.configuration.enums.AndesConfiguration;
 public class MessageCacheFactory {
 
     
+    /**
+     * Cache type keeping message content outside the java heap
+     */
+    private static final String CACHE_TYPE_OFF_HEAP = "offHeap";
+
     /***
      * Create a {@link AndesMessageCache} with the configurations passed.
-     * currently it will either returns a {@link GuavaBasedMessageCacheImpl} or
+     * currently it will either returns a {@link GuavaBasedMessageCacheImpl}, an
+     * {@link OffHeapMessageCacheImpl} if the cache type is configured as 'offHeap' or
      * {@link DisabledMessageCacheImpl} if cacheSize is configured as '0' in
      * broker.xml
      * 
@@ -44,8 +50,12 @@ public class MessageCacheFactory {
                                     
         AndesMessageCache cache = null;
         
+        String cacheType = AndesConfigurationManager.readValue(AndesConfiguration.PERSISTENCE_CACHE_TYPE);
+
         if ( cacheSizeInMegaBytes <= 0){
             cache = new DisabledMessageCacheImpl();
+        } else if (CACHE_TYPE_OFF_HEAP.equalsIgnoreCase(cacheType)) {
+            cache = new OffHeapMessageCacheImpl();
         } else {
             cache = new GuavaBasedMessageCacheImpl();
         }
@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.cache;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.gs.collections.api.iterator.MutableLongIterator;
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.apache.log4j.Logger;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message cache which keeps message content in direct memory instead of the java heap. Only the metadata of a
+ * cached message and a small index of its content stay on heap, so a large cache does not add to garbage collection
+ * pressure.
+ * <p>
+ * The cache is split into segments by message id. Each segment owns a share of the cache size, allocates direct
+ * slabs on demand up to that share and hands out fixed size blocks from them. Content of a message is written to as
+ * many blocks as needed. When a segment runs out of blocks the least recently used messages are evicted. Messages
+ * which are not accessed within the configured expiry time are removed as with {@link GuavaBasedMessageCacheImpl}.
+ * <p>
+ * Content is copied back to the heap only when it is read for delivery.
+ */
+public class OffHeapMessageCacheImpl implements AndesMessageCache {
+
+    private static final Logger log = Logger.getLogger(OffHeapMessageCacheImpl.class);
+
+    /**
+     * Maximum size of a single direct memory slab
+     */
+    private static final int MAX_SLAB_SIZE = 8 * 1024 * 1024;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    private final long expiryMillis;
+
+    /**
+     * Used to remove expired messages and print cache statistics. Runs on a daemon thread since the cache is not
+     * closed when the message store shuts down.
+     */
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    private final boolean printStats;
+
+    public OffHeapMessageCacheImpl() {
+        this(1024L * 1024L * ((int) AndesConfigurationManager.readValue(AndesConfiguration.PERSISTENCE_CACHE_SIZE)),
+                (int) AndesConfigurationManager.readValue(AndesConfiguration.PERSISTENCE_CACHE_CONCURRENCY_LEVEL),
+                (int) AndesConfigurationManager.readValue(AndesConfiguration.PERSISTENCE_CACHE_EXPIRY_SECONDS),
+                (int) AndesConfigurationManager.readValue(AndesConfiguration.PERSISTENCE_CACHE_OFF_HEAP_BLOCK_SIZE),
+                (boolean) AndesConfigurationManager.readValue(AndesConfiguration.PERSISTENCE_CACHE_PRINT_STATS));
+    }
+
+    /**
+     * Create a cache
+     *
+     * @param cacheSizeInBytes   maximum size of the cached content
+     * @param cacheConcurrency   number of segments, rounded up to a power of two
+     * @param cacheExpirySeconds time after the last access at which a message is removed
+     * @param blockSize          size of the blocks content is stored in
+     * @param printStats         true to log cache statistics periodically
+     */
+    OffHeapMessageCacheImpl(long cacheSizeInBytes, int cacheConcurrency, int cacheExpirySeconds, int blockSize,
+                            boolean printStats) {
+
+        this.printStats = printStats;
+
+        expiryMillis = TimeUnit.SECONDS.toMillis(cacheExpirySeconds);
+
+        int segmentCount = Integer.highestOneBit(Math.max(1, cacheConcurrency) * 2 - 1);
+        segmentMask = segmentCount - 1;
+        int blocksPerSegment = (int) Math.min(Integer.MAX_VALUE, cacheSizeInBytes / blockSize / segmentCount);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(blockSize, blocksPerSegment);
+        }
+
+        ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("OffHeapMessageCache-%d")
+                .setDaemon(true).build();
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(namedThreadFactory);
+
+        maintenanceExecutor.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                for (Segment segment : segments) {
+                    segment.removeExpired(now - expiryMillis);
+                }
+            }
+        }, cacheExpirySeconds, Math.max(1, cacheExpirySeconds), TimeUnit.SECONDS);
+
+        if (printStats) {
+            maintenanceExecutor.scheduleAtFixedRate(new Runnable() {
+
+                @Override
+                public void run() {
+                    log.info("cache stats:" + getStats());
+                }
+            }, 2, 2, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToCache(AndesMessage message) {
+        long messageId = message.getMetadata().getMessageID();
+        segmentFor(messageId).put(messageId, message, System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromCache(LongArrayList messagesToRemove) {
+        MutableLongIterator iterator = messagesToRemove.longIterator();
+        while (iterator.hasNext()) {
+            removeFromCache(iterator.next());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromCache(long messageToRemove) {
+        segmentFor(messageToRemove).remove(messageToRemove);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AndesMessage getMessageFromCache(long messageId) {
+        return segmentFor(messageId).getMessage(messageId, System.currentTimeMillis(), expiryMillis);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fillContentFromCache(LongArrayList messageIDList,
+            LongObjectHashMap<List<AndesMessagePart>> contentList) {
+
+        long now = System.currentTimeMillis();
+        MutableLongIterator iterator = messageIDList.longIterator();
+
+        while (iterator.hasNext()) {
+
+            long messageID = iterator.next();
+
+            List<AndesMessagePart> parts = segmentFor(messageID).getContent(messageID, now, expiryMillis);
+
+            if (null != parts) {
+                contentList.put(messageID, parts);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AndesMessagePart getContentFromCache(long messageId, int offsetValue) {
+        return segmentFor(messageId).getPart(messageId, offsetValue, System.currentTimeMillis(), expiryMillis);
+    }
+
+    private Segment segmentFor(long messageId) {
+        // Spread the bits since the low bits of timestamp based ids are not evenly distributed
+        long hash = messageId * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 32) & segmentMask];
+    }
+
+    private String getStats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long usedBlocks = 0;
+        long messageCount = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hitCount;
+                misses += segment.missCount;
+                evictions += segment.evictionCount;
+                usedBlocks += segment.usedBlockCount;
+                messageCount += segment.index.size();
+            }
+        }
+        return "messages=" + messageCount + ", usedBlocks=" + usedBlocks + ", hitCount=" + hits + ", missCount="
+                + misses + ", evictionCount=" + evictions;
+    }
+
+    /**
+     * Index entry of a cached message. Entries of a segment form a doubly linked list ordered by last access.
+     */
+    private static final class CachedMessage {
+
+        private final long messageId;
+
+        private final AndesMessageMetadata metadata;
+
+        /**
+         * Blocks holding the content, in content order
+         */
+        private final int[] blocks;
+
+        /**
+         * Offset of each content part within the message
+         */
+        private final int[] partOffsets;
+
+        /**
+         * Length of each content part
+         */
+        private final int[] partLengths;
+
+        private long lastAccessTime;
+
+        private CachedMessage newer;
+
+        private CachedMessage older;
+
+        private CachedMessage(long messageId, AndesMessageMetadata metadata, int[] blocks, int[] partOffsets,
+                              int[] partLengths, long lastAccessTime) {
+            this.messageId = messageId;
+            this.metadata = metadata;
+            this.blocks = blocks;
+            this.partOffsets = partOffsets;
+            this.partLengths = partLengths;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+
+    /**
+     * A share of the cache with its own index, memory and eviction order. All methods are synchronized on the
+     * segment, which also keeps blocks from being reused while they are being read.
+     */
+    private static final class Segment {
+
+        private final LongObjectHashMap<CachedMessage> index = new LongObjectHashMap<>();
+
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+
+        private final int blockSize;
+
+        private final int blocksPerSlab;
+
+        private final int maxBlocks;
+
+        /**
+         * Stack of released blocks
+         */
+        private final int[] freeBlocks;
+
+        private int freeBlockCount;
+
+        /**
+         * Number of blocks carved out of slabs so far
+         */
+        private int createdBlockCount;
+
+        private int usedBlockCount;
+
+        /**
+         * Most recently accessed message
+         */
+        private CachedMessage newest;
+
+        /**
+         * Least recently accessed message, evicted first
+         */
+        private CachedMessage oldest;
+
+        private long hitCount;
+
+        private long missCount;
+
+        private long evictionCount;
+
+        private Segment(int blockSize, int maxBlocks) {
+            this.blockSize = blockSize;
+            this.maxBlocks = maxBlocks;
+            this.blocksPerSlab = Math.max(1, MAX_SLAB_SIZE / blockSize);
+            this.freeBlocks = new int[maxBlocks];
+        }
+
+        private synchronized void put(long messageId, AndesMessage message, long now) {
+            List<AndesMessagePart> parts = message.getContentChunkList();
+            int contentLength = 0;
+            for (AndesMessagePart part : parts) {
+                contentLength += part.getDataLength();
+            }
+
+            int blockCount = (contentLength + blockSize - 1) / blockSize;
+            CachedMessage existing = index.get(messageId);
+            if (null != existing) {
+                removeEntry(existing);
+            }
+            if (blockCount > maxBlocks) {
+                return;
+            }
+            while (maxBlocks - usedBlockCount < blockCount) {
+                removeEntry(oldest);
+                evictionCount++;
+            }
+
+            int[] blocks = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blocks[i] = allocateBlock();
+            }
+
+            int[] partOffsets = new int[parts.size()];
+            int[] partLengths = new int[parts.size()];
+            int position = 0;
+            for (int i = 0; i < partOffsets.length; i++) {
+                AndesMessagePart part = parts.get(i);
+                partOffsets[i] = part.getOffset();
+                partLengths[i] = part.getDataLength();
+                write(blocks, position, part.getData());
+                position = position + partLengths[i];
+            }
+
+            CachedMessage entry = new CachedMessage(messageId, message.getMetadata(), blocks, partOffsets,
+                    partLengths, now);
+            index.put(messageId, entry);
+            linkAsNewest(entry);
+        }
+
+        private synchronized void remove(long messageId) {
+            CachedMessage entry = index.get(messageId);
+            if (null != entry) {
+                removeEntry(entry);
+            }
+        }
+
+        private synchronized AndesMessage getMessage(long messageId, long now, long expiryMillis) {
+            CachedMessage entry = access(messageId, now, expiryMillis);
+            if (null == entry) {
+                return null;
+            }
+            AndesMessage message = new AndesMessage(entry.metadata);
+            message.setChunkList(readParts(entry));
+            return message;
+        }
+
+        private synchronized List<AndesMessagePart> getContent(long messageId, long now, long expiryMillis) {
+            CachedMessage entry = access(messageId, now, expiryMillis);
+            if (null == entry) {
+                return null;
+            }
+            return readParts(entry);
+        }
+
+        private synchronized AndesMessagePart getPart(long messageId, int offset, long now, long expiryMillis) {
+            CachedMessage entry = access(messageId, now, expiryMillis);
+            if (null == entry) {
+                return null;
+            }
+            int position = 0;
+            for (int i = 0; i < entry.partOffsets.length; i++) {
+                if (entry.partOffsets[i] == offset) {
+                    return readPart(entry, i, position);
+                }
+                position = position + entry.partLengths[i];
+            }
+            return null;
+        }
+
+        /**
+         * Remove messages which were last accessed before the given time
+         *
+         * @param accessedBefore expiry boundary in milliseconds
+         */
+        private synchronized void removeExpired(long accessedBefore) {
+            while (null != oldest && oldest.lastAccessTime < accessedBefore) {
+                removeEntry(oldest);
+            }
+        }
+
+        /**
+         * Look up a message and mark it as the most recently used. Expired messages are removed.
+         */
+        private CachedMessage access(long messageId, long now, long expiryMillis) {
+            CachedMessage entry = index.get(messageId);
+            if (null != entry && now - entry.lastAccessTime > expiryMillis) {
+                removeEntry(entry);
+                entry = null;
+            }
+            if (null == entry) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            entry.lastAccessTime = now;
+            unlink(entry);
+            linkAsNewest(entry);
+            return entry;
+        }
+
+        private List<AndesMessagePart> readParts(CachedMessage entry) {
+            List<AndesMessagePart> parts = new ArrayList<>(entry.partOffsets.length);
+            int position = 0;
+            for (int i = 0; i < entry.partOffsets.length; i++) {
+                parts.add(readPart(entry, i, position));
+                position = position + entry.partLengths[i];
+            }
+            return parts;
+        }
+
+        private AndesMessagePart readPart(CachedMessage entry, int partIndex, int position) {
+            byte[] data = new byte[entry.partLengths[partIndex]];
+            read(entry.blocks, position, data);
+            AndesMessagePart part = new AndesMessagePart();
+            part.setMessageID(entry.messageId);
+            part.setOffSet(entry.partOffsets[partIndex]);
+            part.setData(data);
+            return part;
+        }
+
+        private void removeEntry(CachedMessage entry) {
+            index.remove(entry.messageId);
+            unlink(entry);
+            for (int block : entry.blocks) {
+                freeBlocks[freeBlockCount++] = block;
+            }
+            usedBlockCount = usedBlockCount - entry.blocks.length;
+        }
+
+        private int allocateBlock() {
+            usedBlockCount++;
+            if (freeBlockCount > 0) {
+                return freeBlocks[--freeBlockCount];
+            }
+            if (createdBlockCount % blocksPerSlab == 0) {
+                int slabBlocks = Math.min(blocksPerSlab, maxBlocks - createdBlockCount);
+                slabs.add(ByteBuffer.allocateDirect(slabBlocks * blockSize));
+            }
+            return createdBlockCount++;
+        }
+
+        /**
+         * Copy data into the blocks starting at the given content position
+         */
+        private void write(int[] blocks, int position, byte[] data) {
+            int written = 0;
+            while (written < data.length) {
+                int positionInBlock = position % blockSize;
+                int length = Math.min(blockSize - positionInBlock, data.length - written);
+                ByteBuffer slab = slabAt(blocks[position / blockSize], positionInBlock);
+                slab.put(data, written, length);
+                written = written + length;
+                position = position + length;
+            }
+        }
+
+        /**
+         * Copy data out of the blocks starting at the given content position
+         */
+        private void read(int[] blocks, int position, byte[] data) {
+            int read = 0;
+            while (read < data.length) {
+                int positionInBlock = position % blockSize;
+                int length = Math.min(blockSize - positionInBlock, data.length - read);
+                ByteBuffer slab = slabAt(blocks[position / blockSize], positionInBlock);
+                slab.get(data, read, length);
+                read = read + length;
+                position = position + length;
+            }
+        }
+
+        /**
+         * Get the slab of the block, positioned at the given position within the block
+         */
+        private ByteBuffer slabAt(int block, int positionInBlock) {
+            ByteBuffer slab = slabs.get(block / blocksPerSlab);
+            slab.clear();
+            slab.position((block % blocksPerSlab) * blockSize + positionInBlock);
+            return slab;
+        }
+
+        private void linkAsNewest(CachedMessage entry) {
+            entry.older = newest;
+            entry.newer = null;
+            if (null != newest) {
+                newest.newer = entry;
+            }
+            newest = entry;
+            if (null == oldest) {
+                oldest = entry;
+            }
+        }
+
+        private void unlink(CachedMessage entry) {
+            if (null != entry.newer) {
+                entry.newer.older = entry.older;
+            } else {
+                newest = entry.older;
+            }
+            if (null != entry.older) {
+                entry.older.newer = entry.newer;
+            } else {
+                oldest = entry.newer;
+            }
+            entry.newer = null;
+            entry.older = null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import org.wso2.andes.dtx.XidImpl;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.DtxStore;
+import org.wso2.andes.kernel.dtx.AndesPreparedMessageMetadata;
+import org.wso2.andes.kernel.dtx.DtxBranch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.transaction.xa.Xid;
+
+/**
+ * Distributed transaction store of the {@link FileMessageStoreImpl}. Prepared branches are written to the metadata
+ * log of the message store.
+ */
+public class FileDtxStoreImpl implements DtxStore {
+
+    private final FileMessageStoreImpl messageStore;
+
+    FileDtxStoreImpl(FileMessageStoreImpl messageStore) {
+        this.messageStore = messageStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long storeDtxRecords(Xid xid, List<AndesMessage> enqueueRecords,
+                                List<? extends AndesMessageMetadata> dequeueRecords) throws AndesException {
+        return messageStore.prepareTransaction(xid, enqueueRecords, dequeueRecords);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnCommit(long internalXid, List<AndesMessage> enqueueRecords) throws AndesException {
+        messageStore.commitTransaction(internalXid, enqueueRecords);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * File based store commits each transaction on its own since it does not share a transaction across branches
+     */
+    @Override
+    public void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) throws AndesException {
+        for (Map.Entry<Long, List<AndesMessage>> entry : enqueueRecords.entrySet()) {
+            messageStore.commitTransaction(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnOnePhaseCommit(List<AndesMessage> enqueueRecords,
+                                       List<AndesPreparedMessageMetadata> dequeueRecordsMetadata)
+            throws AndesException {
+        messageStore.commitOnePhase(enqueueRecords, dequeueRecordsMetadata);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnRollback(long internalXid, List<AndesPreparedMessageMetadata> messagesToRestore)
+            throws AndesException {
+        messageStore.rollbackTransaction(internalXid, messagesToRestore);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long recoverBranchData(DtxBranch branch, String nodeId) throws AndesException {
+        return messageStore.recoverTransaction(branch, nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<XidImpl> getStoredXidSet(String nodeId) throws AndesException {
+        return messageStore.getPreparedXids(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOperational(String testString, long testTime) {
+        return messageStore.isOperational(testString, testTime);
+    }
+}
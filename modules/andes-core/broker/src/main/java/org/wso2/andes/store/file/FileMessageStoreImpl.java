@@ -0,0 +1,2314 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.gs.collections.impl.list.mutable.primitive.IntArrayList;
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongLongHashMap;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.apache.log4j.Logger;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.util.ConfigurationProperties;
+import org.wso2.andes.dtx.XidImpl;
+import org.wso2.andes.kernel.Andes;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.DeliverableAndesMetadata;
+import org.wso2.andes.kernel.DtxStore;
+import org.wso2.andes.kernel.DurableStoreConnection;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.dtx.AndesPreparedMessageMetadata;
+import org.wso2.andes.kernel.dtx.DtxBranch;
+import org.wso2.andes.kernel.slot.RecoverySlotCreator;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.metrics.MetricsConstants;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.queue.DLCQueueUtils;
+import org.wso2.andes.tools.utils.MessageTracer;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.MetricManager;
+import org.wso2.carbon.metrics.manager.Timer.Context;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.transaction.xa.Xid;
+
+/**
+ * Message store keeping messages in append only log files on the local disk. Intended for standalone deployments
+ * where running a database only for the broker is not wanted.
+ * <p>
+ * Metadata and content are written to two separate {@link SegmentedLog}s. Every change to metadata appends a record
+ * to the metadata log, and an in memory index of each storage queue and dead letter channel points to the latest
+ * record of each message. The index is rebuilt by replaying the logs on start up. Messages of which the content was
+ * not completely written before a crash are dropped while replaying.
+ * <p>
+ * Writes of concurrent callers are made durable with shared fsync calls. Segments of which most records are no
+ * longer in use are compacted in the background by rewriting the remaining records to the end of the log.
+ * <p>
+ * Records written by a batch operation are not atomic. Part of a batch may be kept after a crash, which is the same
+ * at least once behaviour a publisher sees when the broker fails before acknowledging the batch.
+ */
+public class FileMessageStoreImpl implements MessageStore {
+
+    private static final Logger log = Logger.getLogger(FileMessageStoreImpl.class);
+
+    /**
+     * Directory holding the store files
+     */
+    static final String PROP_STORE_DIRECTORY = "storeDirectory";
+
+    /**
+     * Size in megabytes after which a new log segment is started
+     */
+    static final String PROP_SEGMENT_SIZE = "segmentSize";
+
+    /**
+     * Whether writes are synced to the storage device before they are acknowledged
+     */
+    static final String PROP_SYNC_ON_WRITE = "syncOnWrite";
+
+    /**
+     * Percentage of bytes in use below which a segment is compacted
+     */
+    static final String PROP_COMPACTION_THRESHOLD = "compactionThreshold";
+
+    /**
+     * Seconds between two compaction runs
+     */
+    static final String PROP_COMPACTION_INTERVAL = "compactionInterval";
+
+    private static final String DEFAULT_STORE_DIRECTORY = "andes-store";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64;
+
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 50;
+
+    private static final int DEFAULT_COMPACTION_INTERVAL = 30;
+
+    /**
+     * Number of records rewritten while holding the index lock during compaction
+     */
+    private static final int COMPACTION_BATCH_SIZE = 1000;
+
+    /**
+     * Metadata record types. Every metadata record starts with its type followed by the offset of the first record
+     * of the entry it belongs to.
+     */
+    private static final byte MESSAGE = 1;
+    private static final byte MESSAGE_DELETE = 2;
+    private static final byte RETAIN = 3;
+    private static final byte RETAIN_DELETE = 4;
+    private static final byte DTX_PREPARE = 5;
+    private static final byte DTX_END = 6;
+
+    /**
+     * Content record types
+     */
+    private static final byte CONTENT = 1;
+    private static final byte RETAINED_CONTENT = 2;
+
+    /**
+     * Written in place of an offset which refers to the record itself
+     */
+    private static final long SELF = -1;
+
+    /**
+     * Position of the first record offset in a metadata record
+     */
+    private static final int FIRST_OFFSET_POSITION = 1;
+
+    /**
+     * Position of the end of the range hidden by a tombstone record
+     */
+    private static final int TOMBSTONE_END_POSITION = 9;
+
+    /**
+     * Size of the fixed length fields at the start of a message record
+     */
+    private static final int MESSAGE_HEADER_SIZE = 1 + 8 + 8 + 8 + 8 + 4;
+
+    /**
+     * Location of a message in the logs
+     */
+    private static final class MessageEntry {
+
+        private final long messageId;
+
+        private final long contentId;
+
+        private final long expirationTime;
+
+        private String storageQueueName;
+
+        /**
+         * Name of the dead letter channel holding the message, null if the message is not in a dead letter channel
+         */
+        private String dlcQueueName;
+
+        /**
+         * Offset of the first record written for the message. Tombstones hide records from this offset onwards.
+         */
+        private long firstOffset;
+
+        /**
+         * Offset of the latest record of the message
+         */
+        private long recordOffset;
+
+        /**
+         * Number of content chunks the message had when it was stored. Only used while replaying.
+         */
+        private int chunkCount;
+
+        private MessageEntry(long messageId, long contentId, long expirationTime, String storageQueueName,
+                String dlcQueueName) {
+            this.messageId = messageId;
+            this.contentId = contentId;
+            this.expirationTime = expirationTime;
+            this.storageQueueName = storageQueueName;
+            this.dlcQueueName = dlcQueueName;
+        }
+    }
+
+    /**
+     * Messages of a storage queue which are not in a dead letter channel
+     */
+    private static final class QueueIndex {
+
+        private final TreeMap<Long, MessageEntry> messages = new TreeMap<>();
+
+        /**
+         * Ids of messages with an expiration time
+         */
+        private final TreeSet<Long> expiringMessages = new TreeSet<>();
+
+        private void add(MessageEntry entry) {
+            messages.put(entry.messageId, entry);
+            if (entry.expirationTime > 0) {
+                expiringMessages.add(entry.messageId);
+            }
+        }
+
+        private void remove(MessageEntry entry) {
+            messages.remove(entry.messageId);
+            if (entry.expirationTime > 0) {
+                expiringMessages.remove(entry.messageId);
+            }
+        }
+    }
+
+    /**
+     * Chunks of a message content and the number of messages and transactions referring to it
+     */
+    private static final class ContentEntry {
+
+        private final IntArrayList chunkOffsets = new IntArrayList();
+
+        private final LongArrayList recordOffsets = new LongArrayList();
+
+        private int references;
+
+        /**
+         * Add a chunk or replace the record of an existing chunk
+         *
+         * @return offset of the replaced record, -1 if the chunk is new
+         */
+        private long putChunk(int chunkOffset, long recordOffset) {
+            int index = chunkOffsets.indexOf(chunkOffset);
+            if (index < 0) {
+                chunkOffsets.add(chunkOffset);
+                recordOffsets.add(recordOffset);
+                return -1;
+            }
+            long replacedOffset = recordOffsets.get(index);
+            recordOffsets.set(index, recordOffset);
+            return replacedOffset;
+        }
+
+        private int size() {
+            return chunkOffsets.size();
+        }
+    }
+
+    /**
+     * Latest retained message of a topic
+     */
+    private static final class RetainedEntry {
+
+        private final String topic;
+
+        private final long firstOffset;
+
+        private long messageId;
+
+        private long recordOffset;
+
+        private int chunkCount;
+
+        private RetainedEntry(String topic, long firstOffset) {
+            this.topic = topic;
+            this.firstOffset = firstOffset;
+        }
+    }
+
+    /**
+     * Distributed transaction branch which is prepared but not yet committed or rolled back
+     */
+    private static final class PreparedTransaction {
+
+        private final long internalXid;
+
+        private final String nodeId;
+
+        private final int formatId;
+
+        private final byte[] globalTransactionId;
+
+        private final byte[] branchQualifier;
+
+        private final long firstOffset;
+
+        private long recordOffset;
+
+        /**
+         * Contents of enqueued and dequeued messages kept until the transaction ends
+         */
+        private final LongArrayList contentIds = new LongArrayList();
+
+        private PreparedTransaction(long internalXid, String nodeId, int formatId, byte[] globalTransactionId,
+                byte[] branchQualifier, long firstOffset) {
+            this.internalXid = internalXid;
+            this.nodeId = nodeId;
+            this.formatId = formatId;
+            this.globalTransactionId = globalTransactionId;
+            this.branchQualifier = branchQualifier;
+            this.firstOffset = firstOffset;
+            this.recordOffset = firstOffset;
+        }
+    }
+
+    private File storeDirectory;
+
+    private SegmentedLog metadataLog;
+
+    private SegmentedLog contentLog;
+
+    private double compactionThreshold;
+
+    /**
+     * Guards the index. Writers append to the logs while holding the write lock, readers read records while holding
+     * the read lock so that segments are not deleted under them.
+     */
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    private final LongObjectHashMap<MessageEntry> messages = new LongObjectHashMap<>();
+
+    private final Map<String, QueueIndex> queues = new HashMap<>();
+
+    private final Map<String, TreeMap<Long, MessageEntry>> deadLetterChannels = new HashMap<>();
+
+    private final LongObjectHashMap<ContentEntry> contents = new LongObjectHashMap<>();
+
+    private final Map<String, RetainedEntry> retainedMessages = new HashMap<>();
+
+    private final LongObjectHashMap<ContentEntry> retainedContents = new LongObjectHashMap<>();
+
+    private final LongObjectHashMap<PreparedTransaction> preparedTransactions = new LongObjectHashMap<>();
+
+    private ScheduledExecutorService compactionExecutor;
+
+    private FileDtxStoreImpl dtxStore;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DurableStoreConnection initializeMessageStore(AndesContextStore contextStore,
+            ConfigurationProperties connectionProperties) throws AndesException {
+
+        String defaultDirectory = DEFAULT_STORE_DIRECTORY;
+        String carbonHome = System.getProperty(AndesConfigurationManager.CARBON_HOME);
+        if (null != carbonHome) {
+            defaultDirectory = new File(carbonHome, "repository" + File.separator + "data" + File.separator
+                    + DEFAULT_STORE_DIRECTORY).getPath();
+        }
+        storeDirectory = new File(connectionProperties.getProperty(PROP_STORE_DIRECTORY, defaultDirectory));
+        long segmentSize = connectionProperties.getProperty(PROP_SEGMENT_SIZE, DEFAULT_SEGMENT_SIZE) * 1024L * 1024L;
+        boolean syncOnWrite = connectionProperties.getProperty(PROP_SYNC_ON_WRITE, true);
+        compactionThreshold = connectionProperties.getProperty(PROP_COMPACTION_THRESHOLD,
+                DEFAULT_COMPACTION_THRESHOLD) / 100.0;
+        int compactionInterval = connectionProperties.getProperty(PROP_COMPACTION_INTERVAL,
+                DEFAULT_COMPACTION_INTERVAL);
+
+        metadataLog = new SegmentedLog("metadata", new File(storeDirectory, "metadata"), segmentSize, syncOnWrite);
+        contentLog = new SegmentedLog("content", new File(storeDirectory, "content"), segmentSize, syncOnWrite);
+        metadataLog.open();
+        contentLog.open();
+        recover();
+
+        dtxStore = new FileDtxStoreImpl(this);
+
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("FileMessageStore-Compactor-%d").setDaemon(true).build());
+        compactionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+            }
+        }, compactionInterval, compactionInterval, TimeUnit.SECONDS);
+
+        FileStoreConnection connection = new FileStoreConnection(storeDirectory);
+        connection.initialize(connectionProperties);
+        log.info("File message store initialised in " + storeDirectory.getAbsolutePath() + " with "
+                + messages.size() + " messages");
+        return connection;
+    }
+
+    /**
+     * Rebuild the index from the logs
+     *
+     * @throws AndesException if the logs could not be read
+     */
+    private void recover() throws AndesException {
+        contentLog.replay(new SegmentedLog.RecordVisitor() {
+            @Override
+            public void visit(long offset, ByteBuffer payload) throws AndesException {
+                byte type = payload.get();
+                long contentId = payload.getLong();
+                int chunkOffset = payload.getInt();
+                LongObjectHashMap<ContentEntry> contentMap = (CONTENT == type) ? contents : retainedContents;
+                ContentEntry content = contentMap.get(contentId);
+                if (null == content) {
+                    content = new ContentEntry();
+                    contentMap.put(contentId, content);
+                }
+                content.putChunk(chunkOffset, offset);
+            }
+        });
+
+        metadataLog.replay(new SegmentedLog.RecordVisitor() {
+            @Override
+            public void visit(long offset, ByteBuffer payload) throws AndesException {
+                replayMetadataRecord(offset, payload);
+            }
+        });
+
+        // Drop messages of which the content did not reach the disk and count content references
+        List<MessageEntry> incompleteMessages = new ArrayList<>();
+        for (MessageEntry entry : messages) {
+            ContentEntry content = contents.get(entry.contentId);
+            if (entry.chunkCount > 0 && (null == content || content.size() < entry.chunkCount)) {
+                incompleteMessages.add(entry);
+            } else if (null != content) {
+                content.references++;
+            }
+        }
+        for (MessageEntry entry : incompleteMessages) {
+            log.warn("Dropping message " + entry.messageId + " of queue " + entry.storageQueueName
+                    + " since its content was not completely written");
+            unindex(entry);
+        }
+        for (PreparedTransaction transaction : preparedTransactions) {
+            for (int i = 0; i < transaction.contentIds.size(); i++) {
+                ContentEntry content = contents.get(transaction.contentIds.get(i));
+                if (null != content) {
+                    content.references++;
+                }
+            }
+        }
+        removeUnreferenced(contents);
+
+        Set<Long> retainedMessageIds = new HashSet<>();
+        List<String> incompleteTopics = new ArrayList<>();
+        for (RetainedEntry entry : retainedMessages.values()) {
+            ContentEntry content = retainedContents.get(entry.messageId);
+            if (entry.chunkCount > 0 && (null == content || content.size() < entry.chunkCount)) {
+                incompleteTopics.add(entry.topic);
+            } else {
+                retainedMessageIds.add(entry.messageId);
+            }
+        }
+        for (String topic : incompleteTopics) {
+            log.warn("Dropping retained message of topic " + topic + " since its content was not completely "
+                    + "written");
+            retainedMessages.remove(topic);
+        }
+        LongArrayList unusedRetainedContents = new LongArrayList();
+        for (long contentId : retainedContents.keySet().toArray()) {
+            if (!retainedMessageIds.contains(contentId)) {
+                unusedRetainedContents.add(contentId);
+            }
+        }
+        for (int i = 0; i < unusedRetainedContents.size(); i++) {
+            retainedContents.remove(unusedRetainedContents.get(i));
+        }
+
+        // Rebuild usage of the segments for compaction
+        for (MessageEntry entry : messages) {
+            metadataLog.markLive(entry.recordOffset);
+        }
+        for (RetainedEntry entry : retainedMessages.values()) {
+            metadataLog.markLive(entry.recordOffset);
+        }
+        for (PreparedTransaction transaction : preparedTransactions) {
+            metadataLog.markLive(transaction.recordOffset);
+        }
+        for (ContentEntry content : contents) {
+            for (int i = 0; i < content.recordOffsets.size(); i++) {
+                contentLog.markLive(content.recordOffsets.get(i));
+            }
+        }
+        for (ContentEntry content : retainedContents) {
+            for (int i = 0; i < content.recordOffsets.size(); i++) {
+                contentLog.markLive(content.recordOffsets.get(i));
+            }
+        }
+    }
+
+    /**
+     * Apply a metadata record to the index while replaying the metadata log
+     */
+    private void replayMetadataRecord(long offset, ByteBuffer payload) {
+        byte type = payload.get();
+        long firstOffset = payload.getLong();
+        if (SELF == firstOffset) {
+            firstOffset = offset;
+        }
+
+        switch (type) {
+        case MESSAGE: {
+            long messageId = payload.getLong();
+            long contentId = payload.getLong();
+            long expirationTime = payload.getLong();
+            int chunkCount = payload.getInt();
+            String storageQueueName = RecordBuffer.getString(payload);
+            String dlcQueueName = RecordBuffer.getString(payload);
+
+            MessageEntry existing = messages.get(messageId);
+            if (null != existing) {
+                unindex(existing);
+            }
+            MessageEntry entry = new MessageEntry(messageId, contentId, expirationTime, storageQueueName,
+                    dlcQueueName);
+            entry.firstOffset = firstOffset;
+            entry.recordOffset = offset;
+            entry.chunkCount = chunkCount;
+            index(entry);
+            break;
+        }
+        case MESSAGE_DELETE: {
+            long endOffset = getTombstoneEnd(offset, payload);
+            MessageEntry entry = messages.get(payload.getLong());
+            if (null != entry && entry.recordOffset >= firstOffset && entry.recordOffset < endOffset) {
+                unindex(entry);
+            }
+            break;
+        }
+        case RETAIN: {
+            long messageId = payload.getLong();
+            int chunkCount = payload.getInt();
+            String topic = RecordBuffer.getString(payload);
+            RetainedEntry entry = new RetainedEntry(topic, firstOffset);
+            entry.messageId = messageId;
+            entry.recordOffset = offset;
+            entry.chunkCount = chunkCount;
+            retainedMessages.put(topic, entry);
+            break;
+        }
+        case RETAIN_DELETE: {
+            long endOffset = getTombstoneEnd(offset, payload);
+            String topic = RecordBuffer.getString(payload);
+            RetainedEntry entry = retainedMessages.get(topic);
+            if (null != entry && entry.recordOffset >= firstOffset && entry.recordOffset < endOffset) {
+                retainedMessages.remove(topic);
+            }
+            break;
+        }
+        case DTX_PREPARE: {
+            PreparedTransaction transaction = readPreparedTransaction(payload, firstOffset);
+            transaction.recordOffset = offset;
+            preparedTransactions.put(transaction.internalXid, transaction);
+            break;
+        }
+        case DTX_END: {
+            long endOffset = getTombstoneEnd(offset, payload);
+            long internalXid = payload.getLong();
+            PreparedTransaction transaction = preparedTransactions.get(internalXid);
+            if (null != transaction && transaction.recordOffset >= firstOffset
+                    && transaction.recordOffset < endOffset) {
+                preparedTransactions.remove(internalXid);
+            }
+            break;
+        }
+        default:
+            log.warn("Ignoring metadata record of unknown type " + type + " at offset " + offset);
+        }
+    }
+
+    private static long getTombstoneEnd(long offset, ByteBuffer payload) {
+        long endOffset = payload.getLong();
+        return (SELF == endOffset) ? offset : endOffset;
+    }
+
+    private static void removeUnreferenced(LongObjectHashMap<ContentEntry> contentMap) {
+        LongArrayList unreferenced = new LongArrayList();
+        for (long contentId : contentMap.keySet().toArray()) {
+            if (contentMap.get(contentId).references <= 0) {
+                unreferenced.add(contentId);
+            }
+        }
+        for (int i = 0; i < unreferenced.size(); i++) {
+            contentMap.remove(unreferenced.get(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeMessagePart(List<AndesMessagePart> partList) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                for (AndesMessagePart part : partList) {
+                    ContentEntry content = contents.get(part.getMessageID());
+                    if (null == content) {
+                        content = new ContentEntry();
+                        contents.put(part.getMessageID(), content);
+                    }
+                    writeChunk(CONTENT, part.getMessageID(), part, content);
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AndesMessagePart getContent(long messageId, int offsetValue) throws AndesException {
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            ContentEntry content = findContent(messageId);
+            if (null == content) {
+                return null;
+            }
+            int index = content.chunkOffsets.indexOf(offsetValue);
+            if (index < 0) {
+                return null;
+            }
+            return readChunk(messageId, content.recordOffsets.get(index));
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Ids may be message ids or the content ids of messages sharing content.
+     */
+    @Override
+    public LongObjectHashMap<List<AndesMessagePart>> getContent(LongArrayList messageIDList) throws AndesException {
+        LongObjectHashMap<List<AndesMessagePart>> contentList = new LongObjectHashMap<>(messageIDList.size());
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            for (int i = 0; i < messageIDList.size(); i++) {
+                long id = messageIDList.get(i);
+                ContentEntry content = findContent(id);
+                if (null != content) {
+                    contentList.put(id, readChunks(id, content));
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+        return contentList;
+    }
+
+    /**
+     * Find the content of a message by its message id or content id
+     */
+    private ContentEntry findContent(long id) {
+        ContentEntry content = contents.get(id);
+        if (null == content) {
+            MessageEntry entry = messages.get(id);
+            if (null != entry) {
+                content = contents.get(entry.contentId);
+            }
+        }
+        return content;
+    }
+
+    private List<AndesMessagePart> readChunks(long messageId, ContentEntry content) throws AndesException {
+        List<AndesMessagePart> parts = new ArrayList<>(content.size());
+        for (int i = 0; i < content.size(); i++) {
+            parts.add(readChunk(messageId, content.recordOffsets.get(i)));
+        }
+        return parts;
+    }
+
+    private AndesMessagePart readChunk(long messageId, long recordOffset) throws AndesException {
+        ByteBuffer payload = contentLog.read(recordOffset);
+        payload.position(payload.position() + 1 + 8);
+        AndesMessagePart part = new AndesMessagePart();
+        part.setMessageID(messageId);
+        part.setOffSet(payload.getInt());
+        part.setData(RecordBuffer.getBytes(payload));
+        return part;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeMessages(List<AndesMessage> messageList) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                addMessages(messageList);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Write messages with their content. Content already in the store, such as content shared by messages of
+     * different storage queues, is referenced instead of written again. Must hold the write lock.
+     */
+    private void addMessages(List<AndesMessage> messageList) throws AndesException {
+        for (AndesMessage message : messageList) {
+            AndesMessageMetadata metadata = message.getMetadata();
+            addMessage(metadata.getMessageID(), metadata.getContentId(), metadata, message.getContentChunkList());
+        }
+    }
+
+    /**
+     * Write a message. Must hold the write lock.
+     *
+     * @param messageId id of the message
+     * @param contentId id of the content of the message
+     * @param metadata  metadata of the message
+     * @param chunks    content to write if the content is not in the store yet
+     */
+    private void addMessage(long messageId, long contentId, AndesMessageMetadata metadata,
+            List<AndesMessagePart> chunks) throws AndesException {
+        MessageEntry existing = messages.get(messageId);
+        if (null != existing) {
+            removeMessage(existing);
+        }
+
+        ContentEntry content = contents.get(contentId);
+        if (null == content) {
+            content = new ContentEntry();
+            contents.put(contentId, content);
+            for (AndesMessagePart part : chunks) {
+                writeChunk(CONTENT, contentId, part, content);
+            }
+        }
+
+        long expirationTime = metadata.isExpirationDefined() ? metadata.getExpirationTime() : 0;
+        MessageEntry entry = new MessageEntry(messageId, contentId, expirationTime,
+                metadata.getStorageQueueName(), null);
+        long offset = metadataLog.append(messageRecord(entry, SELF, content.size(), metadata.getMetadata()), true);
+        entry.firstOffset = offset;
+        entry.recordOffset = offset;
+        content.references++;
+        index(entry);
+    }
+
+    /**
+     * Write a content chunk and add it to the content entry. Must hold the write lock.
+     */
+    private void writeChunk(byte type, long contentId, AndesMessagePart part, ContentEntry content)
+            throws AndesException {
+        byte[] data = part.getData();
+        byte[] record = new RecordBuffer(type, 1 + 8 + 4 + 4 + ((null == data) ? 0 : data.length))
+                .putLong(contentId)
+                .putInt(part.getOffset())
+                .putBytes(data)
+                .toByteArray();
+        long replacedOffset = content.putChunk(part.getOffset(), contentLog.append(record, true));
+        if (replacedOffset >= 0) {
+            contentLog.release(replacedOffset);
+        }
+    }
+
+    private static byte[] messageRecord(MessageEntry entry, long firstOffset, int chunkCount, byte[] metadata) {
+        return new RecordBuffer(MESSAGE, MESSAGE_HEADER_SIZE + 256 + ((null == metadata) ? 0 : metadata.length))
+                .putLong(firstOffset)
+                .putLong(entry.messageId)
+                .putLong(entry.contentId)
+                .putLong(entry.expirationTime)
+                .putInt(chunkCount)
+                .putString(entry.storageQueueName)
+                .putString(entry.dlcQueueName)
+                .putBytes(metadata)
+                .toByteArray();
+    }
+
+    /**
+     * Remove a message and release its content if no other message refers to it. Must hold the write lock.
+     */
+    private void removeMessage(MessageEntry entry) throws AndesException {
+        RecordBuffer tombstone = new RecordBuffer(MESSAGE_DELETE, 32)
+                .putLong(entry.firstOffset)
+                .putLong(SELF)
+                .putLong(entry.messageId);
+        metadataLog.append(tombstone.toByteArray(), false);
+        metadataLog.release(entry.recordOffset);
+        unindex(entry);
+        dereferenceContent(entry.contentId);
+    }
+
+    /**
+     * Write the new location or metadata of a message. Must hold the write lock.
+     */
+    private void updateMessage(MessageEntry entry, String storageQueueName, String dlcQueueName, byte[] metadata)
+            throws AndesException {
+        if (null == metadata) {
+            metadata = readMetadata(entry);
+        }
+        ContentEntry content = contents.get(entry.contentId);
+        MessageEntry updated = new MessageEntry(entry.messageId, entry.contentId, entry.expirationTime,
+                storageQueueName, dlcQueueName);
+        long offset = metadataLog.append(messageRecord(updated, entry.firstOffset,
+                (null == content) ? 0 : content.size(), metadata), true);
+        metadataLog.release(entry.recordOffset);
+        unindex(entry);
+        updated.firstOffset = entry.firstOffset;
+        updated.recordOffset = offset;
+        index(updated);
+    }
+
+    private void dereferenceContent(long contentId) throws AndesException {
+        ContentEntry content = contents.get(contentId);
+        if (null != content) {
+            content.references--;
+            if (content.references <= 0) {
+                contents.remove(contentId);
+                releaseChunks(content);
+            }
+        }
+    }
+
+    private void releaseChunks(ContentEntry content) throws AndesException {
+        for (int i = 0; i < content.recordOffsets.size(); i++) {
+            contentLog.release(content.recordOffsets.get(i));
+        }
+    }
+
+    private void index(MessageEntry entry) {
+        messages.put(entry.messageId, entry);
+        if (null == entry.dlcQueueName) {
+            getQueueIndex(entry.storageQueueName).add(entry);
+        } else {
+            TreeMap<Long, MessageEntry> deadLetterChannel = deadLetterChannels.get(entry.dlcQueueName);
+            if (null == deadLetterChannel) {
+                deadLetterChannel = new TreeMap<>();
+                deadLetterChannels.put(entry.dlcQueueName, deadLetterChannel);
+            }
+            deadLetterChannel.put(entry.messageId, entry);
+        }
+    }
+
+    private void unindex(MessageEntry entry) {
+        messages.remove(entry.messageId);
+        if (null == entry.dlcQueueName) {
+            QueueIndex queueIndex = queues.get(entry.storageQueueName);
+            if (null != queueIndex) {
+                queueIndex.remove(entry);
+            }
+        } else {
+            TreeMap<Long, MessageEntry> deadLetterChannel = deadLetterChannels.get(entry.dlcQueueName);
+            if (null != deadLetterChannel) {
+                deadLetterChannel.remove(entry.messageId);
+            }
+        }
+    }
+
+    private QueueIndex getQueueIndex(String storageQueueName) {
+        QueueIndex queueIndex = queues.get(storageQueueName);
+        if (null == queueIndex) {
+            queueIndex = new QueueIndex();
+            queues.put(storageQueueName, queueIndex);
+        }
+        return queueIndex;
+    }
+
+    private Collection<MessageEntry> getQueueMessages(String storageQueueName) {
+        QueueIndex queueIndex = queues.get(storageQueueName);
+        return (null == queueIndex) ? Collections.<MessageEntry>emptyList() : queueIndex.messages.values();
+    }
+
+    private TreeMap<Long, MessageEntry> getDeadLetterChannel(String dlcQueueName) {
+        TreeMap<Long, MessageEntry> deadLetterChannel = deadLetterChannels.get(dlcQueueName);
+        return (null == deadLetterChannel) ? new TreeMap<Long, MessageEntry>() : deadLetterChannel;
+    }
+
+    /**
+     * Read the metadata bytes of the latest record of a message. Must hold the read or write lock.
+     */
+    private byte[] readMetadata(MessageEntry entry) throws AndesException {
+        ByteBuffer payload = metadataLog.read(entry.recordOffset);
+        payload.position(payload.position() + MESSAGE_HEADER_SIZE);
+        RecordBuffer.skipBytes(payload);
+        RecordBuffer.skipBytes(payload);
+        return RecordBuffer.getBytes(payload);
+    }
+
+    private void sync() throws AndesException {
+        contentLog.sync();
+        metadataLog.sync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveMetadataToQueue(long messageId, String currentQueueName, String targetQueueName)
+            throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                MessageEntry entry = messages.get(messageId);
+                if (null != entry && currentQueueName.equals(entry.storageQueueName)) {
+                    updateMessage(entry, targetQueueName, null, null);
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveMetadataToDLC(long messageId, String dlcQueueName) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                MessageEntry entry = messages.get(messageId);
+                if (null != entry) {
+                    updateMessage(entry, entry.storageQueueName, dlcQueueName, null);
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveMetadataToDLC(List<AndesMessageMetadata> messages, String dlcQueueName) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                for (AndesMessageMetadata metadata : messages) {
+                    MessageEntry entry = this.messages.get(metadata.getMessageID());
+                    if (null != entry) {
+                        updateMessage(entry, entry.storageQueueName, dlcQueueName, null);
+                    }
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMetadataInformation(String currentQueueName, List<AndesMessageMetadata> metadataList)
+            throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                for (AndesMessageMetadata metadata : metadataList) {
+                    MessageEntry entry = messages.get(metadata.getMessageID());
+                    if (null != entry && currentQueueName.equals(entry.storageQueueName)) {
+                        updateMessage(entry, metadata.getStorageQueueName(), entry.dlcQueueName,
+                                metadata.getMetadata());
+                    }
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AndesMessageMetadata getMetadata(long messageId) throws AndesException {
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            MessageEntry entry = messages.get(messageId);
+            if (null == entry) {
+                return null;
+            }
+            return new AndesMessageMetadata(messageId, readMetadata(entry), true);
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DeliverableAndesMetadata> getMetadataList(Slot slot, String storageQueueName, long firstMsgId,
+            long lastMsgID) throws AndesException {
+        List<DeliverableAndesMetadata> metadataList = new ArrayList<>();
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(storageQueueName);
+            if (null != queueIndex) {
+                for (MessageEntry entry : queueIndex.messages.subMap(firstMsgId, true, lastMsgID, true).values()) {
+                    DeliverableAndesMetadata metadata = new DeliverableAndesMetadata(slot, entry.messageId,
+                            readMetadata(entry), true);
+                    metadata.setStorageQueueName(storageQueueName);
+                    if (entry.contentId != entry.messageId) {
+                        metadata.setContentId(entry.contentId);
+                    }
+                    metadataList.add(metadata);
+                    MessageTracer.trace(metadata, slot, MessageTracer.METADATA_READ_FROM_DB);
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+        return metadataList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForQueueInRange(String storageQueueName, long firstMessageId, long lastMessageId)
+            throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(storageQueueName);
+            if (null == queueIndex) {
+                return 0;
+            }
+            return queueIndex.messages.subMap(firstMessageId, true, lastMessageId, true).size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AndesMessageMetadata> getNextNMessageMetadataFromQueue(String storageQueueName, long firstMsgId,
+            int count) throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(storageQueueName);
+            if (null == queueIndex) {
+                return new ArrayList<>();
+            }
+            return readMetadataList(queueIndex.messages.tailMap(firstMsgId, true).values(), storageQueueName,
+                    count);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read metadata of messages. Must hold the read lock.
+     *
+     * @param entries          messages to read in message id order
+     * @param storageQueueName storage queue name set in the metadata, the queue of the message if null
+     * @param count            maximum number of messages to read
+     */
+    private List<AndesMessageMetadata> readMetadataList(Collection<MessageEntry> entries, String storageQueueName,
+            int count) throws AndesException {
+        List<AndesMessageMetadata> metadataList = new ArrayList<>(Math.min(count, entries.size()));
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        try {
+            for (MessageEntry entry : entries) {
+                if (metadataList.size() >= count) {
+                    break;
+                }
+                AndesMessageMetadata metadata = new AndesMessageMetadata(entry.messageId, readMetadata(entry), true);
+                metadata.setStorageQueueName((null == storageQueueName) ? entry.storageQueueName : storageQueueName);
+                metadataList.add(metadata);
+            }
+        } finally {
+            contextRead.stop();
+        }
+        return metadataList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int recoverSlotsForQueue(String storageQueueName, long firstMsgId, int messageLimitPerSlot,
+            RecoverySlotCreator.CallBack callBack) throws AndesException {
+        LongArrayList messageIds = new LongArrayList();
+        indexLock.readLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(storageQueueName);
+            if (null != queueIndex) {
+                for (Long messageId : queueIndex.messages.tailMap(firstMsgId, true).keySet()) {
+                    messageIds.add(messageId);
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+
+        try {
+            for (int batchStart = 0; batchStart < messageIds.size(); batchStart += messageLimitPerSlot) {
+                int batchEnd = Math.min(batchStart + messageLimitPerSlot, messageIds.size()) - 1;
+                callBack.initializeSlotMapForQueue(storageQueueName, messageIds.get(batchStart),
+                        messageIds.get(batchEnd), messageLimitPerSlot);
+            }
+        } catch (SQLException e) {
+            throw new AndesException("Error occurred while recovering slots of queue " + storageQueueName, e);
+        }
+        return messageIds.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AndesMessageMetadata> getNextNMessageMetadataForQueueFromDLC(String storageQueueName,
+            String dlcQueueName, long firstMsgId, int count) throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            List<MessageEntry> entries = new ArrayList<>();
+            for (MessageEntry entry : getDeadLetterChannel(dlcQueueName).tailMap(firstMsgId, true).values()) {
+                if (entries.size() >= count) {
+                    break;
+                }
+                if (storageQueueName.equals(entry.storageQueueName)) {
+                    entries.add(entry);
+                }
+            }
+            return readMetadataList(entries, storageQueueName, count);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AndesMessageMetadata> getNextNMessageMetadataFromDLC(String dlcQueueName, long firstMsgId,
+            int count) throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            return readMetadataList(getDeadLetterChannel(dlcQueueName).tailMap(firstMsgId, true).values(),
+                    dlcQueueName, count);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessageMetadataFromQueue(String storageQueueName, List<AndesMessageMetadata> messagesToRemove)
+            throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                for (AndesMessageMetadata metadata : messagesToRemove) {
+                    MessageEntry entry = messages.get(metadata.getMessageID());
+                    if (null != entry && storageQueueName.equals(entry.storageQueueName)) {
+                        removeMessage(entry);
+                    }
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessages(Collection<? extends AndesMessageMetadata> messagesToRemove) throws AndesException {
+        LongArrayList messageIds = new LongArrayList(messagesToRemove.size());
+        for (AndesMessageMetadata metadata : messagesToRemove) {
+            messageIds.add(metadata.getMessageID());
+        }
+        deleteMessages(messageIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessages(List<Long> messagesToRemove) throws AndesException {
+        LongArrayList messageIds = new LongArrayList(messagesToRemove.size());
+        for (Long messageId : messagesToRemove) {
+            messageIds.add(messageId);
+        }
+        deleteMessages(messageIds);
+    }
+
+    private void deleteMessages(LongArrayList messageIds) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                removeMessages(messageIds);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Remove the messages with the given ids which are in the store. Must hold the write lock.
+     */
+    private void removeMessages(LongArrayList messageIds) throws AndesException {
+        for (int i = 0; i < messageIds.size(); i++) {
+            MessageEntry entry = messages.get(messageIds.get(i));
+            if (null != entry) {
+                removeMessage(entry);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteDLCMessages(List<AndesMessageMetadata> messagesToRemove) throws AndesException {
+        deleteMessages(messagesToRemove);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getExpiredMessages(long lowerBoundMessageID, String queueName) throws AndesException {
+        List<Long> expiredMessages = new ArrayList<>();
+        long currentTime = System.currentTimeMillis();
+        indexLock.readLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(queueName);
+            if (null != queueIndex) {
+                for (Long messageId : queueIndex.expiringMessages.tailSet(lowerBoundMessageID, true)) {
+                    if (queueIndex.messages.get(messageId).expirationTime < currentTime) {
+                        expiredMessages.add(messageId);
+                    }
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return expiredMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getExpiredMessagesFromDLC(long messageCount) throws AndesException {
+        List<Long> expiredMessages = new ArrayList<>();
+        long currentTime = System.currentTimeMillis();
+        indexLock.readLock().lock();
+        try {
+            for (TreeMap<Long, MessageEntry> deadLetterChannel : deadLetterChannels.values()) {
+                for (MessageEntry entry : deadLetterChannel.values()) {
+                    if (expiredMessages.size() >= messageCount) {
+                        return expiredMessages;
+                    }
+                    if (entry.expirationTime > 0 && entry.expirationTime < currentTime) {
+                        expiredMessages.add(entry.messageId);
+                    }
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return expiredMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMessageToExpiryQueue(Long messageId, Long expirationTime, boolean isMessageForTopic,
+            String destination) throws AndesException {
+        // Expiration times are kept with the message
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Messages of the queue which are in a dead letter channel are deleted as well.
+     */
+    @Override
+    public int deleteAllMessageMetadata(String storageQueueName) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            int deletedCount;
+            indexLock.writeLock().lock();
+            try {
+                List<MessageEntry> entries = new ArrayList<>(getQueueMessages(storageQueueName));
+                for (TreeMap<Long, MessageEntry> deadLetterChannel : deadLetterChannels.values()) {
+                    for (MessageEntry entry : deadLetterChannel.values()) {
+                        if (storageQueueName.equals(entry.storageQueueName)) {
+                            entries.add(entry);
+                        }
+                    }
+                }
+                for (MessageEntry entry : entries) {
+                    removeMessage(entry);
+                }
+                deletedCount = entries.size();
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+            return deletedCount;
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int clearDLCQueue(String dlcQueueName) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            int deletedCount;
+            indexLock.writeLock().lock();
+            try {
+                List<MessageEntry> entries = new ArrayList<>(getDeadLetterChannel(dlcQueueName).values());
+                for (MessageEntry entry : entries) {
+                    removeMessage(entry);
+                }
+                deletedCount = entries.size();
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+            return deletedCount;
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Ids of messages of the queue which are in a dead letter channel are included.
+     */
+    @Override
+    public LongArrayList getMessageIDsAddressedToQueue(String storageQueueName, Long startMessageID)
+            throws AndesException {
+        TreeSet<Long> messageIds = new TreeSet<>();
+        indexLock.readLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(storageQueueName);
+            if (null != queueIndex) {
+                messageIds.addAll(queueIndex.messages.keySet());
+            }
+            for (TreeMap<Long, MessageEntry> deadLetterChannel : deadLetterChannels.values()) {
+                for (MessageEntry entry : deadLetterChannel.values()) {
+                    if (storageQueueName.equals(entry.storageQueueName)) {
+                        messageIds.add(entry.messageId);
+                    }
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+
+        LongArrayList messageIdList = new LongArrayList(messageIds.size());
+        for (Long messageId : messageIds) {
+            messageIdList.add(messageId);
+        }
+        return messageIdList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addQueue(String storageQueueName) throws AndesException {
+        indexLock.writeLock().lock();
+        try {
+            getQueueIndex(storageQueueName);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Integer> getMessageCountForAllQueues(List<String> queueNames) throws AndesException {
+        Map<String, Integer> messageCounts = new HashMap<>();
+        indexLock.readLock().lock();
+        try {
+            for (String queueName : queueNames) {
+                if (!DLCQueueUtils.isDeadLetterQueue(queueName)) {
+                    messageCounts.put(queueName, getQueueMessages(queueName).size());
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return messageCounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForQueue(String storageQueueName) throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            return getQueueMessages(storageQueueName).size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getApproximateQueueMessageCount(String storageQueueName) throws AndesException {
+        return getMessageCountForQueue(storageQueueName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForQueueInDLC(String storageQueueName, String dlcQueueName) throws AndesException {
+        long messageCount = 0;
+        indexLock.readLock().lock();
+        try {
+            for (MessageEntry entry : getDeadLetterChannel(dlcQueueName).values()) {
+                if (storageQueueName.equals(entry.storageQueueName)) {
+                    messageCount++;
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return messageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForDLCQueue(String dlcQueueName) throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            return getDeadLetterChannel(dlcQueueName).size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resetMessageCounterForQueue(String storageQueueName) throws AndesException {
+        // Message counts are taken from the index
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The queue is kept while messages are stored for it.
+     */
+    @Override
+    public void removeQueue(String storageQueueName) throws AndesException {
+        indexLock.writeLock().lock();
+        try {
+            QueueIndex queueIndex = queues.get(storageQueueName);
+            if (null != queueIndex && queueIndex.messages.isEmpty()) {
+                queues.remove(storageQueueName);
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeLocalQueueData(String storageQueueName) {
+        // Queue data is only held in the index
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void incrementMessageCountForQueue(String storageQueueName, long incrementBy) throws AndesException {
+        // Message counts are taken from the index
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void decrementMessageCountForQueue(String storageQueueName, long decrementBy) throws AndesException {
+        // Message counts are taken from the index
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A retained message with an empty payload removes the retained message of the topic.
+     */
+    @Override
+    public void storeRetainedMessages(Map<String, AndesMessage> retainMap) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                for (AndesMessage message : retainMap.values()) {
+                    storeRetainedMessage(message);
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Replace or remove the retained message of a topic. Must hold the write lock.
+     */
+    private void storeRetainedMessage(AndesMessage message) throws AndesException {
+        AndesMessageMetadata metadata = message.getMetadata();
+        String topic = metadata.getDestination();
+        List<AndesMessagePart> chunks = message.getContentChunkList();
+        boolean emptyPayload = !chunks.isEmpty() && chunks.get(0).getDataLength() == 0;
+        RetainedEntry existing = retainedMessages.get(topic);
+
+        if (null == existing && (chunks.isEmpty() || emptyPayload)) {
+            return;
+        }
+
+        if (emptyPayload) {
+            byte[] tombstone = new RecordBuffer(RETAIN_DELETE, 64)
+                    .putLong(existing.firstOffset)
+                    .putLong(SELF)
+                    .putString(topic)
+                    .toByteArray();
+            metadataLog.append(tombstone, false);
+            metadataLog.release(existing.recordOffset);
+            retainedMessages.remove(topic);
+            releaseRetainedContent(existing.messageId);
+            return;
+        }
+
+        long messageId = metadata.getMessageID();
+        if (null != existing && existing.messageId == messageId) {
+            releaseRetainedContent(messageId);
+        }
+        ContentEntry content = new ContentEntry();
+        for (AndesMessagePart part : chunks) {
+            writeChunk(RETAINED_CONTENT, messageId, part, content);
+        }
+
+        long firstOffset = (null == existing) ? SELF : existing.firstOffset;
+        byte[] metadataBytes = metadata.getMetadata();
+        byte[] record = new RecordBuffer(RETAIN, 256 + ((null == metadataBytes) ? 0 : metadataBytes.length))
+                .putLong(firstOffset)
+                .putLong(messageId)
+                .putInt(content.size())
+                .putString(topic)
+                .putBytes(metadataBytes)
+                .toByteArray();
+        long offset = metadataLog.append(record, true);
+
+        if (null != existing) {
+            metadataLog.release(existing.recordOffset);
+            if (existing.messageId != messageId) {
+                releaseRetainedContent(existing.messageId);
+            }
+        }
+        RetainedEntry entry = new RetainedEntry(topic, (null == existing) ? offset : existing.firstOffset);
+        entry.messageId = messageId;
+        entry.recordOffset = offset;
+        retainedMessages.put(topic, entry);
+        retainedContents.put(messageId, content);
+    }
+
+    private void releaseRetainedContent(long messageId) throws AndesException {
+        ContentEntry content = retainedContents.remove(messageId);
+        if (null != content) {
+            releaseChunks(content);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getAllRetainedTopics() throws AndesException {
+        indexLock.readLock().lock();
+        try {
+            return new ArrayList<>(retainedMessages.keySet());
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, AndesMessagePart> getRetainedContentParts(long messageID) throws AndesException {
+        Map<Integer, AndesMessagePart> contentParts = new HashMap<>();
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            ContentEntry content = retainedContents.get(messageID);
+            if (null != content) {
+                for (AndesMessagePart part : readChunks(messageID, content)) {
+                    contentParts.put(part.getOffset(), part);
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+        return contentParts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliverableAndesMetadata getRetainedMetadata(String destination) throws AndesException {
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            RetainedEntry entry = retainedMessages.get(destination);
+            if (null == entry) {
+                return null;
+            }
+            return readRetainedMetadata(entry);
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DeliverableAndesMetadata> getRetainedMetadata(List<String> destinations) throws AndesException {
+        List<DeliverableAndesMetadata> metadataList = new ArrayList<>(destinations.size());
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            for (String destination : destinations) {
+                RetainedEntry entry = retainedMessages.get(destination);
+                if (null != entry) {
+                    metadataList.add(readRetainedMetadata(entry));
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+        return metadataList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LongObjectHashMap<Map<Integer, AndesMessagePart>> getRetainedContentParts(LongArrayList messageIdList)
+            throws AndesException {
+        LongObjectHashMap<Map<Integer, AndesMessagePart>> contentMap = new LongObjectHashMap<>();
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+        indexLock.readLock().lock();
+        try {
+            for (int i = 0; i < messageIdList.size(); i++) {
+                long messageId = messageIdList.get(i);
+                ContentEntry content = retainedContents.get(messageId);
+                if (null == content) {
+                    continue;
+                }
+                Map<Integer, AndesMessagePart> contentParts = new HashMap<>();
+                for (AndesMessagePart part : readChunks(messageId, content)) {
+                    contentParts.put(part.getOffset(), part);
+                }
+                contentMap.put(messageId, contentParts);
+            }
+        } finally {
+            indexLock.readLock().unlock();
+            contextRead.stop();
+        }
+        return contentMap;
+    }
+
+    /**
+     * Read the metadata of a retained message from the metadata log. Must hold the read lock.
+     */
+    private DeliverableAndesMetadata readRetainedMetadata(RetainedEntry entry) throws AndesException {
+        ByteBuffer payload = metadataLog.read(entry.recordOffset);
+        payload.position(payload.position() + 1 + 8 + 8 + 4);
+        RecordBuffer.skipBytes(payload);
+        return new DeliverableAndesMetadata(null, entry.messageId, RecordBuffer.getBytes(payload), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getMessageIdsInDLCForQueue(String sourceQueueName, String dlcQueueName, long startMessageId,
+            int messageLimit) throws AndesException {
+        List<Long> messageIds = new ArrayList<>();
+        indexLock.readLock().lock();
+        try {
+            for (MessageEntry entry : getDeadLetterChannel(dlcQueueName).tailMap(startMessageId, false).values()) {
+                if (messageIds.size() >= messageLimit) {
+                    break;
+                }
+                if (sourceQueueName.equals(entry.storageQueueName)) {
+                    messageIds.add(entry.messageId);
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return messageIds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getMessageIdsInDLC(String dlcQueueName, long startMessageId, int messageLimit)
+            throws AndesException {
+        List<Long> messageIds = new ArrayList<>();
+        indexLock.readLock().lock();
+        try {
+            for (Long messageId : getDeadLetterChannel(dlcQueueName).tailMap(startMessageId, false).keySet()) {
+                if (messageIds.size() >= messageLimit) {
+                    break;
+                }
+                messageIds.add(messageId);
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return messageIds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOperational(String testString, long testTime) {
+        return metadataLog.isWritable() && contentLog.isWritable() && storeDirectory.canWrite();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        compactionExecutor.shutdown();
+        try {
+            if (!compactionExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Compaction of the file message store did not finish before closing the store");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        indexLock.writeLock().lock();
+        try {
+            metadataLog.close();
+            contentLog.close();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DtxStore getDtxStore() {
+        return dtxStore;
+    }
+
+    /**
+     * Write the records of a prepared distributed transaction branch and remove the dequeued messages. The
+     * content of dequeued messages is kept until the branch is committed or rolled back.
+     *
+     * @param xid            xid of the branch
+     * @param enqueueRecords messages published in the branch
+     * @param dequeueRecords messages acknowledged in the branch
+     * @return internal xid of the branch
+     * @throws AndesException if the records could not be written
+     */
+    long prepareTransaction(Xid xid, List<AndesMessage> enqueueRecords,
+            List<? extends AndesMessageMetadata> dequeueRecords) throws AndesException {
+        Andes uniqueIdGenerator = Andes.getInstance();
+        String nodeId = ClusterResourceHolder.getInstance().getClusterManager().getMyNodeID();
+        long internalXid = uniqueIdGenerator.generateUniqueId();
+
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                RecordBuffer record = new RecordBuffer(DTX_PREPARE, 1024)
+                        .putLong(SELF)
+                        .putLong(internalXid)
+                        .putString(nodeId)
+                        .putInt(xid.getFormatId())
+                        .putBytes(xid.getGlobalTransactionId())
+                        .putBytes(xid.getBranchQualifier())
+                        .putInt(enqueueRecords.size());
+
+                LongArrayList contentIds = new LongArrayList();
+                for (AndesMessage message : enqueueRecords) {
+                    long temporaryMessageId = uniqueIdGenerator.generateUniqueId();
+                    ContentEntry content = new ContentEntry();
+                    contents.put(temporaryMessageId, content);
+                    for (AndesMessagePart part : message.getContentChunkList()) {
+                        writeChunk(CONTENT, temporaryMessageId, part, content);
+                    }
+                    contentIds.add(temporaryMessageId);
+                    record.putLong(temporaryMessageId).putBytes(message.getMetadata().getMetadata());
+                }
+
+                record.putInt(dequeueRecords.size());
+                for (AndesMessageMetadata metadata : dequeueRecords) {
+                    MessageEntry entry = messages.get(metadata.getMessageID());
+                    long contentId = (null == entry) ? metadata.getContentId() : entry.contentId;
+                    contentIds.add(contentId);
+                    record.putLong(metadata.getMessageID())
+                            .putLong(contentId)
+                            .putString(metadata.getStorageQueueName())
+                            .putBytes(metadata.getMetadata());
+                }
+
+                long offset = metadataLog.append(record.toByteArray(), true);
+                PreparedTransaction transaction = new PreparedTransaction(internalXid, nodeId, xid.getFormatId(),
+                        xid.getGlobalTransactionId(), xid.getBranchQualifier(), offset);
+                transaction.contentIds.addAll(contentIds);
+                for (int i = 0; i < contentIds.size(); i++) {
+                    ContentEntry content = contents.get(contentIds.get(i));
+                    if (null != content) {
+                        content.references++;
+                    }
+                }
+                preparedTransactions.put(internalXid, transaction);
+
+                for (AndesMessageMetadata metadata : dequeueRecords) {
+                    MessageEntry entry = messages.get(metadata.getMessageID());
+                    if (null != entry) {
+                        removeMessage(entry);
+                    }
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+            return internalXid;
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Read a prepared transaction record positioned after the first record offset. The enqueued and dequeued
+     * messages are skipped, only their content ids are read.
+     */
+    private static PreparedTransaction readPreparedTransaction(ByteBuffer payload, long firstOffset) {
+        long internalXid = payload.getLong();
+        String nodeId = RecordBuffer.getString(payload);
+        int formatId = payload.getInt();
+        byte[] globalTransactionId = RecordBuffer.getBytes(payload);
+        byte[] branchQualifier = RecordBuffer.getBytes(payload);
+        PreparedTransaction transaction = new PreparedTransaction(internalXid, nodeId, formatId,
+                globalTransactionId, branchQualifier, firstOffset);
+
+        int enqueueCount = payload.getInt();
+        for (int i = 0; i < enqueueCount; i++) {
+            transaction.contentIds.add(payload.getLong());
+            RecordBuffer.skipBytes(payload);
+        }
+        int dequeueCount = payload.getInt();
+        for (int i = 0; i < dequeueCount; i++) {
+            payload.getLong();
+            transaction.contentIds.add(payload.getLong());
+            RecordBuffer.skipBytes(payload);
+            RecordBuffer.skipBytes(payload);
+        }
+        return transaction;
+    }
+
+    /**
+     * Read the record of a prepared transaction positioned at the enqueued messages. Must hold the read or write
+     * lock.
+     */
+    private ByteBuffer readTransactionMessages(PreparedTransaction transaction) throws AndesException {
+        ByteBuffer payload = metadataLog.read(transaction.recordOffset);
+        payload.position(payload.position() + 1 + 8 + 8);
+        RecordBuffer.skipBytes(payload);
+        payload.getInt();
+        RecordBuffer.skipBytes(payload);
+        RecordBuffer.skipBytes(payload);
+        return payload;
+    }
+
+    /**
+     * Store the messages published in a distributed transaction branch and end the branch
+     *
+     * @param internalXid    internal xid of the branch
+     * @param enqueueRecords messages to store
+     * @throws AndesException if the records could not be written
+     */
+    void commitTransaction(long internalXid, List<AndesMessage> enqueueRecords) throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                addMessages(enqueueRecords);
+                endTransaction(internalXid);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Store the messages published and remove the messages acknowledged in a distributed transaction branch which
+     * was not prepared
+     *
+     * @param enqueueRecords messages to store
+     * @param dequeueRecords messages to remove
+     * @throws AndesException if the records could not be written
+     */
+    void commitOnePhase(List<AndesMessage> enqueueRecords, List<AndesPreparedMessageMetadata> dequeueRecords)
+            throws AndesException {
+        LongArrayList messageIds = new LongArrayList(dequeueRecords.size());
+        for (AndesMessageMetadata metadata : dequeueRecords) {
+            messageIds.add(metadata.getMessageID());
+        }
+
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                addMessages(enqueueRecords);
+                removeMessages(messageIds);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Restore the messages acknowledged in a distributed transaction branch and end the branch
+     *
+     * @param internalXid       internal xid of the branch
+     * @param messagesToRestore acknowledged messages with their new message ids
+     * @throws AndesException if the records could not be written
+     */
+    void rollbackTransaction(long internalXid, List<AndesPreparedMessageMetadata> messagesToRestore)
+            throws AndesException {
+        Context contextWrite = MetricManager.timer(MetricsConstants.DB_WRITE, Level.INFO).start();
+        try {
+            indexLock.writeLock().lock();
+            try {
+                LongLongHashMap dequeuedContentIds = new LongLongHashMap();
+                PreparedTransaction transaction = preparedTransactions.get(internalXid);
+                if (null != transaction) {
+                    ByteBuffer payload = readTransactionMessages(transaction);
+                    int enqueueCount = payload.getInt();
+                    for (int i = 0; i < enqueueCount; i++) {
+                        payload.getLong();
+                        RecordBuffer.skipBytes(payload);
+                    }
+                    int dequeueCount = payload.getInt();
+                    for (int i = 0; i < dequeueCount; i++) {
+                        dequeuedContentIds.put(payload.getLong(), payload.getLong());
+                        RecordBuffer.skipBytes(payload);
+                        RecordBuffer.skipBytes(payload);
+                    }
+                }
+
+                for (AndesPreparedMessageMetadata metadata : messagesToRestore) {
+                    long contentId = dequeuedContentIds.getIfAbsent(metadata.getOldMessageId(),
+                            metadata.getOldMessageId());
+                    addMessage(metadata.getMessageID(), contentId, metadata,
+                            Collections.<AndesMessagePart>emptyList());
+                }
+                endTransaction(internalXid);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            sync();
+        } finally {
+            contextWrite.stop();
+        }
+    }
+
+    /**
+     * Remove a prepared transaction and release the content it kept. Must hold the write lock.
+     */
+    private void endTransaction(long internalXid) throws AndesException {
+        PreparedTransaction transaction = preparedTransactions.get(internalXid);
+        if (null == transaction) {
+            return;
+        }
+        byte[] tombstone = new RecordBuffer(DTX_END, 32)
+                .putLong(transaction.firstOffset)
+                .putLong(SELF)
+                .putLong(internalXid)
+                .toByteArray();
+        metadataLog.append(tombstone, false);
+        metadataLog.release(transaction.recordOffset);
+        preparedTransactions.remove(internalXid);
+        for (int i = 0; i < transaction.contentIds.size(); i++) {
+            dereferenceContent(transaction.contentIds.get(i));
+        }
+    }
+
+    /**
+     * Load the messages of a prepared distributed transaction branch
+     *
+     * @param branch branch to recover
+     * @param nodeId node which prepared the branch
+     * @return internal xid of the branch, {@link DtxBranch#NULL_XID} if the branch is not prepared
+     * @throws AndesException if the records could not be read
+     */
+    long recoverTransaction(DtxBranch branch, String nodeId) throws AndesException {
+        Xid xid = branch.getXid();
+        indexLock.readLock().lock();
+        try {
+            PreparedTransaction transaction = null;
+            for (PreparedTransaction candidate : preparedTransactions) {
+                if (candidate.formatId == xid.getFormatId() && candidate.nodeId.equals(nodeId)
+                        && Arrays.equals(candidate.globalTransactionId, xid.getGlobalTransactionId())
+                        && Arrays.equals(candidate.branchQualifier, xid.getBranchQualifier())) {
+                    transaction = candidate;
+                    break;
+                }
+            }
+            if (null == transaction) {
+                return DtxBranch.NULL_XID;
+            }
+
+            ByteBuffer payload = readTransactionMessages(transaction);
+            List<AndesMessage> messagesToStore = new ArrayList<>();
+            int enqueueCount = payload.getInt();
+            for (int i = 0; i < enqueueCount; i++) {
+                long temporaryMessageId = payload.getLong();
+                AndesMessage message = new AndesMessage(new AndesMessageMetadata(temporaryMessageId,
+                        RecordBuffer.getBytes(payload), true));
+                ContentEntry content = contents.get(temporaryMessageId);
+                if (null != content) {
+                    message.setChunkList(readChunks(temporaryMessageId, content));
+                }
+                messagesToStore.add(message);
+            }
+
+            List<AndesPreparedMessageMetadata> messagesToRestore = new ArrayList<>();
+            int dequeueCount = payload.getInt();
+            for (int i = 0; i < dequeueCount; i++) {
+                long messageId = payload.getLong();
+                payload.getLong();
+                String storageQueueName = RecordBuffer.getString(payload);
+                AndesMessageMetadata metadata = new AndesMessageMetadata(messageId, RecordBuffer.getBytes(payload),
+                        true);
+                metadata.setStorageQueueName(storageQueueName);
+                messagesToRestore.add(new AndesPreparedMessageMetadata(metadata));
+            }
+
+            branch.setMessagesToStore(messagesToStore);
+            branch.setMessagesToRestore(messagesToRestore);
+            return transaction.internalXid;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the xids of the distributed transaction branches prepared by a node
+     *
+     * @param nodeId node id
+     * @return xids of the prepared branches
+     */
+    Set<XidImpl> getPreparedXids(String nodeId) {
+        Set<XidImpl> xids = new HashSet<>();
+        indexLock.readLock().lock();
+        try {
+            for (PreparedTransaction transaction : preparedTransactions) {
+                if (transaction.nodeId.equals(nodeId)) {
+                    xids.add(new XidImpl(transaction.branchQualifier, transaction.formatId,
+                            transaction.globalTransactionId));
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return xids;
+    }
+
+    /**
+     * Compact the segments of both logs of which most records are no longer in use
+     */
+    private void compact() {
+        try {
+            for (long baseOffset : metadataLog.getCompactionCandidates(compactionThreshold)) {
+                compactSegment(metadataLog, baseOffset, new MetadataCompactor(baseOffset));
+            }
+            for (long baseOffset : contentLog.getCompactionCandidates(compactionThreshold)) {
+                compactSegment(contentLog, baseOffset, new ContentCompactor());
+            }
+        } catch (AndesException | RuntimeException e) {
+            log.error("Error while compacting the file message store", e);
+        }
+    }
+
+    /**
+     * Rewrite the records in use of a segment to the end of the log and delete the segment. Records are rewritten
+     * in batches to let writers in between.
+     */
+    private void compactSegment(SegmentedLog segmentedLog, long baseOffset, SegmentedLog.RecordVisitor compactor)
+            throws AndesException {
+        long nextOffset = baseOffset;
+        while (nextOffset >= 0) {
+            indexLock.writeLock().lock();
+            try {
+                nextOffset = segmentedLog.visitSegment(baseOffset, nextOffset, COMPACTION_BATCH_SIZE, compactor);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        }
+
+        segmentedLog.forceSync();
+        indexLock.writeLock().lock();
+        try {
+            segmentedLog.deleteSegment(baseOffset);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Compacted segment " + baseOffset + " of the file message store");
+        }
+    }
+
+    /**
+     * Copy a record, replacing offsets which refer to the record itself with the offset of the record
+     */
+    private static byte[] copyRecord(long offset, ByteBuffer payload, int... offsetPositions) {
+        byte[] copy = new byte[payload.remaining()];
+        payload.duplicate().get(copy);
+        ByteBuffer buffer = ByteBuffer.wrap(copy);
+        for (int position : offsetPositions) {
+            if (SELF == buffer.getLong(position)) {
+                buffer.putLong(position, offset);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Rewrites metadata records which are the latest record of a message, retained topic or prepared transaction,
+     * and tombstones still hiding records in other segments
+     */
+    private final class MetadataCompactor implements SegmentedLog.RecordVisitor {
+
+        private final long baseOffset;
+
+        private MetadataCompactor(long baseOffset) {
+            this.baseOffset = baseOffset;
+        }
+
+        @Override
+        public void visit(long offset, ByteBuffer payload) throws AndesException {
+            ByteBuffer fields = payload.duplicate();
+            byte type = fields.get();
+            long firstOffset = fields.getLong();
+            if (SELF == firstOffset) {
+                firstOffset = offset;
+            }
+
+            switch (type) {
+            case MESSAGE: {
+                MessageEntry entry = messages.get(fields.getLong());
+                if (null != entry && entry.recordOffset == offset) {
+                    entry.recordOffset = metadataLog.append(copyRecord(offset, payload, FIRST_OFFSET_POSITION),
+                            true);
+                }
+                break;
+            }
+            case RETAIN: {
+                fields.getLong();
+                fields.getInt();
+                RetainedEntry entry = retainedMessages.get(RecordBuffer.getString(fields));
+                if (null != entry && entry.recordOffset == offset) {
+                    entry.recordOffset = metadataLog.append(copyRecord(offset, payload, FIRST_OFFSET_POSITION),
+                            true);
+                }
+                break;
+            }
+            case DTX_PREPARE: {
+                PreparedTransaction transaction = preparedTransactions.get(fields.getLong());
+                if (null != transaction && transaction.recordOffset == offset) {
+                    transaction.recordOffset = metadataLog.append(copyRecord(offset, payload,
+                            FIRST_OFFSET_POSITION), true);
+                }
+                break;
+            }
+            case MESSAGE_DELETE:
+            case RETAIN_DELETE:
+            case DTX_END: {
+                long endOffset = getTombstoneEnd(offset, fields);
+                if (metadataLog.hasRecordsBetween(firstOffset, endOffset, baseOffset)) {
+                    metadataLog.append(copyRecord(offset, payload, TOMBSTONE_END_POSITION), false);
+                }
+                break;
+            }
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rewrites content records which are still referred to
+     */
+    private final class ContentCompactor implements SegmentedLog.RecordVisitor {
+
+        @Override
+        public void visit(long offset, ByteBuffer payload) throws AndesException {
+            ByteBuffer fields = payload.duplicate();
+            byte type = fields.get();
+            long contentId = fields.getLong();
+            int chunkOffset = fields.getInt();
+            ContentEntry content = ((CONTENT == type) ? contents : retainedContents).get(contentId);
+            if (null == content) {
+                return;
+            }
+            int index = content.chunkOffsets.indexOf(chunkOffset);
+            if (index >= 0 && content.recordOffsets.get(index) == offset) {
+                content.recordOffsets.set(index, contentLog.append(copyRecord(offset, payload), true));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import org.wso2.andes.kernel.DurableStoreConnection;
+
+import java.io.File;
+
+/**
+ * Connection of the {@link FileMessageStoreImpl}. The store files are opened by the message store, so the connection
+ * only refers to the store directory.
+ */
+public class FileStoreConnection extends DurableStoreConnection {
+
+    private final File storeDirectory;
+
+    FileStoreConnection(File storeDirectory) {
+        this.storeDirectory = storeDirectory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // Store files are closed with the message store
+    }
+
+    /**
+     * Directory holding the store files
+     *
+     * @return the store directory
+     */
+    @Override
+    public Object getConnection() {
+        return storeDirectory;
+    }
+}
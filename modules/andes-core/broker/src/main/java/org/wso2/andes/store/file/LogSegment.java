@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * A single file of a {@link SegmentedLog}. Records are appended to the active segment of the log. When the segment
+ * is full it is sealed and memory mapped read only, so that reads of sealed segments do not need system calls.
+ * Reads of the active segment use positional reads on the file channel.
+ * <p>
+ * Interrupting a thread blocked in a file channel operation closes the channel for all threads. Since broker threads
+ * may be interrupted on shutdown, a channel closed this way is reopened and the operation is retried with the
+ * interrupt status cleared and restored afterwards.
+ */
+class LogSegment {
+
+    /**
+     * File name suffix of segment files
+     */
+    static final String FILE_SUFFIX = ".log";
+
+    private final File file;
+
+    /**
+     * Offset of the first byte of this segment in the log
+     */
+    private final long baseOffset;
+
+    private volatile FileChannel channel;
+
+    /**
+     * True after the segment is closed on purpose
+     */
+    private volatile boolean closed;
+
+    /**
+     * Number of bytes written to the segment
+     */
+    private volatile long size;
+
+    /**
+     * Number of bytes of records which are still in use
+     */
+    private long liveBytes;
+
+    /**
+     * Read only mapping of the segment. Null while the segment is active.
+     */
+    private volatile MappedByteBuffer mappedBuffer;
+
+    private LogSegment(File file, long baseOffset, FileChannel channel, long size) {
+        this.file = file;
+        this.baseOffset = baseOffset;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Open or create the segment starting at the given log offset
+     *
+     * @param directory  log directory
+     * @param baseOffset offset of the first byte of the segment in the log
+     * @return the segment
+     * @throws IOException if the file could not be opened
+     */
+    static LogSegment open(File directory, long baseOffset) throws IOException {
+        File file = new File(directory, fileName(baseOffset));
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        return new LogSegment(file, baseOffset, channel, channel.size());
+    }
+
+    /**
+     * Get the file name of the segment starting at the given offset. Names sort in offset order.
+     *
+     * @param baseOffset offset of the first byte of the segment in the log
+     * @return file name
+     */
+    static String fileName(long baseOffset) {
+        return String.format(Locale.ENGLISH, "%020d", baseOffset) + FILE_SUFFIX;
+    }
+
+    /**
+     * Append bytes at the end of the segment
+     *
+     * @param buffer bytes to write
+     * @return offset of the written bytes in the log
+     * @throws IOException if the bytes could not be written
+     */
+    long append(ByteBuffer buffer) throws IOException {
+        long position = size;
+        FileChannel currentChannel = channel;
+        try {
+            writeFully(currentChannel, buffer.duplicate(), position);
+        } catch (ClosedChannelException e) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                writeFully(reopen(currentChannel), buffer.duplicate(), position);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        size = position + buffer.remaining();
+        return baseOffset + position;
+    }
+
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        long writePosition = position;
+        while (buffer.hasRemaining()) {
+            writePosition += fileChannel.write(buffer, writePosition);
+        }
+    }
+
+    /**
+     * Read bytes of the segment
+     *
+     * @param position position within the segment
+     * @param length   number of bytes to read
+     * @return buffer holding the bytes, positioned at the first byte
+     * @throws IOException if the bytes could not be read
+     */
+    ByteBuffer read(long position, int length) throws IOException {
+        MappedByteBuffer mapped = mappedBuffer;
+        if (null != mapped) {
+            ByteBuffer slice = mapped.duplicate();
+            slice.position((int) position);
+            slice.limit((int) position + length);
+            return slice.slice();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        FileChannel currentChannel = channel;
+        try {
+            readFully(currentChannel, buffer, position);
+        } catch (ClosedChannelException e) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                buffer.clear();
+                readFully(reopen(currentChannel), buffer, position);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        long readPosition = position;
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, readPosition);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment " + file + " at " + readPosition);
+            }
+            readPosition += read;
+        }
+    }
+
+    /**
+     * Write written bytes to the storage device
+     *
+     * @throws IOException if the bytes could not be written
+     */
+    void force() throws IOException {
+        FileChannel currentChannel = channel;
+        try {
+            currentChannel.force(false);
+        } catch (ClosedChannelException e) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                reopen(currentChannel).force(false);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace a channel closed by an interrupt
+     *
+     * @param closedChannel the channel found closed
+     * @return an open channel
+     * @throws IOException if the segment was closed on purpose or the file could not be opened
+     */
+    private synchronized FileChannel reopen(FileChannel closedChannel) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (channel == closedChannel) {
+            channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+        return channel;
+    }
+
+    /**
+     * Stop appending to the segment and map it for reading
+     *
+     * @throws IOException if the segment could not be mapped
+     */
+    void seal() throws IOException {
+        force();
+        mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Discard bytes after the given position. Used to drop a partially written record after a crash.
+     *
+     * @param newSize new size of the segment
+     * @throws IOException if the file could not be truncated
+     */
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+    }
+
+    /**
+     * Close and delete the segment file. A mapping of the segment is released when it is garbage collected.
+     *
+     * @throws IOException if the file could not be deleted
+     */
+    void delete() throws IOException {
+        close();
+        mappedBuffer = null;
+        if (!file.delete()) {
+            throw new IOException("Could not delete log segment " + file);
+        }
+    }
+
+    void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getEndOffset() {
+        return baseOffset + size;
+    }
+
+    boolean isSealed() {
+        return null != mappedBuffer;
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    void addLiveBytes(long bytes) {
+        liveBytes += bytes;
+    }
+
+    File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Builds payloads of log records and reads their fields. Strings and byte arrays are written with their length,
+ * null values with length -1.
+ */
+class RecordBuffer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ByteBuffer buffer;
+
+    /**
+     * Start a record of the given type
+     *
+     * @param type         record type, written as the first byte of the payload
+     * @param expectedSize expected payload size
+     */
+    RecordBuffer(byte type, int expectedSize) {
+        buffer = ByteBuffer.allocate(Math.max(expectedSize, 16));
+        buffer.put(type);
+    }
+
+    /**
+     * Start a record without a type byte
+     *
+     * @param expectedSize expected payload size
+     */
+    RecordBuffer(int expectedSize) {
+        buffer = ByteBuffer.allocate(Math.max(expectedSize, 16));
+    }
+
+    RecordBuffer putLong(long value) {
+        ensureCapacity(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    RecordBuffer putInt(int value) {
+        ensureCapacity(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    RecordBuffer putString(String value) {
+        return putBytes((null == value) ? null : value.getBytes(UTF_8));
+    }
+
+    RecordBuffer putBytes(byte[] value) {
+        if (null == value) {
+            return putInt(-1);
+        }
+        ensureCapacity(4 + value.length);
+        buffer.putInt(value.length);
+        buffer.put(value);
+        return this;
+    }
+
+    /**
+     * @return the payload written so far
+     */
+    byte[] toByteArray() {
+        byte[] payload = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, payload, 0, payload.length);
+        return payload;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Read a string written with {@link #putString(String)}
+     *
+     * @param payload payload positioned at the string
+     * @return the string
+     */
+    static String getString(ByteBuffer payload) {
+        byte[] bytes = getBytes(payload);
+        return (null == bytes) ? null : new String(bytes, UTF_8);
+    }
+
+    /**
+     * Read a byte array written with {@link #putBytes(byte[])}
+     *
+     * @param payload payload positioned at the array
+     * @return the array
+     */
+    static byte[] getBytes(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Skip a string or byte array
+     *
+     * @param payload payload positioned at the string or array
+     */
+    static void skipBytes(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length > 0) {
+            payload.position(payload.position() + length);
+        }
+    }
+}
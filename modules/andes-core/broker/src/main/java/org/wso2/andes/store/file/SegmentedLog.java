@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import org.apache.log4j.Logger;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.store.AndesStoreUnavailableException;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of records stored in a directory as a sequence of {@link LogSegment} files. Each record is
+ * addressed by its offset in the log, which stays valid until the segment holding the record is deleted.
+ * <p>
+ * Records are framed with their length and a CRC32 checksum of the payload. When the log is opened after a crash,
+ * a partially written record at the end of the last segment is discarded.
+ * <p>
+ * Appends are written to the operating system and {@link #sync()} makes them durable. Concurrent callers of
+ * {@link #sync()} are served by a single fsync (group commit): the first caller syncs everything written so far
+ * while the others wait, and callers arriving during a sync are served together by the next one.
+ * <p>
+ * The log keeps count of the bytes of records still in use in each segment. The owner of the log releases records
+ * it no longer needs, and rewrites the records still in use of mostly unused segments to the end of the log before
+ * deleting those segments. Appends, releases and segment deletion must be serialised by the owner of the log.
+ */
+class SegmentedLog {
+
+    private static final Logger log = Logger.getLogger(SegmentedLog.class);
+
+    /**
+     * Length and checksum of a record
+     */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Callback for records read from the log
+     */
+    interface RecordVisitor {
+
+        /**
+         * Called for each record
+         *
+         * @param offset  offset of the record in the log
+         * @param payload payload of the record. Only valid during the call.
+         * @throws AndesException to stop reading records
+         */
+        void visit(long offset, ByteBuffer payload) throws AndesException;
+    }
+
+    /**
+     * Name of the log used in log messages
+     */
+    private final String name;
+
+    private final File directory;
+
+    private final long segmentSize;
+
+    private final boolean syncOnWrite;
+
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile LogSegment activeSegment;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private final Condition syncCompleted = syncLock.newCondition();
+
+    /**
+     * All bytes before this offset are durable. Guarded by the sync lock.
+     */
+    private long durableOffset;
+
+    /**
+     * True while a caller of {@link #sync()} syncs the log. Guarded by the sync lock.
+     */
+    private boolean syncInProgress;
+
+    /**
+     * Set when a failed write could not be undone. The log does not accept writes afterwards.
+     */
+    private volatile boolean failed;
+
+    /**
+     * Create a log. {@link #open()} must be called before using it.
+     *
+     * @param name        name of the log used in log messages
+     * @param directory   directory holding the segment files
+     * @param segmentSize size after which a new segment is started
+     * @param syncOnWrite true to make appends durable on {@link #sync()}
+     */
+    SegmentedLog(String name, File directory, long segmentSize, boolean syncOnWrite) {
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Open the segments of the log. Every segment but the last is mapped for reading.
+     *
+     * @throws AndesException if the segments could not be opened
+     */
+    void open() throws AndesException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new AndesException("Could not create " + name + " log directory " + directory);
+        }
+
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fileName) {
+                return fileName.endsWith(LogSegment.FILE_SUFFIX);
+            }
+        });
+
+        List<Long> baseOffsets = new ArrayList<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            try {
+                baseOffsets.add(Long.parseLong(fileName.substring(0, fileName.length()
+                        - LogSegment.FILE_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unknown file " + file + " in " + name + " log directory");
+            }
+        }
+        Collections.sort(baseOffsets);
+
+        try {
+            if (baseOffsets.isEmpty()) {
+                baseOffsets.add(0L);
+            }
+            for (int i = 0; i < baseOffsets.size(); i++) {
+                LogSegment segment = LogSegment.open(directory, baseOffsets.get(i));
+                if (i < baseOffsets.size() - 1) {
+                    segment.seal();
+                }
+                segments.put(segment.getBaseOffset(), segment);
+            }
+            activeSegment = segments.lastEntry().getValue();
+            durableOffset = activeSegment.getEndOffset();
+        } catch (IOException e) {
+            throw new AndesStoreUnavailableException("Could not open " + name + " log in " + directory, e);
+        }
+    }
+
+    /**
+     * Read all records of the log in offset order. A partially written record at the end of the log is discarded.
+     *
+     * @param visitor called for each record
+     * @throws AndesException if a record other than the last one is corrupted
+     */
+    void replay(RecordVisitor visitor) throws AndesException {
+        for (LogSegment segment : segments.values()) {
+            long position = 0;
+            while (position < segment.getSize()) {
+                ByteBuffer payload = readValidRecord(segment, position);
+                if (null == payload) {
+                    if (segment != activeSegment) {
+                        throw new AndesException("Corrupted record at offset " + (segment.getBaseOffset() + position)
+                                + " of " + name + " log segment " + segment.getFile());
+                    }
+                    log.warn("Discarding " + (segment.getSize() - position) + " bytes of an incomplete record at the"
+                            + " end of " + name + " log segment " + segment.getFile());
+                    try {
+                        segment.truncate(position);
+                    } catch (IOException e) {
+                        throw new AndesStoreUnavailableException("Could not truncate " + segment.getFile(), e);
+                    }
+                    durableOffset = segment.getEndOffset();
+                    break;
+                }
+                int length = payload.remaining();
+                visitor.visit(segment.getBaseOffset() + position, payload);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+    }
+
+    /**
+     * Read a record and verify its checksum
+     *
+     * @return payload of the record, null if the record is incomplete or corrupted
+     */
+    private ByteBuffer readValidRecord(LogSegment segment, long position) throws AndesException {
+        try {
+            if (segment.getSize() - position < RECORD_HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = segment.read(position, RECORD_HEADER_SIZE);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || segment.getSize() - position - RECORD_HEADER_SIZE < length) {
+                return null;
+            }
+
+            ByteBuffer payload = segment.read(position + RECORD_HEADER_SIZE, length);
+            byte[] bytes = new byte[length];
+            payload.duplicate().get(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            return payload;
+        } catch (IOException e) {
+            throw new AndesStoreUnavailableException("Could not read " + name + " log segment " + segment.getFile(),
+                    e);
+        }
+    }
+
+    /**
+     * Append a record to the log. A new segment is started if the record does not fit in the active segment.
+     *
+     * @param payload payload of the record
+     * @param live    true if the record is in use until it is released. Tombstones which are only needed while
+     *                older records exist are not counted as live.
+     * @return offset of the record
+     * @throws AndesException if the record could not be written
+     */
+    synchronized long append(byte[] payload, boolean live) throws AndesException {
+        if (failed) {
+            throw new AndesStoreUnavailableException("The " + name + " log is not writable after an earlier "
+                    + "write error", null);
+        }
+
+        long recordSize = RECORD_HEADER_SIZE + payload.length;
+        LogSegment segment = activeSegment;
+        long sizeBeforeWrite = segment.getSize();
+        try {
+            if (sizeBeforeWrite > 0 && sizeBeforeWrite + recordSize > segmentSize) {
+                segment = roll();
+                sizeBeforeWrite = 0;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer buffer = ByteBuffer.allocate((int) recordSize);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            buffer.flip();
+
+            long offset = segment.append(buffer);
+            if (live) {
+                segment.addLiveBytes(recordSize);
+            }
+            return offset;
+        } catch (IOException e) {
+            try {
+                segment.truncate(sizeBeforeWrite);
+            } catch (IOException truncateError) {
+                log.error("Could not undo failed write to " + segment.getFile(), truncateError);
+                failed = true;
+            }
+            throw new AndesStoreUnavailableException("Could not write to " + name + " log", e);
+        }
+    }
+
+    /**
+     * Seal the active segment and start a new one
+     *
+     * @return the new active segment
+     * @throws IOException if the segment could not be sealed or created
+     */
+    private LogSegment roll() throws IOException {
+        LogSegment sealedSegment = activeSegment;
+        sealedSegment.seal();
+        LogSegment newSegment = LogSegment.open(directory, sealedSegment.getEndOffset());
+        segments.put(newSegment.getBaseOffset(), newSegment);
+        activeSegment = newSegment;
+
+        syncLock.lock();
+        try {
+            durableOffset = Math.max(durableOffset, sealedSegment.getEndOffset());
+        } finally {
+            syncLock.unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Started " + name + " log segment " + newSegment.getFile());
+        }
+        return newSegment;
+    }
+
+    /**
+     * Read the payload of a record
+     *
+     * @param offset offset of the record
+     * @return payload of the record. A view of the mapped segment for sealed segments, which must not be used after
+     * the segment is deleted.
+     * @throws AndesException if the record could not be read
+     */
+    ByteBuffer read(long offset) throws AndesException {
+        LogSegment segment = getSegment(offset);
+        long position = offset - segment.getBaseOffset();
+        try {
+            int length = segment.read(position, RECORD_HEADER_SIZE).getInt();
+            return segment.read(position + RECORD_HEADER_SIZE, length);
+        } catch (IOException e) {
+            throw new AndesStoreUnavailableException("Could not read offset " + offset + " of " + name + " log", e);
+        }
+    }
+
+    /**
+     * Make all records appended before this call durable. Returns without waiting if sync on write is disabled.
+     *
+     * @throws AndesException if the log could not be synced
+     */
+    void sync() throws AndesException {
+        if (syncOnWrite) {
+            forceSync();
+        }
+    }
+
+    /**
+     * Make all records appended before this call durable regardless of the sync on write setting. Used before
+     * deleting segments whose records in use were rewritten.
+     *
+     * @throws AndesException if the log could not be synced
+     */
+    void forceSync() throws AndesException {
+        long requiredOffset = activeSegment.getEndOffset();
+        syncLock.lock();
+        try {
+            while (durableOffset < requiredOffset) {
+                if (syncInProgress) {
+                    syncCompleted.awaitUninterruptibly();
+                    continue;
+                }
+
+                syncInProgress = true;
+                LogSegment segment = activeSegment;
+                long targetOffset = segment.getEndOffset();
+                syncLock.unlock();
+                try {
+                    segment.force();
+                } catch (IOException e) {
+                    throw new AndesStoreUnavailableException("Could not sync " + name + " log", e);
+                } finally {
+                    syncLock.lock();
+                    syncInProgress = false;
+                    syncCompleted.signalAll();
+                }
+                durableOffset = Math.max(durableOffset, targetOffset);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Mark a record as no longer in use
+     *
+     * @param offset offset of the record
+     * @throws AndesException if the record could not be read
+     */
+    synchronized void release(long offset) throws AndesException {
+        getSegment(offset).addLiveBytes(-recordSize(offset));
+    }
+
+    /**
+     * Mark a record as in use. Used to rebuild usage of segments after the log is replayed.
+     *
+     * @param offset offset of the record
+     * @throws AndesException if the record could not be read
+     */
+    synchronized void markLive(long offset) throws AndesException {
+        getSegment(offset).addLiveBytes(recordSize(offset));
+    }
+
+    private long recordSize(long offset) throws AndesException {
+        LogSegment segment = getSegment(offset);
+        try {
+            return RECORD_HEADER_SIZE + segment.read(offset - segment.getBaseOffset(), RECORD_HEADER_SIZE).getInt();
+        } catch (IOException e) {
+            throw new AndesStoreUnavailableException("Could not read offset " + offset + " of " + name + " log", e);
+        }
+    }
+
+    /**
+     * Get the sealed segments of which at most the given fraction of bytes is in use, oldest first
+     *
+     * @param maxLiveRatio fraction of bytes in use, between 0 and 1
+     * @return base offsets of the segments
+     */
+    synchronized List<Long> getCompactionCandidates(double maxLiveRatio) {
+        List<Long> candidates = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            if (segment.isSealed() && segment.getLiveBytes() <= segment.getSize() * maxLiveRatio) {
+                candidates.add(segment.getBaseOffset());
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Read records of a sealed segment
+     *
+     * @param baseOffset base offset of the segment
+     * @param fromOffset offset of the first record to read
+     * @param maxRecords maximum number of records to read
+     * @param visitor    called for each record
+     * @return offset of the next record of the segment, -1 if all records were read
+     * @throws AndesException if the records could not be read
+     */
+    long visitSegment(long baseOffset, long fromOffset, int maxRecords, RecordVisitor visitor)
+            throws AndesException {
+        LogSegment segment = segments.get(baseOffset);
+        long position = fromOffset - baseOffset;
+        for (int i = 0; i < maxRecords && position < segment.getSize(); i++) {
+            ByteBuffer payload = read(baseOffset + position);
+            int length = payload.remaining();
+            visitor.visit(baseOffset + position, payload);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return (position < segment.getSize()) ? baseOffset + position : -1;
+    }
+
+    /**
+     * Delete a sealed segment. The records still in use must have been rewritten and synced before.
+     *
+     * @param baseOffset base offset of the segment
+     * @throws AndesException if the segment could not be deleted
+     */
+    synchronized void deleteSegment(long baseOffset) throws AndesException {
+        LogSegment segment = segments.get(baseOffset);
+        if (segment == activeSegment) {
+            throw new IllegalStateException("The active segment of the " + name + " log cannot be deleted");
+        }
+        segments.remove(baseOffset);
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            throw new AndesStoreUnavailableException("Could not delete " + name + " log segment "
+                    + segment.getFile(), e);
+        }
+    }
+
+    /**
+     * Check whether any segment other than the excluded one holds bytes in the given offset range. Used to decide
+     * whether a tombstone is still needed to hide older records of a removed entry.
+     *
+     * @param fromOffset   start of the range, inclusive
+     * @param toOffset     end of the range, exclusive
+     * @param excludedBase base offset of a segment to ignore
+     * @return true if such a segment exists
+     */
+    boolean hasRecordsBetween(long fromOffset, long toOffset, long excludedBase) {
+        for (LogSegment segment : segments.headMap(toOffset, false).descendingMap().values()) {
+            if (segment.getEndOffset() <= fromOffset) {
+                return false;
+            }
+            if (segment.getBaseOffset() != excludedBase) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write everything to the storage device and close the segments
+     */
+    synchronized void close() {
+        try {
+            activeSegment.force();
+        } catch (IOException e) {
+            log.error("Could not sync " + name + " log on close", e);
+        }
+        for (LogSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.error("Could not close " + name + " log segment " + segment.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * @return false if a failed write left the log in an unknown state
+     */
+    boolean isWritable() {
+        return !failed;
+    }
+
+    /**
+     * @return offset after the last record of the log
+     */
+    long getEndOffset() {
+        return activeSegment.getEndOffset();
+    }
+
+    /**
+     * @return number of segments of the log
+     */
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    private LogSegment getSegment(long offset) {
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+        if (null == entry || entry.getValue().getEndOffset() <= offset) {
+            throw new IllegalArgumentException("Offset " + offset + " is not in the " + name + " log");
+        }
+        return entry.getValue();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.rdbms;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to shards with consistent hashing. Each shard is placed on the hash ring at several points derived from
+ * its name, so the mapping does not depend on the order shards are configured in and adding a shard moves only the
+ * keys falling between its points and their predecessors.
+ * <p>
+ * Instances are immutable.
+ */
+class ConsistentHashRing {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * Names of the shards. The position in the list is the shard index.
+     */
+    private final List<String> shardNames;
+
+    private final int virtualNodesPerShard;
+
+    /**
+     * Points on the ring mapped to shard indexes
+     */
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    /**
+     * Create a ring
+     *
+     * @param shardNames           unique names of the shards
+     * @param virtualNodesPerShard number of points of each shard on the ring
+     */
+    ConsistentHashRing(List<String> shardNames, int virtualNodesPerShard) {
+        if (shardNames.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        if (virtualNodesPerShard < 1) {
+            throw new IllegalArgumentException("Number of virtual nodes must be positive");
+        }
+
+        this.shardNames = Collections.unmodifiableList(new ArrayList<>(shardNames));
+        this.virtualNodesPerShard = virtualNodesPerShard;
+
+        for (int shard = 0; shard < shardNames.size(); shard++) {
+            for (int node = 0; node < virtualNodesPerShard; node++) {
+                ring.put(hash(shardNames.get(shard) + "#" + node), shard);
+            }
+        }
+    }
+
+    /**
+     * Get the shard of a key
+     *
+     * @param key key such as a storage queue name
+     * @return shard index
+     */
+    int getShard(String key) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        if (null == entry) {
+            entry = ring.firstEntry();
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * Create a ring with an additional shard. The new shard gets the next index.
+     *
+     * @param shardName name of the new shard
+     * @return new ring
+     */
+    ConsistentHashRing withShard(String shardName) {
+        if (shardNames.contains(shardName)) {
+            throw new IllegalArgumentException("Shard " + shardName + " is already in the ring");
+        }
+        List<String> names = new ArrayList<>(shardNames);
+        names.add(shardName);
+        return new ConsistentHashRing(names, virtualNodesPerShard);
+    }
+
+    /**
+     * @return names of the shards ordered by shard index
+     */
+    List<String> getShardNames() {
+        return shardNames;
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+}
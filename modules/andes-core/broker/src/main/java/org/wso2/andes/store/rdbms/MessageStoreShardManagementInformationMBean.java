@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.rdbms;
+
+import org.apache.log4j.Logger;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.ClusterNotificationListener;
+import org.wso2.andes.management.common.mbeans.MessageStoreShardManagementInformation;
+import org.wso2.andes.management.common.mbeans.annotations.MBeanConstructor;
+import org.wso2.andes.server.cluster.coordination.CoordinationComponentFactory;
+import org.wso2.andes.server.management.AMQManagedObject;
+
+import java.util.List;
+import javax.management.JMException;
+
+/**
+ * MBean exposing the shards of a {@link ShardedMessageStoreImpl}. Shards added through the MBean are added in the
+ * local node and notified to the other nodes of the cluster.
+ */
+public class MessageStoreShardManagementInformationMBean extends AMQManagedObject
+        implements MessageStoreShardManagementInformation {
+
+    private static final Logger log = Logger.getLogger(MessageStoreShardManagementInformationMBean.class);
+
+    private final ShardedMessageStoreImpl messageStore;
+
+    /**
+     * Public MBean Constructor.
+     *
+     * @param messageStore sharded message store to expose
+     * @throws JMException
+     */
+    @MBeanConstructor("Creates an MBean exposing the shards of the message store")
+    public MessageStoreShardManagementInformationMBean(ShardedMessageStoreImpl messageStore) throws JMException {
+        super(MessageStoreShardManagementInformation.class, MessageStoreShardManagementInformation.TYPE);
+        this.messageStore = messageStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getObjectInstanceName() {
+        return MessageStoreShardManagementInformation.TYPE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getShardDataSources() {
+        return messageStore.getShardDataSources();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getMovingQueues() {
+        return messageStore.getMovingQueues();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addShard(String dataSourceName) throws JMException {
+        try {
+            // A shard added in this node before notifying the cluster failed is only notified again
+            if (!messageStore.getShardDataSources().contains(dataSourceName)) {
+                messageStore.addShard(dataSourceName);
+            }
+            new CoordinationComponentFactory().createClusterNotificationAgent().notifyMessageStoreShardChange(
+                    dataSourceName, ClusterNotificationListener.MessageStoreShardChange.Added);
+        } catch (AndesException e) {
+            log.error("Error occurred while adding shard " + dataSourceName, e);
+            throw new JMException("Error occurred while adding shard " + dataSourceName + ": " + e.getMessage());
+        }
+    }
+}
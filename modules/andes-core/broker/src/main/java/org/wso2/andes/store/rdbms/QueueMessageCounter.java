@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.rdbms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+import org.wso2.andes.server.queue.DLCQueueUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the number of messages in each storage queue in memory so that message counts can be served without
+ * counting rows of the metadata table.
+ * <p>
+ * The message store updates the counters after each committed write or delete. Changes are periodically flushed to
+ * the queue counter table of the context store as increments and decrements, which keeps the table correct while
+ * several nodes write to the same queue. In a cluster the in memory count is refreshed from the queue counter table
+ * after each flush so that it includes the changes made by other nodes.
+ * <p>
+ * Counters are reconciled with the metadata table at a fixed interval and whenever the store changed messages
+ * without knowing their queue. Only the coordinator, or a standalone node, corrects the queue counter table
+ * during reconciliation. Dead letter channel queues are not counted.
+ */
+class QueueMessageCounter {
+
+    private static final Logger log = Logger.getLogger(QueueMessageCounter.class);
+
+    /**
+     * Counts messages of a storage queue from the message store
+     */
+    interface MessageCountSource {
+
+        /**
+         * Count messages of a queue which are not in the dead letter channel
+         *
+         * @param storageQueueName name of the storage queue
+         * @return number of messages in the queue
+         * @throws AndesException on a store error
+         */
+        long countMessages(String storageQueueName) throws AndesException;
+    }
+
+    /**
+     * Source of message counts of all queues
+     */
+    interface AllCountsSource {
+
+        /**
+         * Count messages of every queue
+         *
+         * @return message count for each queue
+         * @throws AndesException on a store error
+         */
+        Map<String, Integer> countAllMessages() throws AndesException;
+    }
+
+    /**
+     * Decides which storage queues are counted
+     */
+    interface QueueFilter {
+
+        /**
+         * Check whether a queue should be counted
+         *
+         * @param storageQueueName name of the storage queue
+         * @return true if the queue is counted
+         */
+        boolean isCounted(String storageQueueName);
+    }
+
+    /**
+     * Message count of a single storage queue. Changes of the count are applied together, so that a count of the
+     * metadata table can be corrected with the changes recorded while it was counted.
+     */
+    private static class QueueCount {
+
+        /**
+         * Count served to readers
+         */
+        private long count;
+
+        /**
+         * Changes which are not yet written to the queue counter table
+         */
+        private long unflushed;
+
+        /**
+         * Sum of all recorded changes. The difference of two readings is the change recorded in between.
+         */
+        private long recorded;
+
+        private QueueCount(long count) {
+            this.count = count;
+        }
+
+        private synchronized void add(long delta) {
+            count += delta;
+            unflushed += delta;
+            recorded += delta;
+        }
+
+        private synchronized long getCount() {
+            return count;
+        }
+
+        private synchronized long getRecorded() {
+            return recorded;
+        }
+
+        private synchronized long takeUnflushed() {
+            long delta = unflushed;
+            unflushed = 0;
+            return delta;
+        }
+
+        private synchronized void restoreUnflushed(long delta) {
+            unflushed += delta;
+        }
+
+        /**
+         * Take the count of the queue counter table, which lacks the changes not yet flushed
+         *
+         * @param storedCount count of the queue counter table
+         */
+        private synchronized void refresh(long storedCount) {
+            count = storedCount + unflushed;
+        }
+
+        /**
+         * Take a count of the metadata table. Changes recorded before the count started are part of it, while
+         * changes recorded since are added.
+         *
+         * @param countedMessages number of messages counted in the metadata table
+         * @param recordedBefore  sum of recorded changes read before the count started
+         * @return count the queue counter table should have, i.e. the count without changes not yet flushed
+         */
+        private synchronized long reconcile(long countedMessages, long recordedBefore) {
+            count = countedMessages + recorded - recordedBefore;
+            return count - unflushed;
+        }
+    }
+
+    private final ConcurrentHashMap<String, QueueCount> queueCounts = new ConcurrentHashMap<>();
+
+    private final AndesContextStore contextStore;
+
+    private final MessageCountSource countSource;
+
+    /**
+     * Limits the counted queues. Null to count every queue except dead letter channel queues.
+     */
+    private final QueueFilter queueFilter;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final int flushInterval;
+
+    private final long reconcileIntervalMillis;
+
+    /**
+     * Time of the last reconciliation. Only accessed by the scheduler thread.
+     */
+    private long lastReconcileTime;
+
+    /**
+     * Set when messages were changed without knowing their queue
+     */
+    private volatile boolean reconcileRequested;
+
+    /**
+     * Create a counter. Call {@link #start()} to start the periodic flush and reconciliation.
+     *
+     * @param contextStore      context store holding the cluster wide queue counters
+     * @param countSource       source of exact message counts used for reconciliation
+     * @param queueFilter       limits the counted queues, null to count every queue
+     * @param flushInterval     seconds between two flushes to the queue counter table
+     * @param reconcileInterval seconds between two reconciliations with the metadata table
+     */
+    QueueMessageCounter(AndesContextStore contextStore, MessageCountSource countSource, QueueFilter queueFilter,
+                        int flushInterval, int reconcileInterval) {
+        this.contextStore = contextStore;
+        this.countSource = countSource;
+        this.queueFilter = queueFilter;
+        this.flushInterval = flushInterval;
+        this.reconcileIntervalMillis = TimeUnit.SECONDS.toMillis(reconcileInterval);
+
+        ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("QueueMessageCounter-%d")
+                .setDaemon(true).build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(namedThreadFactory);
+    }
+
+    /**
+     * Start flushing and reconciling counters. The first run reconciles every queue.
+     */
+    void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushAndReconcile();
+                } catch (Throwable e) {
+                    log.error("Error while updating queue message counters", e);
+                }
+            }
+        }, 0, flushInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic task and flush pending changes
+     */
+    void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushInterval, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Check whether the queue is counted by this counter
+     *
+     * @param storageQueueName name of the storage queue
+     * @return false for dead letter channel queues and queues rejected by the queue filter
+     */
+    boolean isCounted(String storageQueueName) {
+        return !DLCQueueUtils.isDeadLetterQueue(storageQueueName)
+                && (null == queueFilter || queueFilter.isCounted(storageQueueName));
+    }
+
+    /**
+     * Get the message count of a queue. The count is loaded from the message store on the first request for a queue
+     * which is not yet known.
+     *
+     * @param storageQueueName name of the storage queue
+     * @return number of messages in the queue
+     * @throws AndesException if the count could not be loaded
+     */
+    long getMessageCount(String storageQueueName) throws AndesException {
+        QueueCount queueCount = queueCounts.get(storageQueueName);
+        if (null == queueCount) {
+            queueCount = load(storageQueueName, countSource.countMessages(storageQueueName));
+        }
+        return Math.max(0, queueCount.getCount());
+    }
+
+    /**
+     * Get message counts of several queues, loading unknown queues with a single query
+     *
+     * @param storageQueueNames names of the storage queues
+     * @param allCountsSource   provides counts of every queue when some queues are not known yet
+     * @return message count for each counted queue
+     * @throws AndesException if the counts could not be loaded
+     */
+    Map<String, Integer> getMessageCounts(List<String> storageQueueNames, AllCountsSource allCountsSource)
+            throws AndesException {
+        Map<String, Integer> messageCounts = new HashMap<>(storageQueueNames.size());
+        Map<String, Integer> loadedCounts = null;
+        for (String storageQueueName : storageQueueNames) {
+            if (!isCounted(storageQueueName)) {
+                continue;
+            }
+            QueueCount queueCount = queueCounts.get(storageQueueName);
+            if (null == queueCount) {
+                if (null == loadedCounts) {
+                    loadedCounts = allCountsSource.countAllMessages();
+                }
+                Integer loadedCount = loadedCounts.get(storageQueueName);
+                if (null == loadedCount) {
+                    continue;
+                }
+                queueCount = load(storageQueueName, loadedCount);
+            }
+            messageCounts.put(storageQueueName, (int) Math.max(0, queueCount.getCount()));
+        }
+        return messageCounts;
+    }
+
+    /**
+     * Record committed messages
+     *
+     * @param messages stored messages
+     */
+    void messagesStored(List<AndesMessage> messages) {
+        Map<String, Long> deltas = new HashMap<>();
+        for (AndesMessage message : messages) {
+            addDelta(deltas, message.getMetadata().getStorageQueueName(), 1);
+        }
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Record committed metadata inserts of previously deleted messages
+     *
+     * @param messages restored messages
+     */
+    void messagesRestored(Collection<? extends AndesMessageMetadata> messages) {
+        Map<String, Long> deltas = new HashMap<>();
+        for (AndesMessageMetadata message : messages) {
+            addDelta(deltas, message.getStorageQueueName(), 1);
+        }
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Record committed message deletions
+     *
+     * @param messages deleted messages
+     */
+    void messagesRemoved(Collection<? extends AndesMessageMetadata> messages) {
+        Map<String, Long> deltas = new HashMap<>();
+        for (AndesMessageMetadata message : messages) {
+            addDelta(deltas, message.getStorageQueueName(), -1);
+        }
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Record a committed change of the message count of a queue
+     *
+     * @param storageQueueName name of the storage queue
+     * @param delta            change of the message count
+     */
+    void countChanged(String storageQueueName, long delta) {
+        QueueCount queueCount = queueCounts.get(storageQueueName);
+        if (null != queueCount) {
+            queueCount.add(delta);
+        }
+    }
+
+    /**
+     * Make sure the queue has a row in the queue counter table
+     *
+     * @param storageQueueName name of the storage queue
+     * @throws AndesException on a context store error
+     */
+    void queueAdded(String storageQueueName) throws AndesException {
+        if (isCounted(storageQueueName)) {
+            contextStore.addMessageCounterForQueue(storageQueueName);
+        }
+    }
+
+    /**
+     * Forget the counter of a deleted queue
+     *
+     * @param storageQueueName name of the storage queue
+     * @throws AndesException on a context store error
+     */
+    void queueRemoved(String storageQueueName) throws AndesException {
+        forgetQueue(storageQueueName);
+        contextStore.removeMessageCounterForQueue(storageQueueName);
+    }
+
+    /**
+     * Forget the in memory counter of a queue deleted by another node
+     *
+     * @param storageQueueName name of the storage queue
+     */
+    void forgetQueue(String storageQueueName) {
+        queueCounts.remove(storageQueueName);
+    }
+
+    /**
+     * Reload the count of a queue after messages were removed in bulk
+     *
+     * @param storageQueueName name of the storage queue
+     * @throws AndesException if the count could not be loaded
+     */
+    void queuePurged(String storageQueueName) throws AndesException {
+        QueueCount queueCount = queueCounts.get(storageQueueName);
+        if (null != queueCount) {
+            long recordedBefore = queueCount.getRecorded();
+            queueCount.reconcile(countSource.countMessages(storageQueueName), recordedBefore);
+        }
+        reconcileRequested = true;
+    }
+
+    /**
+     * Reconcile all counters on the next run since messages were changed without knowing their queue
+     */
+    void requestReconcile() {
+        reconcileRequested = true;
+    }
+
+    private QueueCount load(String storageQueueName, long count) {
+        QueueCount queueCount = new QueueCount(count);
+        QueueCount existing = queueCounts.putIfAbsent(storageQueueName, queueCount);
+        return (null == existing) ? queueCount : existing;
+    }
+
+    private void addDelta(Map<String, Long> deltas, String storageQueueName, long delta) {
+        Long current = deltas.get(storageQueueName);
+        deltas.put(storageQueueName, (null == current) ? delta : current + delta);
+    }
+
+    private void applyDeltas(Map<String, Long> deltas) {
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            countChanged(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Flush pending changes and reconcile or refresh the counters. Run periodically by the scheduler.
+     *
+     * @throws AndesException on a store error
+     */
+    void flushAndReconcile() throws AndesException {
+        flush();
+
+        long now = System.currentTimeMillis();
+        if (reconcileRequested || now - lastReconcileTime >= reconcileIntervalMillis) {
+            reconcileRequested = false;
+            lastReconcileTime = now;
+            reconcile();
+        } else if (AndesContext.getInstance().isClusteringEnabled()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Write pending changes to the queue counter table
+     */
+    private void flush() {
+        for (Map.Entry<String, QueueCount> entry : queueCounts.entrySet()) {
+            QueueCount queueCount = entry.getValue();
+            long delta = queueCount.takeUnflushed();
+            if (0 == delta) {
+                continue;
+            }
+            try {
+                if (delta > 0) {
+                    contextStore.incrementMessageCountForQueue(entry.getKey(), delta);
+                } else {
+                    contextStore.decrementMessageCountForQueue(entry.getKey(), -delta);
+                }
+            } catch (AndesException e) {
+                queueCount.restoreUnflushed(delta);
+                log.warn("Could not update message counter of queue " + entry.getKey()
+                        + ". It will be retried with the next flush.", e);
+            }
+        }
+    }
+
+    /**
+     * Take the cluster wide counts from the queue counter table
+     *
+     * @throws AndesException on a context store error
+     */
+    private void refresh() throws AndesException {
+        for (Map.Entry<String, QueueCount> entry : queueCounts.entrySet()) {
+            entry.getValue().refresh(contextStore.getMessageCountForQueue(entry.getKey()));
+        }
+    }
+
+    /**
+     * Count messages of every queue in the message store and correct the counters
+     *
+     * @throws AndesException on a store error
+     */
+    private void reconcile() throws AndesException {
+        boolean updateStoredCounters = !AndesContext.getInstance().isClusteringEnabled()
+                || AndesContext.getInstance().getClusterAgent().isCoordinator();
+
+        for (StorageQueue storageQueue : contextStore.getAllQueuesStored()) {
+            String storageQueueName = storageQueue.getName();
+            if (!isCounted(storageQueueName)) {
+                continue;
+            }
+            QueueCount queueCount = queueCounts.get(storageQueueName);
+            long recordedBefore = (null == queueCount) ? 0 : queueCount.getRecorded();
+            long countedMessages = countSource.countMessages(storageQueueName);
+            if (null == queueCount) {
+                queueCount = load(storageQueueName, countedMessages);
+                recordedBefore = queueCount.getRecorded();
+            }
+            // The queue counter table gets the changes not yet flushed with the next flush
+            long flushedCount = queueCount.reconcile(countedMessages, recordedBefore);
+
+            if (updateStoredCounters) {
+                contextStore.addMessageCounterForQueue(storageQueueName);
+                long storedCount = contextStore.getMessageCountForQueue(storageQueueName);
+                if (storedCount < flushedCount) {
+                    contextStore.incrementMessageCountForQueue(storageQueueName, flushedCount - storedCount);
+                } else if (storedCount > flushedCount) {
+                    contextStore.decrementMessageCountForQueue(storageQueueName, storedCount - flushedCount);
+                }
+            }
+        }
+    }
+}
@@ -91,6 +91,7 @@ public class RDBMSConstants {
     protected static final String MSG_STORE_STATUS_TABLE = "MB_MSG_STORE_STATUS";
     protected static final String RETAINED_METADATA_TABLE = "MB_RETAINED_METADATA";
     protected static final String RETAINED_CONTENT_TABLE = "MB_RETAINED_CONTENT";
+    protected static final String CONTENT_REFERENCE_TABLE = "MB_CONTENT_REFERENCE";
     // Message Store table columns
     protected static final String MESSAGE_ID = "MESSAGE_ID";
     protected static final String INTERNAL_XID = "INTERNAL_XID";
@@ -103,6 +104,7 @@ public class RDBMSConstants {
     protected static final String METADATA = "MESSAGE_METADATA";
     protected static final String MSG_OFFSET = "CONTENT_OFFSET";
     protected static final String MESSAGE_CONTENT = "MESSAGE_CONTENT";
+    protected static final String CONTENT_ID = "CONTENT_ID";
     protected static final String EXPIRATION_TIME = "EXPIRATION_TIME";
     protected static final String DESTINATION_QUEUE = "MESSAGE_DESTINATION";
     protected static final String TOPIC_NAME = "TOPIC_NAME";
@@ -190,6 +192,103 @@ public class RDBMSConstants {
             + " WHERE " + MESSAGE_ID + "=?"
             + " AND " + MSG_OFFSET + "=?";
 
+    /**
+     * Name of the internal storage queue which owns the content holder rows of shared content. A content holder is a
+     * metadata row that is never delivered. Its only purpose is to satisfy the referential integrity between
+     * MB_CONTENT and MB_METADATA for content shared between several storage queues.
+     */
+    protected static final String SHARED_CONTENT_HOLDER_QUEUE = "amq.andes.sharedContent";
+
+    /**
+     * Shared content mode needs an additional table mapping a message to the content it refers to. The table is
+     * created by the dbscripts/mb-store/&lt;database&gt;-mb-content-reference.sql scripts.
+     */
+    protected static final String PS_INSERT_CONTENT_REFERENCE =
+            "INSERT INTO " + CONTENT_REFERENCE_TABLE + "("
+            + MESSAGE_ID + ","
+            + CONTENT_ID + ") VALUES (?, ?)";
+
+    protected static final String PS_RETRIEVE_SHARED_MESSAGE_PART =
+            "SELECT " + CONTENT_TABLE + "." + MESSAGE_CONTENT
+            + " FROM " + CONTENT_TABLE + ", " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + CONTENT_TABLE + "." + MESSAGE_ID + "=" + CONTENT_REFERENCE_TABLE + "." + CONTENT_ID
+            + " AND " + CONTENT_REFERENCE_TABLE + "." + MESSAGE_ID + "=?"
+            + " AND " + CONTENT_TABLE + "." + MSG_OFFSET + "=?";
+
+    /**
+     * Partially created prepared statement to retrieve shared content of multiple messages using IN operator. Message
+     * id column of the result is the id of the referring message, not the id of the content holder.
+     */
+    protected static final String PS_SELECT_SHARED_CONTENT_PART =
+            "SELECT " + CONTENT_TABLE + "." + MESSAGE_CONTENT + ", "
+            + CONTENT_REFERENCE_TABLE + "." + MESSAGE_ID + ", "
+            + CONTENT_TABLE + "." + MSG_OFFSET
+            + " FROM " + CONTENT_TABLE + ", " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + CONTENT_TABLE + "." + MESSAGE_ID + "=" + CONTENT_REFERENCE_TABLE + "." + CONTENT_ID
+            + " AND " + CONTENT_REFERENCE_TABLE + "." + MESSAGE_ID + " IN (";
+
+    /**
+     * Partially created prepared statement to retrieve the content ids referred by multiple messages using IN operator
+     */
+    protected static final String PS_SELECT_CONTENT_REFERENCES =
+            "SELECT " + MESSAGE_ID + ", " + CONTENT_ID
+            + " FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + MESSAGE_ID + " IN (";
+
+    protected static final String PS_DELETE_CONTENT_REFERENCE =
+            "DELETE FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + MESSAGE_ID + "=?";
+
+    protected static final String PS_DELETE_CONTENT_REFERENCES_FOR_QUEUE =
+            "DELETE FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + MESSAGE_ID + " IN ("
+            + "SELECT " + MESSAGE_ID
+            + " FROM " + METADATA_TABLE
+            + " WHERE " + QUEUE_ID + "=?)";
+
+    protected static final String PS_DELETE_CONTENT_REFERENCES_FOR_DLC_QUEUE =
+            "DELETE FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + MESSAGE_ID + " IN ("
+            + "SELECT " + MESSAGE_ID
+            + " FROM " + METADATA_TABLE
+            + " WHERE " + DLC_QUEUE_ID + "=?)";
+
+    /**
+     * Deleting the content holder deletes the shared content through the referential integrity between MB_CONTENT
+     * and MB_METADATA.
+     */
+    protected static final String PS_DELETE_UNREFERENCED_CONTENT_HOLDER =
+            "DELETE FROM " + METADATA_TABLE
+            + " WHERE " + MESSAGE_ID + "=?"
+            + " AND NOT EXISTS ("
+            + "SELECT " + MESSAGE_ID
+            + " FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + CONTENT_ID + "=?)";
+
+    /**
+     * Partially created prepared statement to delete the content holders of multiple content ids using IN operator.
+     * Only the holders no longer referred by a message are deleted.
+     */
+    protected static final String PS_DELETE_UNREFERENCED_CONTENT_HOLDERS =
+            "DELETE FROM " + METADATA_TABLE
+            + " WHERE NOT EXISTS ("
+            + "SELECT " + MESSAGE_ID
+            + " FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE " + CONTENT_REFERENCE_TABLE + "." + CONTENT_ID + "=" + METADATA_TABLE + "." + MESSAGE_ID + ")"
+            + " AND " + MESSAGE_ID + " IN (";
+
+    protected static final String PS_CHECK_CONTENT_REFERENCE_TABLE =
+            "SELECT " + MESSAGE_ID
+            + " FROM " + CONTENT_REFERENCE_TABLE
+            + " WHERE 1=0";
+
+    protected static final String PS_DELETE_ORPHANED_CONTENT_HOLDERS =
+            "DELETE FROM " + METADATA_TABLE
+            + " WHERE " + QUEUE_ID + "=?"
+            + " AND " + MESSAGE_ID + " NOT IN ("
+            + "SELECT " + CONTENT_ID
+            + " FROM " + CONTENT_REFERENCE_TABLE + ")";
+
     /**
      * We need to select rows that have the DLC_QUEUE_ID = -1 indicating that the message is not moved
      * into the dead letter channel
@@ -270,6 +369,24 @@ public class RDBMSConstants {
             + " FROM " + METADATA_TABLE
             + " WHERE " + MESSAGE_ID + "=?";
 
+    /**
+     * Partially created prepared statement to find which of multiple message ids are stored using IN operator
+     */
+    protected static final String PS_SELECT_STORED_MESSAGE_IDS =
+            "SELECT " + MESSAGE_ID
+            + " FROM " + METADATA_TABLE
+            + " WHERE " + MESSAGE_ID + " IN (";
+
+    /**
+     * Partially created prepared statement to find which of multiple message ids are stored outside the dead letter
+     * channel using IN operator
+     */
+    protected static final String PS_SELECT_QUEUED_MESSAGE_IDS =
+            "SELECT " + MESSAGE_ID
+            + " FROM " + METADATA_TABLE
+            + " WHERE " + DLC_QUEUE_ID + "=-1"
+            + " AND " + MESSAGE_ID + " IN (";
+
     protected static final String PS_SELECT_METADATA_RANGE_FROM_QUEUE =
             "SELECT " + MESSAGE_ID + "," + METADATA
             + " FROM " + METADATA_TABLE
@@ -278,6 +395,21 @@ public class RDBMSConstants {
             + " AND " + MESSAGE_ID + " BETWEEN ? AND ?"
             + " ORDER BY " + MESSAGE_ID;
 
+    /**
+     * Same as {@link #PS_SELECT_METADATA_RANGE_FROM_QUEUE} but also reads the shared content id of each message. The
+     * content id column is null for messages owning their content.
+     */
+    protected static final String PS_SELECT_METADATA_RANGE_WITH_CONTENT_ID_FROM_QUEUE =
+            "SELECT " + METADATA_TABLE + "." + MESSAGE_ID + "," + METADATA_TABLE + "." + METADATA + ","
+            + CONTENT_REFERENCE_TABLE + "." + CONTENT_ID
+            + " FROM " + METADATA_TABLE
+            + " LEFT OUTER JOIN " + CONTENT_REFERENCE_TABLE
+            + " ON " + METADATA_TABLE + "." + MESSAGE_ID + "=" + CONTENT_REFERENCE_TABLE + "." + MESSAGE_ID
+            + " WHERE " + METADATA_TABLE + "." + QUEUE_ID + "=?"
+            + " AND " + METADATA_TABLE + "." + DLC_QUEUE_ID + "=-1"
+            + " AND " + METADATA_TABLE + "." + MESSAGE_ID + " BETWEEN ? AND ?"
+            + " ORDER BY " + METADATA_TABLE + "." + MESSAGE_ID;
+
     protected static final String PS_SELECT_METADATA_RANGE_FROM_QUEUE_IN_DLC =
             "SELECT " + MESSAGE_ID + "," + METADATA
             + " FROM " + METADATA_TABLE
@@ -987,6 +1119,15 @@ public class RDBMSConstants {
             + " FROM " + RETAINED_METADATA_TABLE
             + " WHERE " + TOPIC_ID + "=?";
 
+    /**
+     * Partially created prepared statement to select retained message metadata for multiple topic ids using IN
+     * operator. Topic name is selected to filter out topics sharing a topic id.
+     */
+    protected static final String PS_SELECT_RETAINED_METADATA_FOR_TOPICS =
+            "SELECT " + TOPIC_NAME + ", " + MESSAGE_ID + ", " + METADATA
+            + " FROM " + RETAINED_METADATA_TABLE
+            + " WHERE " + TOPIC_ID + " IN (";
+
     /**
      * Prepared statement to select retained message content for given message id
      */
@@ -995,6 +1136,15 @@ public class RDBMSConstants {
             + " FROM " + RETAINED_CONTENT_TABLE
             + " WHERE " + MESSAGE_ID + "=?";
 
+    /**
+     * Partially created prepared statement to select retained message content for multiple message ids using IN
+     * operator
+     */
+    protected static final String PS_RETRIEVE_RETAIN_MESSAGE_PARTS =
+            "SELECT " + MESSAGE_ID + ", " + MSG_OFFSET + ", " + MESSAGE_CONTENT
+            + " FROM " + RETAINED_CONTENT_TABLE
+            + " WHERE " + MESSAGE_ID + " IN (";
+
     /**
      * Prepared statement to select retained metadata for given topic name
      */
@@ -1165,6 +1315,9 @@ public class RDBMSConstants {
     protected static final String TASK_DELETING_MESSAGE_PARTS = "deleting message parts.";
     protected static final String TASK_RETRIEVING_MESSAGE_PARTS = "retrieving message parts.";
     protected static final String TASK_RETRIEVING_CONTENT_FOR_MESSAGES = "retrieving content for multiple messages";
+    protected static final String TASK_RETRIEVING_SHARED_CONTENT_FOR_MESSAGES = "retrieving shared content for "
+            + "multiple messages";
+    protected static final String TASK_DELETING_SHARED_CONTENT = "deleting shared content.";
     protected static final String TASK_ADDING_METADATA_LIST = "adding metadata list.";
     protected static final String TASK_ADDING_METADATA = "adding metadata.";
     protected static final String TASK_ADDING_MESSAGE = "adding message.";
@@ -1180,6 +1333,7 @@ public class RDBMSConstants {
     protected static final String TASK_RETRIEVING_QUEUE_MSG_COUNT_IN_DLC = "retrieving message count in DLC for"
                                                                            + " queue. ";
     protected static final String TASK_RETRIEVING_METADATA = "retrieving metadata for message id. ";
+    protected static final String TASK_RETRIEVING_STORED_MESSAGE_IDS = "retrieving stored message ids. ";
     protected static final String TASK_RETRIEVING_METADATA_RANGE_FROM_QUEUE = "retrieving metadata within a range "
                                                                               + "from queue. ";
     protected static final String TASK_RETRIEVING_METADATA_RANGE_IN_DLC_FROM_QUEUE = "retrieving metadata in dlc "
@@ -1208,6 +1362,7 @@ public class RDBMSConstants {
     protected static final String TASK_RETRIEVING_RETAINED_TOPICS = "retrieving all retained topics";
     protected static final String TASK_RETRIEVING_RETAINED_TOPIC_ID = "retrieving retained  message id and topic id "
                                                                       + "for given destination.";
+    protected static final String TASK_RETRIEVING_RETAINED_METADATA = "retrieving retained metadata for topics.";
     // Andes Context Store related jdbc tasks executed
     protected static final String TASK_STORING_DURABLE_SUBSCRIPTION = "storing durable subscription";
     protected static final String TASK_UPDATING_DURABLE_SUBSCRIPTION = "updating durable subscription";
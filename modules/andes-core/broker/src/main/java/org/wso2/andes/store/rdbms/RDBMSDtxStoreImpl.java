@@ -18,6 +18,7 @@
 
 package org.wso2.andes.store.rdbms;
 
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
 import org.wso2.andes.dtx.XidImpl;
 import org.wso2.andes.kernel.Andes;
 import org.wso2.andes.kernel.AndesException;
@@ -34,6 +35,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -80,12 +82,15 @@ public class RDBMSDtxStoreImpl implements DtxStore {
 
             prepareToStoreEnqueuedRecords(enqueueRecords, internalXid, connection);
 
+            LongArrayList retainedContentIds = null;
             if (!dequeueRecords.isEmpty()) {
                 prepareToBackupDequeueRecords(dequeueRecords, internalXid, connection);
-                rdbmsMessageStore.prepareToDeleteMessages(connection, dequeueRecords);
+                retainedContentIds = rdbmsMessageStore.prepareToDeleteMessages(connection, dequeueRecords);
             }
 
             connection.commit();
+            rdbmsMessageStore.deleteUnreferencedContentHolders(connection, retainedContentIds);
+            rdbmsMessageStore.messagesDeleted(dequeueRecords);
             return internalXid;
 
         } catch (AndesException e) {
@@ -226,6 +231,7 @@ public class RDBMSDtxStoreImpl implements DtxStore {
 
             removePreparedRecords(internalXid, connection);
             connection.commit();
+            rdbmsMessageStore.messagesStored(enqueueRecords);
 
         } catch (SQLException e) {
             rdbmsMessageStore.rollback(connection, task);
@@ -235,6 +241,38 @@ public class RDBMSDtxStoreImpl implements DtxStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) throws AndesException {
+        Connection connection = null;
+
+        String task = "Updating records on grouped dtx.commit ";
+
+        List<AndesMessage> messagesToStore = new ArrayList<>();
+        for (List<AndesMessage> branchRecords : enqueueRecords.values()) {
+            messagesToStore.addAll(branchRecords);
+        }
+
+        try {
+            connection = rdbmsMessageStore.getConnection();
+            if (!messagesToStore.isEmpty()) {
+                rdbmsMessageStore.prepareToStoreMessages(connection, messagesToStore);
+            }
+
+            removePreparedRecords(enqueueRecords.keySet(), connection);
+            connection.commit();
+            rdbmsMessageStore.messagesStored(messagesToStore);
+
+        } catch (SQLException e) {
+            rdbmsMessageStore.rollback(connection, task);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while executing grouped dtx commit event", e);
+        } finally {
+            rdbmsMessageStore.close(connection, RDBMSConstants.TASK_DTX_COMMIT);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -250,10 +288,14 @@ public class RDBMSDtxStoreImpl implements DtxStore {
                 rdbmsMessageStore.prepareToStoreMessages(connection, enqueueRecords);
             }
 
+            LongArrayList retainedContentIds = null;
             if (!dequeueRecordsMetadata.isEmpty()) {
-                rdbmsMessageStore.prepareToDeleteMessages(connection, dequeueRecordsMetadata);
+                retainedContentIds = rdbmsMessageStore.prepareToDeleteMessages(connection, dequeueRecordsMetadata);
             }
             connection.commit();
+            rdbmsMessageStore.deleteUnreferencedContentHolders(connection, retainedContentIds);
+            rdbmsMessageStore.messagesStored(enqueueRecords);
+            rdbmsMessageStore.messagesDeleted(dequeueRecordsMetadata);
 
         } catch (SQLException e) {
             rdbmsMessageStore.rollback(connection, task);
@@ -275,6 +317,7 @@ public class RDBMSDtxStoreImpl implements DtxStore {
             restoreRolledBackAcknowledgedMessages(messagesToRestore, connection);
             removePreparedRecords(internalXid, connection);
             connection.commit();
+            rdbmsMessageStore.messagesRestored(messagesToRestore);
         } catch (SQLException e) {
             rdbmsMessageStore.rollback(connection, task);
             throw rdbmsStoreUtils.convertSQLException("Error occurred while executing dtx commit event", e);
@@ -533,6 +576,31 @@ public class RDBMSDtxStoreImpl implements DtxStore {
         }
     }
 
+    /**
+     * Remove the prepared dtx records of several transactions in a single batch using the provided
+     * {@link Connection}. Executed statements are not committed within the method
+     *
+     * @param internalXids internal {@link Xid}s of the transactions
+     * @param connection {@link Connection}
+     * @throws SQLException Throws when there is an JDBC driver level exception
+     */
+    private void removePreparedRecords(Collection<Long> internalXids, Connection connection) throws SQLException {
+
+        PreparedStatement statement = null;
+        try {
+            String nodeId = ClusterResourceHolder.getInstance().getClusterManager().getMyNodeID();
+            statement = connection.prepareStatement(RDBMSConstants.PS_DELETE_DTX_ENTRY);
+            for (long internalXid : internalXids) {
+                statement.setLong(1, internalXid);
+                statement.setString(2, nodeId);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } finally {
+            rdbmsMessageStore.close(statement, RDBMSConstants.TASK_DELETING_DTX_PREPARED_XID);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -23,8 +23,12 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.Weigher;
 import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongLongHashMap;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import com.gs.collections.impl.set.mutable.primitive.LongHashSet;
 import org.apache.log4j.Logger;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.configuration.util.ConfigurationProperties;
 import org.wso2.andes.kernel.AndesContextStore;
 import org.wso2.andes.kernel.AndesException;
@@ -55,19 +59,24 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
+import static org.wso2.andes.store.rdbms.RDBMSConstants.CONTENT_ID;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.CONTENT_TABLE;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.MESSAGE_CONTENT;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.MESSAGE_ID;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.MSG_OFFSET;
+import static org.wso2.andes.store.rdbms.RDBMSConstants.PS_INSERT_CONTENT_REFERENCE;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.PS_INSERT_EXPIRY_DATA;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.PS_INSERT_MESSAGE_PART;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.PS_INSERT_METADATA;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.TASK_DELETING_METADATA;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.TASK_RETRIEVING_CONTENT_FOR_MESSAGES;
+import static org.wso2.andes.store.rdbms.RDBMSConstants.TASK_RETRIEVING_SHARED_CONTENT_FOR_MESSAGES;
 
 /**
  * ANSI SQL based message store implementation. Message persistence related methods are implemented
@@ -117,6 +126,22 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      */
     private DtxStore dtxStore;
 
+    /**
+     * True if content of messages routed to several storage queues is stored once and referred by each message
+     */
+    private boolean shareContentAcrossStorageQueues;
+
+    /**
+     * In memory message counts of storage queues. Null if message counts are read from the metadata table.
+     */
+    private QueueMessageCounter queueMessageCounter;
+
+    /**
+     * Limits the storage queues counted in memory. Set by {@link ShardedMessageStoreImpl} so that each shard counts
+     * only the queues it holds. Null to count every queue.
+     */
+    private QueueMessageCounter.QueueFilter counterQueueFilter;
+
     /**
      * {@inheritDoc}
      */
@@ -129,13 +154,49 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         this.rdbmsConnection.initialize(connectionProperties);
         this.rdbmsStoreUtils = new RDBMSStoreUtils(connectionProperties);
 
-        this.messageCache = (new MessageCacheFactory()).create();
+        if (null == messageCache) {
+            this.messageCache = (new MessageCacheFactory()).create();
+        }
         initializeQueueMappingCache();
         dtxStore = new RDBMSDtxStoreImpl(this, rdbmsStoreUtils);
+
+        shareContentAcrossStorageQueues = AndesConfigurationManager
+                .readValue(AndesConfiguration.PERFORMANCE_TUNING_SHARE_CONTENT_ACROSS_STORAGE_QUEUES);
+        if (shareContentAcrossStorageQueues) {
+            verifyContentReferenceTable();
+            deleteOrphanedSharedContent();
+        }
+
+        boolean queueMessageCounterEnabled = AndesConfigurationManager
+                .readValue(AndesConfiguration.PERSISTENCE_QUEUE_MESSAGE_COUNTER_ENABLED);
+        if (queueMessageCounterEnabled) {
+            initializeQueueMessageCounter(contextStore);
+        }
         log.info("Message Store initialised");
         return rdbmsConnection;
     }
 
+    /**
+     * Create and start the in memory message counter of storage queues. Counters are reconciled with the metadata
+     * table using the same query which served message counts before.
+     *
+     * @param contextStore context store holding the queue counter table
+     */
+    private void initializeQueueMessageCounter(AndesContextStore contextStore) {
+        Integer flushInterval = AndesConfigurationManager
+                .readValue(AndesConfiguration.PERSISTENCE_QUEUE_MESSAGE_COUNTER_FLUSH_INTERVAL);
+        Integer reconcileInterval = AndesConfigurationManager
+                .readValue(AndesConfiguration.PERSISTENCE_QUEUE_MESSAGE_COUNTER_RECONCILE_INTERVAL);
+
+        queueMessageCounter = new QueueMessageCounter(contextStore, new QueueMessageCounter.MessageCountSource() {
+            @Override
+            public long countMessages(String storageQueueName) throws AndesException {
+                return countMessagesInQueue(storageQueueName);
+            }
+        }, counterQueueFilter, flushInterval, reconcileInterval);
+        queueMessageCounter.start();
+    }
+
     /**
      * Method to initialize the queue mapping cache.
      * <p>
@@ -217,7 +278,21 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      */
     private void addContentToBatch(PreparedStatement preparedStatement, AndesMessagePart messagePart)
             throws SQLException {
-        preparedStatement.setLong(1, messagePart.getMessageID());
+        addContentToBatch(preparedStatement, messagePart.getMessageID(), messagePart);
+    }
+
+    /**
+     * Adds message content to provided prepared statements batch under the given content id. Used to store content
+     * shared between several storage queues under the id of its content holder.
+     *
+     * @param preparedStatement Prepared statement for storing message content
+     * @param contentId         id the content is stored under
+     * @param messagePart       message content to be stored
+     * @throws SQLException
+     */
+    private void addContentToBatch(PreparedStatement preparedStatement, long contentId, AndesMessagePart messagePart)
+            throws SQLException {
+        preparedStatement.setLong(1, contentId);
         preparedStatement.setInt(2, messagePart.getOffset());
         preparedStatement.setBytes(3, messagePart.getData());
         preparedStatement.addBatch();
@@ -234,7 +309,11 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         try {
             messagePart = getContentFromCache(messageId, offsetValue);
             if (null == messagePart) {
-                messagePart = getContentFromStorage(messageId, offsetValue);
+                messagePart = getContentFromStorage(RDBMSConstants.PS_RETRIEVE_MESSAGE_PART, messageId, offsetValue);
+            }
+            if (null == messagePart && shareContentAcrossStorageQueues) {
+                messagePart = getContentFromStorage(RDBMSConstants.PS_RETRIEVE_SHARED_MESSAGE_PART, messageId,
+                        offsetValue);
             }
         } finally {
             messageContentRetrievalContext.stop();
@@ -245,12 +324,14 @@ public class RDBMSMessageStoreImpl implements MessageStore {
     /**
      * Util method to retrieve a message content from database
      *
+     * @param query       query to read the content part with
      * @param messageId   message id
      * @param offsetValue offset value
      * @return a {@link AndesMessagePart} if found in database
      * @throws AndesException an error
      */
-    private AndesMessagePart getContentFromStorage(long messageId, int offsetValue) throws AndesException {
+    private AndesMessagePart getContentFromStorage(String query, long messageId, int offsetValue)
+            throws AndesException {
         AndesMessagePart messagePart = null;
         Connection connection = null;
         PreparedStatement preparedStatement = null;
@@ -259,7 +340,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
         try {
             connection = getConnection();
-            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_RETRIEVE_MESSAGE_PART);
+            preparedStatement = connection.prepareStatement(query);
             preparedStatement.setLong(1, messageId);
             preparedStatement.setInt(2, offsetValue);
             results = preparedStatement.executeQuery();
@@ -299,6 +380,19 @@ public class RDBMSMessageStoreImpl implements MessageStore {
                 fillContentFromStorage(messageIDList, contentList);
             }
 
+            if (shareContentAcrossStorageQueues) {
+                LongArrayList messagesWithoutContent = new LongArrayList();
+                for (int index = 0; index < messageIDList.size(); index++) {
+                    long messageId = messageIDList.get(index);
+                    if (!contentList.containsKey(messageId)) {
+                        messagesWithoutContent.add(messageId);
+                    }
+                }
+                if (!messagesWithoutContent.isEmpty()) {
+                    fillSharedContentFromStorage(messagesWithoutContent, contentList);
+                }
+            }
+
         } finally {
             messageContentRetrievalContext.stop();
         }
@@ -351,6 +445,51 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         }
     }
 
+    /**
+     * Retrieve content shared between storage queues for the given message ids. Content parts are keyed by the id
+     * of the referring message.
+     *
+     * @param messageIDList ids of messages referring to shared content
+     * @param contentList   this list will be filled with content retrieved from database
+     * @throws AndesException an error
+     */
+    private void fillSharedContentFromStorage(LongArrayList messageIDList,
+            LongObjectHashMap<List<AndesMessagePart>> contentList) throws AndesException {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+
+        try {
+            connection = getConnection();
+            preparedStatement = connection.prepareStatement(
+                    getInClauseStatement(RDBMSConstants.PS_SELECT_SHARED_CONTENT_PART, messageIDList.size()));
+            for (int messageIDCounter = 0; messageIDCounter < messageIDList.size(); messageIDCounter++) {
+                preparedStatement.setLong(messageIDCounter + 1, messageIDList.get(messageIDCounter));
+            }
+
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                long messageID = resultSet.getLong(MESSAGE_ID);
+                int offset = resultSet.getInt(MSG_OFFSET);
+                List<AndesMessagePart> partList = contentList.get(messageID);
+                if (null == partList) {
+                    partList = new ArrayList<>();
+                    contentList.put(messageID, partList);
+                }
+                partList.add(createMessagePart(resultSet, messageID, offset));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, TASK_RETRIEVING_SHARED_CONTENT_FOR_MESSAGES);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while retrieving shared message content from "
+                    + "DB for " + messageIDList.size() + " messages ", e);
+        } finally {
+            contextRead.stop();
+            close(connection, preparedStatement, resultSet, TASK_RETRIEVING_SHARED_CONTENT_FOR_MESSAGES);
+        }
+    }
+
     private AndesMessagePart createMessagePart(ResultSet results, long messageId, int offsetValue) throws SQLException {
         byte[] b = results.getBytes(MESSAGE_CONTENT);
         AndesMessagePart messagePart = new AndesMessagePart();
@@ -369,9 +508,21 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      * @return Prepared Statement
      */
     private String getSelectContentPreparedStmt(int messageCount) {
+        return getInClauseStatement(PS_SELECT_CONTENT_PART, messageCount);
+    }
 
-        StringBuilder stmtBuilder = new StringBuilder(PS_SELECT_CONTENT_PART);
-        for (int i = 0; i < messageCount - 1; i++) {
+    /**
+     * Complete a partially created statement ending with an IN operator with given number of ? values
+     *
+     * @param partialStatement statement ending with "IN ("
+     * @param parameterCount   number of values of the IN operator.
+     *                         CONDITION: parameterCount > 0
+     * @return Prepared Statement
+     */
+    private String getInClauseStatement(String partialStatement, int parameterCount) {
+
+        StringBuilder stmtBuilder = new StringBuilder(partialStatement);
+        for (int i = 0; i < parameterCount - 1; i++) {
             stmtBuilder.append("?,");
         }
 
@@ -391,6 +542,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             connection = getConnection();
             prepareToStoreMessages(connection, messageList);
             connection.commit();
+            messagesStored(messageList);
 
             // Add messages to cache after adding them to the database
             // Messages are added afterwards since we need to add messages to the cache only if they are added to the
@@ -419,40 +571,97 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         PreparedStatement storeMetadataPS = null;
         PreparedStatement storeContentPS = null;
         PreparedStatement storeExpiryMetadataPS = null;
+        PreparedStatement storeContentReferencePS = null;
         boolean messageWithExpirationDetected = false;
+        boolean messageWithSharedContentDetected = false;
+
+        // Content ids of the shared content already added to this batch
+        LongHashSet storedContentIds = new LongHashSet();
 
         try {
             storeMetadataPS = connection.prepareStatement(PS_INSERT_METADATA);
             storeContentPS = connection.prepareStatement(PS_INSERT_MESSAGE_PART);
             storeExpiryMetadataPS = connection.prepareStatement(PS_INSERT_EXPIRY_DATA);
+            storeContentReferencePS = connection.prepareStatement(PS_INSERT_CONTENT_REFERENCE);
 
             for (AndesMessage message : messageList) {
 
-                addMetadataToBatch(storeMetadataPS, message.getMetadata(), message.getMetadata().getStorageQueueName());
+                AndesMessageMetadata metadata = message.getMetadata();
+                addMetadataToBatch(storeMetadataPS, metadata, metadata.getStorageQueueName());
                 //if message has expiration time store it into expiration table
-                if (message.getMetadata().isExpirationDefined()) {
+                if (metadata.isExpirationDefined()) {
                     messageWithExpirationDetected = true;
-                    addExpiryTableEntryToBatch(storeExpiryMetadataPS, message.getMetadata());
+                    addExpiryTableEntryToBatch(storeExpiryMetadataPS, metadata);
                 }
 
-                for (AndesMessagePart messagePart : message.getContentChunkList()) {
-                    addContentToBatch(storeContentPS, messagePart);
+                if (shareContentAcrossStorageQueues && metadata.isContentShared()) {
+                    messageWithSharedContentDetected = true;
+                    long contentId = metadata.getContentId();
+                    addContentReferenceToBatch(storeContentReferencePS, metadata.getMessageID(), contentId);
+
+                    // Only the first message of the batch referring to the content writes it
+                    if (storedContentIds.add(contentId)) {
+                        addContentHolderToBatch(storeMetadataPS, metadata);
+                        for (AndesMessagePart messagePart : message.getContentChunkList()) {
+                            addContentToBatch(storeContentPS, contentId, messagePart);
+                        }
+                    }
+                } else {
+                    for (AndesMessagePart messagePart : message.getContentChunkList()) {
+                        addContentToBatch(storeContentPS, messagePart);
+                    }
                 }
             }
 
             storeMetadataPS.executeBatch();
             storeContentPS.executeBatch();
+            if (messageWithSharedContentDetected) {
+                storeContentReferencePS.executeBatch();
+            }
             if (messageWithExpirationDetected) {
                 storeExpiryMetadataPS.executeBatch();
             }
 
         } finally {
+            close(storeContentReferencePS, RDBMSConstants.TASK_ADDING_MESSAGES);
             close(storeExpiryMetadataPS, RDBMSConstants.TASK_ADDING_MESSAGES);
             close(storeMetadataPS, RDBMSConstants.TASK_ADDING_MESSAGES);
             close(storeContentPS, RDBMSConstants.TASK_ADDING_MESSAGES);
         }
     }
 
+    /**
+     * Add the content holder row of shared content to the metadata batch. The holder is stored in an internal queue
+     * that is never delivered from and owns the content chunks through the content table's referential integrity.
+     *
+     * @param preparedStatement prepared statement for storing metadata
+     * @param metadata          metadata of a message referring to the shared content
+     * @throws AndesException
+     * @throws SQLException
+     */
+    private void addContentHolderToBatch(PreparedStatement preparedStatement, AndesMessageMetadata metadata)
+            throws AndesException, SQLException {
+        preparedStatement.setLong(1, metadata.getContentId());
+        preparedStatement.setInt(2, getCachedQueueID(RDBMSConstants.SHARED_CONTENT_HOLDER_QUEUE));
+        preparedStatement.setBytes(3, metadata.getMetadata());
+        preparedStatement.addBatch();
+    }
+
+    /**
+     * Add a message to shared content reference entry to the batch
+     *
+     * @param preparedStatement prepared statement for storing content references
+     * @param messageId         id of the referring message
+     * @param contentId         id of the shared content
+     * @throws SQLException
+     */
+    private void addContentReferenceToBatch(PreparedStatement preparedStatement, long messageId, long contentId)
+            throws SQLException {
+        preparedStatement.setLong(1, messageId);
+        preparedStatement.setLong(2, contentId);
+        preparedStatement.addBatch();
+    }
+
     /**
      * Store a given Andes message to the database and the cache
      *
@@ -464,6 +673,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         PreparedStatement storeMetadataPS = null;
         PreparedStatement storeContentPS = null;
         PreparedStatement storeExpiryMetadataPS = null;
+        PreparedStatement storeContentReferencePS = null;
         AndesMessageMetadata metadata = null;
 
         try {
@@ -471,6 +681,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             storeMetadataPS = connection.prepareStatement(PS_INSERT_METADATA);
             storeExpiryMetadataPS = connection.prepareStatement(PS_INSERT_EXPIRY_DATA);
             storeContentPS = connection.prepareStatement(PS_INSERT_MESSAGE_PART);
+            storeContentReferencePS = connection.prepareStatement(PS_INSERT_CONTENT_REFERENCE);
 
             metadata = message.getMetadata();
             storeMetadataPS.setLong(1, metadata.getMessageID());
@@ -478,8 +689,24 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             storeMetadataPS.setBytes(3, metadata.getMetadata());
             storeMetadataPS.execute();
 
-            for (AndesMessagePart messagePart : message.getContentChunkList()) {
-                addContentToBatch(storeContentPS, messagePart);
+            if (shareContentAcrossStorageQueues && metadata.isContentShared()) {
+                long contentId = metadata.getContentId();
+
+                // Another message referring to the same content might have been stored already
+                if (!isContentHolderExists(connection, contentId)) {
+                    addContentHolderToBatch(storeMetadataPS, metadata);
+                    storeMetadataPS.executeBatch();
+                    for (AndesMessagePart messagePart : message.getContentChunkList()) {
+                        addContentToBatch(storeContentPS, contentId, messagePart);
+                    }
+                }
+                storeContentReferencePS.setLong(1, metadata.getMessageID());
+                storeContentReferencePS.setLong(2, contentId);
+                storeContentReferencePS.execute();
+            } else {
+                for (AndesMessagePart messagePart : message.getContentChunkList()) {
+                    addContentToBatch(storeContentPS, messagePart);
+                }
             }
             storeContentPS.executeBatch();
             if (metadata.isExpirationDefined()) {
@@ -489,6 +716,9 @@ public class RDBMSMessageStoreImpl implements MessageStore {
                 storeExpiryMetadataPS.execute();
             }
             connection.commit();
+            if (null != queueMessageCounter) {
+                queueMessageCounter.countChanged(metadata.getStorageQueueName(), 1);
+            }
             addToCache(message);
         } catch (AndesException e) {
             rollback(connection, RDBMSConstants.TASK_ADDING_MESSAGE);
@@ -507,6 +737,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
                 throw andesException;
             }
         } finally {
+            close(storeContentReferencePS, RDBMSConstants.TASK_ADDING_MESSAGE);
             close(storeExpiryMetadataPS,RDBMSConstants.TASK_ADDING_MESSAGE);
             close(storeMetadataPS, RDBMSConstants.TASK_ADDING_MESSAGE);
             close(storeContentPS, RDBMSConstants.TASK_ADDING_MESSAGE);
@@ -514,6 +745,28 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         }
     }
 
+    /**
+     * Check whether the content holder of shared content is already stored
+     *
+     * @param connection JDBC {@link Connection}
+     * @param contentId  id of the shared content
+     * @return true if the content holder exists
+     * @throws SQLException
+     */
+    private boolean isContentHolderExists(Connection connection, long contentId) throws SQLException {
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_SELECT_METADATA);
+            preparedStatement.setLong(1, contentId);
+            resultSet = preparedStatement.executeQuery();
+            return resultSet.next();
+        } finally {
+            close(resultSet, RDBMSConstants.TASK_ADDING_MESSAGE);
+            close(preparedStatement, RDBMSConstants.TASK_ADDING_MESSAGE);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -531,10 +784,14 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             preparedStatement.setInt(1, getCachedQueueID(targetQueueName));
             preparedStatement.setLong(2, messageId);
             preparedStatement.setInt(3, getCachedQueueID(currentQueueName));
-            preparedStatement.execute();
+            int updatedRows = preparedStatement.executeUpdate();
             preparedStatement.close();
 
             connection.commit();
+            if (null != queueMessageCounter && updatedRows > 0) {
+                queueMessageCounter.countChanged(currentQueueName, -updatedRows);
+                queueMessageCounter.countChanged(targetQueueName, updatedRows);
+            }
         } catch (SQLException e) {
             rollback(connection, RDBMSConstants.TASK_UPDATING_META_DATA_QUEUE + targetQueueName);
             throw rdbmsStoreUtils.convertSQLException(
@@ -574,6 +831,8 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             expiryDataPS.setLong(2, messageId);
             expiryDataPS.execute();
             connection.commit();
+            // Queue of the message is not known here
+            messageCountsChanged();
         } catch (SQLException e) {
             rollback(connection, RDBMSConstants.TASK_MOVING_METADATA_TO_DLC);
             throw rdbmsStoreUtils.convertSQLException("Error occurred while moving message metadata to dead letter "
@@ -621,6 +880,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             //remove messages from cache
             removeFromCache(messageIDsToRemoveFromCache);
             connection.commit();
+            messagesDeleted(messages);
         } catch (SQLException e) {
             rollback(connection, RDBMSConstants.TASK_MOVING_METADATA_TO_DLC);
             throw rdbmsStoreUtils.convertSQLException("Error occurred while moving message metadata to dead letter "
@@ -663,6 +923,14 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             preparedStatement.close();
 
             connection.commit();
+            if (null != queueMessageCounter) {
+                for (AndesMessageMetadata metadata : metadataList) {
+                    if (!currentQueueName.equals(metadata.getStorageQueueName())) {
+                        queueMessageCounter.countChanged(currentQueueName, -1);
+                        queueMessageCounter.countChanged(metadata.getStorageQueueName(), 1);
+                    }
+                }
+            }
         } catch (BatchUpdateException bue) {
             rdbmsStoreUtils
                     .raiseBatchUpdateException(metadataList, connection, bue, RDBMSConstants.TASK_UPDATING_META_DATA);
@@ -763,6 +1031,71 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         return md;
     }
 
+    /**
+     * Find which of the given messages are stored in this store, regardless of their queue
+     *
+     * @param messageIds ids of the messages to look for
+     * @return ids of the messages which are stored
+     * @throws AndesException on a store error
+     */
+    public LongHashSet getStoredMessageIds(LongArrayList messageIds) throws AndesException {
+        return selectMessageIds(RDBMSConstants.PS_SELECT_STORED_MESSAGE_IDS, messageIds);
+    }
+
+    /**
+     * Find which of the given messages are stored in this store and not in the dead letter channel
+     *
+     * @param messageIds ids of the messages to look for
+     * @return ids of the messages which are stored outside the dead letter channel
+     * @throws AndesException on a store error
+     */
+    public LongHashSet getQueuedMessageIds(LongArrayList messageIds) throws AndesException {
+        return selectMessageIds(RDBMSConstants.PS_SELECT_QUEUED_MESSAGE_IDS, messageIds);
+    }
+
+    /**
+     * Run a query selecting message ids with a condition on the given message ids
+     *
+     * @param partialStatement statement selecting message ids ending with "IN ("
+     * @param messageIds       ids of the messages to look for
+     * @return selected message ids
+     * @throws AndesException on a store error
+     */
+    private LongHashSet selectMessageIds(String partialStatement, LongArrayList messageIds) throws AndesException {
+
+        LongHashSet selectedMessageIds = new LongHashSet();
+        if (messageIds.isEmpty()) {
+            return selectedMessageIds;
+        }
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet results = null;
+
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+
+        try {
+            connection = getConnection();
+            preparedStatement = connection.prepareStatement(
+                    getInClauseStatement(partialStatement, messageIds.size()));
+            for (int messageIdCounter = 0; messageIdCounter < messageIds.size(); messageIdCounter++) {
+                preparedStatement.setLong(messageIdCounter + 1, messageIds.get(messageIdCounter));
+            }
+            results = preparedStatement.executeQuery();
+            while (results.next()) {
+                selectedMessageIds.add(results.getLong(MESSAGE_ID));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_RETRIEVING_STORED_MESSAGE_IDS);
+            throw rdbmsStoreUtils.convertSQLException("error occurred while retrieving stored message ids", e);
+        } finally {
+            contextRead.stop();
+            close(connection, preparedStatement, results, RDBMSConstants.TASK_RETRIEVING_STORED_MESSAGE_IDS);
+        }
+        return selectedMessageIds;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -781,7 +1114,12 @@ public class RDBMSMessageStoreImpl implements MessageStore {
 
         try {
             connection = getConnection();
-            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_SELECT_METADATA_RANGE_FROM_QUEUE);
+            if (shareContentAcrossStorageQueues) {
+                preparedStatement = connection
+                        .prepareStatement(RDBMSConstants.PS_SELECT_METADATA_RANGE_WITH_CONTENT_ID_FROM_QUEUE);
+            } else {
+                preparedStatement = connection.prepareStatement(RDBMSConstants.PS_SELECT_METADATA_RANGE_FROM_QUEUE);
+            }
             preparedStatement.setInt(1, getCachedQueueID(storageQueueName));
             preparedStatement.setLong(2, firstMsgId);
             preparedStatement.setLong(3, lastMsgID);
@@ -801,6 +1139,10 @@ public class RDBMSMessageStoreImpl implements MessageStore {
                         resultSet.getLong(RDBMSConstants.MESSAGE_ID), resultSet.getBytes(RDBMSConstants.METADATA),
                         true);
                 md.setStorageQueueName(storageQueueName);
+                if (shareContentAcrossStorageQueues) {
+                    // getLong returns 0 for messages without a content reference
+                    md.setContentId(resultSet.getLong(CONTENT_ID));
+                }
                 metadataList.add(md);
                 //Tracing message
                 MessageTracer.trace(md, slot, MessageTracer.METADATA_READ_FROM_DB);
@@ -1121,6 +1463,10 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             int queueID = getCachedQueueID(storageQueueName);
 
             connection = getConnection();
+            LongArrayList retainedContentIds = null;
+            if (shareContentAcrossStorageQueues) {
+                retainedContentIds = deleteSharedContentReferences(connection, getMessageIds(messagesToRemove));
+            }
             preparedStatement = connection.prepareStatement(RDBMSConstants.PS_DELETE_METADATA_FROM_QUEUE);
             for (AndesMessageMetadata messageID : messagesToRemove) {
                 preparedStatement.setInt(1, queueID);
@@ -1129,6 +1475,10 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             }
             preparedStatement.executeBatch();
             connection.commit();
+            deleteUnreferencedContentHolders(connection, retainedContentIds);
+            if (null != queueMessageCounter) {
+                queueMessageCounter.countChanged(storageQueueName, -messagesToRemove.size());
+            }
 
             if (log.isDebugEnabled()) {
                 log.debug("Metadata removed. " + messagesToRemove.size() +
@@ -1158,8 +1508,10 @@ public class RDBMSMessageStoreImpl implements MessageStore {
 
         try {
             connection = getConnection();
-            prepareToDeleteMessages(connection, messagesToRemove);
+            LongArrayList retainedContentIds = prepareToDeleteMessages(connection, messagesToRemove);
             connection.commit();
+            deleteUnreferencedContentHolders(connection, retainedContentIds);
+            messagesDeleted(messagesToRemove);
 
             if (log.isDebugEnabled()) {
                 log.debug("Metadata and content removed for " + messagesToRemove.size() + " messages.");
@@ -1174,17 +1526,105 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         }
     }
 
+    /**
+     * Update in memory message counts after stored messages are committed. Used by operations which store messages
+     * within a larger transaction.
+     *
+     * @param messages committed messages
+     */
+    void messagesStored(List<AndesMessage> messages) {
+        if (null != queueMessageCounter) {
+            queueMessageCounter.messagesStored(messages);
+        }
+    }
+
+    /**
+     * Update in memory message counts after metadata of previously deleted messages is inserted again
+     *
+     * @param messages restored messages
+     */
+    void messagesRestored(Collection<? extends AndesMessageMetadata> messages) {
+        if (null != queueMessageCounter) {
+            queueMessageCounter.messagesRestored(messages);
+        }
+    }
+
+    /**
+     * Update in memory message counts after message deletions are committed
+     *
+     * @param messages deleted messages
+     */
+    void messagesDeleted(Collection<? extends AndesMessageMetadata> messages) {
+        if (null != queueMessageCounter) {
+            queueMessageCounter.messagesRemoved(messages);
+        }
+    }
+
+    /**
+     * Use the given message cache instead of creating one. Must be called before
+     * {@link #initializeMessageStore(AndesContextStore, ConfigurationProperties)}.
+     *
+     * @param messageCache message cache shared with other stores
+     */
+    void setMessageCache(AndesMessageCache messageCache) {
+        this.messageCache = messageCache;
+    }
+
+    /**
+     * Count only the storage queues accepted by the filter in memory. Must be called before
+     * {@link #initializeMessageStore(AndesContextStore, ConfigurationProperties)}.
+     *
+     * @param counterQueueFilter filter of counted queues
+     */
+    void setCounterQueueFilter(QueueMessageCounter.QueueFilter counterQueueFilter) {
+        this.counterQueueFilter = counterQueueFilter;
+    }
+
+    /**
+     * Start tracking changes of the message count of a queue which is not counted yet, so that messages stored
+     * before the queue becomes counted are included in the queue counter table
+     *
+     * @param storageQueueName name of the storage queue
+     * @throws AndesException if the current count could not be loaded
+     */
+    void trackMessageCount(String storageQueueName) throws AndesException {
+        if (null != queueMessageCounter) {
+            queueMessageCounter.getMessageCount(storageQueueName);
+        }
+    }
+
+    /**
+     * Reconcile in memory message counts with the metadata table on the next run of the counter
+     */
+    void reconcileMessageCounts() {
+        messageCountsChanged();
+    }
+
+    /**
+     * Reconcile in memory message counts with the metadata table since messages were added or removed without
+     * knowing their queues
+     */
+    private void messageCountsChanged() {
+        if (null != queueMessageCounter) {
+            queueMessageCounter.requestReconcile();
+        }
+    }
+
     /**
      * Delete the messages from message store using the provided database {@link Connection}
      * @param connection JDBC {@link Connection}
      * @param messagesToRemove {@link Collection} of {@link AndesMessageMetadata}
+     * @return ids of the shared content which might have to be deleted with
+     * {@link #deleteUnreferencedContentHolders(Connection, LongArrayList)} once the transaction is committed. Null
+     * if there are none.
      * @throws AndesException throws {@link AndesException} on JDBC driver related exception
      * @throws SQLException throws {@link SQLException} on JDBC driver related exception
      */
-    void prepareToDeleteMessages(Connection connection, Collection<? extends AndesMessageMetadata> messagesToRemove)
-            throws AndesException, SQLException {
+    LongArrayList prepareToDeleteMessages(Connection connection,
+            Collection<? extends AndesMessageMetadata> messagesToRemove) throws AndesException, SQLException {
 
         PreparedStatement metadataRemovalPreparedStatement = null;
+        LongArrayList retainedContentIds = null;
 
         try {
             LongArrayList messageIDsToRemoveFromCache = new LongArrayList();
@@ -1200,11 +1640,243 @@ public class RDBMSMessageStoreImpl implements MessageStore {
                 metadataRemovalPreparedStatement.addBatch();
             }
 
+            if (shareContentAcrossStorageQueues) {
+                retainedContentIds = deleteSharedContentReferences(connection, messageIDsToRemoveFromCache);
+            }
             removeFromCache(messageIDsToRemoveFromCache);
             metadataRemovalPreparedStatement.executeBatch();
         } finally {
             close(metadataRemovalPreparedStatement, TASK_DELETING_METADATA);
         }
+        return retainedContentIds;
+    }
+
+    /**
+     * Remove the shared content references of the given messages. Shared content no longer referred by any message
+     * is deleted along with its content holder. Must be called within the transaction deleting the metadata of the
+     * messages.
+     * <p>
+     * A content holder is kept while another message refers to it. The reference of that message might be deleted
+     * by a concurrent transaction which in turn still sees the reference deleted here, hence the ids of the kept
+     * content are returned to be checked again with
+     * {@link #deleteUnreferencedContentHolders(Connection, LongArrayList)} after the commit.
+     *
+     * @param connection JDBC {@link Connection}
+     * @param messageIds ids of the messages being deleted
+     * @return ids of the shared content that was not deleted. Null if there are none.
+     * @throws SQLException
+     */
+    private LongArrayList deleteSharedContentReferences(Connection connection, LongArrayList messageIds)
+            throws SQLException {
+
+        if (messageIds.isEmpty()) {
+            return null;
+        }
+
+        PreparedStatement selectReferencesPS = null;
+        PreparedStatement deleteReferencePS = null;
+        PreparedStatement deleteHolderPS = null;
+        ResultSet resultSet = null;
+
+        try {
+            LongLongHashMap contentReferences = new LongLongHashMap();
+            selectReferencesPS = connection.prepareStatement(
+                    getInClauseStatement(RDBMSConstants.PS_SELECT_CONTENT_REFERENCES, messageIds.size()));
+            for (int messageIdCounter = 0; messageIdCounter < messageIds.size(); messageIdCounter++) {
+                selectReferencesPS.setLong(messageIdCounter + 1, messageIds.get(messageIdCounter));
+            }
+            resultSet = selectReferencesPS.executeQuery();
+            while (resultSet.next()) {
+                contentReferences.put(resultSet.getLong(MESSAGE_ID), resultSet.getLong(CONTENT_ID));
+            }
+
+            if (contentReferences.isEmpty()) {
+                return null;
+            }
+
+            deleteReferencePS = connection.prepareStatement(RDBMSConstants.PS_DELETE_CONTENT_REFERENCE);
+            for (long messageId : contentReferences.keySet().toArray()) {
+                deleteReferencePS.setLong(1, messageId);
+                deleteReferencePS.addBatch();
+            }
+            deleteReferencePS.executeBatch();
+
+            long[] contentIds = contentReferences.values().toSet().toArray();
+            deleteHolderPS = connection.prepareStatement(RDBMSConstants.PS_DELETE_UNREFERENCED_CONTENT_HOLDER);
+            for (long contentId : contentIds) {
+                deleteHolderPS.setLong(1, contentId);
+                deleteHolderPS.setLong(2, contentId);
+                deleteHolderPS.addBatch();
+            }
+            int[] deletedCounts = deleteHolderPS.executeBatch();
+
+            // Drivers not reporting row counts of batch entries leave every content id to be checked again
+            LongArrayList retainedContentIds = new LongArrayList();
+            for (int index = 0; index < contentIds.length; index++) {
+                if (index >= deletedCounts.length || deletedCounts[index] != 1) {
+                    retainedContentIds.add(contentIds[index]);
+                }
+            }
+            return retainedContentIds.isEmpty() ? null : retainedContentIds;
+        } finally {
+            close(resultSet, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            close(selectReferencesPS, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            close(deleteReferencePS, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            close(deleteHolderPS, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+        }
+    }
+
+    /**
+     * Delete the content holders of the given shared content which are no longer referred by a message. Called after
+     * committing the transaction which deleted the references, so that the last of two concurrent transactions
+     * deleting references of the same content sees both deletes. Failures are only logged since content left behind
+     * is removed by the sweep at startup.
+     *
+     * @param connection JDBC {@link Connection} of the committed transaction
+     * @param contentIds ids of the shared content to check. Nothing is done if null.
+     */
+    void deleteUnreferencedContentHolders(Connection connection, LongArrayList contentIds) {
+        if (null == contentIds || contentIds.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(
+                    getInClauseStatement(RDBMSConstants.PS_DELETE_UNREFERENCED_CONTENT_HOLDERS, contentIds.size()));
+            for (int index = 0; index < contentIds.size(); index++) {
+                preparedStatement.setLong(index + 1, contentIds.get(index));
+            }
+            int deletedCount = preparedStatement.executeUpdate();
+            connection.commit();
+            if (log.isDebugEnabled()) {
+                log.debug("Deleted " + deletedCount + " unreferenced shared content entries out of "
+                        + contentIds.size() + " retained");
+            }
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            log.warn("Error occurred while deleting unreferenced shared content. Content is deleted at next startup",
+                    e);
+        } finally {
+            close(preparedStatement, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+        }
+    }
+
+    /**
+     * Remove the shared content references of all the messages of a queue. Content holders are left behind and
+     * need to be removed with {@link #deleteOrphanedSharedContent(Connection)} once the metadata is deleted.
+     *
+     * @param connection JDBC {@link Connection}
+     * @param query      statement removing the references of the given queue
+     * @param queueID    id of the queue
+     * @throws SQLException
+     */
+    private void deleteSharedContentReferences(Connection connection, String query, int queueID)
+            throws SQLException {
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(query);
+            preparedStatement.setInt(1, queueID);
+            preparedStatement.executeUpdate();
+        } finally {
+            close(preparedStatement, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+        }
+    }
+
+    /**
+     * Delete every content holder which is no longer referred by a message. Content of the holders is removed through
+     * referential integrity.
+     *
+     * @param connection JDBC {@link Connection}
+     * @throws AndesException
+     * @throws SQLException
+     */
+    private void deleteOrphanedSharedContent(Connection connection) throws AndesException, SQLException {
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_DELETE_ORPHANED_CONTENT_HOLDERS);
+            preparedStatement.setInt(1, getCachedQueueID(RDBMSConstants.SHARED_CONTENT_HOLDER_QUEUE));
+            int deletedCount = preparedStatement.executeUpdate();
+            if (log.isDebugEnabled()) {
+                log.debug("Deleted " + deletedCount + " unreferenced shared content entries");
+            }
+        } finally {
+            close(preparedStatement, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+        }
+    }
+
+    /**
+     * Delete every content holder which is no longer referred by a message after committing the transaction which
+     * deleted the references. Failures are only logged since content left behind is removed by the sweep at startup.
+     *
+     * @param connection JDBC {@link Connection} of the committed transaction
+     */
+    private void deleteOrphanedSharedContentAfterCommit(Connection connection) {
+        try {
+            deleteOrphanedSharedContent(connection);
+            connection.commit();
+        } catch (AndesException | SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            log.warn("Error occurred while deleting unreferenced shared content. Content is deleted at next startup",
+                    e);
+        }
+    }
+
+    /**
+     * Sweep shared content left behind without references. Deletes are followed by a check of the retained content,
+     * but content is left behind if that check fails or the node stops in between, hence this is run at startup.
+     *
+     * @throws AndesException
+     */
+    private void deleteOrphanedSharedContent() throws AndesException {
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            deleteOrphanedSharedContent(connection);
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            throw rdbmsStoreUtils.convertSQLException("error occurred while deleting unreferenced shared content", e);
+        } finally {
+            close(connection, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+        }
+    }
+
+    /**
+     * Check that the content reference table of the shared content mode exists in the database
+     *
+     * @throws AndesException if the table cannot be read
+     */
+    private void verifyContentReferenceTable() throws AndesException {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getConnection();
+            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_CHECK_CONTENT_REFERENCE_TABLE);
+            resultSet = preparedStatement.executeQuery();
+        } catch (SQLException e) {
+            throw new AndesException("Content of messages is shared across storage queues but table "
+                    + RDBMSConstants.CONTENT_REFERENCE_TABLE + " cannot be read. Create it with the "
+                    + "dbscripts/mb-store/<database>-mb-content-reference.sql script", e);
+        } finally {
+            close(resultSet, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+            close(connection, preparedStatement, RDBMSConstants.TASK_DELETING_SHARED_CONTENT);
+        }
+    }
+
+    /**
+     * Collect the ids of the given messages
+     *
+     * @param messages metadata of the messages
+     * @return message id list
+     */
+    private LongArrayList getMessageIds(Collection<? extends AndesMessageMetadata> messages) {
+        LongArrayList messageIds = new LongArrayList(messages.size());
+        for (AndesMessageMetadata message : messages) {
+            messageIds.add(message.getMessageID());
+        }
+        return messageIds;
     }
 
     /**
@@ -1234,9 +1906,15 @@ public class RDBMSMessageStoreImpl implements MessageStore {
                 metadataRemovalPreparedStatement.addBatch();
             }
 
+            LongArrayList retainedContentIds = null;
+            if (shareContentAcrossStorageQueues) {
+                retainedContentIds = deleteSharedContentReferences(connection, messageIDsToRemoveFromCache);
+            }
             removeFromCache(messageIDsToRemoveFromCache);
             metadataRemovalPreparedStatement.executeBatch();
             connection.commit();
+            deleteUnreferencedContentHolders(connection, retainedContentIds);
+            messageCountsChanged();
 
             if (log.isDebugEnabled()) {
                 log.debug("Metadata and content removed: " + messagesToRemove.size());
@@ -1269,6 +1947,10 @@ public class RDBMSMessageStoreImpl implements MessageStore {
 
             //Since referential integrity is imposed on the two tables: message content and metadata,
             //deleting message metadata will cause message content to be automatically deleted
+            LongArrayList retainedContentIds = null;
+            if (shareContentAcrossStorageQueues) {
+                retainedContentIds = deleteSharedContentReferences(connection, getMessageIds(messagesToRemove));
+            }
             metadataRemovalPreparedStatement = connection.prepareStatement(RDBMSConstants.PS_DELETE_METADATA_IN_DLC);
 
             for (AndesMessageMetadata message : messagesToRemove) {
@@ -1279,6 +1961,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
 
             metadataRemovalPreparedStatement.executeBatch();
             connection.commit();
+            deleteUnreferencedContentHolders(connection, retainedContentIds);
 
             if (log.isDebugEnabled()) {
                 log.debug("Messages removed: " + messagesToRemove.size() + " from DLC");
@@ -1372,7 +2055,9 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      */
     @Override
     public void close() {
-
+        if (null != queueMessageCounter) {
+            queueMessageCounter.stop();
+        }
     }
 
 
@@ -1625,10 +2310,20 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             int queueID = getCachedQueueID(storageQueueName);
 
             connection = getConnection();
+            if (shareContentAcrossStorageQueues) {
+                deleteSharedContentReferences(connection, RDBMSConstants.PS_DELETE_CONTENT_REFERENCES_FOR_QUEUE,
+                        queueID);
+            }
             preparedStatement = connection.prepareStatement(RDBMSConstants.PS_CLEAR_QUEUE_FROM_METADATA);
             preparedStatement.setInt(1, queueID);
             deletedMessagecount = preparedStatement.executeUpdate();
             connection.commit();
+            if (shareContentAcrossStorageQueues) {
+                deleteOrphanedSharedContentAfterCommit(connection);
+            }
+            if (null != queueMessageCounter) {
+                queueMessageCounter.queuePurged(storageQueueName);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("DELETED all message metadata from " + storageQueueName +
                         " with queue ID " + queueID);
@@ -1657,11 +2352,18 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             int queueID = getCachedQueueID(dlcQueueName);
 
             connection = getConnection();
+            if (shareContentAcrossStorageQueues) {
+                deleteSharedContentReferences(connection, RDBMSConstants.PS_DELETE_CONTENT_REFERENCES_FOR_DLC_QUEUE,
+                        queueID);
+            }
             preparedStatement = connection.prepareStatement(RDBMSConstants.PS_CLEAR_DLC_QUEUE);
             preparedStatement.setInt(1, queueID);
 
             deletedMessagecount = preparedStatement.executeUpdate();
             connection.commit();
+            if (shareContentAcrossStorageQueues) {
+                deleteOrphanedSharedContentAfterCommit(connection);
+            }
 
             if (log.isDebugEnabled()) {
                 log.debug("DELETED all message metadata for dlc queue " + dlcQueueName +
@@ -1729,6 +2431,9 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             connection = getConnection();
             getCachedQueueID(destinationQueueName);
             connection.commit();
+            if (null != queueMessageCounter) {
+                queueMessageCounter.queueAdded(destinationQueueName);
+            }
         } catch (SQLException e) {
             rollback(connection, RDBMSConstants.TASK_CREATING_QUEUE);
             throw rdbmsStoreUtils.convertSQLException("Error while creating queue: " + destinationQueueName, e);
@@ -1741,7 +2446,26 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      * {@inheritDoc}
      */
     @Override
-    public Map<String, Integer> getMessageCountForAllQueues(List<String> queueNames) throws AndesException {
+    public Map<String, Integer> getMessageCountForAllQueues(final List<String> queueNames) throws AndesException {
+        if (null != queueMessageCounter) {
+            return queueMessageCounter.getMessageCounts(queueNames, new QueueMessageCounter.AllCountsSource() {
+                @Override
+                public Map<String, Integer> countAllMessages() throws AndesException {
+                    return countMessagesInAllQueues(queueNames);
+                }
+            });
+        }
+        return countMessagesInAllQueues(queueNames);
+    }
+
+    /**
+     * Count messages of the given queues in the metadata table
+     *
+     * @param queueNames list of queue names of which the message count should be retrieved
+     * @return Map of queue names and the message count for each queue
+     * @throws AndesException on a store error
+     */
+    private Map<String, Integer> countMessagesInAllQueues(List<String> queueNames) throws AndesException {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet results = null;
@@ -1779,6 +2503,20 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      */
     @Override
     public long getMessageCountForQueue(String storageQueueName) throws AndesException {
+        if (null != queueMessageCounter && queueMessageCounter.isCounted(storageQueueName)) {
+            return queueMessageCounter.getMessageCount(storageQueueName);
+        }
+        return countMessagesInQueue(storageQueueName);
+    }
+
+    /**
+     * Count messages of a queue in the metadata table
+     *
+     * @param storageQueueName name of the storage queue
+     * @return number of messages in the queue which are not in the dead letter channel
+     * @throws AndesException on a store error
+     */
+    private long countMessagesInQueue(String storageQueueName) throws AndesException {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet results = null;
@@ -1813,6 +2551,20 @@ public class RDBMSMessageStoreImpl implements MessageStore {
      */
     @Override
     public long getApproximateQueueMessageCount(String storageQueueName) throws AndesException {
+        if (null != queueMessageCounter && queueMessageCounter.isCounted(storageQueueName)) {
+            return queueMessageCounter.getMessageCount(storageQueueName);
+        }
+        return countMessagesInQueueApproximately(storageQueueName);
+    }
+
+    /**
+     * Count messages of a queue in the metadata table without waiting for uncommitted transactions
+     *
+     * @param storageQueueName name of the storage queue
+     * @return approximate number of messages in the queue
+     * @throws AndesException on a store error
+     */
+    private long countMessagesInQueueApproximately(String storageQueueName) throws AndesException {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet results = null;
@@ -1950,6 +2702,9 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             preparedStatement.setString(1, storageQueueName);
             preparedStatement.execute();
             connection.commit();
+            if (null != queueMessageCounter) {
+                queueMessageCounter.queueRemoved(storageQueueName);
+            }
         } catch (SQLException e) {
             rollback(connection, RDBMSConstants.TASK_DELETE_QUEUE_MAPPING);
             throw rdbmsStoreUtils.convertSQLException(
@@ -1967,6 +2722,9 @@ public class RDBMSMessageStoreImpl implements MessageStore {
     @Override
     public void removeLocalQueueData(String storageQueueName) {
         queueMappings.invalidate(storageQueueName);
+        if (null != queueMessageCounter) {
+            queueMessageCounter.forgetQueue(storageQueueName);
+        }
         if (log.isDebugEnabled()) {
             log.debug("Queue: " + storageQueueName + " removed from cache.");
         }
@@ -2305,6 +3063,103 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         return metadata;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DeliverableAndesMetadata> getRetainedMetadata(List<String> destinations) throws AndesException {
+        List<DeliverableAndesMetadata> metadataList = new ArrayList<>(destinations.size());
+        if (destinations.isEmpty()) {
+            return metadataList;
+        }
+
+        Set<String> destinationSet = new HashSet<>(destinations);
+        Set<Integer> topicIDs = new HashSet<>(destinations.size());
+        for (String destination : destinationSet) {
+            topicIDs.add(destination.hashCode());
+        }
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet results = null;
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+
+        try {
+            connection = getConnection();
+            preparedStatement = connection.prepareStatement(
+                    getInClauseStatement(RDBMSConstants.PS_SELECT_RETAINED_METADATA_FOR_TOPICS, topicIDs.size()));
+            int parameterIndex = 1;
+            for (Integer topicID : topicIDs) {
+                preparedStatement.setInt(parameterIndex++, topicID);
+            }
+
+            results = preparedStatement.executeQuery();
+            while (results.next()) {
+                if (destinationSet.contains(results.getString(RDBMSConstants.TOPIC_NAME))) {
+                    byte[] b = results.getBytes(RDBMSConstants.METADATA);
+                    long messageId = results.getLong(RDBMSConstants.MESSAGE_ID);
+                    metadataList.add(new DeliverableAndesMetadata(null, messageId, b, true));
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_RETRIEVING_RETAINED_METADATA);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while retrieving retained messages for "
+                    + destinations.size() + " destinations", e);
+        } finally {
+            contextRead.stop();
+            close(connection, preparedStatement, results, RDBMSConstants.TASK_RETRIEVING_RETAINED_METADATA);
+        }
+        return metadataList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LongObjectHashMap<Map<Integer, AndesMessagePart>> getRetainedContentParts(LongArrayList messageIdList)
+            throws AndesException {
+        LongObjectHashMap<Map<Integer, AndesMessagePart>> contentMap = new LongObjectHashMap<>();
+        if (messageIdList.isEmpty()) {
+            return contentMap;
+        }
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet results = null;
+        Context contextRead = MetricManager.timer(MetricsConstants.DB_READ, Level.INFO).start();
+
+        try {
+            connection = getConnection();
+            preparedStatement = connection.prepareStatement(
+                    getInClauseStatement(RDBMSConstants.PS_RETRIEVE_RETAIN_MESSAGE_PARTS, messageIdList.size()));
+            for (int i = 0; i < messageIdList.size(); i++) {
+                preparedStatement.setLong(i + 1, messageIdList.get(i));
+            }
+
+            results = preparedStatement.executeQuery();
+            while (results.next()) {
+                long messageID = results.getLong(RDBMSConstants.MESSAGE_ID);
+                int offset = results.getInt(RDBMSConstants.MSG_OFFSET);
+                Map<Integer, AndesMessagePart> contentParts = contentMap.get(messageID);
+                if (null == contentParts) {
+                    contentParts = new HashMap<>();
+                    contentMap.put(messageID, contentParts);
+                }
+                contentParts.put(offset, createMessagePart(results, messageID, offset));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_RETRIEVING_RETAINED_MESSAGE_PARTS);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while retrieving retained message content "
+                    + "from DB for " + messageIdList.size() + " messages", e);
+        } finally {
+            contextRead.stop();
+            close(connection, preparedStatement, results, RDBMSConstants.TASK_RETRIEVING_RETAINED_MESSAGE_PARTS);
+        }
+        return contentMap;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.rdbms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+import org.wso2.andes.server.cluster.ClusterAgent;
+import org.wso2.andes.server.queue.DLCQueueUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves storage queues between the shards of a {@link ShardedMessageStoreImpl}. Messages of a queue are copied to
+ * the new shard of the queue in batches and deleted from the old shard while the queue stays in use. During the move
+ * the queue is read from both shards and new messages are written to the new shard.
+ * <p>
+ * Moves are started when a shard is added at runtime, and at startup for queues with messages left in a shard which
+ * no longer owns them, for example after a data source was added to the configuration or a move was interrupted by a
+ * shutdown. In a cluster every node must be configured with the same data sources in the same order.
+ * <p>
+ * In a cluster every node starts the moves so that it reads and deletes messages of the moving queues in both shards,
+ * but only the coordinator copies messages. The other nodes complete their moves once the source shards are empty.
+ * A node becoming coordinator continues the moves it has started.
+ */
+class ShardRebalancer {
+
+    private static final Logger log = Logger.getLogger(ShardRebalancer.class);
+
+    /**
+     * Delay before a failed move is retried
+     */
+    private static final long RETRY_DELAY_SECONDS = 10;
+
+    /**
+     * Delay before the coordinator starts copying messages after a shard is added, giving the other nodes time to
+     * receive the shard and start reading the moving queues from both shards
+     */
+    private static final long CLUSTER_MOVE_START_DELAY_SECONDS = 10;
+
+    private final ShardedMessageStoreImpl messageStore;
+
+    private final AndesContextStore contextStore;
+
+    private final int batchSize;
+
+    /**
+     * Single thread running the moves one after the other to limit the load on the databases
+     */
+    private final ScheduledExecutorService moveExecutor;
+
+    ShardRebalancer(ShardedMessageStoreImpl messageStore, AndesContextStore contextStore, int batchSize) {
+        this.messageStore = messageStore;
+        this.contextStore = contextStore;
+        this.batchSize = batchSize;
+        moveExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("ShardRebalancer-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Move messages of queues found in shards other than the shard of the queue
+     *
+     * @throws AndesException on a store error
+     */
+    void moveMisplacedQueues() throws AndesException {
+        ConsistentHashRing ring = messageStore.getRing();
+        List<ShardedMessageStoreImpl.QueueMove> moves = new ArrayList<>();
+
+        for (StorageQueue storageQueue : contextStore.getAllQueuesStored()) {
+            String queueName = storageQueue.getName();
+            if (DLCQueueUtils.isDeadLetterQueue(queueName)) {
+                continue;
+            }
+
+            int targetShard = ring.getShard(queueName);
+            List<Integer> sourceShards = new ArrayList<>();
+            for (int shardIndex : messageStore.allShards()) {
+                if (shardIndex != targetShard && !messageStore.getShard(shardIndex)
+                        .getNextNMessageMetadataFromQueue(queueName, 0, 1).isEmpty()) {
+                    sourceShards.add(shardIndex);
+                }
+            }
+            if (!sourceShards.isEmpty()) {
+                moves.add(new ShardedMessageStoreImpl.QueueMove(queueName, sourceShards, targetShard));
+            }
+        }
+
+        if (!moves.isEmpty()) {
+            log.info("Moving " + moves.size() + " queues with messages in shards other than their own shard");
+            messageStore.startMoves(moves, null);
+            submit(moves);
+        }
+    }
+
+    /**
+     * Move the queues whose shard changes with the new ring, and switch to the new ring
+     *
+     * @param newRing ring including a new shard
+     * @throws AndesException on a store error
+     */
+    void rebalance(ConsistentHashRing newRing) throws AndesException {
+        ConsistentHashRing currentRing = messageStore.getRing();
+        List<ShardedMessageStoreImpl.QueueMove> moves = new ArrayList<>();
+
+        for (StorageQueue storageQueue : contextStore.getAllQueuesStored()) {
+            String queueName = storageQueue.getName();
+            if (DLCQueueUtils.isDeadLetterQueue(queueName)) {
+                continue;
+            }
+
+            int targetShard = newRing.getShard(queueName);
+            List<Integer> sourceShards = new ArrayList<>(messageStore.getReadShards(queueName));
+            sourceShards.remove(Integer.valueOf(targetShard));
+            if (targetShard != currentRing.getShard(queueName) && !sourceShards.isEmpty()) {
+                moves.add(new ShardedMessageStoreImpl.QueueMove(queueName, sourceShards, targetShard));
+            }
+        }
+
+        log.info("Moving " + moves.size() + " queues to the new shard");
+        messageStore.startMoves(moves, newRing);
+        for (ShardedMessageStoreImpl.QueueMove move : moves) {
+            schedule(move, AndesContext.getInstance().isClusteringEnabled() ? CLUSTER_MOVE_START_DELAY_SECONDS : 0);
+        }
+    }
+
+    /**
+     * Stop moving queues. Moves in progress are continued on the next start.
+     */
+    void stop() {
+        moveExecutor.shutdownNow();
+    }
+
+    private void submit(List<ShardedMessageStoreImpl.QueueMove> moves) {
+        for (ShardedMessageStoreImpl.QueueMove move : moves) {
+            schedule(move, 0);
+        }
+    }
+
+    private void schedule(final ShardedMessageStoreImpl.QueueMove move, long delaySeconds) {
+        moveExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (isCoordinator()) {
+                        moveQueue(move);
+                    } else if (!isMoved(move)) {
+                        // The coordinator is still moving the queue
+                        schedule(move, RETRY_DELAY_SECONDS);
+                        return;
+                    }
+                    messageStore.completeMove(move);
+                    log.info("Queue " + move.getStorageQueueName() + " moved to shard " + move.getTargetShard());
+                } catch (AndesException e) {
+                    log.error("Error while moving queue " + move.getStorageQueueName() + " to shard "
+                            + move.getTargetShard() + ". Retrying in " + RETRY_DELAY_SECONDS + " seconds.", e);
+                    schedule(move, RETRY_DELAY_SECONDS);
+                } catch (RuntimeException e) {
+                    log.error("Error while moving queue " + move.getStorageQueueName() + " to shard "
+                            + move.getTargetShard(), e);
+                }
+            }
+        }, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Check whether this node copies messages of moving queues
+     *
+     * @return true if clustering is disabled or this node is the coordinator
+     */
+    private boolean isCoordinator() {
+        ClusterAgent clusterAgent = AndesContext.getInstance().getClusterAgent();
+        return !AndesContext.getInstance().isClusteringEnabled()
+                || (null != clusterAgent && clusterAgent.isCoordinator());
+    }
+
+    /**
+     * Check whether the coordinator has moved all messages of a queue out of the source shards of the move
+     *
+     * @param move queue move
+     * @return true if no source shard has messages of the queue
+     * @throws AndesException on a store error
+     */
+    private boolean isMoved(ShardedMessageStoreImpl.QueueMove move) throws AndesException {
+        for (int sourceShard : move.getSourceShards()) {
+            if (!messageStore.getShard(sourceShard)
+                    .getNextNMessageMetadataFromQueue(move.getStorageQueueName(), 0, 1).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy all messages of a queue from the source shards of the move to the target shard. A retried move continues
+     * after the last batch it transferred. Moves restarted after a shutdown read the source shards from the start,
+     * which only holds the messages not yet deleted after they were copied, and those are not copied again.
+     *
+     * @param move queue move
+     * @throws AndesException on a store error
+     */
+    private void moveQueue(ShardedMessageStoreImpl.QueueMove move) throws AndesException {
+        String queueName = move.getStorageQueueName();
+        messageStore.getShard(move.getTargetShard()).trackMessageCount(queueName);
+
+        for (int sourceShard : move.getSourceShards()) {
+            RDBMSMessageStoreImpl source = messageStore.getShard(sourceShard);
+            long nextMessageId = move.getNextMessageId(sourceShard);
+            List<AndesMessageMetadata> batch = source.getNextNMessageMetadataFromQueue(queueName, nextMessageId,
+                    batchSize);
+
+            while (!batch.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                messageStore.transferMessages(sourceShard, move.getTargetShard(), batch, batch);
+                // Metadata is returned ordered by message id, starting from the given id
+                nextMessageId = batch.get(batch.size() - 1).getMessageID() + 1;
+                move.setNextMessageId(sourceShard, nextMessageId);
+                batch = source.getNextNMessageMetadataFromQueue(queueName, nextMessageId, batchSize);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.rdbms;
+
+import org.wso2.andes.dtx.XidImpl;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.DtxStore;
+import org.wso2.andes.kernel.dtx.AndesPreparedMessageMetadata;
+import org.wso2.andes.kernel.dtx.DtxBranch;
+import org.wso2.andes.kernel.dtx.PartialDtxCommitException;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.transaction.xa.Xid;
+
+/**
+ * Distributed transaction store of the {@link ShardedMessageStoreImpl}. The prepared records of a transaction are
+ * stored in the shard of the queues the transaction publishes to and acknowledges from, since preparing and
+ * committing the transaction moves message content within a single database. Transactions spanning queues of
+ * several shards are therefore rejected at the prepare stage.
+ */
+class ShardedDtxStoreImpl implements DtxStore {
+
+    private final ShardedMessageStoreImpl messageStore;
+
+    /**
+     * Shard index of each prepared transaction, keyed by internal xid
+     */
+    private final Map<Long, Integer> transactionShards = new ConcurrentHashMap<>();
+
+    ShardedDtxStoreImpl(ShardedMessageStoreImpl messageStore) {
+        this.messageStore = messageStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long storeDtxRecords(Xid xid, List<AndesMessage> enqueueRecords,
+                                List<? extends AndesMessageMetadata> dequeueRecords) throws AndesException {
+        Set<String> queueNames = new TreeSet<>();
+        for (AndesMessage message : enqueueRecords) {
+            queueNames.add(message.getMetadata().getStorageQueueName());
+        }
+        for (AndesMessageMetadata metadata : dequeueRecords) {
+            queueNames.add(metadata.getStorageQueueName());
+        }
+
+        int shardIndex = getTransactionShard(queueNames);
+        long internalXid = messageStore.getShard(shardIndex).getDtxStore()
+                .storeDtxRecords(xid, enqueueRecords, dequeueRecords);
+        transactionShards.put(internalXid, shardIndex);
+        return internalXid;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnCommit(long internalXid, List<AndesMessage> enqueueRecords) throws AndesException {
+        messageStore.getShard(getPreparedShard(internalXid)).getDtxStore()
+                .updateOnCommit(internalXid, enqueueRecords);
+        transactionShards.remove(internalXid);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Branches are grouped by the shard they were prepared in and each group is committed in that shard. The
+     * single transaction guarantee therefore holds per shard. Groups of the other shards are committed even if a
+     * shard fails, and the branches of the failed shards are reported with a {@link PartialDtxCommitException}
+     */
+    @Override
+    public void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) throws AndesException {
+        Map<Integer, Map<Long, List<AndesMessage>>> shardRecords = new HashMap<>();
+        for (Map.Entry<Long, List<AndesMessage>> entry : enqueueRecords.entrySet()) {
+            int shardIndex = getPreparedShard(entry.getKey());
+            Map<Long, List<AndesMessage>> records = shardRecords.get(shardIndex);
+            if (null == records) {
+                records = new LinkedHashMap<>();
+                shardRecords.put(shardIndex, records);
+            }
+            records.put(entry.getKey(), entry.getValue());
+        }
+
+        Set<Long> failedInternalXids = new HashSet<>();
+        AndesException error = null;
+        for (Map.Entry<Integer, Map<Long, List<AndesMessage>>> entry : shardRecords.entrySet()) {
+            try {
+                messageStore.getShard(entry.getKey()).getDtxStore().updateOnCommit(entry.getValue());
+                transactionShards.keySet().removeAll(entry.getValue().keySet());
+            } catch (AndesException e) {
+                failedInternalXids.addAll(entry.getValue().keySet());
+                if (null == error) {
+                    error = e;
+                }
+            }
+        }
+
+        if (null != error) {
+            throw new PartialDtxCommitException("Distributed transaction branches " + failedInternalXids
+                    + " failed to commit", error, failedInternalXids);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnOnePhaseCommit(List<AndesMessage> enqueueRecords,
+                                       List<AndesPreparedMessageMetadata> dequeueRecordsMetadata)
+            throws AndesException {
+        Set<String> queueNames = new TreeSet<>();
+        for (AndesMessage message : enqueueRecords) {
+            queueNames.add(message.getMetadata().getStorageQueueName());
+        }
+        for (AndesMessageMetadata metadata : dequeueRecordsMetadata) {
+            queueNames.add(metadata.getStorageQueueName());
+        }
+
+        messageStore.getShard(getTransactionShard(queueNames)).getDtxStore()
+                .updateOnOnePhaseCommit(enqueueRecords, dequeueRecordsMetadata);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOnRollback(long internalXid, List<AndesPreparedMessageMetadata> messagesToRestore)
+            throws AndesException {
+        messageStore.getShard(getPreparedShard(internalXid)).getDtxStore()
+                .updateOnRollback(internalXid, messagesToRestore);
+        transactionShards.remove(internalXid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long recoverBranchData(DtxBranch branch, String nodeId) throws AndesException {
+        for (int shardIndex : messageStore.allShards()) {
+            long internalXid = messageStore.getShard(shardIndex).getDtxStore().recoverBranchData(branch, nodeId);
+            if (DtxBranch.NULL_XID != internalXid) {
+                transactionShards.put(internalXid, shardIndex);
+                return internalXid;
+            }
+        }
+        return DtxBranch.NULL_XID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<XidImpl> getStoredXidSet(String nodeId) throws AndesException {
+        Set<XidImpl> xidSet = new HashSet<>();
+        for (int shardIndex : messageStore.allShards()) {
+            xidSet.addAll(messageStore.getShard(shardIndex).getDtxStore().getStoredXidSet(nodeId));
+        }
+        return xidSet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOperational(String testString, long testTime) {
+        for (int shardIndex : messageStore.allShards()) {
+            if (!messageStore.getShard(shardIndex).getDtxStore().isOperational(testString, testTime)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the shard holding all messages of the given queues
+     *
+     * @param queueNames names of the storage queues used by a transaction
+     * @return shard index
+     * @throws AndesException if the queues are in different shards or are being moved
+     */
+    private int getTransactionShard(Set<String> queueNames) throws AndesException {
+        Integer shardIndex = null;
+        for (String queueName : queueNames) {
+            List<Integer> readShards = messageStore.getReadShards(queueName);
+            if (readShards.size() > 1) {
+                throw new AndesException("Distributed transaction uses queue " + queueName
+                        + " which is being moved to another shard. Retry the transaction after the move.");
+            }
+            if (null == shardIndex) {
+                shardIndex = readShards.get(0);
+            } else if (shardIndex != readShards.get(0).intValue()) {
+                throw new AndesException("Distributed transaction uses queues " + queueNames
+                        + " which are stored in different shards.");
+            }
+        }
+        return null == shardIndex ? 0 : shardIndex;
+    }
+
+    /**
+     * Get the shard holding the prepared records of a transaction
+     *
+     * @param internalXid internal xid of the transaction
+     * @return shard index
+     * @throws AndesException if the transaction is not known
+     */
+    private int getPreparedShard(long internalXid) throws AndesException {
+        Integer shardIndex = transactionShards.get(internalXid);
+        if (null == shardIndex) {
+            throw new AndesException("Shard of prepared transaction " + internalXid + " is not known");
+        }
+        return shardIndex;
+    }
+}
@@ -0,0 +1,1506 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.rdbms;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import com.gs.collections.impl.set.mutable.primitive.LongHashSet;
+import org.apache.log4j.Logger;
+import org.wso2.andes.configuration.util.ConfigurationProperties;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.DeliverableAndesMetadata;
+import org.wso2.andes.kernel.DtxStore;
+import org.wso2.andes.kernel.DurableStoreConnection;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.slot.RecoverySlotCreator;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.queue.DLCQueueUtils;
+import org.wso2.andes.store.cache.AndesMessageCache;
+import org.wso2.andes.store.cache.MessageCacheFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Message store which spreads storage queues over several RDBMS data sources. Each data source is a shard handled by
+ * an {@link RDBMSMessageStoreImpl}. A storage queue is assigned to a shard with consistent hashing on the queue name,
+ * and all metadata and content of the messages of the queue is stored in that shard.
+ * <p>
+ * Operations on a queue are routed to its shard. Batch operations are split by shard and run in parallel. Operations
+ * which only know message ids use a bounded cache of message locations and fall back to asking every shard. Dead
+ * letter channel messages stay in the shard of their queue, so dead letter channel reads are merged from all shards.
+ * Retained messages are kept in the primary shard, the first configured data source.
+ * <p>
+ * Distributed transactions are supported when all messages of a transaction belong to queues of the same shard,
+ * since the prepared records must be in the same database as the messages. Other batches spanning several shards
+ * are committed per shard.
+ * <p>
+ * A shard is added by appending its data source to the dataSources property and restarting the node, or at runtime
+ * with {@link #addShard(String)}. Queues assigned to the new shard are then moved in the background by
+ * {@link ShardRebalancer} while the broker keeps serving them. Message counts of a queue being moved are
+ * approximate until the move completes. New data sources must be appended since the first data source holds the
+ * retained messages.
+ */
+public class ShardedMessageStoreImpl implements MessageStore {
+
+    private static final Logger log = Logger.getLogger(ShardedMessageStoreImpl.class);
+
+    /**
+     * Comma separated list of the JNDI names of the shard data sources
+     */
+    static final String PROP_DATA_SOURCES = "dataSources";
+
+    /**
+     * Number of points of each shard on the consistent hash ring
+     */
+    static final String PROP_VIRTUAL_NODES = "virtualNodesPerShard";
+
+    /**
+     * Maximum number of message locations remembered
+     */
+    static final String PROP_LOCATION_CACHE_SIZE = "messageLocationCacheSize";
+
+    /**
+     * Number of messages moved at once when moving a queue to another shard
+     */
+    static final String PROP_REBALANCE_BATCH_SIZE = "rebalanceBatchSize";
+
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final int DEFAULT_LOCATION_CACHE_SIZE = 100000;
+
+    private static final int DEFAULT_REBALANCE_BATCH_SIZE = 500;
+
+    /**
+     * Index of the shard holding retained messages
+     */
+    private static final int PRIMARY_SHARD = 0;
+
+    /**
+     * Operation run against a single shard
+     *
+     * @param <T> result type
+     */
+    interface ShardOperation<T> {
+
+        /**
+         * Run the operation
+         *
+         * @param shardIndex index of the shard
+         * @return result of the operation
+         * @throws AndesException on a store error
+         */
+        T execute(int shardIndex) throws AndesException;
+    }
+
+    /**
+     * A storage queue whose messages are being moved to another shard. While a move is in progress the queue is read
+     * from the source shards and the target shard, and written to the target shard.
+     */
+    static class QueueMove {
+
+        private final String storageQueueName;
+
+        private final List<Integer> sourceShards;
+
+        private final int targetShard;
+
+        /**
+         * Id to continue reading each source shard from when a failed move is retried
+         */
+        private final Map<Integer, Long> nextMessageIds = new ConcurrentHashMap<>();
+
+        QueueMove(String storageQueueName, List<Integer> sourceShards, int targetShard) {
+            this.storageQueueName = storageQueueName;
+            this.sourceShards = sourceShards;
+            this.targetShard = targetShard;
+        }
+
+        String getStorageQueueName() {
+            return storageQueueName;
+        }
+
+        List<Integer> getSourceShards() {
+            return sourceShards;
+        }
+
+        int getTargetShard() {
+            return targetShard;
+        }
+
+        long getNextMessageId(int sourceShard) {
+            Long nextMessageId = nextMessageIds.get(sourceShard);
+            return null == nextMessageId ? 0 : nextMessageId;
+        }
+
+        void setNextMessageId(int sourceShard, long nextMessageId) {
+            nextMessageIds.put(sourceShard, nextMessageId);
+        }
+    }
+
+    private final List<RDBMSMessageStoreImpl> shards = new CopyOnWriteArrayList<>();
+
+    private volatile ConsistentHashRing ring;
+
+    private final ConcurrentHashMap<String, QueueMove> movingQueues = new ConcurrentHashMap<>();
+
+    /**
+     * Shard index of recently stored or read messages
+     */
+    private Cache<Long, Integer> messageLocations;
+
+    private ExecutorService shardExecutor;
+
+    private AndesContextStore contextStore;
+
+    private ConfigurationProperties connectionProperties;
+
+    /**
+     * Message cache shared by all shards
+     */
+    private AndesMessageCache messageCache;
+
+    private ShardedDtxStoreImpl dtxStore;
+
+    private ShardRebalancer rebalancer;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DurableStoreConnection initializeMessageStore(AndesContextStore contextStore,
+            ConfigurationProperties connectionProperties) throws AndesException {
+
+        this.contextStore = contextStore;
+        this.connectionProperties = connectionProperties;
+
+        List<String> dataSources = Splitter.on(',').trimResults().omitEmptyStrings()
+                .splitToList(connectionProperties.getProperty(PROP_DATA_SOURCES));
+        if (dataSources.isEmpty()) {
+            throw new AndesException("No data sources configured for the sharded message store. Set the "
+                    + PROP_DATA_SOURCES + " property of the message store.");
+        }
+        if (new HashSet<>(dataSources).size() != dataSources.size()) {
+            throw new AndesException("Data sources of the sharded message store must be unique: " + dataSources);
+        }
+
+        ring = new ConsistentHashRing(dataSources,
+                connectionProperties.getProperty(PROP_VIRTUAL_NODES, DEFAULT_VIRTUAL_NODES));
+        messageLocations = CacheBuilder.newBuilder()
+                .maximumSize(connectionProperties.getProperty(PROP_LOCATION_CACHE_SIZE, DEFAULT_LOCATION_CACHE_SIZE))
+                .build();
+        messageCache = (new MessageCacheFactory()).create();
+        shardExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("ShardedMessageStore-%d").setDaemon(true).build());
+
+        DurableStoreConnection primaryConnection = null;
+        for (String dataSource : dataSources) {
+            DurableStoreConnection connection = addShardStore(dataSource);
+            if (null == primaryConnection) {
+                primaryConnection = connection;
+            }
+        }
+
+        dtxStore = new ShardedDtxStoreImpl(this);
+        rebalancer = new ShardRebalancer(this, contextStore,
+                connectionProperties.getProperty(PROP_REBALANCE_BATCH_SIZE, DEFAULT_REBALANCE_BATCH_SIZE));
+        rebalancer.moveMisplacedQueues();
+        ClusterResourceHolder.getInstance().setShardedMessageStore(this);
+
+        log.info("Sharded message store initialised with data sources " + dataSources);
+        return primaryConnection;
+    }
+
+    /**
+     * Add a data source as a new shard. Queues assigned to the new shard are moved to it in the background by the
+     * coordinator. Every node of a cluster must add the shard, which is done through
+     * {@link MessageStoreShardManagementInformationMBean}. The data source must also be appended to the dataSources
+     * property of every node so that the shard is used after a restart.
+     *
+     * @param dataSourceName JNDI name of the data source
+     * @throws AndesException if the shard could not be initialised
+     */
+    public synchronized void addShard(String dataSourceName) throws AndesException {
+        if (ring.getShardNames().contains(dataSourceName)) {
+            throw new AndesException("Data source " + dataSourceName + " is already a shard");
+        }
+        addShardStore(dataSourceName);
+        rebalancer.rebalance(ring.withShard(dataSourceName));
+        log.info("Data source " + dataSourceName + " added as shard " + (shards.size() - 1));
+    }
+
+    /**
+     * Get the data sources of the shards
+     *
+     * @return JNDI names of the data sources in the order of the shards
+     */
+    public List<String> getShardDataSources() {
+        return Collections.unmodifiableList(ring.getShardNames());
+    }
+
+    /**
+     * Get the queues whose messages are being moved to another shard
+     *
+     * @return names of the storage queues
+     */
+    public List<String> getMovingQueues() {
+        return new ArrayList<>(movingQueues.keySet());
+    }
+
+    /**
+     * Create and initialise the store of a shard. The shard gets the next index.
+     *
+     * @param dataSourceName JNDI name of the data source
+     * @return connection of the shard
+     * @throws AndesException if the store could not be initialised
+     */
+    private DurableStoreConnection addShardStore(String dataSourceName) throws AndesException {
+        final int shardIndex = shards.size();
+        RDBMSMessageStoreImpl shard = new RDBMSMessageStoreImpl();
+        shard.setMessageCache(messageCache);
+        shard.setCounterQueueFilter(new QueueMessageCounter.QueueFilter() {
+            @Override
+            public boolean isCounted(String storageQueueName) {
+                return isSettledIn(shardIndex, storageQueueName);
+            }
+        });
+
+        ConfigurationProperties shardProperties = new ConfigurationProperties(connectionProperties);
+        shardProperties.addProperty(RDBMSConstants.PROP_JNDI_LOOKUP_NAME, dataSourceName);
+        DurableStoreConnection connection = shard.initializeMessageStore(contextStore, shardProperties);
+        shards.add(shard);
+        return connection;
+    }
+
+    /**
+     * Check whether all messages of a queue are in the given shard
+     *
+     * @param shardIndex       index of the shard
+     * @param storageQueueName name of the storage queue
+     * @return true if the queue is assigned to the shard and is not being moved
+     */
+    private boolean isSettledIn(int shardIndex, String storageQueueName) {
+        return ring.getShard(storageQueueName) == shardIndex && !movingQueues.containsKey(storageQueueName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeMessagePart(List<AndesMessagePart> partList) throws AndesException {
+        Map<Integer, List<AndesMessagePart>> partsByShard = new HashMap<>();
+        for (AndesMessagePart part : partList) {
+            Integer shardIndex = messageLocations.getIfPresent(part.getMessageID());
+            addToGroup(partsByShard, null == shardIndex ? PRIMARY_SHARD : shardIndex, part);
+        }
+        executeOnShards(partsByShard, new GroupOperation<AndesMessagePart, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessagePart> parts) throws AndesException {
+                shards.get(shardIndex).storeMessagePart(parts);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AndesMessagePart getContent(final long messageId, final int offsetValue) throws AndesException {
+        Integer shardIndex = messageLocations.getIfPresent(messageId);
+        if (null != shardIndex) {
+            AndesMessagePart part = shards.get(shardIndex).getContent(messageId, offsetValue);
+            if (null != part) {
+                return part;
+            }
+        }
+
+        List<AndesMessagePart> parts = executeOnShards(allShards(), new ShardOperation<AndesMessagePart>() {
+            @Override
+            public AndesMessagePart execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getContent(messageId, offsetValue);
+            }
+        });
+        for (AndesMessagePart part : parts) {
+            if (null != part) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LongObjectHashMap<List<AndesMessagePart>> getContent(LongArrayList messageIDList)
+            throws AndesException {
+
+        Map<Integer, LongArrayList> idsByShard = new HashMap<>();
+        LongArrayList unknownIds = new LongArrayList();
+        for (int i = 0; i < messageIDList.size(); i++) {
+            long messageId = messageIDList.get(i);
+            Integer shardIndex = messageLocations.getIfPresent(messageId);
+            if (null == shardIndex) {
+                unknownIds.add(messageId);
+            } else {
+                LongArrayList ids = idsByShard.get(shardIndex);
+                if (null == ids) {
+                    ids = new LongArrayList();
+                    idsByShard.put(shardIndex, ids);
+                }
+                ids.add(messageId);
+            }
+        }
+
+        final LongObjectHashMap<List<AndesMessagePart>> content = new LongObjectHashMap<>();
+        for (LongObjectHashMap<List<AndesMessagePart>> shardContent : getContent(idsByShard)) {
+            content.putAll(shardContent);
+        }
+
+        for (int i = 0; i < messageIDList.size(); i++) {
+            long messageId = messageIDList.get(i);
+            if (!content.containsKey(messageId) && !unknownIds.contains(messageId)) {
+                unknownIds.add(messageId);
+            }
+        }
+
+        if (!unknownIds.isEmpty()) {
+            Map<Integer, LongArrayList> unknownIdsByShard = new HashMap<>();
+            for (int shardIndex : allShards()) {
+                unknownIdsByShard.put(shardIndex, unknownIds);
+            }
+            for (LongObjectHashMap<List<AndesMessagePart>> shardContent : getContent(unknownIdsByShard)) {
+                content.putAll(shardContent);
+            }
+        }
+        return content;
+    }
+
+    private List<LongObjectHashMap<List<AndesMessagePart>>> getContent(final Map<Integer, LongArrayList> idsByShard)
+            throws AndesException {
+        return executeOnShards(idsByShard.keySet(), new ShardOperation<LongObjectHashMap<List<AndesMessagePart>>>() {
+            @Override
+            public LongObjectHashMap<List<AndesMessagePart>> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getContent(idsByShard.get(shardIndex));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeMessages(List<AndesMessage> messageList) throws AndesException {
+        Map<Integer, List<AndesMessage>> messagesByShard = new HashMap<>();
+        for (AndesMessage message : messageList) {
+            addToGroup(messagesByShard, ring.getShard(message.getMetadata().getStorageQueueName()), message);
+        }
+
+        executeOnShards(messagesByShard, new GroupOperation<AndesMessage, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessage> messages) throws AndesException {
+                shards.get(shardIndex).storeMessages(messages);
+                for (AndesMessage message : messages) {
+                    messageLocations.put(message.getMetadata().getMessageID(), shardIndex);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveMetadataToQueue(long messageId, String currentQueueName, String targetQueueName)
+            throws AndesException {
+        // The current queue may be a dead letter channel, so the message is located by id
+        Integer sourceShard = locate(messageId);
+        if (null == sourceShard) {
+            log.warn("Message " + messageId + " to move to queue " + targetQueueName + " was not found in any shard");
+            return;
+        }
+
+        int targetShard = ring.getShard(targetQueueName);
+        RDBMSMessageStoreImpl source = shards.get(sourceShard);
+        if (sourceShard == targetShard) {
+            source.moveMetadataToQueue(messageId, currentQueueName, targetQueueName);
+        } else {
+            AndesMessageMetadata metadata = source.getMetadata(messageId);
+            if (null != metadata) {
+                metadata.setStorageQueueName(currentQueueName);
+                AndesMessageMetadata targetMetadata = metadata.shallowCopy(messageId);
+                targetMetadata.setStorageQueueName(targetQueueName);
+                transferMessages(sourceShard, targetShard, Collections.singletonList(metadata),
+                        Collections.singletonList(targetMetadata));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveMetadataToDLC(final long messageId, final String dlcQueueName) throws AndesException {
+        executeOnShardsOf(Collections.singletonList(messageId), new GroupOperation<Long, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<Long> ids) throws AndesException {
+                shards.get(shardIndex).moveMetadataToDLC(messageId, dlcQueueName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveMetadataToDLC(List<AndesMessageMetadata> messages, final String dlcQueueName)
+            throws AndesException {
+        executeOnReadShards(messages, new GroupOperation<AndesMessageMetadata, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessageMetadata> shardMessages) throws AndesException {
+                shards.get(shardIndex).moveMetadataToDLC(shardMessages, dlcQueueName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Messages whose new queue is assigned to another shard are moved to that shard.
+     */
+    @Override
+    public void updateMetadataInformation(final String currentQueueName, List<AndesMessageMetadata> metadataList)
+            throws AndesException {
+
+        Map<Integer, List<AndesMessageMetadata>> metadataByShard = new HashMap<>();
+        for (AndesMessageMetadata metadata : metadataList) {
+            Integer shardIndex = locate(metadata.getMessageID());
+            if (null != shardIndex) {
+                addToGroup(metadataByShard, shardIndex, metadata);
+            } else {
+                log.warn("Message " + metadata.getMessageID() + " to update was not found in any shard");
+            }
+        }
+
+        executeOnShards(metadataByShard, new GroupOperation<AndesMessageMetadata, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessageMetadata> shardMetadata) throws AndesException {
+                List<AndesMessageMetadata> sameShard = new ArrayList<>();
+                Map<Integer, List<AndesMessageMetadata>> otherShards = new HashMap<>();
+                for (AndesMessageMetadata metadata : shardMetadata) {
+                    int targetShard = ring.getShard(metadata.getStorageQueueName());
+                    if (targetShard == shardIndex) {
+                        sameShard.add(metadata);
+                    } else {
+                        addToGroup(otherShards, targetShard, metadata);
+                    }
+                }
+
+                if (!sameShard.isEmpty()) {
+                    shards.get(shardIndex).updateMetadataInformation(currentQueueName, sameShard);
+                }
+                for (Map.Entry<Integer, List<AndesMessageMetadata>> entry : otherShards.entrySet()) {
+                    List<AndesMessageMetadata> sourceMetadata = new ArrayList<>(entry.getValue().size());
+                    for (AndesMessageMetadata metadata : entry.getValue()) {
+                        AndesMessageMetadata current = metadata.shallowCopy(metadata.getMessageID());
+                        current.setStorageQueueName(currentQueueName);
+                        sourceMetadata.add(current);
+                    }
+                    transferMessages(shardIndex, entry.getKey(), sourceMetadata, entry.getValue());
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AndesMessageMetadata getMetadata(final long messageId) throws AndesException {
+        Integer shardIndex = locate(messageId);
+        if (null == shardIndex) {
+            return null;
+        }
+        return shards.get(shardIndex).getMetadata(messageId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DeliverableAndesMetadata> getMetadataList(final Slot slot, final String storageQueueName,
+                                                          final long firstMsgId, final long lastMsgID)
+            throws AndesException {
+
+        List<List<DeliverableAndesMetadata>> results = readQueueShards(storageQueueName,
+                new ShardOperation<List<DeliverableAndesMetadata>>() {
+                    @Override
+                    public List<DeliverableAndesMetadata> execute(int shardIndex) throws AndesException {
+                        List<DeliverableAndesMetadata> metadataList = shards.get(shardIndex)
+                                .getMetadataList(slot, storageQueueName, firstMsgId, lastMsgID);
+                        rememberLocations(metadataList, shardIndex);
+                        return metadataList;
+                    }
+                });
+        return mergeById(results, Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForQueueInRange(final String storageQueueName, final long firstMessageId,
+                                               final long lastMessageId) throws AndesException {
+        return sum(readQueueShards(storageQueueName, new ShardOperation<Long>() {
+            @Override
+            public Long execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex)
+                        .getMessageCountForQueueInRange(storageQueueName, firstMessageId, lastMessageId);
+            }
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AndesMessageMetadata> getNextNMessageMetadataFromQueue(final String storageQueueName,
+                                                                       final long firstMsgId, final int count)
+            throws AndesException {
+        return mergeById(readQueueShards(storageQueueName,
+                new ShardOperation<List<AndesMessageMetadata>>() {
+                    @Override
+                    public List<AndesMessageMetadata> execute(int shardIndex) throws AndesException {
+                        List<AndesMessageMetadata> metadataList = shards.get(shardIndex)
+                                .getNextNMessageMetadataFromQueue(storageQueueName, firstMsgId, count);
+                        rememberLocations(metadataList, shardIndex);
+                        return metadataList;
+                    }
+                }), count);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Shards are recovered one after the other since the callback is not required to be thread safe.
+     */
+    @Override
+    public int recoverSlotsForQueue(String storageQueueName, long firstMsgId, int messageLimitPerSlot,
+                                    RecoverySlotCreator.CallBack callBack) throws AndesException {
+        int recoveredCount = 0;
+        for (int shardIndex : getReadShards(storageQueueName)) {
+            recoveredCount += shards.get(shardIndex)
+                    .recoverSlotsForQueue(storageQueueName, firstMsgId, messageLimitPerSlot, callBack);
+        }
+        return recoveredCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AndesMessageMetadata> getNextNMessageMetadataForQueueFromDLC(final String storageQueueName,
+            final String dlcQueueName, final long firstMsgId, final int count) throws AndesException {
+        return mergeById(executeOnShards(allShards(), new ShardOperation<List<AndesMessageMetadata>>() {
+            @Override
+            public List<AndesMessageMetadata> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex)
+                        .getNextNMessageMetadataForQueueFromDLC(storageQueueName, dlcQueueName, firstMsgId, count);
+            }
+        }), count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AndesMessageMetadata> getNextNMessageMetadataFromDLC(final String dlcQueueName,
+                                                                     final long firstMsgId, final int count)
+            throws AndesException {
+        return mergeById(executeOnShards(allShards(), new ShardOperation<List<AndesMessageMetadata>>() {
+            @Override
+            public List<AndesMessageMetadata> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getNextNMessageMetadataFromDLC(dlcQueueName, firstMsgId, count);
+            }
+        }), count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessageMetadataFromQueue(final String storageQueueName,
+                                               final List<AndesMessageMetadata> messagesToRemove)
+            throws AndesException {
+        executeOnReadShards(messagesToRemove, new GroupOperation<AndesMessageMetadata, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessageMetadata> shardMessages) throws AndesException {
+                shards.get(shardIndex).deleteMessageMetadataFromQueue(storageQueueName, shardMessages);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessages(Collection<? extends AndesMessageMetadata> messagesToRemove)
+            throws AndesException {
+        executeOnReadShards(messagesToRemove, new GroupOperation<AndesMessageMetadata, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessageMetadata> shardMessages) throws AndesException {
+                shards.get(shardIndex).deleteMessages(shardMessages);
+                return null;
+            }
+        });
+        for (AndesMessageMetadata metadata : messagesToRemove) {
+            messageLocations.invalidate(metadata.getMessageID());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessages(List<Long> messagesToRemove) throws AndesException {
+        executeOnShardsOf(messagesToRemove, new GroupOperation<Long, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<Long> ids) throws AndesException {
+                shards.get(shardIndex).deleteMessages(ids);
+                return null;
+            }
+        });
+        messageLocations.invalidateAll(messagesToRemove);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteDLCMessages(List<AndesMessageMetadata> messagesToRemove) throws AndesException {
+        Map<Integer, List<AndesMessageMetadata>> messagesByShard = new HashMap<>();
+        for (AndesMessageMetadata metadata : messagesToRemove) {
+            for (int shardIndex : getShardsOf(metadata.getMessageID())) {
+                addToGroup(messagesByShard, shardIndex, metadata);
+            }
+        }
+        executeOnShards(messagesByShard, new GroupOperation<AndesMessageMetadata, Void>() {
+            @Override
+            public Void execute(int shardIndex, List<AndesMessageMetadata> shardMessages) throws AndesException {
+                shards.get(shardIndex).deleteDLCMessages(shardMessages);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getExpiredMessages(final long lowerBoundMessageID, final String queueName)
+            throws AndesException {
+        return mergeIds(readQueueShards(queueName, new ShardOperation<List<Long>>() {
+            @Override
+            public List<Long> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getExpiredMessages(lowerBoundMessageID, queueName);
+            }
+        }), Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getExpiredMessagesFromDLC(final long messageCount) throws AndesException {
+        return mergeIds(executeOnShards(allShards(), new ShardOperation<List<Long>>() {
+            @Override
+            public List<Long> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getExpiredMessagesFromDLC(messageCount);
+            }
+        }), (int) Math.min(Integer.MAX_VALUE, messageCount));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMessageToExpiryQueue(Long messageId, Long expirationTime, boolean isMessageForTopic,
+                                        String destination) throws AndesException {
+        Integer shardIndex = messageLocations.getIfPresent(messageId);
+        shards.get(null == shardIndex ? ring.getShard(destination) : shardIndex)
+                .addMessageToExpiryQueue(messageId, expirationTime, isMessageForTopic, destination);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteAllMessageMetadata(final String storageQueueName) throws AndesException {
+        int deletedCount = 0;
+        for (Integer count : executeOnShards(getReadShards(storageQueueName), new ShardOperation<Integer>() {
+            @Override
+            public Integer execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).deleteAllMessageMetadata(storageQueueName);
+            }
+        })) {
+            deletedCount += count;
+        }
+        return deletedCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int clearDLCQueue(final String dlcQueueName) throws AndesException {
+        int clearedCount = 0;
+        for (Integer count : executeOnShards(allShards(), new ShardOperation<Integer>() {
+            @Override
+            public Integer execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).clearDLCQueue(dlcQueueName);
+            }
+        })) {
+            clearedCount += count;
+        }
+        return clearedCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LongArrayList getMessageIDsAddressedToQueue(final String storageQueueName, final Long startMessageID)
+            throws AndesException {
+        List<LongArrayList> results = readQueueShards(storageQueueName,
+                new ShardOperation<LongArrayList>() {
+                    @Override
+                    public LongArrayList execute(int shardIndex) throws AndesException {
+                        return shards.get(shardIndex).getMessageIDsAddressedToQueue(storageQueueName,
+                                startMessageID);
+                    }
+                });
+        if (1 == results.size()) {
+            return results.get(0);
+        }
+        LongHashSet messageIds = new LongHashSet();
+        for (LongArrayList result : results) {
+            messageIds.addAll(result);
+        }
+        return LongArrayList.newList(messageIds).sortThis();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addQueue(final String storageQueueName) throws AndesException {
+        executeOnShards(allShards(), new ShardOperation<Void>() {
+            @Override
+            public Void execute(int shardIndex) throws AndesException {
+                shards.get(shardIndex).addQueue(storageQueueName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Integer> getMessageCountForAllQueues(List<String> queueNames) throws AndesException {
+        Map<Integer, List<String>> queuesByShard = new HashMap<>();
+        List<String> movingQueueNames = new ArrayList<>();
+        for (String queueName : queueNames) {
+            if (movingQueues.containsKey(queueName)) {
+                movingQueueNames.add(queueName);
+            } else {
+                addToGroup(queuesByShard, ring.getShard(queueName), queueName);
+            }
+        }
+
+        Map<String, Integer> messageCounts = new HashMap<>(queueNames.size());
+        for (Map<String, Integer> shardCounts : executeOnShards(queuesByShard,
+                new GroupOperation<String, Map<String, Integer>>() {
+                    @Override
+                    public Map<String, Integer> execute(int shardIndex, List<String> shardQueueNames)
+                            throws AndesException {
+                        return shards.get(shardIndex).getMessageCountForAllQueues(shardQueueNames);
+                    }
+                })) {
+            messageCounts.putAll(shardCounts);
+        }
+        for (String queueName : movingQueueNames) {
+            messageCounts.put(queueName, (int) getMessageCountForQueue(queueName));
+        }
+        return messageCounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForQueue(final String storageQueueName) throws AndesException {
+        return sum(readQueueShards(storageQueueName, new ShardOperation<Long>() {
+            @Override
+            public Long execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getMessageCountForQueue(storageQueueName);
+            }
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getApproximateQueueMessageCount(final String storageQueueName) throws AndesException {
+        return sum(readQueueShards(storageQueueName, new ShardOperation<Long>() {
+            @Override
+            public Long execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getApproximateQueueMessageCount(storageQueueName);
+            }
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForQueueInDLC(final String storageQueueName, final String dlcQueueName)
+            throws AndesException {
+        return sum(executeOnShards(allShards(), new ShardOperation<Long>() {
+            @Override
+            public Long execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getMessageCountForQueueInDLC(storageQueueName, dlcQueueName);
+            }
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMessageCountForDLCQueue(final String dlcQueueName) throws AndesException {
+        return sum(executeOnShards(allShards(), new ShardOperation<Long>() {
+            @Override
+            public Long execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getMessageCountForDLCQueue(dlcQueueName);
+            }
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resetMessageCounterForQueue(String storageQueueName) throws AndesException {
+        shards.get(ring.getShard(storageQueueName)).resetMessageCounterForQueue(storageQueueName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeQueue(final String storageQueueName) throws AndesException {
+        executeOnShards(allShards(), new ShardOperation<Void>() {
+            @Override
+            public Void execute(int shardIndex) throws AndesException {
+                shards.get(shardIndex).removeQueue(storageQueueName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeLocalQueueData(String storageQueueName) {
+        for (RDBMSMessageStoreImpl shard : shards) {
+            shard.removeLocalQueueData(storageQueueName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void incrementMessageCountForQueue(String storageQueueName, long incrementBy) throws AndesException {
+        shards.get(ring.getShard(storageQueueName)).incrementMessageCountForQueue(storageQueueName, incrementBy);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void decrementMessageCountForQueue(String storageQueueName, long decrementBy) throws AndesException {
+        shards.get(ring.getShard(storageQueueName)).decrementMessageCountForQueue(storageQueueName, decrementBy);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeRetainedMessages(Map<String, AndesMessage> retainMap) throws AndesException {
+        shards.get(PRIMARY_SHARD).storeRetainedMessages(retainMap);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getAllRetainedTopics() throws AndesException {
+        return shards.get(PRIMARY_SHARD).getAllRetainedTopics();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, AndesMessagePart> getRetainedContentParts(long messageID) throws AndesException {
+        return shards.get(PRIMARY_SHARD).getRetainedContentParts(messageID);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliverableAndesMetadata getRetainedMetadata(String destination) throws AndesException {
+        return shards.get(PRIMARY_SHARD).getRetainedMetadata(destination);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DeliverableAndesMetadata> getRetainedMetadata(List<String> destinations) throws AndesException {
+        return shards.get(PRIMARY_SHARD).getRetainedMetadata(destinations);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LongObjectHashMap<Map<Integer, AndesMessagePart>> getRetainedContentParts(LongArrayList messageIdList)
+            throws AndesException {
+        return shards.get(PRIMARY_SHARD).getRetainedContentParts(messageIdList);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getMessageIdsInDLCForQueue(final String sourceQueueName, final String dlcQueueName,
+                                                 final long startMessageId, final int messageLimit)
+            throws AndesException {
+        return mergeIds(executeOnShards(allShards(), new ShardOperation<List<Long>>() {
+            @Override
+            public List<Long> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex)
+                        .getMessageIdsInDLCForQueue(sourceQueueName, dlcQueueName, startMessageId, messageLimit);
+            }
+        }), messageLimit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> getMessageIdsInDLC(final String dlcQueueName, final long startMessageId,
+                                         final int messageLimit) throws AndesException {
+        return mergeIds(executeOnShards(allShards(), new ShardOperation<List<Long>>() {
+            @Override
+            public List<Long> execute(int shardIndex) throws AndesException {
+                return shards.get(shardIndex).getMessageIdsInDLC(dlcQueueName, startMessageId, messageLimit);
+            }
+        }), messageLimit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (this == ClusterResourceHolder.getInstance().getShardedMessageStore()) {
+            ClusterResourceHolder.getInstance().setShardedMessageStore(null);
+        }
+        if (null != rebalancer) {
+            rebalancer.stop();
+        }
+        for (RDBMSMessageStoreImpl shard : shards) {
+            shard.close();
+        }
+        if (null != shardExecutor) {
+            shardExecutor.shutdown();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DtxStore getDtxStore() {
+        return dtxStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The store is operational only if every shard is operational.
+     */
+    @Override
+    public boolean isOperational(String testString, long testTime) {
+        for (RDBMSMessageStoreImpl shard : shards) {
+            if (!shard.isOperational(testString, testTime)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the store of a shard
+     *
+     * @param shardIndex index of the shard
+     * @return store of the shard
+     */
+    RDBMSMessageStoreImpl getShard(int shardIndex) {
+        return shards.get(shardIndex);
+    }
+
+    /**
+     * @return current consistent hash ring
+     */
+    ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Start reading queues from both their source and target shards and replace the ring. Moves must be registered
+     * before the ring is replaced so that no queue is read only from its new shard before its messages are moved.
+     *
+     * @param moves   moves to start
+     * @param newRing ring assigning the queues to their target shards, null to keep the ring
+     */
+    void startMoves(List<QueueMove> moves, ConsistentHashRing newRing) {
+        for (QueueMove move : moves) {
+            movingQueues.put(move.getStorageQueueName(), move);
+        }
+        if (null != newRing) {
+            ring = newRing;
+        }
+    }
+
+    /**
+     * Stop reading a queue from its source shards after all its messages are moved
+     *
+     * @param move completed move
+     */
+    void completeMove(QueueMove move) {
+        movingQueues.remove(move.getStorageQueueName(), move);
+        shards.get(move.getTargetShard()).reconcileMessageCounts();
+    }
+
+    /**
+     * Copy messages from one shard to another and delete them from the source shard. Messages deleted or moved to the
+     * dead letter channel by any node while they were copied are removed from the target shard again and left as
+     * they are in the source shard. All source messages must be of the same queue.
+     * <p>
+     * Messages already stored in the target shard are not copied again, so a transfer interrupted after the copy and
+     * before the delete from the source shard can be repeated.
+     *
+     * @param sourceShard    shard holding the messages
+     * @param targetShard    shard to copy the messages to
+     * @param sourceMetadata metadata of the messages as stored in the source shard
+     * @param targetMetadata metadata to store in the target shard, in the same order as the source metadata
+     * @throws AndesException on a store error
+     */
+    void transferMessages(int sourceShard, int targetShard, List<AndesMessageMetadata> sourceMetadata,
+                          List<AndesMessageMetadata> targetMetadata) throws AndesException {
+        RDBMSMessageStoreImpl source = shards.get(sourceShard);
+        RDBMSMessageStoreImpl target = shards.get(targetShard);
+
+        LongArrayList messageIds = new LongArrayList(sourceMetadata.size());
+        for (AndesMessageMetadata metadata : sourceMetadata) {
+            messageIds.add(metadata.getMessageID());
+        }
+        LongHashSet copiedMessageIds = target.getStoredMessageIds(messageIds);
+
+        LongArrayList copyMessageIds = new LongArrayList(messageIds.size());
+        for (int i = 0; i < messageIds.size(); i++) {
+            if (!copiedMessageIds.contains(messageIds.get(i))) {
+                copyMessageIds.add(messageIds.get(i));
+            }
+        }
+
+        if (!copyMessageIds.isEmpty()) {
+            LongObjectHashMap<List<AndesMessagePart>> content = source.getContent(copyMessageIds);
+
+            List<AndesMessage> messages = new ArrayList<>(copyMessageIds.size());
+            for (AndesMessageMetadata metadata : targetMetadata) {
+                if (copiedMessageIds.contains(metadata.getMessageID())) {
+                    continue;
+                }
+                // Content is copied for each message, shared content is not shared in the target shard
+                AndesMessage message = new AndesMessage(metadata.shallowCopy(metadata.getMessageID()));
+                List<AndesMessagePart> parts = content.get(metadata.getMessageID());
+                if (null != parts) {
+                    message.setChunkList(new ArrayList<>(parts));
+                }
+                messages.add(message);
+            }
+            target.storeMessages(messages);
+        }
+
+        // Any node deletes messages of moving queues from the source shards before the target shard, so a message
+        // still in the source shard after the copy is either deleted from the target shard too or not at all
+        String sourceQueueName = sourceMetadata.get(0).getStorageQueueName();
+        LongHashSet remainingMessageIds = DLCQueueUtils.isDeadLetterQueue(sourceQueueName)
+                ? source.getStoredMessageIds(messageIds) : source.getQueuedMessageIds(messageIds);
+
+        List<AndesMessageMetadata> touched = new ArrayList<>();
+        List<AndesMessageMetadata> moved = new ArrayList<>(sourceMetadata.size());
+        for (int i = 0; i < sourceMetadata.size(); i++) {
+            if (remainingMessageIds.contains(sourceMetadata.get(i).getMessageID())) {
+                moved.add(sourceMetadata.get(i));
+            } else {
+                touched.add(targetMetadata.get(i));
+            }
+        }
+
+        if (!touched.isEmpty()) {
+            target.deleteMessages(touched);
+        }
+        if (!moved.isEmpty()) {
+            source.deleteMessages(moved);
+            rememberLocations(moved, targetShard);
+        }
+    }
+
+    /**
+     * Find the shard holding a message
+     *
+     * @param messageId id of the message
+     * @return shard index, null if the message is not in any shard
+     * @throws AndesException on a store error
+     */
+    Integer locate(final long messageId) throws AndesException {
+        Integer shardIndex = messageLocations.getIfPresent(messageId);
+        if (null != shardIndex && null != shards.get(shardIndex).getMetadata(messageId)) {
+            return shardIndex;
+        }
+
+        List<Boolean> found = executeOnShards(allShards(), new ShardOperation<Boolean>() {
+            @Override
+            public Boolean execute(int shardIndex) throws AndesException {
+                return null != shards.get(shardIndex).getMetadata(messageId);
+            }
+        });
+        for (int i = 0; i < found.size(); i++) {
+            if (found.get(i)) {
+                messageLocations.put(messageId, i);
+                return i;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the shards to read messages of a queue from
+     *
+     * @param storageQueueName name of the storage queue
+     * @return the shard of the queue, or the source shards followed by the target shard while the queue is being
+     * moved
+     */
+    List<Integer> getReadShards(String storageQueueName) {
+        QueueMove move = movingQueues.get(storageQueueName);
+        if (null == move) {
+            return Collections.singletonList(ring.getShard(storageQueueName));
+        }
+        Set<Integer> readShards = new LinkedHashSet<>(move.getSourceShards());
+        readShards.add(move.getTargetShard());
+        return new ArrayList<>(readShards);
+    }
+
+    /**
+     * @return indexes of all shards
+     */
+    List<Integer> allShards() {
+        List<Integer> shardIndexes = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shardIndexes.add(i);
+        }
+        return shardIndexes;
+    }
+
+    /**
+     * Run a read operation on the shards of a queue. While the queue is being moved the shards are read one after the
+     * other with the target shard last. A message is copied to the target shard before it is deleted from the source
+     * shard, so it is seen by at least one of the reads even if it is moved in between.
+     *
+     * @param storageQueueName name of the storage queue
+     * @param operation        operation to run
+     * @param <T>              result type
+     * @return results in the order of the read shards
+     * @throws AndesException if the operation failed on any shard
+     */
+    private <T> List<T> readQueueShards(String storageQueueName, ShardOperation<T> operation) throws AndesException {
+        List<Integer> readShards = getReadShards(storageQueueName);
+        List<T> results = new ArrayList<>(readShards.size());
+        for (int shardIndex : readShards) {
+            results.add(operation.execute(shardIndex));
+        }
+        return results;
+    }
+
+    /**
+     * Run an operation on several shards in parallel. All operations are waited for before an error is reported.
+     *
+     * @param shardIndexes shards to run the operation on
+     * @param operation    operation to run
+     * @param <T>          result type
+     * @return results in the order of the given shards
+     * @throws AndesException if the operation failed on any shard
+     */
+    <T> List<T> executeOnShards(Collection<Integer> shardIndexes, final ShardOperation<T> operation)
+            throws AndesException {
+
+        if (1 == shardIndexes.size()) {
+            return Collections.singletonList(operation.execute(shardIndexes.iterator().next()));
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shardIndexes.size());
+        for (final int shardIndex : shardIndexes) {
+            futures.add(shardExecutor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return operation.execute(shardIndex);
+                }
+            }));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        AndesException error = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (null == error) {
+                    error = (e.getCause() instanceof AndesException) ? (AndesException) e.getCause()
+                            : new AndesException("Error while executing operation on a shard", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AndesException("Interrupted while waiting for shard operations", e);
+            }
+        }
+        if (null != error) {
+            throw error;
+        }
+        return results;
+    }
+
+    /**
+     * Operation run against a group of items of a single shard
+     *
+     * @param <E> item type
+     * @param <T> result type
+     */
+    interface GroupOperation<E, T> {
+
+        /**
+         * Run the operation
+         *
+         * @param shardIndex index of the shard
+         * @param items      items of the shard
+         * @return result of the operation
+         * @throws AndesException on a store error
+         */
+        T execute(int shardIndex, List<E> items) throws AndesException;
+    }
+
+    private <E, T> List<T> executeOnShards(final Map<Integer, List<E>> groups,
+                                           final GroupOperation<E, T> operation) throws AndesException {
+        if (groups.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return executeOnShards(groups.keySet(), new ShardOperation<T>() {
+            @Override
+            public T execute(int shardIndex) throws AndesException {
+                return operation.execute(shardIndex, groups.get(shardIndex));
+            }
+        });
+    }
+
+    /**
+     * Run an operation on messages in each shard their queues are read from. Messages of queues being moved are
+     * handled in the source shards of the move before the target shard, since a move keeps a copied message in the
+     * target shard if the message is still in the source shard after the copy.
+     */
+    private void executeOnReadShards(Collection<? extends AndesMessageMetadata> messages,
+                                     GroupOperation<AndesMessageMetadata, Void> operation) throws AndesException {
+        Map<Integer, List<AndesMessageMetadata>> sourceGroups = new HashMap<>();
+        Map<Integer, List<AndesMessageMetadata>> targetGroups = new HashMap<>();
+        for (AndesMessageMetadata metadata : messages) {
+            QueueMove move = movingQueues.get(metadata.getStorageQueueName());
+            for (int shardIndex : getReadShards(metadata.getStorageQueueName())) {
+                if (null != move && shardIndex == move.getTargetShard()) {
+                    addToGroup(targetGroups, shardIndex, metadata);
+                } else {
+                    addToGroup(sourceGroups, shardIndex, metadata);
+                }
+            }
+        }
+        executeOnShards(sourceGroups, operation);
+        executeOnShards(targetGroups, operation);
+    }
+
+    /**
+     * Run an operation on message ids in each shard holding them. Ids of unknown messages, and all ids while queues
+     * are being moved, are handled in every shard, in the target shards of moves after the other shards.
+     */
+    private void executeOnShardsOf(List<Long> messageIds, GroupOperation<Long, Void> operation)
+            throws AndesException {
+        Set<Integer> targetShards = new HashSet<>();
+        for (QueueMove move : movingQueues.values()) {
+            targetShards.add(move.getTargetShard());
+        }
+
+        Map<Integer, List<Long>> sourceGroups = new HashMap<>();
+        Map<Integer, List<Long>> targetGroups = new HashMap<>();
+        for (Long messageId : messageIds) {
+            for (int shardIndex : getShardsOf(messageId)) {
+                addToGroup(targetShards.contains(shardIndex) ? targetGroups : sourceGroups, shardIndex, messageId);
+            }
+        }
+        executeOnShards(sourceGroups, operation);
+        executeOnShards(targetGroups, operation);
+    }
+
+    /**
+     * Get the shards which may hold a message
+     *
+     * @param messageId id of the message
+     * @return the remembered shard of the message, or all shards
+     */
+    private List<Integer> getShardsOf(long messageId) {
+        Integer shardIndex = messageLocations.getIfPresent(messageId);
+        if (null == shardIndex || !movingQueues.isEmpty()) {
+            return allShards();
+        }
+        return Collections.singletonList(shardIndex);
+    }
+
+    private void rememberLocations(List<? extends AndesMessageMetadata> metadataList, int shardIndex) {
+        for (AndesMessageMetadata metadata : metadataList) {
+            messageLocations.put(metadata.getMessageID(), shardIndex);
+        }
+    }
+
+    private static <E> void addToGroup(Map<Integer, List<E>> groups, int shardIndex, E item) {
+        List<E> group = groups.get(shardIndex);
+        if (null == group) {
+            group = new ArrayList<>();
+            groups.put(shardIndex, group);
+        }
+        group.add(item);
+    }
+
+    private static long sum(List<Long> values) {
+        long sum = 0;
+        for (Long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Merge metadata lists of several shards ordered by message id. A message found in two shards while it is being
+     * moved is included once.
+     */
+    private static <T extends AndesMessageMetadata> List<T> mergeById(List<List<T>> lists, int limit) {
+        if (1 == lists.size()) {
+            return lists.get(0);
+        }
+        TreeMap<Long, T> merged = new TreeMap<>();
+        for (List<T> list : lists) {
+            for (T metadata : list) {
+                if (!merged.containsKey(metadata.getMessageID())) {
+                    merged.put(metadata.getMessageID(), metadata);
+                }
+            }
+        }
+        List<T> result = new ArrayList<>(Math.min(limit, merged.size()));
+        for (T metadata : merged.values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(metadata);
+        }
+        return result;
+    }
+
+    private static List<Long> mergeIds(List<List<Long>> lists, int limit) {
+        if (1 == lists.size()) {
+            return lists.get(0);
+        }
+        TreeSet<Long> merged = new TreeSet<>();
+        for (List<Long> list : lists) {
+            merged.addAll(list);
+        }
+        List<Long> result = new ArrayList<>(Math.min(limit, merged.size()));
+        for (Long messageId : merged) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(messageId);
+        }
+        return result;
+    }
+}
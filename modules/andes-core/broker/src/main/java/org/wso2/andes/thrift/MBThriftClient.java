@@ -23,6 +23,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TException;
 import org.apache.thrift.transport.TTransportException;
 import org.wso2.andes.configuration.AndesConfigurationManager;
@@ -33,6 +34,8 @@ import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.thrift.slot.gen.SlotInfo;
 import org.wso2.andes.thrift.slot.gen.SlotManagementService;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
@@ -87,6 +90,13 @@ public class MBThriftClient {
      */
     private long lastReconnectionSuccessTimestamp = 0;
 
+    /**
+     * False once the coordinator rejected a batched call as an unknown method, which happens when the coordinator
+     * runs an older build. Batched calls are then sent as one call per queue. Reset whenever the connection pool is
+     * initialized since the coordinator may have changed.
+     */
+    private volatile boolean batchCallsSupported = true;
+
     public MBThriftClient() {
         socketTimeout = AndesConfigurationManager.readValue(AndesConfiguration.COORDINATION_THRIFT_SO_TIMEOUT);
         initializeThriftConnectionPool();
@@ -125,6 +135,63 @@ public class MBThriftClient {
         throw new ConnectionException("Coordinator has changed");
     }
 
+    /**
+     * Get slots for several queues in a single call to the coordinator. Slots are returned in the order of the
+     * given queue names. A queue without messages to deliver gets an empty slot. A queue whose slot the
+     * coordinator failed to read gets null. If the coordinator does not support batched calls, slots are requested
+     * one queue at a time.
+     *
+     * @param queueNames names of the queues
+     * @param nodeId     of this node
+     * @return list of slots
+     * @throws ConnectionException Throws when thrift connection fails
+     */
+    public List<Slot> getSlots(List<String> queueNames, String nodeId) throws ConnectionException {
+        for (int i = 0; i <= RETRY_COUNT && batchCallsSupported; i++) {
+            SlotManagementService.Client client = null;
+
+            try {
+                client = getServiceClient();
+                List<SlotInfo> slotInfos = client.getSlotInfos(queueNames, nodeId);
+                List<Slot> slots = new ArrayList<>(slotInfos.size());
+                for (SlotInfo slotInfo : slotInfos) {
+                    if (slotInfo.isSetErrorMessage()) {
+                        log.error("Coordinator failed to provide a slot for queue " + slotInfo.getQueueName()
+                                + ": " + slotInfo.getErrorMessage());
+                        slots.add(null);
+                    } else {
+                        slots.add(convertSlotInforToSlot(slotInfo));
+                    }
+                }
+                return slots;
+            } catch (TException e) {
+                if (isUnknownMethod(e)) {
+                    disableBatchCalls(e);
+                } else {
+                    invalidateServiceClient(client);
+                    client = null;
+                    log.error("Attempt " + i + " failed requesting " + queueNames.size()
+                            + " slots from coordinator", e);
+                }
+            } finally {
+                if (client != null) {
+                    returnServiceClient(client);
+                }
+            }
+        }
+
+        if (!batchCallsSupported) {
+            List<Slot> slots = new ArrayList<>(queueNames.size());
+            for (String queueName : queueNames) {
+                slots.add(getSlot(queueName, nodeId));
+            }
+            return slots;
+        }
+
+        handleCoordinatorChanges();
+        throw new ConnectionException("Coordinator has changed");
+    }
+
     /**
      * Add Thrift connection listener
      *
@@ -192,6 +259,63 @@ public class MBThriftClient {
         }
     }
 
+    /**
+     * Pass several locally chosen slot ranges to the coordinator in a single call. Storage queue name, start and
+     * end message IDs of each slot are submitted. If the coordinator does not support batched calls, slots are
+     * submitted one at a time.
+     *
+     * @param slots         slots to submit
+     * @param nodeId        unique identifier of node.
+     * @param localSafeZone Minimum message ID of the node that is deemed safe.
+     * @throws ConnectionException in case of an connection error
+     */
+    public synchronized void updateMessageIds(List<Slot> slots, String nodeId, long localSafeZone)
+            throws ConnectionException {
+
+        List<SlotInfo> slotInfos = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            slotInfos.add(new SlotInfo(slot.getStartMessageId(), slot.getEndMessageId(), slot.getStorageQueueName(),
+                    nodeId, slot.isAnOverlappingSlot()));
+        }
+
+        boolean updateSuccess = false;
+
+        for (int i = 0; i <= RETRY_COUNT && batchCallsSupported; i++) {
+            if (updateSuccess) {
+                break;
+            }
+            SlotManagementService.Client client = null;
+
+            try {
+                client = getServiceClient();
+                client.updateMessageIds(slotInfos, nodeId, localSafeZone);
+                updateSuccess = true;
+            } catch (TException e) {
+                if (isUnknownMethod(e)) {
+                    disableBatchCalls(e);
+                } else {
+                    invalidateServiceClient(client);
+                    client = null;
+                    log.error("Attempt " + i + " failed updating " + slotInfos.size() + " message Ids", e);
+                }
+            } finally {
+                if (client != null) {
+                    returnServiceClient(client);
+                }
+            }
+        }
+
+        if (!updateSuccess && !batchCallsSupported) {
+            for (Slot slot : slots) {
+                updateMessageId(slot.getStorageQueueName(), nodeId, slot.getStartMessageId(),
+                        slot.getEndMessageId(), localSafeZone);
+            }
+        } else if (!updateSuccess) {
+            handleCoordinatorChanges();
+            throw new ConnectionException("Coordinator has changed");
+        }
+    }
+
     /**
      * Delete the slot from SlotAssignmentMap when all the messages in the slot has been sent and
      * all the acks are received.
@@ -300,6 +424,40 @@ public class MBThriftClient {
         }
     }
 
+    /**
+     * Hand over messages whose expiry deadline has passed on this node to the coordinator
+     *
+     * @param queueName  storage queue of the messages
+     * @param messageIds ids of the expired messages
+     * @throws ConnectionException Throws when thrift connection fails or the coordinator does not support the call
+     */
+    public void scheduleExpiredMessages(String queueName, List<Long> messageIds) throws ConnectionException {
+
+        for (int i = 0; i <= RETRY_COUNT; i++) {
+            SlotManagementService.Client client = null;
+
+            try {
+                client = getServiceClient();
+                client.scheduleExpiredMessages(messageIds, queueName);
+                return;
+            } catch (TException e) {
+                if (isUnknownMethod(e)) {
+                    throw new ConnectionException("Coordinator does not support handing over expired messages", e);
+                }
+                invalidateServiceClient(client);
+                client = null;
+                log.error("Attempt " + i + " failed handing over " + messageIds.size() + " expired messages", e);
+            } finally {
+                if (client != null) {
+                    returnServiceClient(client);
+                }
+            }
+        }
+
+        handleCoordinatorChanges();
+        throw new ConnectionException("Coordinator has changed");
+    }
+
     /**
      * Update the safeZone message ID of this node
      * @param safeZoneMessageID safe zone message ID
@@ -464,6 +622,29 @@ public class MBThriftClient {
             thriftConnectionPool.setMinEvictableIdleTimeMillis(socketTimeout);
         }
         thriftClientPool = thriftConnectionPool;
+        batchCallsSupported = true;
+    }
+
+    /**
+     * Check whether the coordinator rejected a call because it does not know the called method
+     *
+     * @param e exception thrown by the call
+     * @return true if the method is unknown to the coordinator
+     */
+    private boolean isUnknownMethod(TException e) {
+        return e instanceof TApplicationException
+                && TApplicationException.UNKNOWN_METHOD == ((TApplicationException) e).getType();
+    }
+
+    /**
+     * Stop sending batched calls to the current coordinator
+     *
+     * @param e exception thrown by the rejected batched call
+     */
+    private void disableBatchCalls(TException e) {
+        batchCallsSupported = false;
+        log.warn("Coordinator does not support batched slot calls. Falling back to one call per queue. "
+                + e.getMessage());
     }
 
     /**
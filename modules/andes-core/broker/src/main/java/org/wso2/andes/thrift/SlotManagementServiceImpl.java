@@ -18,14 +18,21 @@
 
 package org.wso2.andes.thrift;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.thrift.TException;
 import org.wso2.andes.kernel.AndesContext;
 import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.ExpiryTimerWheel;
+import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.kernel.slot.SlotManagerClusterMode;
 import org.wso2.andes.thrift.slot.gen.SlotInfo;
 import org.wso2.andes.thrift.slot.gen.SlotManagementService;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This is the implementation of SlotManagementService interface. This class contains operations
  * does on slots through slot manager.When thrift client calls the services on
@@ -34,22 +41,18 @@ import org.wso2.andes.thrift.slot.gen.SlotManagementService;
 
 public class SlotManagementServiceImpl implements SlotManagementService.Iface {
 
+    private static final Log log = LogFactory.getLog(SlotManagementServiceImpl.class);
+
     private static SlotManagerClusterMode slotManager = SlotManagerClusterMode.getInstance();
 
     @Override
     public SlotInfo getSlotInfo(String queueName, String nodeId) throws TException {
         if (AndesContext.getInstance().getClusterAgent().isCoordinator()) {
-            SlotInfo slotInfo = new SlotInfo();
             try {
-                Slot slot = slotManager.getSlot(queueName, nodeId);
-                if (null != slot) {
-                    slotInfo = new SlotInfo(slot.getStartMessageId(), slot.getEndMessageId(),
-                            slot.getStorageQueueName(), nodeId, slot.isAnOverlappingSlot());
-                }
+                return createSlotInfo(queueName, nodeId);
             } catch (AndesException e) {
                 throw new TException("Failed to get slot info for queue: " + queueName + " nodeId: " + nodeId, e);
             }
-            return slotInfo;
         } else {
             throw new TException("This node is not the slot coordinator right now");
         }
@@ -136,4 +139,74 @@ public class SlotManagementServiceImpl implements SlotManagementService.Iface {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A failure to get the slot of one queue does not fail the whole call. The slot info of that queue is
+     * returned with only the queue name and an error message set.
+     */
+    @Override
+    public List<SlotInfo> getSlotInfos(List<String> queueNames, String nodeId) throws TException {
+        if (AndesContext.getInstance().getClusterAgent().isCoordinator()) {
+            List<SlotInfo> slotInfos = new ArrayList<>(queueNames.size());
+            for (String queueName : queueNames) {
+                try {
+                    slotInfos.add(createSlotInfo(queueName, nodeId));
+                } catch (AndesException e) {
+                    log.error("Failed to get slot info for queue: " + queueName + " nodeId: " + nodeId, e);
+                    SlotInfo failedSlotInfo = new SlotInfo();
+                    failedSlotInfo.setQueueName(queueName);
+                    failedSlotInfo.setErrorMessage(e.getMessage());
+                    slotInfos.add(failedSlotInfo);
+                }
+            }
+            return slotInfos;
+        } else {
+            throw new TException("This node is not the slot coordinator right now");
+        }
+    }
+
+    @Override
+    public void updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone) throws TException {
+        for (SlotInfo slotInfo : slotInfos) {
+            updateMessageId(slotInfo.getQueueName(), nodeId, slotInfo.getStartMessageId(),
+                    slotInfo.getEndMessageId(), localSafeZone);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Messages are added to the expiry timer wheel of the coordinator. If the wheel is disabled the messages are
+     * left to the periodic expiry scan.
+     */
+    @Override
+    public void scheduleExpiredMessages(List<Long> messageIds, String queueName) throws TException {
+        if (AndesContext.getInstance().getClusterAgent().isCoordinator()) {
+            ExpiryTimerWheel expiryTimerWheel = MessagingEngine.getInstance().getExpiryTimerWheel();
+            if (null != expiryTimerWheel) {
+                expiryTimerWheel.scheduleExpired(queueName, messageIds);
+            }
+        } else {
+            throw new TException("This node is not the slot coordinator right now");
+        }
+    }
+
+    /**
+     * Get a slot of the queue from the slot manager
+     *
+     * @param queueName name of the queue
+     * @param nodeId    node requesting the slot
+     * @return slot info, with start and end message IDs set to 0 if there is no slot to assign
+     * @throws AndesException if the slot manager failed to read the slot
+     */
+    private SlotInfo createSlotInfo(String queueName, String nodeId) throws AndesException {
+        Slot slot = slotManager.getSlot(queueName, nodeId);
+        if (null != slot) {
+            return new SlotInfo(slot.getStartMessageId(), slot.getEndMessageId(), slot.getStorageQueueName(),
+                    nodeId, slot.isAnOverlappingSlot());
+        }
+        return new SlotInfo();
+    }
+
 }
@@ -29,6 +29,7 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
   private static final org.apache.thrift.protocol.TField QUEUE_NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("queueName", org.apache.thrift.protocol.TType.STRING, (short)4);
   private static final org.apache.thrift.protocol.TField ASSIGNED_NODE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("assignedNodeId", org.apache.thrift.protocol.TType.STRING, (short)5);
   private static final org.apache.thrift.protocol.TField HAS_OVERLAPPING_SLOTS_FIELD_DESC = new org.apache.thrift.protocol.TField("hasOverlappingSlots", org.apache.thrift.protocol.TType.BOOL, (short)6);
+  private static final org.apache.thrift.protocol.TField ERROR_MESSAGE_FIELD_DESC = new org.apache.thrift.protocol.TField("errorMessage", org.apache.thrift.protocol.TType.STRING, (short)7);
 
   public long messageCount; // required
   public long startMessageId; // required
@@ -36,6 +37,7 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
   public String queueName; // required
   public String assignedNodeId; // required
   public boolean hasOverlappingSlots; // required
+  public String errorMessage; // required
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
@@ -44,7 +46,8 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
     END_MESSAGE_ID((short)3, "endMessageId"),
     QUEUE_NAME((short)4, "queueName"),
     ASSIGNED_NODE_ID((short)5, "assignedNodeId"),
-    HAS_OVERLAPPING_SLOTS((short)6, "hasOverlappingSlots");
+    HAS_OVERLAPPING_SLOTS((short)6, "hasOverlappingSlots"),
+    ERROR_MESSAGE((short)7, "errorMessage");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -71,6 +74,8 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
           return ASSIGNED_NODE_ID;
         case 6: // HAS_OVERLAPPING_SLOTS
           return HAS_OVERLAPPING_SLOTS;
+        case 7: // ERROR_MESSAGE
+          return ERROR_MESSAGE;
         default:
           return null;
       }
@@ -132,6 +137,8 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
     tmpMap.put(_Fields.HAS_OVERLAPPING_SLOTS, new org.apache.thrift.meta_data.FieldMetaData("hasOverlappingSlots", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
+    tmpMap.put(_Fields.ERROR_MESSAGE, new org.apache.thrift.meta_data.FieldMetaData("errorMessage", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(SlotInfo.class, metaDataMap);
   }
@@ -173,6 +180,9 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
       this.assignedNodeId = other.assignedNodeId;
     }
     this.hasOverlappingSlots = other.hasOverlappingSlots;
+    if (other.isSetErrorMessage()) {
+      this.errorMessage = other.errorMessage;
+    }
   }
 
   public SlotInfo deepCopy() {
@@ -191,6 +201,7 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
     this.assignedNodeId = null;
     setHasOverlappingSlotsIsSet(false);
     this.hasOverlappingSlots = false;
+    this.errorMessage = null;
   }
 
   public long getMessageCount() {
@@ -333,6 +344,30 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
     __isset_bit_vector.set(__HASOVERLAPPINGSLOTS_ISSET_ID, value);
   }
 
+  public String getErrorMessage() {
+    return this.errorMessage;
+  }
+
+  public SlotInfo setErrorMessage(String errorMessage) {
+    this.errorMessage = errorMessage;
+    return this;
+  }
+
+  public void unsetErrorMessage() {
+    this.errorMessage = null;
+  }
+
+  /** Returns true if field errorMessage is set (has been assigned a value) and false otherwise */
+  public boolean isSetErrorMessage() {
+    return this.errorMessage != null;
+  }
+
+  public void setErrorMessageIsSet(boolean value) {
+    if (!value) {
+      this.errorMessage = null;
+    }
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case MESSAGE_COUNT:
@@ -383,6 +418,14 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
       }
       break;
 
+    case ERROR_MESSAGE:
+      if (value == null) {
+        unsetErrorMessage();
+      } else {
+        setErrorMessage((String)value);
+      }
+      break;
+
     }
   }
 
@@ -406,6 +449,9 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
     case HAS_OVERLAPPING_SLOTS:
       return Boolean.valueOf(isHasOverlappingSlots());
 
+    case ERROR_MESSAGE:
+      return getErrorMessage();
+
     }
     throw new IllegalStateException();
   }
@@ -429,6 +475,8 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
       return isSetAssignedNodeId();
     case HAS_OVERLAPPING_SLOTS:
       return isSetHasOverlappingSlots();
+    case ERROR_MESSAGE:
+      return isSetErrorMessage();
     }
     throw new IllegalStateException();
   }
@@ -500,6 +548,15 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
         return false;
     }
 
+    boolean this_present_errorMessage = true && this.isSetErrorMessage();
+    boolean that_present_errorMessage = true && that.isSetErrorMessage();
+    if (this_present_errorMessage || that_present_errorMessage) {
+      if (!(this_present_errorMessage && that_present_errorMessage))
+        return false;
+      if (!this.errorMessage.equals(that.errorMessage))
+        return false;
+    }
+
     return true;
   }
 
@@ -576,6 +633,16 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetErrorMessage()).compareTo(typedOther.isSetErrorMessage());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetErrorMessage()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.errorMessage, typedOther.errorMessage);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -639,6 +706,13 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
           }
           break;
+        case 7: // ERROR_MESSAGE
+          if (field.type == org.apache.thrift.protocol.TType.STRING) {
+            this.errorMessage = iprot.readString();
+          } else { 
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+          }
+          break;
         default:
           org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
       }
@@ -678,6 +752,13 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
     oprot.writeFieldBegin(HAS_OVERLAPPING_SLOTS_FIELD_DESC);
     oprot.writeBool(this.hasOverlappingSlots);
     oprot.writeFieldEnd();
+    if (this.errorMessage != null) {
+      if (isSetErrorMessage()) {
+        oprot.writeFieldBegin(ERROR_MESSAGE_FIELD_DESC);
+        oprot.writeString(this.errorMessage);
+        oprot.writeFieldEnd();
+      }
+    }
     oprot.writeFieldStop();
     oprot.writeStructEnd();
   }
@@ -720,6 +801,16 @@ public class SlotInfo implements org.apache.thrift.TBase<SlotInfo, SlotInfo._Fie
     sb.append("hasOverlappingSlots:");
     sb.append(this.hasOverlappingSlots);
     first = false;
+    if (isSetErrorMessage()) {
+      if (!first) sb.append(", ");
+      sb.append("errorMessage:");
+      if (this.errorMessage == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.errorMessage);
+      }
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -45,6 +45,34 @@ public class SlotManagementService {
      */
     public void clearAllActiveSlotRelationsToQueue(String queueName) throws org.apache.thrift.TException;
 
+    /**
+     * Batched form of getSlotInfo. Returns one slot per requested queue in the same order. A queue without a slot
+     * to assign is returned with start and end message IDs set to 0.
+     *
+     * @param queueNames
+     * @param nodeId
+     */
+    public List<SlotInfo> getSlotInfos(List<String> queueNames, String nodeId) throws org.apache.thrift.TException;
+
+    /**
+     * Batched form of updateMessageId. Each slot info carries the queue name, start and end message IDs of a
+     * submitted slot.
+     *
+     * @param slotInfos
+     * @param nodeId
+     * @param localSafeZone
+     */
+    public void updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone) throws org.apache.thrift.TException;
+
+    /**
+     * Hand over messages whose expiry deadline has passed on a node to the coordinator, which knows the safe
+     * deletion region of the queue.
+     *
+     * @param messageIds
+     * @param queueName
+     */
+    public void scheduleExpiredMessages(List<Long> messageIds, String queueName) throws org.apache.thrift.TException;
+
   }
 
   public interface AsyncIface {
@@ -63,6 +91,12 @@ public class SlotManagementService {
 
     public void clearAllActiveSlotRelationsToQueue(String queueName, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.clearAllActiveSlotRelationsToQueue_call> resultHandler) throws org.apache.thrift.TException;
 
+    public void getSlotInfos(List<String> queueNames, String nodeId, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.getSlotInfos_call> resultHandler) throws org.apache.thrift.TException;
+
+    public void updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.updateMessageIds_call> resultHandler) throws org.apache.thrift.TException;
+
+    public void scheduleExpiredMessages(List<Long> messageIds, String queueName, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.scheduleExpiredMessages_call> resultHandler) throws org.apache.thrift.TException;
+
   }
 
   public static class Client extends org.apache.thrift.TServiceClient implements Iface {
@@ -245,6 +279,73 @@ public class SlotManagementService {
       return;
     }
 
+    public List<SlotInfo> getSlotInfos(List<String> queueNames, String nodeId) throws org.apache.thrift.TException
+    {
+      send_getSlotInfos(queueNames, nodeId);
+      return recv_getSlotInfos();
+    }
+
+    public void send_getSlotInfos(List<String> queueNames, String nodeId) throws org.apache.thrift.TException
+    {
+      getSlotInfos_args args = new getSlotInfos_args();
+      args.setQueueNames(queueNames);
+      args.setNodeId(nodeId);
+      sendBase("getSlotInfos", args);
+    }
+
+    public List<SlotInfo> recv_getSlotInfos() throws org.apache.thrift.TException
+    {
+      getSlotInfos_result result = new getSlotInfos_result();
+      receiveBase(result, "getSlotInfos");
+      if (result.isSetSuccess()) {
+        return result.success;
+      }
+      throw new org.apache.thrift.TApplicationException(org.apache.thrift.TApplicationException.MISSING_RESULT, "getSlotInfos failed: unknown result");
+    }
+
+    public void updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone) throws org.apache.thrift.TException
+    {
+      send_updateMessageIds(slotInfos, nodeId, localSafeZone);
+      recv_updateMessageIds();
+    }
+
+    public void send_updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone) throws org.apache.thrift.TException
+    {
+      updateMessageIds_args args = new updateMessageIds_args();
+      args.setSlotInfos(slotInfos);
+      args.setNodeId(nodeId);
+      args.setLocalSafeZone(localSafeZone);
+      sendBase("updateMessageIds", args);
+    }
+
+    public void recv_updateMessageIds() throws org.apache.thrift.TException
+    {
+      updateMessageIds_result result = new updateMessageIds_result();
+      receiveBase(result, "updateMessageIds");
+      return;
+    }
+
+    public void scheduleExpiredMessages(List<Long> messageIds, String queueName) throws org.apache.thrift.TException
+    {
+      send_scheduleExpiredMessages(messageIds, queueName);
+      recv_scheduleExpiredMessages();
+    }
+
+    public void send_scheduleExpiredMessages(List<Long> messageIds, String queueName) throws org.apache.thrift.TException
+    {
+      scheduleExpiredMessages_args args = new scheduleExpiredMessages_args();
+      args.setMessageIds(messageIds);
+      args.setQueueName(queueName);
+      sendBase("scheduleExpiredMessages", args);
+    }
+
+    public void recv_scheduleExpiredMessages() throws org.apache.thrift.TException
+    {
+      scheduleExpiredMessages_result result = new scheduleExpiredMessages_result();
+      receiveBase(result, "scheduleExpiredMessages");
+      return;
+    }
+
   }
   public static class AsyncClient extends org.apache.thrift.async.TAsyncClient implements AsyncIface {
     public static class Factory implements org.apache.thrift.async.TAsyncClientFactory<AsyncClient> {
@@ -511,6 +612,114 @@ public class SlotManagementService {
       }
     }
 
+    public void getSlotInfos(List<String> queueNames, String nodeId, org.apache.thrift.async.AsyncMethodCallback<getSlotInfos_call> resultHandler) throws org.apache.thrift.TException {
+      checkReady();
+      getSlotInfos_call method_call = new getSlotInfos_call(queueNames, nodeId, resultHandler, this, ___protocolFactory, ___transport);
+      this.___currentMethod = method_call;
+      ___manager.call(method_call);
+    }
+
+    public static class getSlotInfos_call extends org.apache.thrift.async.TAsyncMethodCall {
+      private List<String> queueNames;
+      private String nodeId;
+      public getSlotInfos_call(List<String> queueNames, String nodeId, org.apache.thrift.async.AsyncMethodCallback<getSlotInfos_call> resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
+        super(client, protocolFactory, transport, resultHandler, false);
+        this.queueNames = queueNames;
+        this.nodeId = nodeId;
+      }
+
+      public void write_args(org.apache.thrift.protocol.TProtocol prot) throws org.apache.thrift.TException {
+        prot.writeMessageBegin(new org.apache.thrift.protocol.TMessage("getSlotInfos", org.apache.thrift.protocol.TMessageType.CALL, 0));
+        getSlotInfos_args args = new getSlotInfos_args();
+        args.setQueueNames(queueNames);
+        args.setNodeId(nodeId);
+        args.write(prot);
+        prot.writeMessageEnd();
+      }
+
+      public List<SlotInfo> getResult() throws org.apache.thrift.TException {
+        if (getState() != org.apache.thrift.async.TAsyncMethodCall.State.RESPONSE_READ) {
+          throw new IllegalStateException("Method call not finished!");
+        }
+        org.apache.thrift.transport.TMemoryInputTransport memoryTransport = new org.apache.thrift.transport.TMemoryInputTransport(getFrameBuffer().array());
+        org.apache.thrift.protocol.TProtocol prot = client.getProtocolFactory().getProtocol(memoryTransport);
+        return (new Client(prot)).recv_getSlotInfos();
+      }
+    }
+
+    public void updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone, org.apache.thrift.async.AsyncMethodCallback<updateMessageIds_call> resultHandler) throws org.apache.thrift.TException {
+      checkReady();
+      updateMessageIds_call method_call = new updateMessageIds_call(slotInfos, nodeId, localSafeZone, resultHandler, this, ___protocolFactory, ___transport);
+      this.___currentMethod = method_call;
+      ___manager.call(method_call);
+    }
+
+    public static class updateMessageIds_call extends org.apache.thrift.async.TAsyncMethodCall {
+      private List<SlotInfo> slotInfos;
+      private String nodeId;
+      private long localSafeZone;
+      public updateMessageIds_call(List<SlotInfo> slotInfos, String nodeId, long localSafeZone, org.apache.thrift.async.AsyncMethodCallback<updateMessageIds_call> resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
+        super(client, protocolFactory, transport, resultHandler, false);
+        this.slotInfos = slotInfos;
+        this.nodeId = nodeId;
+        this.localSafeZone = localSafeZone;
+      }
+
+      public void write_args(org.apache.thrift.protocol.TProtocol prot) throws org.apache.thrift.TException {
+        prot.writeMessageBegin(new org.apache.thrift.protocol.TMessage("updateMessageIds", org.apache.thrift.protocol.TMessageType.CALL, 0));
+        updateMessageIds_args args = new updateMessageIds_args();
+        args.setSlotInfos(slotInfos);
+        args.setNodeId(nodeId);
+        args.setLocalSafeZone(localSafeZone);
+        args.write(prot);
+        prot.writeMessageEnd();
+      }
+
+      public void getResult() throws org.apache.thrift.TException {
+        if (getState() != org.apache.thrift.async.TAsyncMethodCall.State.RESPONSE_READ) {
+          throw new IllegalStateException("Method call not finished!");
+        }
+        org.apache.thrift.transport.TMemoryInputTransport memoryTransport = new org.apache.thrift.transport.TMemoryInputTransport(getFrameBuffer().array());
+        org.apache.thrift.protocol.TProtocol prot = client.getProtocolFactory().getProtocol(memoryTransport);
+        (new Client(prot)).recv_updateMessageIds();
+      }
+    }
+
+    public void scheduleExpiredMessages(List<Long> messageIds, String queueName, org.apache.thrift.async.AsyncMethodCallback<scheduleExpiredMessages_call> resultHandler) throws org.apache.thrift.TException {
+      checkReady();
+      scheduleExpiredMessages_call method_call = new scheduleExpiredMessages_call(messageIds, queueName, resultHandler, this, ___protocolFactory, ___transport);
+      this.___currentMethod = method_call;
+      ___manager.call(method_call);
+    }
+
+    public static class scheduleExpiredMessages_call extends org.apache.thrift.async.TAsyncMethodCall {
+      private List<Long> messageIds;
+      private String queueName;
+      public scheduleExpiredMessages_call(List<Long> messageIds, String queueName, org.apache.thrift.async.AsyncMethodCallback<scheduleExpiredMessages_call> resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
+        super(client, protocolFactory, transport, resultHandler, false);
+        this.messageIds = messageIds;
+        this.queueName = queueName;
+      }
+
+      public void write_args(org.apache.thrift.protocol.TProtocol prot) throws org.apache.thrift.TException {
+        prot.writeMessageBegin(new org.apache.thrift.protocol.TMessage("scheduleExpiredMessages", org.apache.thrift.protocol.TMessageType.CALL, 0));
+        scheduleExpiredMessages_args args = new scheduleExpiredMessages_args();
+        args.setMessageIds(messageIds);
+        args.setQueueName(queueName);
+        args.write(prot);
+        prot.writeMessageEnd();
+      }
+
+      public void getResult() throws org.apache.thrift.TException {
+        if (getState() != org.apache.thrift.async.TAsyncMethodCall.State.RESPONSE_READ) {
+          throw new IllegalStateException("Method call not finished!");
+        }
+        org.apache.thrift.transport.TMemoryInputTransport memoryTransport = new org.apache.thrift.transport.TMemoryInputTransport(getFrameBuffer().array());
+        org.apache.thrift.protocol.TProtocol prot = client.getProtocolFactory().getProtocol(memoryTransport);
+        (new Client(prot)).recv_scheduleExpiredMessages();
+      }
+    }
+
   }
 
   public static class Processor<I extends Iface> extends org.apache.thrift.TBaseProcessor implements org.apache.thrift.TProcessor {
@@ -531,6 +740,9 @@ public class SlotManagementService {
       processMap.put("reAssignSlotWhenNoSubscribers", new reAssignSlotWhenNoSubscribers());
       processMap.put("updateCurrentMessageIdForSafeZone", new updateCurrentMessageIdForSafeZone());
       processMap.put("clearAllActiveSlotRelationsToQueue", new clearAllActiveSlotRelationsToQueue());
+      processMap.put("getSlotInfos", new getSlotInfos());
+      processMap.put("updateMessageIds", new updateMessageIds());
+      processMap.put("scheduleExpiredMessages", new scheduleExpiredMessages());
       return processMap;
     }
 
@@ -685,6 +897,69 @@ public class SlotManagementService {
       }
     }
 
+    private static class getSlotInfos<I extends Iface> extends org.apache.thrift.ProcessFunction<I, getSlotInfos_args> {
+      public getSlotInfos() {
+        super("getSlotInfos");
+      }
+
+      public getSlotInfos_args getEmptyArgsInstance() {
+        return new getSlotInfos_args();
+      }
+
+        @Override
+        protected boolean isOneway() {
+            return false;
+        }
+
+      public getSlotInfos_result getResult(I iface, getSlotInfos_args args) throws org.apache.thrift.TException {
+        getSlotInfos_result result = new getSlotInfos_result();
+        result.success = iface.getSlotInfos(args.queueNames, args.nodeId);
+        return result;
+      }
+    }
+
+    private static class updateMessageIds<I extends Iface> extends org.apache.thrift.ProcessFunction<I, updateMessageIds_args> {
+      public updateMessageIds() {
+        super("updateMessageIds");
+      }
+
+      public updateMessageIds_args getEmptyArgsInstance() {
+        return new updateMessageIds_args();
+      }
+
+        @Override
+        protected boolean isOneway() {
+            return false;
+        }
+
+      public updateMessageIds_result getResult(I iface, updateMessageIds_args args) throws org.apache.thrift.TException {
+        updateMessageIds_result result = new updateMessageIds_result();
+        iface.updateMessageIds(args.slotInfos, args.nodeId, args.localSafeZone);
+        return result;
+      }
+    }
+
+    private static class scheduleExpiredMessages<I extends Iface> extends org.apache.thrift.ProcessFunction<I, scheduleExpiredMessages_args> {
+      public scheduleExpiredMessages() {
+        super("scheduleExpiredMessages");
+      }
+
+      public scheduleExpiredMessages_args getEmptyArgsInstance() {
+        return new scheduleExpiredMessages_args();
+      }
+
+        @Override
+        protected boolean isOneway() {
+            return false;
+        }
+
+      public scheduleExpiredMessages_result getResult(I iface, scheduleExpiredMessages_args args) throws org.apache.thrift.TException {
+        scheduleExpiredMessages_result result = new scheduleExpiredMessages_result();
+        iface.scheduleExpiredMessages(args.messageIds, args.queueName);
+        return result;
+      }
+    }
+
   }
 
   public static class getSlotInfo_args implements org.apache.thrift.TBase<getSlotInfo_args, getSlotInfo_args._Fields>, java.io.Serializable, Cloneable   {
@@ -5251,4 +5526,2099 @@ public class SlotManagementService {
 
   }
 
+  public static class getSlotInfos_args implements org.apache.thrift.TBase<getSlotInfos_args, getSlotInfos_args._Fields>, java.io.Serializable, Cloneable   {
+    private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("getSlotInfos_args");
+
+    private static final org.apache.thrift.protocol.TField QUEUE_NAMES_FIELD_DESC = new org.apache.thrift.protocol.TField("queueNames", org.apache.thrift.protocol.TType.LIST, (short)1);
+    private static final org.apache.thrift.protocol.TField NODE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("nodeId", org.apache.thrift.protocol.TType.STRING, (short)2);
+
+    public List<String> queueNames; // required
+    public String nodeId; // required
+
+    /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
+    public enum _Fields implements org.apache.thrift.TFieldIdEnum {
+      QUEUE_NAMES((short)1, "queueNames"),
+      NODE_ID((short)2, "nodeId");
+
+      private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
+
+      static {
+        for (_Fields field : EnumSet.allOf(_Fields.class)) {
+          byName.put(field.getFieldName(), field);
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, or null if its not found.
+       */
+      public static _Fields findByThriftId(int fieldId) {
+        switch(fieldId) {
+          case 1: // QUEUE_NAMES
+            return QUEUE_NAMES;
+          case 2: // NODE_ID
+            return NODE_ID;
+          default:
+            return null;
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, throwing an exception
+       * if it is not found.
+       */
+      public static _Fields findByThriftIdOrThrow(int fieldId) {
+        _Fields fields = findByThriftId(fieldId);
+        if (fields == null) throw new IllegalArgumentException("Field " + fieldId + " doesn't exist!");
+        return fields;
+      }
+
+      /**
+       * Find the _Fields constant that matches name, or null if its not found.
+       */
+      public static _Fields findByName(String name) {
+        return byName.get(name);
+      }
+
+      private final short _thriftId;
+      private final String _fieldName;
+
+      _Fields(short thriftId, String fieldName) {
+        _thriftId = thriftId;
+        _fieldName = fieldName;
+      }
+
+      public short getThriftFieldId() {
+        return _thriftId;
+      }
+
+      public String getFieldName() {
+        return _fieldName;
+      }
+    }
+
+    // isset id assignments
+
+    public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
+    static {
+      Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      tmpMap.put(_Fields.QUEUE_NAMES, new org.apache.thrift.meta_data.FieldMetaData("queueNames", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+              new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING))));
+      tmpMap.put(_Fields.NODE_ID, new org.apache.thrift.meta_data.FieldMetaData("nodeId", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
+      metaDataMap = Collections.unmodifiableMap(tmpMap);
+      org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(getSlotInfos_args.class, metaDataMap);
+    }
+
+    public getSlotInfos_args() {
+    }
+
+    public getSlotInfos_args(
+      List<String> queueNames,
+      String nodeId)
+    {
+      this();
+      this.queueNames = queueNames;
+      this.nodeId = nodeId;
+    }
+
+    /**
+     * Performs a deep copy on <i>other</i>.
+     */
+    public getSlotInfos_args(getSlotInfos_args other) {
+      if (other.isSetQueueNames()) {
+        List<String> __this__queueNames = new ArrayList<String>();
+        for (String other_element : other.queueNames) {
+          __this__queueNames.add(other_element);
+        }
+        this.queueNames = __this__queueNames;
+      }
+      if (other.isSetNodeId()) {
+        this.nodeId = other.nodeId;
+      }
+    }
+
+    public getSlotInfos_args deepCopy() {
+      return new getSlotInfos_args(this);
+    }
+
+    @Override
+    public void clear() {
+      this.queueNames = null;
+      this.nodeId = null;
+    }
+
+    public int getQueueNamesSize() {
+      return (this.queueNames == null) ? 0 : this.queueNames.size();
+    }
+
+    public java.util.Iterator<String> getQueueNamesIterator() {
+      return (this.queueNames == null) ? null : this.queueNames.iterator();
+    }
+
+    public void addToQueueNames(String elem) {
+      if (this.queueNames == null) {
+        this.queueNames = new ArrayList<String>();
+      }
+      this.queueNames.add(elem);
+    }
+
+    public List<String> getQueueNames() {
+      return this.queueNames;
+    }
+
+    public getSlotInfos_args setQueueNames(List<String> queueNames) {
+      this.queueNames = queueNames;
+      return this;
+    }
+
+    public void unsetQueueNames() {
+      this.queueNames = null;
+    }
+
+    /** Returns true if field queueNames is set (has been assigned a value) and false otherwise */
+    public boolean isSetQueueNames() {
+      return this.queueNames != null;
+    }
+
+    public void setQueueNamesIsSet(boolean value) {
+      if (!value) {
+        this.queueNames = null;
+      }
+    }
+
+    public String getNodeId() {
+      return this.nodeId;
+    }
+
+    public getSlotInfos_args setNodeId(String nodeId) {
+      this.nodeId = nodeId;
+      return this;
+    }
+
+    public void unsetNodeId() {
+      this.nodeId = null;
+    }
+
+    /** Returns true if field nodeId is set (has been assigned a value) and false otherwise */
+    public boolean isSetNodeId() {
+      return this.nodeId != null;
+    }
+
+    public void setNodeIdIsSet(boolean value) {
+      if (!value) {
+        this.nodeId = null;
+      }
+    }
+
+    public void setFieldValue(_Fields field, Object value) {
+      switch (field) {
+      case QUEUE_NAMES:
+        if (value == null) {
+          unsetQueueNames();
+        } else {
+          setQueueNames((List<String>)value);
+        }
+        break;
+
+      case NODE_ID:
+        if (value == null) {
+          unsetNodeId();
+        } else {
+          setNodeId((String)value);
+        }
+        break;
+
+      }
+    }
+
+    public Object getFieldValue(_Fields field) {
+      switch (field) {
+      case QUEUE_NAMES:
+        return getQueueNames();
+
+      case NODE_ID:
+        return getNodeId();
+
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Returns true if field corresponding to fieldID is set (has been assigned a value) and false otherwise */
+    public boolean isSet(_Fields field) {
+      if (field == null) {
+        throw new IllegalArgumentException();
+      }
+
+      switch (field) {
+      case QUEUE_NAMES:
+        return isSetQueueNames();
+      case NODE_ID:
+        return isSetNodeId();
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+      if (that == null)
+        return false;
+      if (that instanceof getSlotInfos_args)
+        return this.equals((getSlotInfos_args)that);
+      return false;
+    }
+
+    public boolean equals(getSlotInfos_args that) {
+      if (that == null)
+        return false;
+
+      boolean this_present_queueNames = true && this.isSetQueueNames();
+      boolean that_present_queueNames = true && that.isSetQueueNames();
+      if (this_present_queueNames || that_present_queueNames) {
+        if (!(this_present_queueNames && that_present_queueNames))
+          return false;
+        if (!this.queueNames.equals(that.queueNames))
+          return false;
+      }
+
+      boolean this_present_nodeId = true && this.isSetNodeId();
+      boolean that_present_nodeId = true && that.isSetNodeId();
+      if (this_present_nodeId || that_present_nodeId) {
+        if (!(this_present_nodeId && that_present_nodeId))
+          return false;
+        if (!this.nodeId.equals(that.nodeId))
+          return false;
+      }
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    public int compareTo(getSlotInfos_args other) {
+      if (!getClass().equals(other.getClass())) {
+        return getClass().getName().compareTo(other.getClass().getName());
+      }
+
+      int lastComparison = 0;
+      getSlotInfos_args typedOther = (getSlotInfos_args)other;
+
+      lastComparison = Boolean.valueOf(isSetQueueNames()).compareTo(typedOther.isSetQueueNames());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetQueueNames()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.queueNames, typedOther.queueNames);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetNodeId()).compareTo(typedOther.isSetNodeId());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetNodeId()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.nodeId, typedOther.nodeId);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      return 0;
+    }
+
+    public _Fields fieldForId(int fieldId) {
+      return _Fields.findByThriftId(fieldId);
+    }
+
+    public void read(org.apache.thrift.protocol.TProtocol iprot) throws org.apache.thrift.TException {
+      org.apache.thrift.protocol.TField field;
+      iprot.readStructBegin();
+      while (true)
+      {
+        field = iprot.readFieldBegin();
+        if (field.type == org.apache.thrift.protocol.TType.STOP) { 
+          break;
+        }
+        switch (field.id) {
+          case 1: // QUEUE_NAMES
+            if (field.type == org.apache.thrift.protocol.TType.LIST) {
+              {
+                org.apache.thrift.protocol.TList _list0 = iprot.readListBegin();
+                this.queueNames = new ArrayList<String>(_list0.size);
+                for (int _i1 = 0; _i1 < _list0.size; ++_i1)
+                {
+                  String _elem2; // required
+                  _elem2 = iprot.readString();
+                  this.queueNames.add(_elem2);
+                }
+                iprot.readListEnd();
+              }
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          case 2: // NODE_ID
+            if (field.type == org.apache.thrift.protocol.TType.STRING) {
+              this.nodeId = iprot.readString();
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          default:
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+        }
+        iprot.readFieldEnd();
+      }
+      iprot.readStructEnd();
+
+      // check for required fields of primitive type, which can't be checked in the validate method
+      validate();
+    }
+
+    public void write(org.apache.thrift.protocol.TProtocol oprot) throws org.apache.thrift.TException {
+      validate();
+
+      oprot.writeStructBegin(STRUCT_DESC);
+      if (this.queueNames != null) {
+        oprot.writeFieldBegin(QUEUE_NAMES_FIELD_DESC);
+        {
+          oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, this.queueNames.size()));
+          for (String _iter3 : this.queueNames)
+          {
+            oprot.writeString(_iter3);
+          }
+          oprot.writeListEnd();
+        }
+        oprot.writeFieldEnd();
+      }
+      if (this.nodeId != null) {
+        oprot.writeFieldBegin(NODE_ID_FIELD_DESC);
+        oprot.writeString(this.nodeId);
+        oprot.writeFieldEnd();
+      }
+      oprot.writeFieldStop();
+      oprot.writeStructEnd();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("getSlotInfos_args(");
+      boolean first = true;
+
+      sb.append("queueNames:");
+      if (this.queueNames == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.queueNames);
+      }
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("nodeId:");
+      if (this.nodeId == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.nodeId);
+      }
+      first = false;
+      sb.append(")");
+      return sb.toString();
+    }
+
+    public void validate() throws org.apache.thrift.TException {
+      // check for required fields
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      try {
+        write(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(out)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      try {
+        read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+  }
+
+  public static class getSlotInfos_result implements org.apache.thrift.TBase<getSlotInfos_result, getSlotInfos_result._Fields>, java.io.Serializable, Cloneable   {
+    private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("getSlotInfos_result");
+
+    private static final org.apache.thrift.protocol.TField SUCCESS_FIELD_DESC = new org.apache.thrift.protocol.TField("success", org.apache.thrift.protocol.TType.LIST, (short)0);
+
+    public List<SlotInfo> success; // required
+
+    /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
+    public enum _Fields implements org.apache.thrift.TFieldIdEnum {
+      SUCCESS((short)0, "success");
+
+      private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
+
+      static {
+        for (_Fields field : EnumSet.allOf(_Fields.class)) {
+          byName.put(field.getFieldName(), field);
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, or null if its not found.
+       */
+      public static _Fields findByThriftId(int fieldId) {
+        switch(fieldId) {
+          case 0: // SUCCESS
+            return SUCCESS;
+          default:
+            return null;
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, throwing an exception
+       * if it is not found.
+       */
+      public static _Fields findByThriftIdOrThrow(int fieldId) {
+        _Fields fields = findByThriftId(fieldId);
+        if (fields == null) throw new IllegalArgumentException("Field " + fieldId + " doesn't exist!");
+        return fields;
+      }
+
+      /**
+       * Find the _Fields constant that matches name, or null if its not found.
+       */
+      public static _Fields findByName(String name) {
+        return byName.get(name);
+      }
+
+      private final short _thriftId;
+      private final String _fieldName;
+
+      _Fields(short thriftId, String fieldName) {
+        _thriftId = thriftId;
+        _fieldName = fieldName;
+      }
+
+      public short getThriftFieldId() {
+        return _thriftId;
+      }
+
+      public String getFieldName() {
+        return _fieldName;
+      }
+    }
+
+    // isset id assignments
+
+    public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
+    static {
+      Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      tmpMap.put(_Fields.SUCCESS, new org.apache.thrift.meta_data.FieldMetaData("success", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+              new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, SlotInfo.class))));
+      metaDataMap = Collections.unmodifiableMap(tmpMap);
+      org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(getSlotInfos_result.class, metaDataMap);
+    }
+
+    public getSlotInfos_result() {
+    }
+
+    public getSlotInfos_result(
+      List<SlotInfo> success)
+    {
+      this();
+      this.success = success;
+    }
+
+    /**
+     * Performs a deep copy on <i>other</i>.
+     */
+    public getSlotInfos_result(getSlotInfos_result other) {
+      if (other.isSetSuccess()) {
+        List<SlotInfo> __this__success = new ArrayList<SlotInfo>();
+        for (SlotInfo other_element : other.success) {
+          __this__success.add(new SlotInfo(other_element));
+        }
+        this.success = __this__success;
+      }
+    }
+
+    public getSlotInfos_result deepCopy() {
+      return new getSlotInfos_result(this);
+    }
+
+    @Override
+    public void clear() {
+      this.success = null;
+    }
+
+    public int getSuccessSize() {
+      return (this.success == null) ? 0 : this.success.size();
+    }
+
+    public java.util.Iterator<SlotInfo> getSuccessIterator() {
+      return (this.success == null) ? null : this.success.iterator();
+    }
+
+    public void addToSuccess(SlotInfo elem) {
+      if (this.success == null) {
+        this.success = new ArrayList<SlotInfo>();
+      }
+      this.success.add(elem);
+    }
+
+    public List<SlotInfo> getSuccess() {
+      return this.success;
+    }
+
+    public getSlotInfos_result setSuccess(List<SlotInfo> success) {
+      this.success = success;
+      return this;
+    }
+
+    public void unsetSuccess() {
+      this.success = null;
+    }
+
+    /** Returns true if field success is set (has been assigned a value) and false otherwise */
+    public boolean isSetSuccess() {
+      return this.success != null;
+    }
+
+    public void setSuccessIsSet(boolean value) {
+      if (!value) {
+        this.success = null;
+      }
+    }
+
+    public void setFieldValue(_Fields field, Object value) {
+      switch (field) {
+      case SUCCESS:
+        if (value == null) {
+          unsetSuccess();
+        } else {
+          setSuccess((List<SlotInfo>)value);
+        }
+        break;
+
+      }
+    }
+
+    public Object getFieldValue(_Fields field) {
+      switch (field) {
+      case SUCCESS:
+        return getSuccess();
+
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Returns true if field corresponding to fieldID is set (has been assigned a value) and false otherwise */
+    public boolean isSet(_Fields field) {
+      if (field == null) {
+        throw new IllegalArgumentException();
+      }
+
+      switch (field) {
+      case SUCCESS:
+        return isSetSuccess();
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+      if (that == null)
+        return false;
+      if (that instanceof getSlotInfos_result)
+        return this.equals((getSlotInfos_result)that);
+      return false;
+    }
+
+    public boolean equals(getSlotInfos_result that) {
+      if (that == null)
+        return false;
+
+      boolean this_present_success = true && this.isSetSuccess();
+      boolean that_present_success = true && that.isSetSuccess();
+      if (this_present_success || that_present_success) {
+        if (!(this_present_success && that_present_success))
+          return false;
+        if (!this.success.equals(that.success))
+          return false;
+      }
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    public int compareTo(getSlotInfos_result other) {
+      if (!getClass().equals(other.getClass())) {
+        return getClass().getName().compareTo(other.getClass().getName());
+      }
+
+      int lastComparison = 0;
+      getSlotInfos_result typedOther = (getSlotInfos_result)other;
+
+      lastComparison = Boolean.valueOf(isSetSuccess()).compareTo(typedOther.isSetSuccess());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetSuccess()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.success, typedOther.success);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      return 0;
+    }
+
+    public _Fields fieldForId(int fieldId) {
+      return _Fields.findByThriftId(fieldId);
+    }
+
+    public void read(org.apache.thrift.protocol.TProtocol iprot) throws org.apache.thrift.TException {
+      org.apache.thrift.protocol.TField field;
+      iprot.readStructBegin();
+      while (true)
+      {
+        field = iprot.readFieldBegin();
+        if (field.type == org.apache.thrift.protocol.TType.STOP) { 
+          break;
+        }
+        switch (field.id) {
+          case 0: // SUCCESS
+            if (field.type == org.apache.thrift.protocol.TType.LIST) {
+              {
+                org.apache.thrift.protocol.TList _list4 = iprot.readListBegin();
+                this.success = new ArrayList<SlotInfo>(_list4.size);
+                for (int _i5 = 0; _i5 < _list4.size; ++_i5)
+                {
+                  SlotInfo _elem6; // required
+                  _elem6 = new SlotInfo();
+                  _elem6.read(iprot);
+                  this.success.add(_elem6);
+                }
+                iprot.readListEnd();
+              }
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          default:
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+        }
+        iprot.readFieldEnd();
+      }
+      iprot.readStructEnd();
+
+      // check for required fields of primitive type, which can't be checked in the validate method
+      validate();
+    }
+
+    public void write(org.apache.thrift.protocol.TProtocol oprot) throws org.apache.thrift.TException {
+      oprot.writeStructBegin(STRUCT_DESC);
+
+      if (this.isSetSuccess()) {
+        oprot.writeFieldBegin(SUCCESS_FIELD_DESC);
+        {
+          oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRUCT, this.success.size()));
+          for (SlotInfo _iter7 : this.success)
+          {
+            _iter7.write(oprot);
+          }
+          oprot.writeListEnd();
+        }
+        oprot.writeFieldEnd();
+      }
+      oprot.writeFieldStop();
+      oprot.writeStructEnd();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("getSlotInfos_result(");
+      boolean first = true;
+
+      sb.append("success:");
+      if (this.success == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.success);
+      }
+      first = false;
+      sb.append(")");
+      return sb.toString();
+    }
+
+    public void validate() throws org.apache.thrift.TException {
+      // check for required fields
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      try {
+        write(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(out)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      try {
+        read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+  }
+
+  public static class updateMessageIds_args implements org.apache.thrift.TBase<updateMessageIds_args, updateMessageIds_args._Fields>, java.io.Serializable, Cloneable   {
+    private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("updateMessageIds_args");
+
+    private static final org.apache.thrift.protocol.TField SLOT_INFOS_FIELD_DESC = new org.apache.thrift.protocol.TField("slotInfos", org.apache.thrift.protocol.TType.LIST, (short)1);
+    private static final org.apache.thrift.protocol.TField NODE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("nodeId", org.apache.thrift.protocol.TType.STRING, (short)2);
+    private static final org.apache.thrift.protocol.TField LOCAL_SAFE_ZONE_FIELD_DESC = new org.apache.thrift.protocol.TField("localSafeZone", org.apache.thrift.protocol.TType.I64, (short)3);
+
+    public List<SlotInfo> slotInfos; // required
+    public String nodeId; // required
+    public long localSafeZone; // required
+
+    /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
+    public enum _Fields implements org.apache.thrift.TFieldIdEnum {
+      SLOT_INFOS((short)1, "slotInfos"),
+      NODE_ID((short)2, "nodeId"),
+      LOCAL_SAFE_ZONE((short)3, "localSafeZone");
+
+      private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
+
+      static {
+        for (_Fields field : EnumSet.allOf(_Fields.class)) {
+          byName.put(field.getFieldName(), field);
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, or null if its not found.
+       */
+      public static _Fields findByThriftId(int fieldId) {
+        switch(fieldId) {
+          case 1: // SLOT_INFOS
+            return SLOT_INFOS;
+          case 2: // NODE_ID
+            return NODE_ID;
+          case 3: // LOCAL_SAFE_ZONE
+            return LOCAL_SAFE_ZONE;
+          default:
+            return null;
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, throwing an exception
+       * if it is not found.
+       */
+      public static _Fields findByThriftIdOrThrow(int fieldId) {
+        _Fields fields = findByThriftId(fieldId);
+        if (fields == null) throw new IllegalArgumentException("Field " + fieldId + " doesn't exist!");
+        return fields;
+      }
+
+      /**
+       * Find the _Fields constant that matches name, or null if its not found.
+       */
+      public static _Fields findByName(String name) {
+        return byName.get(name);
+      }
+
+      private final short _thriftId;
+      private final String _fieldName;
+
+      _Fields(short thriftId, String fieldName) {
+        _thriftId = thriftId;
+        _fieldName = fieldName;
+      }
+
+      public short getThriftFieldId() {
+        return _thriftId;
+      }
+
+      public String getFieldName() {
+        return _fieldName;
+      }
+    }
+
+    // isset id assignments
+    private static final int __LOCALSAFEZONE_ISSET_ID = 0;
+    private BitSet __isset_bit_vector = new BitSet(1);
+
+    public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
+    static {
+      Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      tmpMap.put(_Fields.SLOT_INFOS, new org.apache.thrift.meta_data.FieldMetaData("slotInfos", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+              new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, SlotInfo.class))));
+      tmpMap.put(_Fields.NODE_ID, new org.apache.thrift.meta_data.FieldMetaData("nodeId", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
+      tmpMap.put(_Fields.LOCAL_SAFE_ZONE, new org.apache.thrift.meta_data.FieldMetaData("localSafeZone", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
+      metaDataMap = Collections.unmodifiableMap(tmpMap);
+      org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(updateMessageIds_args.class, metaDataMap);
+    }
+
+    public updateMessageIds_args() {
+    }
+
+    public updateMessageIds_args(
+      List<SlotInfo> slotInfos,
+      String nodeId,
+      long localSafeZone)
+    {
+      this();
+      this.slotInfos = slotInfos;
+      this.nodeId = nodeId;
+      this.localSafeZone = localSafeZone;
+      setLocalSafeZoneIsSet(true);
+    }
+
+    /**
+     * Performs a deep copy on <i>other</i>.
+     */
+    public updateMessageIds_args(updateMessageIds_args other) {
+      __isset_bit_vector.clear();
+      __isset_bit_vector.or(other.__isset_bit_vector);
+      if (other.isSetSlotInfos()) {
+        List<SlotInfo> __this__slotInfos = new ArrayList<SlotInfo>();
+        for (SlotInfo other_element : other.slotInfos) {
+          __this__slotInfos.add(new SlotInfo(other_element));
+        }
+        this.slotInfos = __this__slotInfos;
+      }
+      if (other.isSetNodeId()) {
+        this.nodeId = other.nodeId;
+      }
+      this.localSafeZone = other.localSafeZone;
+    }
+
+    public updateMessageIds_args deepCopy() {
+      return new updateMessageIds_args(this);
+    }
+
+    @Override
+    public void clear() {
+      this.slotInfos = null;
+      this.nodeId = null;
+      setLocalSafeZoneIsSet(false);
+      this.localSafeZone = 0;
+    }
+
+    public int getSlotInfosSize() {
+      return (this.slotInfos == null) ? 0 : this.slotInfos.size();
+    }
+
+    public java.util.Iterator<SlotInfo> getSlotInfosIterator() {
+      return (this.slotInfos == null) ? null : this.slotInfos.iterator();
+    }
+
+    public void addToSlotInfos(SlotInfo elem) {
+      if (this.slotInfos == null) {
+        this.slotInfos = new ArrayList<SlotInfo>();
+      }
+      this.slotInfos.add(elem);
+    }
+
+    public List<SlotInfo> getSlotInfos() {
+      return this.slotInfos;
+    }
+
+    public updateMessageIds_args setSlotInfos(List<SlotInfo> slotInfos) {
+      this.slotInfos = slotInfos;
+      return this;
+    }
+
+    public void unsetSlotInfos() {
+      this.slotInfos = null;
+    }
+
+    /** Returns true if field slotInfos is set (has been assigned a value) and false otherwise */
+    public boolean isSetSlotInfos() {
+      return this.slotInfos != null;
+    }
+
+    public void setSlotInfosIsSet(boolean value) {
+      if (!value) {
+        this.slotInfos = null;
+      }
+    }
+
+    public String getNodeId() {
+      return this.nodeId;
+    }
+
+    public updateMessageIds_args setNodeId(String nodeId) {
+      this.nodeId = nodeId;
+      return this;
+    }
+
+    public void unsetNodeId() {
+      this.nodeId = null;
+    }
+
+    /** Returns true if field nodeId is set (has been assigned a value) and false otherwise */
+    public boolean isSetNodeId() {
+      return this.nodeId != null;
+    }
+
+    public void setNodeIdIsSet(boolean value) {
+      if (!value) {
+        this.nodeId = null;
+      }
+    }
+
+    public long getLocalSafeZone() {
+      return this.localSafeZone;
+    }
+
+    public updateMessageIds_args setLocalSafeZone(long localSafeZone) {
+      this.localSafeZone = localSafeZone;
+      setLocalSafeZoneIsSet(true);
+      return this;
+    }
+
+    public void unsetLocalSafeZone() {
+      __isset_bit_vector.clear(__LOCALSAFEZONE_ISSET_ID);
+    }
+
+    /** Returns true if field localSafeZone is set (has been assigned a value) and false otherwise */
+    public boolean isSetLocalSafeZone() {
+      return __isset_bit_vector.get(__LOCALSAFEZONE_ISSET_ID);
+    }
+
+    public void setLocalSafeZoneIsSet(boolean value) {
+      __isset_bit_vector.set(__LOCALSAFEZONE_ISSET_ID, value);
+    }
+
+    public void setFieldValue(_Fields field, Object value) {
+      switch (field) {
+      case SLOT_INFOS:
+        if (value == null) {
+          unsetSlotInfos();
+        } else {
+          setSlotInfos((List<SlotInfo>)value);
+        }
+        break;
+
+      case NODE_ID:
+        if (value == null) {
+          unsetNodeId();
+        } else {
+          setNodeId((String)value);
+        }
+        break;
+
+      case LOCAL_SAFE_ZONE:
+        if (value == null) {
+          unsetLocalSafeZone();
+        } else {
+          setLocalSafeZone((Long)value);
+        }
+        break;
+
+      }
+    }
+
+    public Object getFieldValue(_Fields field) {
+      switch (field) {
+      case SLOT_INFOS:
+        return getSlotInfos();
+
+      case NODE_ID:
+        return getNodeId();
+
+      case LOCAL_SAFE_ZONE:
+        return Long.valueOf(getLocalSafeZone());
+
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Returns true if field corresponding to fieldID is set (has been assigned a value) and false otherwise */
+    public boolean isSet(_Fields field) {
+      if (field == null) {
+        throw new IllegalArgumentException();
+      }
+
+      switch (field) {
+      case SLOT_INFOS:
+        return isSetSlotInfos();
+      case NODE_ID:
+        return isSetNodeId();
+      case LOCAL_SAFE_ZONE:
+        return isSetLocalSafeZone();
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+      if (that == null)
+        return false;
+      if (that instanceof updateMessageIds_args)
+        return this.equals((updateMessageIds_args)that);
+      return false;
+    }
+
+    public boolean equals(updateMessageIds_args that) {
+      if (that == null)
+        return false;
+
+      boolean this_present_slotInfos = true && this.isSetSlotInfos();
+      boolean that_present_slotInfos = true && that.isSetSlotInfos();
+      if (this_present_slotInfos || that_present_slotInfos) {
+        if (!(this_present_slotInfos && that_present_slotInfos))
+          return false;
+        if (!this.slotInfos.equals(that.slotInfos))
+          return false;
+      }
+
+      boolean this_present_nodeId = true && this.isSetNodeId();
+      boolean that_present_nodeId = true && that.isSetNodeId();
+      if (this_present_nodeId || that_present_nodeId) {
+        if (!(this_present_nodeId && that_present_nodeId))
+          return false;
+        if (!this.nodeId.equals(that.nodeId))
+          return false;
+      }
+
+      boolean this_present_localSafeZone = true;
+      boolean that_present_localSafeZone = true;
+      if (this_present_localSafeZone || that_present_localSafeZone) {
+        if (!(this_present_localSafeZone && that_present_localSafeZone))
+          return false;
+        if (this.localSafeZone != that.localSafeZone)
+          return false;
+      }
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    public int compareTo(updateMessageIds_args other) {
+      if (!getClass().equals(other.getClass())) {
+        return getClass().getName().compareTo(other.getClass().getName());
+      }
+
+      int lastComparison = 0;
+      updateMessageIds_args typedOther = (updateMessageIds_args)other;
+
+      lastComparison = Boolean.valueOf(isSetSlotInfos()).compareTo(typedOther.isSetSlotInfos());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetSlotInfos()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.slotInfos, typedOther.slotInfos);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetNodeId()).compareTo(typedOther.isSetNodeId());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetNodeId()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.nodeId, typedOther.nodeId);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetLocalSafeZone()).compareTo(typedOther.isSetLocalSafeZone());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetLocalSafeZone()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.localSafeZone, typedOther.localSafeZone);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      return 0;
+    }
+
+    public _Fields fieldForId(int fieldId) {
+      return _Fields.findByThriftId(fieldId);
+    }
+
+    public void read(org.apache.thrift.protocol.TProtocol iprot) throws org.apache.thrift.TException {
+      org.apache.thrift.protocol.TField field;
+      iprot.readStructBegin();
+      while (true)
+      {
+        field = iprot.readFieldBegin();
+        if (field.type == org.apache.thrift.protocol.TType.STOP) { 
+          break;
+        }
+        switch (field.id) {
+          case 1: // SLOT_INFOS
+            if (field.type == org.apache.thrift.protocol.TType.LIST) {
+              {
+                org.apache.thrift.protocol.TList _list8 = iprot.readListBegin();
+                this.slotInfos = new ArrayList<SlotInfo>(_list8.size);
+                for (int _i9 = 0; _i9 < _list8.size; ++_i9)
+                {
+                  SlotInfo _elem10; // required
+                  _elem10 = new SlotInfo();
+                  _elem10.read(iprot);
+                  this.slotInfos.add(_elem10);
+                }
+                iprot.readListEnd();
+              }
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          case 2: // NODE_ID
+            if (field.type == org.apache.thrift.protocol.TType.STRING) {
+              this.nodeId = iprot.readString();
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          case 3: // LOCAL_SAFE_ZONE
+            if (field.type == org.apache.thrift.protocol.TType.I64) {
+              this.localSafeZone = iprot.readI64();
+              setLocalSafeZoneIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          default:
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+        }
+        iprot.readFieldEnd();
+      }
+      iprot.readStructEnd();
+
+      // check for required fields of primitive type, which can't be checked in the validate method
+      validate();
+    }
+
+    public void write(org.apache.thrift.protocol.TProtocol oprot) throws org.apache.thrift.TException {
+      validate();
+
+      oprot.writeStructBegin(STRUCT_DESC);
+      if (this.slotInfos != null) {
+        oprot.writeFieldBegin(SLOT_INFOS_FIELD_DESC);
+        {
+          oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRUCT, this.slotInfos.size()));
+          for (SlotInfo _iter11 : this.slotInfos)
+          {
+            _iter11.write(oprot);
+          }
+          oprot.writeListEnd();
+        }
+        oprot.writeFieldEnd();
+      }
+      if (this.nodeId != null) {
+        oprot.writeFieldBegin(NODE_ID_FIELD_DESC);
+        oprot.writeString(this.nodeId);
+        oprot.writeFieldEnd();
+      }
+      oprot.writeFieldBegin(LOCAL_SAFE_ZONE_FIELD_DESC);
+      oprot.writeI64(this.localSafeZone);
+      oprot.writeFieldEnd();
+      oprot.writeFieldStop();
+      oprot.writeStructEnd();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("updateMessageIds_args(");
+      boolean first = true;
+
+      sb.append("slotInfos:");
+      if (this.slotInfos == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.slotInfos);
+      }
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("nodeId:");
+      if (this.nodeId == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.nodeId);
+      }
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("localSafeZone:");
+      sb.append(this.localSafeZone);
+      first = false;
+      sb.append(")");
+      return sb.toString();
+    }
+
+    public void validate() throws org.apache.thrift.TException {
+      // check for required fields
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      try {
+        write(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(out)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      try {
+        // it doesn't seem like you should have to do this, but java serialization is wacky, and doesn't call the default constructor.
+        __isset_bit_vector = new BitSet(1);
+        read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+  }
+
+  public static class updateMessageIds_result implements org.apache.thrift.TBase<updateMessageIds_result, updateMessageIds_result._Fields>, java.io.Serializable, Cloneable   {
+    private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("updateMessageIds_result");
+
+
+
+    /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
+    public enum _Fields implements org.apache.thrift.TFieldIdEnum {
+;
+
+      private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
+
+      static {
+        for (_Fields field : EnumSet.allOf(_Fields.class)) {
+          byName.put(field.getFieldName(), field);
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, or null if its not found.
+       */
+      public static _Fields findByThriftId(int fieldId) {
+        switch(fieldId) {
+          default:
+            return null;
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, throwing an exception
+       * if it is not found.
+       */
+      public static _Fields findByThriftIdOrThrow(int fieldId) {
+        _Fields fields = findByThriftId(fieldId);
+        if (fields == null) throw new IllegalArgumentException("Field " + fieldId + " doesn't exist!");
+        return fields;
+      }
+
+      /**
+       * Find the _Fields constant that matches name, or null if its not found.
+       */
+      public static _Fields findByName(String name) {
+        return byName.get(name);
+      }
+
+      private final short _thriftId;
+      private final String _fieldName;
+
+      _Fields(short thriftId, String fieldName) {
+        _thriftId = thriftId;
+        _fieldName = fieldName;
+      }
+
+      public short getThriftFieldId() {
+        return _thriftId;
+      }
+
+      public String getFieldName() {
+        return _fieldName;
+      }
+    }
+    public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
+    static {
+      Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      metaDataMap = Collections.unmodifiableMap(tmpMap);
+      org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(updateMessageIds_result.class, metaDataMap);
+    }
+
+    public updateMessageIds_result() {
+    }
+
+    /**
+     * Performs a deep copy on <i>other</i>.
+     */
+    public updateMessageIds_result(updateMessageIds_result other) {
+    }
+
+    public updateMessageIds_result deepCopy() {
+      return new updateMessageIds_result(this);
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    public void setFieldValue(_Fields field, Object value) {
+      switch (field) {
+      }
+    }
+
+    public Object getFieldValue(_Fields field) {
+      switch (field) {
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Returns true if field corresponding to fieldID is set (has been assigned a value) and false otherwise */
+    public boolean isSet(_Fields field) {
+      if (field == null) {
+        throw new IllegalArgumentException();
+      }
+
+      switch (field) {
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+      if (that == null)
+        return false;
+      if (that instanceof updateMessageIds_result)
+        return this.equals((updateMessageIds_result)that);
+      return false;
+    }
+
+    public boolean equals(updateMessageIds_result that) {
+      if (that == null)
+        return false;
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    public int compareTo(updateMessageIds_result other) {
+      if (!getClass().equals(other.getClass())) {
+        return getClass().getName().compareTo(other.getClass().getName());
+      }
+
+      int lastComparison = 0;
+      updateMessageIds_result typedOther = (updateMessageIds_result)other;
+
+      return 0;
+    }
+
+    public _Fields fieldForId(int fieldId) {
+      return _Fields.findByThriftId(fieldId);
+    }
+
+    public void read(org.apache.thrift.protocol.TProtocol iprot) throws org.apache.thrift.TException {
+      org.apache.thrift.protocol.TField field;
+      iprot.readStructBegin();
+      while (true)
+      {
+        field = iprot.readFieldBegin();
+        if (field.type == org.apache.thrift.protocol.TType.STOP) {
+          break;
+        }
+        switch (field.id) {
+          default:
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+        }
+        iprot.readFieldEnd();
+      }
+      iprot.readStructEnd();
+
+      // check for required fields of primitive type, which can't be checked in the validate method
+      validate();
+    }
+
+    public void write(org.apache.thrift.protocol.TProtocol oprot) throws org.apache.thrift.TException {
+      oprot.writeStructBegin(STRUCT_DESC);
+
+      oprot.writeFieldStop();
+      oprot.writeStructEnd();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("updateMessageIds_result(");
+      boolean first = true;
+
+      sb.append(")");
+      return sb.toString();
+    }
+
+    public void validate() throws org.apache.thrift.TException {
+      // check for required fields
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      try {
+        write(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(out)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      try {
+        read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+  }
+
+  public static class scheduleExpiredMessages_args implements org.apache.thrift.TBase<scheduleExpiredMessages_args, scheduleExpiredMessages_args._Fields>, java.io.Serializable, Cloneable   {
+    private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("scheduleExpiredMessages_args");
+
+    private static final org.apache.thrift.protocol.TField MESSAGE_IDS_FIELD_DESC = new org.apache.thrift.protocol.TField("messageIds", org.apache.thrift.protocol.TType.LIST, (short)1);
+    private static final org.apache.thrift.protocol.TField QUEUE_NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("queueName", org.apache.thrift.protocol.TType.STRING, (short)2);
+
+    public List<Long> messageIds; // required
+    public String queueName; // required
+
+    /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
+    public enum _Fields implements org.apache.thrift.TFieldIdEnum {
+      MESSAGE_IDS((short)1, "messageIds"),
+      QUEUE_NAME((short)2, "queueName");
+
+      private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
+
+      static {
+        for (_Fields field : EnumSet.allOf(_Fields.class)) {
+          byName.put(field.getFieldName(), field);
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, or null if its not found.
+       */
+      public static _Fields findByThriftId(int fieldId) {
+        switch(fieldId) {
+          case 1: // MESSAGE_IDS
+            return MESSAGE_IDS;
+          case 2: // QUEUE_NAME
+            return QUEUE_NAME;
+          default:
+            return null;
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, throwing an exception
+       * if it is not found.
+       */
+      public static _Fields findByThriftIdOrThrow(int fieldId) {
+        _Fields fields = findByThriftId(fieldId);
+        if (fields == null) throw new IllegalArgumentException("Field " + fieldId + " doesn't exist!");
+        return fields;
+      }
+
+      /**
+       * Find the _Fields constant that matches name, or null if its not found.
+       */
+      public static _Fields findByName(String name) {
+        return byName.get(name);
+      }
+
+      private final short _thriftId;
+      private final String _fieldName;
+
+      _Fields(short thriftId, String fieldName) {
+        _thriftId = thriftId;
+        _fieldName = fieldName;
+      }
+
+      public short getThriftFieldId() {
+        return _thriftId;
+      }
+
+      public String getFieldName() {
+        return _fieldName;
+      }
+    }
+
+    // isset id assignments
+
+    public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
+    static {
+      Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      tmpMap.put(_Fields.MESSAGE_IDS, new org.apache.thrift.meta_data.FieldMetaData("messageIds", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+              new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64))));
+      tmpMap.put(_Fields.QUEUE_NAME, new org.apache.thrift.meta_data.FieldMetaData("queueName", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
+      metaDataMap = Collections.unmodifiableMap(tmpMap);
+      org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(scheduleExpiredMessages_args.class, metaDataMap);
+    }
+
+    public scheduleExpiredMessages_args() {
+    }
+
+    public scheduleExpiredMessages_args(
+      List<Long> messageIds,
+      String queueName)
+    {
+      this();
+      this.messageIds = messageIds;
+      this.queueName = queueName;
+    }
+
+    /**
+     * Performs a deep copy on <i>other</i>.
+     */
+    public scheduleExpiredMessages_args(scheduleExpiredMessages_args other) {
+      if (other.isSetMessageIds()) {
+        List<Long> __this__messageIds = new ArrayList<Long>();
+        for (Long other_element : other.messageIds) {
+          __this__messageIds.add(other_element);
+        }
+        this.messageIds = __this__messageIds;
+      }
+      if (other.isSetQueueName()) {
+        this.queueName = other.queueName;
+      }
+    }
+
+    public scheduleExpiredMessages_args deepCopy() {
+      return new scheduleExpiredMessages_args(this);
+    }
+
+    @Override
+    public void clear() {
+      this.messageIds = null;
+      this.queueName = null;
+    }
+
+    public int getMessageIdsSize() {
+      return (this.messageIds == null) ? 0 : this.messageIds.size();
+    }
+
+    public java.util.Iterator<Long> getMessageIdsIterator() {
+      return (this.messageIds == null) ? null : this.messageIds.iterator();
+    }
+
+    public void addToMessageIds(long elem) {
+      if (this.messageIds == null) {
+        this.messageIds = new ArrayList<Long>();
+      }
+      this.messageIds.add(elem);
+    }
+
+    public List<Long> getMessageIds() {
+      return this.messageIds;
+    }
+
+    public scheduleExpiredMessages_args setMessageIds(List<Long> messageIds) {
+      this.messageIds = messageIds;
+      return this;
+    }
+
+    public void unsetMessageIds() {
+      this.messageIds = null;
+    }
+
+    /** Returns true if field messageIds is set (has been assigned a value) and false otherwise */
+    public boolean isSetMessageIds() {
+      return this.messageIds != null;
+    }
+
+    public void setMessageIdsIsSet(boolean value) {
+      if (!value) {
+        this.messageIds = null;
+      }
+    }
+
+    public String getQueueName() {
+      return this.queueName;
+    }
+
+    public scheduleExpiredMessages_args setQueueName(String queueName) {
+      this.queueName = queueName;
+      return this;
+    }
+
+    public void unsetQueueName() {
+      this.queueName = null;
+    }
+
+    /** Returns true if field queueName is set (has been assigned a value) and false otherwise */
+    public boolean isSetQueueName() {
+      return this.queueName != null;
+    }
+
+    public void setQueueNameIsSet(boolean value) {
+      if (!value) {
+        this.queueName = null;
+      }
+    }
+
+    public void setFieldValue(_Fields field, Object value) {
+      switch (field) {
+      case MESSAGE_IDS:
+        if (value == null) {
+          unsetMessageIds();
+        } else {
+          setMessageIds((List<Long>)value);
+        }
+        break;
+
+      case QUEUE_NAME:
+        if (value == null) {
+          unsetQueueName();
+        } else {
+          setQueueName((String)value);
+        }
+        break;
+
+      }
+    }
+
+    public Object getFieldValue(_Fields field) {
+      switch (field) {
+      case MESSAGE_IDS:
+        return getMessageIds();
+
+      case QUEUE_NAME:
+        return getQueueName();
+
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Returns true if field corresponding to fieldID is set (has been assigned a value) and false otherwise */
+    public boolean isSet(_Fields field) {
+      if (field == null) {
+        throw new IllegalArgumentException();
+      }
+
+      switch (field) {
+      case MESSAGE_IDS:
+        return isSetMessageIds();
+      case QUEUE_NAME:
+        return isSetQueueName();
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+      if (that == null)
+        return false;
+      if (that instanceof scheduleExpiredMessages_args)
+        return this.equals((scheduleExpiredMessages_args)that);
+      return false;
+    }
+
+    public boolean equals(scheduleExpiredMessages_args that) {
+      if (that == null)
+        return false;
+
+      boolean this_present_messageIds = true && this.isSetMessageIds();
+      boolean that_present_messageIds = true && that.isSetMessageIds();
+      if (this_present_messageIds || that_present_messageIds) {
+        if (!(this_present_messageIds && that_present_messageIds))
+          return false;
+        if (!this.messageIds.equals(that.messageIds))
+          return false;
+      }
+
+      boolean this_present_queueName = true && this.isSetQueueName();
+      boolean that_present_queueName = true && that.isSetQueueName();
+      if (this_present_queueName || that_present_queueName) {
+        if (!(this_present_queueName && that_present_queueName))
+          return false;
+        if (!this.queueName.equals(that.queueName))
+          return false;
+      }
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    public int compareTo(scheduleExpiredMessages_args other) {
+      if (!getClass().equals(other.getClass())) {
+        return getClass().getName().compareTo(other.getClass().getName());
+      }
+
+      int lastComparison = 0;
+      scheduleExpiredMessages_args typedOther = (scheduleExpiredMessages_args)other;
+
+      lastComparison = Boolean.valueOf(isSetMessageIds()).compareTo(typedOther.isSetMessageIds());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetMessageIds()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.messageIds, typedOther.messageIds);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetQueueName()).compareTo(typedOther.isSetQueueName());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetQueueName()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.queueName, typedOther.queueName);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      return 0;
+    }
+
+    public _Fields fieldForId(int fieldId) {
+      return _Fields.findByThriftId(fieldId);
+    }
+
+    public void read(org.apache.thrift.protocol.TProtocol iprot) throws org.apache.thrift.TException {
+      org.apache.thrift.protocol.TField field;
+      iprot.readStructBegin();
+      while (true)
+      {
+        field = iprot.readFieldBegin();
+        if (field.type == org.apache.thrift.protocol.TType.STOP) { 
+          break;
+        }
+        switch (field.id) {
+          case 1: // MESSAGE_IDS
+            if (field.type == org.apache.thrift.protocol.TType.LIST) {
+              {
+                org.apache.thrift.protocol.TList _list12 = iprot.readListBegin();
+                this.messageIds = new ArrayList<Long>(_list12.size);
+                for (int _i13 = 0; _i13 < _list12.size; ++_i13)
+                {
+                  long _elem14; // required
+                  _elem14 = iprot.readI64();
+                  this.messageIds.add(_elem14);
+                }
+                iprot.readListEnd();
+              }
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          case 2: // QUEUE_NAME
+            if (field.type == org.apache.thrift.protocol.TType.STRING) {
+              this.queueName = iprot.readString();
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+            }
+            break;
+          default:
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+        }
+        iprot.readFieldEnd();
+      }
+      iprot.readStructEnd();
+
+      // check for required fields of primitive type, which can't be checked in the validate method
+      validate();
+    }
+
+    public void write(org.apache.thrift.protocol.TProtocol oprot) throws org.apache.thrift.TException {
+      validate();
+
+      oprot.writeStructBegin(STRUCT_DESC);
+      if (this.messageIds != null) {
+        oprot.writeFieldBegin(MESSAGE_IDS_FIELD_DESC);
+        {
+          oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.I64, this.messageIds.size()));
+          for (long _iter15 : this.messageIds)
+          {
+            oprot.writeI64(_iter15);
+          }
+          oprot.writeListEnd();
+        }
+        oprot.writeFieldEnd();
+      }
+      if (this.queueName != null) {
+        oprot.writeFieldBegin(QUEUE_NAME_FIELD_DESC);
+        oprot.writeString(this.queueName);
+        oprot.writeFieldEnd();
+      }
+      oprot.writeFieldStop();
+      oprot.writeStructEnd();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("scheduleExpiredMessages_args(");
+      boolean first = true;
+
+      sb.append("messageIds:");
+      if (this.messageIds == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.messageIds);
+      }
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("queueName:");
+      if (this.queueName == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.queueName);
+      }
+      first = false;
+      sb.append(")");
+      return sb.toString();
+    }
+
+    public void validate() throws org.apache.thrift.TException {
+      // check for required fields
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      try {
+        write(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(out)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      try {
+        read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+  }
+
+  public static class scheduleExpiredMessages_result implements org.apache.thrift.TBase<scheduleExpiredMessages_result, scheduleExpiredMessages_result._Fields>, java.io.Serializable, Cloneable   {
+    private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("scheduleExpiredMessages_result");
+
+
+
+    /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
+    public enum _Fields implements org.apache.thrift.TFieldIdEnum {
+;
+
+      private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
+
+      static {
+        for (_Fields field : EnumSet.allOf(_Fields.class)) {
+          byName.put(field.getFieldName(), field);
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, or null if its not found.
+       */
+      public static _Fields findByThriftId(int fieldId) {
+        switch(fieldId) {
+          default:
+            return null;
+        }
+      }
+
+      /**
+       * Find the _Fields constant that matches fieldId, throwing an exception
+       * if it is not found.
+       */
+      public static _Fields findByThriftIdOrThrow(int fieldId) {
+        _Fields fields = findByThriftId(fieldId);
+        if (fields == null) throw new IllegalArgumentException("Field " + fieldId + " doesn't exist!");
+        return fields;
+      }
+
+      /**
+       * Find the _Fields constant that matches name, or null if its not found.
+       */
+      public static _Fields findByName(String name) {
+        return byName.get(name);
+      }
+
+      private final short _thriftId;
+      private final String _fieldName;
+
+      _Fields(short thriftId, String fieldName) {
+        _thriftId = thriftId;
+        _fieldName = fieldName;
+      }
+
+      public short getThriftFieldId() {
+        return _thriftId;
+      }
+
+      public String getFieldName() {
+        return _fieldName;
+      }
+    }
+    public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
+    static {
+      Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
+      metaDataMap = Collections.unmodifiableMap(tmpMap);
+      org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(scheduleExpiredMessages_result.class, metaDataMap);
+    }
+
+    public scheduleExpiredMessages_result() {
+    }
+
+    /**
+     * Performs a deep copy on <i>other</i>.
+     */
+    public scheduleExpiredMessages_result(scheduleExpiredMessages_result other) {
+    }
+
+    public scheduleExpiredMessages_result deepCopy() {
+      return new scheduleExpiredMessages_result(this);
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    public void setFieldValue(_Fields field, Object value) {
+      switch (field) {
+      }
+    }
+
+    public Object getFieldValue(_Fields field) {
+      switch (field) {
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Returns true if field corresponding to fieldID is set (has been assigned a value) and false otherwise */
+    public boolean isSet(_Fields field) {
+      if (field == null) {
+        throw new IllegalArgumentException();
+      }
+
+      switch (field) {
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+      if (that == null)
+        return false;
+      if (that instanceof scheduleExpiredMessages_result)
+        return this.equals((scheduleExpiredMessages_result)that);
+      return false;
+    }
+
+    public boolean equals(scheduleExpiredMessages_result that) {
+      if (that == null)
+        return false;
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    public int compareTo(scheduleExpiredMessages_result other) {
+      if (!getClass().equals(other.getClass())) {
+        return getClass().getName().compareTo(other.getClass().getName());
+      }
+
+      int lastComparison = 0;
+      scheduleExpiredMessages_result typedOther = (scheduleExpiredMessages_result)other;
+
+      return 0;
+    }
+
+    public _Fields fieldForId(int fieldId) {
+      return _Fields.findByThriftId(fieldId);
+    }
+
+    public void read(org.apache.thrift.protocol.TProtocol iprot) throws org.apache.thrift.TException {
+      org.apache.thrift.protocol.TField field;
+      iprot.readStructBegin();
+      while (true)
+      {
+        field = iprot.readFieldBegin();
+        if (field.type == org.apache.thrift.protocol.TType.STOP) {
+          break;
+        }
+        switch (field.id) {
+          default:
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+        }
+        iprot.readFieldEnd();
+      }
+      iprot.readStructEnd();
+
+      // check for required fields of primitive type, which can't be checked in the validate method
+      validate();
+    }
+
+    public void write(org.apache.thrift.protocol.TProtocol oprot) throws org.apache.thrift.TException {
+      oprot.writeStructBegin(STRUCT_DESC);
+
+      oprot.writeFieldStop();
+      oprot.writeStructEnd();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("scheduleExpiredMessages_result(");
+      boolean first = true;
+
+      sb.append(")");
+      return sb.toString();
+    }
+
+    public void validate() throws org.apache.thrift.TException {
+      // check for required fields
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      try {
+        write(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(out)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      try {
+        read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
+      } catch (org.apache.thrift.TException te) {
+        throw new java.io.IOException(te);
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,30 @@
+--
+-- Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--    http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+-- Content reference table of the shared content mode (performance tuning shareContentAcrossStorageQueues).
+-- Run against an existing message store database after the message store tables are created.
+
+IF NOT EXISTS (SELECT * FROM SYS.OBJECTS WHERE OBJECT_ID = OBJECT_ID(N'[DBO].[MB_CONTENT_REFERENCE]') AND TYPE IN (N'U'))
+CREATE TABLE MB_CONTENT_REFERENCE (
+    MESSAGE_ID BIGINT NOT NULL,
+    CONTENT_ID BIGINT NOT NULL,
+    PRIMARY KEY (MESSAGE_ID),
+    FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE
+);
+
+IF NOT EXISTS (SELECT * FROM SYS.INDEXES WHERE NAME = 'MB_CONTENT_REFERENCE_CONTENT_ID')
+CREATE INDEX MB_CONTENT_REFERENCE_CONTENT_ID ON MB_CONTENT_REFERENCE (CONTENT_ID);
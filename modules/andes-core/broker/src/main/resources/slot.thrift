@@ -15,7 +15,7 @@ struct SlotInfo {
     4: string queueName;
     5: string assignedNodeId;
     6: bool hasOverlappingSlots;
-    
+    7: optional string errorMessage;
 }
 
 /*
@@ -36,6 +36,10 @@ service SlotManagementService {
     */
     bool deleteSlot(1: string queueName, 2: SlotInfo slotInfo, 3: string nodeId),
 
+    /* Used by the client connection pool to check whether a connection is still usable
+    */
+    bool healthCheck(),
+
     /* Re-assign the slot when there are no local subscribers in the node
     */
     void reAssignSlotWhenNoSubscribers(1: string nodeId, 2: string queueName),
@@ -50,6 +54,22 @@ service SlotManagementService {
      *
      * @param queueName name of destination queue
      */
-    void clearAllActiveSlotRelationsToQueue(1: string queueName)
+    void clearAllActiveSlotRelationsToQueue(1: string queueName),
+
+    /* Batched form of getSlotInfo. Returns one slot per requested queue in the same order. A queue without a slot
+    *  to assign is returned with start and end message IDs set to 0. A queue whose slot could not be read is
+    *  returned with errorMessage set.
+    */
+    list<SlotInfo> getSlotInfos(1: list<string> queueNames, 2: string nodeId),
+
+    /* Batched form of updateMessageId. Each slot info carries the queue name, start and end message IDs of a
+    *  submitted slot.
+    */
+    void updateMessageIds(1: list<SlotInfo> slotInfos, 2: string nodeId, 3: i64 localSafeZone),
+
+    /* Hand over messages whose expiry deadline has passed on a node to the coordinator, which knows the safe
+    *  deletion region of the queue.
+    */
+    void scheduleExpiredMessages(1: list<i64> messageIds, 2: string queueName)
 
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.amqp;
+
+import org.junit.After;
+import org.junit.Test;
+import org.wso2.andes.common.AMQPFilterTypes;
+import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.BasicContentHeaderProperties;
+import org.wso2.andes.framing.ContentHeaderBody;
+import org.wso2.andes.framing.FieldTable;
+import org.wso2.andes.framing.abstraction.MessagePublishInfoImpl;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.server.filter.FilterManager;
+import org.wso2.andes.server.filter.FilterManagerFactory;
+import org.wso2.andes.server.message.MessageMetaData;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for evaluating selectors against {@link FilterableMetadata}
+ */
+public class FilterableMetadataTest {
+
+    private static final int BASIC_CLASS_ID = 60;
+
+    @After
+    public void clearView() {
+        AMQPUtils.clearSelectorEvaluationCache();
+    }
+
+    /**
+     * Selectors on application properties are evaluated against the lazily decoded properties
+     */
+    @Test
+    public void testPropertySelector() throws Exception {
+        FilterableMetadata message = FilterableMetadata.of(createMetadata(1L));
+
+        assertTrue("String property not matched", createFilter("color = 'red'").allAllow(message));
+        assertFalse("String property matched wrong value", createFilter("color = 'blue'").allAllow(message));
+        assertTrue("Numeric property not matched", createFilter("size > 5 AND size < 20").allAllow(message));
+        assertFalse("Missing property matched", createFilter("shape = 'round'").allAllow(message));
+    }
+
+    /**
+     * Selectors on JMS headers are evaluated against the decoded message header
+     */
+    @Test
+    public void testHeaderSelector() throws Exception {
+        FilterableMetadata message = FilterableMetadata.of(createMetadata(1L));
+
+        assertTrue("Priority not matched", createFilter("JMSPriority = 7").allAllow(message));
+        assertTrue("Type not matched", createFilter("JMSType = 'order'").allAllow(message));
+        assertTrue("Correlation ID not matched", createFilter("JMSCorrelationID = 'correlation-1'").allAllow(message));
+        assertFalse("Priority matched wrong value", createFilter("JMSPriority < 5").allAllow(message));
+        assertTrue("Header and property not matched together",
+                createFilter("JMSType = 'order' AND color = 'red'").allAllow(message));
+    }
+
+    /**
+     * Subscriptions without a selector get no filter manager, and a view which no selector reads never decodes the
+     * metadata
+     */
+    @Test
+    public void testNoFilter() throws Exception {
+        assertNull("Filter manager created without filters", FilterManagerFactory.createManager((FieldTable) null));
+        FieldTable emptySelector = new FieldTable();
+        emptySelector.setString(AMQPFilterTypes.JMS_SELECTOR.getValue(), "");
+        assertNull("Filter manager created for an empty selector", FilterManagerFactory.createManager(emptySelector));
+
+        // The metadata bytes are not valid, so any decoding would fail
+        AndesMessageMetadata undecodable = new AndesMessageMetadata(1L, new byte[] { 127 }, false);
+        FilterableMetadata message = FilterableMetadata.of(undecodable);
+        assertFalse("View reported as redelivered", message.isRedelivered());
+    }
+
+    /**
+     * Subscribers evaluating the same message on a thread share the view until it is cleared
+     */
+    @Test
+    public void testViewSharedUntilCleared() throws Exception {
+        AndesMessageMetadata metadata = createMetadata(1L);
+        FilterableMetadata message = FilterableMetadata.of(metadata);
+
+        assertSame("View not shared for the same message", message, FilterableMetadata.of(metadata));
+        assertNotSame("View shared with another message", message, FilterableMetadata.of(createMetadata(2L)));
+
+        message = FilterableMetadata.of(metadata);
+        AMQPUtils.clearSelectorEvaluationCache();
+        assertNotSame("View kept after clearing", message, FilterableMetadata.of(metadata));
+    }
+
+    /**
+     * Replacing the metadata bytes of a message, e.g. on a routing change, gives a new view
+     */
+    @Test
+    public void testMetadataChangeCreatesNewView() throws Exception {
+        AndesMessageMetadata metadata = createMetadata(1L);
+        FilterableMetadata message = FilterableMetadata.of(metadata);
+
+        metadata.setMetadata(metadata.getMetadata().clone());
+
+        assertNotSame("View of the old metadata reused", message, FilterableMetadata.of(metadata));
+    }
+
+    private static FilterManager createFilter(String selector) throws Exception {
+        FieldTable arguments = new FieldTable();
+        arguments.setString(AMQPFilterTypes.JMS_SELECTOR.getValue(), selector);
+        return FilterManagerFactory.createManager(arguments);
+    }
+
+    /**
+     * Create metadata encoded the same way as for a message received over AMQP
+     */
+    private static AndesMessageMetadata createMetadata(long messageId) {
+        FieldTable headers = new FieldTable();
+        headers.setString("color", "red");
+        headers.setInteger("size", 10);
+
+        BasicContentHeaderProperties properties = new BasicContentHeaderProperties();
+        properties.setHeaders(headers);
+        properties.setPriority((byte) 7);
+        properties.setType("order");
+        properties.setCorrelationId("correlation-1");
+
+        MessageMetaData amqMetadata = new MessageMetaData(new MessagePublishInfoImpl(new AMQShortString("amq.direct"),
+                false, false, new AMQShortString("queue")), new ContentHeaderBody(properties, BASIC_CLASS_ID), 0);
+
+        byte[] underlying = new byte[1 + amqMetadata.getStorableSize()];
+        underlying[0] = (byte) amqMetadata.getType().ordinal();
+        ByteBuffer buffer = ByteBuffer.wrap(underlying);
+        buffer.position(1);
+        amqMetadata.writeToBuffer(0, buffer.slice());
+        return new AndesMessageMetadata(messageId, underlying, false);
+    }
+}
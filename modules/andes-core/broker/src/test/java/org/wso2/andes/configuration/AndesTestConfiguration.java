@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.configuration;
+
+import org.wso2.andes.kernel.AndesException;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Loads the broker configuration of the unit tests into {@link AndesConfigurationManager}. The configuration file
+ * is the broker.xml next to this class.
+ */
+public final class AndesTestConfiguration {
+
+    private static boolean initialized = false;
+
+    private AndesTestConfiguration() {
+    }
+
+    /**
+     * Initialize {@link AndesConfigurationManager} with the test configuration unless already done. Must be called
+     * before anything else reads the configuration.
+     *
+     * @throws AndesException if the configuration cannot be loaded
+     */
+    public static synchronized void initialize() throws AndesException {
+        if (initialized) {
+            return;
+        }
+
+        URL configuration = AndesTestConfiguration.class.getResource("broker.xml");
+        if (null == configuration) {
+            throw new AndesException("Test broker configuration is not in the class path");
+        }
+
+        try {
+            System.setProperty(AndesConfigurationManager.CARBON_CONFIG_DIR_PATH,
+                    new File(configuration.toURI()).getParent());
+        } catch (URISyntaxException e) {
+            throw new AndesException("Invalid location of the test broker configuration " + configuration, e);
+        }
+        AndesConfigurationManager.initialize(0);
+        initialized = true;
+    }
+}
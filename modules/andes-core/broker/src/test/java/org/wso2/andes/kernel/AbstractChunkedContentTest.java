@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import org.junit.Test;
+import org.wso2.andes.amqp.AMQPUtils;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the content slices given by {@link AbstractChunkedContent} implementations
+ */
+public class AbstractChunkedContentTest {
+
+    private static final int CHUNK_SIZE = 4;
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    /**
+     * A range inside a single chunk is one slice of that chunk
+     */
+    @Test
+    public void testRangeInsideChunk() throws Exception {
+        ByteBuffer[] slices = createContent(createChunks()).getContentSlices(5, 2);
+
+        assertEquals("Wrong number of slices", 1, slices.length);
+        assertEquals("Wrong content", "56", toString(slices));
+    }
+
+    /**
+     * A range crossing chunk boundaries gets one slice per chunk
+     */
+    @Test
+    public void testRangeAcrossChunks() throws Exception {
+        ByteBuffer[] slices = createContent(createChunks()).getContentSlices(2, 7);
+
+        assertEquals("Wrong number of slices", 3, slices.length);
+        assertEquals("Wrong first slice", "23", toString(slices[0]));
+        assertEquals("Wrong middle slice", "4567", toString(slices[1]));
+        assertEquals("Wrong last slice", "8", toString(slices[2]));
+    }
+
+    /**
+     * A range ending exactly at a chunk boundary does not include an empty slice of the next chunk
+     */
+    @Test
+    public void testRangeEndingAtChunkBoundary() throws Exception {
+        ByteBuffer[] slices = createContent(createChunks()).getContentSlices(0, 8);
+
+        assertEquals("Wrong number of slices", 2, slices.length);
+        assertEquals("Wrong content", "01234567", toString(slices));
+    }
+
+    /**
+     * A range longer than the content is cut at the end of the content and no slice is given at the end
+     */
+    @Test
+    public void testRangeBeyondContent() throws Exception {
+        AndesContent content = createContent(createChunks());
+
+        assertEquals("Wrong content", "789", toString(content.getContentSlices(7, 100)));
+        assertEquals("Slices given at the end of the content", 0, content.getContentSlices(10, 4).length);
+    }
+
+    /**
+     * Slices are views of the chunk arrays
+     */
+    @Test
+    public void testSlicesAreViews() throws Exception {
+        Map<Integer, AndesMessagePart> chunks = createChunks();
+        ByteBuffer[] slices = createContent(chunks).getContentSlices(3, 2);
+
+        assertSame("Slice copied", chunks.get(0).getData(), slices[0].array());
+        assertSame("Slice copied", chunks.get(4).getData(), slices[1].array());
+    }
+
+    /**
+     * Retained content slices the same way using the default chunk size
+     */
+    @Test
+    public void testRetainedContent() throws Exception {
+        int defaultChunkSize = AMQPUtils.DEFAULT_CONTENT_CHUNK_SIZE;
+        AMQPUtils.DEFAULT_CONTENT_CHUNK_SIZE = CHUNK_SIZE;
+        try {
+            AndesContent content = new RetainedContent(createChunks(), CONTENT.length, 1L);
+
+            assertEquals("Wrong content", "3456", toString(content.getContentSlices(3, 4)));
+        } finally {
+            AMQPUtils.DEFAULT_CONTENT_CHUNK_SIZE = defaultChunkSize;
+        }
+    }
+
+    /**
+     * A missing chunk fails the request
+     */
+    @Test(expected = AndesException.class)
+    public void testMissingChunk() throws Exception {
+        Map<Integer, AndesMessagePart> chunks = createChunks();
+        chunks.remove(4);
+
+        createContent(chunks).getContentSlices(2, 4);
+    }
+
+    /**
+     * A chunk shorter than the chunk size in the middle of the content fails the request
+     */
+    @Test(expected = AndesException.class)
+    public void testShortChunk() throws Exception {
+        Map<Integer, AndesMessagePart> chunks = createChunks();
+        chunks.put(0, createChunk(0, 2));
+
+        createContent(chunks).getContentSlices(2, 4);
+    }
+
+    private static AndesContent createContent(Map<Integer, AndesMessagePart> chunks) {
+        return new DisruptorCachedContent(chunks, CONTENT.length, CHUNK_SIZE);
+    }
+
+    private static Map<Integer, AndesMessagePart> createChunks() {
+        Map<Integer, AndesMessagePart> chunks = new HashMap<>();
+        for (int offset = 0; offset < CONTENT.length; offset += CHUNK_SIZE) {
+            chunks.put(offset, createChunk(offset, Math.min(offset + CHUNK_SIZE, CONTENT.length)));
+        }
+        return chunks;
+    }
+
+    private static AndesMessagePart createChunk(int start, int end) {
+        AndesMessagePart part = new AndesMessagePart();
+        part.setOffSet(start);
+        byte[] data = new byte[end - start];
+        System.arraycopy(CONTENT, start, data, 0, data.length);
+        part.setData(data);
+        return part;
+    }
+
+    private static String toString(ByteBuffer... slices) {
+        StringBuilder builder = new StringBuilder();
+        for (ByteBuffer slice : slices) {
+            ByteBuffer view = slice.duplicate();
+            byte[] data = new byte[view.remaining()];
+            view.get(data);
+            builder.append(new String(data));
+        }
+        return builder.toString();
+    }
+}
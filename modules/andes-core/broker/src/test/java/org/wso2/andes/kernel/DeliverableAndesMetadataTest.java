@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.kernel.subscription.AndesSubscription;
+import org.wso2.andes.kernel.subscription.SubscriberConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the packed message and channel delivery state of {@link DeliverableAndesMetadata}
+ */
+public class DeliverableAndesMetadataTest {
+
+    private static final int THREAD_COUNT = 8;
+
+    @BeforeClass
+    public static void initializeConfiguration() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    /**
+     * Every message status fits in the packed state word
+     */
+    @Test
+    public void testStatusesFitInStateWord() {
+        assertTrue("Message statuses do not fit in the state word", MessageStatus.values().length + 8 <= 31);
+        assertTrue("Channel statuses do not fit in the channel state bits",
+                ChannelMessageStatus.values().length < (1 << 8));
+    }
+
+    /**
+     * The latest status follows the status changes and statuses making a message disposable are remembered
+     * after later changes
+     */
+    @Test
+    public void testStatePacking() {
+        DeliverableAndesMetadata metadata = createMetadata();
+        assertEquals("Wrong initial status", MessageStatus.READ, metadata.getLatestState());
+        assertFalse("New message disposable", metadata.isOKToDispose());
+
+        metadata.markAsBuffered();
+        metadata.markAsScheduledToDeliver(createSubscription(UUID.randomUUID()));
+        assertEquals("Wrong latest status", MessageStatus.SCHEDULED_TO_SEND, metadata.getLatestState());
+        assertFalse("Scheduled message disposable", metadata.isOKToDispose());
+
+        metadata.markAsDLCMessage();
+        assertTrue("DLC message not reported", metadata.isDLCMessage());
+        assertTrue("DLC message not disposable", metadata.isOKToDispose());
+
+        metadata.markAsBuffered();
+        assertEquals("Wrong latest status", MessageStatus.BUFFERED, metadata.getLatestState());
+        assertTrue("Disposable status forgotten", metadata.isOKToDispose());
+        assertEquals("Full history kept without message tracing", Arrays.asList(MessageStatus.BUFFERED),
+                metadata.getStatusHistory());
+    }
+
+    /**
+     * Slot removal and return only make a message disposable while they are the latest status
+     */
+    @Test
+    public void testSlotStatusesDisposableWhileLatest() {
+        DeliverableAndesMetadata metadata = createMetadata();
+        metadata.markAsSlotReturned();
+        assertTrue("Slot returned message not disposable", metadata.isOKToDispose());
+
+        metadata.markAsBuffered();
+        assertFalse("Message disposable after slot status was replaced", metadata.isOKToDispose());
+
+        metadata.markAsPurgedMessage();
+        metadata.markAsPreparedToDelete();
+        metadata.markAsSlotRemoved();
+        assertEquals("Wrong latest status", MessageStatus.SLOT_REMOVED, metadata.getLatestState());
+        assertTrue("Slot removed message not disposable", metadata.isOKToDispose());
+    }
+
+    /**
+     * Invalid transitions are reported but still recorded
+     */
+    @Test
+    public void testInvalidTransitionRecorded() {
+        DeliverableAndesMetadata metadata = createMetadata();
+
+        assertTrue("Valid transition reported invalid", metadata.addMessageStatus(MessageStatus.BUFFERED));
+        assertFalse("Invalid transition reported valid", metadata.addMessageStatus(MessageStatus.ACKED_BY_ALL));
+        assertEquals("Invalid transition not recorded", MessageStatus.ACKED_BY_ALL, metadata.getLatestState());
+    }
+
+    /**
+     * Channel statuses only change through valid transitions and the delivery count follows dispatches and
+     * failures
+     */
+    @Test
+    public void testChannelTransitions() {
+        UUID channelID = UUID.randomUUID();
+        DeliverableAndesMetadata metadata = createScheduledMetadata(channelID);
+
+        assertFalse("Acknowledged before dispatch", metadata.markAsAcknowledgedByChannel(channelID));
+        assertEquals("Delivered before dispatch", 0, metadata.getNumOfDeliveries4Channel(channelID));
+
+        metadata.markAsDispatchedToDeliver(channelID);
+        assertTrue("Dispatched message not redelivered", metadata.isRedelivered(channelID));
+        assertEquals("Wrong delivery count", 0, metadata.markDeliveryFailureOfASentMessage(channelID));
+
+        metadata.markAsDispatchedToDeliver(channelID);
+        metadata.markAsDispatchedToDeliver(channelID);
+        assertEquals("Wrong delivery count", 2, metadata.getNumOfDeliveries4Channel(channelID));
+
+        assertTrue("Not acknowledged by all", metadata.markAsAcknowledgedByChannel(channelID));
+        assertTrue("Not acknowledged by all", metadata.isAknowledgedByAll());
+        assertEquals("Unknown channel has deliveries", 0, metadata.getNumOfDeliveries4Channel(UUID.randomUUID()));
+    }
+
+    /**
+     * Scheduling to a new channel copies the channel array while keeping the delivery state of known channels
+     */
+    @Test
+    public void testCopyOnWriteChannels() {
+        UUID firstChannel = UUID.randomUUID();
+        UUID secondChannel = UUID.randomUUID();
+        DeliverableAndesMetadata metadata = createScheduledMetadata(firstChannel);
+        metadata.markAsDispatchedToDeliver(firstChannel);
+        Set<UUID> channelsBefore = metadata.getAllDeliveredChannels();
+
+        metadata.markAsScheduledToDeliver(Arrays.asList(createSubscription(firstChannel),
+                createSubscription(secondChannel)));
+
+        assertEquals("Snapshot of channels changed", 1, channelsBefore.size());
+        assertEquals("Wrong channels", new ArrayList<>(Arrays.asList(firstChannel, secondChannel)),
+                new ArrayList<>(metadata.getAllDeliveredChannels()));
+        assertEquals("Delivery state of known channel lost", 1, metadata.getNumOfDeliveries4Channel(firstChannel));
+        assertFalse("Acknowledged by all before second channel acknowledged",
+                metadata.markAsAcknowledgedByChannel(firstChannel));
+    }
+
+    /**
+     * Channels scheduled concurrently are all kept
+     */
+    @Test
+    public void testConcurrentScheduling() throws Exception {
+        final DeliverableAndesMetadata metadata = createMetadata();
+        metadata.markAsBuffered();
+        final List<UUID> channelIDs = createChannelIDs(THREAD_COUNT * 4);
+
+        runConcurrently(new ChannelTask() {
+            @Override
+            public boolean run(int channelIndex) {
+                metadata.markAsScheduledToDeliver(createSubscription(channelIDs.get(channelIndex)));
+                return true;
+            }
+        }, channelIDs.size());
+
+        assertEquals("Concurrently scheduled channels lost", channelIDs.size(),
+                metadata.getAllDeliveredChannels().size());
+    }
+
+    /**
+     * Channels acknowledging, rejecting and recovering concurrently leave the message acknowledged by all
+     */
+    @Test
+    public void testConcurrentAckRejectRedeliver() throws Exception {
+        final List<UUID> channelIDs = createChannelIDs(THREAD_COUNT * 4);
+        final DeliverableAndesMetadata metadata = createMetadata();
+        metadata.markAsBuffered();
+        for (UUID channelID : channelIDs) {
+            metadata.markAsScheduledToDeliver(createSubscription(channelID));
+        }
+        for (UUID channelID : channelIDs) {
+            metadata.markAsDispatchedToDeliver(channelID);
+        }
+
+        List<Boolean> acknowledgedByAll = runConcurrently(new ChannelTask() {
+            @Override
+            public boolean run(int channelIndex) {
+                UUID channelID = channelIDs.get(channelIndex);
+                switch (channelIndex % 3) {
+                    case 0:
+                        return metadata.markAsAcknowledgedByChannel(channelID);
+                    case 1:
+                        metadata.markDeliveryFailureOfASentMessage(channelID);
+                        metadata.markAsRejectedByClient(channelID);
+                        metadata.evaluateMessageAcknowledgement();
+                        return metadata.isAknowledgedByAll();
+                    default:
+                        metadata.markAsRecoveredByClient(channelID);
+                        metadata.markAsDispatchedToDeliver(channelID);
+                        return metadata.markAsAcknowledgedByChannel(channelID);
+                }
+            }
+        }, channelIDs.size());
+
+        assertTrue("Message not acknowledged by all", metadata.isAknowledgedByAll());
+        assertTrue("No channel saw the message acknowledged by all", acknowledgedByAll.contains(true));
+        for (int i = 0; i < channelIDs.size(); i++) {
+            int expectedDeliveries = i % 3 == 0 ? 1 : (i % 3 == 1 ? 0 : 2);
+            assertEquals("Wrong delivery count of channel " + i, expectedDeliveries,
+                    metadata.getNumOfDeliveries4Channel(channelIDs.get(i)));
+        }
+    }
+
+    /**
+     * Task run for a single channel
+     */
+    private interface ChannelTask {
+        boolean run(int channelIndex);
+    }
+
+    /**
+     * Run the task for every channel index from {@link #THREAD_COUNT} threads starting together
+     *
+     * @param task         task to run
+     * @param channelCount number of channels
+     * @return results of the task in channel order
+     */
+    private static List<Boolean> runConcurrently(final ChannelTask task, final int channelCount) throws Exception {
+        final CyclicBarrier startBarrier = new CyclicBarrier(THREAD_COUNT);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<List<Boolean>>> futures = new ArrayList<>(THREAD_COUNT);
+            for (int thread = 0; thread < THREAD_COUNT; thread++) {
+                final int firstChannel = thread;
+                futures.add(executor.submit(new Callable<List<Boolean>>() {
+                    @Override
+                    public List<Boolean> call() throws Exception {
+                        startBarrier.await();
+                        List<Boolean> results = new ArrayList<>();
+                        for (int channel = firstChannel; channel < channelCount; channel += THREAD_COUNT) {
+                            results.add(task.run(channel));
+                        }
+                        return results;
+                    }
+                }));
+            }
+            List<Boolean> results = new ArrayList<>(channelCount);
+            for (Future<List<Boolean>> future : futures) {
+                results.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<UUID> createChannelIDs(int count) {
+        List<UUID> channelIDs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            channelIDs.add(UUID.randomUUID());
+        }
+        return channelIDs;
+    }
+
+    private static DeliverableAndesMetadata createMetadata() {
+        Slot slot = new Slot(1L, 100L, "queue");
+        slot.setStorageQueueName("queue");
+        return new DeliverableAndesMetadata(slot, 10L, null, false);
+    }
+
+    private static DeliverableAndesMetadata createScheduledMetadata(UUID channelID) {
+        DeliverableAndesMetadata metadata = createMetadata();
+        metadata.markAsBuffered();
+        metadata.markAsScheduledToDeliver(createSubscription(channelID));
+        return metadata;
+    }
+
+    private static AndesSubscription createSubscription(UUID channelID) {
+        SubscriberConnection connection = new SubscriberConnection("127.0.0.1", "node1", channelID, null);
+        return new AndesSubscription(channelID.toString(), null, ProtocolType.AMQP, connection);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ExpiryTimerWheel}
+ */
+public class ExpiryTimerWheelTest {
+
+    private static final long TICK = 1000L;
+
+    private static final long START = 1_000_000_000L;
+
+    /**
+     * A deadline fires on the first tick boundary after it and not before
+     */
+    @Test
+    public void testDeadlineFiresOnNextTick() {
+        ExpiryTimerWheel wheel = new ExpiryTimerWheel(TICK, START);
+        wheel.schedule(1L, "queue", START + 2500L);
+
+        assertTrue("Fired before the deadline", wheel.advance(START + 2500L).isEmpty());
+        Map<String, LongArrayList> expired = wheel.advance(START + 3000L);
+        assertEquals("Deadline did not fire", LongArrayList.newListWith(1L), expired.get("queue"));
+        assertEquals("Fired deadline still counted", 0, wheel.size());
+    }
+
+    /**
+     * Deadlines which are already passed are returned on the next advance
+     */
+    @Test
+    public void testPassedDeadline() {
+        ExpiryTimerWheel wheel = new ExpiryTimerWheel(TICK, START);
+        wheel.schedule(1L, "queue", START - 5000L);
+
+        assertEquals("Passed deadline not returned", LongArrayList.newListWith(1L),
+                wheel.advance(START).get("queue"));
+    }
+
+    /**
+     * Expired message ids are grouped by their storage queue
+     */
+    @Test
+    public void testGroupByQueue() {
+        ExpiryTimerWheel wheel = new ExpiryTimerWheel(TICK, START);
+        wheel.schedule(1L, "a", START + 100L);
+        wheel.schedule(2L, "b", START + 200L);
+        wheel.schedule(3L, "a", START + 300L);
+        assertEquals("Wrong number of pending deadlines", 3, wheel.size());
+
+        Map<String, LongArrayList> expired = wheel.advance(START + TICK);
+        assertEquals("Wrong expired ids of queue a", LongArrayList.newListWith(1L, 3L), expired.get("a"));
+        assertEquals("Wrong expired ids of queue b", LongArrayList.newListWith(2L), expired.get("b"));
+    }
+
+    /**
+     * Deadlines of deleted messages never fire, wherever they are kept in the wheel
+     */
+    @Test
+    public void testCancelledDeadlineDoesNotFire() {
+        ExpiryTimerWheel wheel = new ExpiryTimerWheel(TICK, START);
+        wheel.schedule(1L, "queue", START + 500L);
+        wheel.schedule(2L, "queue", START + 5000L * TICK);
+        wheel.schedule(3L, "queue", START + 5000L * TICK);
+        wheel.schedule(4L, "queue", START - TICK);
+
+        wheel.cancel(LongArrayList.newListWith(1L, 2L, 4L, 99L));
+        assertEquals("Cancelled deadlines still counted", 1, wheel.size());
+
+        assertTrue("Cancelled deadline fired", wheel.advance(START + TICK).isEmpty());
+        assertEquals("Remaining deadline did not fire", LongArrayList.newListWith(3L),
+                wheel.advance(START + 5001L * TICK).get("queue"));
+        assertEquals("Wheel is not empty", 0, wheel.size());
+    }
+
+    /**
+     * Messages handed over as already expired are returned on the next advance, unless deleted meanwhile
+     */
+    @Test
+    public void testScheduleExpired() {
+        ExpiryTimerWheel wheel = new ExpiryTimerWheel(TICK, START);
+        wheel.scheduleExpired("queue", Arrays.asList(1L, 2L, 3L));
+        wheel.cancel(LongArrayList.newListWith(2L));
+
+        assertEquals("Handed over messages not returned", LongArrayList.newListWith(1L, 3L),
+                wheel.advance(START).get("queue"));
+        assertTrue("Handed over messages returned twice", wheel.advance(START + TICK).isEmpty());
+    }
+
+    /**
+     * Deadlines spread over every level of the wheel and the overflow fire on the same tick as a linear scan
+     * would find them
+     */
+    @Test
+    public void testAgainstLinearScan() {
+        Random random = new Random(42);
+        ExpiryTimerWheel wheel = new ExpiryTimerWheel(TICK, START);
+        Map<Long, Long> deadlines = new HashMap<>();
+        long[] horizons = { 60 * TICK, 4096 * TICK, 262144 * TICK, 16777216 * TICK, 40000000 * TICK };
+
+        long messageId = 0;
+        for (long horizon : horizons) {
+            for (int i = 0; i < 2000; i++) {
+                long deadline = START + (long) (random.nextDouble() * horizon);
+                wheel.schedule(messageId, "queue", deadline);
+                deadlines.put(messageId, deadline);
+                messageId++;
+            }
+        }
+
+        long now = START;
+        long end = START + 40000000 * TICK + 2 * TICK;
+        while (now < end) {
+            // Irregular steps, some of them skipping many ticks at once
+            now += random.nextInt(3) == 0 ? (long) (random.nextDouble() * 200000 * TICK) : TICK;
+            LongArrayList expired = wheel.advance(now).get("queue");
+            if (null != expired) {
+                for (int i = 0; i < expired.size(); i++) {
+                    Long deadline = deadlines.remove(expired.get(i));
+                    assertTrue("Unknown or duplicate expiry: " + expired.get(i), null != deadline);
+                    assertTrue("Fired before the deadline", deadline < now);
+                }
+            }
+            for (Map.Entry<Long, Long> entry : deadlines.entrySet()) {
+                // A deadline is due once a tick boundary after it has been reached
+                assertTrue("Deadline of " + entry.getKey() + " did not fire", entry.getValue() / TICK >= now / TICK);
+            }
+        }
+        assertTrue("Deadlines did not fire: " + deadlines.size(), deadlines.isEmpty());
+        assertEquals("Wheel is not empty", 0, wheel.size());
+    }
+}
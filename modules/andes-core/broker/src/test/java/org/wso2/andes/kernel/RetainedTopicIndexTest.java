@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link RetainedTopicIndex}
+ */
+public class RetainedTopicIndexTest {
+
+    /**
+     * Single and multi level wildcards resolve to the expected topics
+     */
+    @Test
+    public void testWildcardMatching() throws AndesException {
+        RetainedTopicIndex index = new RetainedTopicIndex();
+        index.replaceAll(Arrays.asList("sport", "sport/tennis", "sport/tennis/player1", "sport/football/player1",
+                "sport/", "news/tennis"));
+
+        assertMatches(index, "sport/tennis/player1", "sport/tennis/player1");
+        assertMatches(index, "sport/+", "sport/tennis", "sport/");
+        assertMatches(index, "sport/+/player1", "sport/tennis/player1", "sport/football/player1");
+        assertMatches(index, "+/tennis", "sport/tennis", "news/tennis");
+        assertMatches(index, "sport/#", "sport", "sport/tennis", "sport/tennis/player1", "sport/football/player1",
+                "sport/");
+        assertMatches(index, "#", "sport", "sport/tennis", "sport/tennis/player1", "sport/football/player1",
+                "sport/", "news/tennis");
+        assertMatches(index, "sport/tennis/player2");
+        assertMatches(index, "news/+/#", "news/tennis");
+        assertMatches(index, "news/tennis/+/#");
+    }
+
+    /**
+     * Removed topics no longer match and levels left empty are removed
+     */
+    @Test
+    public void testRemove() throws AndesException {
+        RetainedTopicIndex index = new RetainedTopicIndex();
+        index.add("a/b/c");
+        index.add("a/b");
+        index.add("a/b");
+        assertEquals("Duplicate topic counted", 2, index.size());
+
+        index.remove("a/b/c");
+        index.remove("a/x");
+        assertMatches(index, "a/#", "a/b");
+
+        index.remove("a/b");
+        assertEquals("Removed topics still counted", 0, index.size());
+        assertMatches(index, "#");
+    }
+
+    /**
+     * Invalid wildcard usage is rejected
+     */
+    @Test(expected = AndesException.class)
+    public void testInvalidSubscription() throws AndesException {
+        new RetainedTopicIndex().match("a/#/b");
+    }
+
+    /**
+     * The index finds the same topics as matching the subscription against every topic
+     */
+    @Test
+    public void testSameMatchesAsLinearScan() throws AndesException {
+        Random random = new Random(42);
+        String[] levels = {"a", "b", "c", ""};
+        Set<String> topics = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            topics.add(randomTopic(random, levels, false));
+        }
+        RetainedTopicIndex index = new RetainedTopicIndex();
+        index.replaceAll(topics);
+
+        for (int i = 0; i < 500; i++) {
+            String subscription = randomTopic(random, levels, true);
+            if (subscription.endsWith("+/#")) {
+                // Linear matching lets a single level wildcard before "#" match a missing level
+                continue;
+            }
+            List<String> expected = new ArrayList<>();
+            for (String topic : topics) {
+                if (TopicParserUtil.isMatching(topic, subscription)) {
+                    expected.add(topic);
+                }
+            }
+            List<String> actual = index.match(subscription);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals("Matches of " + subscription, expected, actual);
+        }
+    }
+
+    private static String randomTopic(Random random, String[] levels, boolean wildcards) {
+        int depth = 1 + random.nextInt(4);
+        StringBuilder topic = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                topic.append(TopicParserUtil.TOPIC_TOKEN_SEPARATOR);
+            }
+            int choice = random.nextInt(wildcards ? levels.length + 2 : levels.length);
+            if (choice == levels.length) {
+                topic.append(TopicParserUtil.SINGLE_LEVEL_WILDCARD);
+            } else if (choice == levels.length + 1) {
+                // Multi level wildcard ends the subscription
+                topic.append(TopicParserUtil.MULTIPLE_LEVEL_WILDCARD);
+                break;
+            } else if (i == depth - 1 && levels[choice].isEmpty()) {
+                // Linear matching collapses trailing empty levels, so the last level is never empty
+                topic.append(levels[0]);
+            } else {
+                topic.append(levels[choice]);
+            }
+        }
+        return topic.toString();
+    }
+
+    private static void assertMatches(RetainedTopicIndex index, String subscription, String... topics)
+            throws AndesException {
+        Set<String> expected = new HashSet<>(Arrays.asList(topics));
+        List<String> actual = index.match(subscription);
+        assertEquals("Duplicate matches for " + subscription, actual.size(), new HashSet<>(actual).size());
+        assertEquals("Matches of " + subscription, expected, new HashSet<>(actual));
+    }
+}
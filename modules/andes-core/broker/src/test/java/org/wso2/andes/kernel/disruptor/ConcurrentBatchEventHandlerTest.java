@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor;
+
+import com.lmax.disruptor.Cursored;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer;
+import org.wso2.andes.kernel.disruptor.inbound.MessageWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for group commit batching of {@link ConcurrentBatchEventHandler}
+ */
+public class ConcurrentBatchEventHandlerTest {
+
+    /**
+     * Messages are committed when the batch size of the controller is reached and the batch grows after fast full
+     * commits
+     */
+    @Test
+    public void testCommitOnControllerBatchSize() throws Exception {
+        RecordingMessageWriter writer = new RecordingMessageWriter();
+        GroupCommitController controller = new GroupCommitController("handlerTest", 4, 4, 64, 1000, 0);
+        ConcurrentBatchEventHandler handler = createHandler(writer, controller, new FixedCursor(100));
+
+        for (long sequence = 0; sequence < 4; sequence++) {
+            handler.onEvent(createEvent(), sequence, false);
+        }
+
+        assertEquals("Full batch not committed", Arrays.asList(4), writer.getCommittedBatchSizes());
+        assertTrue("Batch size not grown after a fast full commit", controller.getBatchSize() > 4);
+    }
+
+    /**
+     * A partial batch is committed before the end of batch event returns, even when the commit is held
+     */
+    @Test
+    public void testPartialBatchCommittedAtEndOfBatch() throws Exception {
+        RecordingMessageWriter writer = new RecordingMessageWriter();
+        GroupCommitController controller = new GroupCommitController("handlerHoldTest", 16, 4, 64, 1000, 1000);
+        ConcurrentBatchEventHandler handler = createHandler(writer, controller, new FixedCursor(2));
+
+        handler.onEvent(createEvent(), 0, false);
+        handler.onEvent(createEvent(), 1, false);
+        long start = System.nanoTime();
+        handler.onEvent(createEvent(), 2, true);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals("Partial batch not committed", Arrays.asList(3), writer.getCommittedBatchSizes());
+        assertTrue("Commit held longer than the hold limit", elapsed < 500L * 1000 * 1000);
+    }
+
+    /**
+     * Holding a partial batch ends as soon as enough events for a full batch are in the ring
+     */
+    @Test
+    public void testHoldEndsWhenRingHasFullBatch() throws Exception {
+        RecordingMessageWriter writer = new RecordingMessageWriter();
+        // Long hold limit, so the test would only finish quickly if the hold ends early
+        GroupCommitController controller = new GroupCommitController("handlerEarlyTest", 4, 4, 64, 60000, 30000000);
+        ConcurrentBatchEventHandler handler = createHandler(writer, controller, new FixedCursor(100));
+
+        handler.onEvent(createEvent(), 0, false);
+        handler.onEvent(createEvent(), 1, false);
+        long start = System.nanoTime();
+        handler.onEvent(createEvent(), 2, true);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals("Partial batch not committed", Arrays.asList(3), writer.getCommittedBatchSizes());
+        assertTrue("Commit held although a full batch was waiting", elapsed < 5L * 1000 * 1000 * 1000);
+    }
+
+    private static ConcurrentBatchEventHandler createHandler(MessageWriter writer, GroupCommitController controller,
+                                                             Cursored cursor) {
+        return new ConcurrentBatchEventHandler(0, 1, InboundEventContainer.Type.MESSAGE_EVENT, writer, controller,
+                cursor);
+    }
+
+    private static InboundEventContainer createEvent() {
+        InboundEventContainer event = new InboundEventContainer();
+        event.setEventType(InboundEventContainer.Type.MESSAGE_EVENT);
+        event.getMessageList().add(new AndesMessage(new AndesMessageMetadata()));
+        return event;
+    }
+
+    /**
+     * Ring cursor fixed at a given sequence
+     */
+    private static class FixedCursor implements Cursored {
+
+        private final long cursor;
+
+        private FixedCursor(long cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public long getCursor() {
+            return cursor;
+        }
+    }
+
+    /**
+     * Message writer recording the size of each written batch instead of storing messages
+     */
+    private static class RecordingMessageWriter extends MessageWriter {
+
+        private final List<Integer> committedBatchSizes = new ArrayList<>();
+
+        private RecordingMessageWriter() {
+            super(null, 16);
+        }
+
+        @Override
+        public void writeMessages(List<AndesMessage> messageList, Map<String, AndesMessage> retainMap) {
+            committedBatchSizes.add(messageList.size());
+        }
+
+        private List<Integer> getCommittedBatchSizes() {
+            return committedBatchSizes;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for batch size adaptation and commit holding of {@link GroupCommitController}
+ */
+public class GroupCommitControllerTest {
+
+    private static final int TARGET_LATENCY_MILLIS = 10;
+
+    private static final int MAX_HOLD_MICROS = 2000;
+
+    private static final long SLOW_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(TARGET_LATENCY_MILLIS);
+
+    private static final long FAST_COMMIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Batch size ranges without a valid lower bound or with the upper bound below the lower bound are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBatchSizeRange() {
+        new GroupCommitController("invalid", 10, 20, 10, TARGET_LATENCY_MILLIS, MAX_HOLD_MICROS);
+    }
+
+    /**
+     * The initial batch size is kept inside the configured range
+     */
+    @Test
+    public void testInitialBatchSizeBounded() {
+        assertEquals("Initial batch size not raised to the minimum", 10,
+                new GroupCommitController("low", 1, 10, 100, TARGET_LATENCY_MILLIS, MAX_HOLD_MICROS).getBatchSize());
+        assertEquals("Initial batch size not lowered to the maximum", 100,
+                new GroupCommitController("high", 500, 10, 100, TARGET_LATENCY_MILLIS, MAX_HOLD_MICROS)
+                        .getBatchSize());
+    }
+
+    /**
+     * Commits slower than the commit share of the target latency shrink the batch down to the minimum
+     */
+    @Test
+    public void testSlowCommitsShrinkBatch() {
+        GroupCommitController controller = createController(64);
+
+        controller.committed(64, SLOW_COMMIT_NANOS, true);
+        assertEquals("Batch size not shrunk", 48, controller.getBatchSize());
+
+        for (int i = 0; i < 50; i++) {
+            controller.committed(controller.getBatchSize(), SLOW_COMMIT_NANOS, true);
+        }
+        assertEquals("Batch size shrunk below the minimum", 4, controller.getBatchSize());
+    }
+
+    /**
+     * Full batches committed well within the commit share grow the batch up to the maximum
+     */
+    @Test
+    public void testFastFullBatchesGrowBatch() {
+        GroupCommitController controller = createController(64);
+
+        controller.committed(64, FAST_COMMIT_NANOS, true);
+        assertEquals("Batch size not grown", 73, controller.getBatchSize());
+
+        for (int i = 0; i < 50; i++) {
+            controller.committed(controller.getBatchSize(), FAST_COMMIT_NANOS, true);
+        }
+        assertEquals("Batch size grown above the maximum", 256, controller.getBatchSize());
+    }
+
+    /**
+     * Partial batches committed when the ring is drained do not grow the batch
+     */
+    @Test
+    public void testPartialBatchesKeepBatchSize() {
+        GroupCommitController controller = createController(64);
+
+        for (int i = 0; i < 10; i++) {
+            controller.committed(5, FAST_COMMIT_NANOS, false);
+        }
+        assertEquals("Batch size changed by partial batches", 64, controller.getBatchSize());
+    }
+
+    /**
+     * A partial batch is not held until the arrival rate of messages is known, and is never held when holding is
+     * disabled or the batch is full
+     */
+    @Test
+    public void testNoHoldWithoutSteadyArrivals() {
+        GroupCommitController controller = createController(64);
+        long now = System.nanoTime();
+
+        assertEquals("Held before arrival rate known", 0, controller.getHoldTime(1, now, now));
+        controller.eventArrived(now);
+        assertEquals("Held after a single arrival", 0, controller.getHoldTime(1, now, now));
+
+        controller.eventArrived(now + 1000);
+        assertEquals("Held an empty batch", 0, controller.getHoldTime(0, now, now + 1000));
+        assertEquals("Held a full batch", 0, controller.getHoldTime(64, now, now + 1000));
+
+        GroupCommitController noHold = new GroupCommitController("noHold", 64, 4, 256, TARGET_LATENCY_MILLIS, 0);
+        noHold.eventArrived(now);
+        noHold.eventArrived(now + 1000);
+        assertEquals("Held with holding disabled", 0, noHold.getHoldTime(1, now, now + 1000));
+    }
+
+    /**
+     * With steady arrivals a partial batch is held for the rest of the hold limit, counted from the arrival of its
+     * oldest message
+     */
+    @Test
+    public void testHoldWithSteadyArrivals() {
+        GroupCommitController controller = createController(64);
+        long start = System.nanoTime();
+        long gap = TimeUnit.MICROSECONDS.toNanos(50);
+        for (int i = 0; i < 5; i++) {
+            controller.eventArrived(start + i * gap);
+        }
+        long now = start + 4 * gap;
+
+        long holdTime = controller.getHoldTime(5, start, now);
+        assertEquals("Wrong hold time", TimeUnit.MICROSECONDS.toNanos(MAX_HOLD_MICROS) - (now - start), holdTime);
+
+        long expired = start + TimeUnit.MICROSECONDS.toNanos(MAX_HOLD_MICROS);
+        assertEquals("Held past the hold limit", 0, controller.getHoldTime(5, start, expired));
+    }
+
+    /**
+     * A partial batch is not held if the next message is not expected within the remaining hold time
+     */
+    @Test
+    public void testNoHoldWhenArrivalsTooSparse() {
+        GroupCommitController controller = createController(64);
+        long start = System.nanoTime();
+        long gap = TimeUnit.MICROSECONDS.toNanos(MAX_HOLD_MICROS * 2);
+        controller.eventArrived(start);
+        controller.eventArrived(start + gap);
+
+        assertEquals("Held although next message is not expected in time", 0,
+                controller.getHoldTime(1, start + gap, start + gap));
+    }
+
+    /**
+     * The hold limit leaves room for the expected commit latency within the target latency
+     */
+    @Test
+    public void testHoldLimitedByCommitLatency() {
+        GroupCommitController controller = new GroupCommitController("limited", 64, 4, 256, 1, MAX_HOLD_MICROS);
+        long commitNanos = TimeUnit.MICROSECONDS.toNanos(400);
+        controller.committed(10, commitNanos, false);
+        long start = System.nanoTime();
+        controller.eventArrived(start);
+        controller.eventArrived(start + 1000);
+
+        long holdTime = controller.getHoldTime(2, start, start + 1000);
+        assertTrue("Hold time not limited by the latency budget",
+                holdTime <= TimeUnit.MILLISECONDS.toNanos(1) - commitNanos);
+        assertEquals("Wrong hold time", TimeUnit.MILLISECONDS.toNanos(1) - commitNanos - 1000, holdTime);
+    }
+
+    private static GroupCommitController createController(int initialBatchSize) {
+        return new GroupCommitController("test", initialBatchSize, 4, 256, TARGET_LATENCY_MILLIS, MAX_HOLD_MICROS);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor.delivery;
+
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SequenceBarrier;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.AndesException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ConcurrentContentReadTaskBatchProcessor}
+ */
+public class ConcurrentContentReadTaskBatchProcessorTest {
+
+    private static final int GROUP_COUNT = 2;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    /**
+     * Messages are partitioned across the content readers by content id, so that messages sharing content are
+     * read by the same reader
+     */
+    @Test
+    public void testPartitionByContentId() throws Exception {
+        RingBuffer<DeliveryEventData> ringBuffer = RingBuffer.createSingleProducer(DeliveryEventData.getFactory(), 16);
+        SequenceBarrier sequenceBarrier = ringBuffer.newBarrier();
+
+        RecordingContentCacheCreator[] readers = new RecordingContentCacheCreator[GROUP_COUNT];
+        ConcurrentContentReadTaskBatchProcessor[] processors = new ConcurrentContentReadTaskBatchProcessor[GROUP_COUNT];
+        ExecutorService executor = Executors.newFixedThreadPool(GROUP_COUNT);
+        for (int turn = 0; turn < GROUP_COUNT; turn++) {
+            readers[turn] = new RecordingContentCacheCreator();
+            processors[turn] = new ConcurrentContentReadTaskBatchProcessor(ringBuffer, sequenceBarrier, readers[turn],
+                    turn, GROUP_COUNT, 1024);
+            ringBuffer.addGatingSequences(processors[turn].getSequence());
+            executor.execute(processors[turn]);
+        }
+
+        // Message ids and content ids of different parity
+        long[][] messages = { { 1L, 100L }, { 3L, 100L }, { 2L, 0L }, { 4L, 201L }, { 5L, 0L } };
+        for (long[] message : messages) {
+            long sequence = ringBuffer.next();
+            DeliveryEventData template = ContentCacheCreatorTest.createEvent(message[0], message[1]);
+            ringBuffer.get(sequence).setMetadata(template.getMetadata());
+            ringBuffer.publish(sequence);
+        }
+
+        long lastSequence = ringBuffer.getCursor();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        for (ConcurrentContentReadTaskBatchProcessor processor : processors) {
+            while (processor.getSequence().get() < lastSequence && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            processor.halt();
+        }
+        executor.shutdown();
+        assertTrue("Processors did not stop", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals("Wrong messages read by reader 0", toList(1L, 3L, 2L), readers[0].getMessageIds());
+        assertEquals("Wrong messages read by reader 1", toList(4L, 5L), readers[1].getMessageIds());
+    }
+
+    private static List<Long> toList(Long... messageIds) {
+        List<Long> list = new ArrayList<>();
+        Collections.addAll(list, messageIds);
+        return list;
+    }
+
+    /**
+     * Content reader recording the messages it is given instead of reading content
+     */
+    private static class RecordingContentCacheCreator extends ContentCacheCreator {
+
+        private final List<Long> messageIds = new ArrayList<>();
+
+        RecordingContentCacheCreator() {
+            super(65500);
+        }
+
+        @Override
+        public void onEvent(List<DeliveryEventData> eventDataList) throws AndesException {
+            synchronized (messageIds) {
+                for (DeliveryEventData eventData : eventDataList) {
+                    messageIds.add(eventData.getMetadata().getMessageID());
+                }
+            }
+        }
+
+        List<Long> getMessageIds() {
+            synchronized (messageIds) {
+                return new ArrayList<>(messageIds);
+            }
+        }
+    }
+}
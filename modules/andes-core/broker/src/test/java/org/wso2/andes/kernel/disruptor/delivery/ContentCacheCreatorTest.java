@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor.delivery;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.AndesContent;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.DeliverableAndesMetadata;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.ProtocolMessage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ContentCacheCreator}
+ */
+public class ContentCacheCreatorTest {
+
+    private static final int MAX_CHUNK_SIZE = 65500;
+
+    private static final byte[] CONTENT = "content".getBytes();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    /**
+     * Messages sharing content are served by a single read of the content id and share the cached content
+     */
+    @Test
+    public void testSharedContentReadOnceByContentId() throws Exception {
+        RecordingContentReader contentReader = new RecordingContentReader();
+        ContentCacheCreator contentCacheCreator = new ContentCacheCreator(MAX_CHUNK_SIZE, contentReader.getStore());
+
+        List<DeliveryEventData> events = Arrays.asList(
+                createEvent(1L, 100L), createEvent(2L, 100L), createEvent(3L, 100L), createEvent(4L, 0L));
+        contentCacheCreator.onEvent(events);
+
+        assertEquals("Unexpected content reads", 1, contentReader.reads.size());
+        assertEquals("Content not read by content id", LongArrayList.newListWith(4L, 100L),
+                contentReader.reads.get(0).sortThis());
+
+        AndesContent sharedContent = events.get(0).getAndesContent();
+        assertNotNull("Shared content not set", sharedContent);
+        assertSame("Shared content not cached once", sharedContent, events.get(1).getAndesContent());
+        assertSame("Shared content not cached once", sharedContent, events.get(2).getAndesContent());
+        assertNotNull("Unshared content not set", events.get(3).getAndesContent());
+
+        ByteBuffer buffer = ByteBuffer.allocate(CONTENT.length);
+        sharedContent.putContent(0, buffer);
+        assertEquals("Wrong content", ByteBuffer.wrap(CONTENT), (ByteBuffer) buffer.flip());
+        for (DeliveryEventData event : events) {
+            assertFalse("Content read reported as failed", event.isErrorOccurred());
+        }
+    }
+
+    /**
+     * Content cached for a message is reused for a later message referring to the same content
+     */
+    @Test
+    public void testSharedContentServedFromCache() throws Exception {
+        RecordingContentReader contentReader = new RecordingContentReader();
+        ContentCacheCreator contentCacheCreator = new ContentCacheCreator(MAX_CHUNK_SIZE, contentReader.getStore());
+
+        DeliveryEventData first = createEvent(1L, 100L);
+        contentCacheCreator.onEvent(Collections.singletonList(first));
+        DeliveryEventData second = createEvent(2L, 100L);
+        contentCacheCreator.onEvent(Collections.singletonList(second));
+
+        assertEquals("Content read again for a cached content id", 2, contentReader.reads.size());
+        assertTrue("Content read again for a cached content id", contentReader.reads.get(1).isEmpty());
+        assertSame("Cached content not reused", first.getAndesContent(), second.getAndesContent());
+    }
+
+    /**
+     * A message whose content is not in the store is reported as failed
+     */
+    @Test
+    public void testMissingContent() throws Exception {
+        RecordingContentReader contentReader = new RecordingContentReader();
+        contentReader.missingContentIds.add(100L);
+        ContentCacheCreator contentCacheCreator = new ContentCacheCreator(MAX_CHUNK_SIZE, contentReader.getStore());
+
+        DeliveryEventData event = createEvent(1L, 100L);
+        contentCacheCreator.onEvent(Collections.singletonList(event));
+        assertTrue("Missing content not reported", event.isErrorOccurred());
+    }
+
+    /**
+     * Create a delivery event of a message with content
+     *
+     * @param messageId id of the message
+     * @param contentId id of the shared content. 0 if the content is not shared.
+     * @return delivery event
+     */
+    static DeliveryEventData createEvent(long messageId, long contentId) {
+        DeliverableAndesMetadata metadata = new DeliverableAndesMetadata(null, messageId, new byte[] { 1 }, false);
+        metadata.setContentId(contentId);
+        metadata.setMessageContentLength(CONTENT.length);
+
+        DeliveryEventData event = new DeliveryEventData();
+        event.setMetadata(new ProtocolMessage(metadata, UUID.randomUUID()));
+        return event;
+    }
+
+    /**
+     * Message store serving only bulk content reads, which records the ids each read is done with
+     */
+    private static class RecordingContentReader implements InvocationHandler {
+
+        private final List<LongArrayList> reads = new ArrayList<>();
+
+        private final LongArrayList missingContentIds = new LongArrayList();
+
+        MessageStore getStore() {
+            return (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                    new Class<?>[] { MessageStore.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!"getContent".equals(method.getName()) || !(args[0] instanceof LongArrayList)) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+
+            LongArrayList contentIds = new LongArrayList();
+            contentIds.addAll((LongArrayList) args[0]);
+            reads.add(contentIds);
+
+            LongObjectHashMap<List<AndesMessagePart>> contentMap = new LongObjectHashMap<>();
+            for (int index = 0; index < contentIds.size(); index++) {
+                long contentId = contentIds.get(index);
+                if (missingContentIds.contains(contentId)) {
+                    continue;
+                }
+                AndesMessagePart messagePart = new AndesMessagePart();
+                messagePart.setMessageID(contentId);
+                messagePart.setOffSet(0);
+                messagePart.setData(CONTENT);
+                contentMap.put(contentId, Collections.singletonList(messagePart));
+            }
+            return contentMap;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package org.wso2.andes.kernel.disruptor.inbound;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.AndesAckData;
+import org.wso2.andes.kernel.AndesAckEvent;
+import org.wso2.andes.kernel.AndesBulkAckData;
+import org.wso2.andes.kernel.AndesBulkAckEvent;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.DeliverableAndesMetadata;
+import org.wso2.andes.kernel.MessageStatus;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.kernel.ProtocolMessage;
+import org.wso2.andes.kernel.ProtocolType;
+import org.wso2.andes.kernel.registry.SubscriptionRegistry;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.kernel.subscription.AndesSubscription;
+import org.wso2.andes.kernel.subscription.AndesSubscriptionManager;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+import org.wso2.andes.kernel.subscription.SubscriberConnection;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.ClusterManager;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for processing single and bulk acknowledgements through {@link AckEventBatchHandler}, {@link AckHandler}
+ * and {@link StateEventHandler}. Messages are deleted from an in memory message store recording the deletions.
+ */
+public class AckEventBatchHandlerTest {
+
+    private static final String QUEUE_NAME = "ackTestQueue";
+
+    private static final String NODE_ID = "ackTestNode";
+
+    /**
+     * Number of messages the slot holds, more than any test acknowledges so the slot is never deleted
+     */
+    private static final int SLOT_MESSAGE_COUNT = 100;
+
+    /**
+     * Ids of the messages deleted by each deleteMessages call of the message store
+     */
+    private static final List<List<Long>> deletions = new CopyOnWriteArrayList<>();
+
+    private static AndesSubscriptionManager previousSubscriptionManager;
+
+    private static Field messageStoreField;
+
+    private static Object previousMessageStore;
+
+    private static StorageQueue storageQueue;
+
+    private Slot slot;
+
+    private AckHandler ackHandler;
+
+    private final StateEventHandler stateEventHandler = new StateEventHandler();
+
+    private long sequence = 0;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        AndesTestConfiguration.initialize();
+        if (null == ClusterResourceHolder.getInstance().getClusterManager()) {
+            ClusterResourceHolder.getInstance().setClusterManager(new ClusterManager());
+        }
+
+        previousSubscriptionManager = AndesContext.getInstance().getAndesSubscriptionManager();
+        AndesContext.getInstance().setAndesSubscriptionManager(new ChannelSubscriptionManager());
+        storageQueue = new StorageQueue(QUEUE_NAME, true, false, null, false);
+
+        messageStoreField = MessagingEngine.class.getDeclaredField("messageStore");
+        messageStoreField.setAccessible(true);
+        previousMessageStore = messageStoreField.get(MessagingEngine.getInstance());
+        messageStoreField.set(MessagingEngine.getInstance(), Proxy.newProxyInstance(
+                MessageStore.class.getClassLoader(), new Class<?>[] { MessageStore.class },
+                new DeletionRecorder()));
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        messageStoreField.set(MessagingEngine.getInstance(), previousMessageStore);
+        AndesContext.getInstance().setAndesSubscriptionManager(previousSubscriptionManager);
+    }
+
+    @Before
+    public void createSlot() {
+        deletions.clear();
+        slot = new Slot(1L, 1000L, QUEUE_NAME);
+        slot.setStorageQueueName(QUEUE_NAME);
+        slot.incrementPendingMessageCount(SLOT_MESSAGE_COUNT);
+        ackHandler = new AckHandler(MessagingEngine.getInstance());
+    }
+
+    /**
+     * All messages of a bulk acknowledgement are removed from the channel and deleted in one store call
+     */
+    @Test
+    public void testBulkAck() throws Exception {
+        SubscriberConnection connection = subscribe();
+        List<DeliverableAndesMetadata> messages = send(Arrays.asList(connection), 1L, 2L, 3L);
+
+        InboundEventContainer event = bulkAck(connection, 1L, 2L, 3L);
+        process(createBatchHandler(0, 1, 10), event, true);
+
+        assertEquals("Bulk acknowledged messages not deleted together", Arrays.asList(Arrays.asList(1L, 2L, 3L)),
+                deletions);
+        assertEquals("Acknowledged messages still tracked by the channel", 0,
+                connection.getUnAckedMessages().size());
+        for (DeliverableAndesMetadata message : messages) {
+            assertEquals("Acknowledged message not deleted", MessageStatus.DELETED, message.getLatestState());
+        }
+    }
+
+    /**
+     * Messages acknowledged again in a bulk acknowledgement are skipped while the rest are deleted
+     */
+    @Test
+    public void testBulkAckOfAlreadyAcknowledgedMessage() throws Exception {
+        SubscriberConnection connection = subscribe();
+        send(Arrays.asList(connection), 1L, 2L);
+        AckEventBatchHandler batchHandler = createBatchHandler(0, 1, 10);
+
+        process(batchHandler, bulkAck(connection, 1L), true);
+        process(batchHandler, bulkAck(connection, 1L, 2L), true);
+
+        assertEquals("Message deleted twice", Arrays.asList(Arrays.asList(1L), Arrays.asList(2L)), deletions);
+        assertEquals("Pending count not updated once per deleted message", SLOT_MESSAGE_COUNT - 2,
+                slot.getPendingMessageCount());
+    }
+
+    /**
+     * Single and bulk acknowledgements of a batch are deleted together once the batch ends
+     */
+    @Test
+    public void testMixedBatch() throws Exception {
+        SubscriberConnection first = subscribe();
+        SubscriberConnection second = subscribe();
+        send(Arrays.asList(first), 1L, 2L, 3L);
+        send(Arrays.asList(second), 4L, 5L);
+        AckEventBatchHandler batchHandler = createBatchHandler(0, 1, 10);
+
+        InboundEventContainer singleAck = singleAck(first, 1L);
+        InboundEventContainer firstBulkAck = bulkAck(first, 2L, 3L);
+        InboundEventContainer secondBulkAck = bulkAck(second, 4L, 5L);
+        batchHandler.onEvent(singleAck, sequence++, false);
+        batchHandler.onEvent(firstBulkAck, sequence++, false);
+        assertTrue("Acknowledgements processed before the batch ended", deletions.isEmpty());
+        batchHandler.onEvent(secondBulkAck, sequence++, true);
+
+        assertEquals("Batch not deleted together", Arrays.asList(Arrays.asList(1L, 2L, 3L, 4L, 5L)), deletions);
+
+        for (InboundEventContainer event : Arrays.asList(singleAck, firstBulkAck, secondBulkAck)) {
+            stateEventHandler.onEvent(event, sequence++, true);
+        }
+        assertEquals("Pending count not updated for single and bulk acknowledgements", SLOT_MESSAGE_COUNT - 5,
+                slot.getPendingMessageCount());
+    }
+
+    /**
+     * A batch is processed once it reaches the batch size, counting single and bulk acknowledgements as one event
+     * each, and events of other handlers of the group are left to them
+     */
+    @Test
+    public void testBatchSizeAndTurn() throws Exception {
+        SubscriberConnection connection = subscribe();
+        send(Arrays.asList(connection), 1L, 2L, 3L, 4L);
+        AckEventBatchHandler batchHandler = createBatchHandler(0, 2, 2);
+
+        batchHandler.onEvent(singleAck(connection, 1L), 0, false);
+        batchHandler.onEvent(singleAck(connection, 2L), 1, false);
+        assertTrue("Acknowledgement of another handler counted in the batch", deletions.isEmpty());
+        batchHandler.onEvent(bulkAck(connection, 3L, 4L), 2, false);
+
+        assertEquals("Full batch not processed", Arrays.asList(Arrays.asList(1L, 3L, 4L)), deletions);
+    }
+
+    /**
+     * A message delivered to two channels is only deleted and counted off the slot once both acknowledged it
+     */
+    @Test
+    public void testSharedMessage() throws Exception {
+        SubscriberConnection first = subscribe();
+        SubscriberConnection second = subscribe();
+        List<DeliverableAndesMetadata> messages = send(Arrays.asList(first, second), 1L);
+        AckEventBatchHandler batchHandler = createBatchHandler(0, 1, 10);
+
+        process(batchHandler, bulkAck(first, 1L), true);
+        assertTrue("Message deleted before all channels acknowledged", deletions.isEmpty());
+        assertEquals("Pending count updated before the message was deleted", SLOT_MESSAGE_COUNT,
+                slot.getPendingMessageCount());
+        assertFalse("Message deleted before all channels acknowledged",
+                MessageStatus.DELETED == messages.get(0).getLatestState());
+
+        process(batchHandler, bulkAck(second, 1L), true);
+        assertEquals("Message not deleted once all channels acknowledged", Arrays.asList(Arrays.asList(1L)),
+                deletions);
+        assertEquals("Pending count not updated", SLOT_MESSAGE_COUNT - 1, slot.getPendingMessageCount());
+    }
+
+    private AckEventBatchHandler createBatchHandler(int turn, int groupCount, int batchSize) {
+        return new AckEventBatchHandler(turn, groupCount, batchSize, ackHandler);
+    }
+
+    /**
+     * Pass an acknowledgement event through the batch handler and the state event handler, as the acknowledgement
+     * ring does
+     */
+    private void process(AckEventBatchHandler batchHandler, InboundEventContainer event, boolean endOfBatch)
+            throws Exception {
+        long eventSequence = sequence++;
+        batchHandler.onEvent(event, eventSequence, endOfBatch);
+        stateEventHandler.onEvent(event, eventSequence, endOfBatch);
+    }
+
+    /**
+     * Register a local subscription on a new channel
+     *
+     * @return connection of the subscription
+     */
+    private SubscriberConnection subscribe() {
+        UUID channelId = UUID.randomUUID();
+        SubscriberConnection connection = new SubscriberConnection("127.0.0.1", NODE_ID, channelId, null);
+        AndesContext.getInstance().getAndesSubscriptionManager().registerSubscription(
+                new AndesSubscription(channelId.toString(), storageQueue, ProtocolType.AMQP, connection));
+        return connection;
+    }
+
+    /**
+     * Deliver messages of the slot to channels
+     *
+     * @param connections channels the messages are delivered to
+     * @param messageIds  ids of the messages
+     * @return delivered messages
+     */
+    private List<DeliverableAndesMetadata> send(List<SubscriberConnection> connections, long... messageIds) {
+        List<DeliverableAndesMetadata> messages = new ArrayList<>(messageIds.length);
+        for (long messageId : messageIds) {
+            DeliverableAndesMetadata message = new DeliverableAndesMetadata(slot, messageId, null, false);
+            message.setDestination(QUEUE_NAME);
+            message.setMessageRouterName("amq.direct");
+            message.markAsBuffered();
+            for (SubscriberConnection connection : connections) {
+                UUID channelId = connection.getProtocolChannelID();
+                message.markAsScheduledToDeliver(AndesContext.getInstance().getAndesSubscriptionManager()
+                        .getSubscriptionByProtocolChannel(channelId));
+                message.markAsDispatchedToDeliver(channelId);
+                connection.addMessageToSendingTracker(new ProtocolMessage(message, channelId));
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private InboundEventContainer singleAck(SubscriberConnection connection, long messageId) {
+        InboundEventContainer event = new InboundEventContainer();
+        event.setEventType(InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT);
+        event.ackData = new AndesAckEvent(new AndesAckData(connection.getProtocolChannelID(), messageId));
+        return event;
+    }
+
+    private InboundEventContainer bulkAck(SubscriberConnection connection, long... messageIds) {
+        InboundEventContainer event = new InboundEventContainer();
+        event.setEventType(InboundEventContainer.Type.BULK_ACKNOWLEDGEMENT_EVENT);
+        event.bulkAckData = new AndesBulkAckEvent(new AndesBulkAckData(connection.getProtocolChannelID(),
+                LongArrayList.newListWith(messageIds)));
+        return event;
+    }
+
+    /**
+     * Subscription manager looking up local subscriptions by their channel
+     */
+    private static class ChannelSubscriptionManager extends AndesSubscriptionManager {
+
+        private final Map<UUID, AndesSubscription> subscriptions = new ConcurrentHashMap<>();
+
+        ChannelSubscriptionManager() throws AndesException {
+            super(new SubscriptionRegistry(), null);
+        }
+
+        @Override
+        public void registerSubscription(AndesSubscription subscription) {
+            subscriptions.put(subscription.getSubscriberConnection().getProtocolChannelID(), subscription);
+        }
+
+        @Override
+        public AndesSubscription getSubscriptionByProtocolChannel(UUID channelID) {
+            return subscriptions.get(channelID);
+        }
+    }
+
+    /**
+     * Message store recording the ids of deleted messages. Calls without messages to delete and every other
+     * operation do nothing.
+     */
+    private static class DeletionRecorder implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws AndesException {
+            if ("deleteMessages".equals(method.getName()) && args[0] instanceof Collection
+                    && !((Collection<?>) args[0]).isEmpty()) {
+                List<Long> messageIds = new ArrayList<>();
+                for (Object message : (Collection<?>) args[0]) {
+                    messageIds.add(((AndesMessageMetadata) message).getMessageID());
+                }
+                deletions.add(messageIds);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor.inbound;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RingBarrierHandler} holding control events back until the publish and acknowledgement rings
+ * processed the events published before them
+ */
+public class RingBarrierHandlerTest {
+
+    private static final int RING_SIZE = 16;
+
+    private static final String PUBLISH = "publish";
+
+    private static final String ACK = "ack";
+
+    private static final String CONTROL = "control";
+
+    private ExecutorService executor;
+
+    private Disruptor<InboundEventContainer> publishDisruptor;
+
+    private Disruptor<InboundEventContainer> ackDisruptor;
+
+    private Disruptor<InboundEventContainer> controlDisruptor;
+
+    private RingBuffer<InboundEventContainer> publishRing;
+
+    private RingBuffer<InboundEventContainer> ackRing;
+
+    private RingBuffer<InboundEventContainer> controlRing;
+
+    private BlockingHandler publishHandler;
+
+    private BlockingHandler ackHandler;
+
+    /**
+     * Names of processed events in processing order
+     */
+    private final List<String> processedEvents = new CopyOnWriteArrayList<>();
+
+    private CountDownLatch controlProcessed;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        publishHandler = new BlockingHandler(PUBLISH);
+        ackHandler = new BlockingHandler(ACK);
+        controlProcessed = new CountDownLatch(1);
+
+        publishDisruptor = createDisruptor();
+        publishDisruptor.handleEventsWith(publishHandler);
+        publishRing = publishDisruptor.start();
+
+        ackDisruptor = createDisruptor();
+        ackDisruptor.handleEventsWith(ackHandler);
+        ackRing = ackDisruptor.start();
+
+        controlDisruptor = createDisruptor();
+        controlDisruptor.handleEventsWith(new RingBarrierHandler(publishRing, ackRing))
+                .then(new EventHandler<InboundEventContainer>() {
+                    @Override
+                    public void onEvent(InboundEventContainer event, long sequence, boolean endOfBatch) {
+                        processedEvents.add(CONTROL + sequence);
+                        controlProcessed.countDown();
+                    }
+                });
+        controlRing = controlDisruptor.start();
+    }
+
+    @After
+    public void tearDown() {
+        publishHandler.release();
+        ackHandler.release();
+        controlDisruptor.halt();
+        publishDisruptor.halt();
+        ackDisruptor.halt();
+        executor.shutdownNow();
+    }
+
+    /**
+     * A control event without earlier events in the other rings is processed right away
+     */
+    @Test
+    public void testNoPendingEvents() throws Exception {
+        publishControlEvent();
+
+        assertTrue("Control event not processed", controlProcessed.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A control event waits until the publish ring processed the events published before it
+     */
+    @Test
+    public void testWaitsForPublishRing() throws Exception {
+        publishHandler.block();
+        publish(publishRing);
+        publish(publishRing);
+        publishControlEvent();
+
+        assertFalse("Control event passed unprocessed publish events",
+                controlProcessed.await(200, TimeUnit.MILLISECONDS));
+
+        publishHandler.release();
+
+        assertTrue("Control event not processed", controlProcessed.await(5, TimeUnit.SECONDS));
+        assertEquals("Wrong processing order", Arrays.asList(PUBLISH + 0, PUBLISH + 1, CONTROL + 0),
+                processedEvents);
+    }
+
+    /**
+     * A control event waits until the acknowledgement ring processed the events published before it
+     */
+    @Test
+    public void testWaitsForAckRing() throws Exception {
+        ackHandler.block();
+        publish(ackRing);
+        publishControlEvent();
+
+        assertFalse("Control event passed unprocessed acknowledgements",
+                controlProcessed.await(200, TimeUnit.MILLISECONDS));
+
+        ackHandler.release();
+
+        assertTrue("Control event not processed", controlProcessed.await(5, TimeUnit.SECONDS));
+        assertEquals("Wrong processing order", Arrays.asList(ACK + 0, CONTROL + 0), processedEvents);
+    }
+
+    /**
+     * Events published to the other rings after a control event do not hold the control event back
+     */
+    @Test
+    public void testLaterEventsNotAwaited() throws Exception {
+        publish(publishRing);
+        waitForProcessed(PUBLISH + 0);
+
+        publishHandler.block();
+        long controlSequence = controlRing.next();
+        InboundEventContainer event = controlRing.get(controlSequence);
+        event.setRingBarriers(publishRing.getCursor(), ackRing.getCursor());
+        // Published after the barrier of the control event was taken
+        publish(publishRing);
+        controlRing.publish(controlSequence);
+
+        assertTrue("Control event held back by a later event", controlProcessed.await(5, TimeUnit.SECONDS));
+        assertFalse("Later publish event processed", processedEvents.contains(PUBLISH + 1));
+    }
+
+    private Disruptor<InboundEventContainer> createDisruptor() {
+        return new Disruptor<>(InboundEventContainer.getFactory(), RING_SIZE, executor, ProducerType.MULTI,
+                new BlockingWaitStrategy());
+    }
+
+    private static void publish(RingBuffer<InboundEventContainer> ring) {
+        ring.publish(ring.next());
+    }
+
+    /**
+     * Publish a control event the same way {@link InboundEventManager} does
+     */
+    private void publishControlEvent() {
+        long sequence = controlRing.next();
+        try {
+            controlRing.get(sequence).setRingBarriers(publishRing.getCursor(), ackRing.getCursor());
+        } finally {
+            controlRing.publish(sequence);
+        }
+    }
+
+    private void waitForProcessed(String eventName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!processedEvents.contains(eventName) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(eventName + " not processed", processedEvents.contains(eventName));
+    }
+
+    /**
+     * Handler recording processed events which can be held before processing an event
+     */
+    private class BlockingHandler implements EventHandler<InboundEventContainer> {
+
+        private final String name;
+
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        private BlockingHandler(String name) {
+            this.name = name;
+        }
+
+        private void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        private void release() {
+            gate.countDown();
+        }
+
+        @Override
+        public void onEvent(InboundEventContainer event, long sequence, boolean endOfBatch) throws Exception {
+            gate.await();
+            processedEvents.add(name + sequence);
+        }
+    }
+}
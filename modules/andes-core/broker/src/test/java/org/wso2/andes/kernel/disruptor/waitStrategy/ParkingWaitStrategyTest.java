@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package org.wso2.andes.kernel.disruptor.waitStrategy;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for waking consumers parked by {@link ParkingWaitStrategy}
+ */
+public class ParkingWaitStrategyTest {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final ParkingWaitStrategy waitStrategy = new ParkingWaitStrategy();
+
+    private final Sequence cursor = new Sequence(-1);
+
+    private final StubSequenceBarrier barrier = new StubSequenceBarrier();
+
+    /**
+     * A sequence already published is returned without parking
+     */
+    @Test
+    public void testPublishedSequenceReturnedWithoutParking() throws Exception {
+        cursor.set(5);
+
+        assertEquals("Available sequence not returned", 5, waitStrategy.waitFor(3, cursor, cursor, barrier));
+    }
+
+    /**
+     * A consumer parked for a sequence stays parked until the sequence is published and publishers signal
+     */
+    @Test
+    public void testSignalWakesParkedConsumer() throws Exception {
+        WaitingConsumer consumer = startConsumer(0, cursor);
+        awaitParked(consumer);
+
+        // A signal before the sequence is published parks the consumer again
+        waitStrategy.signalAllWhenBlocking();
+        awaitParked(consumer);
+        assertTrue("Consumer returned before the sequence was published", consumer.isAlive());
+
+        cursor.set(0);
+        waitStrategy.signalAllWhenBlocking();
+
+        consumer.join(TIMEOUT_MILLIS);
+        assertEquals("Parked consumer not woken by the publisher", 0, consumer.getAvailableSequence());
+    }
+
+    /**
+     * A single signal wakes every parked consumer of the ring
+     */
+    @Test
+    public void testSignalWakesAllParkedConsumers() throws Exception {
+        WaitingConsumer first = startConsumer(0, cursor);
+        WaitingConsumer second = startConsumer(1, cursor);
+        awaitParked(first);
+        awaitParked(second);
+
+        cursor.set(1);
+        waitStrategy.signalAllWhenBlocking();
+
+        first.join(TIMEOUT_MILLIS);
+        second.join(TIMEOUT_MILLIS);
+        assertEquals("First parked consumer not woken", 1, first.getAvailableSequence());
+        assertEquals("Second parked consumer not woken", 1, second.getAvailableSequence());
+    }
+
+    /**
+     * Alerting the barrier of a parked consumer, as done when halting the ring, ends the wait with an alert
+     */
+    @Test
+    public void testAlertWakesParkedConsumer() throws Exception {
+        WaitingConsumer consumer = startConsumer(0, cursor);
+        awaitParked(consumer);
+
+        barrier.alert();
+        waitStrategy.signalAllWhenBlocking();
+
+        consumer.join(TIMEOUT_MILLIS);
+        assertTrue("Parked consumer not alerted", consumer.getFailure() instanceof AlertException);
+    }
+
+    /**
+     * A published sequence is only returned once the dependent sequence reaches it
+     */
+    @Test
+    public void testWaitsForDependentSequence() throws Exception {
+        Sequence dependentSequence = new Sequence(-1);
+        cursor.set(0);
+
+        WaitingConsumer consumer = startConsumer(0, dependentSequence);
+        consumer.join(100);
+        assertTrue("Consumer returned before the dependent sequence reached the sequence", consumer.isAlive());
+
+        dependentSequence.set(0);
+
+        consumer.join(TIMEOUT_MILLIS);
+        assertEquals("Consumer did not see the dependent sequence", 0, consumer.getAvailableSequence());
+    }
+
+    private WaitingConsumer startConsumer(long sequence, Sequence dependentSequence) {
+        WaitingConsumer consumer = new WaitingConsumer(sequence, dependentSequence);
+        consumer.setDaemon(true);
+        consumer.start();
+        return consumer;
+    }
+
+    /**
+     * Wait until the consumer thread is parked
+     *
+     * @param consumer consumer thread
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void awaitParked(WaitingConsumer consumer) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (Thread.State.WAITING != consumer.getState()) {
+            assertTrue("Consumer did not park", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Consumer thread waiting for a sequence through the wait strategy
+     */
+    private final class WaitingConsumer extends Thread {
+
+        private final long sequence;
+
+        private final Sequence dependentSequence;
+
+        private volatile long availableSequence = Long.MIN_VALUE;
+
+        private volatile Exception failure;
+
+        private WaitingConsumer(long sequence, Sequence dependentSequence) {
+            super("WaitingConsumer-" + sequence);
+            this.sequence = sequence;
+            this.dependentSequence = dependentSequence;
+        }
+
+        @Override
+        public void run() {
+            try {
+                availableSequence = waitStrategy.waitFor(sequence, cursor, dependentSequence, barrier);
+            } catch (AlertException | InterruptedException e) {
+                failure = e;
+            }
+        }
+
+        private long getAvailableSequence() {
+            return availableSequence;
+        }
+
+        private Exception getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Sequence barrier which only supports alerts
+     */
+    private static final class StubSequenceBarrier implements SequenceBarrier {
+
+        private volatile boolean alerted = false;
+
+        @Override
+        public long waitFor(long sequence) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getCursor() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isAlerted() {
+            return alerted;
+        }
+
+        @Override
+        public void alert() {
+            alerted = true;
+        }
+
+        @Override
+        public void clearAlert() {
+            alerted = false;
+        }
+
+        @Override
+        public void checkAlert() throws AlertException {
+            if (alerted) {
+                throw AlertException.INSTANCE;
+            }
+        }
+    }
+}
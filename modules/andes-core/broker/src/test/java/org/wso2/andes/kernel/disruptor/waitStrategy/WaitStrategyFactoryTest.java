@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package org.wso2.andes.kernel.disruptor.waitStrategy;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for choosing the wait strategy of a disruptor ring with {@link WaitStrategyFactory}
+ */
+public class WaitStrategyFactoryTest {
+
+    private final WaitStrategyFactory factory = new WaitStrategyFactory();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    /**
+     * The strategy configured for a ring is used, the test configuration sets the inbound ring to parking
+     */
+    @Test
+    public void testConfiguredStrategy() {
+        assertStrategy(ParkingWaitStrategy.class,
+                factory.create(AndesConfiguration.PERFORMANCE_TUNING_INBOUND_WAIT_STRATEGY));
+    }
+
+    /**
+     * Rings without a configured strategy use sleepingBlocking
+     */
+    @Test
+    public void testDefaultStrategy() {
+        assertStrategy(SleepingBlockingWaitStrategy.class,
+                factory.create(AndesConfiguration.PERFORMANCE_TUNING_DELIVERY_WAIT_STRATEGY));
+    }
+
+    /**
+     * Each strategy name creates its strategy regardless of case
+     */
+    @Test
+    public void testStrategyNames() {
+        assertStrategy(SleepingBlockingWaitStrategy.class, factory.create(WaitStrategyFactory.SLEEPING_BLOCKING));
+        assertStrategy(ParkingWaitStrategy.class, factory.create(WaitStrategyFactory.PARKING));
+        assertStrategy(PhasedBackoffWaitStrategy.class, factory.create(WaitStrategyFactory.PHASED_BACKOFF));
+        assertStrategy(YieldingWaitStrategy.class, factory.create(WaitStrategyFactory.YIELDING));
+        assertStrategy(BusySpinWaitStrategy.class, factory.create(WaitStrategyFactory.BUSY_SPIN));
+        assertStrategy(ParkingWaitStrategy.class, factory.create("PARKING"));
+    }
+
+    /**
+     * Unknown strategy names fall back to sleepingBlocking
+     */
+    @Test
+    public void testUnknownStrategy() {
+        assertStrategy(SleepingBlockingWaitStrategy.class, factory.create("spinning"));
+        assertStrategy(SleepingBlockingWaitStrategy.class, factory.create((String) null));
+    }
+
+    private void assertStrategy(Class<? extends WaitStrategy> expectedType, WaitStrategy waitStrategy) {
+        assertEquals("Unexpected wait strategy", expectedType, waitStrategy.getClass());
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.dtx;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.dtx.XidImpl;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.DtxStore;
+import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.kernel.disruptor.DisruptorEventCallback;
+import org.wso2.andes.kernel.disruptor.inbound.InboundEventManager;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.ClusterManager;
+import org.wso2.andes.server.txn.IncorrectDtxStateException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.transaction.xa.Xid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for committing independent branches through {@link DtxRegistry} and the dtx writers of the inbound
+ * disruptor
+ */
+public class DtxRegistryTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final AtomicLong branchCount = new AtomicLong();
+
+    private RecordingDtxStore dtxStore;
+
+    private InboundEventManager eventManager;
+
+    private DtxRegistry dtxRegistry;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+        if (null == ClusterResourceHolder.getInstance().getClusterManager()) {
+            ClusterResourceHolder.getInstance().setClusterManager(new ClusterManager());
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dtxStore = new RecordingDtxStore();
+        eventManager = new InboundEventManager(MessagingEngine.getInstance());
+        dtxRegistry = new DtxRegistry(dtxStore, MessagingEngine.getInstance(), eventManager);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        dtxStore.releaseBlockedCommit();
+        executor.shutdownNow();
+        dtxRegistry.stop();
+        eventManager.stop();
+    }
+
+    /**
+     * Branches committed from many threads are each written to the store once and removed from the registry
+     */
+    @Test
+    public void testParallelCommitsOfIndependentBranches() throws Exception {
+        final int threadCount = 16;
+        final int branchesPerThread = 25;
+
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threadCount; thread++) {
+            futures.add(executor.submit(new Callable<List<Long>>() {
+                @Override
+                public List<Long> call() throws Exception {
+                    List<Long> internalXids = new ArrayList<>();
+                    for (int i = 0; i < branchesPerThread; i++) {
+                        DtxBranch branch = prepareBranch();
+                        internalXids.add(dtxStore.getInternalXid(branch.getXid()));
+                        commit(branch).await();
+                        assertNull("Committed branch still registered", dtxRegistry.getBranch(branch.getXid()));
+                    }
+                    return internalXids;
+                }
+            }));
+        }
+
+        List<Long> expectedXids = new ArrayList<>();
+        for (Future<List<Long>> future : futures) {
+            expectedXids.addAll(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        List<Long> committedXids = dtxStore.getCommittedXids();
+        Collections.sort(expectedXids);
+        Collections.sort(committedXids);
+        assertEquals("Every branch must be committed exactly once", expectedXids, committedXids);
+        assertTrue("No branch may be left prepared", dtxRegistry.getPreparedTransactions().isEmpty());
+    }
+
+    /**
+     * A branch is committed while the lock of another branch is held
+     */
+    @Test
+    public void testCommitNotBlockedByLockOfOtherBranch() throws Exception {
+        final DtxBranch lockedBranch = prepareBranch();
+        DtxBranch branch = prepareBranch();
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch unlock = new CountDownLatch(1);
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                synchronized (lockedBranch) {
+                    locked.countDown();
+                    unlock.await();
+                }
+                return null;
+            }
+        });
+        assertTrue("Lock not taken", locked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        try {
+            commit(branch).await();
+        } finally {
+            unlock.countDown();
+        }
+        commit(lockedBranch).await();
+    }
+
+    /**
+     * While the database write of a branch is stalled, a branch of another dtx writer is written to the store
+     */
+    @Test
+    public void testCommitWrittenWhileOtherWriterStalled() throws Exception {
+        int writerCount = AndesConfigurationManager.readValue(
+                AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_DTX_DB_WRITERS);
+        assertTrue("Test configuration must have several dtx writers", writerCount > 1);
+
+        DtxBranch stalledBranch = prepareBranch();
+        DtxBranch branch = prepareBranch();
+        while (getTurn(branch, writerCount) == getTurn(stalledBranch, writerCount)) {
+            branch = prepareBranch();
+        }
+
+        dtxStore.blockCommitOf(dtxStore.getInternalXid(stalledBranch.getXid()));
+        CommitCallback stalledCallback = commit(stalledBranch);
+        assertTrue("Stalled commit not started", dtxStore.awaitBlockedCommit());
+
+        CommitCallback callback = commit(branch);
+        assertTrue("Commit not written while another writer is stalled",
+                dtxStore.awaitCommitOf(dtxStore.getInternalXid(branch.getXid())));
+
+        dtxStore.releaseBlockedCommit();
+        stalledCallback.await();
+        callback.await();
+    }
+
+    /**
+     * Commits of a writer arriving while it writes are grouped into a single store transaction
+     */
+    @Test
+    public void testCommitsGroupedIntoOneTransaction() throws Exception {
+        int writerCount = AndesConfigurationManager.readValue(
+                AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_DTX_DB_WRITERS);
+
+        DtxBranch stalledBranch = prepareBranch();
+        List<DtxBranch> branches = new ArrayList<>();
+        while (branches.size() < 3) {
+            DtxBranch branch = prepareBranch();
+            if (getTurn(branch, writerCount) == getTurn(stalledBranch, writerCount)) {
+                branches.add(branch);
+            }
+        }
+
+        dtxStore.blockCommitOf(dtxStore.getInternalXid(stalledBranch.getXid()));
+        CommitCallback stalledCallback = commit(stalledBranch);
+        assertTrue("Stalled commit not started", dtxStore.awaitBlockedCommit());
+
+        List<CommitCallback> callbacks = new ArrayList<>();
+        List<Long> expectedGroup = new ArrayList<>();
+        for (DtxBranch branch : branches) {
+            callbacks.add(commit(branch));
+            expectedGroup.add(dtxStore.getInternalXid(branch.getXid()));
+        }
+        // The handlers ahead of the writers pass the events on at their own pace. Give them time to hand all the
+        // waiting commits to the writer before it is released.
+        Thread.sleep(500);
+        dtxStore.releaseBlockedCommit();
+
+        stalledCallback.await();
+        for (CommitCallback callback : callbacks) {
+            callback.await();
+        }
+        assertTrue("Waiting commits not grouped: " + dtxStore.getCommitGroups(),
+                dtxStore.getCommitGroups().contains(expectedGroup));
+    }
+
+    /**
+     * When a grouped write fails every branch of the group reports the error and can be committed again
+     */
+    @Test
+    public void testFailedCommitReturnsBranchesToPrepared() throws Exception {
+        List<DtxBranch> branches = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            branches.add(prepareBranch());
+        }
+
+        dtxStore.failCommits(true);
+        List<CommitCallback> callbacks = new ArrayList<>();
+        for (DtxBranch branch : branches) {
+            callbacks.add(commit(branch));
+        }
+        for (CommitCallback callback : callbacks) {
+            try {
+                callback.await();
+                fail("Commit succeeded although the store failed");
+            } catch (Exception e) {
+                // Expected
+            }
+        }
+
+        for (DtxBranch branch : branches) {
+            assertNotNull("Failed branch removed from the registry", dtxRegistry.getBranch(branch.getXid()));
+            assertEquals("Failed branch not returned to prepared", DtxBranch.State.PREPARED, branch.getState());
+        }
+
+        dtxStore.failCommits(false);
+        for (DtxBranch branch : branches) {
+            commit(branch).await();
+        }
+        assertEquals("Branches not committed on retry", branches.size(), dtxStore.getCommittedXids().size());
+    }
+
+    /**
+     * When only the shard of some branches of a grouped write fails, only those branches report the error and return
+     * to prepared while the others stay committed
+     */
+    @Test
+    public void testPartialCommitFailsOnlyBranchesOfFailedShard() throws Exception {
+        int writerCount = AndesConfigurationManager.readValue(
+                AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_DTX_DB_WRITERS);
+
+        DtxBranch stalledBranch = prepareBranch();
+        List<DtxBranch> branches = new ArrayList<>();
+        while (branches.size() < 2) {
+            DtxBranch branch = prepareBranch();
+            if (getTurn(branch, writerCount) == getTurn(stalledBranch, writerCount)) {
+                branches.add(branch);
+            }
+        }
+        DtxBranch committedBranch = branches.get(0);
+        DtxBranch failedBranch = branches.get(1);
+        long failedXid = dtxStore.getInternalXid(failedBranch.getXid());
+
+        dtxStore.blockCommitOf(dtxStore.getInternalXid(stalledBranch.getXid()));
+        CommitCallback stalledCallback = commit(stalledBranch);
+        assertTrue("Stalled commit not started", dtxStore.awaitBlockedCommit());
+        CommitCallback committedCallback = commit(committedBranch);
+        CommitCallback failedCallback = commit(failedBranch);
+        Thread.sleep(500);
+        dtxStore.failShardOf(failedXid);
+        dtxStore.releaseBlockedCommit();
+
+        stalledCallback.await();
+        committedCallback.await();
+        try {
+            failedCallback.await();
+            fail("Commit succeeded although the shard of the branch failed");
+        } catch (Exception e) {
+            assertTrue("Shard failure not reported: " + e, e.getCause() instanceof PartialDtxCommitException);
+        }
+
+        assertNull("Committed branch still in the registry", dtxRegistry.getBranch(committedBranch.getXid()));
+        assertNotNull("Failed branch removed from the registry", dtxRegistry.getBranch(failedBranch.getXid()));
+        assertEquals("Failed branch not returned to prepared", DtxBranch.State.PREPARED, failedBranch.getState());
+        assertFalse("Failed branch written", dtxStore.getCommittedXids().contains(failedXid));
+
+        dtxStore.failShardOf(DtxBranch.NULL_XID);
+        commit(failedBranch).await();
+        assertTrue("Failed branch not committed on retry", dtxStore.getCommittedXids().contains(failedXid));
+    }
+
+    /**
+     * Only one of several concurrent commits of the same branch is accepted
+     */
+    @Test
+    public void testConcurrentCommitsOfSameBranch() throws Exception {
+        final DtxBranch branch = prepareBranch();
+        final AtomicInteger rejected = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<CommitCallback>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<CommitCallback>() {
+                @Override
+                public CommitCallback call() throws Exception {
+                    start.await();
+                    try {
+                        return commit(branch);
+                    } catch (IncorrectDtxStateException | UnknownDtxBranchException e) {
+                        rejected.incrementAndGet();
+                        return null;
+                    }
+                }
+            }));
+        }
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<CommitCallback> future : futures) {
+            CommitCallback callback = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (null != callback) {
+                callback.await();
+                accepted++;
+            }
+        }
+
+        assertEquals("Exactly one commit must be accepted", 1, accepted);
+        assertEquals("Other commits must be rejected", futures.size() - 1, rejected.get());
+        assertEquals("Branch written more than once",
+                Collections.singletonList(dtxStore.getInternalXid(branch.getXid())), dtxStore.getCommittedXids());
+        assertFalse("Committed branch still prepared", dtxRegistry.getPreparedTransactions()
+                .contains(branch.getXid()));
+    }
+
+    /**
+     * Register a new branch and prepare it
+     */
+    private DtxBranch prepareBranch() throws Exception {
+        Xid xid = new XidImpl(ByteBuffer.allocate(8).putLong(branchCount.incrementAndGet()).array(), 1,
+                "test".getBytes());
+        DtxBranch branch = new DtxBranch(UUID.randomUUID(), xid, dtxRegistry, eventManager);
+        assertTrue("Branch not registered", dtxRegistry.registerBranch(branch));
+
+        CommitCallback callback = new CommitCallback();
+        dtxRegistry.prepare(xid, callback);
+        callback.await();
+        assertEquals("Branch not prepared", DtxBranch.State.PREPARED, branch.getState());
+        return branch;
+    }
+
+    private CommitCallback commit(DtxBranch branch) throws Exception {
+        CommitCallback callback = new CommitCallback();
+        dtxRegistry.commit(branch.getXid(), false, callback, null);
+        return callback;
+    }
+
+    /**
+     * @return turn of the dtx writer handling the branch
+     */
+    private static int getTurn(DtxBranch branch, int writerCount) {
+        return (branch.getXid().hashCode() & Integer.MAX_VALUE) % writerCount;
+    }
+
+    /**
+     * Callback of a prepare or commit, waited for by the test
+     */
+    private static class CommitCallback implements DisruptorEventCallback {
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private volatile Exception exception;
+
+        @Override
+        public void execute() {
+            completed.countDown();
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            this.exception = exception;
+            completed.countDown();
+        }
+
+        void await() throws Exception {
+            assertTrue("Dtx operation not completed in time", completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            if (null != exception) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Dtx store recording the committed branches. The commit of one branch can be stalled and commits can be made
+     * to fail.
+     */
+    private static class RecordingDtxStore implements DtxStore {
+
+        private final AtomicLong internalXidCount = new AtomicLong();
+
+        private final Map<Xid, Long> internalXids = new ConcurrentHashMap<>();
+
+        /**
+         * Internal xids of the branches of each store transaction committing branches
+         */
+        private final List<List<Long>> commitGroups = new ArrayList<>();
+
+        private volatile long blockedXid = DtxBranch.NULL_XID;
+
+        private final CountDownLatch blockedCommitStarted = new CountDownLatch(1);
+
+        private final CountDownLatch blockedCommitReleased = new CountDownLatch(1);
+
+        private volatile boolean failCommits;
+
+        /**
+         * Internal xid of the branch stored in a shard failing to commit
+         */
+        private volatile long failedShardXid = DtxBranch.NULL_XID;
+
+        @Override
+        public long storeDtxRecords(Xid xid, List<AndesMessage> enqueueRecords,
+                                    List<? extends AndesMessageMetadata> dequeueRecords) {
+            long internalXid = internalXidCount.incrementAndGet();
+            internalXids.put(xid, internalXid);
+            return internalXid;
+        }
+
+        @Override
+        public void updateOnCommit(long internalXid, List<AndesMessage> enqueueRecords) throws AndesException {
+            commit(Collections.singletonList(internalXid));
+        }
+
+        @Override
+        public void updateOnCommit(Map<Long, List<AndesMessage>> enqueueRecords) throws AndesException {
+            commit(new ArrayList<>(enqueueRecords.keySet()));
+        }
+
+        @Override
+        public void updateOnOnePhaseCommit(List<AndesMessage> enqueueRecords,
+                                           List<AndesPreparedMessageMetadata> dequeueRecordsMetadata) {
+        }
+
+        @Override
+        public void updateOnRollback(long internalXid, List<AndesPreparedMessageMetadata> messagesToRestore) {
+        }
+
+        @Override
+        public long recoverBranchData(DtxBranch branch, String nodeId) {
+            return DtxBranch.NULL_XID;
+        }
+
+        @Override
+        public Set<XidImpl> getStoredXidSet(String nodeId) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isOperational(String testString, long testTime) {
+            return true;
+        }
+
+        private void commit(List<Long> internalXids) throws AndesException {
+            if (internalXids.contains(blockedXid)) {
+                blockedCommitStarted.countDown();
+                try {
+                    blockedCommitReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failCommits) {
+                throw new AndesException("Commit failed by the test");
+            }
+            if (internalXids.contains(failedShardXid)) {
+                List<Long> committed = new ArrayList<>(internalXids);
+                committed.remove(failedShardXid);
+                synchronized (this) {
+                    commitGroups.add(committed);
+                    notifyAll();
+                }
+                throw new PartialDtxCommitException("Commit of shard failed by the test",
+                        new AndesException("Shard failed by the test"), Collections.singleton(failedShardXid));
+            }
+            synchronized (this) {
+                commitGroups.add(internalXids);
+                notifyAll();
+            }
+        }
+
+        long getInternalXid(Xid xid) {
+            return internalXids.get(xid);
+        }
+
+        void blockCommitOf(long internalXid) {
+            blockedXid = internalXid;
+        }
+
+        boolean awaitBlockedCommit() throws InterruptedException {
+            return blockedCommitStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        void releaseBlockedCommit() {
+            blockedCommitReleased.countDown();
+        }
+
+        void failCommits(boolean fail) {
+            failCommits = fail;
+        }
+
+        void failShardOf(long internalXid) {
+            failedShardXid = internalXid;
+        }
+
+        synchronized boolean awaitCommitOf(long internalXid) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            while (!getCommittedXids().contains(internalXid)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+
+        synchronized List<List<Long>> getCommitGroups() {
+            return new ArrayList<>(commitGroups);
+        }
+
+        synchronized List<Long> getCommittedXids() {
+            List<Long> committedXids = new ArrayList<>();
+            for (List<Long> group : commitGroups) {
+                committedXids.addAll(group);
+            }
+            return committedXids;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.router;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.ProtocolType;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link TopicRoutingMatcher}
+ */
+public class TopicRoutingMatcherTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    /**
+     * Test AMQP binding keys with the single level wildcard '*' and the multi level wildcard '#'
+     */
+    @Test
+    public void testAmqpWildcards() throws AndesException {
+        TopicRoutingMatcher matcher = new TopicRoutingMatcher(ProtocolType.AMQP, 0);
+        StorageQueue exact = addQueue(matcher, "exact", "sports.cricket.sl");
+        StorageQueue singleLevel = addQueue(matcher, "singleLevel", "sports.*.sl");
+        StorageQueue trailingSingleLevel = addQueue(matcher, "trailingSingleLevel", "sports.*");
+        StorageQueue multiLevel = addQueue(matcher, "multiLevel", "sports.#");
+        StorageQueue all = addQueue(matcher, "all", "#");
+
+        assertMatches(matcher, "sports.cricket.sl", exact, singleLevel, multiLevel, all);
+        assertMatches(matcher, "sports.football.sl", singleLevel, multiLevel, all);
+        assertMatches(matcher, "sports.cricket", trailingSingleLevel, multiLevel, all);
+        assertMatches(matcher, "sports", multiLevel, all);
+        assertMatches(matcher, "news.cricket.sl", all);
+        assertMatches(matcher, "news", all);
+        assertMatches(matcher, "sports.cricket.sl.colombo", multiLevel, all);
+    }
+
+    /**
+     * Test MQTT topic filters with the single level wildcard '+' and the multi level wildcard '#'
+     */
+    @Test
+    public void testMqttWildcards() throws AndesException {
+        TopicRoutingMatcher matcher = new TopicRoutingMatcher(ProtocolType.MQTT, 0);
+        StorageQueue exact = addQueue(matcher, "exact", "sports/cricket/sl");
+        StorageQueue singleLevel = addQueue(matcher, "singleLevel", "sports/+/sl");
+        StorageQueue trailingSingleLevel = addQueue(matcher, "trailingSingleLevel", "sports/+");
+        StorageQueue multiLevel = addQueue(matcher, "multiLevel", "sports/#");
+        StorageQueue all = addQueue(matcher, "all", "#");
+
+        assertMatches(matcher, "sports/cricket/sl", exact, singleLevel, multiLevel, all);
+        assertMatches(matcher, "sports/football/sl", singleLevel, multiLevel, all);
+        assertMatches(matcher, "sports/cricket", trailingSingleLevel, multiLevel, all);
+        assertMatches(matcher, "sports", multiLevel, all);
+        assertMatches(matcher, "news/cricket/sl", all);
+        assertMatches(matcher, "news", all);
+        assertMatches(matcher, "sports/cricket/sl/colombo", multiLevel, all);
+    }
+
+    /**
+     * Test routing keys having more constituents than any binding key do not break matching of shorter routing keys
+     * afterwards. The tables added for such keys used to leave the last queue out of their null constituent row.
+     */
+    @Test
+    public void testRoutingKeyLongerThanBindingKeys() throws AndesException {
+        TopicRoutingMatcher matcher = new TopicRoutingMatcher(ProtocolType.AMQP, 0);
+        StorageQueue first = addQueue(matcher, "first", "sports.cricket");
+        StorageQueue last = addQueue(matcher, "last", "sports.*");
+
+        assertMatches(matcher, "sports.cricket.sl.colombo");
+        assertMatches(matcher, "sports.cricket", first, last);
+        assertMatches(matcher, "sports.football", last);
+    }
+
+    /**
+     * Test cached matching queues of a routing key are dropped when bindings change
+     */
+    @Test
+    public void testCacheInvalidatedOnBindingChanges() throws AndesException {
+        TopicRoutingMatcher matcher = new TopicRoutingMatcher(ProtocolType.AMQP, 10);
+        StorageQueue exact = addQueue(matcher, "exact", "sports.cricket");
+
+        Set<StorageQueue> matchingQueues = matcher.getMatchingStorageQueues("sports.cricket");
+        assertEquals(Collections.singleton(exact), matchingQueues);
+        assertSame("Matching queues of a routing key should be cached", matchingQueues,
+                matcher.getMatchingStorageQueues("sports.cricket"));
+
+        StorageQueue wildcard = addQueue(matcher, "wildcard", "sports.*");
+        assertMatches(matcher, "sports.cricket", exact, wildcard);
+
+        matcher.removeStorageQueue(exact);
+        assertMatches(matcher, "sports.cricket", wildcard);
+
+        matcher.removeStorageQueue(wildcard);
+        assertMatches(matcher, "sports.cricket");
+    }
+
+    /**
+     * Create a storage queue bound with the given binding key and add it to the matcher
+     *
+     * @param matcher    matcher to add the queue
+     * @param name       name of the queue
+     * @param bindingKey binding key of the queue
+     * @return the added queue
+     * @throws AndesException on an issue adding the queue
+     */
+    private StorageQueue addQueue(TopicRoutingMatcher matcher, String name, final String bindingKey)
+            throws AndesException {
+        StorageQueue storageQueue = new StorageQueue(name, true, false, null, false) {
+            @Override
+            public String getMessageRouterBindingKey() {
+                return bindingKey;
+            }
+        };
+        matcher.addStorageQueue(storageQueue);
+        return storageQueue;
+    }
+
+    private void assertMatches(TopicRoutingMatcher matcher, String routingKey, StorageQueue... expectedQueues) {
+        Set<StorageQueue> expected = new HashSet<>();
+        Collections.addAll(expected, expectedQueues);
+        assertEquals("Queues matching " + routingKey, expected,
+                new HashSet<>(matcher.getMatchingStorageQueues(routingKey)));
+    }
+}
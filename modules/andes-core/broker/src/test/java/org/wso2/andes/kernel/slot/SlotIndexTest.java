@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.slot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.server.cluster.coordination.SlotAgent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SlotIndex}
+ */
+public class SlotIndexTest {
+
+    private static final String QUEUE = "queue";
+
+    private InMemorySlotStore slotStore;
+
+    private SlotIndex slotIndex;
+
+    @Before
+    public void setUp() {
+        slotStore = new InMemorySlotStore();
+        slotIndex = new SlotIndex(slotStore.getSlotAgent(), 1);
+    }
+
+    @After
+    public void tearDown() {
+        slotIndex.shutdown();
+    }
+
+    /**
+     * State of a queue is loaded from the store on first access. The last assigned ID covers slots created after the
+     * stored last assigned ID was written.
+     */
+    @Test
+    public void testQueueStateLoadedFromStore() throws Exception {
+        slotStore.messageIds(QUEUE).add(300L);
+        slotStore.messageIds(QUEUE).add(200L);
+        slotStore.lastAssignedIds.put(QUEUE, 100L);
+        slotStore.slots(QUEUE).add(createSlot(101L, 150L));
+
+        assertEquals("Last assigned id does not cover existing slots", 150L, slotIndex.getLastAssignedId(QUEUE));
+        assertEquals("Lowest message id not first", Long.valueOf(200L), slotIndex.peekFirstMessageId(QUEUE));
+        assertEquals("Wrong message id at position", Long.valueOf(300L), slotIndex.getMessageIdAt(QUEUE, 2));
+        assertNull("Message id beyond submitted slots", slotIndex.getMessageIdAt(QUEUE, 3));
+    }
+
+    /**
+     * Changes are visible in memory at once and written to the store in order
+     */
+    @Test
+    public void testChangesWrittenToStore() throws Exception {
+        slotIndex.addMessageId(QUEUE, 20L);
+        slotIndex.addMessageId(QUEUE, 10L);
+        slotIndex.addMessageId(QUEUE, 10L);
+        assertEquals("Lowest message id not polled", Long.valueOf(10L), slotIndex.pollFirstMessageId(QUEUE));
+        slotIndex.setLastAssignedId(QUEUE, 10L);
+
+        assertEquals("Queue not listed", 1, slotIndex.getAllQueuesInSubmittedSlots().size());
+        assertEquals("Wrong message ids in store", new TreeSet<>(Collections.singleton(20L)),
+                slotStore.messageIds(QUEUE));
+        assertEquals("Last assigned id not written", Long.valueOf(10L), slotStore.lastAssignedIds.get(QUEUE));
+        assertEquals("Duplicate message id written", 2, slotStore.addedMessageIdCount);
+    }
+
+    /**
+     * The store is queried for returned slots only until it has none and again after slots are returned
+     */
+    @Test
+    public void testReturnedSlotsQueriedOnlyWhenPossible() throws Exception {
+        Slot returnedSlot = createSlot(1L, 10L);
+        slotStore.returnedSlots.add(returnedSlot);
+
+        assertEquals("Returned slot not found", returnedSlot, slotIndex.getReturnedSlot(QUEUE));
+        slotStore.returnedSlots.clear();
+        assertNull("Returned slot found", slotIndex.getReturnedSlot(QUEUE));
+        int queries = slotStore.returnedSlotQueries;
+
+        assertNull("Returned slot found", slotIndex.getReturnedSlot(QUEUE));
+        assertEquals("Store queried although no slots were returned", queries, slotStore.returnedSlotQueries);
+
+        slotStore.returnedSlots.add(returnedSlot);
+        slotIndex.slotsReturned(QUEUE);
+        assertEquals("Returned slot not found after return", returnedSlot, slotIndex.getReturnedSlot(QUEUE));
+    }
+
+    /**
+     * Slots returned while the store is being read are not missed
+     */
+    @Test
+    public void testSlotsReturnedDuringQuery() throws Exception {
+        final Slot returnedSlot = createSlot(1L, 10L);
+        slotStore.beforeReturnedSlotQuery = new Runnable() {
+            @Override
+            public void run() {
+                // The query does not see the slot returned concurrently
+                slotStore.beforeReturnedSlotQuery = null;
+                slotIndex.slotsReturned(QUEUE);
+                slotStore.pendingReturnedSlot = returnedSlot;
+            }
+        };
+
+        assertNull("Concurrently returned slot seen by the first query", slotIndex.getReturnedSlot(QUEUE));
+        assertEquals("Concurrently returned slot missed", returnedSlot, slotIndex.getReturnedSlot(QUEUE));
+    }
+
+    /**
+     * The store is queried for overlapped slots of each node until the node has none and again for every node after
+     * slots are overlapped
+     */
+    @Test
+    public void testOverlappedSlotsQueriedPerNode() throws Exception {
+        Slot overlappedSlot = createSlot(1L, 10L);
+        slotStore.overlappedSlots.put("node1", overlappedSlot);
+
+        assertNull("Overlapped slot of another node found", slotIndex.getOverlappedSlot(QUEUE, "node2"));
+        assertEquals("Overlapped slot not found", overlappedSlot, slotIndex.getOverlappedSlot(QUEUE, "node1"));
+        slotStore.overlappedSlots.clear();
+        assertNull("Overlapped slot found", slotIndex.getOverlappedSlot(QUEUE, "node1"));
+        int queries = slotStore.overlappedSlotQueries;
+
+        assertNull("Overlapped slot found", slotIndex.getOverlappedSlot(QUEUE, "node1"));
+        assertNull("Overlapped slot found", slotIndex.getOverlappedSlot(QUEUE, "node2"));
+        assertEquals("Store queried although no slots were overlapped", queries, slotStore.overlappedSlotQueries);
+
+        slotStore.overlappedSlots.put("node2", overlappedSlot);
+        slotIndex.slotsOverlapped(QUEUE);
+        assertEquals("Overlapped slot not found after overlap", overlappedSlot,
+                slotIndex.getOverlappedSlot(QUEUE, "node2"));
+    }
+
+    /**
+     * A failed store write is retried until it succeeds
+     */
+    @Test
+    public void testFailedWriteRetried() throws Exception {
+        slotStore.failingWrites = 3;
+        slotIndex.addMessageId(QUEUE, 10L);
+        slotIndex.getAllQueuesInSubmittedSlots();
+
+        assertTrue("Failed write not retried", slotStore.messageIds(QUEUE).contains(10L));
+    }
+
+    /**
+     * The state of a queue is reloaded from the store once a write is given up
+     */
+    @Test
+    public void testQueueReloadedAfterWriteGivenUp() throws Exception {
+        slotIndex.addMessageId(QUEUE, 10L);
+        slotIndex.getAllQueuesInSubmittedSlots();
+        slotStore.failingWrites = SlotIndex.MAX_WRITE_ATTEMPTS;
+        slotIndex.addMessageId(QUEUE, 20L);
+        slotIndex.getAllQueuesInSubmittedSlots();
+
+        assertEquals("Index not reloaded from store", Long.valueOf(10L), slotIndex.getMessageIdAt(QUEUE, 1));
+        assertNull("Index keeps a change missing in the store", slotIndex.getMessageIdAt(QUEUE, 2));
+    }
+
+    /**
+     * Message ids added while the index is rebuilt are neither lost from memory nor from the store
+     */
+    @Test
+    public void testRebuildWithConcurrentChanges() throws Exception {
+        final int messageIdCount = 2000;
+        final AtomicBoolean adding = new AtomicBoolean(true);
+        final CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> adder = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws AndesException {
+                    started.countDown();
+                    for (long messageId = 1; messageId <= messageIdCount; messageId++) {
+                        slotIndex.addMessageId(QUEUE, messageId);
+                    }
+                    adding.set(false);
+                    return null;
+                }
+            });
+
+            started.await();
+            while (adding.get()) {
+                slotIndex.rebuild();
+            }
+            adder.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertNotNull("Message ids lost", slotIndex.getMessageIdAt(QUEUE, messageIdCount));
+        slotIndex.rebuild();
+        assertNotNull("Message ids not written to store", slotIndex.getMessageIdAt(QUEUE, messageIdCount));
+    }
+
+    /**
+     * A slot read from the store is claimed only once, and not after a claimed slot was written since it was read
+     */
+    @Test
+    public void testSlotClaims() throws Exception {
+        Slot slot = createSlot(1, 10);
+        long claimVersion = slotIndex.getClaimVersion(QUEUE);
+        assertTrue("Slot not claimed", slotIndex.claimSlot(QUEUE, slot, claimVersion));
+        assertFalse("Slot claimed twice", slotIndex.claimSlot(QUEUE, createSlot(1, 10), claimVersion));
+        assertFalse("Read reported complete while a slot is written",
+                slotIndex.isClaimVersionCurrent(QUEUE, claimVersion));
+
+        slotIndex.releaseSlot(QUEUE, slot);
+        assertFalse("Slot read before a claimed slot was written is claimed",
+                slotIndex.claimSlot(QUEUE, createSlot(11, 20), claimVersion));
+        assertFalse("Read before a claimed slot was written reported complete",
+                slotIndex.isClaimVersionCurrent(QUEUE, claimVersion));
+
+        claimVersion = slotIndex.getClaimVersion(QUEUE);
+        assertTrue("Read reported incomplete", slotIndex.isClaimVersionCurrent(QUEUE, claimVersion));
+        Slot freshSlot = createSlot(21, 30);
+        slotIndex.claimFreshSlot(QUEUE, freshSlot);
+        assertFalse("Read reported complete while a fresh slot is written",
+                slotIndex.isClaimVersionCurrent(QUEUE, claimVersion));
+        slotIndex.releaseSlot(QUEUE, freshSlot);
+        assertTrue("Slot not claimed after the release", slotIndex.claimSlot(QUEUE, createSlot(11, 20),
+                slotIndex.getClaimVersion(QUEUE)));
+    }
+
+    private static Slot createSlot(long start, long end) {
+        Slot slot = new Slot(start, end, QUEUE);
+        slot.setStorageQueueName(QUEUE);
+        return slot;
+    }
+
+    /**
+     * Slot store kept in memory, serving the {@link SlotAgent} methods used by {@link SlotIndex}
+     */
+    private static class InMemorySlotStore implements InvocationHandler {
+
+        private final Map<String, TreeSet<Long>> messageIds = new HashMap<>();
+
+        private final Map<String, Long> lastAssignedIds = new HashMap<>();
+
+        private final Map<String, TreeSet<Slot>> slots = new HashMap<>();
+
+        private final Set<Slot> returnedSlots = new HashSet<>();
+
+        private final Map<String, Slot> overlappedSlots = new HashMap<>();
+
+        private volatile Runnable beforeReturnedSlotQuery;
+
+        private volatile Slot pendingReturnedSlot;
+
+        private volatile int failingWrites;
+
+        private int addedMessageIdCount;
+
+        private int returnedSlotQueries;
+
+        private int overlappedSlotQueries;
+
+        SlotAgent getSlotAgent() {
+            return (SlotAgent) Proxy.newProxyInstance(SlotAgent.class.getClassLoader(),
+                    new Class<?>[] { SlotAgent.class }, this);
+        }
+
+        synchronized TreeSet<Long> messageIds(String queueName) {
+            TreeSet<Long> queueMessageIds = messageIds.get(queueName);
+            if (null == queueMessageIds) {
+                queueMessageIds = new TreeSet<>();
+                messageIds.put(queueName, queueMessageIds);
+            }
+            return queueMessageIds;
+        }
+
+        synchronized TreeSet<Slot> slots(String queueName) {
+            TreeSet<Slot> queueSlots = slots.get(queueName);
+            if (null == queueSlots) {
+                queueSlots = new TreeSet<>();
+                slots.put(queueName, queueSlots);
+            }
+            return queueSlots;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("getUnAssignedSlot".equals(methodName)) {
+                Runnable hook = beforeReturnedSlotQuery;
+                if (null != hook) {
+                    hook.run();
+                    returnedSlotQueries++;
+                    return null;
+                }
+            }
+
+            synchronized (this) {
+                switch (methodName) {
+                    case "addMessageId":
+                        failIfRequested();
+                        addedMessageIdCount++;
+                        messageIds((String) args[0]).add((Long) args[1]);
+                        return null;
+                    case "deleteMessageId":
+                        failIfRequested();
+                        messageIds((String) args[0]).remove(args[1]);
+                        return null;
+                    case "deleteMessageIdsByQueueName":
+                        failIfRequested();
+                        messageIds((String) args[0]).clear();
+                        return null;
+                    case "setQueueToLastAssignedId":
+                        failIfRequested();
+                        lastAssignedIds.put((String) args[0], (Long) args[1]);
+                        return null;
+                    case "getSlotBasedMessageIds":
+                        return new TreeSet<>(messageIds((String) args[0]));
+                    case "getQueueToLastAssignedId":
+                        Long lastAssignedId = lastAssignedIds.get(args[0]);
+                        return null == lastAssignedId ? 0L : lastAssignedId;
+                    case "getAllSlotsByQueueName":
+                        return new TreeSet<>(slots((String) args[0]));
+                    case "getAllQueuesInSubmittedSlots":
+                        Set<String> queueNames = new HashSet<>();
+                        for (Map.Entry<String, TreeSet<Long>> entry : messageIds.entrySet()) {
+                            if (!entry.getValue().isEmpty()) {
+                                queueNames.add(entry.getKey());
+                            }
+                        }
+                        return queueNames;
+                    case "getUnAssignedSlot":
+                        returnedSlotQueries++;
+                        if (null != pendingReturnedSlot) {
+                            Slot slot = pendingReturnedSlot;
+                            pendingReturnedSlot = null;
+                            return slot;
+                        }
+                        return returnedSlots.isEmpty() ? null : returnedSlots.iterator().next();
+                    case "getOverlappedSlot":
+                        overlappedSlotQueries++;
+                        return overlappedSlots.get(args[0]);
+                    default:
+                        throw new UnsupportedOperationException(methodName);
+                }
+            }
+        }
+
+        private void failIfRequested() throws AndesException {
+            if (failingWrites > 0) {
+                failingWrites--;
+                throw new AndesException("Slot store unavailable");
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.slot;
+
+import org.junit.Test;
+import org.wso2.andes.metrics.MetricsConstants;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SlotLockRegistry}
+ */
+public class SlotLockRegistryTest {
+
+    /**
+     * The stripe count is rounded up to a power of two and every key maps to a valid stripe
+     */
+    @Test
+    public void testStripeIndexBounds() {
+        SlotLockRegistry registry = new SlotLockRegistry("queue", 5);
+        Set<Integer> usedStripes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int stripeIndex = registry.getStripeIndex("queue-" + i);
+            assertTrue("Stripe index out of range " + stripeIndex, stripeIndex >= 0 && stripeIndex < 8);
+            usedStripes.add(stripeIndex);
+        }
+        assertEquals("Keys not spread across all stripes", 8, usedStripes.size());
+        assertEquals("Same key mapped to different stripes", registry.getStripeIndex("queue-1"),
+                registry.getStripeIndex("queue-1"));
+    }
+
+    /**
+     * The same key always returns the same lock, which is held until unlocked
+     */
+    @Test
+    public void testSameKeySameLock() throws Exception {
+        final SlotLockRegistry registry = new SlotLockRegistry("queue", SlotLockRegistry.DEFAULT_STRIPE_COUNT);
+        Lock lock = registry.lock("queue-1");
+        final boolean[] acquiredByOtherThread = new boolean[1];
+        try {
+            Thread otherThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Lock otherLock = registry.lock("queue-1");
+                    acquiredByOtherThread[0] = true;
+                    otherLock.unlock();
+                }
+            });
+            otherThread.start();
+            otherThread.join(200);
+            assertTrue("Lock acquired while held by another thread", otherThread.isAlive());
+            lock.unlock();
+            otherThread.join(5000);
+            assertTrue("Lock not acquired after release", acquiredByOtherThread[0]);
+        } finally {
+            if (((ReentrantReadWriteLock.WriteLock) lock).isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+        Lock sameLock = registry.lock("queue-1");
+        sameLock.unlock();
+        assertSame("Same key returned a different lock", lock, sameLock);
+    }
+
+    /**
+     * Shared locks of the same key do not exclude each other, while the exclusive lock excludes shared locks
+     */
+    @Test
+    public void testSharedLock() throws Exception {
+        final SlotLockRegistry registry = new SlotLockRegistry("queue", SlotLockRegistry.DEFAULT_STRIPE_COUNT);
+        Lock sharedLock = registry.lockShared("queue-1");
+        try {
+            final CountDownLatch sharedAcquired = new CountDownLatch(1);
+            Thread sharedThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Lock otherLock = registry.lockShared("queue-1");
+                    sharedAcquired.countDown();
+                    otherLock.unlock();
+                }
+            });
+            sharedThread.start();
+            assertTrue("Shared lock blocked by another shared lock", sharedAcquired.await(5, TimeUnit.SECONDS));
+        } finally {
+            sharedLock.unlock();
+        }
+
+        Lock exclusiveLock = registry.lock("queue-1");
+        final CountDownLatch sharedAcquired = new CountDownLatch(1);
+        try {
+            Thread sharedThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Lock otherLock = registry.lockShared("queue-1");
+                    sharedAcquired.countDown();
+                    otherLock.unlock();
+                }
+            });
+            sharedThread.start();
+            assertFalse("Shared lock acquired while the exclusive lock is held",
+                    sharedAcquired.await(200, TimeUnit.MILLISECONDS));
+        } finally {
+            exclusiveLock.unlock();
+        }
+        assertTrue("Shared lock not acquired after the exclusive lock is released",
+                sharedAcquired.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Lock metrics are recorded per key, so keys sharing a stripe can be told apart
+     */
+    @Test
+    public void testMetricNameContainsKey() {
+        SlotLockRegistry registry = new SlotLockRegistry("queue", 1);
+        assertEquals("Keys expected to share the only stripe", registry.getStripeIndex("queue-1"),
+                registry.getStripeIndex("queue-2"));
+        assertEquals(MetricsConstants.SLOT_LOCK_WAIT + "|queue|queue-1",
+                registry.getMetricName(MetricsConstants.SLOT_LOCK_WAIT, "queue-1"));
+        assertFalse("Keys sharing a stripe share a metric", registry.getMetricName(MetricsConstants.SLOT_LOCK_WAIT,
+                "queue-1").equals(registry.getMetricName(MetricsConstants.SLOT_LOCK_WAIT, "queue-2")));
+    }
+}
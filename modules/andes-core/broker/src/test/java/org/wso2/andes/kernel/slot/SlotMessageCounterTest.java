@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.slot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for submitting slots of {@link SlotMessageCounter} to the slot coordinator
+ */
+public class SlotMessageCounterTest {
+
+    private static int slotWindowSize;
+
+    private RecordingSlotCoordinator slotCoordinator;
+
+    private SlotMessageCounter slotMessageCounter;
+
+    /**
+     * Queue names are unique per test since the counter is a singleton
+     */
+    private String queue1;
+
+    private String queue2;
+
+    private static int testCount;
+
+    @BeforeClass
+    public static void initializeConfiguration() throws Exception {
+        AndesTestConfiguration.initialize();
+        slotWindowSize = AndesConfigurationManager.readValue(
+                AndesConfiguration.PERFORMANCE_TUNING_SLOTS_SLOT_WINDOW_SIZE);
+    }
+
+    @Before
+    public void setUp() {
+        testCount++;
+        queue1 = "queue1-" + testCount;
+        queue2 = "queue2-" + testCount;
+        slotCoordinator = new RecordingSlotCoordinator();
+        slotMessageCounter = SlotMessageCounter.getInstance();
+        slotMessageCounter.setSlotCoordinator(slotCoordinator);
+    }
+
+    @After
+    public void tearDown() {
+        slotCoordinator.failing = false;
+        slotMessageCounter.submitSlots(Arrays.asList(queue1, queue2));
+    }
+
+    /**
+     * Full slots of several queues are submitted in one call
+     */
+    @Test
+    public void testSlotsSubmittedInOneCall() throws Exception {
+        slotCoordinator.failing = true;
+        recordMessages(queue1, 1000, slotWindowSize);
+        recordMessages(queue2, 2000, slotWindowSize);
+        slotCoordinator.failing = false;
+
+        slotMessageCounter.submitSlots(Arrays.asList(queue1, queue2));
+
+        assertEquals("Slots not submitted in one call", 1, slotCoordinator.batchCount);
+        assertEquals("Wrong slots submitted", Arrays.asList(slotRange(queue1, 1000, slotWindowSize),
+                slotRange(queue2, 2000, slotWindowSize)), slotCoordinator.submittedSlots);
+    }
+
+    /**
+     * Slots are kept when a batched submit fails and are submitted again later
+     */
+    @Test
+    public void testFailedBatchSubmitRequeued() throws Exception {
+        slotCoordinator.failing = true;
+        recordMessages(queue1, 1000, slotWindowSize);
+        recordMessages(queue2, 2000, slotWindowSize);
+        slotMessageCounter.submitSlots(Arrays.asList(queue1, queue2));
+        assertEquals("Slots submitted while coordinator unavailable", 0, slotCoordinator.submittedSlots.size());
+
+        slotCoordinator.failing = false;
+        slotMessageCounter.submitSlots(Arrays.asList(queue1, queue2));
+
+        assertEquals("Failed slots not submitted again", Arrays.asList(slotRange(queue1, 1000, slotWindowSize),
+                slotRange(queue2, 2000, slotWindowSize)), slotCoordinator.submittedSlots);
+    }
+
+    /**
+     * Messages counted after a failed submit are merged into the slot put back
+     */
+    @Test
+    public void testMessagesCountedAfterFailedSubmitMerged() throws Exception {
+        slotCoordinator.failing = true;
+        recordMessages(queue1, 1000, slotWindowSize);
+        recordMessages(queue2, 2000, slotWindowSize);
+        slotMessageCounter.submitSlots(Arrays.asList(queue1, queue2));
+
+        slotCoordinator.failing = false;
+        recordMessages(queue1, 1000 + slotWindowSize, 1);
+
+        assertEquals("Merged slot not submitted", Arrays.asList(slotRange(queue1, 1000, slotWindowSize + 1)),
+                slotCoordinator.submittedSlots);
+    }
+
+    /**
+     * Record consecutive message IDs for the queue
+     *
+     * @param queueName      storage queue of the messages
+     * @param firstMessageId ID of the first message
+     * @param count          number of messages to record
+     */
+    private void recordMessages(String queueName, long firstMessageId, int count) {
+        List<AndesMessage> messages = new ArrayList<>(count);
+        for (long messageId = firstMessageId; messageId < firstMessageId + count; messageId++) {
+            AndesMessageMetadata metadata = new AndesMessageMetadata();
+            metadata.setMessageID(messageId);
+            metadata.setStorageQueueName(queueName);
+            messages.add(new AndesMessage(metadata));
+        }
+        slotMessageCounter.recordMetadataCountInSlot(messages);
+    }
+
+    private static String slotRange(String queueName, long firstMessageId, int count) {
+        return queueName + ":" + firstMessageId + "-" + (firstMessageId + count - 1);
+    }
+
+    /**
+     * Slot coordinator which records submitted slots and can be made unavailable
+     */
+    private static class RecordingSlotCoordinator implements SlotCoordinator {
+
+        private volatile boolean failing;
+
+        private final List<String> submittedSlots = new ArrayList<>();
+
+        private int batchCount;
+
+        @Override
+        public Slot getSlot(String queueName) throws ConnectionException {
+            throw new ConnectionException("Not expected");
+        }
+
+        @Override
+        public synchronized void updateMessageId(String queueName, long startMessageId, long endMessageId,
+                                                 long localSafeZone) throws ConnectionException {
+            failIfUnavailable();
+            submittedSlots.add(queueName + ":" + startMessageId + "-" + endMessageId);
+        }
+
+        @Override
+        public synchronized void updateMessageIds(List<Slot> slots, long localSafeZone)
+                throws ConnectionException {
+            failIfUnavailable();
+            batchCount++;
+            for (Slot slot : slots) {
+                submittedSlots.add(slot.getStorageQueueName() + ":" + slot.getStartMessageId() + "-"
+                        + slot.getEndMessageId());
+            }
+        }
+
+        @Override
+        public void updateSlotDeletionSafeZone(long currentSlotDeleteSafeZone) throws ConnectionException {
+            failIfUnavailable();
+        }
+
+        @Override
+        public boolean deleteSlot(String queueName, Slot slot) throws ConnectionException {
+            throw new ConnectionException("Not expected");
+        }
+
+        @Override
+        public void reAssignSlotWhenNoSubscribers(String queueName) throws ConnectionException {
+            throw new ConnectionException("Not expected");
+        }
+
+        @Override
+        public void clearAllActiveSlotRelationsToQueue(String queueName) throws ConnectionException {
+            throw new ConnectionException("Not expected");
+        }
+
+        @Override
+        public void scheduleExpiredMessages(String queueName, List<Long> messageIds) throws ConnectionException {
+            throw new ConnectionException("Not expected");
+        }
+
+        @Override
+        public void addCoordinatorConnectionListener(CoordinatorConnectionListener listener) {
+        }
+
+        private void failIfUnavailable() throws ConnectionException {
+            if (failing) {
+                throw new ConnectionException("Coordinator unavailable");
+            }
+        }
+    }
+}
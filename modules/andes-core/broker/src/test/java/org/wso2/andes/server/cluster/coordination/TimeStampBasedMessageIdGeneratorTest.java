@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.server.cluster.coordination;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link TimeStampBasedMessageIdGenerator}
+ */
+public class TimeStampBasedMessageIdGeneratorTest {
+
+    /**
+     * Reference time of the generator, 2011
+     */
+    private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L;
+
+    private static final long START_TIME = REFERENCE_START + 123456789L;
+
+    /**
+     * Timestamp, node id and offset are placed in their bit ranges
+     */
+    @Test
+    public void testBitLayout() {
+        TestGenerator generator = new TestGenerator(8, 10, 5);
+        generator.clock.set(START_TIME);
+
+        long firstId = generator.getNextId();
+        long secondId = generator.getNextId();
+
+        assertEquals("Wrong timestamp", START_TIME - REFERENCE_START, firstId >>> 18);
+        assertEquals("Wrong node id", 5, (firstId >>> 10) & 0xFF);
+        assertEquals("Wrong offset", 0, firstId & 0x3FF);
+        assertEquals("Wrong timestamp", START_TIME - REFERENCE_START, secondId >>> 18);
+        assertEquals("Wrong offset", 1, secondId & 0x3FF);
+        assertTrue("Generated id is negative", firstId > 0);
+    }
+
+    /**
+     * A node id wider than the node id bits does not overwrite the timestamp
+     */
+    @Test
+    public void testNodeIdMasked() {
+        TestGenerator generator = new TestGenerator(4, 10, 0x1F);
+        generator.clock.set(START_TIME);
+
+        long id = generator.getNextId();
+
+        assertEquals("Wrong timestamp", START_TIME - REFERENCE_START, id >>> 14);
+        assertEquals("Wrong node id", 0xF, (id >>> 10) & 0xF);
+    }
+
+    /**
+     * A block that does not fit in the current millisecond starts at the next one
+     */
+    @Test
+    public void testBlockDoesNotSpanMilliseconds() {
+        TestGenerator generator = new TestGenerator(8, 2, 1);
+        generator.clock.set(START_TIME);
+
+        long firstBlock = generator.getNextIds(3);
+        long secondBlock = generator.getNextIds(3);
+
+        assertEquals("Wrong offset", 0, firstBlock & 0x3);
+        assertEquals("Block not moved to next millisecond", (START_TIME - REFERENCE_START) + 1, secondBlock >>> 10);
+        assertEquals("Wrong offset", 0, secondBlock & 0x3);
+        assertTrue("Ids not increasing", secondBlock > firstBlock + 2);
+    }
+
+    /**
+     * Layouts without room for node id, offset or timestamp are rejected
+     */
+    @Test
+    public void testInvalidLayoutRejected() {
+        int[][] layouts = { { 0, 10 }, { 8, 0 }, { -1, 10 }, { 12, 11 }, { 63, 1 } };
+        for (int[] layout : layouts) {
+            try {
+                new TestGenerator(layout[0], layout[1], 1);
+                fail("Layout accepted. Node id bits: " + layout[0] + ", offset bits: " + layout[1]);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        new TestGenerator(12, 10, 1);
+    }
+
+    /**
+     * Block sizes outside 1 to 2^offsetBits are rejected
+     */
+    @Test
+    public void testInvalidBlockSizeRejected() {
+        TestGenerator generator = new TestGenerator(8, 2, 1);
+        assertEquals("Wrong maximum block size", 4, generator.getMaxBlockSize());
+        for (int count : new int[] { 0, 5 }) {
+            try {
+                generator.getNextIds(count);
+                fail("Block size accepted: " + count);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Ids are unique across threads and increase within each thread, also when the offsets of a millisecond are
+     * used up
+     */
+    @Test
+    public void testUniqueAndIncreasingAcrossThreads() throws Exception {
+        final TestGenerator generator = new TestGenerator(8, 4, 1);
+        final int threadCount = 8;
+        final int idsPerThread = 20000;
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        long previousId = -1;
+                        boolean increasing = true;
+                        for (int j = 0; j < idsPerThread; j++) {
+                            long id = generator.getNextIds(1 + j % 3);
+                            increasing &= id > previousId;
+                            previousId = id;
+                            ids.add(id);
+                        }
+                        return increasing;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue("Ids not increasing within a thread", result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("Duplicate ids generated", threadCount * idsPerThread, ids.size());
+    }
+
+    /**
+     * Allocation waits for the clock once the generated timestamp is the maximum drift ahead of it
+     */
+    @Test
+    public void testDriftCapped() throws Exception {
+        final TestGenerator generator = new TestGenerator(8, 1, 1);
+        generator.clock.set(START_TIME);
+
+        long lastId = 0;
+        for (long i = 0; i <= TimeStampBasedMessageIdGenerator.MAX_CLOCK_DRIFT_MILLIS; i++) {
+            lastId = generator.getNextIds(2);
+        }
+        assertEquals("Timestamp not ahead of the clock by the maximum drift",
+                START_TIME - REFERENCE_START + TimeStampBasedMessageIdGenerator.MAX_CLOCK_DRIFT_MILLIS,
+                lastId >>> 9);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> blockedId = executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return generator.getNextId();
+                }
+            });
+            try {
+                blockedId.get(200, TimeUnit.MILLISECONDS);
+                fail("Id generated beyond the maximum drift");
+            } catch (TimeoutException e) {
+                // Expected
+            }
+            assertFalse("Id generated beyond the maximum drift", blockedId.isDone());
+
+            generator.clock.incrementAndGet();
+            long id = blockedId.get(10, TimeUnit.SECONDS);
+            assertEquals("Wrong timestamp after the clock moved",
+                    START_TIME - REFERENCE_START + TimeStampBasedMessageIdGenerator.MAX_CLOCK_DRIFT_MILLIS + 1,
+                    id >>> 9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generator with a fixed node id and a clock controlled by the test. The system clock is used while the clock
+     * is 0.
+     */
+    private static class TestGenerator extends TimeStampBasedMessageIdGenerator {
+
+        private final AtomicLong clock = new AtomicLong();
+
+        private final int uniqueIdForNode;
+
+        TestGenerator(int nodeIdBits, int offsetBits, int uniqueIdForNode) {
+            super(nodeIdBits, offsetBits);
+            this.uniqueIdForNode = uniqueIdForNode;
+        }
+
+        @Override
+        protected int readUniqueIdForNode() {
+            return uniqueIdForNode;
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            long time = clock.get();
+            return 0 == time ? System.currentTimeMillis() : time;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.cache;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link OffHeapMessageCacheImpl}
+ */
+public class OffHeapMessageCacheImplTest {
+
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * Number of blocks of the single segment used by the tests
+     */
+    private static final int BLOCK_COUNT = 8;
+
+    private static final int EXPIRY_SECONDS = 60;
+
+    /**
+     * Content spanning several blocks and parts is read back as it was written, part by part
+     */
+    @Test
+    public void testMultiBlockMessage() {
+        OffHeapMessageCacheImpl cache = createCache(EXPIRY_SECONDS);
+        AndesMessage message = createMessage(1, 100, 100, 50);
+        cache.addToCache(message);
+
+        AndesMessage cachedMessage = cache.getMessageFromCache(1);
+        assertNotNull("Message not cached", cachedMessage);
+        assertSame(message.getMetadata(), cachedMessage.getMetadata());
+        assertParts(message.getContentChunkList(), cachedMessage.getContentChunkList());
+
+        AndesMessagePart middlePart = cache.getContentFromCache(1, 100);
+        assertNotNull("Part not found by offset", middlePart);
+        assertArrayEquals(message.getContentChunkList().get(1).getData(), middlePart.getData());
+        assertNull("Part found at an offset not starting a part", cache.getContentFromCache(1, 50));
+
+        LongArrayList messageIds = LongArrayList.newListWith(1, 2);
+        LongObjectHashMap<List<AndesMessagePart>> contents = new LongObjectHashMap<>();
+        cache.fillContentFromCache(messageIds, contents);
+        assertParts(message.getContentChunkList(), contents.get(1));
+        assertEquals("Uncached message removed from the list to read", LongArrayList.newListWith(2), messageIds);
+    }
+
+    /**
+     * When the blocks run out the least recently used messages are evicted
+     */
+    @Test
+    public void testEviction() {
+        OffHeapMessageCacheImpl cache = createCache(EXPIRY_SECONDS);
+        // Each message takes three blocks, so two fit in the eight blocks
+        cache.addToCache(createMessage(1, 150));
+        cache.addToCache(createMessage(2, 150));
+        assertNotNull(cache.getMessageFromCache(1));
+
+        cache.addToCache(createMessage(3, 150));
+        assertNull("Least recently used message not evicted", cache.getMessageFromCache(2));
+        assertNotNull("Recently used message evicted", cache.getMessageFromCache(1));
+        assertNotNull(cache.getMessageFromCache(3));
+
+        // Evicting one message frees enough blocks for one more, and freed blocks are reused intact
+        AndesMessage message = createMessage(4, 150);
+        cache.addToCache(message);
+        assertNull(cache.getMessageFromCache(1));
+        assertParts(message.getContentChunkList(), cache.getMessageFromCache(4).getContentChunkList());
+    }
+
+    /**
+     * Removed messages free their blocks
+     */
+    @Test
+    public void testRemove() {
+        OffHeapMessageCacheImpl cache = createCache(EXPIRY_SECONDS);
+        cache.addToCache(createMessage(1, 250));
+        cache.addToCache(createMessage(2, 250));
+        cache.removeFromCache(LongArrayList.newListWith(1, 2));
+        assertNull(cache.getMessageFromCache(1));
+
+        // All eight blocks are free again
+        cache.addToCache(createMessage(3, BLOCK_SIZE * BLOCK_COUNT));
+        assertNotNull("Blocks of removed messages not freed", cache.getMessageFromCache(3));
+    }
+
+    /**
+     * A message larger than the segment is not cached and does not evict other messages
+     */
+    @Test
+    public void testOversizeMessage() {
+        OffHeapMessageCacheImpl cache = createCache(EXPIRY_SECONDS);
+        cache.addToCache(createMessage(1, 100));
+
+        cache.addToCache(createMessage(2, BLOCK_SIZE * BLOCK_COUNT + 1));
+        assertNull("Oversize message cached", cache.getMessageFromCache(2));
+        assertNotNull("Oversize message evicted other messages", cache.getMessageFromCache(1));
+
+        // Replacing a cached message by an oversize one drops the stale content
+        cache.addToCache(createMessage(1, BLOCK_SIZE * BLOCK_COUNT + 1));
+        assertNull("Stale content kept", cache.getMessageFromCache(1));
+    }
+
+    /**
+     * Messages not accessed within the expiry time are removed
+     */
+    @Test
+    public void testExpiry() throws Exception {
+        OffHeapMessageCacheImpl cache = createCache(1);
+        cache.addToCache(createMessage(1, 100));
+        assertNotNull(cache.getMessageFromCache(1));
+
+        Thread.sleep(1100);
+        assertNull("Expired message returned", cache.getMessageFromCache(1));
+        assertNull("Expired content returned", cache.getContentFromCache(1, 0));
+    }
+
+    /**
+     * The maintenance thread does not keep the JVM alive
+     */
+    @Test
+    public void testMaintenanceThreadIsDaemon() {
+        createCache(EXPIRY_SECONDS);
+        boolean found = false;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("OffHeapMessageCache-")) {
+                found = true;
+                assertTrue("Maintenance thread is not a daemon", thread.isDaemon());
+            }
+        }
+        assertTrue("Maintenance thread not found", found);
+    }
+
+    private static OffHeapMessageCacheImpl createCache(int expirySeconds) {
+        return new OffHeapMessageCacheImpl(BLOCK_SIZE * BLOCK_COUNT, 1, expirySeconds, BLOCK_SIZE, false);
+    }
+
+    /**
+     * Create a message with parts of the given lengths filled with bytes derived from the message id
+     */
+    private static AndesMessage createMessage(long messageId, int... partLengths) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setMessageID(messageId);
+        AndesMessage message = new AndesMessage(metadata);
+        int offset = 0;
+        for (int partLength : partLengths) {
+            byte[] data = new byte[partLength];
+            for (int i = 0; i < partLength; i++) {
+                data[i] = (byte) (messageId * 31 + offset + i);
+            }
+            AndesMessagePart part = new AndesMessagePart();
+            part.setMessageID(messageId);
+            part.setOffSet(offset);
+            part.setData(data);
+            message.addMessagePart(part);
+            offset = offset + partLength;
+        }
+        return message;
+    }
+
+    private static void assertParts(List<AndesMessagePart> expected, List<AndesMessagePart> actual) {
+        assertNotNull("Content not cached", actual);
+        assertEquals("Part count", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Part offset", expected.get(i).getOffset(), actual.get(i).getOffset());
+            assertTrue("Part " + i + " content differs",
+                    Arrays.equals(expected.get(i).getData(), actual.get(i).getData()));
+        }
+    }
+}
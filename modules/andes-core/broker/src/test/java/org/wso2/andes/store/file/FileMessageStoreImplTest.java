@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.file;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.configuration.util.ConfigurationProperties;
+import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.BasicContentHeaderProperties;
+import org.wso2.andes.framing.ContentHeaderBody;
+import org.wso2.andes.framing.abstraction.MessagePublishInfoImpl;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.server.message.MessageMetaData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Crash recovery tests for {@link FileMessageStoreImpl}. A crash is simulated by copying the store files while the
+ * store is open and starting a new store on the copy.
+ */
+public class FileMessageStoreImplTest {
+
+    private static final int BASIC_CLASS_ID = 60;
+
+    private static final String QUEUE_A = "queueA";
+
+    private static final String QUEUE_B = "queueB";
+
+    private static final String DLC_QUEUE = "DeadLetterChannel";
+
+    private File storeDirectory;
+
+    private File crashDirectory;
+
+    private final List<FileMessageStoreImpl> openStores = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storeDirectory = Files.createTempDirectory("file-store").toFile();
+        crashDirectory = Files.createTempDirectory("file-store-crash").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (FileMessageStoreImpl store : openStores) {
+            store.close();
+        }
+        delete(storeDirectory);
+        delete(crashDirectory);
+    }
+
+    /**
+     * Stored, deleted and dead lettered messages are recovered as they were when the broker crashed
+     */
+    @Test
+    public void testRecoveryAfterCrash() throws Exception {
+        FileMessageStoreImpl store = open(storeDirectory);
+        store.storeMessages(Arrays.asList(createMessage(1, QUEUE_A), createMessage(2, QUEUE_A),
+                createMessage(3, QUEUE_A), createMessage(4, QUEUE_B), createMessage(5, QUEUE_B)));
+        store.deleteMessages(Collections.singletonList(2L));
+        store.moveMetadataToDLC(3, DLC_QUEUE);
+
+        FileMessageStoreImpl recovered = open(crash());
+
+        assertEquals("Wrong messages recovered in " + QUEUE_A, Collections.singletonList(1L),
+                messageIds(recovered, QUEUE_A));
+        assertEquals("Wrong messages recovered in " + QUEUE_B, Arrays.asList(4L, 5L), messageIds(recovered, QUEUE_B));
+        assertEquals("Wrong messages recovered in the dead letter channel", Collections.singletonList(3L),
+                recovered.getMessageIdsInDLC(DLC_QUEUE, 0, 10));
+        assertEquals("Wrong message count recovered", 1, recovered.getMessageCountForQueue(QUEUE_A));
+        assertNull("Deleted message recovered", recovered.getMetadata(2));
+        assertNull("Content of a deleted message recovered", recovered.getContent(2, 0));
+        for (long messageId : new long[] { 1, 3, 4, 5 }) {
+            assertContent(recovered, messageId);
+        }
+    }
+
+    /**
+     * A message of which the content was not completely written is dropped, and messages written after the
+     * recovery follow the last complete record
+     */
+    @Test
+    public void testMessageWithIncompleteContentDropped() throws Exception {
+        FileMessageStoreImpl store = open(storeDirectory);
+        store.storeMessages(Collections.singletonList(createMessage(1, QUEUE_A)));
+        long contentEnd = segmentFile(storeDirectory, "content").length();
+        store.storeMessages(Collections.singletonList(createMessage(2, QUEUE_A)));
+
+        File directory = crash();
+        truncate(segmentFile(directory, "content"), contentEnd + 5);
+
+        FileMessageStoreImpl recovered = open(directory);
+        assertEquals("Message without content recovered", Collections.singletonList(1L),
+                messageIds(recovered, QUEUE_A));
+        assertNull("Partial content recovered", recovered.getContent(2, 0));
+        assertContent(recovered, 1);
+
+        recovered.storeMessages(Collections.singletonList(createMessage(3, QUEUE_A)));
+        recovered.close();
+        openStores.remove(recovered);
+
+        FileMessageStoreImpl reopened = open(directory);
+        assertEquals("Message written after recovery lost", Arrays.asList(1L, 3L), messageIds(reopened, QUEUE_A));
+        assertContent(reopened, 1);
+        assertContent(reopened, 3);
+    }
+
+    /**
+     * A partially written metadata record at the end of the log is discarded along with the content it refers to
+     */
+    @Test
+    public void testIncompleteMetadataRecordDiscarded() throws Exception {
+        FileMessageStoreImpl store = open(storeDirectory);
+        store.storeMessages(Arrays.asList(createMessage(1, QUEUE_A), createMessage(2, QUEUE_A)));
+
+        File directory = crash();
+        File metadataSegment = segmentFile(directory, "metadata");
+        truncate(metadataSegment, metadataSegment.length() - 3);
+
+        FileMessageStoreImpl recovered = open(directory);
+        assertEquals("Incomplete message recovered", Collections.singletonList(1L), messageIds(recovered, QUEUE_A));
+        assertNull("Content of the incomplete message recovered", recovered.getContent(2, 0));
+        assertContent(recovered, 1);
+    }
+
+    /**
+     * A deletion which did not reach the disk before the crash leaves the message in the store, so it is delivered
+     * again instead of being lost
+     */
+    @Test
+    public void testIncompleteDeletionKeepsMessage() throws Exception {
+        FileMessageStoreImpl store = open(storeDirectory);
+        store.storeMessages(Arrays.asList(createMessage(1, QUEUE_A), createMessage(2, QUEUE_A)));
+        long metadataEnd = segmentFile(storeDirectory, "metadata").length();
+        store.deleteMessages(Collections.singletonList(1L));
+
+        File directory = crash();
+        truncate(segmentFile(directory, "metadata"), metadataEnd + 2);
+
+        FileMessageStoreImpl recovered = open(directory);
+        assertEquals("Message of an incomplete deletion lost", Arrays.asList(1L, 2L), messageIds(recovered, QUEUE_A));
+        assertContent(recovered, 1);
+    }
+
+    private FileMessageStoreImpl open(File directory) throws AndesException {
+        ConfigurationProperties connectionProperties = new ConfigurationProperties();
+        connectionProperties.addProperty(FileMessageStoreImpl.PROP_STORE_DIRECTORY, directory.getAbsolutePath());
+        FileMessageStoreImpl store = new FileMessageStoreImpl();
+        store.initializeMessageStore(null, connectionProperties);
+        openStores.add(store);
+        return store;
+    }
+
+    /**
+     * Copy the files of the open store as they would be found after the broker process was killed
+     *
+     * @return directory holding the copy
+     */
+    private File crash() throws IOException {
+        copy(storeDirectory, crashDirectory);
+        return crashDirectory;
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        File[] files = source.listFiles();
+        if (null == files) {
+            return;
+        }
+        for (File file : files) {
+            File targetFile = new File(target, file.getName());
+            if (file.isDirectory()) {
+                if (!targetFile.mkdirs()) {
+                    throw new IOException("Could not create " + targetFile);
+                }
+                copy(file, targetFile);
+            } else {
+                Files.copy(file.toPath(), targetFile.toPath());
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (null != files) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @return the first segment file of a log of the store
+     */
+    private static File segmentFile(File directory, String logName) {
+        return new File(new File(directory, logName), LogSegment.fileName(0));
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length);
+        }
+    }
+
+    private static List<Long> messageIds(FileMessageStoreImpl store, String storageQueueName)
+            throws AndesException {
+        List<Long> messageIds = new ArrayList<>();
+        for (AndesMessageMetadata metadata : store.getNextNMessageMetadataFromQueue(storageQueueName, 0, 100)) {
+            messageIds.add(metadata.getMessageID());
+        }
+        return messageIds;
+    }
+
+    private static void assertContent(FileMessageStoreImpl store, long messageId) throws AndesException {
+        AndesMessagePart messagePart = store.getContent(messageId, 0);
+        assertNotNull("Content of message " + messageId + " not recovered", messagePart);
+        assertArrayEquals("Wrong content recovered for message " + messageId, content(messageId),
+                messagePart.getData());
+
+        List<AndesMessagePart> parts = store.getContent(LongArrayList.newListWith(messageId)).get(messageId);
+        assertEquals("Wrong chunk count recovered for message " + messageId, 1, parts.size());
+    }
+
+    private static AndesMessage createMessage(long messageId, String storageQueueName) {
+        byte[] content = content(messageId);
+        MessageMetaData amqMetadata = new MessageMetaData(new MessagePublishInfoImpl(new AMQShortString("amq.direct"),
+                false, false, new AMQShortString(storageQueueName)),
+                new ContentHeaderBody(new BasicContentHeaderProperties(), BASIC_CLASS_ID), 0);
+        byte[] underlying = new byte[1 + amqMetadata.getStorableSize()];
+        underlying[0] = (byte) amqMetadata.getType().ordinal();
+        ByteBuffer buffer = ByteBuffer.wrap(underlying);
+        buffer.position(1);
+        amqMetadata.writeToBuffer(0, buffer.slice());
+
+        AndesMessageMetadata metadata = new AndesMessageMetadata(messageId, underlying, false);
+        metadata.setStorageQueueName(storageQueueName);
+        metadata.setContentId(messageId);
+        metadata.setMessageContentLength(content.length);
+
+        AndesMessagePart messagePart = new AndesMessagePart();
+        messagePart.setMessageID(messageId);
+        messagePart.setOffSet(0);
+        messagePart.setData(content);
+
+        AndesMessage message = new AndesMessage(metadata);
+        message.addMessagePart(messagePart);
+        return message;
+    }
+
+    private static byte[] content(long messageId) {
+        return ("content of " + messageId).getBytes();
+    }
+}
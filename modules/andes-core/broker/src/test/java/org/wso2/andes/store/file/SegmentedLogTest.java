@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.store.file;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SegmentedLog}
+ */
+public class SegmentedLogTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Fits three records of ten byte payloads
+     */
+    private static final long SEGMENT_SIZE = 3 * (SegmentedLog.RECORD_HEADER_SIZE + 10);
+
+    private File directory;
+
+    private SegmentedLog segmentedLog;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("segmented-log").toFile();
+        segmentedLog = open();
+    }
+
+    @After
+    public void tearDown() {
+        segmentedLog.close();
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Records are read back from the active and the sealed segments after the log rolls over
+     */
+    @Test
+    public void testAppendAndRead() throws Exception {
+        List<Long> offsets = appendRecords(7);
+
+        assertEquals("Wrong number of segments", 3, segmentedLog.getSegmentCount());
+        for (int i = 0; i < offsets.size(); i++) {
+            assertEquals("Wrong record read", record(i), read(offsets.get(i)));
+        }
+    }
+
+    /**
+     * All records are replayed in order after reopening the log
+     */
+    @Test
+    public void testReplay() throws Exception {
+        appendRecords(5);
+        segmentedLog.sync();
+        segmentedLog.close();
+
+        segmentedLog = open();
+        List<String> records = replay();
+        assertEquals("Wrong number of records replayed", 5, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("Wrong record replayed", record(i), records.get(i));
+        }
+    }
+
+    /**
+     * A partially written record at the end of the log is discarded and later appends follow the last complete
+     * record
+     */
+    @Test
+    public void testReplayDiscardsIncompleteRecord() throws Exception {
+        appendRecords(2);
+        long endOffset = segmentedLog.getEndOffset();
+        segmentedLog.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, LogSegment.fileName(0)), "rw")) {
+            file.setLength(endOffset - 3);
+        }
+
+        segmentedLog = open();
+        assertEquals("Incomplete record should not be replayed", 1, replay().size());
+
+        long offset = segmentedLog.append(record(9).getBytes(UTF_8), true);
+        assertEquals("Append should follow the last complete record", endOffset / 2, offset);
+        assertEquals("Wrong record read", record(9), read(offset));
+    }
+
+    /**
+     * Records still in use are rewritten before a mostly unused segment is deleted
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        List<Long> offsets = appendRecords(4);
+        segmentedLog.release(offsets.get(0));
+        segmentedLog.release(offsets.get(1));
+
+        List<Long> candidates = segmentedLog.getCompactionCandidates(0.5);
+        assertEquals("Wrong compaction candidates", 1, candidates.size());
+        long baseOffset = candidates.get(0);
+        assertTrue("Tombstone of the segment records should be needed",
+                segmentedLog.hasRecordsBetween(0, segmentedLog.getEndOffset(), -1));
+
+        final List<Long> rewrittenOffsets = new ArrayList<>();
+        long nextOffset = baseOffset;
+        while (nextOffset >= 0) {
+            nextOffset = segmentedLog.visitSegment(baseOffset, nextOffset, 1, new SegmentedLog.RecordVisitor() {
+                @Override
+                public void visit(long offset, ByteBuffer payload) throws AndesException {
+                    if (offset == 2 * (SegmentedLog.RECORD_HEADER_SIZE + 10)) {
+                        byte[] copy = new byte[payload.remaining()];
+                        payload.get(copy);
+                        rewrittenOffsets.add(segmentedLog.append(copy, true));
+                    }
+                }
+            });
+        }
+        segmentedLog.forceSync();
+        segmentedLog.deleteSegment(baseOffset);
+
+        assertEquals("Wrong number of segments after compaction", 1, segmentedLog.getSegmentCount());
+        assertEquals("Rewritten record not readable", record(2), read(rewrittenOffsets.get(0)));
+        assertEquals("Record of the active segment not readable", record(3), read(offsets.get(3)));
+        assertFalse("No records should remain before the rewritten record",
+                segmentedLog.hasRecordsBetween(0, offsets.get(3), -1));
+    }
+
+    private SegmentedLog open() throws AndesException {
+        SegmentedLog log = new SegmentedLog("test", directory, SEGMENT_SIZE, true);
+        log.open();
+        return log;
+    }
+
+    private List<Long> appendRecords(int count) throws AndesException {
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            offsets.add(segmentedLog.append(record(i).getBytes(UTF_8), true));
+        }
+        return offsets;
+    }
+
+    private List<String> replay() throws AndesException {
+        final List<String> records = new ArrayList<>();
+        segmentedLog.replay(new SegmentedLog.RecordVisitor() {
+            @Override
+            public void visit(long offset, ByteBuffer payload) {
+                records.add(decode(payload));
+            }
+        });
+        return records;
+    }
+
+    private String read(long offset) throws AndesException {
+        return decode(segmentedLog.read(offset));
+    }
+
+    private static String decode(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @return a ten byte record
+     */
+    private static String record(int index) {
+        return String.format("record-%03d", index);
+    }
+}
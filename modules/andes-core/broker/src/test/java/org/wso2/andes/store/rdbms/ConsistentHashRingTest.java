@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.rdbms;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ConsistentHashRing}
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEY_COUNT = 3000;
+
+    private static final int VIRTUAL_NODES = 128;
+
+    /**
+     * A key maps to the same shard name whatever the order the shards are given in
+     */
+    @Test
+    public void testMappingIndependentOfShardOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("shardA", "shardB", "shardC"), VIRTUAL_NODES);
+        ConsistentHashRing reordered = new ConsistentHashRing(Arrays.asList("shardC", "shardA", "shardB"),
+                VIRTUAL_NODES);
+        ConsistentHashRing copy = new ConsistentHashRing(Arrays.asList("shardA", "shardB", "shardC"), VIRTUAL_NODES);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "queue" + i;
+            assertEquals("Mapping of " + key + " is not deterministic", ring.getShard(key), copy.getShard(key));
+            assertEquals("Mapping of " + key + " depends on the shard order",
+                    ring.getShardNames().get(ring.getShard(key)),
+                    reordered.getShardNames().get(reordered.getShard(key)));
+        }
+    }
+
+    /**
+     * Adding a shard moves keys only to the new shard, and moves about the share of the new shard
+     */
+    @Test
+    public void testAddingShardMovesKeysOnlyToNewShard() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("shardA", "shardB"), VIRTUAL_NODES);
+        ConsistentHashRing extended = ring.withShard("shardC");
+
+        assertEquals("New shard must get the next index", Arrays.asList("shardA", "shardB", "shardC"),
+                extended.getShardNames());
+        assertEquals("Existing ring must not change", Arrays.asList("shardA", "shardB"), ring.getShardNames());
+
+        int movedKeys = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "queue" + i;
+            int shard = ring.getShard(key);
+            int newShard = extended.getShard(key);
+            if (shard != newShard) {
+                assertEquals(key + " moved between existing shards", 2, newShard);
+                movedKeys++;
+            }
+        }
+
+        assertTrue("Too few keys moved to the new shard: " + movedKeys, movedKeys > KEY_COUNT / 5);
+        assertTrue("Too many keys moved to the new shard: " + movedKeys, movedKeys < KEY_COUNT / 2);
+    }
+
+    /**
+     * Keys are spread over all shards
+     */
+    @Test
+    public void testKeysSpreadAcrossShards() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("shardA", "shardB", "shardC"), VIRTUAL_NODES);
+
+        int[] keysPerShard = new int[3];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keysPerShard[ring.getShard("queue" + i)]++;
+        }
+
+        for (int shard = 0; shard < keysPerShard.length; shard++) {
+            assertTrue("Shard " + shard + " got only " + keysPerShard[shard] + " keys",
+                    keysPerShard[shard] > KEY_COUNT / 5);
+        }
+    }
+
+    /**
+     * A ring with a single shard maps every key to it
+     */
+    @Test
+    public void testSingleShard() {
+        ConsistentHashRing ring = new ConsistentHashRing(Collections.singletonList("shardA"), 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Key mapped to a missing shard", 0, ring.getShard("queue" + i));
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        try {
+            new ConsistentHashRing(Collections.<String>emptyList(), VIRTUAL_NODES);
+            fail("Ring created without shards");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            new ConsistentHashRing(Collections.singletonList("shardA"), 0);
+            fail("Ring created without virtual nodes");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            new ConsistentHashRing(Collections.singletonList("shardA"), VIRTUAL_NODES).withShard("shardA");
+            fail("Shard added twice");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.rdbms;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link QueueMessageCounter}, run against an in memory queue counter table and metadata count
+ */
+public class QueueMessageCounterTest {
+
+    private static final String QUEUE = "counterTestQueue";
+
+    /**
+     * Number of committed messages in the metadata table
+     */
+    private AtomicLong storedMessages;
+
+    /**
+     * Recorded when the metadata table is counted. Null to count without concurrent changes.
+     */
+    private Runnable duringCount;
+
+    private InMemoryCounterTable counterTable;
+
+    private QueueMessageCounter counter;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    @Before
+    public void setUp() {
+        storedMessages = new AtomicLong();
+        duringCount = null;
+        counterTable = new InMemoryCounterTable();
+        counter = createCounter(3600);
+    }
+
+    /**
+     * Pending changes are written to the queue counter table and a failed write is retried with the next flush
+     */
+    @Test
+    public void testFlush() throws Exception {
+        assertEquals(0, counter.getMessageCount(QUEUE));
+        // The first run reconciles, later runs only flush
+        counter.flushAndReconcile();
+
+        storeMessages(3);
+        counter.flushAndReconcile();
+        assertEquals("Changes not flushed", 3, counterTable.getCount(QUEUE));
+
+        counterTable.failWrites = true;
+        removeMessages(1);
+        counter.flushAndReconcile();
+        assertEquals("Failed flush changed the table", 3, counterTable.getCount(QUEUE));
+
+        counterTable.failWrites = false;
+        counter.flushAndReconcile();
+        assertEquals("Failed flush not retried", 2, counterTable.getCount(QUEUE));
+        assertEquals(2, counter.getMessageCount(QUEUE));
+    }
+
+    /**
+     * Changes not yet flushed are already part of the metadata table and are not counted twice on reconciliation.
+     * The queue counter table gets them once they are flushed.
+     */
+    @Test
+    public void testReconcileWithUnflushedChanges() throws Exception {
+        assertEquals(0, counter.getMessageCount(QUEUE));
+        counterTable.failWrites = true;
+        storeMessages(5);
+        counter.flushAndReconcile();
+        assertEquals("Unflushed changes counted twice", 5, counter.getMessageCount(QUEUE));
+
+        counterTable.failWrites = false;
+        counter.flushAndReconcile();
+        assertEquals("Unflushed changes counted twice in the table", 5, counterTable.getCount(QUEUE));
+    }
+
+    /**
+     * Changes recorded while the metadata table is counted are added to the count
+     */
+    @Test
+    public void testReconcileWithChangesDuringCount() throws Exception {
+        assertEquals(0, counter.getMessageCount(QUEUE));
+        storeMessages(5);
+        duringCount = new Runnable() {
+            @Override
+            public void run() {
+                storeMessages(2);
+            }
+        };
+        counter.flushAndReconcile();
+        assertEquals("Changes during the count lost", 7, counter.getMessageCount(QUEUE));
+
+        duringCount = null;
+        counter.flushAndReconcile();
+        assertEquals(7, counterTable.getCount(QUEUE));
+    }
+
+    /**
+     * A purge takes the count of the metadata table plus the changes recorded while counting, without counting
+     * unflushed changes twice
+     */
+    @Test
+    public void testPurgeWithChanges() throws Exception {
+        assertEquals(0, counter.getMessageCount(QUEUE));
+        storeMessages(10);
+
+        // Purged messages are deleted without recording them
+        storedMessages.set(0);
+        duringCount = new Runnable() {
+            @Override
+            public void run() {
+                storeMessages(1);
+            }
+        };
+        counter.queuePurged(QUEUE);
+        assertEquals("Count after purge", 1, counter.getMessageCount(QUEUE));
+
+        duringCount = null;
+        counter.flushAndReconcile();
+        assertEquals(1, counter.getMessageCount(QUEUE));
+        assertEquals(1, counterTable.getCount(QUEUE));
+    }
+
+    /**
+     * Counters reconciled while messages are stored and removed concurrently end up with the committed count
+     */
+    @Test
+    public void testReconcileRacingWithUpdates() throws Exception {
+        counter = createCounter(0);
+        assertEquals(0, counter.getMessageCount(QUEUE));
+        final AtomicBoolean updating = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> updater = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 20000; i++) {
+                        if (i % 3 == 2) {
+                            removeMessages(1);
+                        } else {
+                            storeMessages(1);
+                        }
+                    }
+                    updating.set(false);
+                    return null;
+                }
+            });
+            while (updating.get()) {
+                counter.flushAndReconcile();
+            }
+            updater.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        counter.flushAndReconcile();
+        assertEquals("Count drifted", storedMessages.get(), counter.getMessageCount(QUEUE));
+        assertEquals("Counter table drifted", storedMessages.get(), counterTable.getCount(QUEUE));
+    }
+
+    private QueueMessageCounter createCounter(int reconcileInterval) {
+        QueueMessageCounter.MessageCountSource countSource = new QueueMessageCounter.MessageCountSource() {
+            @Override
+            public long countMessages(String storageQueueName) {
+                // The count sees the messages committed before it started
+                long count = storedMessages.get();
+                Runnable change = duringCount;
+                if (null != change) {
+                    change.run();
+                }
+                return count;
+            }
+        };
+        return new QueueMessageCounter(counterTable.getContextStore(), countSource, null, 1, reconcileInterval);
+    }
+
+    /**
+     * Commit messages to the metadata table and record them
+     */
+    private void storeMessages(int count) {
+        List<AndesMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new AndesMessage(createMetadata()));
+        }
+        storedMessages.addAndGet(count);
+        counter.messagesStored(messages);
+    }
+
+    /**
+     * Delete messages from the metadata table and record them
+     */
+    private void removeMessages(int count) {
+        List<AndesMessageMetadata> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(createMetadata());
+        }
+        storedMessages.addAndGet(-count);
+        counter.messagesRemoved(messages);
+    }
+
+    private static AndesMessageMetadata createMetadata() {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setStorageQueueName(QUEUE);
+        return metadata;
+    }
+
+    /**
+     * Queue counter table kept in memory, serving the {@link AndesContextStore} methods used by
+     * {@link QueueMessageCounter}
+     */
+    private static class InMemoryCounterTable implements InvocationHandler {
+
+        private final Map<String, Long> counts = new HashMap<>();
+
+        private volatile boolean failWrites;
+
+        private AndesContextStore getContextStore() {
+            return (AndesContextStore) Proxy.newProxyInstance(AndesContextStore.class.getClassLoader(),
+                    new Class<?>[] { AndesContextStore.class }, this);
+        }
+
+        private synchronized long getCount(String queueName) {
+            Long count = counts.get(queueName);
+            return (null == count) ? 0 : count;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws AndesException {
+            switch (method.getName()) {
+                case "getAllQueuesStored":
+                    return Collections.singletonList(new StorageQueue(QUEUE, true, false, null, false));
+                case "addMessageCounterForQueue":
+                    if (!counts.containsKey(args[0])) {
+                        counts.put((String) args[0], 0L);
+                    }
+                    return null;
+                case "getMessageCountForQueue":
+                    return getCount((String) args[0]);
+                case "incrementMessageCountForQueue":
+                    update((String) args[0], (Long) args[1]);
+                    return null;
+                case "decrementMessageCountForQueue":
+                    update((String) args[0], -(Long) args[1]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private void update(String queueName, long delta) throws AndesException {
+            if (failWrites) {
+                throw new AndesException("Queue counter table not available");
+            }
+            counts.put(queueName, getCount(queueName) + delta);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.rdbms;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.configuration.util.ConfigurationProperties;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the shared content mode of {@link RDBMSMessageStoreImpl}, run against an in memory H2 database
+ */
+public class RDBMSSharedContentTest {
+
+    private static final String DATA_SOURCE_NAME = "jdbc/SharedContentTestDB";
+
+    private static final String DATA_SOURCE_WITHOUT_REFERENCES_NAME = "jdbc/SharedContentWithoutReferencesTestDB";
+
+    private static final String[] MESSAGE_STORE_TABLES = {
+            "CREATE TABLE IF NOT EXISTS MB_QUEUE_MAPPING ("
+            + "QUEUE_ID INT AUTO_INCREMENT, QUEUE_NAME VARCHAR(512) NOT NULL, UNIQUE (QUEUE_NAME), "
+            + "PRIMARY KEY (QUEUE_ID))",
+            "CREATE TABLE IF NOT EXISTS MB_METADATA ("
+            + "MESSAGE_ID BIGINT, QUEUE_ID INT, DLC_QUEUE_ID INT NOT NULL, MESSAGE_METADATA BINARY, "
+            + "PRIMARY KEY (MESSAGE_ID), FOREIGN KEY (QUEUE_ID) REFERENCES MB_QUEUE_MAPPING (QUEUE_ID))",
+            "CREATE TABLE IF NOT EXISTS MB_CONTENT ("
+            + "MESSAGE_ID BIGINT, CONTENT_OFFSET INT, MESSAGE_CONTENT BLOB NOT NULL, "
+            + "PRIMARY KEY (MESSAGE_ID, CONTENT_OFFSET), "
+            + "FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE)",
+            "CREATE TABLE IF NOT EXISTS MB_EXPIRATION_DATA ("
+            + "MESSAGE_ID BIGINT UNIQUE, EXPIRATION_TIME BIGINT, DLC_QUEUE_ID INT NOT NULL, "
+            + "MESSAGE_DESTINATION VARCHAR(512) NOT NULL, "
+            + "FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE)"
+    };
+
+    /**
+     * Same as dbscripts/mb-store/h2-mb-content-reference.sql
+     */
+    private static final String[] CONTENT_REFERENCE_TABLE = {
+            "CREATE TABLE IF NOT EXISTS MB_CONTENT_REFERENCE ("
+            + "MESSAGE_ID BIGINT NOT NULL, CONTENT_ID BIGINT NOT NULL, PRIMARY KEY (MESSAGE_ID), "
+            + "FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE)",
+            "CREATE INDEX IF NOT EXISTS MB_CONTENT_REFERENCE_CONTENT_ID ON MB_CONTENT_REFERENCE (CONTENT_ID)"
+    };
+
+    private static final byte[] CONTENT = "shared content".getBytes();
+
+    private static DataSource dataSource;
+
+    private static DataSource dataSourceWithoutReferences;
+
+    private RDBMSMessageStoreImpl messageStore;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+
+        System.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.naming.java.javaURLContextFactory");
+        System.setProperty(Context.URL_PKG_PREFIXES, "org.apache.naming");
+
+        dataSource = createDataSource("sharedContentTest");
+        dataSourceWithoutReferences = createDataSource("sharedContentWithoutReferencesTest");
+        executeStatements(dataSource, MESSAGE_STORE_TABLES);
+        executeStatements(dataSource, CONTENT_REFERENCE_TABLE);
+        executeStatements(dataSourceWithoutReferences, MESSAGE_STORE_TABLES);
+
+        InitialContext initialContext = new InitialContext();
+        initialContext.createSubcontext("jdbc");
+        initialContext.bind(DATA_SOURCE_NAME, dataSource);
+        initialContext.bind(DATA_SOURCE_WITHOUT_REFERENCES_NAME, dataSourceWithoutReferences);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws NamingException {
+        InitialContext initialContext = new InitialContext();
+        initialContext.unbind(DATA_SOURCE_NAME);
+        initialContext.unbind(DATA_SOURCE_WITHOUT_REFERENCES_NAME);
+        dataSource.close();
+        dataSourceWithoutReferences.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        messageStore = createMessageStore(DATA_SOURCE_NAME);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        messageStore.close();
+        executeStatements(dataSource, new String[] {
+                "DELETE FROM MB_CONTENT_REFERENCE", "DELETE FROM MB_METADATA", "DELETE FROM MB_QUEUE_MAPPING" });
+    }
+
+    /**
+     * Content shared by messages of several queues is written once and read through every message
+     */
+    @Test
+    public void testContentStoredOnce() throws Exception {
+        messageStore.storeMessages(Arrays.asList(
+                createMessage(1L, 100L, "queueA"), createMessage(2L, 100L, "queueB"),
+                createMessage(3L, 100L, "queueC")));
+
+        assertEquals("Shared content written more than once", 1, countRows("MB_CONTENT"));
+        assertEquals("Unexpected content holders", 1, countHolders());
+        assertEquals("Unexpected references", 3, countRows("MB_CONTENT_REFERENCE"));
+
+        // A second store does not have the messages in its cache
+        RDBMSMessageStoreImpl otherNodeStore = createMessageStore(DATA_SOURCE_NAME);
+        try {
+            for (long messageId = 1L; messageId <= 3L; messageId++) {
+                AndesMessagePart messagePart = otherNodeStore.getContent(messageId, 0);
+                assertNotNull("Content not read through message " + messageId, messagePart);
+                assertArrayEquals("Wrong content read for message " + messageId, CONTENT, messagePart.getData());
+            }
+
+            LongObjectHashMap<List<AndesMessagePart>> contentMap =
+                    otherNodeStore.getContent(LongArrayList.newListWith(1L, 2L, 3L));
+            for (long messageId = 1L; messageId <= 3L; messageId++) {
+                List<AndesMessagePart> contentList = contentMap.get(messageId);
+                assertNotNull("Content of message " + messageId + " missing in the bulk read", contentList);
+                assertEquals("Wrong chunk count of message " + messageId, 1, contentList.size());
+                assertEquals("Chunk not keyed by the referring message", messageId,
+                        contentList.get(0).getMessageID());
+            }
+        } finally {
+            otherNodeStore.close();
+        }
+    }
+
+    /**
+     * Shared content is kept while a message refers to it and deleted with the last reference
+     */
+    @Test
+    public void testContentDeletedWithLastReference() throws Exception {
+        AndesMessage first = createMessage(1L, 100L, "queueA");
+        AndesMessage second = createMessage(2L, 100L, "queueB");
+        AndesMessage third = createMessage(3L, 100L, "queueC");
+        messageStore.storeMessages(Arrays.asList(first, second, third));
+
+        messageStore.deleteMessages(Collections.singletonList(first.getMetadata()));
+        assertEquals("Content deleted while referred", 1, countRows("MB_CONTENT"));
+        assertEquals("Unexpected references", 2, countRows("MB_CONTENT_REFERENCE"));
+
+        messageStore.deleteMessageMetadataFromQueue("queueB", Collections.singletonList(second.getMetadata()));
+        assertEquals("Content deleted while referred", 1, countRows("MB_CONTENT"));
+        assertEquals("Unexpected references", 1, countRows("MB_CONTENT_REFERENCE"));
+
+        messageStore.deleteMessages(Collections.singletonList(3L));
+        assertEquals("Content not deleted with the last reference", 0, countRows("MB_CONTENT"));
+        assertEquals("Content holder not deleted with the last reference", 0, countHolders());
+        assertEquals("References left behind", 0, countRows("MB_CONTENT_REFERENCE"));
+    }
+
+    /**
+     * Deleting every reference of a content in one batch deletes the content
+     */
+    @Test
+    public void testContentDeletedWithReferencesInSameBatch() throws Exception {
+        AndesMessage first = createMessage(1L, 100L, "queueA");
+        AndesMessage second = createMessage(2L, 100L, "queueB");
+        AndesMessage unshared = createMessage(3L, 0L, "queueA");
+        messageStore.storeMessages(Arrays.asList(first, second, unshared));
+
+        messageStore.deleteMessages(Arrays.asList(first.getMetadata(), second.getMetadata()));
+        assertEquals("Only the unshared content must be left", 1, countRows("MB_CONTENT"));
+        assertEquals("Content holder not deleted", 0, countHolders());
+    }
+
+    /**
+     * A content holder left behind by concurrent deletes is removed by the check run after the commit, while a
+     * content holder which is still referred is kept
+     */
+    @Test
+    public void testUnreferencedContentHoldersDeletedAfterCommit() throws Exception {
+        messageStore.storeMessages(Arrays.asList(
+                createMessage(1L, 100L, "queueA"), createMessage(2L, 100L, "queueB"),
+                createMessage(3L, 200L, "queueA"), createMessage(4L, 200L, "queueB")));
+
+        // The state two transactions of different nodes leave behind when each sees the reference deleted by the
+        // other
+        executeStatements(dataSource, new String[] { "DELETE FROM MB_METADATA WHERE MESSAGE_ID IN (1, 2, 3)" });
+        assertEquals("Unexpected content holders", 2, countHolders());
+
+        Connection connection = dataSource.getConnection();
+        try {
+            messageStore.deleteUnreferencedContentHolders(connection, LongArrayList.newListWith(100L, 200L));
+        } finally {
+            connection.close();
+        }
+
+        assertEquals("Only the referred content holder must be left", 1, countHolders());
+        assertEquals("Only the referred content must be left", 1, countRows("MB_CONTENT"));
+        assertNotNull("Referred content deleted", messageStore.getContent(4L, 0));
+    }
+
+    /**
+     * Purging a queue deletes the content which was only referred by messages of the queue
+     */
+    @Test
+    public void testPurgeDeletesUnreferencedContent() throws Exception {
+        messageStore.storeMessages(Arrays.asList(
+                createMessage(1L, 100L, "queueA"), createMessage(2L, 100L, "queueB"),
+                createMessage(3L, 200L, "queueA"), createMessage(4L, 200L, "queueA")));
+
+        assertEquals("Unexpected purged message count", 3, messageStore.deleteAllMessageMetadata("queueA"));
+        assertEquals("Only the content referred by the other queue must be left", 1, countHolders());
+        assertEquals("Unexpected references", 1, countRows("MB_CONTENT_REFERENCE"));
+    }
+
+    /**
+     * The store does not start in shared content mode without the content reference table
+     */
+    @Test
+    public void testMissingContentReferenceTable() throws Exception {
+        try {
+            createMessageStore(DATA_SOURCE_WITHOUT_REFERENCES_NAME);
+            fail("Store started without the content reference table");
+        } catch (AndesException e) {
+            assertTrue("Exception does not name the missing table",
+                    e.getMessage().contains(RDBMSConstants.CONTENT_REFERENCE_TABLE));
+        }
+    }
+
+    private static DataSource createDataSource(String databaseName) {
+        DataSource dataSource = new DataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setDefaultAutoCommit(false);
+        return dataSource;
+    }
+
+    private static void executeStatements(DataSource dataSource, String[] statements) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+            statement.close();
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static RDBMSMessageStoreImpl createMessageStore(String dataSourceName) throws AndesException {
+        ConfigurationProperties connectionProperties = new ConfigurationProperties();
+        connectionProperties.addProperty(RDBMSConstants.PROP_JNDI_LOOKUP_NAME, dataSourceName);
+        RDBMSMessageStoreImpl messageStore = new RDBMSMessageStoreImpl();
+        messageStore.initializeMessageStore(null, connectionProperties);
+        return messageStore;
+    }
+
+    /**
+     * Create a message with a single content chunk
+     *
+     * @param messageId        id of the message
+     * @param contentId        id of the shared content. 0 if the content is not shared.
+     * @param storageQueueName storage queue of the message
+     * @return message
+     */
+    private static AndesMessage createMessage(long messageId, long contentId, String storageQueueName) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata(messageId, new byte[] { 1 }, false);
+        metadata.setStorageQueueName(storageQueueName);
+        metadata.setContentId(contentId);
+        metadata.setMessageContentLength(CONTENT.length);
+
+        AndesMessagePart messagePart = new AndesMessagePart();
+        messagePart.setMessageID(messageId);
+        messagePart.setOffSet(0);
+        messagePart.setData(CONTENT);
+
+        AndesMessage message = new AndesMessage(metadata);
+        message.addMessagePart(messagePart);
+        return message;
+    }
+
+    private int countRows(String table) throws SQLException {
+        return count("SELECT COUNT(*) FROM " + table);
+    }
+
+    private int countHolders() throws SQLException {
+        return count("SELECT COUNT(*) FROM MB_METADATA, MB_QUEUE_MAPPING"
+                + " WHERE MB_METADATA.QUEUE_ID = MB_QUEUE_MAPPING.QUEUE_ID AND MB_QUEUE_MAPPING.QUEUE_NAME = '"
+                + RDBMSConstants.SHARED_CONTENT_HOLDER_QUEUE + "'");
+    }
+
+    private int count(String query) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(query);
+            ResultSet resultSet = preparedStatement.executeQuery();
+            resultSet.next();
+            int count = resultSet.getInt(1);
+            resultSet.close();
+            preparedStatement.close();
+            connection.commit();
+            return count;
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,602 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.rdbms;
+
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.configuration.util.ConfigurationProperties;
+import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.BasicContentHeaderProperties;
+import org.wso2.andes.framing.ContentHeaderBody;
+import org.wso2.andes.framing.abstraction.MessagePublishInfoImpl;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.ClusterNotificationListener;
+import org.wso2.andes.kernel.subscription.StorageQueue;
+import org.wso2.andes.server.cluster.ClusterAgent;
+import org.wso2.andes.server.cluster.coordination.ClusterNotification;
+import org.wso2.andes.server.cluster.coordination.MessageStoreShardNotificationHandler;
+import org.wso2.andes.server.message.MessageMetaData;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for routing and rebalancing of {@link ShardedMessageStoreImpl}, run against in memory H2 databases
+ */
+public class ShardedMessageStoreImplTest {
+
+    private static final String[] DATA_SOURCE_NAMES = {
+            "jdbc/ShardTestDB0", "jdbc/ShardTestDB1", "jdbc/ShardTestDB2" };
+
+    private static final String[] MESSAGE_STORE_TABLES = {
+            "CREATE TABLE IF NOT EXISTS MB_QUEUE_MAPPING ("
+            + "QUEUE_ID INT AUTO_INCREMENT, QUEUE_NAME VARCHAR(512) NOT NULL, UNIQUE (QUEUE_NAME), "
+            + "PRIMARY KEY (QUEUE_ID))",
+            "CREATE TABLE IF NOT EXISTS MB_METADATA ("
+            + "MESSAGE_ID BIGINT, QUEUE_ID INT, DLC_QUEUE_ID INT NOT NULL, MESSAGE_METADATA BINARY, "
+            + "PRIMARY KEY (MESSAGE_ID), FOREIGN KEY (QUEUE_ID) REFERENCES MB_QUEUE_MAPPING (QUEUE_ID))",
+            "CREATE TABLE IF NOT EXISTS MB_CONTENT ("
+            + "MESSAGE_ID BIGINT, CONTENT_OFFSET INT, MESSAGE_CONTENT BLOB NOT NULL, "
+            + "PRIMARY KEY (MESSAGE_ID, CONTENT_OFFSET), "
+            + "FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE)",
+            "CREATE TABLE IF NOT EXISTS MB_EXPIRATION_DATA ("
+            + "MESSAGE_ID BIGINT UNIQUE, EXPIRATION_TIME BIGINT, DLC_QUEUE_ID INT NOT NULL, "
+            + "MESSAGE_DESTINATION VARCHAR(512) NOT NULL, "
+            + "FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE)",
+            "CREATE TABLE IF NOT EXISTS MB_CONTENT_REFERENCE ("
+            + "MESSAGE_ID BIGINT NOT NULL, CONTENT_ID BIGINT NOT NULL, PRIMARY KEY (MESSAGE_ID), "
+            + "FOREIGN KEY (MESSAGE_ID) REFERENCES MB_METADATA (MESSAGE_ID) ON DELETE CASCADE)",
+            "CREATE INDEX IF NOT EXISTS MB_CONTENT_REFERENCE_CONTENT_ID ON MB_CONTENT_REFERENCE (CONTENT_ID)"
+    };
+
+    private static final int BASIC_CLASS_ID = 60;
+
+    private static final String DLC_QUEUE_NAME = "DeadLetterChannel";
+
+    private static final int QUEUE_COUNT = 20;
+
+    private static final int MESSAGES_PER_QUEUE = 10;
+
+    /**
+     * Time to wait for queue moves to complete
+     */
+    private static final long MOVE_TIMEOUT_MILLIS = 10000;
+
+    private static DataSource[] dataSources = new DataSource[DATA_SOURCE_NAMES.length];
+
+    /**
+     * Whether this test created the jdbc naming context and has to remove it again
+     */
+    private static boolean jdbcContextCreated;
+
+    private ShardedMessageStoreImpl messageStore;
+
+    private ContextStoreStub contextStore;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AndesTestConfiguration.initialize();
+
+        System.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.naming.java.javaURLContextFactory");
+        System.setProperty(Context.URL_PKG_PREFIXES, "org.apache.naming");
+
+        InitialContext initialContext = new InitialContext();
+        try {
+            initialContext.createSubcontext("jdbc");
+            jdbcContextCreated = true;
+        } catch (NameAlreadyBoundException e) {
+            // Created by another test in the same JVM
+        }
+        for (int i = 0; i < DATA_SOURCE_NAMES.length; i++) {
+            dataSources[i] = createDataSource("shardTest" + i);
+            executeStatements(dataSources[i], MESSAGE_STORE_TABLES);
+            initialContext.bind(DATA_SOURCE_NAMES[i], dataSources[i]);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws NamingException {
+        InitialContext initialContext = new InitialContext();
+        for (int i = 0; i < DATA_SOURCE_NAMES.length; i++) {
+            initialContext.unbind(DATA_SOURCE_NAMES[i]);
+            dataSources[i].close();
+        }
+        if (jdbcContextCreated) {
+            initialContext.destroySubcontext("jdbc");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        contextStore = new ContextStoreStub();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (null != messageStore) {
+            messageStore.close();
+            messageStore = null;
+        }
+        for (DataSource dataSource : dataSources) {
+            executeStatements(dataSource, new String[] {
+                    "DELETE FROM MB_CONTENT_REFERENCE", "DELETE FROM MB_METADATA", "DELETE FROM MB_QUEUE_MAPPING" });
+        }
+    }
+
+    /**
+     * Messages are written to the shard of their queue only, and are read back through the sharded store
+     */
+    @Test
+    public void testMessagesStoredInShardOfQueue() throws Exception {
+        messageStore = createMessageStore(2);
+        storeMessages(messageStore);
+
+        ConsistentHashRing ring = messageStore.getRing();
+        boolean[] shardUsed = new boolean[2];
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            shardUsed[ring.getShard(queueName(queue))] = true;
+        }
+        assertTrue("Queues not spread across the shards", shardUsed[0] && shardUsed[1]);
+
+        assertMessagesInShardsOfQueues(messageStore);
+        assertAllMessagesReadable(messageStore);
+    }
+
+    /**
+     * Messages of a queue left in a shard which no longer owns the queue are moved to the shard of the queue at
+     * startup
+     */
+    @Test
+    public void testMisplacedQueuesMovedAtStartup() throws Exception {
+        // Store every message in the first shard as a single shard store would
+        messageStore = createMessageStore(1);
+        storeMessages(messageStore);
+        messageStore.close();
+
+        messageStore = createMessageStore(2);
+        assertAllMessagesReadable(messageStore);
+
+        waitForMoves(messageStore);
+        assertMessagesInShardsOfQueues(messageStore);
+        assertAllMessagesReadable(messageStore);
+    }
+
+    /**
+     * Queues assigned to a shard added at runtime are moved to it while they stay readable, and other queues are
+     * left where they are
+     */
+    @Test
+    public void testQueuesMovedToAddedShard() throws Exception {
+        messageStore = createMessageStore(2);
+        storeMessages(messageStore);
+        ConsistentHashRing oldRing = messageStore.getRing();
+
+        messageStore.addShard(DATA_SOURCE_NAMES[2]);
+        assertAllMessagesReadable(messageStore);
+
+        waitForMoves(messageStore);
+        ConsistentHashRing newRing = messageStore.getRing();
+        assertEquals("Shard not added to the ring", 3, newRing.getShardNames().size());
+
+        int movedQueues = 0;
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            String queueName = queueName(queue);
+            int newShard = newRing.getShard(queueName);
+            if (newShard != oldRing.getShard(queueName)) {
+                assertEquals(queueName + " moved between existing shards", 2, newShard);
+                movedQueues++;
+            }
+        }
+        assertTrue("No queue moved to the added shard", movedQueues > 0);
+
+        assertMessagesInShardsOfQueues(messageStore);
+        assertAllMessagesReadable(messageStore);
+
+        // New messages of moved queues go to the added shard
+        AndesMessage message = createMessage(QUEUE_COUNT * MESSAGES_PER_QUEUE + 1, queueName(0));
+        messageStore.storeMessages(Collections.singletonList(message));
+        assertNotNull("New message not stored in the shard of the queue",
+                messageStore.getShard(newRing.getShard(queueName(0))).getMetadata(message.getMetadata()
+                        .getMessageID()));
+    }
+
+    /**
+     * A move interrupted after copying messages to the target shard and before deleting them from the source shard
+     * completes without copying the messages twice
+     */
+    @Test
+    public void testInterruptedMoveCompleted() throws Exception {
+        messageStore = createMessageStore(1);
+        storeMessages(messageStore);
+        messageStore.close();
+
+        // Copy the first half of the messages of the queues owned by the second shard as the interrupted move did
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList(DATA_SOURCE_NAMES[0], DATA_SOURCE_NAMES[1]),
+                ShardedMessageStoreImpl.DEFAULT_VIRTUAL_NODES);
+        List<AndesMessage> copiedMessages = new ArrayList<>();
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            if (ring.getShard(queueName(queue)) == 1) {
+                for (int i = 0; i < MESSAGES_PER_QUEUE / 2; i++) {
+                    copiedMessages.add(createMessage(messageId(queue, i), queueName(queue)));
+                }
+            }
+        }
+        assertTrue("No queue owned by the second shard", !copiedMessages.isEmpty());
+        messageStore = createMessageStore(DATA_SOURCE_NAMES[1]);
+        messageStore.storeMessages(copiedMessages);
+        messageStore.close();
+
+        messageStore = createMessageStore(2);
+        waitForMoves(messageStore);
+        assertMessagesInShardsOfQueues(messageStore);
+        assertAllMessagesReadable(messageStore);
+    }
+
+    /**
+     * Messages deleted or moved to the dead letter channel by another node while they are copied are not kept in the
+     * target shard
+     */
+    @Test
+    public void testMessagesTouchedByOtherNodeNotMoved() throws Exception {
+        messageStore = createMessageStore(2);
+        storeMessages(messageStore);
+
+        String queueName = queueName(0);
+        int sourceShard = messageStore.getRing().getShard(queueName);
+        int targetShard = 1 - sourceShard;
+        RDBMSMessageStoreImpl source = messageStore.getShard(sourceShard);
+        RDBMSMessageStoreImpl target = messageStore.getShard(targetShard);
+        List<AndesMessageMetadata> batch = source.getNextNMessageMetadataFromQueue(queueName, 0, 100);
+
+        // Changes made by another node after the batch was read, which this node does not know about
+        long deletedMessageId = batch.get(0).getMessageID();
+        long deadLetterMessageId = batch.get(1).getMessageID();
+        source.deleteMessages(Collections.singletonList(deletedMessageId));
+        source.moveMetadataToDLC(deadLetterMessageId, DLC_QUEUE_NAME);
+
+        messageStore.transferMessages(sourceShard, targetShard, batch, batch);
+
+        LongArrayList touchedMessageIds = new LongArrayList(deletedMessageId, deadLetterMessageId);
+        assertTrue("Touched messages kept in the target shard",
+                target.getStoredMessageIds(touchedMessageIds).isEmpty());
+        assertTrue("Dead lettered message removed from the source shard",
+                source.getStoredMessageIds(touchedMessageIds).contains(deadLetterMessageId));
+        assertEquals("Messages not moved", MESSAGES_PER_QUEUE - 2,
+                target.getNextNMessageMetadataFromQueue(queueName, 0, 100).size());
+        assertTrue("Moved messages left in the source shard",
+                source.getNextNMessageMetadataFromQueue(queueName, 0, 100).isEmpty());
+    }
+
+    /**
+     * In a cluster only the coordinator copies messages of moving queues, other nodes keep reading both shards
+     */
+    @Test
+    public void testMessagesMovedByCoordinatorOnly() throws Exception {
+        messageStore = createMessageStore(1);
+        storeMessages(messageStore);
+        messageStore.close();
+
+        AndesContext.getInstance().setClusteringEnabled(true);
+        AndesContext.getInstance().setClusterAgent(createClusterAgent(false));
+        try {
+            messageStore = createMessageStore(2);
+            Thread.sleep(500);
+
+            assertFalse("Moves completed in a node other than the coordinator",
+                    messageStore.getMovingQueues().isEmpty());
+            for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+                assertEquals("Messages of " + queueName(queue) + " moved by a node other than the coordinator",
+                        MESSAGES_PER_QUEUE,
+                        messageStore.getShard(0).getNextNMessageMetadataFromQueue(queueName(queue), 0, 100).size());
+            }
+            assertAllMessagesReadable(messageStore);
+        } finally {
+            AndesContext.getInstance().setClusteringEnabled(false);
+            AndesContext.getInstance().setClusterAgent(null);
+        }
+    }
+
+    /**
+     * A shard added in another node is added when the notification arrives, once
+     */
+    @Test
+    public void testShardAddedOnClusterNotification() throws Exception {
+        messageStore = createMessageStore(2);
+
+        ClusterNotification notification = new ClusterNotification(DATA_SOURCE_NAMES[2],
+                ClusterNotificationListener.NotifiedArtifact.MessageStoreShard.toString(),
+                ClusterNotificationListener.MessageStoreShardChange.Added.toString(), "", "otherNode");
+        MessageStoreShardNotificationHandler handler = new MessageStoreShardNotificationHandler();
+        handler.handleClusterNotification(notification);
+        handler.handleClusterNotification(notification);
+
+        assertEquals("Shard not added", Arrays.asList(DATA_SOURCE_NAMES), messageStore.getShardDataSources());
+    }
+
+    /**
+     * A data source can not be added twice
+     */
+    @Test
+    public void testDuplicateShardRejected() throws Exception {
+        messageStore = createMessageStore(2);
+        try {
+            messageStore.addShard(DATA_SOURCE_NAMES[1]);
+            fail("Data source added twice");
+        } catch (AndesException e) {
+            assertEquals("Ring changed", 2, messageStore.getRing().getShardNames().size());
+        }
+    }
+
+    /**
+     * Create a sharded store using the first data sources
+     *
+     * @param shardCount number of data sources to use
+     * @return initialised store
+     */
+    private ShardedMessageStoreImpl createMessageStore(int shardCount) throws AndesException {
+        return createMessageStore(Arrays.copyOf(DATA_SOURCE_NAMES, shardCount));
+    }
+
+    /**
+     * Create a sharded store using the given data sources
+     *
+     * @param dataSourceNames names of the data sources of the shards
+     * @return initialised store
+     */
+    private ShardedMessageStoreImpl createMessageStore(String... dataSourceNames) throws AndesException {
+        StringBuilder dataSourceList = new StringBuilder();
+        for (int i = 0; i < dataSourceNames.length; i++) {
+            if (i > 0) {
+                dataSourceList.append(',');
+            }
+            dataSourceList.append(dataSourceNames[i]);
+        }
+
+        ConfigurationProperties connectionProperties = new ConfigurationProperties();
+        connectionProperties.addProperty(ShardedMessageStoreImpl.PROP_DATA_SOURCES, dataSourceList.toString());
+        connectionProperties.addProperty(ShardedMessageStoreImpl.PROP_REBALANCE_BATCH_SIZE, "3");
+        ShardedMessageStoreImpl messageStore = new ShardedMessageStoreImpl();
+        messageStore.initializeMessageStore(contextStore.create(), connectionProperties);
+        return messageStore;
+    }
+
+    private static ClusterAgent createClusterAgent(final boolean coordinator) {
+        return (ClusterAgent) Proxy.newProxyInstance(ClusterAgent.class.getClassLoader(),
+                new Class<?>[] { ClusterAgent.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("isCoordinator".equals(method.getName())) {
+                            return coordinator;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static void storeMessages(ShardedMessageStoreImpl messageStore) throws AndesException {
+        List<AndesMessage> messages = new ArrayList<>();
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            for (int i = 0; i < MESSAGES_PER_QUEUE; i++) {
+                messages.add(createMessage(messageId(queue, i), queueName(queue)));
+            }
+        }
+        messageStore.storeMessages(messages);
+    }
+
+    private static void assertAllMessagesReadable(ShardedMessageStoreImpl messageStore) throws AndesException {
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            String queueName = queueName(queue);
+            List<AndesMessageMetadata> metadataList =
+                    messageStore.getNextNMessageMetadataFromQueue(queueName, 0, 100);
+            assertEquals("Messages of " + queueName + " lost", MESSAGES_PER_QUEUE, metadataList.size());
+            // A batch being moved is counted in both shards until it is deleted from the source shard
+            assertTrue("Messages of " + queueName + " not counted",
+                    messageStore.getMessageCountForQueue(queueName) >= MESSAGES_PER_QUEUE);
+            for (int i = 0; i < MESSAGES_PER_QUEUE; i++) {
+                long messageId = messageId(queue, i);
+                assertEquals("Messages of " + queueName + " not ordered", messageId,
+                        metadataList.get(i).getMessageID());
+
+                AndesMessagePart messagePart = messageStore.getContent(messageId, 0);
+                assertNotNull("Content of message " + messageId + " lost", messagePart);
+                assertArrayEquals("Wrong content of message " + messageId, content(messageId),
+                        messagePart.getData());
+            }
+        }
+    }
+
+    private static void assertMessagesInShardsOfQueues(ShardedMessageStoreImpl messageStore)
+            throws AndesException {
+        ConsistentHashRing ring = messageStore.getRing();
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            String queueName = queueName(queue);
+            assertEquals("Wrong message count of " + queueName, MESSAGES_PER_QUEUE,
+                    messageStore.getMessageCountForQueue(queueName));
+            int queueShard = ring.getShard(queueName);
+            for (int shard : messageStore.allShards()) {
+                int messageCount = messageStore.getShard(shard)
+                        .getNextNMessageMetadataFromQueue(queueName, 0, 100).size();
+                assertEquals("Unexpected messages of " + queueName + " in shard " + shard,
+                        shard == queueShard ? MESSAGES_PER_QUEUE : 0, messageCount);
+            }
+        }
+    }
+
+    /**
+     * Wait until every queue is read from a single shard
+     */
+    private static void waitForMoves(ShardedMessageStoreImpl messageStore) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + MOVE_TIMEOUT_MILLIS;
+        for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+            while (messageStore.getReadShards(queueName(queue)).size() > 1) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("Queue " + queueName(queue) + " not moved in time");
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static AndesMessage createMessage(long messageId, String storageQueueName) {
+        byte[] content = content(messageId);
+        MessageMetaData amqMetadata = new MessageMetaData(new MessagePublishInfoImpl(new AMQShortString("amq.direct"),
+                false, false, new AMQShortString(storageQueueName)),
+                new ContentHeaderBody(new BasicContentHeaderProperties(), BASIC_CLASS_ID), 0);
+        byte[] underlying = new byte[1 + amqMetadata.getStorableSize()];
+        underlying[0] = (byte) amqMetadata.getType().ordinal();
+        ByteBuffer buffer = ByteBuffer.wrap(underlying);
+        buffer.position(1);
+        amqMetadata.writeToBuffer(0, buffer.slice());
+
+        AndesMessageMetadata metadata = new AndesMessageMetadata(messageId, underlying, false);
+        metadata.setStorageQueueName(storageQueueName);
+        metadata.setMessageContentLength(content.length);
+
+        AndesMessagePart messagePart = new AndesMessagePart();
+        messagePart.setMessageID(messageId);
+        messagePart.setOffSet(0);
+        messagePart.setData(content);
+
+        AndesMessage message = new AndesMessage(metadata);
+        message.addMessagePart(messagePart);
+        return message;
+    }
+
+    private static String queueName(int queue) {
+        return "shardTestQueue" + queue;
+    }
+
+    private static long messageId(int queue, int index) {
+        return queue * MESSAGES_PER_QUEUE + index + 1;
+    }
+
+    private static byte[] content(long messageId) {
+        return ("content of " + messageId).getBytes();
+    }
+
+    private static DataSource createDataSource(String databaseName) {
+        DataSource dataSource = new DataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setDefaultAutoCommit(false);
+        return dataSource;
+    }
+
+    private static void executeStatements(DataSource dataSource, String[] statements) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+            statement.close();
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Context store knowing only the queues of the test and keeping the queue message counters in memory
+     */
+    private static class ContextStoreStub implements InvocationHandler {
+
+        private final List<StorageQueue> queues = new ArrayList<>();
+
+        private final Map<String, Long> messageCounts = new HashMap<>();
+
+        ContextStoreStub() {
+            for (int queue = 0; queue < QUEUE_COUNT; queue++) {
+                queues.add(new StorageQueue(queueName(queue), true, false, null, false));
+            }
+        }
+
+        AndesContextStore create() {
+            return (AndesContextStore) Proxy.newProxyInstance(AndesContextStore.class.getClassLoader(),
+                    new Class<?>[] { AndesContextStore.class }, this);
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "getAllQueuesStored":
+                return queues;
+            case "addMessageCounterForQueue":
+                if (!messageCounts.containsKey(args[0])) {
+                    messageCounts.put((String) args[0], 0L);
+                }
+                return null;
+            case "removeMessageCounterForQueue":
+                messageCounts.remove(args[0]);
+                return null;
+            case "getMessageCountForQueue":
+                return getMessageCount((String) args[0]);
+            case "incrementMessageCountForQueue":
+                messageCounts.put((String) args[0], getMessageCount((String) args[0]) + (Long) args[1]);
+                return null;
+            case "decrementMessageCountForQueue":
+                messageCounts.put((String) args[0], getMessageCount((String) args[0]) - (Long) args[1]);
+                return null;
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private long getMessageCount(String storageQueueName) {
+            Long count = messageCounts.get(storageQueueName);
+            return null == count ? 0L : count;
+        }
+    }
+}
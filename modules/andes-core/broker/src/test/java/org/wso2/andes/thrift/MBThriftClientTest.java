@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.thrift;
+
+import org.apache.thrift.ProcessFunction;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TBaseProcessor;
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.transport.TServerSocket;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesTestConfiguration;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.server.cluster.ClusterAgent;
+import org.wso2.andes.thrift.slot.gen.SlotInfo;
+import org.wso2.andes.thrift.slot.gen.SlotManagementService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for batched slot calls of {@link MBThriftClient} against a coordinator with and without batched calls
+ */
+public class MBThriftClientTest {
+
+    private static final String NODE_ID = "node1";
+
+    private static final String FAILING_QUEUE = "failingQueue";
+
+    private TServer server;
+
+    private RecordingCoordinator coordinator;
+
+    /**
+     * Names of calls received by the server, including calls rejected as unknown methods
+     */
+    private List<String> receivedCalls;
+
+    @BeforeClass
+    public static void initializeConfiguration() throws Exception {
+        AndesTestConfiguration.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        if (null != server) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Slots of several queues are received in one call and a failure for one queue only affects that queue
+     */
+    @Test
+    public void testBatchedSlotRequest() throws Exception {
+        MBThriftClient client = startCoordinator(true);
+
+        List<Slot> slots = client.getSlots(Arrays.asList("queue1", FAILING_QUEUE, "queue2"), NODE_ID);
+
+        assertEquals("Wrong number of slots", 3, slots.size());
+        assertEquals("Wrong slot of queue", "queue1", slots.get(0).getStorageQueueName());
+        assertNull("Slot returned for failed queue", slots.get(1));
+        assertEquals("Wrong slot of queue", "queue2", slots.get(2).getStorageQueueName());
+        assertEquals("Slots not requested in one call", 1, coordinator.calls("getSlotInfos"));
+        assertEquals("Slots requested one by one", 0, coordinator.calls("getSlotInfo"));
+    }
+
+    /**
+     * Slots are requested one queue at a time from a coordinator which does not know batched calls. The batched
+     * call is not attempted again.
+     */
+    @Test
+    public void testSlotRequestFallsBackToSingleCalls() throws Exception {
+        MBThriftClient client = startCoordinator(false);
+
+        List<Slot> slots = client.getSlots(Arrays.asList("queue1", "queue2"), NODE_ID);
+        assertEquals("Wrong slot of queue", "queue1", slots.get(0).getStorageQueueName());
+        assertEquals("Wrong slot of queue", "queue2", slots.get(1).getStorageQueueName());
+        assertEquals("Slots not requested one by one", 2, coordinator.calls("getSlotInfo"));
+        assertEquals("Batched call not attempted once", 1, Collections.frequency(receivedCalls, "getSlotInfos"));
+
+        client.getSlots(Arrays.asList("queue1", "queue2"), NODE_ID);
+        assertEquals("Slots not requested one by one", 4, coordinator.calls("getSlotInfo"));
+        assertEquals("Batched call attempted again", 1, Collections.frequency(receivedCalls, "getSlotInfos"));
+    }
+
+    /**
+     * Slots of several queues are submitted in one call
+     */
+    @Test
+    public void testBatchedSlotSubmit() throws Exception {
+        MBThriftClient client = startCoordinator(true);
+
+        client.updateMessageIds(Arrays.asList(createSlot("queue1", 1, 10), createSlot("queue2", 11, 20)), NODE_ID,
+                5);
+
+        assertEquals("Slots not submitted in one call", 1, coordinator.calls("updateMessageIds"));
+        assertEquals("Wrong slots submitted", Arrays.asList("queue1:1-10@5", "queue2:11-20@5"),
+                coordinator.submittedSlots);
+    }
+
+    /**
+     * Slots are submitted one at a time to a coordinator which does not know batched calls
+     */
+    @Test
+    public void testSlotSubmitFallsBackToSingleCalls() throws Exception {
+        MBThriftClient client = startCoordinator(false);
+
+        client.updateMessageIds(Arrays.asList(createSlot("queue1", 1, 10), createSlot("queue2", 11, 20)), NODE_ID,
+                5);
+
+        assertEquals("Slots not submitted one by one", 2, coordinator.calls("updateMessageId"));
+        assertEquals("Batched call not attempted once", 1,
+                Collections.frequency(receivedCalls, "updateMessageIds"));
+        assertEquals("Wrong slots submitted", Arrays.asList("queue1:1-10@5", "queue2:11-20@5"),
+                coordinator.submittedSlots);
+    }
+
+    /**
+     * Start a coordinator on a free port and create a client connecting to it
+     *
+     * @param batchCallsSupported false to start a coordinator which does not know batched calls
+     * @return client connecting to the coordinator
+     */
+    private MBThriftClient startCoordinator(boolean batchCallsSupported) throws Exception {
+        coordinator = new RecordingCoordinator();
+        receivedCalls = new CopyOnWriteArrayList<>();
+
+        Map<String, ProcessFunction<SlotManagementService.Iface, ? extends TBase>> processMap =
+                new HashMap<>(new SlotManagementService.Processor<SlotManagementService.Iface>(coordinator)
+                        .getProcessMapView());
+        if (!batchCallsSupported) {
+            processMap.remove("getSlotInfos");
+            processMap.remove("updateMessageIds");
+        }
+        final TProcessor processor = new TBaseProcessor<SlotManagementService.Iface>(coordinator, processMap) {
+        };
+        TProcessor countingProcessor = new TProcessor() {
+            @Override
+            public boolean process(TProtocol in, TProtocol out) throws TException {
+                return processor.process(new TProtocolDecorator(in) {
+                    @Override
+                    public TMessage readMessageBegin() throws TException {
+                        TMessage message = super.readMessageBegin();
+                        receivedCalls.add(message.name);
+                        return message;
+                    }
+                }, out);
+            }
+        };
+
+        TServerSocket serverSocket = new TServerSocket(0);
+        final InetSocketAddress address = new InetSocketAddress("localhost",
+                serverSocket.getServerSocket().getLocalPort());
+        server = new TThreadPoolServer(new TThreadPoolServer.Args(serverSocket).processor(countingProcessor));
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.serve();
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        ClusterAgent clusterAgent = (ClusterAgent) Proxy.newProxyInstance(ClusterAgent.class.getClassLoader(),
+                new Class<?>[] { ClusterAgent.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getThriftAddressOfCoordinator".equals(method.getName())) {
+                            return address;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        AndesContext.getInstance().setClusterAgent(clusterAgent);
+        return new MBThriftClient();
+    }
+
+    private static Slot createSlot(String queueName, long start, long end) {
+        Slot slot = new Slot();
+        slot.setStorageQueueName(queueName);
+        slot.setStartMessageId(start);
+        slot.setEndMessageId(end);
+        return slot;
+    }
+
+    /**
+     * Coordinator which records the calls it receives. Every queue gets a slot except {@link #FAILING_QUEUE}.
+     */
+    private static class RecordingCoordinator implements SlotManagementService.Iface {
+
+        private final List<String> calls = new CopyOnWriteArrayList<>();
+
+        private final List<String> submittedSlots = new CopyOnWriteArrayList<>();
+
+        int calls(String methodName) {
+            return Collections.frequency(calls, methodName);
+        }
+
+        @Override
+        public SlotInfo getSlotInfo(String queueName, String nodeId) throws TException {
+            calls.add("getSlotInfo");
+            return new SlotInfo(1, 10, queueName, nodeId, false);
+        }
+
+        @Override
+        public void updateMessageId(String queueName, String nodeId, long startMessageId, long endMessageId,
+                                    long localSafeZone) throws TException {
+            calls.add("updateMessageId");
+            submittedSlots.add(queueName + ":" + startMessageId + "-" + endMessageId + "@" + localSafeZone);
+        }
+
+        @Override
+        public boolean deleteSlot(String queueName, SlotInfo slotInfo, String nodeId) throws TException {
+            calls.add("deleteSlot");
+            return true;
+        }
+
+        @Override
+        public boolean healthCheck() throws TException {
+            calls.add("healthCheck");
+            return true;
+        }
+
+        @Override
+        public void reAssignSlotWhenNoSubscribers(String nodeId, String queueName) throws TException {
+            calls.add("reAssignSlotWhenNoSubscribers");
+        }
+
+        @Override
+        public long updateCurrentMessageIdForSafeZone(long messageId, String nodeId) throws TException {
+            calls.add("updateCurrentMessageIdForSafeZone");
+            return messageId;
+        }
+
+        @Override
+        public void clearAllActiveSlotRelationsToQueue(String queueName) throws TException {
+            calls.add("clearAllActiveSlotRelationsToQueue");
+        }
+
+        @Override
+        public List<SlotInfo> getSlotInfos(List<String> queueNames, String nodeId) throws TException {
+            calls.add("getSlotInfos");
+            List<SlotInfo> slotInfos = new ArrayList<>(queueNames.size());
+            for (String queueName : queueNames) {
+                if (FAILING_QUEUE.equals(queueName)) {
+                    SlotInfo failedSlotInfo = new SlotInfo();
+                    failedSlotInfo.setQueueName(queueName);
+                    failedSlotInfo.setErrorMessage("Slot store unavailable");
+                    slotInfos.add(failedSlotInfo);
+                } else {
+                    slotInfos.add(new SlotInfo(1, 10, queueName, nodeId, false));
+                }
+            }
+            return slotInfos;
+        }
+
+        @Override
+        public void updateMessageIds(List<SlotInfo> slotInfos, String nodeId, long localSafeZone)
+                throws TException {
+            calls.add("updateMessageIds");
+            for (SlotInfo slotInfo : slotInfos) {
+                submittedSlots.add(slotInfo.getQueueName() + ":" + slotInfo.getStartMessageId() + "-"
+                        + slotInfo.getEndMessageId() + "@" + localSafeZone);
+            }
+        }
+    }
+}
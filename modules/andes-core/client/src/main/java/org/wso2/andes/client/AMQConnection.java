@@ -188,6 +188,11 @@ public class AMQConnection extends Closeable implements Connection, QueueConnect
     //By default it's async publish
     private String _syncPublish = "";
 
+    /**
+     * True if the non transacted producers of this connection publish asynchronously in batches
+     */
+    private boolean _asyncPublish;
+
     // Indicates whether to use the old map message format or the
     // new amqp-0-10 encoded format.
     private boolean _useLegacyMapMessageFormat;
@@ -326,6 +331,16 @@ public class AMQConnection extends Closeable implements Connection, QueueConnect
             _syncPublish = System.getProperty((ClientProperties.SYNC_PUBLISH_PROP_NAME),_syncPublish);
         }
 
+        if (connectionURL.getOption(ConnectionURL.OPTIONS_ASYNC_PUBLISH) != null)
+        {
+            _asyncPublish = Boolean.parseBoolean(connectionURL.getOption(ConnectionURL.OPTIONS_ASYNC_PUBLISH));
+        }
+        else
+        {
+            // use the default value set for all connections
+            _asyncPublish = Boolean.getBoolean(ClientProperties.ASYNC_PUBLISH_PROP_NAME);
+        }
+
         if (connectionURL.getOption(ConnectionURL.OPTIONS_USE_LEGACY_MAP_MESSAGE_FORMAT) != null)
         {
             _useLegacyMapMessageFormat =  Boolean.parseBoolean(
@@ -1550,6 +1565,14 @@ public class AMQConnection extends Closeable implements Connection, QueueConnect
         return _syncPublish;
     }
 
+    /**
+     * Indicates whether non transacted producers buffer messages and publish them in batches
+     */
+    public boolean isAsyncPublish()
+    {
+        return _asyncPublish;
+    }
+
     public int getNextChannelID()
     {
         return _sessions.getNextChannelId();
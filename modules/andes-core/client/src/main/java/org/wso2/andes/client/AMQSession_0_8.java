@@ -84,6 +84,13 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
     /** Used for debugging. */
     private static final Logger _logger = LoggerFactory.getLogger(AMQSession.class);
 
+    /**
+     * Batches the messages of all producers of the session when asynchronous publishing is enabled, null otherwise.
+     * Sharing it keeps the messages of different producers in the order they were sent. Transacted sessions always
+     * publish synchronously so that a commit never overtakes buffered messages.
+     */
+    private final AsyncPublisher _asyncPublisher;
+
     /**
      * Creates a new session on a connection.
      *
@@ -100,6 +107,15 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
     {
 
          super(con,channelId,transacted,acknowledgeMode,messageFactoryRegistry,defaultPrefetchHighMark,defaultPrefetchLowMark);
+
+        if (con.isAsyncPublish() && !transacted)
+        {
+            _asyncPublisher = new AsyncPublisher(con.getProtocolHandler(), con.getFailoverMutex());
+        }
+        else
+        {
+            _asyncPublisher = null;
+        }
     }
 
     /**
@@ -119,6 +135,16 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
              defaultPrefetchLow);
     }
 
+    /**
+     * Get the publisher batching the messages of the producers of this session
+     *
+     * @return the publisher, or null if the session publishes synchronously
+     */
+    AsyncPublisher getAsyncPublisher()
+    {
+        return _asyncPublisher;
+    }
+
     private ProtocolVersion getProtocolVersion()
     {
         return getProtocolHandler().getProtocolVersion();
@@ -156,6 +182,12 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
 
     public void sendClose(long timeout) throws AMQException, FailoverException
     {
+        // Buffered messages are written before the channel is closed
+        if (_asyncPublisher != null)
+        {
+            _asyncPublisher.flush();
+        }
+
         // we also need to check the state manager for 08/09 as the
         // _connection variable may not be updated in time by the error receiving
         // thread.
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.andes.client.protocol.AMQProtocolHandler;
+import org.wso2.andes.configuration.ClientProperties;
+import org.wso2.andes.framing.AMQDataBlock;
+import org.wso2.andes.framing.AMQFrame;
+import org.wso2.andes.framing.CompositeAMQDataBlock;
+import org.wso2.andes.jms.CompletionListener;
+
+/**
+ * Buffers the frames of messages sent by the 0-8/0-9-1 producers of a session and writes them to the broker
+ * connection in batches, saving a network write per message. The producers of a session share the publisher, so
+ * their messages reach the broker in the order they were sent. A batch is flushed when it reaches the configured size in bytes or number of
+ * messages, or when its first message has waited for the linger time.
+ * <p>
+ * The broker does not confirm AMQP 0-9-1 publishes, hence a message is completed once its batch is written to the
+ * connection. Buffering and writing are guarded by the failover mutex of the connection, which also serialises the
+ * synchronous sends.
+ */
+class AsyncPublisher
+{
+    private static final Logger _logger = LoggerFactory.getLogger(AsyncPublisher.class);
+
+    /**
+     * Flushes batches that reached their linger time. Shared by the asynchronous producers of all connections.
+     */
+    private static final ScheduledExecutorService _lingerExecutor =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "AsyncPublisherLinger");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final AMQProtocolHandler _protocolHandler;
+
+    private final Object _failoverMutex;
+
+    private final long _batchSize;
+
+    private final long _lingerTime;
+
+    private final int _maxInFlight;
+
+    private final Runnable _lingerTask = new Runnable()
+    {
+        public void run()
+        {
+            flush();
+        }
+    };
+
+    private List<AMQDataBlock> _frames = new ArrayList<AMQDataBlock>();
+
+    private List<PendingMessage> _pendingMessages = new ArrayList<PendingMessage>();
+
+    private long _pendingBytes;
+
+    AsyncPublisher(AMQProtocolHandler protocolHandler, Object failoverMutex)
+    {
+        _protocolHandler = protocolHandler;
+        _failoverMutex = failoverMutex;
+        _batchSize = Integer.getInteger(ClientProperties.ASYNC_PUBLISH_BATCH_SIZE_PROP_NAME,
+                                        ClientProperties.ASYNC_PUBLISH_BATCH_SIZE_DEFAULT);
+        _lingerTime = Long.getLong(ClientProperties.ASYNC_PUBLISH_LINGER_PROP_NAME,
+                                   ClientProperties.ASYNC_PUBLISH_LINGER_DEFAULT);
+        _maxInFlight = Integer.getInteger(ClientProperties.ASYNC_PUBLISH_MAX_IN_FLIGHT_PROP_NAME,
+                                          ClientProperties.ASYNC_PUBLISH_MAX_IN_FLIGHT_DEFAULT);
+    }
+
+    /**
+     * Buffer the frames of a message, flushing the batch if it is full
+     *
+     * @param frames             publish, header and body frames of the message
+     * @param message            the message as given by the application
+     * @param completionListener listener notified once the message is written, may be null
+     */
+    void publish(AMQFrame[] frames, Message message, CompletionListener completionListener)
+    {
+        boolean flushNow;
+        boolean firstMessage;
+        synchronized (_failoverMutex)
+        {
+            firstMessage = _pendingMessages.isEmpty();
+            for (AMQFrame frame : frames)
+            {
+                _frames.add(frame);
+                _pendingBytes += frame.getSize();
+            }
+            _pendingMessages.add(new PendingMessage(message, completionListener));
+            flushNow = (_pendingBytes >= _batchSize) || (_pendingMessages.size() >= _maxInFlight);
+        }
+
+        if (flushNow)
+        {
+            flush();
+        }
+        else if (firstMessage)
+        {
+            _lingerExecutor.schedule(_lingerTask, _lingerTime, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write the buffered messages to the connection and complete them
+     */
+    void flush()
+    {
+        List<PendingMessage> flushedMessages;
+        RuntimeException failure = null;
+        synchronized (_failoverMutex)
+        {
+            if (_pendingMessages.isEmpty())
+            {
+                return;
+            }
+
+            CompositeAMQDataBlock batch = new CompositeAMQDataBlock(_frames.toArray(new AMQDataBlock[_frames.size()]));
+            flushedMessages = _pendingMessages;
+            _frames = new ArrayList<AMQDataBlock>();
+            _pendingMessages = new ArrayList<PendingMessage>();
+            _pendingBytes = 0;
+
+            try
+            {
+                _protocolHandler.writeFrame(batch, true);
+            }
+            catch (RuntimeException e)
+            {
+                failure = e;
+            }
+        }
+
+        if (failure == null)
+        {
+            complete(flushedMessages);
+        }
+        else
+        {
+            fail(flushedMessages, failure);
+        }
+    }
+
+    private void complete(List<PendingMessage> messages)
+    {
+        for (PendingMessage pendingMessage : messages)
+        {
+            if (pendingMessage._completionListener != null)
+            {
+                try
+                {
+                    pendingMessage._completionListener.onCompletion(pendingMessage._message);
+                }
+                catch (RuntimeException e)
+                {
+                    _logger.error("Completion listener failed", e);
+                }
+            }
+        }
+    }
+
+    private void fail(List<PendingMessage> messages, RuntimeException failure)
+    {
+        JMSException exception = new JMSException("Unable to send message");
+        exception.setLinkedException(failure);
+        exception.initCause(failure);
+
+        int unnotifiedCount = 0;
+        for (PendingMessage pendingMessage : messages)
+        {
+            if (pendingMessage._completionListener != null)
+            {
+                try
+                {
+                    pendingMessage._completionListener.onException(pendingMessage._message, exception);
+                }
+                catch (RuntimeException e)
+                {
+                    _logger.error("Completion listener failed", e);
+                }
+            }
+            else
+            {
+                unnotifiedCount++;
+            }
+        }
+
+        if (unnotifiedCount > 0)
+        {
+            _logger.error("Unable to send " + unnotifiedCount + " buffered messages", failure);
+        }
+    }
+
+    /**
+     * A buffered message with the listener to notify once it is written
+     */
+    private static class PendingMessage
+    {
+        private final Message _message;
+
+        private final CompletionListener _completionListener;
+
+        private PendingMessage(Message message, CompletionListener completionListener)
+        {
+            _message = message;
+            _completionListener = completionListener;
+        }
+    }
+}
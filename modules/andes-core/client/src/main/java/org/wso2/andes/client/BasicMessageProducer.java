@@ -39,6 +39,7 @@ import org.wso2.andes.client.message.AbstractJMSMessage;
 import org.wso2.andes.client.message.MessageConverter;
 import org.wso2.andes.client.protocol.AMQProtocolHandler;
 import org.wso2.andes.framing.ContentBody;
+import org.wso2.andes.jms.CompletionListener;
 import org.wso2.andes.util.UUIDGen;
 import org.wso2.andes.util.UUIDs;
 import org.slf4j.Logger;
@@ -376,6 +377,30 @@ public abstract class BasicMessageProducer extends Closeable implements org.wso2
         }
     }
 
+    public void send(Message message, CompletionListener completionListener) throws JMSException
+    {
+        checkPreConditions();
+        checkInitialDestination();
+        synchronized (_connection.getFailoverMutex())
+        {
+            sendImpl(_destination, message, _deliveryMode, _messagePriority, _timeToLive, _mandatory, _immediate,
+                     _waitUntilSent, completionListener);
+        }
+    }
+
+    public void send(Destination destination, Message message, CompletionListener completionListener)
+        throws JMSException
+    {
+        checkPreConditions();
+        checkDestination(destination);
+        synchronized (_connection.getFailoverMutex())
+        {
+            validateDestination(destination);
+            sendImpl((AMQDestination) destination, message, _deliveryMode, _messagePriority, _timeToLive, _mandatory,
+                     _immediate, _waitUntilSent, completionListener);
+        }
+    }
+
     private AbstractJMSMessage convertToNativeMessage(Message message) throws JMSException
     {
         if (message instanceof AbstractJMSMessage)
@@ -471,6 +496,20 @@ public abstract class BasicMessageProducer extends Closeable implements org.wso2
      */
     protected void sendImpl(AMQDestination destination, Message origMessage, int deliveryMode, int priority, long timeToLive,
                             boolean mandatory, boolean immediate, boolean wait) throws JMSException
+    {
+        sendImpl(destination, origMessage, deliveryMode, priority, timeToLive, mandatory, immediate, wait, null);
+    }
+
+    /**
+     * The caller of this method must hold the failover mutex.
+     *
+     * @param completionListener listener notified once the message is sent, may be null
+     *
+     * @throws JMSException
+     */
+    protected void sendImpl(AMQDestination destination, Message origMessage, int deliveryMode, int priority, long timeToLive,
+                            boolean mandatory, boolean immediate, boolean wait, CompletionListener completionListener)
+        throws JMSException
     {
         checkTemporaryDestination(destination);
         origMessage.setJMSDestination(destination);
@@ -498,7 +537,8 @@ public abstract class BasicMessageProducer extends Closeable implements org.wso2
             message.setJMSMessageID(messageId);
         }
 
-        sendMessage(destination, origMessage, message, messageId, deliveryMode, priority, timeToLive, mandatory, immediate, wait);
+        sendMessage(destination, origMessage, message, messageId, deliveryMode, priority, timeToLive, mandatory, immediate, wait,
+                    completionListener);
 
         if (message != origMessage)
         {
@@ -518,7 +558,8 @@ public abstract class BasicMessageProducer extends Closeable implements org.wso2
 
     abstract void sendMessage(AMQDestination destination, Message origMessage, AbstractJMSMessage message,
                               UUID messageId, int deliveryMode, int priority, long timeToLive, boolean mandatory,
-                              boolean immediate, boolean wait) throws JMSException;
+                              boolean immediate, boolean wait, CompletionListener completionListener)
+        throws JMSException;
 
     private void checkTemporaryDestination(AMQDestination destination) throws JMSException
     {
@@ -37,6 +37,7 @@ import org.wso2.andes.client.message.AMQMessageDelegate_0_10;
 import org.wso2.andes.client.message.AbstractJMSMessage;
 import org.wso2.andes.client.messaging.address.Link.Reliability;
 import org.wso2.andes.client.protocol.AMQProtocolHandler;
+import org.wso2.andes.jms.CompletionListener;
 import org.wso2.andes.transport.DeliveryProperties;
 import org.wso2.andes.transport.Header;
 import org.wso2.andes.transport.MessageAcceptMode;
@@ -102,7 +103,7 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
      */
     void sendMessage(AMQDestination destination, Message origMessage, AbstractJMSMessage message,
                      UUID messageId, int deliveryMode, int priority, long timeToLive, boolean mandatory,
-                     boolean immediate, boolean wait) throws JMSException
+                     boolean immediate, boolean wait, CompletionListener completionListener) throws JMSException
     {
         message.prepareForSending();
 
@@ -241,6 +242,11 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
             jmse.initCause(e);
             throw jmse;
         }
+
+        if (completionListener != null)
+        {
+            completionListener.onCompletion(origMessage);
+        }
     }
 
 
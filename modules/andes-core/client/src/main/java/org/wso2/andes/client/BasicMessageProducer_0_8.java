@@ -39,15 +39,22 @@ import org.wso2.andes.framing.CompositeAMQDataBlock;
 import org.wso2.andes.framing.ContentBody;
 import org.wso2.andes.framing.ContentHeaderBody;
 import org.wso2.andes.framing.ExchangeDeclareBody;
+import org.wso2.andes.jms.CompletionListener;
 
 public class BasicMessageProducer_0_8 extends BasicMessageProducer
 {
+    /**
+     * Batches the messages of the session when asynchronous publishing is enabled, null otherwise
+     */
+    private final AsyncPublisher _asyncPublisher;
 
     BasicMessageProducer_0_8(AMQConnection connection, AMQDestination destination, boolean transacted, int channelId,
             AMQSession session, AMQProtocolHandler protocolHandler, long producerId, boolean immediate, boolean mandatory,
             boolean waitUntilSent) throws AMQException
     {
         super(connection, destination,transacted,channelId,session, protocolHandler, producerId, immediate, mandatory,waitUntilSent);
+
+        _asyncPublisher = ((AMQSession_0_8) session).getAsyncPublisher();
     }
 
     void declareDestination(AMQDestination destination)
@@ -72,7 +79,7 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
 
     void sendMessage(AMQDestination destination, Message origMessage, AbstractJMSMessage message,
                      UUID messageId, int deliveryMode,int priority, long timeToLive, boolean mandatory,
-                     boolean immediate, boolean wait) throws JMSException
+                     boolean immediate, boolean wait, CompletionListener completionListener) throws JMSException
     {
         BasicPublishBody body = getSession().getMethodRegistry().createBasicPublishBody(_session.getTicket(),
                                                                                         destination.getExchangeName(),
@@ -158,7 +165,6 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
 
         frames[0] = publishFrame;
         frames[1] = contentHeaderFrame;
-        CompositeAMQDataBlock compositeFrame = new CompositeAMQDataBlock(frames);
 
         try
         {
@@ -172,7 +178,28 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
             throw jmse;
         }
 
-        _protocolHandler.writeFrame(compositeFrame, wait);
+        if (_asyncPublisher != null)
+        {
+            _asyncPublisher.publish(frames, origMessage, completionListener);
+        }
+        else
+        {
+            _protocolHandler.writeFrame(new CompositeAMQDataBlock(frames), wait);
+            if (completionListener != null)
+            {
+                completionListener.onCompletion(origMessage);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (_asyncPublisher != null)
+        {
+            _asyncPublisher.flush();
+        }
+        super.close();
     }
 
     /**
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.jms;
+
+import javax.jms.Message;
+
+/**
+ * Callback notified when a message sent with
+ * {@link MessageProducer#send(javax.jms.Message, CompletionListener)} is completed. Mirrors the completion listener
+ * of JMS 2.0 for the JMS 1.1 API implemented by the client.
+ * <p>
+ * A message is completed once it is written to the broker connection. The application must not modify the message
+ * until then. Callbacks are invoked by the thread that flushes the message and should return quickly.
+ */
+public interface CompletionListener
+{
+    /**
+     * Notified when the message has been sent
+     *
+     * @param message the message that was sent
+     */
+    void onCompletion(Message message);
+
+    /**
+     * Notified when the message could not be sent
+     *
+     * @param message   the message that was not sent
+     * @param exception the reason the message could not be sent
+     */
+    void onException(Message message, Exception exception);
+}
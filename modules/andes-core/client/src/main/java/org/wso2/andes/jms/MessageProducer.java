@@ -54,4 +54,23 @@ public interface MessageProducer extends javax.jms.MessageProducer
     void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive,
                      boolean mandatory, boolean immediate, boolean waitUntilSent) throws JMSException;
 
+    /**
+     * Send a message to the destination of the producer and notify the listener once the message is sent. When
+     * asynchronous publishing is enabled the call returns as soon as the message is buffered.
+     *
+     * @param message            the message to send
+     * @param completionListener listener notified when the message is sent or fails to be sent
+     */
+    void send(Message message, CompletionListener completionListener) throws JMSException;
+
+    /**
+     * Send a message to the given destination and notify the listener once the message is sent. When asynchronous
+     * publishing is enabled the call returns as soon as the message is buffered.
+     *
+     * @param destination        the destination to send to
+     * @param message            the message to send
+     * @param completionListener listener notified when the message is sent or fails to be sent
+     */
+    void send(Destination destination, Message message, CompletionListener completionListener) throws JMSException;
+
 }
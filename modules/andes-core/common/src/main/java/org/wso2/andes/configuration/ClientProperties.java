@@ -61,6 +61,35 @@ public class ClientProperties
      */
     public static final String SYNC_PUBLISH_PROP_NAME = "sync_publish";
 
+    /**
+     * When true messages of non transacted 0-8/0-9-1 producers are buffered and written to the broker in batches.
+     * A batch is flushed when it reaches async_publish_batch_size bytes or async_publish_max_in_flight messages,
+     * or async_publish_linger_ms milliseconds after its first message.
+     * type: boolean
+     */
+    public static final String ASYNC_PUBLISH_PROP_NAME = "async_publish";
+
+    /**
+     * Size in bytes of the frames buffered by an asynchronous producer before they are flushed.
+     * type: int
+     */
+    public static final String ASYNC_PUBLISH_BATCH_SIZE_PROP_NAME = "async_publish_batch_size";
+    public static final int ASYNC_PUBLISH_BATCH_SIZE_DEFAULT = 65536;
+
+    /**
+     * Maximum time in milliseconds a message is buffered by an asynchronous producer.
+     * type: long
+     */
+    public static final String ASYNC_PUBLISH_LINGER_PROP_NAME = "async_publish_linger_ms";
+    public static final long ASYNC_PUBLISH_LINGER_DEFAULT = 5;
+
+    /**
+     * Maximum number of messages an asynchronous producer buffers before they are flushed.
+     * type: int
+     */
+    public static final String ASYNC_PUBLISH_MAX_IN_FLIGHT_PROP_NAME = "async_publish_max_in_flight";
+    public static final int ASYNC_PUBLISH_MAX_IN_FLIGHT_DEFAULT = 1000;
+
     /**
      * This value will be used in the following settings
      * To calculate the SO_TIMEOUT option of the socket (2*idle_timeout)
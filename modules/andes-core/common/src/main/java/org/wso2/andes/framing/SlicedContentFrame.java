@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.framing;
+
+import org.wso2.org.apache.mina.common.ByteBuffer;
+
+/**
+ * A content frame whose body refers to slices of the stored message content instead of a copy of it. Optionally
+ * the frame is preceded by another block, such as the deliver and header frames of the first content frame of a
+ * message.
+ * <p>
+ * {@link #toNioByteBuffers()} gives the frame as a set of buffers where the content slices are used as they are,
+ * so a {@link org.wso2.andes.transport.GatheringSender} can write the frame without copying the content. Writing
+ * the frame to a single buffer through {@link #writePayload(ByteBuffer)} copies each slice once.
+ */
+public class SlicedContentFrame extends AMQDataBlock {
+
+    /**
+     * Type, channel and size fields preceding the frame body
+     */
+    private static final int FRAME_HEADER_SIZE = 1 + 2 + 4;
+
+    private final AMQDataBlock leadingBlock;
+
+    private final int channel;
+
+    private final java.nio.ByteBuffer[] slices;
+
+    private final int bodySize;
+
+    /**
+     * Create a content frame
+     *
+     * @param leadingBlock block written before this frame. May be null.
+     * @param channel      channel of the frame
+     * @param slices       content slices making up the frame body, in order. Not copied.
+     */
+    public SlicedContentFrame(AMQDataBlock leadingBlock, int channel, java.nio.ByteBuffer[] slices) {
+        this.leadingBlock = leadingBlock;
+        this.channel = channel;
+        this.slices = slices;
+        int size = 0;
+        for (java.nio.ByteBuffer slice : slices) {
+            size += slice.remaining();
+        }
+        this.bodySize = size;
+    }
+
+    /**
+     * Get the number of content bytes carried by this frame
+     *
+     * @return size of the frame body
+     */
+    public int getBodySize() {
+        return bodySize;
+    }
+
+    @Override
+    public long getSize() {
+        long leadingSize = (null == leadingBlock) ? 0 : leadingBlock.getSize();
+        return leadingSize + AMQFrame.getFrameOverhead() + bodySize;
+    }
+
+    @Override
+    public void writePayload(ByteBuffer buffer) {
+        writeHeader(buffer);
+        for (java.nio.ByteBuffer slice : slices) {
+            buffer.put(slice.duplicate());
+        }
+        buffer.put(AMQFrame.FRAME_END_BYTE);
+    }
+
+    /**
+     * Get the frame as a set of buffers. The first buffer holds the leading block and the frame header, followed
+     * by views of the content slices and the frame end byte.
+     *
+     * @return buffers to be written in order
+     */
+    public java.nio.ByteBuffer[] toNioByteBuffers() {
+        long leadingSize = (null == leadingBlock) ? 0 : leadingBlock.getSize();
+        java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate((int) leadingSize + FRAME_HEADER_SIZE);
+        writeHeader(ByteBuffer.wrap(header));
+        header.flip();
+
+        java.nio.ByteBuffer[] buffers = new java.nio.ByteBuffer[slices.length + 2];
+        buffers[0] = header;
+        for (int i = 0; i < slices.length; i++) {
+            buffers[i + 1] = slices[i].duplicate();
+        }
+        buffers[buffers.length - 1] = java.nio.ByteBuffer.wrap(new byte[] { AMQFrame.FRAME_END_BYTE });
+        return buffers;
+    }
+
+    private void writeHeader(ByteBuffer buffer) {
+        if (null != leadingBlock) {
+            leadingBlock.writePayload(buffer);
+        }
+        buffer.put(ContentBody.TYPE);
+        EncodingUtils.writeUnsignedShort(buffer, channel);
+        EncodingUtils.writeUnsignedInteger(buffer, bodySize);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.transport;
+
+/**
+ * A {@link Sender} which can take a frame as several buffers. The buffers are written in order and are not
+ * interleaved with data sent by other threads, so a frame can refer to content held elsewhere instead of being
+ * copied into one contiguous buffer first.
+ *
+ * @param <T> type of the buffers
+ */
+public interface GatheringSender<T> extends Sender<T> {
+
+    /**
+     * Send the buffers as one contiguous unit. The buffers are not copied, hence they must not be modified after
+     * they are sent.
+     *
+     * @param msgs buffers to send in order
+     */
+    void send(T[] msgs);
+}
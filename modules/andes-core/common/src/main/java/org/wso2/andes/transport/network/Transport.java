@@ -39,6 +39,7 @@ public class Transport
     // Can't reference the class directly here, as this would preclude the ability to bundle transports separately.
     private static final String MINA_TRANSPORT_CLASSNAME = "org.wso2.andes.transport.network.mina.MinaNetworkTransport";
     private static final String IO_TRANSPORT_CLASSNAME = "org.wso2.andes.transport.network.io.IoNetworkTransport";
+    public static final String NIO_TRANSPORT_CLASSNAME = "org.wso2.andes.transport.network.nio.NioNetworkTransport";
 
     public static final String TCP = "tcp";
 
@@ -56,9 +57,21 @@ public class Transport
     }
 
     public static IncomingNetworkTransport getIncomingTransportInstance()
+    {
+        return getIncomingTransportInstance(MINA_TRANSPORT_CLASSNAME);
+    }
+
+    /**
+     * Create the incoming transport. The {@link #QPID_BROKER_TRANSPORT_PROPNAME} system property still takes
+     * precedence over the given default.
+     *
+     * @param defaultTransportClassName transport class to use if the system property is not set
+     * @return incoming network transport
+     */
+    public static IncomingNetworkTransport getIncomingTransportInstance(final String defaultTransportClassName)
     {
         return (IncomingNetworkTransport) loadTransportClass(
-                System.getProperty(QPID_BROKER_TRANSPORT_PROPNAME, MINA_TRANSPORT_CLASSNAME));
+                System.getProperty(QPID_BROKER_TRANSPORT_PROPNAME, defaultTransportClassName));
     }
 
     public static OutgoingNetworkTransport getOutgoingTransportInstance(
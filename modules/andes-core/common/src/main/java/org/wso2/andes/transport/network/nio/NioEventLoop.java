@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.transport.network.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.andes.protocol.ProtocolEngineFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A selector thread serving a set of connections of the {@link NioNetworkTransport}. All socket reads and writes of
+ * a connection happen on the event loop the connection is registered with. Other threads hand work to the loop
+ * through {@link #execute(Runnable)}.
+ * <p>
+ * Each loop owns one direct read buffer and one direct write buffer which are shared by all of its connections.
+ * The protocol engine may keep references to received data (e.g. content bodies are slices of the received
+ * buffer), hence data read from a socket is copied out of the read buffer into a heap receive chunk of the loop and
+ * the engine gets a slice of that chunk. A new chunk is only allocated once the current one is used up, so reads do
+ * not allocate a buffer each. Pending outgoing data of a connection is coalesced into the write buffer so that many
+ * small frames go out with a single write call.
+ * <p>
+ * Idle connections are checked every {@link #IDLE_CHECK_INTERVAL_MILLIS} rather than on every wakeup of the
+ * selector, so a busy loop does not walk all of its connections on each event.
+ */
+class NioEventLoop implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(NioEventLoop.class);
+
+    /**
+     * Interval between two checks for idle connections. Also the maximum time to block in select.
+     */
+    static final long IDLE_CHECK_INTERVAL_MILLIS = Long.getLong("andes.nio.idleCheckInterval", 500);
+
+    /**
+     * Maximum number of buffers written by a single gathering write. Kept below the IOV_MAX limit of common
+     * platforms.
+     */
+    static final int MAX_GATHERED_BUFFERS = Integer.getInteger("andes.nio.maxGatheredBuffers", 128);
+
+    private final String name;
+
+    private final Selector selector;
+
+    /**
+     * Tasks submitted by other threads to be run on the loop thread
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True if the selector is already woken up for pending tasks
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    /**
+     * Connections registered with this loop. Only accessed by the loop thread.
+     */
+    private final Set<NioNetworkConnection> connections = new HashSet<>();
+
+    private final ByteBuffer readBuffer;
+
+    /**
+     * Holds the buffers of a gathering write. Only accessed by the loop thread.
+     */
+    private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHERED_BUFFERS];
+
+    private final int receiveChunkSize;
+
+    /**
+     * Heap buffer received data is copied to before it is handed to a protocol engine. Only accessed by the loop
+     * thread.
+     */
+    private ByteBuffer receiveChunk;
+
+    /**
+     * Time at which idle connections are checked next. Only accessed by the loop thread.
+     */
+    private long nextIdleCheckTime;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    /**
+     * Create an event loop
+     *
+     * @param name       name of the loop thread
+     * @param bufferSize size of the direct read buffer and of the receive chunks
+     * @throws IOException if the selector could not be opened
+     */
+    NioEventLoop(String name, int bufferSize) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+        this.readBuffer = ByteBuffer.allocateDirect(bufferSize);
+        this.receiveChunkSize = bufferSize;
+        this.receiveChunk = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Start the loop thread
+     */
+    void start() {
+        running = true;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the loop thread and close every connection registered with it
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+        if (null != thread && Thread.currentThread() != thread) {
+            try {
+                thread.join(IDLE_CHECK_INTERVAL_MILLIS * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Run the task on the loop thread
+     *
+     * @param task task to run
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Check whether the caller is the loop thread
+     *
+     * @return true if called from the loop thread
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Register an accepted channel with this loop and create its protocol engine
+     *
+     * @param channel       accepted channel, already configured as non blocking
+     * @param engineFactory factory to create the protocol engine of the connection. May be null.
+     */
+    void register(final SocketChannel channel, final ProtocolEngineFactory engineFactory) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                NioNetworkConnection connection = new NioNetworkConnection(channel, NioEventLoop.this);
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connections.add(connection);
+                    connection.registered(key, engineFactory);
+                } catch (IOException e) {
+                    log.error("Could not register connection from " + connection.getRemoteAddress(), e);
+                    connection.closeNow();
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget a closed connection. Called on the loop thread.
+     *
+     * @param connection closed connection
+     */
+    void deregister(NioNetworkConnection connection) {
+        connections.remove(connection);
+    }
+
+    /**
+     * Get the direct buffer socket data is read into. Only valid on the loop thread.
+     *
+     * @return shared read buffer
+     */
+    ByteBuffer getReadBuffer() {
+        return readBuffer;
+    }
+
+    /**
+     * Copy received data into the receive chunk so that it can be handed to a protocol engine. Only valid on the
+     * loop thread.
+     *
+     * @param data received data. Its position is moved to the limit.
+     * @return buffer holding a copy of the data, not shared with any other received data
+     */
+    ByteBuffer copyReceivedData(ByteBuffer data) {
+        int length = data.remaining();
+        if (receiveChunk.remaining() < length) {
+            // Slices of the previous chunk stay valid as long as an engine references them
+            receiveChunk = ByteBuffer.allocate(Math.max(receiveChunkSize, length));
+        }
+        ByteBuffer copy = receiveChunk.slice();
+        copy.limit(length);
+        copy.put(data);
+        copy.flip();
+        receiveChunk.position(receiveChunk.position() + length);
+        return copy;
+    }
+
+    /**
+     * Get the array holding the buffers of a gathering write. Only valid on the loop thread. Entries are cleared by
+     * the user after each write.
+     *
+     * @return shared gathering array
+     */
+    ByteBuffer[] getGatherBuffers() {
+        return gatherBuffers;
+    }
+
+    @Override
+    public void run() {
+        nextIdleCheckTime = System.currentTimeMillis() + IDLE_CHECK_INTERVAL_MILLIS;
+        while (running) {
+            try {
+                long timeout = nextIdleCheckTime - System.currentTimeMillis();
+                if (timeout > 0) {
+                    selector.select(timeout);
+                } else {
+                    selector.selectNow();
+                }
+                wakeupPending.set(false);
+                processSelectedKeys();
+                runTasks();
+                long now = System.currentTimeMillis();
+                if (now >= nextIdleCheckTime) {
+                    nextIdleCheckTime = now + IDLE_CHECK_INTERVAL_MILLIS;
+                    checkIdleConnections(now);
+                }
+            } catch (Throwable e) {
+                log.error("Error in network event loop " + name, e);
+            }
+        }
+        runTasks();
+        for (NioNetworkConnection connection : new ArrayList<>(connections)) {
+            connection.closeNow();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error while closing selector of " + name, e);
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            NioNetworkConnection connection = (NioNetworkConnection) key.attachment();
+            if (key.isValid() && key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("Error while running network task in " + name, e);
+            }
+        }
+    }
+
+    private void checkIdleConnections(long now) {
+        if (connections.isEmpty()) {
+            return;
+        }
+        // Idle handlers may close connections, hence iterate over a copy
+        for (NioNetworkConnection connection : new ArrayList<>(connections)) {
+            connection.checkIdle(now);
+        }
+    }
+}
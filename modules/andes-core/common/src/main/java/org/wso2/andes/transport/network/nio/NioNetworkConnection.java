@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.transport.network.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.andes.protocol.ProtocolEngine;
+import org.wso2.andes.protocol.ProtocolEngineFactory;
+import org.wso2.andes.transport.GatheringSender;
+import org.wso2.andes.transport.Sender;
+import org.wso2.andes.transport.network.NetworkConnection;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection accepted by the {@link NioNetworkTransport}. The connection is its own {@link Sender}.
+ * <p>
+ * Buffers given to {@link #send(ByteBuffer)} or {@link #send(ByteBuffer[])} are queued without copying and written
+ * later by the event loop, hence the caller must not modify a buffer after sending it. The queued buffers are
+ * written as they are with gathering socket writes, so content slices are not copied into an intermediate buffer.
+ * <p>
+ * When more than {@link #SEND_QUEUE_HIGH_WATER_MARK} bytes are waiting to be written, reading from the connection is
+ * suspended so that a peer which does not read its responses cannot make the broker queue without bound. Reading
+ * resumes once the pending data drops to {@link #SEND_QUEUE_LOW_WATER_MARK}.
+ */
+class NioNetworkConnection implements NetworkConnection, GatheringSender<ByteBuffer> {
+
+    private static final Logger log = LoggerFactory.getLogger(NioNetworkConnection.class);
+
+    private static final int TIMEOUT = Integer.getInteger("amqj.networkTimeout", 30 * 1000);
+
+    /**
+     * Maximum number of gathering writes per write call, so a busy connection does not starve the others on the
+     * same event loop
+     */
+    private static final int MAX_WRITES_PER_FLUSH = 16;
+
+    /**
+     * Number of pending outgoing bytes at which reading is suspended
+     */
+    static final long SEND_QUEUE_HIGH_WATER_MARK = Long.getLong("andes.nio.sendQueueHighWaterMark", 4 * 1024 * 1024);
+
+    /**
+     * Number of pending outgoing bytes at which suspended reading resumes
+     */
+    static final long SEND_QUEUE_LOW_WATER_MARK = SEND_QUEUE_HIGH_WATER_MARK / 2;
+
+    private final SocketChannel channel;
+
+    private final NioEventLoop eventLoop;
+
+    private final SocketAddress remoteAddress;
+
+    private final SocketAddress localAddress;
+
+    /**
+     * Buffers waiting to be written. Filled by any thread, drained by the event loop.
+     */
+    private final Queue<ByteBuffer> sendQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of bytes sent but not yet written to the socket
+     */
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+
+    /**
+     * True if a flush is already scheduled on the event loop
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final CountDownLatch closedLatch = new CountDownLatch(1);
+
+    /**
+     * Keeps the buffers of a gathering send together in the send queue
+     */
+    private final Object sendLock = new Object();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            write();
+        }
+    };
+
+    private final Runnable interestUpdateTask = new Runnable() {
+        @Override
+        public void run() {
+            updateInterest();
+        }
+    };
+
+    /**
+     * True if the socket buffer was full on the last write. The partly written buffers stay at the head of the send
+     * queue. Only accessed by the event loop.
+     */
+    private boolean writePending;
+
+    private SelectionKey selectionKey;
+
+    private ProtocolEngine engine;
+
+    private volatile boolean blocked = false;
+
+    /**
+     * True if reading is suspended because too much outgoing data is pending. Only changed by the event loop.
+     */
+    private volatile boolean readSuspended = false;
+
+    private volatile boolean closeRequested = false;
+
+    private volatile long maxReadIdleMillis;
+
+    private volatile long maxWriteIdleMillis;
+
+    private long lastReadTime;
+
+    private long lastWriteTime;
+
+    NioNetworkConnection(SocketChannel channel, NioEventLoop eventLoop) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.remoteAddress = channel.socket().getRemoteSocketAddress();
+        this.localAddress = channel.socket().getLocalSocketAddress();
+        long now = System.currentTimeMillis();
+        this.lastReadTime = now;
+        this.lastWriteTime = now;
+    }
+
+    /**
+     * Called by the event loop once the channel is registered with the selector
+     *
+     * @param key           selection key of the channel
+     * @param engineFactory factory to create the protocol engine. May be null.
+     */
+    void registered(SelectionKey key, ProtocolEngineFactory engineFactory) {
+        this.selectionKey = key;
+        if (log.isDebugEnabled()) {
+            log.debug("Created connection: " + remoteAddress);
+        }
+        if (null != engineFactory) {
+            engine = engineFactory.newProtocolEngine(this);
+        }
+        updateInterest();
+    }
+
+    @Override
+    public Sender<ByteBuffer> getSender() {
+        return this;
+    }
+
+    @Override
+    public void send(ByteBuffer msg) {
+        if (closed.get()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Dropping " + msg.remaining() + " bytes sent to closed connection " + remoteAddress);
+            }
+            return;
+        }
+        pendingBytes.addAndGet(msg.remaining());
+        synchronized (sendLock) {
+            sendQueue.add(msg);
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void send(ByteBuffer[] msgs) {
+        if (closed.get()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Dropping " + msgs.length + " buffers sent to closed connection " + remoteAddress);
+            }
+            return;
+        }
+        long length = 0;
+        for (ByteBuffer msg : msgs) {
+            length += msg.remaining();
+        }
+        pendingBytes.addAndGet(length);
+        synchronized (sendLock) {
+            for (ByteBuffer msg : msgs) {
+                sendQueue.add(msg);
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Schedule pending data to be written. Does not wait for the write to complete.
+     */
+    @Override
+    public void flush() {
+        scheduleFlush();
+    }
+
+    /**
+     * Close the connection after the data sent so far is written. Waits for the close unless called from the event
+     * loop.
+     */
+    @Override
+    public void close() {
+        closeRequested = true;
+        scheduleFlush();
+        if (eventLoop.inEventLoop()) {
+            return;
+        }
+        try {
+            if (!closedLatch.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.error("Couldn't close network connection within " + TIMEOUT + " milliseconds. Closing forcefully");
+                eventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        closeNow();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void setIdleTimeout(int i) {
+        // Idle time is set through setMaxReadIdle and setMaxWriteIdle
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public void setMaxWriteIdle(int sec) {
+        maxWriteIdleMillis = sec * 1000L;
+    }
+
+    @Override
+    public void setMaxReadIdle(int sec) {
+        maxReadIdleMillis = sec * 1000L;
+    }
+
+    @Override
+    public void block() {
+        blocked = true;
+        eventLoop.execute(interestUpdateTask);
+    }
+
+    @Override
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    @Override
+    public void unblock() {
+        blocked = false;
+        eventLoop.execute(interestUpdateTask);
+    }
+
+    /**
+     * Read available data and hand it to the protocol engine. Called by the event loop.
+     */
+    void read() {
+        ByteBuffer readBuffer = eventLoop.getReadBuffer();
+        int bytesRead;
+        readBuffer.clear();
+        try {
+            bytesRead = channel.read(readBuffer);
+        } catch (IOException e) {
+            exceptionCaught(e);
+            closeNow();
+            return;
+        }
+
+        if (bytesRead < 0) {
+            closeNow();
+            return;
+        }
+        if (bytesRead == 0) {
+            return;
+        }
+
+        lastReadTime = System.currentTimeMillis();
+        // The engine may keep references to the received buffer, so the shared read buffer is not handed out
+        readBuffer.flip();
+        ByteBuffer data = eventLoop.copyReceivedData(readBuffer);
+
+        if (null != engine) {
+            try {
+                engine.received(data);
+            } catch (RuntimeException e) {
+                engine.exception(e);
+            }
+        }
+    }
+
+    /**
+     * Write as much pending data as the socket accepts. Called by the event loop.
+     */
+    void write() {
+        if (closed.get()) {
+            return;
+        }
+        ByteBuffer[] gatherBuffers = eventLoop.getGatherBuffers();
+        try {
+            for (int writeCount = 0; writeCount < MAX_WRITES_PER_FLUSH; writeCount++) {
+                int bufferCount = 0;
+                for (ByteBuffer buffer : sendQueue) {
+                    if (bufferCount == gatherBuffers.length) {
+                        break;
+                    }
+                    gatherBuffers[bufferCount++] = buffer;
+                }
+                if (bufferCount == 0) {
+                    break;
+                }
+                if (writeCount == MAX_WRITES_PER_FLUSH - 1) {
+                    // Give other connections a chance. The rest is written on the next loop iteration.
+                    scheduleFlush();
+                }
+
+                pendingBytes.addAndGet(-channel.write(gatherBuffers, 0, bufferCount));
+                lastWriteTime = System.currentTimeMillis();
+
+                int writtenCount = 0;
+                while (writtenCount < bufferCount && !gatherBuffers[writtenCount].hasRemaining()) {
+                    sendQueue.poll();
+                    writtenCount++;
+                }
+                Arrays.fill(gatherBuffers, 0, bufferCount, null);
+
+                if (writtenCount < bufferCount) {
+                    // Socket buffer is full. Wait until the channel is writable again
+                    writePending = true;
+                    updateInterest();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Arrays.fill(gatherBuffers, null);
+            exceptionCaught(e);
+            closeNow();
+            return;
+        }
+
+        writePending = false;
+        updateInterest();
+        if (closeRequested && sendQueue.isEmpty()) {
+            closeNow();
+        }
+    }
+
+    /**
+     * Fire idle events to the protocol engine. Called by the event loop.
+     *
+     * @param now current time in milliseconds
+     */
+    void checkIdle(long now) {
+        if (null == engine) {
+            return;
+        }
+        long maxReadIdle = maxReadIdleMillis;
+        if (maxReadIdle > 0 && now - lastReadTime >= maxReadIdle) {
+            // Reset so that the event fires again after another idle period
+            lastReadTime = now;
+            engine.readerIdle();
+        }
+        long maxWriteIdle = maxWriteIdleMillis;
+        if (maxWriteIdle > 0 && now - lastWriteTime >= maxWriteIdle) {
+            lastWriteTime = now;
+            engine.writerIdle();
+        }
+    }
+
+    /**
+     * Close the channel without writing pending data. Called by the event loop.
+     */
+    void closeNow() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (null != selectionKey) {
+            selectionKey.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error while closing connection " + remoteAddress, e);
+        }
+        eventLoop.deregister(this);
+        sendQueue.clear();
+        writePending = false;
+        closedLatch.countDown();
+
+        if (log.isDebugEnabled()) {
+            log.debug("closed: " + remoteAddress);
+        }
+        if (null != engine) {
+            engine.closed();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(flushTask);
+        }
+    }
+
+    /**
+     * Get the number of bytes sent but not yet written to the socket
+     *
+     * @return pending outgoing bytes
+     */
+    long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Check whether reading is suspended because too much outgoing data is pending
+     *
+     * @return true if reading is suspended
+     */
+    boolean isReadSuspended() {
+        return readSuspended;
+    }
+
+    /**
+     * Set selector interest according to the blocked state, the pending outgoing data and pending writes. Called by
+     * the event loop.
+     */
+    private void updateInterest() {
+        if (null == selectionKey || !selectionKey.isValid()) {
+            return;
+        }
+        long pending = pendingBytes.get();
+        if (pending >= SEND_QUEUE_HIGH_WATER_MARK) {
+            readSuspended = true;
+        } else if (pending <= SEND_QUEUE_LOW_WATER_MARK) {
+            readSuspended = false;
+        }
+        int interestOps = 0;
+        if (!blocked && !readSuspended) {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        if (writePending) {
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        selectionKey.interestOps(interestOps);
+    }
+
+    private void exceptionCaught(Throwable throwable) {
+        if (null != engine) {
+            log.error("Exception caught on connection " + remoteAddress, throwable);
+            engine.exception(throwable);
+        } else {
+            log.error("Exception caught on connection " + remoteAddress + " without protocol engine to handle it",
+                    throwable);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.transport.network.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.andes.protocol.ProtocolEngineFactory;
+import org.wso2.andes.ssl.SSLContextFactory;
+import org.wso2.andes.transport.NetworkTransportConfiguration;
+import org.wso2.andes.transport.TransportException;
+import org.wso2.andes.transport.network.IncomingNetworkTransport;
+import org.wso2.andes.transport.network.NetworkConnection;
+import org.wso2.andes.transport.network.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.wso2.andes.transport.ConnectionSettings.WILDCARD_ADDRESS;
+
+/**
+ * Incoming network transport built on a small pool of NIO selector threads. Unlike the MINA transport it does not
+ * need a thread or a blocking hand off per connection, so a large number of mostly idle connections costs only
+ * their socket and buffer memory.
+ * <p>
+ * One acceptor thread accepts connections and spreads them over the event loops in round robin order. The number of
+ * event loops is taken from the connector processor count of the transport configuration. SSL is not handled by
+ * this transport, SSL listeners keep using {@link org.wso2.andes.transport.network.mina.MinaNetworkTransport}.
+ */
+public class NioNetworkTransport implements IncomingNetworkTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(NioNetworkTransport.class);
+
+    /**
+     * Size of the direct read buffer of each event loop
+     */
+    private static final int EVENT_LOOP_BUFFER_SIZE = Integer.getInteger("andes.nio.bufferSize", 64 * 1024);
+
+    private static final int ACCEPT_BACKLOG = Integer.getInteger("andes.nio.acceptBacklog", 1024);
+
+    /**
+     * Pause after a failed accept so the acceptor does not spin while e.g. the process is out of file descriptors
+     */
+    private static final long ACCEPT_RETRY_DELAY_MILLIS = Long.getLong("andes.nio.acceptRetryDelay", 100L);
+
+    private ServerSocketChannel serverChannel;
+
+    private NioEventLoop[] eventLoops;
+
+    private Thread acceptorThread;
+
+    private InetSocketAddress address;
+
+    @Override
+    public void accept(final NetworkTransportConfiguration config, final ProtocolEngineFactory factory,
+                       final SSLContextFactory sslFactory) {
+
+        if (null != sslFactory) {
+            throw new TransportException("SSL is not supported by " + NioNetworkTransport.class.getSimpleName());
+        }
+        if (!Transport.TCP.equalsIgnoreCase(config.getTransport())) {
+            throw new TransportException("Unknown transport: " + config.getTransport());
+        }
+
+        if (config.getHost().equals(WILDCARD_ADDRESS)) {
+            address = new InetSocketAddress(config.getPort());
+        } else {
+            address = new InetSocketAddress(config.getHost(), config.getPort());
+        }
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(address, ACCEPT_BACKLOG);
+        } catch (IOException e) {
+            closeServerChannel();
+            throw new TransportException("Could not bind to " + address, e);
+        }
+
+        Integer processors = config.getConnectorProcessors();
+        int eventLoopCount = (null == processors || processors < 1)
+                ? Runtime.getRuntime().availableProcessors() : processors;
+        eventLoops = new NioEventLoop[eventLoopCount];
+        try {
+            for (int i = 0; i < eventLoopCount; i++) {
+                eventLoops[i] = new NioEventLoop("NioNetworkTransport(Selector-" + config.getPort() + "-" + i + ")",
+                        EVENT_LOOP_BUFFER_SIZE);
+                eventLoops[i].start();
+            }
+        } catch (IOException e) {
+            close();
+            throw new TransportException("Could not open selector for " + address, e);
+        }
+
+        acceptorThread = new Thread(new Acceptor(config, factory),
+                "NioNetworkTransport(Acceptor-" + config.getPort() + ")");
+        acceptorThread.setDaemon(true);
+        acceptorThread.start();
+    }
+
+    @Override
+    public void close() {
+        closeServerChannel();
+        if (null != eventLoops) {
+            for (NioEventLoop eventLoop : eventLoops) {
+                if (null != eventLoop) {
+                    eventLoop.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * An incoming transport has no single connection
+     *
+     * @return null
+     */
+    @Override
+    public NetworkConnection getConnection() {
+        return null;
+    }
+
+    private void closeServerChannel() {
+        if (null != serverChannel) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                log.warn("Error while closing server socket bound to " + address, e);
+            }
+        }
+    }
+
+    /**
+     * Accepts connections with a blocking server channel and registers them with the event loops
+     */
+    private class Acceptor implements Runnable {
+
+        private final NetworkTransportConfiguration config;
+
+        private final ProtocolEngineFactory factory;
+
+        private Acceptor(NetworkTransportConfiguration config, ProtocolEngineFactory factory) {
+            this.config = config;
+            this.factory = factory;
+        }
+
+        @Override
+        public void run() {
+            int next = 0;
+            while (serverChannel.isOpen()) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (ClosedChannelException e) {
+                    break;
+                } catch (IOException e) {
+                    log.error("Error while accepting connection on " + address, e);
+                    try {
+                        Thread.sleep(ACCEPT_RETRY_DELAY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    continue;
+                }
+
+                try {
+                    configure(channel);
+                } catch (IOException e) {
+                    log.error("Could not configure connection from " + channel.socket().getRemoteSocketAddress(), e);
+                    try {
+                        channel.close();
+                    } catch (IOException ignore) {
+                        // Nothing to do, connection is discarded
+                    }
+                    continue;
+                }
+
+                eventLoops[next].register(channel, factory);
+                next = (next + 1) % eventLoops.length;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Stopped accepting connections on " + address);
+            }
+        }
+
+        private void configure(SocketChannel channel) throws IOException {
+            channel.configureBlocking(false);
+            Socket socket = channel.socket();
+            socket.setTcpNoDelay(config.getTcpNoDelay());
+            socket.setSendBufferSize(config.getSendBufferSize());
+            socket.setReceiveBufferSize(config.getReceiveBufferSize());
+        }
+    }
+}
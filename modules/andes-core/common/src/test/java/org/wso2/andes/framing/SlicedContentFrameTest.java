@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.framing;
+
+import junit.framework.TestCase;
+import org.wso2.org.apache.mina.common.ByteBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link SlicedContentFrame}
+ */
+public class SlicedContentFrameTest extends TestCase {
+
+    private static final int CHANNEL = 3;
+
+    private static final byte[] CONTENT = "content of a message".getBytes();
+
+    /**
+     * A frame built from slices encodes exactly like a content frame holding a copy of the same bytes
+     */
+    public void testEncodingMatchesContentFrame() {
+        SlicedContentFrame frame = new SlicedContentFrame(null, CHANNEL, createSlices(7, 13));
+
+        AMQFrame expected = new AMQFrame(CHANNEL, new ContentBody(ByteBuffer.wrap(CONTENT)));
+
+        assertEquals("Wrong body size", CONTENT.length, frame.getBodySize());
+        assertEquals("Wrong frame size", expected.getSize(), frame.getSize());
+        assertTrue("Frame encoding differs from a content frame",
+                Arrays.equals(encode(expected), encode(frame)));
+    }
+
+    /**
+     * The leading block is written before the content frame
+     */
+    public void testLeadingBlock() {
+        SlicedContentFrame frame = new SlicedContentFrame(HeartbeatBody.FRAME, CHANNEL, createSlices(4));
+
+        byte[] heartbeat = encode(HeartbeatBody.FRAME);
+        byte[] content = encode(new AMQFrame(CHANNEL, new ContentBody(ByteBuffer.wrap(CONTENT))));
+        byte[] expected = new byte[heartbeat.length + content.length];
+        System.arraycopy(heartbeat, 0, expected, 0, heartbeat.length);
+        System.arraycopy(content, 0, expected, heartbeat.length, content.length);
+
+        assertEquals("Wrong frame size", expected.length, frame.getSize());
+        assertTrue("Leading block not written first", Arrays.equals(expected, encode(frame)));
+    }
+
+    /**
+     * The gathering form refers to the slices and concatenates to the same bytes as the single buffer form
+     */
+    public void testNioByteBuffers() {
+        java.nio.ByteBuffer[] slices = createSlices(5, 10, 15);
+        SlicedContentFrame frame = new SlicedContentFrame(HeartbeatBody.FRAME, CHANNEL, slices);
+
+        java.nio.ByteBuffer[] buffers = frame.toNioByteBuffers();
+        assertEquals("Wrong number of buffers", slices.length + 2, buffers.length);
+        for (int i = 0; i < slices.length; i++) {
+            assertSame("Slice copied", slices[i].array(), buffers[i + 1].array());
+        }
+
+        java.nio.ByteBuffer joined = java.nio.ByteBuffer.allocate((int) frame.getSize());
+        for (java.nio.ByteBuffer buffer : buffers) {
+            joined.put(buffer);
+        }
+        assertFalse("Buffers larger than the frame size", joined.hasRemaining());
+        assertTrue("Gathered frame differs from the encoded frame", Arrays.equals(encode(frame), joined.array()));
+    }
+
+    /**
+     * Encoding the frame does not consume the slices, so it can be encoded again
+     */
+    public void testSlicesNotConsumed() {
+        java.nio.ByteBuffer[] slices = createSlices(10);
+        SlicedContentFrame frame = new SlicedContentFrame(null, CHANNEL, slices);
+
+        byte[] first = encode(frame);
+        frame.toNioByteBuffers();
+
+        assertEquals("Slice consumed", 10, slices[0].remaining());
+        assertEquals("Slice consumed", CONTENT.length - 10, slices[1].remaining());
+        assertTrue("Second encoding differs", Arrays.equals(first, encode(frame)));
+    }
+
+    /**
+     * Split the content into slices at the given offsets
+     */
+    private static java.nio.ByteBuffer[] createSlices(int... boundaries) {
+        java.nio.ByteBuffer[] slices = new java.nio.ByteBuffer[boundaries.length + 1];
+        int start = 0;
+        for (int i = 0; i <= boundaries.length; i++) {
+            int end = (i < boundaries.length) ? boundaries[i] : CONTENT.length;
+            slices[i] = java.nio.ByteBuffer.wrap(CONTENT, start, end - start).slice();
+            start = end;
+        }
+        return slices;
+    }
+
+    private static byte[] encode(AMQDataBlock block) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) block.getSize());
+        block.writePayload(buffer);
+        assertEquals("Encoded size differs from the frame size", block.getSize(), buffer.position());
+        buffer.flip();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.transport.network.nio;
+
+import org.wso2.andes.protocol.ProtocolEngine;
+import org.wso2.andes.protocol.ProtocolEngineFactory;
+import org.wso2.andes.test.utils.QpidTestCase;
+import org.wso2.andes.transport.NetworkTransportConfiguration;
+import org.wso2.andes.transport.TransportException;
+import org.wso2.andes.transport.network.NetworkConnection;
+import org.wso2.andes.transport.network.Transport;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link NioNetworkTransport} using plain blocking sockets as clients
+ */
+public class NioNetworkTransportTest extends QpidTestCase {
+
+    private static final String HOST = "127.0.0.1";
+
+    private static final byte[] TEST_DATA = "YHALOTHAR".getBytes();
+
+    private int port;
+
+    private NioNetworkTransport server;
+
+    private EchoProtocolEngineFactory engineFactory;
+
+    private final List<Socket> clients = new ArrayList<>();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        port = findFreePort();
+        server = new NioNetworkTransport();
+        engineFactory = new EchoProtocolEngineFactory();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (Socket client : clients) {
+            client.close();
+        }
+        server.close();
+        super.tearDown();
+    }
+
+    /**
+     * Data sent by a client is received by the protocol engine and the echoed data reaches the client
+     */
+    public void testSend() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+
+        client.getOutputStream().write(TEST_DATA);
+
+        assertTrue("Echo not received", Arrays.equals(TEST_DATA, readFully(client, TEST_DATA.length)));
+    }
+
+    /**
+     * Large writes which do not fit in the event loop write buffer are written completely and in order
+     */
+    public void testSendLargeMessage() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        final byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        final Socket writer = client;
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writer.getOutputStream().write(data);
+                } catch (IOException e) {
+                    fail("Write failed: " + e.getMessage());
+                }
+            }
+        });
+        writerThread.start();
+
+        assertTrue("Echoed data does not match", Arrays.equals(data, readFully(client, data.length)));
+        writerThread.join();
+    }
+
+    /**
+     * Buffers of a gathering send reach the client in order as one contiguous unit
+     */
+    public void testGatheringSend() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        client.getOutputStream().write(TEST_DATA);
+        readFully(client, TEST_DATA.length);
+
+        NioNetworkConnection connection = (NioNetworkConnection) engineFactory.getEngines().get(0).getNetwork();
+        connection.send(new ByteBuffer[] {
+                ByteBuffer.wrap(TEST_DATA, 0, 4), ByteBuffer.wrap(TEST_DATA, 4, 5) });
+
+        assertTrue("Gathered data does not match", Arrays.equals(TEST_DATA, readFully(client, TEST_DATA.length)));
+    }
+
+    /**
+     * A gathering send of more buffers than a single gathering write takes, which does not fit in the socket buffer,
+     * continues from the partly written buffer once the client reads
+     */
+    public void testGatheringSendAcrossPartialWrites() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        client.getOutputStream().write(TEST_DATA);
+        readFully(client, TEST_DATA.length);
+
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        int sliceSize = 1000;
+        ByteBuffer[] slices = new ByteBuffer[(data.length + sliceSize - 1) / sliceSize];
+        for (int i = 0; i < slices.length; i++) {
+            int offset = i * sliceSize;
+            slices[i] = ByteBuffer.wrap(data, offset, Math.min(sliceSize, data.length - offset));
+        }
+        assertTrue(slices.length > NioEventLoop.MAX_GATHERED_BUFFERS);
+
+        NioNetworkConnection connection = (NioNetworkConnection) engineFactory.getEngines().get(0).getNetwork();
+        connection.send(slices);
+        // Let the socket buffers fill before reading
+        Thread.sleep(200);
+
+        assertTrue("Gathered data does not match", Arrays.equals(data, readFully(client, data.length)));
+    }
+
+    /**
+     * Many connections are served by the small set of event loops
+     */
+    public void testManyConnections() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        int connectionCount = 200;
+        for (int i = 0; i < connectionCount; i++) {
+            connect().getOutputStream().write(TEST_DATA);
+        }
+        for (Socket client : clients) {
+            assertTrue("Echo not received", Arrays.equals(TEST_DATA, readFully(client, TEST_DATA.length)));
+        }
+        assertEquals("Wrong number of protocol engines created", connectionCount, engineFactory.getEngines().size());
+    }
+
+    /**
+     * Closing the client socket notifies the protocol engine
+     */
+    public void testClosed() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        client.getOutputStream().write(TEST_DATA);
+        readFully(client, TEST_DATA.length);
+
+        EchoProtocolEngine engine = engineFactory.getEngines().get(0);
+        client.close();
+
+        assertTrue("Server engine should have been closed", engine.getClosedLatch().await(2, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Closing the server side connection closes the client socket after pending data is written
+     */
+    public void testServerClose() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        client.getOutputStream().write(TEST_DATA);
+        readFully(client, TEST_DATA.length);
+
+        NetworkConnection connection = engineFactory.getEngines().get(0).getNetwork();
+        connection.getSender().send(ByteBuffer.wrap(TEST_DATA));
+        connection.close();
+
+        assertTrue("Pending data not written before close",
+                   Arrays.equals(TEST_DATA, readFully(client, TEST_DATA.length)));
+        assertEquals("Client socket should have been closed", -1, client.getInputStream().read());
+    }
+
+    /**
+     * Reader idle is reported when no data is received within the idle time
+     */
+    public void testSetReadIdle() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        client.getOutputStream().write(TEST_DATA);
+        readFully(client, TEST_DATA.length);
+
+        EchoProtocolEngine engine = engineFactory.getEngines().get(0);
+        engine.getNetwork().setMaxReadIdle(1);
+
+        assertTrue("Reader should have been idle", engine.getReaderIdleLatch().await(3, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Reading is suspended while more than the high water mark of outgoing data is pending and resumes once the
+     * client reads it
+     */
+    public void testReadSuspendedAboveHighWaterMark() throws Exception {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+        Socket client = connect();
+        client.getOutputStream().write(TEST_DATA);
+        readFully(client, TEST_DATA.length);
+        NioNetworkConnection connection = (NioNetworkConnection) engineFactory.getEngines().get(0).getNetwork();
+
+        final int dataLength = (int) NioNetworkConnection.SEND_QUEUE_HIGH_WATER_MARK * 2;
+        final Socket writer = client;
+        final CountDownLatch writtenLatch = new CountDownLatch(1);
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writer.getOutputStream().write(new byte[dataLength]);
+                    writtenLatch.countDown();
+                } catch (IOException e) {
+                    // Reported through the latch
+                }
+            }
+        });
+        writerThread.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!connection.isReadSuspended() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Reading not suspended", connection.isReadSuspended());
+        Thread.sleep(200);
+        assertTrue("Pending data grew beyond the high water mark",
+                connection.getPendingBytes() < NioNetworkConnection.SEND_QUEUE_HIGH_WATER_MARK * 2);
+        assertFalse("Client write completed while reading was suspended", writtenLatch.await(0, TimeUnit.SECONDS));
+
+        readFully(client, dataLength);
+        assertTrue("Client write not completed", writtenLatch.await(5, TimeUnit.SECONDS));
+        assertFalse("Reading still suspended", connection.isReadSuspended());
+        writerThread.join();
+    }
+
+    /**
+     * Binding to a port which is already in use fails
+     */
+    public void testBindPortInUse() {
+        server.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+
+        NioNetworkTransport second = new NioNetworkTransport();
+        try {
+            second.accept(new TestNetworkTransportConfiguration(port), engineFactory, null);
+            fail("Second bind should fail");
+        } catch (TransportException e) {
+            // Expected
+        } finally {
+            second.close();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setSoTimeout(5000);
+        socket.connect(new InetSocketAddress(HOST, port));
+        clients.add(socket);
+        return socket;
+    }
+
+    private byte[] readFully(Socket socket, int length) throws IOException {
+        byte[] data = new byte[length];
+        new DataInputStream(socket.getInputStream()).readFully(data);
+        return data;
+    }
+
+    private static class EchoProtocolEngineFactory implements ProtocolEngineFactory {
+
+        private final List<EchoProtocolEngine> engines = new CopyOnWriteArrayList<>();
+
+        @Override
+        public ProtocolEngine newProtocolEngine(NetworkConnection network) {
+            EchoProtocolEngine engine = new EchoProtocolEngine(network);
+            engines.add(engine);
+            return engine;
+        }
+
+        private List<EchoProtocolEngine> getEngines() {
+            return engines;
+        }
+    }
+
+    private static class EchoProtocolEngine implements ProtocolEngine {
+
+        private final NetworkConnection network;
+
+        private final CountDownLatch closedLatch = new CountDownLatch(1);
+
+        private final CountDownLatch readerIdleLatch = new CountDownLatch(1);
+
+        private EchoProtocolEngine(NetworkConnection network) {
+            this.network = network;
+        }
+
+        @Override
+        public void received(ByteBuffer msg) {
+            network.getSender().send(msg);
+        }
+
+        @Override
+        public void exception(Throwable t) {
+        }
+
+        @Override
+        public void closed() {
+            closedLatch.countDown();
+        }
+
+        @Override
+        public void readerIdle() {
+            readerIdleLatch.countDown();
+        }
+
+        @Override
+        public void writerIdle() {
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return network.getRemoteAddress();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return network.getLocalAddress();
+        }
+
+        @Override
+        public long getWrittenBytes() {
+            return 0;
+        }
+
+        @Override
+        public long getReadBytes() {
+            return 0;
+        }
+
+        private NetworkConnection getNetwork() {
+            return network;
+        }
+
+        private CountDownLatch getClosedLatch() {
+            return closedLatch;
+        }
+
+        private CountDownLatch getReaderIdleLatch() {
+            return readerIdleLatch;
+        }
+    }
+
+    private static class TestNetworkTransportConfiguration implements NetworkTransportConfiguration {
+
+        private final int port;
+
+        private TestNetworkTransportConfiguration(int port) {
+            this.port = port;
+        }
+
+        @Override
+        public Boolean getTcpNoDelay() {
+            return true;
+        }
+
+        @Override
+        public Integer getReceiveBufferSize() {
+            return 32768;
+        }
+
+        @Override
+        public Integer getSendBufferSize() {
+            return 32768;
+        }
+
+        @Override
+        public Integer getPort() {
+            return port;
+        }
+
+        @Override
+        public String getHost() {
+            return HOST;
+        }
+
+        @Override
+        public String getTransport() {
+            return Transport.TCP;
+        }
+
+        @Override
+        public Integer getConnectorProcessors() {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.management.common.mbeans;
+
+import org.wso2.andes.management.common.mbeans.annotations.MBeanAttribute;
+import org.wso2.andes.management.common.mbeans.annotations.MBeanOperation;
+import org.wso2.andes.management.common.mbeans.annotations.MBeanOperationParameter;
+
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanOperationInfo;
+
+/**
+ * <code>MessageStoreShardManagementInformation</code>
+ * Exposes the shards of a sharded message store and adding shards to it
+ */
+public interface MessageStoreShardManagementInformation {
+
+    /**
+     * MBean type name
+     */
+    String TYPE = "MessageStoreShardManagementInformation";
+
+    /**
+     * Gets the data sources of the shards
+     *
+     * @return JNDI names of the data sources in the order of the shards
+     */
+    @MBeanAttribute(name = "ShardDataSources", description = "Data sources of the message store shards")
+    List<String> getShardDataSources();
+
+    /**
+     * Gets the queues being moved to another shard
+     *
+     * @return names of the storage queues
+     */
+    @MBeanAttribute(name = "MovingQueues", description = "Queues being moved to another shard")
+    List<String> getMovingQueues();
+
+    /**
+     * Adds a data source as a new shard in every node of the cluster. Queues assigned to the new shard are moved to
+     * it in the background.
+     *
+     * @param dataSourceName JNDI name of the data source, which must be available in every node
+     * @throws JMException if the shard could not be added
+     */
+    @MBeanOperation(name = "addShard",
+                    description = "Add a data source as a new shard of the message store in every node",
+                    impact = MBeanOperationInfo.ACTION)
+    void addShard(@MBeanOperationParameter(name = "dataSourceName", description = "JNDI name of the data source")
+                  String dataSourceName) throws JMException;
+}